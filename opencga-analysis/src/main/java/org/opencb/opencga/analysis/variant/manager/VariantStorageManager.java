@@ -60,9 +60,11 @@ import org.opencb.opencga.storage.core.metadata.models.VariantScoreMetadata;
 import org.opencb.opencga.storage.core.utils.CellBaseUtils;
 import org.opencb.opencga.storage.core.variant.BeaconResponse;
 import org.opencb.opencga.storage.core.variant.VariantStorageEngine;
+import org.opencb.opencga.storage.core.variant.VariantStorageOptions;
 import org.opencb.opencga.storage.core.variant.adaptors.*;
 import org.opencb.opencga.storage.core.variant.adaptors.iterators.VariantDBIterator;
 import org.opencb.opencga.storage.core.variant.io.VariantWriterFactory.VariantOutputFormat;
+import org.opencb.opencga.storage.core.variant.query.VariantQueryProfile;
 import org.opencb.opencga.storage.core.variant.score.VariantScoreFormatDescriptor;
 import org.opencb.opencga.storage.core.variant.search.solr.VariantSearchLoadResult;
 import org.opencb.opencga.storage.core.variant.search.solr.VariantSearchManager;
@@ -752,19 +754,30 @@ public class VariantStorageManager extends StorageManager {
         Exception exception = null;
         StopWatch totalStopWatch = StopWatch.createStarted();
         StopWatch storageStopWatch = null;
+        // Profile shared with the storage engine. Includes the catalog stages.
+        VariantQueryProfile profile = queryOptions != null && queryOptions.getBoolean(VariantStorageOptions.QUERY_PROFILE.key())
+                ? VariantQueryProfile.start()
+                : null;
         try {
             String study = catalogUtils.getAnyStudy(query, token);
 
             StopWatch stopWatch = StopWatch.createStarted();
             catalogUtils.parseQuery(query, token);
             auditAttributes.append("catalogParseQueryTimeMillis", stopWatch.getTime(TimeUnit.MILLISECONDS));
+            if (profile != null) {
+                profile.addStage("catalogParseQuery", stopWatch.getNanoTime());
+            }
             DataStore dataStore = getDataStore(study, token);
             dbName = dataStore.getDbName();
             VariantStorageEngine variantStorageEngine = getVariantStorageEngine(dataStore);
 
             stopWatch.reset();
+            stopWatch.start();
             checkSamplesPermissions(query, queryOptions, variantStorageEngine.getMetadataManager(), token);
             auditAttributes.append("checkPermissionsTimeMillis", stopWatch.getTime(TimeUnit.MILLISECONDS));
+            if (profile != null) {
+                profile.addStage("checkPermissions", stopWatch.getNanoTime());
+            }
 
             storageStopWatch = StopWatch.createStarted();
             result = supplier.apply(variantStorageEngine);
@@ -773,6 +786,9 @@ public class VariantStorageManager extends StorageManager {
             exception = e;
             throw e;
         } finally {
+            if (profile != null) {
+                profile.stop();
+            }
             auditAttributes.append("storageTimeMillis", storageStopWatch == null
                     ? -1
                     : storageStopWatch.getTime(TimeUnit.MILLISECONDS));
@@ -945,6 +961,12 @@ public class VariantStorageManager extends StorageManager {
         });
     }
 
+    public DataResult<FacetField> sampleIndexCount(Query query, String token)
+            throws CatalogException, StorageEngineException, IOException {
+        return secure(query, new QueryOptions(QueryOptions.EXCLUDE, VariantField.STUDIES), token, Enums.Action.COUNT,
+                engine -> engine.sampleIndexCount(query));
+    }
+
     public List<BeaconResponse> beacon(String beaconsStr, BeaconResponse.Query beaconQuery, String token)
             throws CatalogException, IOException, StorageEngineException {
         if (beaconsStr.startsWith("[")) {
@@ -18,6 +18,7 @@ import org.opencb.opencga.core.models.Study;
 import org.opencb.opencga.storage.core.exceptions.StorageEngineException;
 import org.opencb.opencga.storage.core.variant.VariantStorageEngine;
 import org.opencb.opencga.storage.core.variant.VariantStorageOptions;
+import org.opencb.opencga.storage.core.variant.stats.VariantStatisticsManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -77,6 +78,12 @@ public class VariantStatsOperationManager extends OperationManager {
             } catch (CatalogException ex) {
                 e.addSuppressed(ex);
             }
+            try {
+                // Stored stats may be partially updated. Do not reuse them for incremental updates.
+                VariantStatisticsManager.invalidateStats(variantStorageEngine.getMetadataManager(), study, cohortsMap.keySet());
+            } catch (StorageEngineException ex) {
+                e.addSuppressed(ex);
+            }
             throw new StorageEngineException("Error calculating statistics.", e);
         }
 
@@ -54,6 +54,8 @@ import org.opencb.opencga.storage.core.variant.annotation.VariantAnnotationManag
 import org.opencb.opencga.storage.core.variant.annotation.VariantAnnotatorException;
 import org.opencb.opencga.storage.core.variant.io.VariantWriterFactory;
 import org.opencb.opencga.storage.core.variant.io.json.mixin.GenericRecordAvroJsonMixin;
+import org.opencb.opencga.storage.core.variant.query.VariantQueryPlan;
+import org.opencb.opencga.storage.core.variant.query.VariantQueryProfile;
 import org.opencb.opencga.storage.core.variant.search.solr.VariantSearchManager;
 import org.opencb.opencga.storage.core.variant.search.solr.VariantSolrIterator;
 import org.opencb.opencga.storage.core.variant.stats.DefaultVariantStatisticsManager;
@@ -330,29 +332,44 @@ public class VariantCommandExecutor extends CommandExecutor {
         Query query = VariantQueryCommandUtils.parseQuery(variantQueryCommandOptions, studyNames);
         QueryOptions options = VariantQueryCommandUtils.parseQueryOptions(variantQueryCommandOptions);
 
-        if (variantQueryCommandOptions.commonQueryOptions.count) {
-            DataResult<Long> result = variantStorageEngine.count(query);
-            System.out.println("Num. results\t" + result.getResults().get(0));
-        } else if (StringUtils.isNotEmpty(variantQueryCommandOptions.rank)) {
-            executeRank(query, variantStorageEngine, variantQueryCommandOptions);
-        } else if (StringUtils.isNotEmpty(variantQueryCommandOptions.groupBy)) {
-            ObjectMapper objectMapper = new ObjectMapper();
-            DataResult groupBy = variantStorageEngine.groupBy(query, variantQueryCommandOptions.groupBy, options);
-            System.out.println("groupBy = " + objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(groupBy));
-        } else {
-            URI uri = StringUtils.isEmpty(variantQueryCommandOptions.commonQueryOptions.output)
-                    ? null
-                    : UriUtils.createUri(variantQueryCommandOptions.commonQueryOptions.output);
-            URI variantsFile = StringUtils.isEmpty(variantQueryCommandOptions.variantsFile)
-                    ? null
-                    : UriUtils.createUri(variantQueryCommandOptions.variantsFile);
-
-            if (variantQueryCommandOptions.annotations != null) {
-                options.add("annotations", variantQueryCommandOptions.annotations);
+        if (variantQueryCommandOptions.explain) {
+            VariantQueryPlan plan = variantStorageEngine.explain(query, options);
+            System.out.println(new ObjectMapper().writerWithDefaultPrettyPrinter().writeValueAsString(plan));
+            return;
+        }
+
+        // The output may be written to the standard output. Print the profile to the standard error
+        VariantQueryProfile profile = variantQueryCommandOptions.profile ? VariantQueryProfile.start() : null;
+        try {
+            if (variantQueryCommandOptions.commonQueryOptions.count) {
+                DataResult<Long> result = variantStorageEngine.count(query);
+                System.out.println("Num. results\t" + result.getResults().get(0));
+            } else if (StringUtils.isNotEmpty(variantQueryCommandOptions.rank)) {
+                executeRank(query, variantStorageEngine, variantQueryCommandOptions);
+            } else if (StringUtils.isNotEmpty(variantQueryCommandOptions.groupBy)) {
+                ObjectMapper objectMapper = new ObjectMapper();
+                DataResult groupBy = variantStorageEngine.groupBy(query, variantQueryCommandOptions.groupBy, options);
+                System.out.println("groupBy = " + objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(groupBy));
+            } else {
+                URI uri = StringUtils.isEmpty(variantQueryCommandOptions.commonQueryOptions.output)
+                        ? null
+                        : UriUtils.createUri(variantQueryCommandOptions.commonQueryOptions.output);
+                URI variantsFile = StringUtils.isEmpty(variantQueryCommandOptions.variantsFile)
+                        ? null
+                        : UriUtils.createUri(variantQueryCommandOptions.variantsFile);
+
+                if (variantQueryCommandOptions.annotations != null) {
+                    options.add("annotations", variantQueryCommandOptions.annotations);
+                }
+                VariantWriterFactory.VariantOutputFormat of = VariantWriterFactory
+                        .toOutputFormat(variantQueryCommandOptions.outputFormat, variantQueryCommandOptions.commonQueryOptions.output);
+                variantStorageEngine.exportData(uri, of, variantsFile, query, options);
+            }
+        } finally {
+            if (profile != null) {
+                profile.stop();
+                System.err.println(new ObjectMapper().writerWithDefaultPrettyPrinter().writeValueAsString(profile));
             }
-            VariantWriterFactory.VariantOutputFormat of = VariantWriterFactory
-                    .toOutputFormat(variantQueryCommandOptions.outputFormat, variantQueryCommandOptions.commonQueryOptions.output);
-            variantStorageEngine.exportData(uri, of, variantsFile, query, options);
         }
     }
 
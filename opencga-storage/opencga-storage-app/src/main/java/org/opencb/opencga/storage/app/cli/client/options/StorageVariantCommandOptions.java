@@ -485,6 +485,14 @@ public class StorageVariantCommandOptions {
         @Parameter(names = {"--variants-file"}, description = "GFF File with regions")
         public String variantsFile;
 
+        @Parameter(names = {"--explain"}, description = "Print the query plan, with the query executors evaluated and the one selected,"
+                + " without running the query")
+        public boolean explain;
+
+        @Parameter(names = {"--profile"}, description = "Print to the standard error the query profile, with the time of each stage"
+                + " and the rows scanned and returned from each backend")
+        public boolean profile;
+
     }
 
     /**
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2015-2020 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.benchmark.jmh;
+
+import org.opencb.opencga.storage.core.io.bit.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compare {@link BitPacking} and the reusable {@link BitWriter} / {@link BitReader} with
+ * the {@link BitOutputStream} / {@link BitInputStream}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BitPackingBenchmark {
+
+    @Param({"1", "2", "4", "7", "8"})
+    private int bitWidth;
+
+    @Param({"4096"})
+    private int numValues;
+
+    private int[] values;
+    private int[] unpacked;
+    private byte[] packed;
+    private BitWriter bitWriter;
+    private BitReader bitReader;
+    private int[] positions;
+    private BitWriter positionsBuffer;
+    private FrameOfReferenceCodec frameOfReferenceCodec;
+    private DeltaVarIntCodec deltaVarIntCodec;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(1);
+        values = new int[numValues];
+        for (int i = 0; i < numValues; i++) {
+            values[i] = random.nextInt(1 << bitWidth);
+        }
+        unpacked = new int[numValues];
+        packed = new byte[BitPacking.packedSize(numValues, bitWidth)];
+        BitPacking.pack(values, 0, numValues, bitWidth, packed, 0);
+        bitWriter = new BitWriter(packed.length);
+        bitReader = new BitReader();
+
+        positions = new int[numValues];
+        int position = SyntheticVariants.FIRST_POSITION;
+        for (int i = 0; i < numValues; i++) {
+            position += random.nextInt(200);
+            positions[i] = position;
+        }
+        positionsBuffer = new BitWriter();
+        frameOfReferenceCodec = new FrameOfReferenceCodec();
+        deltaVarIntCodec = new DeltaVarIntCodec();
+    }
+
+    @Benchmark
+    public byte[] bitOutputStream() {
+        BitOutputStream os = new BitOutputStream(packed.length);
+        for (int value : values) {
+            os.write(value, bitWidth);
+        }
+        return os.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] bitPackingPack() {
+        BitPacking.pack(values, 0, numValues, bitWidth, packed, 0);
+        return packed;
+    }
+
+    @Benchmark
+    public int bitWriter() {
+        bitWriter.reset();
+        bitWriter.write(values, 0, numValues, bitWidth);
+        return bitWriter.length();
+    }
+
+    @Benchmark
+    public void bitInputStream(Blackhole blackhole) {
+        BitInputStream is = new BitInputStream(packed);
+        for (int i = 0; i < numValues; i++) {
+            blackhole.consume(is.readByte(bitWidth));
+        }
+    }
+
+    @Benchmark
+    public int[] bitPackingUnpack() {
+        BitPacking.unpack(packed, 0, unpacked, 0, numValues, bitWidth);
+        return unpacked;
+    }
+
+    @Benchmark
+    public int[] bitReader() {
+        return bitReader.reset(packed).read(unpacked, 0, numValues, bitWidth);
+    }
+
+    @Benchmark
+    public int[] frameOfReferenceCodec() {
+        positionsBuffer.reset();
+        frameOfReferenceCodec.encode(positions, 0, numValues, positionsBuffer);
+        frameOfReferenceCodec.decode(bitReader.reset(positionsBuffer.getBuffer(), 0, positionsBuffer.length()), unpacked, 0);
+        return unpacked;
+    }
+
+    @Benchmark
+    public int[] deltaVarIntCodec() {
+        positionsBuffer.reset();
+        deltaVarIntCodec.encode(positions, 0, numValues, positionsBuffer);
+        deltaVarIntCodec.decode(bitReader.reset(positionsBuffer.getBuffer(), 0, positionsBuffer.length()), unpacked, 0);
+        return unpacked;
+    }
+}
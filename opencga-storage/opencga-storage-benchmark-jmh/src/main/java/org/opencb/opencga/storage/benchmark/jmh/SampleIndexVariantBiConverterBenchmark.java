@@ -0,0 +1,61 @@
+/*
+ * Copyright 2015-2020 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.benchmark.jmh;
+
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.opencga.storage.hadoop.variant.index.sample.SampleIndexVariantBiConverter;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encode and decode the list of variants of a sample index entry.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SampleIndexVariantBiConverterBenchmark {
+
+    @Param({"100", "5000"})
+    private int numVariants;
+
+    private SampleIndexVariantBiConverter converter;
+    private List<Variant> variants;
+    private byte[] bytes;
+
+    @Setup
+    public void setup() {
+        converter = new SampleIndexVariantBiConverter();
+        // All variants in the same sample index batch
+        variants = SyntheticVariants.variants(numVariants, 0, false, 1);
+        bytes = converter.toBytes(variants);
+    }
+
+    @Benchmark
+    public byte[] toBytes() {
+        return converter.toBytes(variants);
+    }
+
+    @Benchmark
+    public List<Variant> toVariants() {
+        return converter.toVariants(SyntheticVariants.CHROMOSOME, SyntheticVariants.FIRST_POSITION, bytes, 0, bytes.length);
+    }
+}
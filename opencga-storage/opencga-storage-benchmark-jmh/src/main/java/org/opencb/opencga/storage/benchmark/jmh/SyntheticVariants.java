@@ -0,0 +1,171 @@
+/*
+ * Copyright 2015-2020 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.benchmark.jmh;
+
+import org.opencb.biodata.models.variant.StudyEntry;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.biodata.models.variant.avro.*;
+
+import java.util.*;
+
+/**
+ * Deterministic generator of synthetic variants for the micro-benchmarks.
+ */
+public final class SyntheticVariants {
+
+    public static final String STUDY = "s1";
+    public static final String CHROMOSOME = "1";
+    public static final int FIRST_POSITION = 1_000_000;
+
+    private static final String[] BASES = {"A", "C", "G", "T"};
+    private static final String[] GENOTYPES = {"0/0", "0/0", "0/0", "0/0", "0/1", "0/1", "1/1", "0|1", "./."};
+    private static final String[] CONSEQUENCE_TYPES = {
+            "SO:0001583", // missense_variant
+            "SO:0001819", // synonymous_variant
+            "SO:0001627", // intron_variant
+            "SO:0001587", // stop_gained
+            "SO:0001631", // upstream_gene_variant
+    };
+    private static final String[] BIOTYPES = {"protein_coding", "lincRNA", "processed_transcript"};
+    private static final String[] POPULATIONS = {"1kG_phase3:ALL", "GNOMAD_EXOMES:ALL", "GNOMAD_GENOMES:ALL", "GNOMAD_GENOMES:NFE"};
+
+    private SyntheticVariants() {
+    }
+
+    public static List<String> samples(int numSamples) {
+        List<String> samples = new ArrayList<>(numSamples);
+        for (int i = 0; i < numSamples; i++) {
+            samples.add("SAMPLE_" + i);
+        }
+        return samples;
+    }
+
+    /**
+     * Generate a sorted list of variants from the same chromosome.
+     * Most of the variants are SNVs, with some short indels and some long indels.
+     *
+     * @param numVariants Number of variants
+     * @param numSamples  Number of samples of the study. No study is added if 0
+     * @param annotated   Add a synthetic annotation to each variant
+     * @param seed        Random seed
+     * @return List of variants
+     */
+    public static List<Variant> variants(int numVariants, int numSamples, boolean annotated, long seed) {
+        Random random = new Random(seed);
+        List<String> samples = samples(numSamples);
+        List<Variant> variants = new ArrayList<>(numVariants);
+        int position = FIRST_POSITION;
+        for (int i = 0; i < numVariants; i++) {
+            position += 1 + random.nextInt(100);
+            Variant variant = new Variant(CHROMOSOME, position, randomReference(random), randomAlternate(random));
+            if (numSamples > 0) {
+                StudyEntry study = new StudyEntry(STUDY, Collections.emptyList(), Arrays.asList("GT", "DP"));
+                for (String sample : samples) {
+                    study.addSampleData(sample, Arrays.asList(GENOTYPES[random.nextInt(GENOTYPES.length)],
+                            String.valueOf(random.nextInt(60))));
+                }
+                variant.addStudyEntry(study);
+            }
+            if (annotated) {
+                variant.setAnnotation(annotation(variant, random));
+            }
+            variants.add(variant);
+        }
+        return variants;
+    }
+
+    private static String randomReference(Random random) {
+        int r = random.nextInt(100);
+        if (r < 5) {
+            // Deletion
+            return randomSequence(random, 2 + random.nextInt(r == 0 ? 30 : 3));
+        } else {
+            return BASES[random.nextInt(BASES.length)];
+        }
+    }
+
+    private static String randomAlternate(Random random) {
+        int r = random.nextInt(100);
+        if (r < 5) {
+            // Insertion
+            return randomSequence(random, 2 + random.nextInt(r == 0 ? 30 : 3));
+        } else {
+            return BASES[random.nextInt(BASES.length)];
+        }
+    }
+
+    private static String randomSequence(Random random, int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append(BASES[random.nextInt(BASES.length)]);
+        }
+        return sb.toString();
+    }
+
+    private static VariantAnnotation annotation(Variant variant, Random random) {
+        VariantAnnotation annotation = new VariantAnnotation();
+        annotation.setChromosome(variant.getChromosome());
+        annotation.setStart(variant.getStart());
+        annotation.setEnd(variant.getEnd());
+        annotation.setReference(variant.getReference());
+        annotation.setAlternate(variant.getAlternate());
+        annotation.setId("rs" + random.nextInt(100000000));
+
+        List<ConsequenceType> consequenceTypes = new ArrayList<>();
+        int numTranscripts = 1 + random.nextInt(4);
+        int gene = random.nextInt(20000);
+        for (int t = 0; t < numTranscripts; t++) {
+            ConsequenceType ct = new ConsequenceType();
+            ct.setGeneName("GENE" + gene);
+            ct.setEnsemblGeneId(String.format("ENSG%011d", gene));
+            ct.setEnsemblTranscriptId(String.format("ENST%011d", gene * 10 + t));
+            ct.setBiotype(BIOTYPES[random.nextInt(BIOTYPES.length)]);
+            ct.setTranscriptAnnotationFlags(t == 0 ? Arrays.asList("basic", "CCDS") : Collections.emptyList());
+            ct.setExonOverlap(Collections.emptyList());
+            SequenceOntologyTerm so = new SequenceOntologyTerm();
+            so.setAccession(CONSEQUENCE_TYPES[random.nextInt(CONSEQUENCE_TYPES.length)]);
+            so.setName(so.getAccession());
+            ct.setSequenceOntologyTerms(Collections.singletonList(so));
+            consequenceTypes.add(ct);
+        }
+        annotation.setConsequenceTypes(consequenceTypes);
+
+        List<PopulationFrequency> populationFrequencies = new ArrayList<>(POPULATIONS.length);
+        for (String population : POPULATIONS) {
+            String[] split = population.split(":");
+            PopulationFrequency frequency = new PopulationFrequency();
+            frequency.setStudy(split[0]);
+            frequency.setPopulation(split[1]);
+            frequency.setRefAllele(variant.getReference());
+            frequency.setAltAllele(variant.getAlternate());
+            float af = random.nextFloat() * 0.1f;
+            frequency.setAltAlleleFreq(af);
+            frequency.setRefAlleleFreq(1 - af);
+            populationFrequencies.add(frequency);
+        }
+        annotation.setPopulationFrequencies(populationFrequencies);
+
+        annotation.setConservation(Arrays.asList(
+                new Score(random.nextDouble(), "phastCons", ""),
+                new Score(random.nextDouble() * 10 - 5, "phylop", ""),
+                new Score(random.nextDouble() * 10 - 5, "gerp", "")));
+        annotation.setFunctionalScore(Arrays.asList(
+                new Score(random.nextDouble() * 10, "cadd_raw", ""),
+                new Score(random.nextDouble() * 40, "cadd_scaled", "")));
+        return annotation;
+    }
+}
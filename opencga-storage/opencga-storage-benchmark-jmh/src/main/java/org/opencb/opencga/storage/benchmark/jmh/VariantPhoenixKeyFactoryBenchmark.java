@@ -0,0 +1,67 @@
+/*
+ * Copyright 2015-2020 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.benchmark.jmh;
+
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.opencga.storage.hadoop.variant.adaptors.phoenix.VariantPhoenixKeyFactory;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generate and parse the row keys of the variants table.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VariantPhoenixKeyFactoryBenchmark {
+
+    private static final int NUM_VARIANTS = 1000;
+
+    private List<Variant> variants;
+    private byte[][] rowKeys;
+
+    @Setup
+    public void setup() {
+        variants = SyntheticVariants.variants(NUM_VARIANTS, 0, false, 1);
+        rowKeys = new byte[NUM_VARIANTS][];
+        for (int i = 0; i < NUM_VARIANTS; i++) {
+            rowKeys[i] = VariantPhoenixKeyFactory.generateVariantRowKey(variants.get(i));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUM_VARIANTS)
+    public void generateVariantRowKey(Blackhole blackhole) {
+        for (Variant variant : variants) {
+            blackhole.consume(VariantPhoenixKeyFactory.generateVariantRowKey(variant));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUM_VARIANTS)
+    public void extractVariantFromVariantRowKey(Blackhole blackhole) {
+        for (byte[] rowKey : rowKeys) {
+            blackhole.consume(VariantPhoenixKeyFactory.extractVariantFromVariantRowKey(rowKey));
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2015-2020 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.benchmark.jmh;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.opencb.commons.datastore.core.Query;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parse the most common query filters.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VariantQueryUtilsBenchmark {
+
+    private String genotypeFilter;
+    private String populationFrequencyFilter;
+    private List<String> consequenceTypes;
+    private Query formatQuery;
+    private List<String> variantIds;
+
+    @Setup
+    public void setup() {
+        List<String> samples = SyntheticVariants.samples(20);
+        StringBuilder sb = new StringBuilder();
+        for (String sample : samples) {
+            if (sb.length() > 0) {
+                sb.append(VariantQueryUtils.AND);
+            }
+            sb.append(sample).append(VariantQueryUtils.IS).append("0/1,1/1,!0/0");
+        }
+        genotypeFilter = sb.toString();
+        populationFrequencyFilter = "1kG_phase3:ALL<0.01;GNOMAD_GENOMES:ALL<=0.005;GNOMAD_EXOMES:NFE<0.01";
+        consequenceTypes = Arrays.asList("missense_variant", "SO:0001587", "stop_lost", "lof", "splice_region_variant");
+        formatQuery = new Query(VariantQueryParam.FORMAT.key(), samples.get(0) + ":DP>10;" + samples.get(1) + ":DP>20,GQ>30");
+        variantIds = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            variantIds.add("1:" + (SyntheticVariants.FIRST_POSITION + i * 10) + ":A:C");
+        }
+    }
+
+    @Benchmark
+    public Map<Object, List<String>> parseGenotypeFilter() {
+        Map<Object, List<String>> map = new LinkedHashMap<>();
+        VariantQueryUtils.parseGenotypeFilter(genotypeFilter, map);
+        return map;
+    }
+
+    @Benchmark
+    public List<String[]> splitPopulationFrequencyFilter() {
+        Pair<VariantQueryUtils.QueryOperation, List<String>> pair = VariantQueryUtils.splitValue(populationFrequencyFilter);
+        List<String[]> filters = new ArrayList<>(pair.getValue().size());
+        for (String filter : pair.getValue()) {
+            filters.add(VariantQueryUtils.splitOperator(filter));
+        }
+        return filters;
+    }
+
+    @Benchmark
+    public List<String> parseConsequenceTypes() {
+        return VariantQueryUtils.parseConsequenceTypes(consequenceTypes);
+    }
+
+    @Benchmark
+    public Pair<VariantQueryUtils.QueryOperation, Map<String, String>> parseFormat() {
+        return VariantQueryUtils.parseFormat(formatQuery);
+    }
+
+    @Benchmark
+    public int toVariant() {
+        int count = 0;
+        for (String variantId : variantIds) {
+            if (VariantQueryUtils.toVariant(variantId) != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
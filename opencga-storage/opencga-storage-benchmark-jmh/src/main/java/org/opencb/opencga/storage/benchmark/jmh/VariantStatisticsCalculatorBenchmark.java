@@ -0,0 +1,76 @@
+/*
+ * Copyright 2015-2020 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.benchmark.jmh;
+
+import org.opencb.biodata.models.variant.StudyEntry;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.opencga.storage.core.variant.stats.VariantStatisticsCalculator;
+import org.opencb.opencga.storage.core.variant.stats.VariantStatsWrapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Calculate the stats of several cohorts for a batch of variants.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VariantStatisticsCalculatorBenchmark {
+
+    private static final int NUM_VARIANTS = 100;
+
+    @Param({"100", "2000"})
+    private int numSamples;
+
+    @Param({"5"})
+    private int numCohorts;
+
+    private List<Variant> variants;
+    private Map<String, Set<String>> cohorts;
+    private VariantStatisticsCalculator calculator;
+
+    @Setup
+    public void setup() {
+        variants = SyntheticVariants.variants(NUM_VARIANTS, numSamples, false, 1);
+        List<String> samples = SyntheticVariants.samples(numSamples);
+        Random random = new Random(1);
+        cohorts = new LinkedHashMap<>();
+        cohorts.put(StudyEntry.DEFAULT_COHORT, new HashSet<>(samples));
+        for (int c = 1; c < numCohorts; c++) {
+            Set<String> cohort = new HashSet<>();
+            for (String sample : samples) {
+                if (random.nextInt(numCohorts) == 0) {
+                    cohort.add(sample);
+                }
+            }
+            cohorts.put("COHORT_" + c, cohort);
+        }
+        // Reuse the calculator, as the stats tasks do for every batch
+        calculator = new VariantStatisticsCalculator(true);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUM_VARIANTS)
+    public List<VariantStatsWrapper> calculateBatch() {
+        return calculator.calculateBatch(variants, SyntheticVariants.STUDY, cohorts);
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2015-2020 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.benchmark.jmh;
+
+import org.apache.commons.io.output.NullOutputStream;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.opencga.storage.core.metadata.StudyConfiguration;
+import org.opencb.opencga.storage.core.variant.io.VariantVcfDataWriter;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Convert and write variants in VCF format, discarding the output.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VariantVcfDataWriterBenchmark {
+
+    private static final int NUM_VARIANTS = 100;
+
+    @Param({"10", "500"})
+    private int numSamples;
+
+    private List<Variant> variants;
+    private VariantVcfDataWriter writer;
+
+    @Setup
+    public void setup() {
+        variants = SyntheticVariants.variants(NUM_VARIANTS, numSamples, false, 1);
+        StudyConfiguration studyConfiguration = new StudyConfiguration(1, SyntheticVariants.STUDY);
+        writer = new VariantVcfDataWriter(studyConfiguration, NullOutputStream.NULL_OUTPUT_STREAM, null, null);
+        writer.open();
+        writer.pre();
+    }
+
+    @TearDown
+    public void tearDown() {
+        writer.post();
+        writer.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUM_VARIANTS)
+    public boolean write() {
+        return writer.write(variants);
+    }
+}
@@ -0,0 +1,138 @@
+package org.opencb.opencga.storage.benchmark.variant.pipeline;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Describes one run of the pipeline benchmark: the size of the synthetic input, the stages to run and the number of threads.
+ */
+public class PipelineBenchmarkProfile {
+
+    public enum Stage {
+        TRANSFORM,
+        LOAD,
+        ANNOTATE,
+        STATS,
+        EXPORT,
+    }
+
+    public static final String TINY = "tiny";
+    public static final String SMALL = "small";
+    public static final String MEDIUM = "medium";
+    public static final String LARGE = "large";
+
+    private String name;
+    private int numVariants;
+    private int numSamples;
+    private int numChromosomes = 2;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private long seed = 1;
+    private List<Stage> stages = Arrays.asList(Stage.values());
+
+    public PipelineBenchmarkProfile() {
+    }
+
+    public PipelineBenchmarkProfile(String name, int numVariants, int numSamples) {
+        this.name = name;
+        this.numVariants = numVariants;
+        this.numSamples = numSamples;
+    }
+
+    /**
+     * Get one of the predefined profiles.
+     *
+     * @param name Profile name. One of {@link #TINY}, {@link #SMALL}, {@link #MEDIUM} or {@link #LARGE}
+     * @return New profile
+     */
+    public static PipelineBenchmarkProfile of(String name) {
+        switch (name) {
+            case TINY:
+                return new PipelineBenchmarkProfile(name, 1000, 10);
+            case SMALL:
+                return new PipelineBenchmarkProfile(name, 10000, 100);
+            case MEDIUM:
+                return new PipelineBenchmarkProfile(name, 100000, 500);
+            case LARGE:
+                return new PipelineBenchmarkProfile(name, 1000000, 2000);
+            default:
+                throw new IllegalArgumentException("Unknown pipeline benchmark profile '" + name + "'. "
+                        + "Available profiles: " + Arrays.asList(TINY, SMALL, MEDIUM, LARGE));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "PipelineBenchmarkProfile{"
+                + "name='" + name + '\''
+                + ", numVariants=" + numVariants
+                + ", numSamples=" + numSamples
+                + ", numChromosomes=" + numChromosomes
+                + ", threads=" + threads
+                + ", seed=" + seed
+                + ", stages=" + stages
+                + '}';
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public PipelineBenchmarkProfile setName(String name) {
+        this.name = name;
+        return this;
+    }
+
+    public int getNumVariants() {
+        return numVariants;
+    }
+
+    public PipelineBenchmarkProfile setNumVariants(int numVariants) {
+        this.numVariants = numVariants;
+        return this;
+    }
+
+    public int getNumSamples() {
+        return numSamples;
+    }
+
+    public PipelineBenchmarkProfile setNumSamples(int numSamples) {
+        this.numSamples = numSamples;
+        return this;
+    }
+
+    public int getNumChromosomes() {
+        return numChromosomes;
+    }
+
+    public PipelineBenchmarkProfile setNumChromosomes(int numChromosomes) {
+        this.numChromosomes = numChromosomes;
+        return this;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public PipelineBenchmarkProfile setThreads(int threads) {
+        this.threads = threads;
+        return this;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public PipelineBenchmarkProfile setSeed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    public List<Stage> getStages() {
+        return stages;
+    }
+
+    public PipelineBenchmarkProfile setStages(List<Stage> stages) {
+        this.stages = stages;
+        return this;
+    }
+}
@@ -0,0 +1,294 @@
+package org.opencb.opencga.storage.benchmark.variant.pipeline;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.opencb.biodata.models.variant.StudyEntry;
+import org.opencb.commons.datastore.core.ObjectMap;
+import org.opencb.commons.datastore.core.Query;
+import org.opencb.commons.datastore.core.QueryOptions;
+import org.opencb.opencga.storage.core.StoragePipelineResult;
+import org.opencb.opencga.storage.core.variant.VariantStorageEngine;
+import org.opencb.opencga.storage.core.variant.VariantStorageOptions;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantField;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam;
+import org.opencb.opencga.storage.core.variant.adaptors.iterators.VariantDBIterator;
+import org.opencb.opencga.storage.core.variant.io.VariantWriterFactory.VariantOutputFormat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Runs the transform, load, annotate, stats and export stages of a {@link VariantStorageEngine} over a synthetic VCF,
+ * measuring the throughput, peak heap and GC time of each stage.
+ *
+ * The options of the engine are not modified. Each stage runs with its own copy of the benchmark options.
+ *
+ * The storage engine runs in the same JVM, so this works with the in-memory engines and the test mini-clusters.
+ * Results are written in JSON to the output directory.
+ */
+public class PipelineBenchmarkRunner {
+
+    public static final String STUDY = "benchmark";
+
+    private static Logger logger = LoggerFactory.getLogger(PipelineBenchmarkRunner.class);
+
+    private final VariantStorageEngine engine;
+    private final Path outdir;
+    private boolean syntheticAnnotator = true;
+    private URI transformedFile;
+
+    public PipelineBenchmarkRunner(VariantStorageEngine engine, Path outdir) {
+        this.engine = engine;
+        this.outdir = outdir;
+    }
+
+    /**
+     * Use the {@link SyntheticVariantAnnotator} for the annotation stage. Enabled by default.
+     * If disabled, the annotator configured in the storage engine is used.
+     *
+     * @param syntheticAnnotator Use the synthetic annotator
+     * @return this
+     */
+    public PipelineBenchmarkRunner setSyntheticAnnotator(boolean syntheticAnnotator) {
+        this.syntheticAnnotator = syntheticAnnotator;
+        return this;
+    }
+
+    public List<PipelineStageResult> run(PipelineBenchmarkProfile profile) throws Exception {
+        logger.info("Run pipeline benchmark with {} on {}", profile, engine.getStorageEngineId());
+        Files.createDirectories(outdir);
+        Path input = new SyntheticVcfGenerator(profile).generate(outdir.resolve(profile.getName() + ".vcf.gz"));
+
+        ObjectMap options = new ObjectMap();
+        options.put(VariantStorageOptions.STUDY.key(), STUDY);
+        options.put(VariantStorageOptions.TRANSFORM_THREADS.key(), profile.getThreads());
+        options.put(VariantStorageOptions.LOAD_THREADS.key(), profile.getThreads());
+        options.put(VariantStorageOptions.STATS_CALCULATE_THREADS.key(), profile.getThreads());
+        options.put(VariantStorageOptions.ANNOTATION_NUM_THREADS.key(), profile.getThreads());
+        // Each stage is measured independently
+        options.put(VariantStorageOptions.ANNOTATE.key(), false);
+        options.put(VariantStorageOptions.STATS_CALCULATE.key(), false);
+        options.put(VariantStorageOptions.INDEX_SEARCH.key(), false);
+
+        transformedFile = null;
+        List<PipelineStageResult> results = new ArrayList<>(profile.getStages().size());
+        for (PipelineBenchmarkProfile.Stage stage : profile.getStages()) {
+            ObjectMap stageOptions = new ObjectMap(options);
+            StageMonitor monitor = new StageMonitor();
+            long records = runStage(stage, input, stageOptions);
+            PipelineStageResult result = monitor.stop();
+            if (records < 0) {
+                // Count the processed records once the stage is measured
+                records = countRecords(stage, input);
+            }
+            result
+                    .setProfile(profile.getName())
+                    .setStorageEngine(engine.getStorageEngineId())
+                    .setStage(stage)
+                    .setNumSamples(profile.getNumSamples())
+                    .setThreads(profile.getThreads())
+                    .setRecords(records);
+            result.setRecordsPerSecond(result.getElapsedMillis() == 0
+                    ? records
+                    : records * 1000.0 / result.getElapsedMillis());
+            logger.info("{}", result);
+            results.add(result);
+        }
+
+        Path resultFile = outdir.resolve("pipeline-benchmark." + engine.getStorageEngineId() + "." + profile.getName()
+                + "." + profile.getThreads() + "threads.json");
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(resultFile.toFile(), results);
+        logger.info("Pipeline benchmark results written to {}", resultFile);
+        return results;
+    }
+
+    /**
+     * Run one stage.
+     *
+     * @param stage   Stage
+     * @param input   Input VCF
+     * @param options Options of the stage
+     * @return Number of processed records, or -1 if they have to be counted with {@link #countRecords}
+     * @throws Exception on any error from the storage engine
+     */
+    private long runStage(PipelineBenchmarkProfile.Stage stage, Path input, ObjectMap options) throws Exception {
+        switch (stage) {
+            case TRANSFORM:
+                List<StoragePipelineResult> transformResults = withEngineOptions(options, () ->
+                        engine.index(Collections.singletonList(input.toUri()), outdir.toUri(), true, true, false));
+                transformedFile = transformResults.get(0).getPostTransformResult();
+                return -1;
+            case LOAD:
+                if (transformedFile == null) {
+                    throw new IllegalStateException("Unable to run stage " + stage + " without running stage "
+                            + PipelineBenchmarkProfile.Stage.TRANSFORM);
+                }
+                withEngineOptions(options, () ->
+                        engine.index(Collections.singletonList(transformedFile), outdir.toUri(), false, false, true));
+                return -1;
+            case ANNOTATE:
+                if (syntheticAnnotator) {
+                    options.put(VariantStorageOptions.ANNOTATOR_CLASS.key(), SyntheticVariantAnnotator.class.getName());
+                }
+                return engine.annotate(new Query(), options);
+            case STATS:
+                options.put(VariantStorageOptions.STATS_OVERWRITE.key(), true);
+                engine.calculateStats(STUDY, Collections.singletonList(StudyEntry.DEFAULT_COHORT), new QueryOptions(options));
+                return -1;
+            case EXPORT:
+                engine.exportData(getExportFile().toUri(), VariantOutputFormat.VCF_GZ, null,
+                        new Query(VariantQueryParam.STUDY.key(), STUDY), new QueryOptions());
+                return -1;
+            default:
+                throw new IllegalArgumentException("Unknown stage " + stage);
+        }
+    }
+
+    /**
+     * Run an action of the engine that can only read the options from {@link VariantStorageEngine#getOptions()},
+     * restoring the original options afterwards.
+     *
+     * @param options Options of the stage
+     * @param action  Action to run
+     * @param <T>     Result type
+     * @return Result of the action
+     * @throws Exception on any error from the action
+     */
+    private <T> T withEngineOptions(ObjectMap options, Callable<T> action) throws Exception {
+        ObjectMap engineOptions = engine.getOptions();
+        ObjectMap originalOptions = new ObjectMap(engineOptions);
+        engineOptions.putAll(options);
+        try {
+            return action.call();
+        } finally {
+            engineOptions.clear();
+            engineOptions.putAll(originalOptions);
+        }
+    }
+
+    /**
+     * Count the records processed by a stage, reading the result from the storage engine or the output file.
+     *
+     * @param stage Stage
+     * @param input Input VCF
+     * @return Number of records
+     * @throws Exception on any error reading the result
+     */
+    private long countRecords(PipelineBenchmarkProfile.Stage stage, Path input) throws Exception {
+        Query query = new Query(VariantQueryParam.STUDY.key(), STUDY);
+        switch (stage) {
+            case TRANSFORM:
+                return countVcfRecords(input);
+            case LOAD:
+                return engine.count(query).first();
+            case STATS:
+                long withStats = 0;
+                QueryOptions options = new QueryOptions(QueryOptions.INCLUDE, VariantField.STUDIES_STATS);
+                try (VariantDBIterator iterator = engine.iterator(query, options)) {
+                    while (iterator.hasNext()) {
+                        StudyEntry studyEntry = iterator.next().getStudy(STUDY);
+                        if (studyEntry != null && studyEntry.getStats(StudyEntry.DEFAULT_COHORT) != null) {
+                            withStats++;
+                        }
+                    }
+                }
+                return withStats;
+            case EXPORT:
+                return countVcfRecords(getExportFile());
+            default:
+                throw new IllegalArgumentException("Unable to count records of stage " + stage);
+        }
+    }
+
+    private static long countVcfRecords(Path vcf) throws IOException {
+        long records = 0;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(Files.newInputStream(vcf))))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.startsWith("#")) {
+                    records++;
+                }
+            }
+        }
+        return records;
+    }
+
+    private Path getExportFile() {
+        return outdir.resolve("pipeline-benchmark.export.vcf.gz");
+    }
+
+    /**
+     * Captures elapsed time, peak heap usage and GC activity since its creation.
+     */
+    private static class StageMonitor {
+        private final long start;
+        private final long gcTime;
+        private final long gcCount;
+
+        StageMonitor() {
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP) {
+                    pool.resetPeakUsage();
+                }
+            }
+            gcTime = getGcTime();
+            gcCount = getGcCount();
+            start = System.currentTimeMillis();
+        }
+
+        PipelineStageResult stop() {
+            long elapsed = System.currentTimeMillis() - start;
+            long peakHeap = 0;
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP) {
+                    peakHeap += pool.getPeakUsage().getUsed();
+                }
+            }
+            return new PipelineStageResult()
+                    .setElapsedMillis(elapsed)
+                    .setPeakHeapBytes(peakHeap)
+                    .setGcTimeMillis(getGcTime() - gcTime)
+                    .setGcCount(getGcCount() - gcCount);
+        }
+
+        private static long getGcTime() {
+            long time = 0;
+            for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+                time += Math.max(0, gc.getCollectionTime());
+            }
+            return time;
+        }
+
+        private static long getGcCount() {
+            long count = 0;
+            for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+                count += Math.max(0, gc.getCollectionCount());
+            }
+            return count;
+        }
+    }
+
+    public Path getOutdir() {
+        return outdir;
+    }
+
+    public VariantStorageEngine getEngine() {
+        return engine;
+    }
+
+}
@@ -0,0 +1,144 @@
+package org.opencb.opencga.storage.benchmark.variant.pipeline;
+
+/**
+ * Measures of one stage of the pipeline benchmark.
+ */
+public class PipelineStageResult {
+
+    private String profile;
+    private String storageEngine;
+    private PipelineBenchmarkProfile.Stage stage;
+    private int numSamples;
+    private int threads;
+    private long records;
+    private long elapsedMillis;
+    private double recordsPerSecond;
+    private long peakHeapBytes;
+    private long gcTimeMillis;
+    private long gcCount;
+
+    public PipelineStageResult() {
+    }
+
+    @Override
+    public String toString() {
+        return "PipelineStageResult{"
+                + "profile='" + profile + '\''
+                + ", storageEngine='" + storageEngine + '\''
+                + ", stage=" + stage
+                + ", numSamples=" + numSamples
+                + ", threads=" + threads
+                + ", records=" + records
+                + ", elapsedMillis=" + elapsedMillis
+                + ", recordsPerSecond=" + recordsPerSecond
+                + ", peakHeapBytes=" + peakHeapBytes
+                + ", gcTimeMillis=" + gcTimeMillis
+                + ", gcCount=" + gcCount
+                + '}';
+    }
+
+    public String getProfile() {
+        return profile;
+    }
+
+    public PipelineStageResult setProfile(String profile) {
+        this.profile = profile;
+        return this;
+    }
+
+    public String getStorageEngine() {
+        return storageEngine;
+    }
+
+    public PipelineStageResult setStorageEngine(String storageEngine) {
+        this.storageEngine = storageEngine;
+        return this;
+    }
+
+    public PipelineBenchmarkProfile.Stage getStage() {
+        return stage;
+    }
+
+    public PipelineStageResult setStage(PipelineBenchmarkProfile.Stage stage) {
+        this.stage = stage;
+        return this;
+    }
+
+    public int getNumSamples() {
+        return numSamples;
+    }
+
+    public PipelineStageResult setNumSamples(int numSamples) {
+        this.numSamples = numSamples;
+        return this;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public PipelineStageResult setThreads(int threads) {
+        this.threads = threads;
+        return this;
+    }
+
+    public long getRecords() {
+        return records;
+    }
+
+    public PipelineStageResult setRecords(long records) {
+        this.records = records;
+        return this;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public PipelineStageResult setElapsedMillis(long elapsedMillis) {
+        this.elapsedMillis = elapsedMillis;
+        return this;
+    }
+
+    public double getRecordsPerSecond() {
+        return recordsPerSecond;
+    }
+
+    public PipelineStageResult setRecordsPerSecond(double recordsPerSecond) {
+        this.recordsPerSecond = recordsPerSecond;
+        return this;
+    }
+
+    /**
+     * Sum of the peak usage of all the heap memory pools during the stage.
+     * This is an upper bound, as the pools may reach their peak at different times.
+     *
+     * @return peak heap usage in bytes
+     */
+    public long getPeakHeapBytes() {
+        return peakHeapBytes;
+    }
+
+    public PipelineStageResult setPeakHeapBytes(long peakHeapBytes) {
+        this.peakHeapBytes = peakHeapBytes;
+        return this;
+    }
+
+    public long getGcTimeMillis() {
+        return gcTimeMillis;
+    }
+
+    public PipelineStageResult setGcTimeMillis(long gcTimeMillis) {
+        this.gcTimeMillis = gcTimeMillis;
+        return this;
+    }
+
+    public long getGcCount() {
+        return gcCount;
+    }
+
+    public PipelineStageResult setGcCount(long gcCount) {
+        this.gcCount = gcCount;
+        return this;
+    }
+}
@@ -0,0 +1,93 @@
+package org.opencb.opencga.storage.benchmark.variant.pipeline;
+
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.biodata.models.variant.avro.*;
+import org.opencb.commons.datastore.core.ObjectMap;
+import org.opencb.opencga.storage.core.config.StorageConfiguration;
+import org.opencb.opencga.storage.core.metadata.models.ProjectMetadata;
+import org.opencb.opencga.storage.core.variant.annotation.VariantAnnotatorException;
+import org.opencb.opencga.storage.core.variant.annotation.annotators.VariantAnnotator;
+
+import java.util.*;
+
+/**
+ * Offline annotator producing deterministic synthetic annotations, so the annotation stage of the pipeline benchmark
+ * measures the storage engine and not the annotation service.
+ */
+public class SyntheticVariantAnnotator extends VariantAnnotator {
+
+    public static final String NAME = "synthetic";
+    public static final String VERSION = "1";
+
+    private static final String[] CONSEQUENCE_TYPES = {"SO:0001583", "SO:0001819", "SO:0001627", "SO:0001631", "SO:0001587"};
+    private static final String[] POPULATIONS = {"1kG_phase3:ALL", "GNOMAD_GENOMES:ALL"};
+
+    public SyntheticVariantAnnotator(StorageConfiguration configuration, ProjectMetadata projectMetadata, ObjectMap options)
+            throws VariantAnnotatorException {
+        super(configuration, projectMetadata, options);
+    }
+
+    @Override
+    public List<VariantAnnotation> annotate(List<Variant> variants) throws VariantAnnotatorException {
+        List<VariantAnnotation> annotations = new ArrayList<>(variants.size());
+        for (Variant variant : variants) {
+            annotations.add(annotate(variant));
+        }
+        return annotations;
+    }
+
+    private VariantAnnotation annotate(Variant variant) {
+        // Seed with the variant position, so the annotation of a variant is always the same
+        Random random = new Random(variant.getStart());
+
+        VariantAnnotation annotation = new VariantAnnotation();
+        annotation.setChromosome(variant.getChromosome());
+        annotation.setStart(variant.getStart());
+        annotation.setEnd(variant.getEnd());
+        annotation.setReference(variant.getReference());
+        annotation.setAlternate(variant.getAlternate());
+        annotation.setId(".");
+
+        int gene = variant.getStart() / 50000;
+        ConsequenceType ct = new ConsequenceType();
+        ct.setGeneName("GENE" + gene);
+        ct.setEnsemblGeneId(String.format("ENSG%011d", gene));
+        ct.setEnsemblTranscriptId(String.format("ENST%011d", gene));
+        ct.setBiotype("protein_coding");
+        ct.setTranscriptAnnotationFlags(Collections.singletonList("basic"));
+        ct.setExonOverlap(Collections.emptyList());
+        SequenceOntologyTerm so = new SequenceOntologyTerm();
+        so.setAccession(CONSEQUENCE_TYPES[random.nextInt(CONSEQUENCE_TYPES.length)]);
+        so.setName(so.getAccession());
+        ct.setSequenceOntologyTerms(Collections.singletonList(so));
+        annotation.setConsequenceTypes(Collections.singletonList(ct));
+
+        List<PopulationFrequency> populationFrequencies = new ArrayList<>(POPULATIONS.length);
+        for (String population : POPULATIONS) {
+            String[] split = population.split(":");
+            PopulationFrequency frequency = new PopulationFrequency();
+            frequency.setStudy(split[0]);
+            frequency.setPopulation(split[1]);
+            frequency.setRefAllele(variant.getReference());
+            frequency.setAltAllele(variant.getAlternate());
+            float af = random.nextFloat() / 2;
+            frequency.setAltAlleleFreq(af);
+            frequency.setRefAlleleFreq(1 - af);
+            populationFrequencies.add(frequency);
+        }
+        annotation.setPopulationFrequencies(populationFrequencies);
+        annotation.setConservation(Collections.singletonList(new Score(random.nextDouble(), "phastCons", "")));
+        annotation.setFunctionalScore(Collections.singletonList(new Score(random.nextDouble() * 40, "cadd_scaled", "")));
+        return annotation;
+    }
+
+    @Override
+    public ProjectMetadata.VariantAnnotatorProgram getVariantAnnotatorProgram() {
+        return new ProjectMetadata.VariantAnnotatorProgram(NAME, VERSION, null);
+    }
+
+    @Override
+    public List<ObjectMap> getVariantAnnotatorSourceVersion() {
+        return Collections.singletonList(new ObjectMap("name", NAME).append("version", VERSION));
+    }
+}
@@ -0,0 +1,118 @@
+package org.opencb.opencga.storage.benchmark.variant.pipeline;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Generates reproducible VCF files with random variants and genotypes.
+ *
+ * Variants are distributed evenly across the chromosomes, sorted by position. Alternate allele frequencies are skewed
+ * towards rare variants, and genotypes follow Hardy-Weinberg proportions, so the genotype distribution resembles a
+ * real cohort.
+ */
+public class SyntheticVcfGenerator {
+
+    private static final char[] BASES = {'A', 'C', 'G', 'T'};
+    private static final int MAX_DISTANCE = 200;
+
+    private final int numVariants;
+    private final int numSamples;
+    private final int numChromosomes;
+    private final long seed;
+
+    public SyntheticVcfGenerator(PipelineBenchmarkProfile profile) {
+        this(profile.getNumVariants(), profile.getNumSamples(), profile.getNumChromosomes(), profile.getSeed());
+    }
+
+    public SyntheticVcfGenerator(int numVariants, int numSamples, int numChromosomes, long seed) {
+        if (numChromosomes < 1) {
+            throw new IllegalArgumentException("Expected at least one chromosome");
+        }
+        this.numVariants = numVariants;
+        this.numSamples = numSamples;
+        this.numChromosomes = numChromosomes;
+        this.seed = seed;
+    }
+
+    /**
+     * Write the VCF file. The output is compressed if the file name ends with ".gz".
+     *
+     * @param output Output file
+     * @return The output file
+     * @throws IOException on error writing the file
+     */
+    public Path generate(Path output) throws IOException {
+        OutputStream os = Files.newOutputStream(output);
+        if (output.getFileName().toString().endsWith(".gz")) {
+            os = new GZIPOutputStream(os, 64 * 1024);
+        }
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(os, StandardCharsets.UTF_8), 1024 * 1024)) {
+            generate(writer);
+        }
+        return output;
+    }
+
+    public void generate(Writer writer) throws IOException {
+        Random random = new Random(seed);
+        writeHeader(writer);
+
+        StringBuilder sb = new StringBuilder(32 + numSamples * 8);
+        int variantsPerChromosome = (numVariants + numChromosomes - 1) / numChromosomes;
+        int written = 0;
+        for (int chr = 1; chr <= numChromosomes && written < numVariants; chr++) {
+            int position = 0;
+            for (int i = 0; i < variantsPerChromosome && written < numVariants; i++, written++) {
+                position += 1 + random.nextInt(MAX_DISTANCE);
+                int reference = random.nextInt(BASES.length);
+                int alternate = (reference + 1 + random.nextInt(BASES.length - 1)) % BASES.length;
+                // Skewed towards rare variants
+                double af = Math.pow(random.nextDouble(), 3) / 2;
+
+                sb.setLength(0);
+                sb.append(chr).append('\t')
+                        .append(position).append('\t')
+                        .append('.').append('\t')
+                        .append(BASES[reference]).append('\t')
+                        .append(BASES[alternate]).append('\t')
+                        .append(10 + random.nextInt(90)).append('\t')
+                        .append("PASS").append('\t')
+                        .append('.');
+                if (numSamples > 0) {
+                    sb.append('\t').append("GT:DP");
+                }
+                for (int s = 0; s < numSamples; s++) {
+                    sb.append('\t')
+                            .append(random.nextDouble() < af ? '1' : '0')
+                            .append('/')
+                            .append(random.nextDouble() < af ? '1' : '0')
+                            .append(':')
+                            .append(random.nextInt(60));
+                }
+                sb.append('\n');
+                writer.append(sb);
+            }
+        }
+    }
+
+    private void writeHeader(Writer writer) throws IOException {
+        writer.write("##fileformat=VCFv4.2\n");
+        writer.write("##FILTER=<ID=PASS,Description=\"All filters passed\">\n");
+        writer.write("##FORMAT=<ID=GT,Number=1,Type=String,Description=\"Genotype\">\n");
+        writer.write("##FORMAT=<ID=DP,Number=1,Type=Integer,Description=\"Read depth\">\n");
+        for (int chr = 1; chr <= numChromosomes; chr++) {
+            writer.write("##contig=<ID=" + chr + ">\n");
+        }
+        writer.write("#CHROM\tPOS\tID\tREF\tALT\tQUAL\tFILTER\tINFO");
+        if (numSamples > 0) {
+            writer.write("\tFORMAT");
+            for (int s = 0; s < numSamples; s++) {
+                writer.write("\tSAMPLE_" + s);
+            }
+        }
+        writer.write('\n');
+    }
+}
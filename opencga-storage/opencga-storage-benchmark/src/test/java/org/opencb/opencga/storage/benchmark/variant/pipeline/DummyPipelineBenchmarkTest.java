@@ -0,0 +1,6 @@
+package org.opencb.opencga.storage.benchmark.variant.pipeline;
+
+import org.opencb.opencga.storage.core.variant.dummy.DummyVariantStorageTest;
+
+public class DummyPipelineBenchmarkTest extends PipelineBenchmarkTest implements DummyVariantStorageTest {
+}
@@ -0,0 +1,12 @@
+package org.opencb.opencga.storage.benchmark.variant.pipeline;
+
+import org.junit.ClassRule;
+import org.junit.rules.ExternalResource;
+import org.opencb.opencga.storage.hadoop.variant.HadoopVariantStorageTest;
+
+public class HadoopPipelineBenchmarkIT extends PipelineBenchmarkTest implements HadoopVariantStorageTest {
+
+    @ClassRule
+    public static ExternalResource externalResource = new HadoopExternalResource();
+
+}
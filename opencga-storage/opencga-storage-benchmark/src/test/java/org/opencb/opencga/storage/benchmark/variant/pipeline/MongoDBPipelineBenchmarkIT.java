@@ -0,0 +1,6 @@
+package org.opencb.opencga.storage.benchmark.variant.pipeline;
+
+import org.opencb.opencga.storage.mongodb.variant.MongoDBVariantStorageTest;
+
+public class MongoDBPipelineBenchmarkIT extends PipelineBenchmarkTest implements MongoDBVariantStorageTest {
+}
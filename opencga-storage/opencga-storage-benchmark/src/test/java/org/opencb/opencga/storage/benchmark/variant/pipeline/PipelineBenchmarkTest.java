@@ -0,0 +1,58 @@
+package org.opencb.opencga.storage.benchmark.variant.pipeline;
+
+import org.junit.Test;
+import org.opencb.commons.datastore.core.ObjectMap;
+import org.opencb.commons.datastore.core.Query;
+import org.opencb.opencga.storage.core.variant.VariantStorageBaseTest;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs the pipeline benchmark on the storage engine of the test. The profile and number of threads can be
+ * selected with the system properties "pipeline.benchmark.profile" and "pipeline.benchmark.threads".
+ * The MongoDB and Hadoop runs start mini-clusters, so they are only run with the "pipeline-benchmark" profile.
+ */
+public abstract class PipelineBenchmarkTest extends VariantStorageBaseTest {
+
+    @Test
+    public void testPipelineBenchmark() throws Exception {
+        PipelineBenchmarkProfile profile = PipelineBenchmarkProfile.of(System.getProperty("pipeline.benchmark.profile",
+                PipelineBenchmarkProfile.TINY));
+        profile.setThreads(Integer.getInteger("pipeline.benchmark.threads", 2));
+
+        Path outdir = Paths.get(newOutputUri());
+        ObjectMap engineOptions = new ObjectMap(variantStorageEngine.getOptions());
+        List<PipelineStageResult> results = new PipelineBenchmarkRunner(variantStorageEngine, outdir).run(profile);
+        // The options of the engine are not modified
+        assertEquals(engineOptions, variantStorageEngine.getOptions());
+
+        assertEquals(profile.getStages().size(), results.size());
+        for (int i = 0; i < results.size(); i++) {
+            PipelineStageResult result = results.get(i);
+            assertEquals(result.toString(), profile.getStages().get(i), result.getStage());
+            assertEquals(variantStorageEngine.getStorageEngineId(), result.getStorageEngine());
+            assertTrue(result.getElapsedMillis() >= 0);
+            assertTrue(result.getPeakHeapBytes() > 0);
+        }
+        // Records are counted from the result of each stage
+        long numVariants = variantStorageEngine.count(new Query(VariantQueryParam.STUDY.key(), PipelineBenchmarkRunner.STUDY)).first();
+        assertTrue(numVariants > 0);
+        assertEquals(profile.getNumVariants(), getResult(results, PipelineBenchmarkProfile.Stage.TRANSFORM).getRecords());
+        assertEquals(numVariants, getResult(results, PipelineBenchmarkProfile.Stage.LOAD).getRecords());
+        assertEquals(numVariants, getResult(results, PipelineBenchmarkProfile.Stage.EXPORT).getRecords());
+        assertTrue(Files.exists(outdir.resolve("pipeline-benchmark." + variantStorageEngine.getStorageEngineId() + "."
+                + profile.getName() + "." + profile.getThreads() + "threads.json")));
+    }
+
+    private static PipelineStageResult getResult(List<PipelineStageResult> results, PipelineBenchmarkProfile.Stage stage) {
+        return results.stream().filter(result -> result.getStage() == stage).findFirst().orElseThrow(AssertionError::new);
+    }
+
+}
@@ -0,0 +1,56 @@
+package org.opencb.opencga.storage.benchmark.variant.pipeline;
+
+import org.junit.Test;
+
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SyntheticVcfGeneratorTest {
+
+    @Test
+    public void testGenerate() throws Exception {
+        String vcf = generate(new SyntheticVcfGenerator(101, 5, 3, 1));
+        List<String> lines = Arrays.stream(vcf.split("\n")).filter(line -> !line.startsWith("#")).collect(Collectors.toList());
+        assertEquals(101, lines.size());
+
+        String previousChr = null;
+        int previousPosition = 0;
+        for (String line : lines) {
+            String[] fields = line.split("\t");
+            assertEquals(9 + 5, fields.length);
+            assertTrue(!fields[3].equals(fields[4]));
+            int position = Integer.parseInt(fields[1]);
+            if (fields[0].equals(previousChr)) {
+                assertTrue(position > previousPosition);
+            }
+            previousChr = fields[0];
+            previousPosition = position;
+        }
+    }
+
+    @Test
+    public void testReproducible() throws Exception {
+        assertEquals(generate(new SyntheticVcfGenerator(100, 10, 2, 5)), generate(new SyntheticVcfGenerator(100, 10, 2, 5)));
+    }
+
+    @Test
+    public void testNoSamples() throws Exception {
+        String vcf = generate(new SyntheticVcfGenerator(10, 0, 1, 1));
+        for (String line : vcf.split("\n")) {
+            if (!line.startsWith("##")) {
+                assertEquals(8, line.split("\t").length);
+            }
+        }
+    }
+
+    private static String generate(SyntheticVcfGenerator generator) throws Exception {
+        StringWriter writer = new StringWriter();
+        generator.generate(writer);
+        return writer.toString();
+    }
+}
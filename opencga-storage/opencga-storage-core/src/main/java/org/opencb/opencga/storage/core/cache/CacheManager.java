@@ -16,182 +16,226 @@
 
 package org.opencb.opencga.storage.core.cache;
 
+import com.google.common.cache.CacheStats;
 import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.opencb.commons.datastore.core.ObjectMap;
 import org.opencb.commons.datastore.core.Query;
 import org.opencb.commons.datastore.core.QueryOptions;
-import org.opencb.commons.datastore.core.QueryResult;
 import org.opencb.opencga.storage.core.config.CacheConfiguration;
 import org.opencb.opencga.storage.core.config.StorageConfiguration;
-import org.redisson.Config;
-import org.redisson.Redisson;
-import org.redisson.RedissonClient;
-import org.redisson.client.RedisConnectionException;
-import org.redisson.codec.JsonJacksonCodec;
-import org.redisson.codec.KryoCodec;
-import org.redisson.core.RKeys;
-import org.redisson.core.RMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.util.*;
-import java.util.regex.Pattern;
 
 /**
+ * Two tier cache of serialized query results.
+ *
+ * The first tier is an in-process off-heap cache, bounded by size. The second tier is an optional {@link RemoteCache},
+ * shared between all the processes using the same configuration. Values found only in the remote tier are copied into the local tier.
+ *
  * Created by wasim on 26/10/16.
  */
-public class CacheManager {
+public class CacheManager implements AutoCloseable {
 
-    private StorageConfiguration storageConfiguration;
+    public static final String CACHE = "cache";
+    public static final String REDIS = "redis";
 
-    private Config redissonConfig;
-    private Set<String> allowedTypesSet;
-    private RedissonClient redissonClient;
-    private boolean redisState;
+    private static final String PREFIX_DATABASE_KEY = "ocga:";
+    private static final Set<String> IGNORED_KEYS = new HashSet<>(Arrays.asList(CACHE, "sId", QueryOptions.TIMEOUT));
 
+    private final CacheConfiguration cacheConfiguration;
+    private final Set<String> allowedTypesSet;
+    private final OffHeapCache localCache;
+    private final RemoteCache remoteCache;
 
-    private static final String PREFIX_DATABASE_KEY = "ocga:";
+    private static Logger logger = LoggerFactory.getLogger(CacheManager.class);
 
     public CacheManager() {
+        this((CacheConfiguration) null);
     }
 
     public CacheManager(StorageConfiguration configuration) {
+        this(configuration == null ? null : configuration.getCache());
+    }
 
-        CacheConfiguration cache;
-
-        if (configuration != null && configuration.getCache() != null) {
-
-            this.storageConfiguration = configuration;
-
-            cache = configuration.getCache();
-            redissonConfig = new Config();
-
-            String host = (StringUtils.isNotEmpty(cache.getHost()))
-                    ? cache.getHost()
-                    : CacheConfiguration.DEFAULT_HOST;
-            redissonConfig.useSingleServer().setAddress(host);
-
-            String codec = (StringUtils.isNotEmpty(cache.getSerialization()))
-                    ? cache.getSerialization()
-                    : CacheConfiguration.DEFAULT_SERIALIZATION;
-
-            this.allowedTypesSet = new HashSet<>(Arrays.asList(cache.getAllowedTypes().split(",")));
-
-
-            if (StringUtils.isNotEmpty(cache.getPassword())) {
-                redissonConfig.useSingleServer().setPassword(cache.getPassword());
-            }
-
-            if ("KRYO".equalsIgnoreCase(codec)) {
-                redissonConfig.setCodec(new KryoCodec());
-            } else {
-                redissonConfig.setCodec(new JsonJacksonCodec());
-            }
-
-            redisState = true;
-
-//            redissonClient = Redisson.create(redissonConfig);
-            redissonClient = null;
+    public CacheManager(CacheConfiguration cache) {
+        if (cache != null && cache.isActive()) {
+            cacheConfiguration = cache;
+            String allowedTypes = StringUtils.isNotEmpty(cache.getAllowedTypes())
+                    ? cache.getAllowedTypes()
+                    : CacheConfiguration.DEFAULT_ALLOWED_TYPE;
+            allowedTypesSet = new HashSet<>(Arrays.asList(allowedTypes.split(",")));
+            localCache = new OffHeapCache(cache.getLocalMaxSize(), cache.getTtl());
+            remoteCache = buildRemoteCache(cache);
+        } else {
+            cacheConfiguration = cache;
+            allowedTypesSet = Collections.emptySet();
+            localCache = null;
+            remoteCache = null;
         }
     }
 
-
-    public <T> QueryResult<T> get(String key) {
-
-        QueryResult<T> queryResult = new QueryResult<>();
-        if (isActive()) {
-            long start = System.currentTimeMillis();
-            RMap<Integer, Map<String, Object>> map = getRedissonClient().getMap(key);
-
-            try {
-                // We only retrieve the first field of the HASH, which is the only one that exist.
-                Map<Integer, Map<String, Object>> result = map.getAll(new HashSet<>(Collections.singletonList(0)));
-
-                if (result != null && !result.isEmpty()) {
-                    Object resultMap = result.get(0).get("result");
-                    queryResult = (QueryResult<T>) resultMap;
-                    queryResult.setDbTime((int) (System.currentTimeMillis() - start));
-                }
-            } catch (RedisConnectionException e) {
-                redisState = false;
-                queryResult.setWarningMsg("Unable to connect to Redis Cache, Please query WITHOUT Cache (Falling back to Database)");
-                return queryResult;
-            }
+    /**
+     * Get a value from the cache.
+     *
+     * @param key Key, as returned by {@link #createKey}
+     * @return    Serialized value, or null if missing
+     */
+    public byte[] get(String key) {
+        if (!isActive()) {
+            return null;
         }
-        return queryResult;
-    }
-
-    public void set(String key, Query query, QueryResult queryResult) {
-
-        if (isActive()) {
-            if (queryResult.getDbTime() >= storageConfiguration.getCache().getSlowThreshold()
-                    && queryResult.getResult().size() >= storageConfiguration.getCache().getMaxResultSize()) {
-                RMap<Integer, Map<String, Object>> map = getRedissonClient().getMap(key);
-                Map<String, Object> record = new HashMap<>();
-                record.put("query", query);
-                record.put("result", queryResult);
-                try {
-                    map.fastPut(0, record);
-                } catch (RedisConnectionException e) {
-                    redisState = false;
-                    queryResult.setWarningMsg("Unable to connect to Redis Cache, Please query WITHOUT Cache (Falling back to Database)");
-                }
+        byte[] value = localCache.get(key);
+        if (value == null && remoteCache != null) {
+            value = remoteCache.get(key);
+            if (value != null) {
+                localCache.put(key, value);
             }
         }
+        return value;
     }
 
-    public String createKey(String studyId, String allowedType, Query query, QueryOptions queryOptions) {
+    /**
+     * Store a value in all the cache tiers.
+     *
+     * @param key   Key, as returned by {@link #createKey}
+     * @param value Serialized value
+     */
+    public void set(String key, byte[] value) {
+        if (!isActive()) {
+            return;
+        }
+        localCache.put(key, value);
+        if (remoteCache != null) {
+            remoteCache.put(key, value, cacheConfiguration.getTtl());
+        }
+    }
 
-        queryOptions.remove("cache");
-        queryOptions.remove("sId");
+    /**
+     * Check if a result is worth to be cached. Only slow queries with not too many results are stored.
+     *
+     * @param dbTime     Time in milliseconds to obtain the result
+     * @param numResults Number of elements in the result
+     * @return           If the result should be cached
+     */
+    public boolean isCacheable(long dbTime, long numResults) {
+        return isActive()
+                && dbTime >= cacheConfiguration.getSlowThreshold()
+                && numResults <= cacheConfiguration.getMaxResultSize();
+    }
 
-        StringBuilder key = new StringBuilder(PREFIX_DATABASE_KEY);
-        key.append(studyId).append(":").append(allowedType);
-        SortedMap<String, SortedSet<Object>> map = new TreeMap<>();
+    /**
+     * Build a normalized key for the given query. Keys are case insensitive and independent of the parameters order.
+     * Values order is preserved, as it may modify the result.
+     *
+     * @param namespace    Namespace of the key. Used to invalidate entries.
+     * @param allowedType  Result type
+     * @param query        Query
+     * @param queryOptions Query options
+     * @return Key
+     */
+    public String createKey(String namespace, String allowedType, Query query, QueryOptions queryOptions) {
+        SortedMap<String, List<String>> map = new TreeMap<>();
+        addToKey(map, query);
+        addToKey(map, queryOptions);
+
+        return getKeyPrefix(namespace) + allowedType + ":" + DigestUtils.sha1Hex(map.toString());
+    }
 
-        for (String item : query.keySet()) {
-            map.put(item.toLowerCase(), new TreeSet<>(query.getAsStringList(item)));
+    private void addToKey(SortedMap<String, List<String>> map, ObjectMap params) {
+        if (params == null) {
+            return;
         }
-
-        for (String item : queryOptions.keySet()) {
-            map.put(item.toLowerCase(), new TreeSet<>(queryOptions.getAsStringList(item)));
+        for (Map.Entry<String, Object> entry : params.entrySet()) {
+            if (IGNORED_KEYS.contains(entry.getKey()) || entry.getValue() == null) {
+                continue;
+            }
+            List<String> values = params.getAsStringList(entry.getKey());
+            if (!values.isEmpty()) {
+                map.put(entry.getKey().toLowerCase(), values);
+            }
         }
+    }
 
-        String sha1 = DigestUtils.sha1Hex(map.toString());
-        key.append(":").append(sha1);
+    public String getKeyPrefix(String namespace) {
+        return PREFIX_DATABASE_KEY + namespace + ":";
+    }
 
-        queryOptions.add("cache", "true");
-        return key.toString();
+    /**
+     * Remove all the entries of the given namespace from the local cache tier.
+     *
+     * Remote entries are not removed, as scanning the keys of the remote tier is expensive. Callers should include
+     * a version in the keys to make the outdated remote entries unreachable.
+     *
+     * @param namespace Namespace
+     */
+    public void invalidate(String namespace) {
+        if (!isActive()) {
+            return;
+        }
+        localCache.invalidate(getKeyPrefix(namespace));
     }
 
     public boolean isActive() {
-        return storageConfiguration.getCache().isActive() && redisState;
+        return localCache != null;
     }
 
     public boolean isTypeAllowed(String type) {
         return allowedTypesSet.contains(type);
     }
 
-    public void clear() {
-        RKeys redisKeys = getRedissonClient().getKeys();
-        redisKeys.deleteByPattern(PREFIX_DATABASE_KEY + "*");
+    /**
+     * @return Statistics of the local cache tier.
+     */
+    public CacheStats getLocalStats() {
+        return isActive() ? localCache.stats() : new CacheStats(0, 0, 0, 0, 0, 0);
     }
 
-    public void clear(Pattern pattern) {
-        RKeys redisKeys = getRedissonClient().getKeys();
-        redisKeys.deleteByPattern(pattern.toString());
+    public void clear() {
+        if (!isActive()) {
+            return;
+        }
+        localCache.clear();
+        if (remoteCache != null) {
+            remoteCache.invalidate(PREFIX_DATABASE_KEY);
+        }
     }
 
+    @Override
     public void close() {
-        if (redissonClient != null) {
-            redissonClient.shutdown();
-            redissonClient = null;
+        if (localCache != null) {
+            localCache.clear();
+        }
+        if (remoteCache != null) {
+            remoteCache.close();
         }
     }
 
-    private synchronized RedissonClient getRedissonClient() {
-        if (redissonClient == null) {
-            redissonClient = Redisson.create(redissonConfig);
+    private static RemoteCache buildRemoteCache(CacheConfiguration cache) {
+        String remote = cache.getRemote();
+        if (StringUtils.isEmpty(remote)) {
+            return null;
+        } else if (REDIS.equalsIgnoreCase(remote)) {
+            return new RedisRemoteCache(cache);
+        } else {
+            try {
+                Class<?> clazz = Class.forName(remote);
+                return (RemoteCache) clazz.getConstructor(CacheConfiguration.class).newInstance(cache);
+            } catch (ReflectiveOperationException | ClassCastException e) {
+                logger.warn("Unable to create remote cache '" + remote + "'. Use only local cache.", e);
+                return null;
+            }
         }
-        return redissonClient;
     }
 
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("CacheManager{");
+        sb.append("active=").append(isActive());
+        sb.append(", remote=").append(remoteCache == null ? null : remoteCache.getClass().getSimpleName());
+        sb.append('}');
+        return sb.toString();
+    }
 }
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.core.cache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-process cache of serialized values.
+ *
+ * Values are copied into direct byte buffers, so they are stored out of the java heap and do not increase the GC pressure.
+ * The cache is bounded by the total number of bytes. Least recently used entries are evicted first.
+ * Direct memory is limited by the JVM parameter -XX:MaxDirectMemorySize, which should be larger than the max size of this cache.
+ */
+public class OffHeapCache {
+
+    private final Cache<String, ByteBuffer> cache;
+
+    public OffHeapCache(long maxSizeBytes, long ttlSeconds) {
+        cache = CacheBuilder.newBuilder()
+                .maximumWeight(maxSizeBytes)
+                .weigher((String key, ByteBuffer value) -> value.capacity() + key.length() * 2)
+                .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+    }
+
+    public byte[] get(String key) {
+        ByteBuffer buffer = cache.getIfPresent(key);
+        if (buffer == null) {
+            return null;
+        }
+        byte[] value = new byte[buffer.capacity()];
+        // Use a duplicate to avoid concurrent modifications of the buffer position
+        buffer.duplicate().get(value);
+        return value;
+    }
+
+    public void put(String key, byte[] value) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(value.length);
+        buffer.put(value);
+        buffer.flip();
+        cache.put(key, buffer);
+    }
+
+    public void invalidate(String keyPrefix) {
+        cache.asMap().keySet().removeIf(key -> key.startsWith(keyPrefix));
+    }
+
+    public void clear() {
+        cache.invalidateAll();
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.core.cache;
+
+import org.apache.commons.lang3.StringUtils;
+import org.opencb.opencga.storage.core.config.CacheConfiguration;
+import org.redisson.Config;
+import org.redisson.Redisson;
+import org.redisson.RedissonClient;
+import org.redisson.client.RedisConnectionException;
+import org.redisson.codec.JsonJacksonCodec;
+import org.redisson.codec.KryoCodec;
+import org.redisson.core.RBucket;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Remote cache tier backed by Redis.
+ *
+ * Created by wasim on 26/10/16.
+ */
+public class RedisRemoteCache implements RemoteCache {
+
+    private final Config redissonConfig;
+    private RedissonClient redissonClient;
+    private volatile boolean redisState;
+
+    private static Logger logger = LoggerFactory.getLogger(RedisRemoteCache.class);
+
+    public RedisRemoteCache(CacheConfiguration cache) {
+        redissonConfig = new Config();
+
+        String host = (StringUtils.isNotEmpty(cache.getHost()))
+                ? cache.getHost()
+                : CacheConfiguration.DEFAULT_HOST;
+        redissonConfig.useSingleServer().setAddress(host);
+
+        String codec = (StringUtils.isNotEmpty(cache.getSerialization()))
+                ? cache.getSerialization()
+                : CacheConfiguration.DEFAULT_SERIALIZATION;
+
+        if (StringUtils.isNotEmpty(cache.getPassword())) {
+            redissonConfig.useSingleServer().setPassword(cache.getPassword());
+        }
+
+        if ("KRYO".equalsIgnoreCase(codec)) {
+            redissonConfig.setCodec(new KryoCodec());
+        } else {
+            redissonConfig.setCodec(new JsonJacksonCodec());
+        }
+
+        redisState = true;
+    }
+
+    @Override
+    public byte[] get(String key) {
+        if (!redisState) {
+            return null;
+        }
+        try {
+            RBucket<byte[]> bucket = getRedissonClient().getBucket(key);
+            return bucket.get();
+        } catch (RedisConnectionException e) {
+            connectionError(e);
+            return null;
+        }
+    }
+
+    @Override
+    public void put(String key, byte[] value, long ttlSeconds) {
+        if (!redisState) {
+            return;
+        }
+        try {
+            RBucket<byte[]> bucket = getRedissonClient().getBucket(key);
+            bucket.set(value, ttlSeconds, TimeUnit.SECONDS);
+        } catch (RedisConnectionException e) {
+            connectionError(e);
+        }
+    }
+
+    @Override
+    public void invalidate(String keyPrefix) {
+        if (!redisState) {
+            return;
+        }
+        try {
+            getRedissonClient().getKeys().deleteByPattern(keyPrefix + "*");
+        } catch (RedisConnectionException e) {
+            connectionError(e);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (redissonClient != null) {
+            redissonClient.shutdown();
+            redissonClient = null;
+        }
+    }
+
+    private void connectionError(RedisConnectionException e) {
+        // Do not try to connect again. Fall back to the local cache
+        redisState = false;
+        logger.warn("Unable to connect to Redis Cache. Disable remote cache.", e);
+    }
+
+    private synchronized RedissonClient getRedissonClient() {
+        if (redissonClient == null) {
+            redissonClient = Redisson.create(redissonConfig);
+        }
+        return redissonClient;
+    }
+}
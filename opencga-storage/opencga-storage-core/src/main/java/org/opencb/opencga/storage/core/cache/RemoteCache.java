@@ -0,0 +1,56 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.core.cache;
+
+import org.opencb.opencga.storage.core.config.CacheConfiguration;
+
+/**
+ * Optional remote tier of the {@link CacheManager}, shared between several processes.
+ *
+ * Implementations must provide a public constructor receiving a {@link CacheConfiguration}.
+ * Errors should not be propagated, as the cache is never required to answer a query.
+ */
+public interface RemoteCache extends AutoCloseable {
+
+    /**
+     * Get a value from the remote cache.
+     *
+     * @param key Key
+     * @return    Stored value, or null if missing
+     */
+    byte[] get(String key);
+
+    /**
+     * Store a value in the remote cache.
+     *
+     * @param key        Key
+     * @param value      Value
+     * @param ttlSeconds Time to live in seconds
+     */
+    void put(String key, byte[] value, long ttlSeconds);
+
+    /**
+     * Remove all the values with a key starting with the given prefix.
+     * This might require scanning all the keys, so it is only used to clear the whole cache.
+     *
+     * @param keyPrefix Key prefix
+     */
+    void invalidate(String keyPrefix);
+
+    @Override
+    void close();
+}
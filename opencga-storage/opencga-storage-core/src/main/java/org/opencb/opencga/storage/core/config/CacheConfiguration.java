@@ -40,12 +40,38 @@ public class CacheConfiguration {
      */
     private String allowedTypes;
 
-    public static final boolean DEFAULT_ACTVE = true;
+    /**
+     * Max size in bytes of the in-process cache. Entries are stored off-heap.
+     */
+    private long localMaxSize;
+
+    /**
+     * Time to live in seconds of each entry.
+     */
+    private long ttl;
+
+    /**
+     * Time in milliseconds to reuse the data version read from the metadata store. Updates from other processes
+     * may take this long to be visible in the variant query results cache.
+     */
+    private long dataVersionTtl;
+
+    /**
+     * Remote cache tier. Accepted values are: empty (no remote cache), redis, or any class implementing
+     * {@link org.opencb.opencga.storage.core.cache.RemoteCache}.
+     */
+    private String remote;
+
+    public static final boolean DEFAULT_ACTVE = false;
     public static final String DEFAULT_SERIALIZATION = "json";
     public static final String DEFAULT_ALLOWED_TYPE = "aln,var";
     public static final String DEFAULT_HOST = "localhost:6379";
     public static final String DEFAULT_PASSWORD = "";
     public static final int DEFAULT_MAX_FILE_SIZE = 500;
+    public static final long DEFAULT_LOCAL_MAX_SIZE = 256L * 1024 * 1024;
+    public static final long DEFAULT_TTL = 3600;
+    public static final long DEFAULT_DATA_VERSION_TTL = 1000;
+    public static final String DEFAULT_REMOTE = "";
 
     public CacheConfiguration() {
         this(DEFAULT_HOST, DEFAULT_ACTVE, DEFAULT_SERIALIZATION, 50, DEFAULT_MAX_FILE_SIZE, DEFAULT_PASSWORD,
@@ -61,6 +87,10 @@ public class CacheConfiguration {
         this.maxResultSize = maxFileSize;
         this.password = password;
         this.allowedTypes = allowedTypes;
+        this.localMaxSize = DEFAULT_LOCAL_MAX_SIZE;
+        this.ttl = DEFAULT_TTL;
+        this.dataVersionTtl = DEFAULT_DATA_VERSION_TTL;
+        this.remote = DEFAULT_REMOTE;
     }
 
     @Override
@@ -72,6 +102,10 @@ public class CacheConfiguration {
                 + ", slowThreshold=" + slowThreshold
                 + ", maxResultSize=" + maxResultSize
                 + ", allowedTypes='" + allowedTypes + '\''
+                + ", localMaxSize=" + localMaxSize
+                + ", ttl=" + ttl
+                + ", dataVersionTtl=" + dataVersionTtl
+                + ", remote='" + remote + '\''
                 + '}');
         return sb.toString();
     }
@@ -138,4 +172,40 @@ public class CacheConfiguration {
         this.allowedTypes = allowedTypes;
         return this;
     }
+
+    public long getLocalMaxSize() {
+        return localMaxSize;
+    }
+
+    public CacheConfiguration setLocalMaxSize(long localMaxSize) {
+        this.localMaxSize = localMaxSize;
+        return this;
+    }
+
+    public long getTtl() {
+        return ttl;
+    }
+
+    public CacheConfiguration setTtl(long ttl) {
+        this.ttl = ttl;
+        return this;
+    }
+
+    public long getDataVersionTtl() {
+        return dataVersionTtl;
+    }
+
+    public CacheConfiguration setDataVersionTtl(long dataVersionTtl) {
+        this.dataVersionTtl = dataVersionTtl;
+        return this;
+    }
+
+    public String getRemote() {
+        return remote;
+    }
+
+    public CacheConfiguration setRemote(String remote) {
+        this.remote = remote;
+        return this;
+    }
 }
@@ -0,0 +1,205 @@
+package org.opencb.opencga.storage.core.io.bit;
+
+/**
+ * Bulk pack and unpack of fixed-width int arrays.
+ *
+ * Uses the same bit layout as {@link BitOutputStream} and {@link BitInputStream}: values are written one after the other,
+ * starting from the least significant bit of each byte. Packing an array is equivalent to writing each value
+ * with {@code BitOutputStream.write(value, bitWidth)}.
+ *
+ * Widths that divide a byte (1, 2, 4 and 8) use specialized branch-free loops, that the JIT can unroll and vectorize.
+ */
+public final class BitPacking {
+
+    private BitPacking() {
+    }
+
+    /**
+     * Number of bytes needed to pack a number of values.
+     *
+     * @param numValues Number of values
+     * @param bitWidth  Bits per value
+     * @return Number of bytes
+     */
+    public static int packedSize(int numValues, int bitWidth) {
+        return (int) (((long) numValues * bitWidth + Byte.SIZE - 1) / Byte.SIZE);
+    }
+
+    /**
+     * Minimum number of bits required to represent a value, as unsigned.
+     *
+     * @param value Value
+     * @return Number of bits. At least 1.
+     */
+    public static int bitWidth(int value) {
+        return Math.max(1, Integer.SIZE - Integer.numberOfLeadingZeros(value));
+    }
+
+    /**
+     * Minimum number of bits required to represent all the values of an array, as unsigned.
+     *
+     * @param values Values
+     * @param offset Array offset
+     * @param length Number of values
+     * @return Number of bits. At least 1.
+     */
+    public static int bitWidth(int[] values, int offset, int length) {
+        int or = 0;
+        for (int i = offset; i < offset + length; i++) {
+            or |= values[i];
+        }
+        return bitWidth(or);
+    }
+
+    /**
+     * Pack an array of values using a fixed number of bits per value.
+     * Only the lower {@code bitWidth} bits of each value are written.
+     *
+     * @param values     Values to pack
+     * @param offset     Array offset
+     * @param length     Number of values to pack
+     * @param bitWidth   Bits per value. From 1 to 32
+     * @param dest       Destination array. Requires at least {@link #packedSize} bytes
+     * @param destOffset Destination offset
+     * @return Number of bytes written
+     */
+    public static int pack(int[] values, int offset, int length, int bitWidth, byte[] dest, int destOffset) {
+        checkBitWidth(bitWidth);
+        switch (bitWidth) {
+            case 1:
+            case 2:
+            case 4:
+                return packSubByte(values, offset, length, bitWidth, dest, destOffset);
+            case 8:
+                for (int i = 0; i < length; i++) {
+                    dest[destOffset + i] = (byte) values[offset + i];
+                }
+                return length;
+            default:
+                return packGeneric(values, offset, length, bitWidth, dest, destOffset);
+        }
+    }
+
+    /**
+     * Unpack an array of values packed with a fixed number of bits per value.
+     *
+     * @param src       Packed values
+     * @param srcOffset Source offset
+     * @param dest      Destination array
+     * @param offset    Destination offset
+     * @param length    Number of values to unpack
+     * @param bitWidth  Bits per value. From 1 to 32
+     * @return Number of bytes read
+     */
+    public static int unpack(byte[] src, int srcOffset, int[] dest, int offset, int length, int bitWidth) {
+        checkBitWidth(bitWidth);
+        switch (bitWidth) {
+            case 1:
+            case 2:
+            case 4:
+                return unpackSubByte(src, srcOffset, dest, offset, length, bitWidth);
+            case 8:
+                for (int i = 0; i < length; i++) {
+                    dest[offset + i] = src[srcOffset + i] & 0xFF;
+                }
+                return length;
+            default:
+                return unpackGeneric(src, srcOffset, dest, offset, length, bitWidth);
+        }
+    }
+
+    private static int packSubByte(int[] values, int offset, int length, int bitWidth, byte[] dest, int destOffset) {
+        int valuesPerByte = Byte.SIZE / bitWidth;
+        int mask = (1 << bitWidth) - 1;
+        int fullBytes = length / valuesPerByte;
+        for (int b = 0; b < fullBytes; b++) {
+            int base = offset + b * valuesPerByte;
+            int v = 0;
+            for (int j = 0; j < valuesPerByte; j++) {
+                v |= (values[base + j] & mask) << (j * bitWidth);
+            }
+            dest[destOffset + b] = (byte) v;
+        }
+        int remaining = length - fullBytes * valuesPerByte;
+        if (remaining > 0) {
+            int base = offset + fullBytes * valuesPerByte;
+            int v = 0;
+            for (int j = 0; j < remaining; j++) {
+                v |= (values[base + j] & mask) << (j * bitWidth);
+            }
+            dest[destOffset + fullBytes] = (byte) v;
+            return fullBytes + 1;
+        }
+        return fullBytes;
+    }
+
+    private static int unpackSubByte(byte[] src, int srcOffset, int[] dest, int offset, int length, int bitWidth) {
+        int valuesPerByte = Byte.SIZE / bitWidth;
+        int mask = (1 << bitWidth) - 1;
+        int fullBytes = length / valuesPerByte;
+        for (int b = 0; b < fullBytes; b++) {
+            int base = offset + b * valuesPerByte;
+            int v = src[srcOffset + b];
+            for (int j = 0; j < valuesPerByte; j++) {
+                dest[base + j] = (v >>> (j * bitWidth)) & mask;
+            }
+        }
+        int remaining = length - fullBytes * valuesPerByte;
+        if (remaining > 0) {
+            int base = offset + fullBytes * valuesPerByte;
+            int v = src[srcOffset + fullBytes];
+            for (int j = 0; j < remaining; j++) {
+                dest[base + j] = (v >>> (j * bitWidth)) & mask;
+            }
+            return fullBytes + 1;
+        }
+        return fullBytes;
+    }
+
+    private static int packGeneric(int[] values, int offset, int length, int bitWidth, byte[] dest, int destOffset) {
+        long mask = mask(bitWidth);
+        long acc = 0;
+        int accBits = 0;
+        int p = destOffset;
+        for (int i = offset; i < offset + length; i++) {
+            acc |= (values[i] & mask) << accBits;
+            accBits += bitWidth;
+            while (accBits >= Byte.SIZE) {
+                dest[p++] = (byte) acc;
+                acc >>>= Byte.SIZE;
+                accBits -= Byte.SIZE;
+            }
+        }
+        if (accBits > 0) {
+            dest[p++] = (byte) acc;
+        }
+        return p - destOffset;
+    }
+
+    private static int unpackGeneric(byte[] src, int srcOffset, int[] dest, int offset, int length, int bitWidth) {
+        long mask = mask(bitWidth);
+        long acc = 0;
+        int accBits = 0;
+        int p = srcOffset;
+        for (int i = offset; i < offset + length; i++) {
+            while (accBits < bitWidth) {
+                acc |= (src[p++] & 0xFFL) << accBits;
+                accBits += Byte.SIZE;
+            }
+            dest[i] = (int) (acc & mask);
+            acc >>>= bitWidth;
+            accBits -= bitWidth;
+        }
+        return p - srcOffset;
+    }
+
+    static long mask(int bitWidth) {
+        return (1L << bitWidth) - 1;
+    }
+
+    static void checkBitWidth(int bitWidth) {
+        if (bitWidth < 1 || bitWidth > Integer.SIZE) {
+            throw new IllegalArgumentException("Invalid bit width " + bitWidth + ". Expected value between 1 and " + Integer.SIZE);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package org.opencb.opencga.storage.core.io.bit;
+
+/**
+ * Reusable reader of bits, with the same bit layout as {@link BitInputStream}.
+ *
+ * Can be pointed to a new byte array with {@link #reset(byte[], int, int)} without allocating a new reader.
+ * Reads fixed-width arrays in bulk into caller provided arrays with {@link BitPacking}.
+ *
+ * @see BitWriter
+ */
+public class BitReader {
+
+    private byte[] value;
+    private int idx;
+    private int end;
+    private long acc;
+    private int accBits;
+
+    public BitReader() {
+        this(new byte[0]);
+    }
+
+    public BitReader(byte[] value) {
+        this(value, 0, value.length);
+    }
+
+    public BitReader(byte[] value, int offset, int length) {
+        reset(value, offset, length);
+    }
+
+    public BitReader reset(byte[] value) {
+        return reset(value, 0, value.length);
+    }
+
+    public BitReader reset(byte[] value, int offset, int length) {
+        this.value = value;
+        idx = offset;
+        end = offset + length;
+        acc = 0;
+        accBits = 0;
+        return this;
+    }
+
+    public int remainingBits() {
+        return (end - idx) * Byte.SIZE + accBits;
+    }
+
+    /**
+     * Read a value.
+     *
+     * @param bitsLength Number of bits to read. From 1 to 32.
+     * @return read value
+     */
+    public int read(int bitsLength) {
+        BitPacking.checkBitWidth(bitsLength);
+        while (accBits < bitsLength) {
+            if (idx >= end) {
+                throw new IllegalArgumentException("Unable to read " + bitsLength + " bits. Remaining bits: " + accBits);
+            }
+            acc |= (value[idx++] & 0xFFL) << accBits;
+            accBits += Byte.SIZE;
+        }
+        int r = (int) (acc & BitPacking.mask(bitsLength));
+        acc >>>= bitsLength;
+        accBits -= bitsLength;
+        return r;
+    }
+
+    /**
+     * Read an array of values, written with a fixed number of bits per value.
+     *
+     * @param dest     Destination array
+     * @param offset   Destination offset
+     * @param length   Number of values
+     * @param bitWidth Bits per value
+     * @return dest
+     */
+    public int[] read(int[] dest, int offset, int length, int bitWidth) {
+        if (accBits == 0) {
+            int bytes = BitPacking.packedSize(length, bitWidth);
+            if (idx + bytes > end) {
+                throw new IllegalArgumentException("Unable to read " + length + " values of " + bitWidth + " bits. "
+                        + "Remaining bits: " + remainingBits());
+            }
+            BitPacking.unpack(value, idx, dest, offset, length, bitWidth);
+            idx += bytes;
+            int usedBits = (int) ((long) length * bitWidth % Byte.SIZE);
+            if (usedBits != 0) {
+                // Keep the remaining bits from the last partial byte
+                accBits = Byte.SIZE - usedBits;
+                acc = (value[idx - 1] & 0xFF) >>> usedBits;
+            }
+        } else {
+            for (int i = offset; i < offset + length; i++) {
+                dest[i] = read(bitWidth);
+            }
+        }
+        return dest;
+    }
+
+    /**
+     * Read an unsigned variable length int, as written by {@link BitWriter#writeVarInt(int)}.
+     * The stream is aligned to the next byte before reading.
+     *
+     * @return read value
+     */
+    public int readVarInt() {
+        align();
+        int result = 0;
+        for (int shift = 0; shift < Integer.SIZE; shift += 7) {
+            if (idx >= end) {
+                throw new IllegalArgumentException("Unexpected end of stream reading varint");
+            }
+            byte b = value[idx++];
+            result |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return result;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    /**
+     * Read a signed variable length int, as written by {@link BitWriter#writeZigZagVarInt(int)}.
+     *
+     * @return read value
+     */
+    public int readZigZagVarInt() {
+        int v = readVarInt();
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    /**
+     * Skip the remaining bits of the current byte.
+     *
+     * @return this
+     */
+    public BitReader align() {
+        // After any read, the accumulator holds less than one byte
+        acc = 0;
+        accBits = 0;
+        return this;
+    }
+}
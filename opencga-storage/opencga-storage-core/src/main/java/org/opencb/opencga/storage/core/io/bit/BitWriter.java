@@ -0,0 +1,158 @@
+package org.opencb.opencga.storage.core.io.bit;
+
+import java.util.Arrays;
+
+/**
+ * Reusable writer of bits, with the same bit layout as {@link BitOutputStream}.
+ *
+ * Values are accumulated in a long, and flushed byte by byte into an internal buffer that is reused after {@link #reset()}.
+ * Besides single values, supports bulk writes of fixed-width arrays with {@link BitPacking}, and
+ * byte-aligned variable length integers.
+ *
+ * @see BitReader
+ */
+public class BitWriter {
+
+    private byte[] buffer;
+    private int length;
+    private long acc;
+    private int accBits;
+
+    public BitWriter() {
+        this(100);
+    }
+
+    public BitWriter(int size) {
+        buffer = new byte[Math.max(size, 8)];
+    }
+
+    /**
+     * Write a value into the stream.
+     *
+     * @param value      Up to 32 bits to write.
+     * @param bitsLength Number of bits to write from the integer.
+     * @return this
+     */
+    public BitWriter write(int value, int bitsLength) {
+        BitPacking.checkBitWidth(bitsLength);
+        acc |= (value & BitPacking.mask(bitsLength)) << accBits;
+        accBits += bitsLength;
+        if (accBits >= Byte.SIZE) {
+            ensureCapacity(length + Long.BYTES);
+            do {
+                buffer[length++] = (byte) acc;
+                acc >>>= Byte.SIZE;
+                accBits -= Byte.SIZE;
+            } while (accBits >= Byte.SIZE);
+        }
+        return this;
+    }
+
+    /**
+     * Write an array of values, using a fixed number of bits per value.
+     *
+     * @param values   Values to write
+     * @param offset   Array offset
+     * @param length   Number of values
+     * @param bitWidth Bits per value
+     * @return this
+     */
+    public BitWriter write(int[] values, int offset, int length, int bitWidth) {
+        if (accBits == 0) {
+            ensureCapacity(this.length + BitPacking.packedSize(length, bitWidth));
+            int bytes = BitPacking.pack(values, offset, length, bitWidth, buffer, this.length);
+            this.length += bytes;
+            int usedBits = (int) ((long) length * bitWidth % Byte.SIZE);
+            if (usedBits != 0) {
+                // Move last partial byte back into the accumulator
+                this.length--;
+                acc = buffer[this.length] & BitPacking.mask(usedBits);
+                accBits = usedBits;
+            }
+        } else {
+            for (int i = offset; i < offset + length; i++) {
+                write(values[i], bitWidth);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Write an unsigned variable length int. The stream is aligned to the next byte before writing.
+     * Each byte contains 7 bits of the value, with the most significant bit as continuation flag.
+     *
+     * @param value Value. Negative values are written as unsigned, in 5 bytes.
+     * @return this
+     */
+    public BitWriter writeVarInt(int value) {
+        align();
+        ensureCapacity(length + 5);
+        while ((value & ~0x7F) != 0) {
+            buffer[length++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[length++] = (byte) value;
+        return this;
+    }
+
+    /**
+     * Write a signed variable length int, using zig-zag encoding, so small negative values use few bytes.
+     *
+     * @param value Value
+     * @return this
+     */
+    public BitWriter writeZigZagVarInt(int value) {
+        return writeVarInt((value << 1) ^ (value >> 31));
+    }
+
+    /**
+     * Pad with zeros up to the next byte.
+     *
+     * @return this
+     */
+    public BitWriter align() {
+        if (accBits > 0) {
+            ensureCapacity(length + 1);
+            buffer[length++] = (byte) acc;
+            acc = 0;
+            accBits = 0;
+        }
+        return this;
+    }
+
+    /**
+     * Number of bytes written, including the last partial byte.
+     *
+     * @return Number of bytes
+     */
+    public int length() {
+        return length + (accBits > 0 ? 1 : 0);
+    }
+
+    /**
+     * Internal buffer. Contains {@link #length()} valid bytes after calling {@link #align()}.
+     *
+     * @return Internal buffer.
+     */
+    public byte[] getBuffer() {
+        return buffer;
+    }
+
+    public byte[] toByteArray() {
+        align();
+        return Arrays.copyOf(buffer, length);
+    }
+
+    public BitWriter reset() {
+        length = 0;
+        acc = 0;
+        accBits = 0;
+        return this;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(capacity, buffer.length * 2));
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package org.opencb.opencga.storage.core.io.bit;
+
+/**
+ * Delta codec with variable length integers. Stores the difference of each value with the previous one, so sorted
+ * arrays, like genomic positions, take one or two bytes per value. Unsorted arrays are supported using zig-zag encoding
+ * for the differences.
+ *
+ * Format:
+ * <code>
+ *   [length varint][value[0] zigzag varint][value[1] - value[0] zigzag varint]...
+ * </code>
+ */
+public class DeltaVarIntCodec implements IntArrayCodec {
+
+    @Override
+    public void encode(int[] values, int offset, int length, BitWriter writer) {
+        writer.writeVarInt(length);
+        int previous = 0;
+        for (int i = offset; i < offset + length; i++) {
+            writer.writeZigZagVarInt(values[i] - previous);
+            previous = values[i];
+        }
+    }
+
+    @Override
+    public int decode(BitReader reader, int[] dest, int offset) {
+        int length = reader.readVarInt();
+        if (dest.length - offset < length) {
+            throw new IllegalArgumentException("Destination array too small. Required " + length + " values, "
+                    + "available " + (dest.length - offset));
+        }
+        decode(reader, dest, offset, length);
+        return length;
+    }
+
+    @Override
+    public int[] decode(BitReader reader) {
+        int length = reader.readVarInt();
+        int[] dest = new int[length];
+        decode(reader, dest, 0, length);
+        return dest;
+    }
+
+    private void decode(BitReader reader, int[] dest, int offset, int length) {
+        int previous = 0;
+        for (int i = offset; i < offset + length; i++) {
+            previous += reader.readZigZagVarInt();
+            dest[i] = previous;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package org.opencb.opencga.storage.core.io.bit;
+
+/**
+ * Frame of reference codec. Stores the minimum value, and the difference of each value with the minimum,
+ * bit-packed using the minimum number of bits required for the maximum difference.
+ *
+ * Good for values within a narrow range, like positions inside a genomic region.
+ *
+ * Format:
+ * <code>
+ *   [length varint][min zigzag varint][bitWidth varint][packed values - min]
+ * </code>
+ *
+ * Instances are not thread safe, as they keep an internal buffer to avoid allocations.
+ */
+public class FrameOfReferenceCodec implements IntArrayCodec {
+
+    private int[] buffer = new int[0];
+
+    @Override
+    public void encode(int[] values, int offset, int length, BitWriter writer) {
+        writer.writeVarInt(length);
+        if (length == 0) {
+            return;
+        }
+        int min = values[offset];
+        for (int i = offset + 1; i < offset + length; i++) {
+            min = Math.min(min, values[i]);
+        }
+        int[] deltas = getBuffer(length);
+        int or = 0;
+        for (int i = 0; i < length; i++) {
+            // Differences fit in 32 bits as unsigned
+            deltas[i] = values[offset + i] - min;
+            or |= deltas[i];
+        }
+        int bitWidth = BitPacking.bitWidth(or);
+        writer.writeZigZagVarInt(min);
+        writer.writeVarInt(bitWidth);
+        writer.write(deltas, 0, length, bitWidth);
+        writer.align();
+    }
+
+    @Override
+    public int decode(BitReader reader, int[] dest, int offset) {
+        int length = reader.readVarInt();
+        if (length == 0) {
+            return 0;
+        }
+        if (dest.length - offset < length) {
+            throw new IllegalArgumentException("Destination array too small. Required " + length + " values, "
+                    + "available " + (dest.length - offset));
+        }
+        int min = reader.readZigZagVarInt();
+        int bitWidth = reader.readVarInt();
+        reader.read(dest, offset, length, bitWidth);
+        reader.align();
+        for (int i = offset; i < offset + length; i++) {
+            dest[i] += min;
+        }
+        return length;
+    }
+
+    @Override
+    public int[] decode(BitReader reader) {
+        int length = reader.readVarInt();
+        int[] dest = new int[length];
+        if (length == 0) {
+            return dest;
+        }
+        int min = reader.readZigZagVarInt();
+        int bitWidth = reader.readVarInt();
+        reader.read(dest, 0, length, bitWidth);
+        reader.align();
+        for (int i = 0; i < length; i++) {
+            dest[i] += min;
+        }
+        return dest;
+    }
+
+    private int[] getBuffer(int length) {
+        if (buffer.length < length) {
+            buffer = new int[Math.max(length, buffer.length * 2)];
+        }
+        return buffer;
+    }
+}
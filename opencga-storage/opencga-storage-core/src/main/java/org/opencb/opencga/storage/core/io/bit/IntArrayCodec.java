@@ -0,0 +1,37 @@
+package org.opencb.opencga.storage.core.io.bit;
+
+/**
+ * Codec for arrays of integers. Encoded arrays are self-delimited, so multiple arrays can be written in the same stream.
+ */
+public interface IntArrayCodec {
+
+    /**
+     * Encode an array of values.
+     *
+     * @param values Values to encode
+     * @param offset Array offset
+     * @param length Number of values
+     * @param writer Output
+     */
+    void encode(int[] values, int offset, int length, BitWriter writer);
+
+    /**
+     * Decode an array of values into a given array.
+     *
+     * @param reader Input
+     * @param dest   Destination array
+     * @param offset Destination offset
+     * @return Number of decoded values
+     * @throws IllegalArgumentException if the destination array is not big enough
+     */
+    int decode(BitReader reader, int[] dest, int offset);
+
+    /**
+     * Decode an array of values.
+     *
+     * @param reader Input
+     * @return Decoded values
+     */
+    int[] decode(BitReader reader);
+
+}
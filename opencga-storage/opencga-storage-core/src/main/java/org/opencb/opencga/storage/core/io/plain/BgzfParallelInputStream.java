@@ -0,0 +1,247 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.core.io.plain;
+
+import java.io.*;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.*;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Decompress a BGZF input, inflating several blocks in parallel.
+ *
+ * A BGZF file is a concatenation of independent gzip members, each one with the size of the compressed block in the
+ * "BC" extra subfield. The calling thread only reads the compressed blocks, which are inflated in a pool of threads
+ * and returned in order. Blocks are read ahead, up to four blocks per thread.
+ *
+ * Use {@link #isBgzf(InputStream)} to check if an input is BGZF. Any other gzip file must be read with a
+ * {@link java.util.zip.GZIPInputStream}.
+ */
+public class BgzfParallelInputStream extends InputStream {
+
+    private static final int GZIP_HEADER_SIZE = 12;
+    private static final int BGZF_HEADER_SIZE = 18;
+    private static final int FOOTER_SIZE = 8;
+    private static final int FEXTRA = 4;
+
+    private final DataInputStream in;
+    private final ExecutorService executor;
+    private final int readAhead;
+    private final Deque<Future<byte[]>> pending;
+    private byte[] current = new byte[0];
+    private int position = 0;
+    private boolean eof = false;
+
+    public BgzfParallelInputStream(InputStream in, int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Number of threads must be positive. Found " + threads);
+        }
+        this.in = new DataInputStream(in);
+        this.readAhead = threads * 4;
+        this.pending = new ArrayDeque<>(readAhead);
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "bgzf-inflater");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Check if the input starts with a BGZF block, without consuming any byte.
+     *
+     * @param is Input stream. Must support mark
+     * @return If the input is BGZF
+     * @throws IOException on error reading the input
+     */
+    public static boolean isBgzf(InputStream is) throws IOException {
+        if (!is.markSupported()) {
+            throw new IllegalArgumentException("InputStream must support mark");
+        }
+        byte[] header = new byte[BGZF_HEADER_SIZE];
+        is.mark(BGZF_HEADER_SIZE);
+        int length = 0;
+        try {
+            int read;
+            while (length < header.length && (read = is.read(header, length, header.length - length)) > 0) {
+                length += read;
+            }
+        } finally {
+            is.reset();
+        }
+        return length == BGZF_HEADER_SIZE
+                && header[0] == 0x1f
+                && header[1] == (byte) 0x8b
+                && header[2] == 0x08
+                && (header[3] & FEXTRA) != 0
+                && readShort(header, 10) == 6
+                && header[12] == 'B'
+                && header[13] == 'C'
+                && readShort(header, 14) == 2;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fill()) {
+            return -1;
+        }
+        return current[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!fill()) {
+            return -1;
+        }
+        int read = Math.min(len, current.length - position);
+        System.arraycopy(current, position, b, off, read);
+        position += read;
+        return read;
+    }
+
+    @Override
+    public int available() {
+        return current.length - position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        executor.shutdownNow();
+        in.close();
+    }
+
+    /**
+     * Make sure there are bytes available in the current block, moving to the next inflated block if needed.
+     *
+     * @return false if there are no more bytes
+     */
+    private boolean fill() throws IOException {
+        while (position == current.length) {
+            submitBlocks();
+            Future<byte[]> next = pending.poll();
+            if (next == null) {
+                return false;
+            }
+            try {
+                current = next.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException(e.getMessage());
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new IOException(e.getCause());
+            }
+            position = 0;
+        }
+        return true;
+    }
+
+    private void submitBlocks() throws IOException {
+        while (!eof && pending.size() < readAhead) {
+            byte[] block = readBlock();
+            if (block == null) {
+                eof = true;
+            } else {
+                pending.add(executor.submit(() -> inflate(block)));
+            }
+        }
+    }
+
+    /**
+     * Read the next compressed block, without the gzip header.
+     *
+     * @return Compressed data and footer of the block, or null at the end of the input
+     */
+    private byte[] readBlock() throws IOException {
+        byte[] header = new byte[GZIP_HEADER_SIZE];
+        int first = in.read();
+        if (first < 0) {
+            return null;
+        }
+        header[0] = (byte) first;
+        in.readFully(header, 1, GZIP_HEADER_SIZE - 1);
+        if (header[0] != 0x1f || header[1] != (byte) 0x8b || header[2] != 0x08 || (header[3] & FEXTRA) == 0) {
+            throw new ZipException("Not a BGZF block");
+        }
+        byte[] extra = new byte[readShort(header, 10)];
+        in.readFully(extra);
+        int blockSize = -1;
+        for (int i = 0; i + 4 <= extra.length; i += 4 + readShort(extra, i + 2)) {
+            if (extra[i] == 'B' && extra[i + 1] == 'C' && readShort(extra, i + 2) == 2) {
+                blockSize = readShort(extra, i + 4) + 1;
+                break;
+            }
+        }
+        if (blockSize < 0) {
+            throw new ZipException("Missing BGZF block size");
+        }
+        byte[] block = new byte[blockSize - GZIP_HEADER_SIZE - extra.length];
+        in.readFully(block);
+        return block;
+    }
+
+    private static byte[] inflate(byte[] block) throws IOException {
+        int compressedLength = block.length - FOOTER_SIZE;
+        int crc = readInt(block, compressedLength);
+        int size = readInt(block, compressedLength + 4);
+        byte[] data = new byte[size];
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(block, 0, compressedLength);
+            int length = 0;
+            while (length < size && !inflater.finished()) {
+                int inflated = inflater.inflate(data, length, size - length);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                length += inflated;
+            }
+            if (length != size) {
+                throw new ZipException("Corrupted BGZF block. Expected " + size + " bytes, found " + length);
+            }
+        } catch (DataFormatException e) {
+            throw new ZipException(e.getMessage());
+        } finally {
+            inflater.end();
+        }
+        CRC32 crc32 = new CRC32();
+        crc32.update(data, 0, size);
+        if ((int) crc32.getValue() != crc) {
+            throw new ZipException("Corrupted BGZF block. CRC mismatch");
+        }
+        return data;
+    }
+
+    private static int readShort(byte[] bytes, int position) {
+        return (bytes[position] & 0xFF) | ((bytes[position + 1] & 0xFF) << 8);
+    }
+
+    private static int readInt(byte[] bytes, int position) {
+        return (bytes[position] & 0xFF)
+                | ((bytes[position + 1] & 0xFF) << 8)
+                | ((bytes[position + 2] & 0xFF) << 16)
+                | ((bytes[position + 3] & 0xFF) << 24);
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.core.io.plain;
+
+import org.opencb.commons.run.Task;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Split blocks of bytes, as returned by {@link StringDataReader#toLineBlockReader(int)}, into lines.
+ *
+ * Line breaks are found directly in the byte array, and only the content of each line is decoded.
+ * Uses the same line breaks as {@link java.io.BufferedReader#readLine()}, so the produced lines are the same
+ * as the ones from a {@link StringDataReader}.
+ */
+public class LineSplitterTask implements Task<ByteBuffer, String> {
+
+    private final Charset charset;
+
+    public LineSplitterTask() {
+        // Same charset as the InputStreamReader used by the StringDataReader
+        this(Charset.defaultCharset());
+    }
+
+    public LineSplitterTask(Charset charset) {
+        this.charset = charset;
+    }
+
+    @Override
+    public List<String> apply(List<ByteBuffer> blocks) {
+        List<String> lines = new ArrayList<>();
+        for (ByteBuffer block : blocks) {
+            split(block, charset, lines);
+        }
+        return lines;
+    }
+
+    /**
+     * Split a block of bytes into lines. A line is terminated by any one of a line feed ('\n'),
+     * a carriage return ('\r'), or a carriage return followed immediately by a line feed.
+     *
+     * @param block   Block of bytes
+     * @param charset Charset to decode the lines
+     * @param lines   List to add the lines
+     */
+    public static void split(ByteBuffer block, Charset charset, List<String> lines) {
+        byte[] array;
+        int offset;
+        if (block.hasArray()) {
+            array = block.array();
+            offset = block.arrayOffset() + block.position();
+        } else {
+            array = new byte[block.remaining()];
+            block.duplicate().get(array);
+            offset = 0;
+        }
+        int end = offset + block.remaining();
+
+        int lineStart = offset;
+        for (int i = offset; i < end; i++) {
+            byte b = array[i];
+            if (b == '\n' || b == '\r') {
+                lines.add(new String(array, lineStart, i - lineStart, charset));
+                if (b == '\r' && i + 1 < end && array[i + 1] == '\n') {
+                    i++;
+                }
+                lineStart = i + 1;
+            }
+        }
+        if (lineStart < end) {
+            lines.add(new String(array, lineStart, end - lineStart, charset));
+        }
+    }
+}
@@ -25,9 +25,11 @@ import org.xerial.snappy.SnappyInputStream;
 
 import java.io.*;
 import java.net.URI;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
@@ -51,6 +53,7 @@ public class StringDataReader implements DataReader<String> {
     private BiConsumer<Long, Long> readLinesListener;
     private final InputStream is;
     private final boolean closeReader;
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
 
     public StringDataReader(Path path) {
         this.path = Objects.requireNonNull(path);
@@ -82,10 +85,30 @@ public class StringDataReader implements DataReader<String> {
 
     @Override
     public boolean open() {
+        this.reader = new BufferedReader(new InputStreamReader(openInputStream()));
+        return true;
+    }
+
+    /**
+     * Open the input, decompressing it if needed.
+     *
+     * @return InputStream with the uncompressed content
+     */
+    protected InputStream openInputStream() {
+        return openInputStream(0);
+    }
+
+    /**
+     * Open the input, decompressing it if needed.
+     *
+     * @param inflateThreads Threads to decompress BGZF inputs in parallel. 0 to decompress any gzip input in the calling thread
+     * @return InputStream with the uncompressed content
+     */
+    protected InputStream openInputStream(int inflateThreads) {
         try {
             if (is != null) {
                 sizeInputStream = new SizeInputStream(is, 0);
-                this.reader = new BufferedReader(new InputStreamReader(sizeInputStream));
+                return sizeInputStream;
             } else {
                 String fileName;
                 if (uri != null) {
@@ -98,21 +121,29 @@ public class StringDataReader implements DataReader<String> {
                     sizeInputStream = new SizeInputStream(new FileInputStream(path.toFile()), lastAvailable);
                 }
                 if (fileName.endsWith(".gz")) {
+                    if (inflateThreads > 0) {
+                        InputStream bufferedInputStream = new BufferedInputStream(sizeInputStream, GZIP_BUFFER_SIZE);
+                        if (BgzfParallelInputStream.isBgzf(bufferedInputStream)) {
+                            logger.debug("BGZF input compress. Decompress with {} threads", inflateThreads);
+                            return new BgzfParallelInputStream(bufferedInputStream, inflateThreads);
+                        }
+                        logger.debug("Gzip input compress");
+                        return new GZIPInputStream(bufferedInputStream, GZIP_BUFFER_SIZE);
+                    }
                     logger.debug("Gzip input compress");
-                    this.reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(sizeInputStream)));
+                    return new GZIPInputStream(sizeInputStream, GZIP_BUFFER_SIZE);
                 } else if (fileName.endsWith(".snappy") || fileName.endsWith(".snz")) {
                     logger.debug("Snappy input compress");
-                    this.reader = new BufferedReader(new InputStreamReader(new SnappyInputStream(sizeInputStream)));
+                    return new SnappyInputStream(sizeInputStream);
                 } else {
                     logger.debug("Plain input compress");
 //                this.reader = Files.newBufferedReader(path, Charset.defaultCharset());
-                    this.reader = new BufferedReader(new InputStreamReader(sizeInputStream));
+                    return sizeInputStream;
                 }
             }
         } catch (IOException e) {
             throw new UncheckedIOException(e);
         }
-        return true;
     }
 
     @Override
@@ -181,6 +212,124 @@ public class StringDataReader implements DataReader<String> {
         this.readLines += readLines;
     }
 
+    /**
+     * Get a view of this reader that returns blocks of complete lines as raw bytes, instead of one String per line.
+     * Lines are not decoded by the reader, so they can be split and decoded in parallel with a {@link LineSplitterTask}.
+     * Listeners of read bytes from this reader are notified as well.
+     *
+     * @param blockSize Approximate size in bytes of each block. Blocks can be larger if a single line does not fit.
+     * @return DataReader of line blocks
+     */
+    public DataReader<ByteBuffer> toLineBlockReader(int blockSize) {
+        return toLineBlockReader(blockSize, 0);
+    }
+
+    /**
+     * Get a view of this reader that returns blocks of complete lines as raw bytes. See {@link #toLineBlockReader(int)}.
+     * BGZF inputs are decompressed in parallel with a {@link BgzfParallelInputStream}.
+     *
+     * @param blockSize      Approximate size in bytes of each block. Blocks can be larger if a single line does not fit.
+     * @param inflateThreads Threads to decompress BGZF inputs. 0 to decompress in the reader thread
+     * @return DataReader of line blocks
+     */
+    public DataReader<ByteBuffer> toLineBlockReader(int blockSize, int inflateThreads) {
+        return new LineBlockReader(blockSize, inflateThreads);
+    }
+
+    private class LineBlockReader implements DataReader<ByteBuffer> {
+        private final int blockSize;
+        private final int inflateThreads;
+        private InputStream inputStream;
+        // Bytes already read from the input stream, after the last line break of the previous block.
+        private byte[] pending = new byte[0];
+        private boolean eof = false;
+
+        LineBlockReader(int blockSize, int inflateThreads) {
+            if (blockSize <= 0) {
+                throw new IllegalArgumentException("Block size must be positive. Found " + blockSize);
+            }
+            this.blockSize = blockSize;
+            this.inflateThreads = inflateThreads;
+        }
+
+        @Override
+        public boolean open() {
+            inputStream = openInputStream(inflateThreads);
+            return true;
+        }
+
+        @Override
+        public boolean close() {
+            try {
+                if (closeReader) {
+                    inputStream.close();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return true;
+        }
+
+        @Override
+        public List<ByteBuffer> read() {
+            return read(1);
+        }
+
+        @Override
+        public List<ByteBuffer> read(int batchSize) {
+            try {
+                ByteBuffer block = readBlock();
+                onReadBytes();
+                return block == null ? Collections.emptyList() : Collections.singletonList(block);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private ByteBuffer readBlock() throws IOException {
+            byte[] buffer = Arrays.copyOf(pending, Math.max(blockSize, pending.length * 2));
+            int length = pending.length;
+            int end;
+            while (true) {
+                while (!eof && length < buffer.length) {
+                    int read = inputStream.read(buffer, length, buffer.length - length);
+                    if (read < 0) {
+                        eof = true;
+                    } else {
+                        length += read;
+                    }
+                }
+                if (eof) {
+                    end = length;
+                    break;
+                }
+                end = lastLineBreak(buffer, length);
+                if (end > 0) {
+                    break;
+                }
+                // No line break found. Line larger than the block size
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+            pending = Arrays.copyOfRange(buffer, end, length);
+            if (end == 0) {
+                return null;
+            }
+            return ByteBuffer.wrap(buffer, 0, end);
+        }
+
+        /**
+         * Find the position after the last '\n'. Blocks are never split in between a "\r\n" line break.
+         */
+        private int lastLineBreak(byte[] buffer, int length) {
+            for (int i = length - 1; i >= 0; i--) {
+                if (buffer[i] == '\n') {
+                    return i + 1;
+                }
+            }
+            return 0;
+        }
+    }
+
     public StringDataReader setReadBytesListener(BiConsumer<Long, Long> readBytesListener) {
         this.readBytesListener = readBytesListener;
         return this;
@@ -1,18 +1,50 @@
 package org.opencb.opencga.storage.core.metadata;
 
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.Weigher;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import java.util.Collection;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.BiFunction;
 
 /**
+ * Bounded cache of metadata values, indexed by (studyId, id).
+ *
+ * Values are stored in one size-bounded cache per study, so the lookup does not need to build any composed key.
+ * Each per-study cache evicts the least recently used entries once the total weight exceeds the configured maximum.
+ *
  * Created by jacobo on 27/02/19.
  */
 public class MetadataCache<ID, R> {
 
-    private final ConcurrentHashMap<String, R> cache;
+    public static final long DEFAULT_MAX_WEIGHT = 100000;
+
+    private final ConcurrentHashMap<Integer, Cache<ID, R>> cache;
     private final BiFunction<Integer, ID, R> function;
+    private final long maxWeight;
+    private final Weigher<ID, R> weigher;
 
     public MetadataCache(BiFunction<Integer, ID, R> function) {
+        this(function, DEFAULT_MAX_WEIGHT);
+    }
+
+    public MetadataCache(BiFunction<Integer, ID, R> function, long maxWeight) {
+        this(function, maxWeight, MetadataCache::defaultWeight);
+    }
+
+    public MetadataCache(BiFunction<Integer, ID, R> function, long maxWeight, Weigher<ID, R> weigher) {
         this.function = function;
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
         this.cache = new ConcurrentHashMap<>();
     }
 
@@ -24,17 +56,9 @@ public class MetadataCache<ID, R> {
      * @return        Value
      */
     public R get(int studyId, ID id) {
-        String key = getKey(studyId, id);
-
-        // Avoid unnecessary synchronize blocks.
-        // ConcurrentHashMap::get does not have any synchronization block
-        R r = cache.get(key);
-        if (r != null) {
-            return r;
-        } else {
-            // Use this method to avoid executing the function twice
-            return cache.computeIfAbsent(key, k -> this.function.apply(studyId, id));
-        }
+        // Cache::get does not have any synchronization block for present values,
+        // and avoids executing the function twice for absent values
+        return load(getStudyCache(studyId), id, () -> function.apply(studyId, id));
     }
 
     /**
@@ -46,35 +70,125 @@ public class MetadataCache<ID, R> {
      * @return Value
      */
     public R get(int studyId, ID id, R invalidValue) {
-        String key = getKey(studyId, id);
-
-        // Avoid unnecessary synchronize blocks.
-        // ConcurrentHashMap::get does not have any synchronization block
-        R r = cache.get(key);
-        if (r == null || r.equals(invalidValue)) {
-            // Use this method to avoid executing the function twice
-            return cache.compute(key, (k, v) -> {
-                if (v == null || v.equals(invalidValue)) {
-                    return this.function.apply(studyId, id);
-                } else {
-                    return v;
-                }
-            });
+        Cache<ID, R> studyCache = getStudyCache(studyId);
+
+        AtomicBoolean loaded = new AtomicBoolean(false);
+        R r = load(studyCache, id, () -> {
+            loaded.set(true);
+            return function.apply(studyId, id);
+        });
+        if (r == null || loaded.get()) {
+            return r;
+        } else if (r.equals(invalidValue)) {
+            R newValue = function.apply(studyId, id);
+            if (newValue == null) {
+                studyCache.invalidate(id);
+            } else {
+                studyCache.put(id, newValue);
+            }
+            return newValue;
         } else {
             return r;
         }
     }
 
     public void put(int studyId, ID id, R value) {
-        cache.put(getKey(studyId, id), value);
+        getStudyCache(studyId).put(id, value);
+    }
+
+    /**
+     * Remove a value from the cache, if present.
+     *
+     * @param studyId Study id
+     * @param id      Resource id
+     */
+    public void invalidate(int studyId, ID id) {
+        Cache<ID, R> studyCache = cache.get(studyId);
+        if (studyCache != null) {
+            studyCache.invalidate(id);
+        }
+    }
+
+    /**
+     * Remove all the values of one study.
+     *
+     * @param studyId Study id
+     */
+    public void invalidate(int studyId) {
+        Cache<ID, R> studyCache = cache.remove(studyId);
+        if (studyCache != null) {
+            studyCache.invalidateAll();
+        }
     }
 
     public void clear() {
+        for (Cache<ID, R> studyCache : cache.values()) {
+            studyCache.invalidateAll();
+        }
         cache.clear();
     }
 
-    private String getKey(int studyId, ID id) {
-        return studyId + "_" + id;
+    /**
+     * @return Number of cached elements, across all studies.
+     */
+    public long size() {
+        long size = 0;
+        for (Cache<ID, R> studyCache : cache.values()) {
+            size += studyCache.size();
+        }
+        return size;
+    }
+
+    /**
+     * Aggregated statistics (hits, misses, evictions, ...) of all the studies.
+     * Statistics from invalidated studies are not included.
+     *
+     * @return Cache statistics
+     */
+    public CacheStats stats() {
+        CacheStats stats = new CacheStats(0, 0, 0, 0, 0, 0);
+        for (Cache<ID, R> studyCache : cache.values()) {
+            stats = stats.plus(studyCache.stats());
+        }
+        return stats;
+    }
+
+    public long getMaxWeight() {
+        return maxWeight;
+    }
+
+    private Cache<ID, R> getStudyCache(int studyId) {
+        Cache<ID, R> studyCache = cache.get(studyId);
+        if (studyCache == null) {
+            studyCache = cache.computeIfAbsent(studyId, k -> CacheBuilder.newBuilder()
+                    .maximumWeight(maxWeight)
+                    .weigher(weigher)
+                    .recordStats()
+                    .build());
+        }
+        return studyCache;
+    }
+
+    private R load(Cache<ID, R> studyCache, ID id, Callable<R> loader) {
+        try {
+            return studyCache.get(id, loader);
+        } catch (CacheLoader.InvalidCacheLoadException e) {
+            // Function returned null. Do not cache missing values
+            return null;
+        } catch (UncheckedExecutionException | ExecutionError e) {
+            Throwables.propagateIfPossible(e.getCause());
+            throw e;
+        } catch (ExecutionException e) {
+            throw Throwables.propagate(e.getCause());
+        }
+    }
+
+    private static int defaultWeight(Object id, Object value) {
+        if (value instanceof Collection) {
+            return Math.max(1, ((Collection<?>) value).size());
+        } else {
+            return 1;
+        }
     }
 
 }
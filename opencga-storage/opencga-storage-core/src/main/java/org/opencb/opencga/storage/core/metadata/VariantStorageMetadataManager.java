@@ -17,6 +17,7 @@
 package org.opencb.opencga.storage.core.metadata;
 
 import com.google.common.base.Throwables;
+import com.google.common.cache.CacheStats;
 import com.google.common.collect.BiMap;
 import com.google.common.collect.HashBiMap;
 import com.google.common.collect.Iterators;
@@ -43,11 +44,13 @@ import java.net.URI;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BiFunction;
 import java.util.function.BiPredicate;
 import java.util.function.Function;
+import java.util.function.IntConsumer;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
@@ -62,6 +65,7 @@ public class VariantStorageMetadataManager implements AutoCloseable {
     private static final int DEFAULT_LOCK_DURATION = 1000;
     private static final int DEFAULT_TIMEOUT = 10000;
     public static final String SECONDARY_INDEX_PREFIX = "__SECONDARY_INDEX_COHORT_";
+    public static final String DATA_VERSION_COUNTER = "dataVersion";
 
     protected static Logger logger = LoggerFactory.getLogger(VariantStorageMetadataManager.class);
 
@@ -85,67 +89,78 @@ public class VariantStorageMetadataManager implements AutoCloseable {
     private final MetadataCache<String, Integer> cohortIdCache;
     private final MetadataCache<Integer, String> cohortNameCache;
 
+    private final boolean dataVersionActive;
+    private final List<IntConsumer> dataUpdateListeners = new CopyOnWriteArrayList<>();
+
     public VariantStorageMetadataManager(VariantStorageMetadataDBAdaptorFactory dbAdaptorFactory) {
+        this(dbAdaptorFactory, new ObjectMap());
+    }
+
+    public VariantStorageMetadataManager(VariantStorageMetadataDBAdaptorFactory dbAdaptorFactory, ObjectMap options) {
+        long cacheMaxWeight = options.getLong(VariantStorageOptions.METADATA_CACHE_MAX_WEIGHT.key(),
+                VariantStorageOptions.METADATA_CACHE_MAX_WEIGHT.defaultValue());
+        this.dataVersionActive = options.getBoolean(VariantStorageOptions.METADATA_DATA_VERSION.key(),
+                VariantStorageOptions.METADATA_DATA_VERSION.defaultValue());
         this.projectDBAdaptor = dbAdaptorFactory.buildProjectMetadataDBAdaptor();
         this.studyDBAdaptor = dbAdaptorFactory.buildStudyMetadataDBAdaptor();
         this.fileDBAdaptor = dbAdaptorFactory.buildFileMetadataDBAdaptor();
         this.sampleDBAdaptor = dbAdaptorFactory.buildSampleMetadataDBAdaptor();
         this.cohortDBAdaptor = dbAdaptorFactory.buildCohortMetadataDBAdaptor();
         this.taskDBAdaptor = dbAdaptorFactory.buildTaskDBAdaptor();
-        sampleIdCache = new MetadataCache<>(sampleDBAdaptor::getSampleId);
+        sampleIdCache = new MetadataCache<>(sampleDBAdaptor::getSampleId, cacheMaxWeight);
         sampleNameCache = new MetadataCache<>((studyId, sampleId) -> {
             SampleMetadata sampleMetadata = sampleDBAdaptor.getSampleMetadata(studyId, sampleId, null);
             if (sampleMetadata == null) {
                 throw VariantQueryException.sampleNotFound(sampleId, getStudyName(studyId));
             }
             return sampleMetadata.getName();
-        });
+        }, cacheMaxWeight);
         sampleIdIndexedCache = new MetadataCache<>((studyId, sampleId) -> {
             SampleMetadata sampleMetadata = sampleDBAdaptor.getSampleMetadata(studyId, sampleId, null);
             if (sampleMetadata == null) {
                 throw VariantQueryException.sampleNotFound(sampleId, getStudyName(studyId));
             }
             return sampleMetadata.isIndexed();
-        });
+        }, cacheMaxWeight);
         sampleIdsFromFileIdCache = new MetadataCache<>((studyId, fileId) -> {
             FileMetadata fileMetadata = fileDBAdaptor.getFileMetadata(studyId, fileId, null);
             if (fileMetadata == null) {
                 throw VariantQueryException.fileNotFound(fileId, getStudyName(studyId));
             }
             return fileMetadata.getSamples();
-        });
+        }, cacheMaxWeight);
 
-        fileIdCache = new MetadataCache<>(fileDBAdaptor::getFileId);
+        fileIdCache = new MetadataCache<>(fileDBAdaptor::getFileId, cacheMaxWeight);
         fileNameCache = new MetadataCache<>((studyId, fileId) -> {
             FileMetadata fileMetadata = fileDBAdaptor.getFileMetadata(studyId, fileId, null);
             if (fileMetadata == null) {
                 throw VariantQueryException.fileNotFound(fileId, getStudyName(studyId));
             }
             return fileMetadata.getName();
-        });
+        }, cacheMaxWeight);
         fileIdIndexedCache = new MetadataCache<>((studyId, fileId) -> {
             FileMetadata fileMetadata = fileDBAdaptor.getFileMetadata(studyId, fileId, null);
             if (fileMetadata == null) {
                 throw VariantQueryException.fileNotFound(fileId, getStudyName(studyId));
             }
             return fileMetadata.isIndexed();
-        });
+        }, cacheMaxWeight);
         fileIdsFromSampleIdCache = new MetadataCache<>((studyId, sampleId) -> {
             SampleMetadata sampleMetadata = getSampleMetadata(studyId, sampleId);
             if (sampleMetadata == null) {
                 throw VariantQueryException.sampleNotFound(sampleId, getStudyName(studyId));
             }
             return sampleMetadata.getFiles();
-        });
+        }, cacheMaxWeight);
 
-        cohortIdCache = new MetadataCache<>(cohortDBAdaptor::getCohortId);
+        cohortIdCache = new MetadataCache<>(cohortDBAdaptor::getCohortId, cacheMaxWeight);
         cohortNameCache = new MetadataCache<>((studyId, cohortId) -> {
             CohortMetadata cohortMetadata = cohortDBAdaptor.getCohortMetadata(studyId, cohortId, null);
             if (cohortMetadata == null) {
                 throw VariantQueryException.cohortNotFound(cohortId, studyId, getAvailableCohorts(studyId));
             }
             return cohortMetadata.getName();
-        });
+        }, cacheMaxWeight);
     }
 
     public Locked lockStudy(int studyId) throws StorageEngineException {
@@ -455,15 +470,33 @@ public class VariantStorageMetadataManager implements AutoCloseable {
         }
         try {
             ProjectMetadata projectMetadata = getProjectMetadata();
-            int countersHash = (projectMetadata == null ? Collections.emptyMap() : projectMetadata.getCounters()).hashCode();
+            Map<String, Integer> counters = projectMetadata == null
+                    ? Collections.emptyMap()
+                    : new HashMap<>(projectMetadata.getCounters());
+            int dataHash = dataHashCode(projectMetadata);
 
             projectMetadata = function.update(projectMetadata);
-            int newCountersHash = (projectMetadata == null ? Collections.emptyMap() : projectMetadata.getCounters()).hashCode();
 
-            // If the function modifies the internal counters, update them
-            boolean updateCounters = countersHash != newCountersHash;
+            // If the function modifies the internal counters, update only the modified ones.
+            // Counters are increased atomically with generateId without the project lock, so writing back
+            // the unmodified counters could revert concurrent increments, like the data version.
+            ProjectMetadata update = projectMetadata;
+            boolean updateCounters = false;
+            if (projectMetadata != null && !counters.equals(projectMetadata.getCounters())) {
+                updateCounters = true;
+                update = projectMetadata.copy();
+                update.getCounters().entrySet().removeIf(entry -> Objects.equals(entry.getValue(), counters.get(entry.getKey())));
+            }
 
-            projectDBAdaptor.updateProjectMetadata(projectMetadata, updateCounters);
+            projectDBAdaptor.updateProjectMetadata(update, updateCounters);
+            // Project metadata contains the variant annotation metadata, shared by all the studies.
+            // Attributes (e.g. timestamps or checkpoints) do not modify the variants data.
+            if (dataVersionActive && dataHash != dataHashCode(projectMetadata)) {
+                increaseDataVersion();
+                if (!dataUpdateListeners.isEmpty()) {
+                    getStudyIds().forEach(this::notifyDataUpdateListeners);
+                }
+            }
             return projectMetadata;
         } finally {
             lock.unlock();
@@ -474,6 +507,14 @@ public class VariantStorageMetadataManager implements AutoCloseable {
         return projectDBAdaptor.getProjectMetadata().first();
     }
 
+    private static int dataHashCode(ProjectMetadata projectMetadata) {
+        if (projectMetadata == null) {
+            return 0;
+        }
+        return Objects.hash(projectMetadata.getSpecies(), projectMetadata.getAssembly(), projectMetadata.getRelease(),
+                projectMetadata.getAnnotation());
+    }
+
     public ProjectMetadata getProjectMetadata(ObjectMap options) throws StorageEngineException {
         ProjectMetadata projectMetadata = getProjectMetadata();
         if (options != null && (projectMetadata == null
@@ -550,6 +591,7 @@ public class VariantStorageMetadataManager implements AutoCloseable {
     public void unsecureUpdateFileMetadata(int studyId, FileMetadata file) {
         file.setStudyId(studyId);
         fileDBAdaptor.updateFileMetadata(studyId, file, null);
+        invalidateFileCaches(studyId, file);
     }
 
     public <E extends Exception> FileMetadata updateFileMetadata(int studyId, int fileId, UpdateFunction<FileMetadata, E> update)
@@ -709,6 +751,7 @@ public class VariantStorageMetadataManager implements AutoCloseable {
     public void unsecureUpdateSampleMetadata(int studyId, SampleMetadata sample) {
         sample.setStudyId(studyId);
         sampleDBAdaptor.updateSampleMetadata(studyId, sample, null);
+        invalidateSampleCaches(studyId, sample);
     }
 
     public <E extends Exception> SampleMetadata updateSampleMetadata(int studyId, int sampleId, UpdateFunction<SampleMetadata, E> update)
@@ -845,6 +888,8 @@ public class VariantStorageMetadataManager implements AutoCloseable {
     public void unsecureUpdateCohortMetadata(int studyId, CohortMetadata cohort) {
         cohort.setStudyId(studyId);
         cohortDBAdaptor.updateCohortMetadata(studyId, cohort, null);
+        invalidateCohortCaches(studyId, cohort.getId(), cohort.getName());
+        notifyDataUpdate(studyId);
     }
 
     public <E extends Exception> CohortMetadata updateCohortMetadata(int studyId, int cohortId, UpdateFunction<CohortMetadata, E> update)
@@ -866,7 +911,10 @@ public class VariantStorageMetadataManager implements AutoCloseable {
         if (cohortId == null) {
             throw VariantQueryException.cohortNotFound(cohort.toString(), studyId, this);
         }
+        String cohortName = getCohortName(studyId, cohortId);
         cohortDBAdaptor.removeCohort(studyId, cohortId);
+        invalidateCohortCaches(studyId, cohortId, cohortName);
+        notifyDataUpdate(studyId);
     }
 
     public Integer getCohortId(int studyId, String cohortName) {
@@ -1002,6 +1050,10 @@ public class VariantStorageMetadataManager implements AutoCloseable {
                         if (cohort.isStatsReady()) {
                             cohort.setStatsStatus(TaskMetadata.Status.ERROR);
                         }
+                        if (!newSamples.containsAll(oldSamples)) {
+                            // Some samples were removed. Stored stats can not be updated incrementally.
+                            cohort.setStatsSamples(null);
+                        }
                     }
                     return cohort;
                 }
@@ -1048,6 +1100,7 @@ public class VariantStorageMetadataManager implements AutoCloseable {
             task.setId(newTaskId(studyId));
         }
         taskDBAdaptor.updateTask(studyId, task, null);
+        notifyDataUpdate(studyId);
     }
 
     public <E extends Exception> TaskMetadata updateTask(int studyId, int taskId, UpdateFunction<TaskMetadata, E> update)
@@ -1612,6 +1665,109 @@ public class VariantStorageMetadataManager implements AutoCloseable {
         return task;
     }
 
+    /**
+     * Register a listener to be notified whenever the variants data of a study may have changed.
+     * This is, whenever a task (index, remove, ...) or a cohort (stats) is updated, or a new annotation is registered.
+     *
+     * Only updates executed through this instance are notified. Use {@link #getDataVersion()} to detect updates
+     * from any other instance or process.
+     *
+     * Requires {@link VariantStorageOptions#METADATA_DATA_VERSION}. Otherwise, the listener is never notified.
+     *
+     * @param listener Listener receiving the studyId
+     */
+    public void addDataUpdateListener(IntConsumer listener) {
+        Objects.requireNonNull(listener);
+        if (dataVersionActive) {
+            dataUpdateListeners.add(listener);
+        }
+    }
+
+    /**
+     * @return if the data version is increased on every data update. See {@link VariantStorageOptions#METADATA_DATA_VERSION}
+     */
+    public boolean isDataVersionActive() {
+        return dataVersionActive;
+    }
+
+    /**
+     * Version of the variants data of this database. Increased by any instance every time that the data
+     * of any study may have changed. See {@link #addDataUpdateListener(IntConsumer)}.
+     * Only increased if {@link VariantStorageOptions#METADATA_DATA_VERSION} is active.
+     *
+     * @return Current data version
+     * @throws StorageEngineException if there is an error reading the version
+     */
+    public int getDataVersion() throws StorageEngineException {
+        return projectDBAdaptor.getCounter(null, DATA_VERSION_COUNTER);
+    }
+
+    private void increaseDataVersion() {
+        try {
+            projectDBAdaptor.generateId((Integer) null, DATA_VERSION_COUNTER);
+        } catch (StorageEngineException | RuntimeException e) {
+            logger.warn("Error increasing data version", e);
+        }
+    }
+
+    private void notifyDataUpdate(int studyId) {
+        if (!dataVersionActive) {
+            return;
+        }
+        increaseDataVersion();
+        notifyDataUpdateListeners(studyId);
+    }
+
+    private void notifyDataUpdateListeners(int studyId) {
+        for (IntConsumer listener : dataUpdateListeners) {
+            try {
+                listener.accept(studyId);
+            } catch (RuntimeException e) {
+                logger.warn("Error notifying data update on study " + studyId, e);
+            }
+        }
+    }
+
+    private void invalidateFileCaches(int studyId, FileMetadata file) {
+        fileIdCache.invalidate(studyId, file.getName());
+        fileNameCache.invalidate(studyId, file.getId());
+        fileIdIndexedCache.invalidate(studyId, file.getId());
+        sampleIdsFromFileIdCache.invalidate(studyId, file.getId());
+    }
+
+    private void invalidateSampleCaches(int studyId, SampleMetadata sample) {
+        sampleIdCache.invalidate(studyId, sample.getName());
+        sampleNameCache.invalidate(studyId, sample.getId());
+        sampleIdIndexedCache.invalidate(studyId, sample.getId());
+        fileIdsFromSampleIdCache.invalidate(studyId, sample.getId());
+    }
+
+    private void invalidateCohortCaches(int studyId, int cohortId, String cohortName) {
+        cohortIdCache.invalidate(studyId, cohortName);
+        cohortNameCache.invalidate(studyId, cohortId);
+    }
+
+    /**
+     * Get the statistics of the internal metadata caches. Useful to size the caches.
+     *
+     * @return Map from cache name to cache statistics
+     * @see VariantStorageOptions#METADATA_CACHE_MAX_WEIGHT
+     */
+    public Map<String, CacheStats> getCacheStats() {
+        Map<String, CacheStats> stats = new LinkedHashMap<>();
+        stats.put("sampleId", sampleIdCache.stats());
+        stats.put("sampleName", sampleNameCache.stats());
+        stats.put("sampleIdIndexed", sampleIdIndexedCache.stats());
+        stats.put("sampleIdsFromFileId", sampleIdsFromFileIdCache.stats());
+        stats.put("fileId", fileIdCache.stats());
+        stats.put("fileName", fileNameCache.stats());
+        stats.put("fileIdIndexed", fileIdIndexedCache.stats());
+        stats.put("fileIdsFromSampleId", fileIdsFromSampleIdCache.stats());
+        stats.put("cohortId", cohortIdCache.stats());
+        stats.put("cohortName", cohortNameCache.stats());
+        return stats;
+    }
+
     protected void checkName(final String type, String name) {
         if (StringUtils.isEmpty(name)) {
             throw new IllegalArgumentException(type + " can not be empty!");
@@ -35,4 +35,14 @@ public interface ProjectMetadataAdaptor extends AutoCloseable {
     }
 
     int generateId(Integer studyId, String idType) throws StorageEngineException;
+
+    /**
+     * Get the current value of a counter, without increasing it.
+     *
+     * @param studyId Study of the counter, or null for project counters
+     * @param idType  Counter name
+     * @return        Last value generated by {@link #generateId(Integer, String)}, or 0 if none
+     * @throws StorageEngineException if there is an error reading the counter
+     */
+    int getCounter(Integer studyId, String idType) throws StorageEngineException;
 }
@@ -14,6 +14,8 @@ public class CohortMetadata extends StudyResourceMetadata<CohortMetadata> {
 //    private String name;
 
     private List<Integer> samples;
+    // Samples included in the stored stats. Null if unknown, or if the stats are not consistent.
+    private List<Integer> statsSamples;
 
 //    private TaskMetadata.Status status = TaskMetadata.Status.NONE;
 
@@ -34,6 +36,15 @@ public class CohortMetadata extends StudyResourceMetadata<CohortMetadata> {
         return this;
     }
 
+    public List<Integer> getStatsSamples() {
+        return statsSamples;
+    }
+
+    public CohortMetadata setStatsSamples(List<Integer> statsSamples) {
+        this.statsSamples = statsSamples;
+        return this;
+    }
+
     public TaskMetadata.Status getStatsStatus() {
         return getStatus("stats");
     }
@@ -68,6 +68,24 @@ public class ProjectMetadata {
             this.saved = saved;
             return this;
         }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof VariantAnnotationSets)) {
+                return false;
+            }
+            VariantAnnotationSets that = (VariantAnnotationSets) o;
+            return Objects.equals(current, that.current)
+                    && Objects.equals(saved, that.saved);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(current, saved);
+        }
     }
 
     public static class VariantAnnotationMetadata {
@@ -134,6 +152,27 @@ public class ProjectMetadata {
             this.sourceVersion = sourceVersion;
             return this;
         }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof VariantAnnotationMetadata)) {
+                return false;
+            }
+            VariantAnnotationMetadata that = (VariantAnnotationMetadata) o;
+            return id == that.id
+                    && Objects.equals(name, that.name)
+                    && Objects.equals(creationDate, that.creationDate)
+                    && Objects.equals(annotator, that.annotator)
+                    && Objects.equals(sourceVersion, that.sourceVersion);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(id, name, creationDate, annotator, sourceVersion);
+        }
     }
 
     public static class VariantAnnotatorProgram {
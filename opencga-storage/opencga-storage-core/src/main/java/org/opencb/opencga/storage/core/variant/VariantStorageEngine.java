@@ -31,6 +31,8 @@ import org.opencb.opencga.core.common.TimeUtils;
 import org.opencb.opencga.core.response.VariantQueryResult;
 import org.opencb.opencga.storage.core.StorageEngine;
 import org.opencb.opencga.storage.core.StoragePipelineResult;
+import org.opencb.opencga.storage.core.cache.CacheManager;
+import org.opencb.opencga.storage.core.config.CacheConfiguration;
 import org.opencb.opencga.storage.core.config.StorageConfiguration;
 import org.opencb.opencga.storage.core.exceptions.StorageEngineException;
 import org.opencb.opencga.storage.core.exceptions.StoragePipelineException;
@@ -84,7 +86,9 @@ import static org.opencb.opencga.storage.core.variant.search.VariantSearchUtils.
 public abstract class VariantStorageEngine extends StorageEngine<VariantDBAdaptor> implements VariantIterable {
 
     private final AtomicReference<VariantSearchManager> variantSearchManager = new AtomicReference<>();
+    private final AtomicReference<VariantQueryResultCache> variantQueryResultCache = new AtomicReference<>();
     private final List<VariantQueryExecutor> lazyVariantQueryExecutorsList = new ArrayList<>();
+    private final VariantQueryPlanner variantQueryPlanner = new VariantQueryPlanner();
     private CellBaseUtils cellBaseUtils;
 
     public static final String REMOVE_OPERATION_NAME = TaskMetadata.Type.REMOVE.name().toLowerCase();
@@ -276,8 +280,9 @@ public abstract class VariantStorageEngine extends StorageEngine<VariantDBAdapto
     public long annotate(Query query, ObjectMap params) throws VariantAnnotatorException, StorageEngineException, IOException {
         // Merge with configuration
         ObjectMap options = getMergedOptions(params);
-        VariantAnnotationManager annotationManager = newVariantAnnotationManager(options);
-        return annotationManager.annotate(query, options);
+        try (VariantAnnotationManager annotationManager = newVariantAnnotationManager(options)) {
+            return annotationManager.annotate(query, options);
+        }
     }
 
     /**
@@ -294,8 +299,9 @@ public abstract class VariantStorageEngine extends StorageEngine<VariantDBAdapto
         // Merge with configuration
         ObjectMap options = getMergedOptions(params);
         options.put(VariantAnnotationManager.LOAD_FILE, inputFile.toString());
-        VariantAnnotationManager annotationManager = newVariantAnnotationManager(options);
-        return annotationManager.annotate(new Query(), options);
+        try (VariantAnnotationManager annotationManager = newVariantAnnotationManager(options)) {
+            return annotationManager.annotate(new Query(), options);
+        }
     }
 
     /**
@@ -343,11 +349,15 @@ public abstract class VariantStorageEngine extends StorageEngine<VariantDBAdapto
     }
 
     public void saveAnnotation(String name, ObjectMap params) throws StorageEngineException, VariantAnnotatorException {
-        newVariantAnnotationManager(params).saveAnnotation(name, params);
+        try (VariantAnnotationManager annotationManager = newVariantAnnotationManager(params)) {
+            annotationManager.saveAnnotation(name, params);
+        }
     }
 
     public void deleteAnnotation(String name, ObjectMap params) throws StorageEngineException, VariantAnnotatorException {
-        newVariantAnnotationManager(params).deleteAnnotation(name, params);
+        try (VariantAnnotationManager annotationManager = newVariantAnnotationManager(params)) {
+            annotationManager.deleteAnnotation(name, params);
+        }
     }
 
     public DataResult<VariantAnnotation> getAnnotation(String name, Query query, QueryOptions options) throws StorageEngineException {
@@ -581,7 +591,13 @@ public abstract class VariantStorageEngine extends StorageEngine<VariantDBAdapto
         queryOptions.put(QueryOptions.EXCLUDE, Arrays.asList(VariantField.STUDIES_SAMPLES_DATA, VariantField.STUDIES_FILES));
         try (VariantDBIterator iterator = getVariantsToIndex(overwrite, query, queryOptions, dbAdaptor)) {
             ProgressLogger progressLogger = new ProgressLogger("Variants loaded in Solr:", () -> dbAdaptor.count(query).first(), 200);
-            VariantSearchLoadResult load = variantSearchManager.load(dbName, iterator, progressLogger, newVariantSearchLoadListener());
+            ObjectMap loadOptions = new ObjectMap(getOptions());
+            if (!overwrite) {
+                // Variants to index change as they are loaded, so the load can not be resumed from a checkpoint
+                loadOptions.put(RESUME.key(), false);
+            }
+            VariantSearchLoadResult load = variantSearchManager.load(dbName, iterator, progressLogger, newVariantSearchLoadListener(),
+                    loadOptions);
 
             long value = System.currentTimeMillis();
             getMetadataManager().updateProjectMetadata(projectMetadata -> {
@@ -819,7 +835,8 @@ public abstract class VariantStorageEngine extends StorageEngine<VariantDBAdapto
                 }
                 for (Integer cohortId : cohortsToInvalidate) {
                     metadataManager.updateCohortMetadata(studyMetadata.getId(), cohortId,
-                            cohort -> cohort.setStatsStatus(TaskMetadata.Status.ERROR));
+                            // Stored stats include the removed files. Can not be updated incrementally.
+                            cohort -> cohort.setStatsStatus(TaskMetadata.Status.ERROR).setStatsSamples(null));
                 }
 
                 // Restore default cohort with indexed samples
@@ -874,6 +891,9 @@ public abstract class VariantStorageEngine extends StorageEngine<VariantDBAdapto
         ObjectMap options = configuration.getVariantEngine(storageEngineId).getOptions();
         // Merge general options
         configuration.getVariant().getOptions().forEach(options::putIfNotNull);
+        // The data version is only required by the query results cache
+        options.put(METADATA_DATA_VERSION.key(),
+                configuration.getCache() != null && configuration.getCache().isActive());
         return options;
     }
 
@@ -909,6 +929,39 @@ public abstract class VariantStorageEngine extends StorageEngine<VariantDBAdapto
         return variantSearchManager.get();
     }
 
+    /**
+     * Get the cache for the variant query results. Cached results are keyed by the data version of the
+     * {@link VariantStorageMetadataManager}, so any data update from any process makes them unreachable once the
+     * cached data version expires. Updates executed from this engine free the local cached entries of this database
+     * immediately. Remote entries are never removed explicitly, and expire with the configured ttl.
+     *
+     * @return VariantQueryResultCache
+     */
+    public VariantQueryResultCache getVariantQueryResultCache() {
+        if (variantQueryResultCache.get() == null) {
+            synchronized (variantQueryResultCache) {
+                if (variantQueryResultCache.get() == null) {
+                    VariantQueryResultCache cache;
+                    try {
+                        VariantStorageMetadataManager metadataManager = getMetadataManager();
+                        long dataVersionTtl = configuration.getCache() == null
+                                ? CacheConfiguration.DEFAULT_DATA_VERSION_TTL
+                                : configuration.getCache().getDataVersionTtl();
+                        cache = new VariantQueryResultCache(new CacheManager(configuration), dbName, metadataManager,
+                                dataVersionTtl);
+                        if (cache.isActive()) {
+                            metadataManager.addDataUpdateListener(studyId -> cache.invalidate());
+                        }
+                    } catch (StorageEngineException e) {
+                        throw VariantQueryException.internalException(e);
+                    }
+                    variantQueryResultCache.set(cache);
+                }
+            }
+        }
+        return variantQueryResultCache.get();
+    }
+
     public VariantQueryResult<Variant> getPhased(String variant, String studyName, String sampleName, QueryOptions options, int windowsSize)
             throws StorageEngineException {
         VariantQueryExecutor.setDefaultTimeout(options, getOptions());
@@ -930,7 +983,82 @@ public abstract class VariantStorageEngine extends StorageEngine<VariantDBAdapto
         return new VariantSampleDataManager(getDBAdaptor()).getSampleData(variant, study, options);
     }
 
+    /**
+     * Count the variants of one sample from the sample index, grouped by chromosome, genotype and consequence type.
+     *
+     * @param query     Query with one sample. May contain any filter covered by the sample index
+     * @return          One FacetField for each group. The number of matches is the total count
+     * @throws StorageEngineException if there is an error accessing the sample index
+     */
+    public DataResult<FacetField> sampleIndexCount(Query query) throws StorageEngineException {
+        throw new UnsupportedOperationException("Unsupported sampleIndex count");
+    }
+
     public VariantQueryResult<Variant> get(Query query, QueryOptions options) {
+        if (options == null) {
+            options = new QueryOptions();
+        }
+        if (query == null) {
+            query = new Query();
+        }
+        if (options.getBoolean(QUERY_PROFILE.key(), QUERY_PROFILE.defaultValue())) {
+            VariantQueryProfile profile = VariantQueryProfile.start();
+            try {
+                VariantQueryResult<Variant> result = doGet(query, options, profile);
+                if (result.getAttributes() == null) {
+                    result.setAttributes(new ObjectMap());
+                }
+                result.getAttributes().put(QUERY_PROFILE.key(), profile);
+                return result;
+            } finally {
+                profile.stop();
+            }
+        } else {
+            return doGet(query, options, null);
+        }
+    }
+
+    private VariantQueryResult<Variant> doGet(Query query, QueryOptions options, VariantQueryProfile profile) {
+        addDefaultLimit(options, getOptions());
+        addDefaultSampleLimit(query, getOptions());
+        Query finalQuery = VariantQueryProfile.stage("preProcessQuery", () -> preProcessQuery(query, options));
+        if (profile != null) {
+            profile.setQuery(finalQuery);
+        }
+        boolean explain = options.getBoolean(QUERY_EXPLAIN.key(), QUERY_EXPLAIN.defaultValue());
+        if (explain || profile != null) {
+            // Do not cache explained or profiled results
+            return executeQuery(finalQuery, options, explain, profile);
+        }
+        return getVariantQueryResultCache()
+                .get(finalQuery, options, () -> executeQuery(finalQuery, options, false, null));
+    }
+
+    private VariantQueryResult<Variant> executeQuery(Query query, QueryOptions options, boolean explain, VariantQueryProfile profile) {
+        VariantQueryPlan plan = VariantQueryProfile.stage("plan", () -> getVariantQueryPlan(query, options, explain));
+        if (profile != null) {
+            profile.setExecutor(plan.getExecutor());
+        }
+        StopWatch stopWatch = StopWatch.createStarted();
+        VariantQueryResult<Variant> result = VariantQueryProfile.stage("execute", () -> plan.getQueryExecutor().get(query, options));
+        variantQueryPlanner.record(plan, stopWatch.getTime(TimeUnit.MILLISECONDS));
+        if (explain) {
+            if (result.getAttributes() == null) {
+                result.setAttributes(new ObjectMap());
+            }
+            result.getAttributes().put(QUERY_EXPLAIN.key(), plan);
+        }
+        return result;
+    }
+
+    /**
+     * Describe how the query would be executed, without executing it.
+     *
+     * @param query   Query to execute
+     * @param options Options for the query
+     * @return        Query plan, with all the evaluated {@link VariantQueryExecutor}s
+     */
+    public VariantQueryPlan explain(Query query, QueryOptions options) {
         if (options == null) {
             options = new QueryOptions();
         }
@@ -940,7 +1068,7 @@ public abstract class VariantStorageEngine extends StorageEngine<VariantDBAdapto
         addDefaultLimit(options, getOptions());
         addDefaultSampleLimit(query, getOptions());
         query = preProcessQuery(query, options);
-        return getVariantQueryExecutor(query, options).get(query, options);
+        return getVariantQueryPlan(query, options, true);
     }
 
     @Override
@@ -955,8 +1083,13 @@ public abstract class VariantStorageEngine extends StorageEngine<VariantDBAdapto
 
     @Override
     public VariantDBIterator iterator(Query query, QueryOptions options) {
-        query = preProcessQuery(query, options);
-        return getVariantQueryExecutor(query, options).iterator(query, options);
+        Query finalQuery = VariantQueryProfile.stage("preProcessQuery", () -> preProcessQuery(query, options));
+        VariantQueryPlan plan = VariantQueryProfile.stage("plan", () -> getVariantQueryPlan(finalQuery, options, false));
+        VariantQueryProfile profile = VariantQueryProfile.current();
+        if (profile != null) {
+            profile.setQuery(finalQuery).setExecutor(plan.getExecutor());
+        }
+        return plan.getQueryExecutor().iterator(finalQuery, options);
     }
 
     protected final List<VariantQueryExecutor> getVariantQueryExecutors() throws StorageEngineException {
@@ -992,17 +1125,28 @@ public abstract class VariantStorageEngine extends StorageEngine<VariantDBAdapto
      * @return VariantQueryExecutor to use
      */
     public VariantQueryExecutor getVariantQueryExecutor(Query query, QueryOptions options) {
+        return getVariantQueryPlan(query, options, false).getQueryExecutor();
+    }
+
+    /**
+     * Determine how the given query should be executed.
+     *
+     * @param query   Query to execute
+     * @param options Options for the query
+     * @param explain Evaluate all the {@link VariantQueryExecutor}s, even if not needed to take the decision
+     * @return Query plan
+     * @see VariantQueryPlanner
+     */
+    protected VariantQueryPlan getVariantQueryPlan(Query query, QueryOptions options, boolean explain) {
         try {
-            for (VariantQueryExecutor executor : getVariantQueryExecutors()) {
-                if (executor.canUseThisExecutor(query, options)) {
-                    return executor;
-                }
-            }
+            return variantQueryPlanner.plan(getVariantQueryExecutors(), query, options, getOptions(), explain);
         } catch (StorageEngineException e) {
             throw VariantQueryException.internalException(e);
         }
-        // This should never happen, as the DBAdaptorVariantQueryExecutor can always run the query
-        throw new IllegalStateException("No VariantQueryExecutor found to run the query!");
+    }
+
+    public VariantQueryPlanner getVariantQueryPlanner() {
+        return variantQueryPlanner;
     }
 
     public Query preProcessQuery(Query originalQuery, QueryOptions options) {
@@ -1038,9 +1182,14 @@ public abstract class VariantStorageEngine extends StorageEngine<VariantDBAdapto
     }
 
     public DataResult<Long> count(Query query) throws StorageEngineException {
-        query = preProcessQuery(query, null);
-        VariantQueryExecutor variantQueryExecutor = getVariantQueryExecutor(query, new QueryOptions(QueryOptions.COUNT, true));
-        return variantQueryExecutor.count(query);
+        Query finalQuery = preProcessQuery(query, null);
+        return getVariantQueryResultCache().count(finalQuery, () -> {
+            VariantQueryPlan plan = getVariantQueryPlan(finalQuery, new QueryOptions(QueryOptions.COUNT, true), false);
+            StopWatch stopWatch = StopWatch.createStarted();
+            DataResult<Long> result = plan.getQueryExecutor().count(finalQuery);
+            variantQueryPlanner.record(plan, stopWatch.getTime(TimeUnit.MILLISECONDS));
+            return result;
+        });
     }
 
     /**
@@ -1053,7 +1202,7 @@ public abstract class VariantStorageEngine extends StorageEngine<VariantDBAdapto
     public DataResult<FacetField> facet(Query query, QueryOptions options) {
         try {
             addDefaultLimit(options, getOptions());
-            return new VariantAggregationExecutor(getVariantSearchManager(), dbName, this, getMetadataManager())
+            return new VariantAggregationExecutor(getVariantSearchManager(), dbName, this, getMetadataManager(), getOptions())
                     .facet(query, options);
         } catch (StorageEngineException e) {
             throw VariantQueryException.internalException(e);
@@ -1071,6 +1220,9 @@ public abstract class VariantStorageEngine extends StorageEngine<VariantDBAdapto
             }
         }
         lazyVariantQueryExecutorsList.clear();
+        if (variantQueryResultCache.get() != null) {
+            variantQueryResultCache.getAndSet(null).close();
+        }
     }
 }
 
@@ -22,6 +22,8 @@ public enum VariantStorageOptions implements ConfigurationOption {
     TRANSFORM_FAIL_ON_MALFORMED_VARIANT("transform.failOnMalformed", false),
     TRANSFORM_COMPRESSION("transform.compression", "gzip"),
     TRANSFORM_ISOLATE("transform.isolate", false), // Do not store file in metadata
+    TRANSFORM_BLOCK_SIZE("transform.blockSize", 0), // Read the input in blocks of N bytes, and split lines in parallel. 0 to read line by line
+    TRANSFORM_INFLATE_THREADS("transform.inflateThreads", 2), // Threads to decompress BGZF inputs when reading in blocks
 
     LOAD_BATCH_SIZE("load.batchSize", 100),
     LOAD_THREADS("load.numThreads", 6),
@@ -37,6 +39,7 @@ public enum VariantStorageOptions implements ConfigurationOption {
     STATS_LOAD_BATCH_SIZE("stats.load.batchSize", 100),
     STATS_OVERWRITE("stats.overwrite", false),          //Overwrite stats already present
     STATS_UPDATE("stats.update", false),                //Calculate missing stats
+    STATS_INCREMENTAL("stats.incremental", false),      //Update invalid cohorts adding only the new samples to the stored stats
     STATS_AGGREGATION("stats.aggregation.type", Aggregation.NONE),
     STATS_AGGREGATION_MAPPING_FILE("stats.aggregation.mappingFile"),
 
@@ -52,8 +55,24 @@ public enum VariantStorageOptions implements ConfigurationOption {
     ANNOTATOR_CELLBASE_INCLUDE("annotator.cellbase.include"),
     ANNOTATOR_CELLBASE_EXCLUDE("annotator.cellbase.exclude"),
     ANNOTATOR_CELLBASE_IMPRECISE_VARIANTS("annotator.cellbase.impreciseVariants"),
+    ANNOTATOR_CELLBASE_CONCURRENT_REQUESTS("annotator.cellbase.concurrentRequests", 16), // Max concurrent requests to CellBase REST
+    ANNOTATOR_CELLBASE_REQUEST_SIZE("annotator.cellbase.requestSize", 25),     // Initial number of variants per CellBase REST request
+    ANNOTATOR_CELLBASE_MAX_REQUEST_SIZE("annotator.cellbase.maxRequestSize", 200),
+    ANNOTATOR_CELLBASE_TARGET_LATENCY("annotator.cellbase.targetLatency", 4000), // Adapt the request size to this latency, in millis
+    ANNOTATOR_CELLBASE_MAX_RETRIES("annotator.cellbase.maxRetries", 3),
+    ANNOTATOR_CACHE_DIR("annotator.cache.dir"),                         // Persistent annotation cache directory. Disabled if empty
+    ANNOTATOR_CACHE_MAX_SIZE("annotator.cache.maxSize", 10L * 1024 * 1024 * 1024), // Max size in bytes of the annotation cache
+
+    EXPORT_PARALLEL_THREADS("export.parallel.threads", 1),             // Export VCF querying regions concurrently. Disabled if 1
+    EXPORT_PARALLEL_REGION_SIZE("export.parallel.regionSize", 1000000), // Size of each region of the parallel export
+    EXPORT_TABIX_INDEX("export.tabix.index", false),                    // Create a tabix index for parallel VCF_GZ exports
 
     INDEX_SEARCH("indexSearch", false), // Build secondary indexes using search engine.
+    SEARCH_LOAD_CONVERT_THREADS("search.load.convert.threads", 2),      // Threads converting variants into search documents
+    SEARCH_LOAD_STREAMS("search.load.streams", 4),                      // Max number of concurrent update requests to the search engine
+    SEARCH_LOAD_QUEUE_CAPACITY("search.load.queue.capacity", 4),        // Max number of batches waiting between stages
+    SEARCH_LOAD_MAX_RETRIES("search.load.maxRetries", 10),              // Max retries of a rejected update request
+    SEARCH_LOAD_CHECKPOINT_INTERVAL("search.load.checkpoint.interval", 20), // Number of batches between commits
 
     QUERY_DEFAULT_TIMEOUT("query.timeout.default", 10000), // Default timeout for DBAdaptor operations. Only used if none is provided.
     QUERY_MAX_TIMEOUT("query.timeout.max", 30000),         // Max allowed timeout for DBAdaptor operations
@@ -61,15 +80,27 @@ public enum VariantStorageOptions implements ConfigurationOption {
     QUERY_LIMIT_MAX("query.limit.max", 5000),
     QUERY_SAMPLE_LIMIT_DEFAULT("query.sample.limit.default", 100),
     QUERY_SAMPLE_LIMIT_MAX("query.sample.limit.max", 1000),
+    QUERY_MULTI_ITERATOR_PREFETCH("query.multiIterator.prefetch", 0), // Max number of batch queries in flight in two-phase queries
+    QUERY_PLANNER_COST_BASED("query.planner.costBased", false), // Select the query executor by cost instead of the order of preference
+    QUERY_PLANNER_MIN_OBSERVATIONS("query.planner.minObservations", 5), // Min number of queries observed to use their latency
+    QUERY_PLANNER_MAX_OBSERVATION_AGE("query.planner.maxObservationAge", 100), // Queries of the same shape before refreshing a latency
+    QUERY_EXPLAIN("explain", false),                                   // Add the query plan to the result attributes
+    QUERY_PROFILE("profile", false),                                   // Add the query profile to the result attributes
+    AGGREGATION_PARTITION_SIZE("aggregation.partition.size", 10000000), // Size of the region partitions aggregated in parallel
+    AGGREGATION_THREADS("aggregation.threads", 4),                       // Number of partitions aggregated in parallel
 
     // Search intersect options
     INTERSECT_ACTIVE("search.intersect.active", true),                       // Allow intersect queries with the SearchEngine (Solr)
     INTERSECT_ALWAYS("search.intersect.always", false),                      // Force intersect queries
     INTERSECT_PARAMS_THRESHOLD("search.intersect.params.threshold", 3),      // Minimum number of QueryParams in the query to intersect
+    INTERSECT_EXPORT_ACTIVE("search.intersect.export.active", true),         // Stream intersect variant ids with the /export handler
 
     APPROXIMATE_COUNT_SAMPLING_SIZE("approximateCountSamplingSize", 1000),
     APPROXIMATE_COUNT("approximateCount", false),
 
+    METADATA_CACHE_MAX_WEIGHT("metadata.cache.maxWeight", 100000L), // Max weight of each in-memory metadata cache, per study
+    METADATA_DATA_VERSION("metadata.dataVersion", false),           // Keep track of the data version. Enabled with the query results cache
+
 
     /////////////
     // These params are stored in {@link org.opencb.opencga.storage.core.metadata.models.StudyMetadata#getAttributes}.
@@ -49,6 +49,7 @@ import org.opencb.opencga.storage.core.StoragePipeline;
 import org.opencb.opencga.storage.core.config.StorageConfiguration;
 import org.opencb.opencga.storage.core.exceptions.StorageEngineException;
 import org.opencb.opencga.storage.core.io.managers.IOConnectorProvider;
+import org.opencb.opencga.storage.core.io.plain.LineSplitterTask;
 import org.opencb.opencga.storage.core.io.plain.StringDataReader;
 import org.opencb.opencga.storage.core.io.plain.StringDataWriter;
 import org.opencb.opencga.storage.core.metadata.VariantStorageMetadataManager;
@@ -222,6 +223,12 @@ public abstract class VariantStoragePipeline implements StoragePipeline {
                 VariantStorageOptions.TRANSFORM_THREADS.key(),
                 VariantStorageOptions.TRANSFORM_THREADS.defaultValue());
         int capacity = options.getInt("blockingQueueCapacity", numTasks * 2);
+        int blockSize = options.getInt(
+                VariantStorageOptions.TRANSFORM_BLOCK_SIZE.key(),
+                VariantStorageOptions.TRANSFORM_BLOCK_SIZE.defaultValue());
+        int inflateThreads = options.getInt(
+                VariantStorageOptions.TRANSFORM_INFLATE_THREADS.key(),
+                VariantStorageOptions.TRANSFORM_INFLATE_THREADS.defaultValue());
 
         if ("gzip".equalsIgnoreCase(compression) || "gz".equalsIgnoreCase(compression)) {
             extension = ".gz";
@@ -300,7 +307,7 @@ public abstract class VariantStoragePipeline implements StoragePipeline {
                 throw StorageEngineException.ioException(e);
             }
 
-            ptr = buildTransformPtr(parallelParse, stringReader, task, encoder, dataWriter, config);
+            ptr = buildTransformPtr(parallelParse, stringReader, blockSize, inflateThreads, task, encoder, dataWriter, config);
         } else if ("json".equals(format)) {
             Supplier<Task<Variant, String>> encoder = () -> Task.forEach(Variant::toJson);
 
@@ -317,7 +324,7 @@ public abstract class VariantStoragePipeline implements StoragePipeline {
                 }
             }
 
-            ptr = buildTransformPtr(parallelParse, stringReader, task, encoder, dataWriter, config);
+            ptr = buildTransformPtr(parallelParse, stringReader, blockSize, inflateThreads, task, encoder, dataWriter, config);
         } else if ("proto".equals(format)) {
             ptr = transformProto(metadata, outputVariantsFile, stringReader, task);
         } else {
@@ -353,15 +360,33 @@ public abstract class VariantStoragePipeline implements StoragePipeline {
     }
 
     protected <W> ParallelTaskRunner<?, W> buildTransformPtr(boolean parallelParse,
-                                                     DataReader<String> stringReader,
+                                                     StringDataReader stringReader,
+                                                     int blockSize,
+                                                     int inflateThreads,
                                                      Supplier<Task<String, Variant>> task,
                                                      Supplier<Task<Variant, W>> encoder,
                                                      DataWriter<W> dataWriter,
                                                      ParallelTaskRunner.Config config) {
+        if (blockSize > 0) {
+            // Read raw blocks of lines. Split and decode lines in the transform tasks
+            logger.info("Reading input in blocks of {} bytes", blockSize);
+            return buildTransformPtr(parallelParse, stringReader.toLineBlockReader(blockSize, inflateThreads),
+                    () -> new LineSplitterTask().then(task.get()), encoder, dataWriter, config);
+        } else {
+            return buildTransformPtr(parallelParse, (DataReader<String>) stringReader, task, encoder, dataWriter, config);
+        }
+    }
+
+    protected <I, W> ParallelTaskRunner<?, W> buildTransformPtr(boolean parallelParse,
+                                                     DataReader<I> stringReader,
+                                                     Supplier<Task<I, Variant>> task,
+                                                     Supplier<Task<Variant, W>> encoder,
+                                                     DataWriter<W> dataWriter,
+                                                     ParallelTaskRunner.Config config) {
 
         logger.info("Multi thread transform... [1 reading, {} transforming, 1 writing]", config.getNumTasks());
         if (parallelParse) {
-            return new ParallelTaskRunner<String, W>(
+            return new ParallelTaskRunner<I, W>(
                     stringReader,
                     () -> task.get().then(encoder.get()),
                     dataWriter,
@@ -26,6 +26,7 @@ import org.opencb.commons.datastore.core.QueryOptions;
 import org.opencb.opencga.core.response.VariantQueryResult;
 import org.opencb.opencga.storage.core.metadata.VariantStorageMetadataManager;
 import org.opencb.opencga.storage.core.metadata.models.StudyMetadata;
+import org.opencb.opencga.storage.core.variant.adaptors.iterators.VariantDBIterator;
 import org.opencb.opencga.storage.core.variant.stats.VariantStatsWrapper;
 
 import java.io.IOException;
@@ -67,7 +68,15 @@ public interface VariantDBAdaptor extends VariantIterable, AutoCloseable {
      * @return A DataResult with the result of the query
      */
     default VariantQueryResult<Variant> get(Iterator<?> variants, Query query, QueryOptions options) {
-        DataResult<Variant> queryResult = iterator(variants, query, options).toDataResult();
+        DataResult<Variant> queryResult;
+        // Close the iterator to release the input iterator and stop any query in flight
+        try (VariantDBIterator iterator = iterator(variants, query, options)) {
+            queryResult = iterator.toDataResult();
+        } catch (VariantQueryException e) {
+            throw e;
+        } catch (Exception e) {
+            throw VariantQueryException.internalException(e);
+        }
         return addSamplesMetadataIfRequested(queryResult, query, options, getMetadataManager());
     }
 
@@ -14,7 +14,10 @@ import java.util.List;
 public class IntersectMultiVariantKeyIterator extends MultiVariantKeyIterator {
 
     private final List<VariantDBIterator> negatedIterators;
-    private final List<Variant> negatedVariants;
+    private final List<VariantCursor> cursors;
+    private final List<VariantCursor> negatedCursors;
+    // Current target variant. Copied from the cursors
+    private final VariantCursor target = new VariantCursor(null, -1);
     protected boolean firstVariant = true;
 
     public IntersectMultiVariantKeyIterator(List<VariantDBIterator> iterators) {
@@ -25,29 +28,30 @@ public class IntersectMultiVariantKeyIterator extends MultiVariantKeyIterator {
         super(iterators);
         this.negatedIterators = negatedIterators;
         negatedIterators.forEach(this::addCloseable);
-        negatedVariants = new ArrayList<>(negatedIterators.size());
+        cursors = new ArrayList<>(iterators.size());
+        negatedCursors = new ArrayList<>(negatedIterators.size());
     }
 
     @Override
     protected void init() {
-        for (VariantDBIterator negatedIterator : negatedIterators) {
-            if (negatedIterator.hasNext()) {
-                negatedVariants.add(negatedIterator.next());
-            } else {
-                negatedVariants.add(null);
-            }
+        for (int i = 0; i < iterators.size(); i++) {
+            cursors.add(new VariantCursor(iterators.get(i), i));
+        }
+        for (int i = 0; i < negatedIterators.size(); i++) {
+            VariantCursor negatedCursor = new VariantCursor(negatedIterators.get(i), i);
+            negatedCursor.advance();
+            negatedCursors.add(negatedCursor);
         }
 
         // Get first variant of the first iterator to initialize the loop
-        VariantDBIterator iterator = this.iterators.get(0);
-        if (iterator.hasNext()) {
-            prev = iterator.next();
+        VariantCursor cursor = cursors.get(0);
+        if (cursor.advance()) {
+            prev = cursor.getVariant();
         }
     }
 
     @Override
     public void getNext() {
-
         boolean existsInNegatedIterators;
         Variant target;
         do {
@@ -65,55 +69,46 @@ public class IntersectMultiVariantKeyIterator extends MultiVariantKeyIterator {
      * @return Variant in all iterators, or null
      */
     protected Variant nextMatch() {
-
         // Find target variant
-        Variant target;
         if (firstVariant) {
-            target = prev;
             firstVariant = false;
+            if (cursors.get(0).getVariant() == null) {
+                return null;
+            }
         } else {
-            if (iterators.get(0).hasNext()) {
-                target = iterators.get(0).next();
-            } else {
+            if (!cursors.get(0).advance()) {
                 return null;
             }
         }
-
         // Selected target variant is from the first iterator.
+        target.copy(cursors.get(0));
+
         // Number of iterators with the target variant. Start with one match.
         int numMatches = 1;
         int i = 0; // Incrementing this index at the beginning of the loop. Skip first iterator
-
         // Iterate while the number of matches is the same as the number of iterators, so all the
-        loop:
-        while (numMatches != iterators.size()) {
+        while (numMatches != cursors.size()) {
             i++;
-            i %= iterators.size();
-            VariantDBIterator iterator = iterators.get(i);
-            Variant variant;
+            i %= cursors.size();
+            VariantCursor cursor = cursors.get(i);
+            // Iterate until find a variant equals or above to the target variant.
+            // Current variant from this cursor was already used, so always move at least once.
+            // Only the primitive keys are compared while skipping variants.
+            if (!cursor.advance() || !cursor.advanceTo(target)) {
+                // End of the loop. Finish after first empty iterator
+                return null;
+            }
 
-            // Iterate until find a variant equals or above to the target variant
-            do {
-                if (iterator.hasNext()) {
-                    variant = iterator.next();
-                } else {
-                    // End of the loop. Finish after first empty iterator
-                    target = null;
-                    break loop;
-                }
-            } while (VARIANT_COMPARATOR.compare(variant, target) < 0);
             // If same variant, we have another match!
-            if (target.sameGenomicVariant(variant)) {
+            if (target.sameGenomicVariant(cursor)) {
                 numMatches++;
-//                System.out.println("Iterator " + i + " matches with target '" + target + "'! Num matches : " + numMatches);
             } else {
                 // If is not the target variant, change the target, and reset the number of matches
-                target = variant;
+                target.copy(cursor);
                 numMatches = 1;
-//                System.out.println("Iterator " + i + " does not match with target. New target : " + target);
             }
         }
-        return target;
+        return target.getVariant();
     }
 
     /**
@@ -124,27 +119,13 @@ public class IntersectMultiVariantKeyIterator extends MultiVariantKeyIterator {
      * @return  If the variant is valid
      */
     protected boolean existsInNegatedIterators(Variant target) {
-        boolean exists = false;
         if (target != null) {
-            for (int i = 0; i < negatedIterators.size(); i++) {
-                VariantDBIterator negatedIterator = negatedIterators.get(i);
-                Variant variant = negatedVariants.get(i);
-                while (variant != null && VARIANT_COMPARATOR.compare(variant, target) < 0) {
-                    if (negatedIterator.hasNext()) {
-                        variant = negatedIterator.next();
-                    } else {
-                        variant = null;
-                    }
-                    negatedVariants.set(i, variant);
-                }
-                if (variant != null && variant.sameGenomicVariant(target)) {
-                    exists = true;
-                    break;
+            for (VariantCursor negatedCursor : negatedCursors) {
+                if (negatedCursor.advanceTo(this.target) && negatedCursor.sameGenomicVariant(this.target)) {
+                    return true;
                 }
             }
         }
-        return exists;
+        return false;
     }
-
-
 }
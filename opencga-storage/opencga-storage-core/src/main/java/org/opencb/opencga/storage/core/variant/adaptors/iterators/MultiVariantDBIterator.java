@@ -17,22 +17,34 @@
 package org.opencb.opencga.storage.core.variant.adaptors.iterators;
 
 import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.apache.commons.lang3.time.StopWatch;
 import org.opencb.biodata.models.variant.Variant;
 import org.opencb.commons.datastore.core.Query;
 import org.opencb.commons.datastore.core.QueryOptions;
+import org.opencb.opencga.storage.core.variant.VariantStorageOptions;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantDBAdaptor;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryException;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.function.BiFunction;
 
 /**
  * Iterates multiple variant iterators. Every time that voids one iterator, creates a new one using the iteratorFactory.
  *
+ * If {@link VariantStorageOptions#QUERY_MULTI_ITERATOR_PREFETCH} is greater than 0, the queries are executed in background,
+ * keeping up to N queries in flight while the consumer reads the results. Results are returned in the same order.
+ * The number of queries in flight adapts to the speed of the consumer. The background threads are released once the
+ * input iterator is exhausted, the limit is reached, or the iterator is closed.
+ *
  * Created on 04/07/17.
  *
  * @author Jacobo Coll &lt;jacobo167@gmail.com&gt;
@@ -55,6 +67,17 @@ public class MultiVariantDBIterator extends VariantDBIterator {
     private Query query;
     private int numQueries;
     private Variant lastVariant = null;
+    // Batch of variants from the primary iterator used to build the current variantDBIterator
+    private List<Object> currentBatch = Collections.emptyList();
+    // Number of variants from the primary iterator, including the current batch
+    private int currentBatchSizeCount;
+
+    // Parallel mode. Max number of queries in flight. 0 for sequential mode.
+    private final int maxPrefetch;
+    private int prefetch;
+    private ExecutorService executor;
+    private boolean prefetchTerminated;
+    private final Deque<Future<VariantBatch>> pendingBatches = new ArrayDeque<>();
 
     /**
      * Creates a multi iterator given a iterator of variants. It will apply the query (if any) to all the variants in the iterator.
@@ -91,6 +114,11 @@ public class MultiVariantDBIterator extends VariantDBIterator {
         this.options.remove(QueryOptions.LIMIT);
         this.options.remove(QueryOptions.SKIP);
 
+        maxPrefetch = Math.max(0, this.options.getInt(VariantStorageOptions.QUERY_MULTI_ITERATOR_PREFETCH.key(),
+                VariantStorageOptions.QUERY_MULTI_ITERATOR_PREFETCH.defaultValue()));
+        prefetch = maxPrefetch;
+        this.options.remove(VariantStorageOptions.QUERY_MULTI_ITERATOR_PREFETCH.key());
+
         query = null;
         numQueries = 0;
     }
@@ -100,6 +128,8 @@ public class MultiVariantDBIterator extends VariantDBIterator {
         init();
         if (numResults >= maxResults) {
             terminateIterator();
+            // Limit reached. Results from the queries in flight won't be used.
+            shutdownPrefetch(true);
             return false;
         } else if (!fetch(variantDBIterator::hasNext)) {
             nextVariantIterator();
@@ -118,6 +148,10 @@ public class MultiVariantDBIterator extends VariantDBIterator {
      * Get the next non-empty valid {@link #variantDBIterator}. If none, use {@link #emptyIterator()}
      */
     private void nextVariantIterator() {
+        if (maxPrefetch > 0) {
+            nextVariantIteratorParallel();
+            return;
+        }
         while (!fetch(variantDBIterator::hasNext) && fetch(queryIterator::hasNext)) {
             terminateIterator();
             numQueries++;
@@ -133,6 +167,8 @@ public class MultiVariantDBIterator extends VariantDBIterator {
                 options = this.options;
             }
             query = fetch(() -> queryIterator.next(numResults, limit));
+            currentBatch = queryIterator.lastBatch;
+            currentBatchSizeCount = queryIterator.totalBatchSizeCount;
 
             variantDBIterator = fetch(() -> iteratorFactory.apply(query, options));
         }
@@ -141,6 +177,137 @@ public class MultiVariantDBIterator extends VariantDBIterator {
         }
     }
 
+    /**
+     * Parallel version of {@link #nextVariantIterator()}. Take the results from the oldest query in flight,
+     * and submit new queries to keep the prefetch queue full.
+     */
+    private void nextVariantIteratorParallel() {
+        while (!fetch(variantDBIterator::hasNext)) {
+            terminateIterator();
+            submitQueries();
+            Future<VariantBatch> future = pendingBatches.poll();
+            if (future == null) {
+                break;
+            }
+            if (pendingBatches.isEmpty() && !fetch(queryIterator::hasNext)) {
+                // Last batch. No more queries will be submitted. Let the last query finish.
+                shutdownPrefetch(false);
+            }
+            adaptPrefetch(future.isDone());
+            VariantBatch batch = fetch(() -> getBatch(future));
+            currentBatch = batch.primaryVariants;
+            currentBatchSizeCount += batch.primaryVariants.size();
+            variantDBIterator = VariantDBIterator.wrapper(batch.variants.iterator());
+            variantDBIterator.setTimeConverting(batch.timeConverting);
+            // Refill the queue before consuming the batch
+            submitQueries();
+        }
+        if (!fetch(variantDBIterator::hasNext)) {
+            terminateIterator();
+        }
+    }
+
+    private void submitQueries() {
+        while (!prefetchTerminated && pendingBatches.size() < prefetch && fetch(queryIterator::hasNext)) {
+            numQueries++;
+            QueryOptions options;
+            int limit;
+            if (maxResults != Integer.MAX_VALUE) {
+                // The results from the queries in flight are unknown. Use the remaining limit as upper bound
+                limit = maxResults - numResults;
+                options = new QueryOptions(this.options).append(QueryOptions.LIMIT, limit);
+            } else {
+                limit = Integer.MAX_VALUE;
+                options = this.options;
+            }
+            Query batchQuery = fetch(() -> queryIterator.next(numResults, limit));
+            List<Object> primaryVariants = queryIterator.lastBatch;
+            query = batchQuery;
+            pendingBatches.add(getExecutor().submit(() -> runBatch(batchQuery, options, primaryVariants)));
+        }
+    }
+
+    /**
+     * Increase the number of queries in flight if the consumer had to wait for the results.
+     * Decrease it if all the queries in flight are already completed, to avoid buffering too many results.
+     *
+     * @param ready If the next batch was ready when requested
+     */
+    private void adaptPrefetch(boolean ready) {
+        if (!ready) {
+            prefetch = Math.min(prefetch + 1, maxPrefetch);
+        } else if (pendingBatches.stream().allMatch(Future::isDone)) {
+            prefetch = Math.max(prefetch - 1, 1);
+        }
+    }
+
+    private VariantBatch runBatch(Query query, QueryOptions options, List<Object> primaryVariants) throws Exception {
+        try (VariantDBIterator iterator = iteratorFactory.apply(query, options)) {
+            List<Variant> variants = new ArrayList<>(primaryVariants.size());
+            while (iterator.hasNext()) {
+                variants.add(iterator.next());
+            }
+            return new VariantBatch(primaryVariants, variants, iterator.getTimeConverting());
+        }
+    }
+
+    private VariantBatch getBatch(Future<VariantBatch> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw VariantQueryException.internalException(e);
+        } catch (ExecutionException e) {
+            Throwables.propagateIfPossible(e.getCause());
+            throw VariantQueryException.internalException(e);
+        }
+    }
+
+    /**
+     * Stop the background queries. No more queries will be submitted.
+     *
+     * @param cancel Cancel the queries in flight, and interrupt the running queries.
+     */
+    private void shutdownPrefetch(boolean cancel) {
+        prefetchTerminated = true;
+        if (cancel) {
+            for (Future<VariantBatch> future : pendingBatches) {
+                future.cancel(true);
+            }
+            pendingBatches.clear();
+        }
+        if (executor != null) {
+            if (cancel) {
+                executor.shutdownNow();
+            } else {
+                executor.shutdown();
+            }
+            executor = null;
+        }
+    }
+
+    private ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(maxPrefetch, new ThreadFactoryBuilder()
+                    .setNameFormat("multi-variant-iterator-%d")
+                    .setDaemon(true)
+                    .build());
+        }
+        return executor;
+    }
+
+    private static class VariantBatch {
+        private final List<Object> primaryVariants;
+        private final List<Variant> variants;
+        private final long timeConverting;
+
+        VariantBatch(List<Object> primaryVariants, List<Variant> variants, long timeConverting) {
+            this.primaryVariants = primaryVariants;
+            this.variants = variants;
+            this.timeConverting = timeConverting;
+        }
+    }
+
     private void terminateIterator() {
         // Accumulate statistics from previous iterator.
         timeFetching += variantDBIterator.getTimeFetching();
@@ -197,6 +364,7 @@ public class MultiVariantDBIterator extends VariantDBIterator {
 
     @Override
     public void close() throws Exception {
+        shutdownPrefetch(true);
         terminateIterator();
         super.close();
     }
@@ -214,15 +382,15 @@ public class MultiVariantDBIterator extends VariantDBIterator {
         if (lastVariant != null) {
             int usedVariantsFromLastBatch = 0;
             String lastVariantStr = lastVariant.toString();
-            for (Object variant : queryIterator.lastBatch) {
+            for (Object variant : currentBatch) {
                 usedVariantsFromLastBatch++;
                 if (lastVariantStr.equals(variant.toString())) {
                     break;
                 }
             }
-            unusedVariantsFromLastBatch = queryIterator.lastBatch.size() - usedVariantsFromLastBatch;
+            unusedVariantsFromLastBatch = currentBatch.size() - usedVariantsFromLastBatch;
         }
-        return queryIterator.totalBatchSizeCount - unusedVariantsFromLastBatch;
+        return currentBatchSizeCount - unusedVariantsFromLastBatch;
     }
 
     private static class VariantQueryIterator implements Iterator<Query>, AutoCloseable {
@@ -5,6 +5,7 @@ import org.opencb.biodata.models.variant.Variant;
 import java.util.Comparator;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.Objects;
 
 /**
  * Created on 03/07/18.
@@ -45,6 +46,152 @@ abstract class MultiVariantKeyIterator extends VariantDBIterator {
 
     public abstract void getNext();
 
+    /**
+     * Cursor over a sorted {@link VariantDBIterator}, pointing to the current variant.
+     *
+     * Caches a primitive encoded key of the current variant (chromosome prefix, start and end), so most comparisons
+     * between cursors do not need to access the {@link Variant} object. The order is the same as {@link #VARIANT_COMPARATOR}.
+     * Cursors are mutable and reused, so moving a cursor does not create any new object.
+     */
+    protected static final class VariantCursor {
+        // Number of chromosome chars encoded in the chromosome key
+        private static final int CHROMOSOME_KEY_CHARS = 7;
+
+        private final VariantDBIterator iterator;
+        private final int index;
+        private Variant variant;
+        private String chromosome;
+        private long chromosomeKey;
+        // The chromosome key represents the whole chromosome
+        private boolean exactChromosomeKey;
+        private int start;
+        private int end;
+
+        protected VariantCursor(VariantDBIterator iterator, int index) {
+            this.iterator = iterator;
+            this.index = index;
+        }
+
+        /**
+         * Move the cursor to the next variant.
+         *
+         * @return if the cursor points to a variant, or false if the iterator is over
+         */
+        protected boolean advance() {
+            if (iterator.hasNext()) {
+                set(iterator.next());
+                return true;
+            } else {
+                variant = null;
+                return false;
+            }
+        }
+
+        /**
+         * Move the cursor until the first variant equal or greater than the target.
+         * Does not move the cursor if the current variant is already equal or greater than the target.
+         *
+         * @param target Target variant
+         * @return if the cursor points to a variant, or false if the iterator is over
+         */
+        protected boolean advanceTo(VariantCursor target) {
+            while (variant != null && compareTo(target) < 0) {
+                advance();
+            }
+            return variant != null;
+        }
+
+        /**
+         * Copy the current variant from another cursor.
+         *
+         * @param other Other cursor
+         */
+        protected void copy(VariantCursor other) {
+            variant = other.variant;
+            chromosome = other.chromosome;
+            chromosomeKey = other.chromosomeKey;
+            exactChromosomeKey = other.exactChromosomeKey;
+            start = other.start;
+            end = other.end;
+        }
+
+        protected void set(Variant variant) {
+            this.variant = variant;
+            String chromosome = variant.getChromosome();
+            if (!Objects.equals(this.chromosome, chromosome)) {
+                // Do not encode again the same chromosome
+                this.chromosome = chromosome;
+                encodeChromosome(chromosome);
+            }
+            start = variant.getStart();
+            end = variant.getEnd();
+        }
+
+        protected Variant getVariant() {
+            return variant;
+        }
+
+        protected int getIndex() {
+            return index;
+        }
+
+        protected int compareTo(VariantCursor other) {
+            int c = compareChromosome(other);
+            if (c != 0) {
+                return c;
+            }
+            c = Integer.compare(start, other.start);
+            if (c != 0) {
+                return c;
+            }
+            c = Integer.compare(end, other.end);
+            if (c != 0) {
+                return c;
+            }
+            return VARIANT_COMPARATOR.compare(variant, other.variant);
+        }
+
+        protected boolean sameGenomicVariant(VariantCursor other) {
+            return start == other.start
+                    && end == other.end
+                    && compareChromosome(other) == 0
+                    && variant.sameGenomicVariant(other.variant);
+        }
+
+        private int compareChromosome(VariantCursor other) {
+            if (chromosomeKey != other.chromosomeKey) {
+                return Long.compare(chromosomeKey, other.chromosomeKey);
+            } else if (exactChromosomeKey && other.exactChromosomeKey) {
+                return 0;
+            } else {
+                return chromosome.compareTo(other.chromosome);
+            }
+        }
+
+        /**
+         * Encode the first chars of the chromosome in a long, one byte per char, keeping the lexicographical order.
+         * The key is exact if all the chars were encoded without loss.
+         *
+         * @param chromosome Chromosome
+         */
+        private void encodeChromosome(String chromosome) {
+            long key = 0;
+            boolean exact = chromosome.length() <= CHROMOSOME_KEY_CHARS;
+            for (int i = 0; i < CHROMOSOME_KEY_CHARS; i++) {
+                key <<= 8;
+                if (i < chromosome.length()) {
+                    char c = chromosome.charAt(i);
+                    if (c == 0 || c > 0xFF) {
+                        exact = false;
+                    }
+                    key |= Math.min(c, 0xFF);
+                }
+            }
+            chromosomeKey = key;
+            exactChromosomeKey = exact;
+        }
+    }
+
     @Override
     public int getCount() {
         return count;
@@ -1,78 +1,68 @@
 package org.opencb.opencga.storage.core.variant.adaptors.iterators;
 
-import org.opencb.biodata.models.variant.Variant;
-
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
-import java.util.Objects;
+import java.util.PriorityQueue;
 
 /**
  * Created on 03/07/18.
  *
+ * Union of multiple sorted iterators. Uses a k-way merge, with a heap of {@link VariantCursor}.
+ * If multiple iterators contain the same variant, returns the variant from the first iterator.
+ *
  * @author Jacobo Coll &lt;jacobo167@gmail.com&gt;
  */
 public class UnionMultiVariantKeyIterator extends MultiVariantKeyIterator {
 
-    protected List<Variant> variants;
+    private static final Comparator<VariantCursor> CURSOR_COMPARATOR = ((Comparator<VariantCursor>) VariantCursor::compareTo)
+            .thenComparingInt(VariantCursor::getIndex);
+
+    // Cursors not pointing to the last returned variant, sorted by current variant
+    private final PriorityQueue<VariantCursor> heap;
+    // Cursors pointing to the last returned variant. Will be moved on the next call to getNext
+    private final List<VariantCursor> consumed;
 
     public UnionMultiVariantKeyIterator(List<VariantDBIterator> iterators) {
         super(iterators);
-        variants = new ArrayList<>(iterators.size());
+        heap = new PriorityQueue<>(Math.max(1, iterators.size()), CURSOR_COMPARATOR);
+        consumed = new ArrayList<>(iterators.size());
     }
 
     @Override
     protected void init() {
-        for (VariantDBIterator iterator : iterators) {
-            if (iterator.hasNext()) {
-                variants.add(iterator.next());
-            } else {
-                // Mark as this iterator is over
-                variants.add(null);
+        for (int i = 0; i < iterators.size(); i++) {
+            VariantCursor cursor = new VariantCursor(iterators.get(i), i);
+            if (cursor.advance()) {
+                heap.add(cursor);
             }
         }
-        next = variants.stream().filter(Objects::nonNull).min(VARIANT_COMPARATOR).orElse(null);
+        getNext();
     }
 
     @Override
     public void getNext() {
-
-        Variant nextMin = null;
-        //System.out.println("variants = " + variants);
-        //System.out.println("prev = " + prev);
+        // Increment iterators pointing to the previous variant
+        for (VariantCursor cursor : consumed) {
+            if (cursor.advance()) {
+                heap.add(cursor);
+            }
+        }
+        consumed.clear();
 
         // Find the smallest variant
-        for (int i = 0; i < iterators.size(); i++) {
-            VariantDBIterator iterator = iterators.get(i);
-            Variant variant = variants.get(i);
-            // Increment iterator if it was pointing to the previous variant
-            if (prev.sameGenomicVariant(variant)) {
-                if (iterator.hasNext()) {
-                    variant = iterator.next();
-                    //System.out.println("variants[" + i + "] = " + variant);
-                    variants.set(i, variant);
-                } else {
-                    //System.out.println("variants[" + i + "] = " + null);
-                    variant = null;
-                    variants.set(i, null);
-                }
-            }
-            if (variant != null) {
-                if (nextMin == null) {
-                    nextMin = variant;
-                } else {
-                    if (/*currentChromosome.equals(variant.getChromosome()) && */
-                            VARIANT_COMPARATOR.compare(variant, nextMin) < 0) {
-                        nextMin = variant;
-                    }
-                }
+        VariantCursor min = heap.poll();
+        if (min == null) {
+            next = null;
+        } else {
+            consumed.add(min);
+            // Skip the same variant from other iterators
+            while (!heap.isEmpty() && heap.peek().sameGenomicVariant(min)) {
+                consumed.add(heap.poll());
             }
+            next = min.getVariant();
         }
-
-
         prev = null;
-        next = nextMin;
-
-        //System.out.println("next = " + next);
     }
 
 }
@@ -0,0 +1,234 @@
+package org.opencb.opencga.storage.core.variant.adaptors.sample;
+
+import org.opencb.biodata.models.feature.Genotype;
+import org.opencb.biodata.models.variant.StudyEntry;
+
+import java.util.*;
+
+/**
+ * Compact columnar representation of the sample data (FORMAT fields) of a {@link StudyEntry}.
+ *
+ * Instead of one {@code List<String>} per sample, values are stored by column:
+ * <ul>
+ *     <li>GT: Dictionary encoded. One byte per sample, pointing to a dictionary of distinct genotypes.</li>
+ *     <li>Other fields: One String array per field, reusing equal values.</li>
+ * </ul>
+ *
+ * Used to count genotypes per cohort without building one list of values per sample,
+ * see {@link #countGenotypes(int[])}.
+ */
+public final class SampleDataColumns {
+
+    public static final String GT = "GT";
+
+    // Max number of distinct genotypes in a dictionary encoded column
+    private static final int MAX_DICTIONARY_SIZE = 256;
+
+    private final List<String> format;
+    private final Map<String, Integer> formatPositions;
+    private final int numSamples;
+    private final Column[] columns;
+
+    private SampleDataColumns(List<String> format, int numSamples, Column[] columns) {
+        this.format = Collections.unmodifiableList(new ArrayList<>(format));
+        this.numSamples = numSamples;
+        this.columns = columns;
+        formatPositions = new HashMap<>(format.size());
+        for (int i = 0; i < format.size(); i++) {
+            formatPositions.put(format.get(i), i);
+        }
+    }
+
+    public static Builder builder(List<String> format, int numSamples) {
+        return new Builder(format, numSamples);
+    }
+
+    public List<String> getFormat() {
+        return format;
+    }
+
+    public int getNumSamples() {
+        return numSamples;
+    }
+
+    public String get(int sampleIdx, String field) {
+        Integer fieldIdx = formatPositions.get(field);
+        return fieldIdx == null ? null : get(sampleIdx, fieldIdx);
+    }
+
+    public String get(int sampleIdx, int fieldIdx) {
+        return columns[fieldIdx].get(sampleIdx);
+    }
+
+    public boolean hasGenotypes() {
+        Integer fieldIdx = formatPositions.get(GT);
+        return fieldIdx != null && columns[fieldIdx] instanceof GenotypeColumn;
+    }
+
+    /**
+     * Count the genotypes of a subset of samples. Absent genotypes are not counted.
+     * Each distinct genotype of a dictionary encoded column is parsed only once, and the same {@link Genotype}
+     * instance is returned in every call. Do not modify the returned keys.
+     *
+     * @param sampleIdxs Sample indexes
+     * @return Genotype count
+     */
+    public Map<Genotype, Integer> countGenotypes(int[] sampleIdxs) {
+        Map<Genotype, Integer> gtCount = new HashMap<>();
+        if (hasGenotypes()) {
+            GenotypeColumn column = getGenotypeColumn();
+            int[] counts = new int[column.dictionary.size()];
+            byte[] codes = column.codes;
+            for (int sampleIdx : sampleIdxs) {
+                counts[codes[sampleIdx] & 0xFF]++;
+            }
+            for (int code = 0; code < counts.length; code++) {
+                if (counts[code] > 0 && column.dictionary.get(code) != null) {
+                    gtCount.merge(column.getGenotype(code), counts[code], Integer::sum);
+                }
+            }
+        } else if (formatPositions.containsKey(GT)) {
+            for (int sampleIdx : sampleIdxs) {
+                String gt = get(sampleIdx, GT);
+                if (gt != null) {
+                    gtCount.merge(new Genotype(gt), 1, Integer::sum);
+                }
+            }
+        }
+        return gtCount;
+    }
+
+    private GenotypeColumn getGenotypeColumn() {
+        Integer fieldIdx = formatPositions.get(GT);
+        if (fieldIdx == null || !(columns[fieldIdx] instanceof GenotypeColumn)) {
+            throw new IllegalStateException("Missing dictionary encoded " + GT + " column");
+        }
+        return (GenotypeColumn) columns[fieldIdx];
+    }
+
+    public static final class Builder {
+        private final List<String> format;
+        private final int numSamples;
+        private final Column[] columns;
+
+        private Builder(List<String> format, int numSamples) {
+            this.format = format;
+            this.numSamples = numSamples;
+            columns = new Column[format.size()];
+            for (int i = 0; i < columns.length; i++) {
+                String field = format.get(i);
+                if (field.equals(GT)) {
+                    columns[i] = new GenotypeColumn(numSamples);
+                } else {
+                    columns[i] = new StringColumn(numSamples);
+                }
+            }
+        }
+
+        public Builder set(int sampleIdx, int fieldIdx, String value) {
+            if (!columns[fieldIdx].set(sampleIdx, value)) {
+                // Value not supported by the column. Fallback to a string column
+                columns[fieldIdx] = new StringColumn(columns[fieldIdx], numSamples);
+                columns[fieldIdx].set(sampleIdx, value);
+            }
+            return this;
+        }
+
+        public SampleDataColumns build() {
+            return new SampleDataColumns(format, numSamples, columns);
+        }
+    }
+
+    private abstract static class Column {
+        abstract String get(int sampleIdx);
+
+        /**
+         * Set a value.
+         * @param sampleIdx Sample index
+         * @param value     Value
+         * @return false if the value can not be represented by this column
+         */
+        abstract boolean set(int sampleIdx, String value);
+    }
+
+    private static final class GenotypeColumn extends Column {
+        private final byte[] codes;
+        private final List<String> dictionary = new ArrayList<>();
+        private final Map<String, Integer> dictionaryIndex = new HashMap<>();
+        // Parsed genotypes, lazily filled
+        private final List<Genotype> genotypes = new ArrayList<>();
+
+        GenotypeColumn(int numSamples) {
+            codes = new byte[numSamples];
+            // Absent values by default
+            dictionary.add(null);
+            dictionaryIndex.put(null, 0);
+        }
+
+        @Override
+        String get(int sampleIdx) {
+            return dictionary.get(codes[sampleIdx] & 0xFF);
+        }
+
+        Genotype getGenotype(int code) {
+            while (genotypes.size() <= code) {
+                genotypes.add(null);
+            }
+            Genotype genotype = genotypes.get(code);
+            if (genotype == null) {
+                genotype = new Genotype(dictionary.get(code));
+                genotypes.set(code, genotype);
+            }
+            return genotype;
+        }
+
+        @Override
+        boolean set(int sampleIdx, String value) {
+            Integer code = dictionaryIndex.get(value);
+            if (code == null) {
+                if (dictionary.size() == MAX_DICTIONARY_SIZE) {
+                    return false;
+                }
+                code = dictionary.size();
+                dictionary.add(value);
+                dictionaryIndex.put(value, code);
+            }
+            codes[sampleIdx] = (byte) code.intValue();
+            return true;
+        }
+    }
+
+    private static final class StringColumn extends Column {
+        private final String[] values;
+        // Reuse equal values
+        private final Map<String, String> distinctValues = new HashMap<>();
+
+        StringColumn(int numSamples) {
+            values = new String[numSamples];
+        }
+
+        StringColumn(Column column, int numSamples) {
+            this(numSamples);
+            for (int i = 0; i < numSamples; i++) {
+                set(i, column.get(i));
+            }
+        }
+
+        @Override
+        String get(int sampleIdx) {
+            return values[sampleIdx];
+        }
+
+        @Override
+        boolean set(int sampleIdx, String value) {
+            if (value != null) {
+                String prev = distinctValues.putIfAbsent(value, value);
+                if (prev != null) {
+                    value = prev;
+                }
+            }
+            values[sampleIdx] = value;
+            return true;
+        }
+    }
+}
@@ -44,6 +44,7 @@ import org.opencb.opencga.storage.core.exceptions.StorageEngineException;
 import org.opencb.opencga.storage.core.io.managers.IOConnectorProvider;
 import org.opencb.opencga.storage.core.metadata.VariantStorageMetadataManager;
 import org.opencb.opencga.storage.core.metadata.models.FileMetadata;
+import org.opencb.opencga.storage.core.metadata.models.ProjectMetadata;
 import org.opencb.opencga.storage.core.metadata.models.TaskMetadata;
 import org.opencb.opencga.storage.core.variant.VariantStorageOptions;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantDBAdaptor;
@@ -104,6 +105,11 @@ public class DefaultVariantAnnotationManager extends VariantAnnotationManager {
         variantReaderUtils = new VariantReaderUtils(this.ioConnectorProvider);
     }
 
+    @Override
+    public void close() {
+        variantAnnotator.close();
+    }
+
     @Override
     public long annotate(Query query, ObjectMap params) throws VariantAnnotatorException, IOException, StorageEngineException {
 
@@ -206,11 +212,16 @@ public class DefaultVariantAnnotationManager extends VariantAnnotationManager {
                     return countVariantsToAnnotate(query, finalParams);
                 }, 200);
             }
+            VariantAnnotationCache annotationCache = openAnnotationCache(params);
             Task<Variant, VariantAnnotation> annotationTask = variantList -> {
                 List<VariantAnnotation> variantAnnotationList;
                 long start = System.currentTimeMillis();
                 logger.debug("Annotating batch of {} genomic variants.", variantList.size());
-                variantAnnotationList = variantAnnotator.annotate(variantList);
+                if (annotationCache == null) {
+                    variantAnnotationList = variantAnnotator.annotate(variantList);
+                } else {
+                    variantAnnotationList = annotate(annotationCache, variantList);
+                }
                 progressLogger.increment(variantList.size(),
                         () -> ", up to position " + variantList.get(variantList.size() - 1).toString());
                 numAnnotationsToLoad.addAndGet(variantList.size());
@@ -239,14 +250,115 @@ public class DefaultVariantAnnotationManager extends VariantAnnotationManager {
                     .setSorted(false).build();
             ParallelTaskRunner<Variant, VariantAnnotation> parallelTaskRunner =
                     new ParallelTaskRunner<>(variantDataReader, annotationTask, variantAnnotationDataWriter, config);
-            parallelTaskRunner.run();
+            try {
+                parallelTaskRunner.run();
+            } finally {
+                if (annotationCache != null) {
+                    annotationCache.close();
+                }
+            }
         } catch (ExecutionException e) {
             throw new VariantAnnotatorException("Error creating annotations", e);
+        } catch (IOException e) {
+            throw new VariantAnnotatorException("Error closing variant annotation cache", e);
         }
 
         return fileUri;
     }
 
+    /**
+     * Open the persistent annotation cache, if configured with {@link VariantStorageOptions#ANNOTATOR_CACHE_DIR}.
+     *
+     * There is one cache per species and assembly. Cached annotations are invalidated when the annotator program,
+     * the annotator data source versions or the annotator include/exclude params change.
+     *
+     * @param params Annotation params
+     * @return the annotation cache, or null if not configured or not available
+     */
+    protected VariantAnnotationCache openAnnotationCache(ObjectMap params) {
+        String cacheDir = params.getString(VariantStorageOptions.ANNOTATOR_CACHE_DIR.key());
+        if (StringUtils.isEmpty(cacheDir)) {
+            return null;
+        }
+        long maxSize = params.getLong(VariantStorageOptions.ANNOTATOR_CACHE_MAX_SIZE.key(),
+                VariantStorageOptions.ANNOTATOR_CACHE_MAX_SIZE.defaultValue());
+        ProjectMetadata projectMetadata = dbAdaptor.getMetadataManager().getProjectMetadata();
+        String name = (projectMetadata.getSpecies() + '_' + projectMetadata.getAssembly()).replaceAll("[^A-Za-z0-9_.-]", "_");
+        try {
+            ProjectMetadata.VariantAnnotatorProgram program = variantAnnotator.getVariantAnnotatorProgram();
+            List<String> sourceVersions = new ArrayList<>();
+            List<ObjectMap> sourceVersionList = variantAnnotator.getVariantAnnotatorSourceVersion();
+            if (sourceVersionList != null) {
+                for (ObjectMap sourceVersion : sourceVersionList) {
+                    sourceVersions.add(sourceVersion.toJson());
+                }
+                Collections.sort(sourceVersions);
+            }
+            String fingerprint = program.getName() + '\t' + program.getVersion() + '\t' + program.getCommit()
+                    + '\t' + params.getString(VariantStorageOptions.ANNOTATOR_CELLBASE_INCLUDE.key())
+                    + '\t' + params.getString(VariantStorageOptions.ANNOTATOR_CELLBASE_EXCLUDE.key())
+                    + '\t' + String.join(",", sourceVersions);
+            return new VariantAnnotationCache(Paths.get(cacheDir).resolve(name), fingerprint, maxSize);
+        } catch (IOException e) {
+            // Annotate without cache
+            logger.warn("Unable to open variant annotation cache at " + cacheDir, e);
+            return null;
+        }
+    }
+
+    /**
+     * Annotate variants, reusing the annotations from the cache. Only the variants not found in the cache are sent to the annotator.
+     *
+     * @param annotationCache Annotation cache
+     * @param variants        Variants to annotate
+     * @return List of annotations. The order of the variants is not preserved.
+     * @throws VariantAnnotatorException if the annotator fails
+     * @throws IOException               on error reading or writing the cache
+     */
+    protected List<VariantAnnotation> annotate(VariantAnnotationCache annotationCache, List<Variant> variants)
+            throws VariantAnnotatorException, IOException {
+        List<String> keys = new ArrayList<>(variants.size());
+        for (Variant variant : variants) {
+            keys.add(VariantAnnotationCache.key(variant));
+        }
+        Map<String, VariantAnnotation> cachedAnnotations = annotationCache.get(keys);
+        if (cachedAnnotations.isEmpty()) {
+            List<VariantAnnotation> annotations = variantAnnotator.annotate(variants);
+            putAnnotationCache(annotationCache, keys, annotations);
+            return annotations;
+        }
+
+        List<VariantAnnotation> annotations = new ArrayList<>(variants.size());
+        List<Variant> missingVariants = new ArrayList<>(variants.size() - cachedAnnotations.size());
+        for (int i = 0; i < variants.size(); i++) {
+            VariantAnnotation annotation = keys.get(i) == null ? null : cachedAnnotations.get(keys.get(i));
+            if (annotation == null) {
+                missingVariants.add(variants.get(i));
+            } else {
+                annotations.add(annotation);
+            }
+        }
+        if (!missingVariants.isEmpty()) {
+            List<VariantAnnotation> newAnnotations = variantAnnotator.annotate(missingVariants);
+            putAnnotationCache(annotationCache, keys, newAnnotations);
+            annotations.addAll(newAnnotations);
+        }
+        return annotations;
+    }
+
+    private void putAnnotationCache(VariantAnnotationCache annotationCache, Collection<String> keys, List<VariantAnnotation> annotations)
+            throws IOException {
+        // Only cache annotations of the variants that can be looked up. This excludes structural variants.
+        Set<String> keysSet = new HashSet<>(keys);
+        List<VariantAnnotation> cacheableAnnotations = new ArrayList<>(annotations.size());
+        for (VariantAnnotation annotation : annotations) {
+            if (keysSet.contains(VariantAnnotationCache.key(annotation))) {
+                cacheableAnnotations.add(annotation);
+            }
+        }
+        annotationCache.put(cacheableAnnotations);
+    }
+
     protected DataReader<Variant> getVariantDataReader(Query query, QueryOptions iteratorQueryOptions, ObjectMap params) {
         return new VariantDBReader(dbAdaptor, query, iteratorQueryOptions);
     }
@@ -0,0 +1,380 @@
+package org.opencb.opencga.storage.core.variant.annotation;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.biodata.models.variant.avro.VariantAnnotation;
+import org.opencb.opencga.storage.core.variant.io.json.mixin.VariantAnnotationMixin;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Persistent local cache of variant annotations, to avoid annotating the same variants again across projects and re-runs.
+ *
+ * Annotations are stored in a directory as a log of append-only segment files, with an in-memory index from the variant key
+ * to the position of the annotation in the segments. When the cache exceeds its max size, the oldest segment is deleted.
+ * Annotations read from old segments are copied into the current segment, so the most used annotations are not evicted.
+ *
+ * The cache is bound to a fingerprint, typically built from the {@link
+ * org.opencb.opencga.storage.core.metadata.models.ProjectMetadata.VariantAnnotatorProgram}. All the entries are invalidated
+ * when opening a cache with a different fingerprint.
+ *
+ * Only one process can use a cache directory at the same time. Methods are thread safe. Only the access to the
+ * segments and the index is synchronized. Annotations are serialized and deserialized out of the lock.
+ */
+public class VariantAnnotationCache implements Closeable {
+
+    public static final String FINGERPRINT_FILE = "annotation-cache.fingerprint";
+    public static final String LOCK_FILE = "annotation-cache.lock";
+    public static final String SEGMENT_PREFIX = "segment_";
+    public static final String SEGMENT_EXTENSION = ".bin";
+
+    private static final int NUM_SEGMENTS = 16;
+    private static final long MIN_SEGMENT_SIZE = 1024 * 1024;
+    // Record header: record length (int) + key length (short)
+    private static final int HEADER_SIZE = Integer.BYTES + Short.BYTES;
+
+    private final Path dir;
+    private final long maxSize;
+    private final long segmentSize;
+    private final Map<String, Location> index = new HashMap<>();
+    private final TreeMap<Integer, FileChannel> segments = new TreeMap<>();
+    private final FileChannel lockChannel;
+    private final FileLock lock;
+    private int currentSegment;
+    private long totalSize;
+
+    private final ObjectWriter writer;
+    private final ObjectReader reader;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    private static Logger logger = LoggerFactory.getLogger(VariantAnnotationCache.class);
+
+    private static final class Location {
+        private final int segment;
+        private final long offset;
+        private final int length;
+
+        private Location(int segment, long offset, int length) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    /**
+     * Open the annotation cache from the given directory, creating it if needed.
+     *
+     * @param dir         Cache directory
+     * @param fingerprint Fingerprint of the annotator. Existing entries are discarded if the fingerprint does not match.
+     * @param maxSize     Max size in bytes of the cache in disk
+     * @throws IOException if the cache could not be opened, or if it is in use by other process
+     */
+    public VariantAnnotationCache(Path dir, String fingerprint, long maxSize) throws IOException {
+        this.dir = dir;
+        this.maxSize = maxSize;
+        this.segmentSize = Math.max(MIN_SEGMENT_SIZE, maxSize / NUM_SEGMENTS);
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        objectMapper.addMixIn(VariantAnnotation.class, VariantAnnotationMixin.class);
+        writer = objectMapper.writerFor(VariantAnnotation.class);
+        reader = objectMapper.readerFor(VariantAnnotation.class);
+        Files.createDirectories(dir);
+
+        lockChannel = FileChannel.open(dir.resolve(LOCK_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock fileLock;
+        try {
+            fileLock = lockChannel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            // Already locked from this JVM
+            fileLock = null;
+        }
+        lock = fileLock;
+        if (lock == null) {
+            lockChannel.close();
+            throw new IOException("Variant annotation cache " + dir + " in use by other process");
+        }
+
+        try {
+            Path fingerprintFile = dir.resolve(FINGERPRINT_FILE);
+            if (!Files.exists(fingerprintFile)
+                    || !new String(Files.readAllBytes(fingerprintFile), StandardCharsets.UTF_8).equals(fingerprint)) {
+                logger.info("Invalidate variant annotation cache {}", dir);
+                for (Path segment : listSegments()) {
+                    Files.delete(segment);
+                }
+                Files.write(fingerprintFile, fingerprint.getBytes(StandardCharsets.UTF_8));
+            }
+
+            for (Path segment : listSegments()) {
+                loadSegment(segment);
+            }
+            if (segments.isEmpty()) {
+                newSegment(0);
+            } else {
+                currentSegment = segments.lastKey();
+            }
+            logger.info("Open variant annotation cache {} with {} entries, {} bytes", dir, index.size(), totalSize);
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Key of the variant in the cache.
+     *
+     * @param variant Variant
+     * @return Cache key, or null if the variant can not be cached
+     */
+    public static String key(Variant variant) {
+        if (variant.isSV() || variant.getSv() != null) {
+            // The annotation of structural variants can not be matched back to the variant
+            return null;
+        }
+        return key(variant.getChromosome(), variant.getStart(), variant.getReference(), variant.getAlternate());
+    }
+
+    public static String key(VariantAnnotation annotation) {
+        return key(annotation.getChromosome(), annotation.getStart(), annotation.getReference(), annotation.getAlternate());
+    }
+
+    private static String key(String chromosome, int start, String reference, String alternate) {
+        return chromosome + ':' + start + ':' + reference + ':' + alternate;
+    }
+
+    /**
+     * Get the annotations of the given keys.
+     *
+     * @param keys Keys to get. Null keys are ignored
+     * @return Map with the found annotations
+     * @throws IOException on error reading the cache
+     */
+    public Map<String, VariantAnnotation> get(Collection<String> keys) throws IOException {
+        Map<String, byte[]> records = read(keys);
+        // Deserialize out of the lock
+        Map<String, VariantAnnotation> annotations = new HashMap<>(records.size() * 2);
+        for (Map.Entry<String, byte[]> entry : records.entrySet()) {
+            byte[] record = entry.getValue();
+            int valueOffset = HEADER_SIZE + ByteBuffer.wrap(record).getShort(Integer.BYTES);
+            annotations.put(entry.getKey(), reader.readValue(record, valueOffset, record.length - valueOffset));
+        }
+        return annotations;
+    }
+
+    /**
+     * Add annotations to the cache.
+     *
+     * @param annotations Annotations to add
+     * @throws IOException on error writing the cache
+     */
+    public void put(Collection<VariantAnnotation> annotations) throws IOException {
+        // Serialize out of the lock
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        List<String> keys = new ArrayList<>(annotations.size());
+        List<Integer> lengths = new ArrayList<>(annotations.size());
+        for (VariantAnnotation annotation : annotations) {
+            String key = key(annotation);
+            byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+            if (keyBytes.length > Short.MAX_VALUE) {
+                continue;
+            }
+            int start = buffer.size();
+            // Write the header after serializing the value. Reserve space.
+            buffer.write(new byte[HEADER_SIZE]);
+            buffer.write(keyBytes);
+            buffer.write(writer.writeValueAsBytes(annotation));
+            keys.add(key);
+            lengths.add(buffer.size() - start);
+        }
+
+        ByteBuffer data = ByteBuffer.wrap(buffer.toByteArray());
+        int position = 0;
+        for (int i = 0; i < keys.size(); i++) {
+            data.putInt(position, lengths.get(i));
+            data.putShort(position + Integer.BYTES, (short) keys.get(i).getBytes(StandardCharsets.UTF_8).length);
+            position += lengths.get(i);
+        }
+        append(keys, lengths, data);
+    }
+
+    /**
+     * Read the serialized records of the given keys.
+     * Records from segments close to be evicted are copied into the current segment, without deserializing them.
+     *
+     * @param keys Keys to read
+     * @return Map from key to the serialized record, including the header
+     * @throws IOException on error reading the cache
+     */
+    private synchronized Map<String, byte[]> read(Collection<String> keys) throws IOException {
+        Map<String, byte[]> records = new HashMap<>();
+        List<String> promotedKeys = new ArrayList<>();
+        List<Integer> promotedLengths = new ArrayList<>();
+        ByteArrayOutputStream promoted = new ByteArrayOutputStream();
+        for (String key : keys) {
+            Location location = key == null ? null : index.get(key);
+            if (location == null) {
+                misses.incrementAndGet();
+                continue;
+            }
+            hits.incrementAndGet();
+            ByteBuffer record = ByteBuffer.allocate(location.length);
+            FileChannel channel = segments.get(location.segment);
+            while (record.hasRemaining()) {
+                if (channel.read(record, location.offset + record.position()) < 0) {
+                    throw new IOException("Unexpected end of file reading variant annotation cache " + dir);
+                }
+            }
+            records.put(key, record.array());
+            if (location.segment < currentSegment - NUM_SEGMENTS / 2) {
+                // Close to be evicted. Move to the current segment
+                promotedKeys.add(key);
+                promotedLengths.add(location.length);
+                promoted.write(record.array());
+            }
+        }
+        if (!promotedKeys.isEmpty()) {
+            append(promotedKeys, promotedLengths, ByteBuffer.wrap(promoted.toByteArray()));
+        }
+        return records;
+    }
+
+    /**
+     * Append serialized records to the current segment.
+     *
+     * @param keys    Keys of the records
+     * @param lengths Length of each record
+     * @param data    Records, with the headers
+     * @throws IOException on error writing the cache
+     */
+    private synchronized void append(List<String> keys, List<Integer> lengths, ByteBuffer data) throws IOException {
+        FileChannel channel = segments.get(currentSegment);
+        long offset = channel.size();
+        while (data.hasRemaining()) {
+            channel.write(data, offset + data.position());
+        }
+        totalSize += data.limit();
+        for (int i = 0; i < keys.size(); i++) {
+            index.put(keys.get(i), new Location(currentSegment, offset, lengths.get(i)));
+            offset += lengths.get(i);
+        }
+
+        if (channel.size() > segmentSize) {
+            newSegment(currentSegment + 1);
+        }
+        while (totalSize > maxSize && segments.size() > 1) {
+            evictOldestSegment();
+        }
+    }
+
+    public synchronized long size() {
+        return index.size();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        for (FileChannel channel : segments.values()) {
+            channel.close();
+        }
+        segments.clear();
+        index.clear();
+        if (lock != null && lock.isValid()) {
+            lock.release();
+        }
+        lockChannel.close();
+        if (hits.get() + misses.get() > 0) {
+            logger.info("Close variant annotation cache {}. Hits: {}, misses: {}", dir, hits.get(), misses.get());
+        }
+    }
+
+    private List<Path> listSegments() throws IOException {
+        List<Path> list = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, SEGMENT_PREFIX + "*" + SEGMENT_EXTENSION)) {
+            stream.forEach(list::add);
+        }
+        list.sort(Comparator.comparingInt(VariantAnnotationCache::getSegmentId));
+        return list;
+    }
+
+    private static int getSegmentId(Path segment) {
+        String fileName = segment.getFileName().toString();
+        return Integer.parseInt(fileName.substring(SEGMENT_PREFIX.length(), fileName.length() - SEGMENT_EXTENSION.length()));
+    }
+
+    private Path getSegmentPath(int segmentId) {
+        return dir.resolve(SEGMENT_PREFIX + segmentId + SEGMENT_EXTENSION);
+    }
+
+    private void loadSegment(Path segment) throws IOException {
+        int segmentId = getSegmentId(segment);
+        FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segments.put(segmentId, channel);
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        long offset = 0;
+        long size = channel.size();
+        while (offset + HEADER_SIZE <= size) {
+            header.clear();
+            channel.read(header, offset);
+            int length = header.getInt(0);
+            int keyLength = header.getShort(Integer.BYTES);
+            if (length < HEADER_SIZE + keyLength || offset + length > size) {
+                break;
+            }
+            ByteBuffer key = ByteBuffer.allocate(keyLength);
+            channel.read(key, offset + HEADER_SIZE);
+            index.put(new String(key.array(), StandardCharsets.UTF_8), new Location(segmentId, offset, length));
+            offset += length;
+        }
+        if (offset < size) {
+            // Incomplete record. Probably the process died while writing.
+            logger.warn("Truncate corrupted variant annotation cache segment {} from {} to {} bytes", segment, size, offset);
+            channel.truncate(offset);
+        }
+        totalSize += offset;
+    }
+
+    private void newSegment(int segmentId) throws IOException {
+        FileChannel channel = FileChannel.open(getSegmentPath(segmentId),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segments.put(segmentId, channel);
+        currentSegment = segmentId;
+    }
+
+    private void evictOldestSegment() throws IOException {
+        Map.Entry<Integer, FileChannel> oldest = segments.pollFirstEntry();
+        int segmentId = oldest.getKey();
+        totalSize -= oldest.getValue().size();
+        oldest.getValue().close();
+        index.values().removeIf(location -> location.segment == segmentId);
+        Files.delete(getSegmentPath(segmentId));
+        logger.debug("Evict variant annotation cache segment {}", segmentId);
+    }
+}
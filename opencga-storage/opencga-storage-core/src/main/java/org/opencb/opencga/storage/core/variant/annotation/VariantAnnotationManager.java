@@ -40,7 +40,7 @@ import java.util.stream.Collectors;
  *
  * @author Jacobo Coll &lt;jacobo167@gmail.com&gt;
  */
-public abstract class VariantAnnotationManager {
+public abstract class VariantAnnotationManager implements AutoCloseable {
 
     @Deprecated
     public static final String ANNOTATION_SOURCE = "annotationSource";
@@ -58,6 +58,13 @@ public abstract class VariantAnnotationManager {
 
     public abstract void deleteAnnotation(String name, ObjectMap options) throws StorageEngineException, VariantAnnotatorException;
 
+    /**
+     * Release the resources used by the annotation manager, like the variant annotator.
+     */
+    @Override
+    public void close() {
+    }
+
     protected final VariantAnnotationMetadata checkCurrentAnnotation(VariantAnnotator annotator, ProjectMetadata projectMetadata,
                                                                      boolean overwrite)
             throws VariantAnnotatorException {
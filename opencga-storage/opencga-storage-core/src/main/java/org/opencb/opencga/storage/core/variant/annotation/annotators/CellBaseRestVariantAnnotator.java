@@ -16,34 +16,61 @@
 
 package org.opencb.opencga.storage.core.variant.annotation.annotators;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import org.opencb.biodata.models.variant.Variant;
 import org.opencb.biodata.models.variant.avro.VariantAnnotation;
 import org.opencb.cellbase.client.config.ClientConfiguration;
 import org.opencb.cellbase.client.rest.CellBaseClient;
+import org.opencb.cellbase.client.rest.VariantClient;
 import org.opencb.commons.datastore.core.ObjectMap;
 import org.opencb.commons.datastore.core.QueryResponse;
 import org.opencb.commons.datastore.core.QueryResult;
 import org.opencb.opencga.storage.core.config.StorageConfiguration;
 import org.opencb.opencga.storage.core.metadata.models.ProjectMetadata;
+import org.opencb.opencga.storage.core.variant.VariantStorageOptions;
 import org.opencb.opencga.storage.core.variant.annotation.VariantAnnotatorException;
 
+import javax.ws.rs.WebApplicationException;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketException;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
+ * Annotate variants using the CellBase REST web services.
+ *
+ * Each batch of variants is split into smaller requests, executed concurrently over a shared pool of connections,
+ * so many requests are in flight at the same time. The number of variants per request adapts to the observed latency.
+ * Requests failing because of connectivity or server errors are retried with an exponential backoff, and fail after
+ * exhausting the retries. Requests rejected because of their content (e.g. bad requests or unparseable responses) are split
+ * in two, to isolate the variants causing the error.
+ *
  * Created on 23/11/16.
  *
  * @author Jacobo Coll &lt;jacobo167@gmail.com&gt;
  */
 public class CellBaseRestVariantAnnotator extends AbstractCellBaseVariantAnnotator {
     private static final int TIMEOUT = 10000;
+    private static final int MIN_REQUEST_SIZE = 5;
+    private static final long MIN_BACKOFF_MILLIS = 200;
+    private static final long MAX_BACKOFF_MILLIS = 30000;
 
     private final CellBaseClient cellBaseClient;
+    private final VariantClient variantClient;
     private final Function<Variant, String> variantSerializer;
+    private final ThreadPoolExecutor executor;
+    private final int maxRetries;
+    private final int maxRequestSize;
+    private final long targetLatency;
+    private final AtomicInteger requestSize;
 
     public CellBaseRestVariantAnnotator(StorageConfiguration storageConfiguration, ProjectMetadata projectMetadata, ObjectMap options)
             throws VariantAnnotatorException {
@@ -59,6 +86,29 @@ public class CellBaseRestVariantAnnotator extends AbstractCellBaseVariantAnnotat
         ClientConfiguration clientConfiguration = storageConfiguration.getCellbase().toClientConfiguration();
         clientConfiguration.getRest().setTimeout(TIMEOUT);
         cellBaseClient = new CellBaseClient(species, assembly, clientConfiguration);
+        // Reuse the same client for all the requests, so the connections are pooled
+        variantClient = cellBaseClient.getVariantClient();
+
+        int concurrentRequests = options.getInt(VariantStorageOptions.ANNOTATOR_CELLBASE_CONCURRENT_REQUESTS.key(),
+                VariantStorageOptions.ANNOTATOR_CELLBASE_CONCURRENT_REQUESTS.defaultValue());
+        maxRetries = options.getInt(VariantStorageOptions.ANNOTATOR_CELLBASE_MAX_RETRIES.key(),
+                VariantStorageOptions.ANNOTATOR_CELLBASE_MAX_RETRIES.defaultValue());
+        maxRequestSize = Math.max(MIN_REQUEST_SIZE, options.getInt(VariantStorageOptions.ANNOTATOR_CELLBASE_MAX_REQUEST_SIZE.key(),
+                VariantStorageOptions.ANNOTATOR_CELLBASE_MAX_REQUEST_SIZE.defaultValue()));
+        targetLatency = options.getLong(VariantStorageOptions.ANNOTATOR_CELLBASE_TARGET_LATENCY.key(),
+                VariantStorageOptions.ANNOTATOR_CELLBASE_TARGET_LATENCY.defaultValue());
+        requestSize = new AtomicInteger(Math.min(maxRequestSize, Math.max(MIN_REQUEST_SIZE,
+                options.getInt(VariantStorageOptions.ANNOTATOR_CELLBASE_REQUEST_SIZE.key(),
+                        VariantStorageOptions.ANNOTATOR_CELLBASE_REQUEST_SIZE.defaultValue()))));
+
+        // Use daemon threads, released when idle, in case the annotator is not closed
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = new ThreadPoolExecutor(concurrentRequests, concurrentRequests, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread thread = new Thread(r, "cellbase-rest-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
 
         logger.info("Annotating with Cellbase REST. host '{}', version '{}', species '{}', assembly '{}'",
                 cellbaseRest, cellbaseVersion, species, assembly);
@@ -79,15 +129,147 @@ public class CellBaseRestVariantAnnotator extends AbstractCellBaseVariantAnnotat
         if (variants.isEmpty()) {
             return Collections.emptyList();
         }
+        int size = requestSize.get();
+        List<Future<List<QueryResult<VariantAnnotation>>>> futures = new ArrayList<>(variants.size() / size + 1);
+        for (int i = 0; i < variants.size(); i += size) {
+            List<Variant> request = variants.subList(i, Math.min(variants.size(), i + size));
+            futures.add(executor.submit(() -> annotateRequest(request)));
+        }
+
+        // Concatenate the results in order
+        List<QueryResult<VariantAnnotation>> queryResults = new ArrayList<>(variants.size());
         try {
-            QueryResponse<VariantAnnotation> queryResponse = cellBaseClient.getVariantClient()
-                    .getAnnotationByVariantIds(variants.stream().map(variantSerializer).collect(Collectors.toList()), queryOptions, true);
-            return queryResponse.getResponse();
-        } catch (IOException e) {
-            throw new VariantAnnotatorException("Error fetching variants from Client");
+            for (Future<List<QueryResult<VariantAnnotation>>> future : futures) {
+                queryResults.addAll(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new VariantAnnotatorException("Interrupted fetching variants from Client", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof VariantAnnotatorException) {
+                throw (VariantAnnotatorException) e.getCause();
+            } else {
+                throw new VariantAnnotatorException("Error fetching variants from Client", e.getCause());
+            }
+        } finally {
+            for (Future<?> future : futures) {
+                future.cancel(true);
+            }
+        }
+        return queryResults;
+    }
+
+    private List<QueryResult<VariantAnnotation>> annotateRequest(List<Variant> variants) throws VariantAnnotatorException {
+        int attempt = 0;
+        while (true) {
+            long start = System.currentTimeMillis();
+            try {
+                List<QueryResult<VariantAnnotation>> queryResults = fetchAnnotations(variants);
+                onSuccess(variants.size(), System.currentTimeMillis() - start);
+                return queryResults;
+            } catch (IOException | RuntimeException e) {
+                if (isContentError(e)) {
+                    if (variants.size() == 1) {
+                        throw new VariantAnnotatorException("Error fetching variant " + variants.get(0) + " from Client", e);
+                    }
+                    // A single variant could be making the whole request fail. Split the request in two
+                    logger.warn("Error fetching {} variants from Client: '{}'. Split request", variants.size(), e.getMessage());
+                    int half = variants.size() / 2;
+                    List<QueryResult<VariantAnnotation>> queryResults = new ArrayList<>(variants.size());
+                    queryResults.addAll(annotateRequest(variants.subList(0, half)));
+                    queryResults.addAll(annotateRequest(variants.subList(half, variants.size())));
+                    return queryResults;
+                }
+                onFailure();
+                attempt++;
+                if (attempt > maxRetries) {
+                    throw new VariantAnnotatorException("Error fetching " + variants.size() + " variants from Client after "
+                            + maxRetries + " retries", e);
+                }
+                long backoff = Math.min(MAX_BACKOFF_MILLIS, MIN_BACKOFF_MILLIS << Math.min(attempt, 16));
+                // Add jitter, so the concurrent requests don't retry all at the same time
+                backoff = backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+                logger.warn("Error fetching {} variants from Client: '{}'. Retry {}/{} in {}ms",
+                        variants.size(), e.getMessage(), attempt, maxRetries, backoff);
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw new VariantAnnotatorException("Interrupted fetching variants from Client", interrupted);
+                }
+            }
         }
     }
 
+    /**
+     * Fetch the annotation of a list of variants with one single request to CellBase.
+     *
+     * @param variants Variants to annotate
+     * @return One QueryResult per variant
+     * @throws IOException on error fetching the annotations
+     */
+    protected List<QueryResult<VariantAnnotation>> fetchAnnotations(List<Variant> variants) throws IOException {
+        QueryResponse<VariantAnnotation> queryResponse = variantClient
+                .getAnnotationByVariantIds(variants.stream().map(variantSerializer).collect(Collectors.toList()), queryOptions, true);
+        return queryResponse.getResponse();
+    }
+
+    /**
+     * Check if the error was caused by the content of the request, like a bad request or a response that can not be parsed.
+     * These errors may be caused by some of the variants of the request, and could succeed with a smaller request.
+     * Any other error, like connectivity errors, timeouts or server errors, would fail again with a smaller request.
+     *
+     * @param e Error fetching the annotations
+     * @return if the error was caused by the content of the request
+     */
+    protected static boolean isContentError(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof WebApplicationException) {
+                int status = ((WebApplicationException) cause).getResponse().getStatus();
+                // Request timeout and too many requests are transient errors
+                return status >= 400 && status < 500 && status != 408 && status != 429;
+            } else if (cause instanceof SocketException || cause instanceof InterruptedIOException
+                    || cause instanceof UnknownHostException) {
+                // Connection refused or reset, and timeouts
+                return false;
+            } else if (cause instanceof JsonProcessingException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void onSuccess(int size, long latency) {
+        int current = requestSize.get();
+        if (latency > targetLatency) {
+            // Too slow. Halve the request size
+            int newSize = Math.max(MIN_REQUEST_SIZE, current / 2);
+            if (newSize != current && requestSize.compareAndSet(current, newSize)) {
+                logger.debug("Decrease CellBase request size from {} to {}. Latency: {}ms", current, newSize, latency);
+            }
+        } else if (latency < targetLatency / 2 && size >= current) {
+            // Fast enough. Slowly increase the request size
+            int newSize = Math.min(maxRequestSize, current + Math.max(1, current / 4));
+            if (newSize != current && requestSize.compareAndSet(current, newSize)) {
+                logger.debug("Increase CellBase request size from {} to {}. Latency: {}ms", current, newSize, latency);
+            }
+        }
+    }
+
+    private void onFailure() {
+        int current = requestSize.get();
+        requestSize.compareAndSet(current, Math.max(MIN_REQUEST_SIZE, current / 2));
+    }
+
+    public int getRequestSize() {
+        return requestSize.get();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
     @Override
     public ProjectMetadata.VariantAnnotatorProgram getVariantAnnotatorProgram() throws IOException {
         ObjectMap about = cellBaseClient.getMetaClient().about().firstResult();
@@ -29,7 +29,7 @@ import java.util.List;
 /**
  * Created by jacobo on 9/01/15.
  */
-public abstract class VariantAnnotator {
+public abstract class VariantAnnotator implements AutoCloseable {
 
     public VariantAnnotator(StorageConfiguration configuration, ProjectMetadata projectMetadata, ObjectMap options)
             throws VariantAnnotatorException {
@@ -48,4 +48,11 @@ public abstract class VariantAnnotator {
 
     public abstract List<ObjectMap> getVariantAnnotatorSourceVersion() throws IOException;
 
+    /**
+     * Release the resources used by the annotator.
+     */
+    @Override
+    public void close() {
+    }
+
 }
@@ -0,0 +1,138 @@
+package org.opencb.opencga.storage.core.variant.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Compresses data into independent BGZF blocks, as defined in the SAM/BAM specification.
+ *
+ * A BGZF file is a concatenation of gzip members, so it can be read by any gzip reader. As each block is independent,
+ * chunks of data can be compressed in parallel and concatenated in order. The file must end with {@link #EOF_BLOCK}.
+ *
+ * Not thread safe. Use one instance per thread.
+ */
+public class BgzfBlockCompressor {
+
+    /**
+     * Max uncompressed size of a block. Leaves room for the block header and footer if the data is not compressible.
+     */
+    public static final int MAX_BLOCK_SIZE = 65280;
+    public static final byte[] EOF_BLOCK = {
+            0x1f, (byte) 0x8b, 0x08, 0x04, 0x00, 0x00, 0x00, 0x00, 0x00, (byte) 0xff, 0x06, 0x00, 0x42, 0x43, 0x02, 0x00,
+            0x1b, 0x00, 0x03, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00,
+    };
+
+    private static final int MAX_COMPRESSED_BLOCK_SIZE = 65536;
+    private static final int HEADER_SIZE = 18;
+    private static final int FOOTER_SIZE = 8;
+
+    private final Deflater deflater;
+    private final Deflater noCompressionDeflater = new Deflater(Deflater.NO_COMPRESSION, true);
+    private final CRC32 crc32 = new CRC32();
+    private final byte[] block = new byte[MAX_COMPRESSED_BLOCK_SIZE];
+
+    public BgzfBlockCompressor() {
+        this(Deflater.DEFAULT_COMPRESSION);
+    }
+
+    public BgzfBlockCompressor(int level) {
+        deflater = new Deflater(level, true);
+    }
+
+    /**
+     * Compress the data into BGZF blocks of up to {@link #MAX_BLOCK_SIZE} uncompressed bytes.
+     *
+     * @param data   Data to compress
+     * @param offset Offset of the data
+     * @param length Length of the data
+     * @param os     Output stream
+     * @return Number of compressed bytes written
+     * @throws IOException on error writing into the output stream
+     */
+    public long compress(byte[] data, int offset, int length, OutputStream os) throws IOException {
+        long written = 0;
+        for (int i = 0; i < length; i += MAX_BLOCK_SIZE) {
+            written += compressBlock(data, offset + i, Math.min(MAX_BLOCK_SIZE, length - i), os);
+        }
+        return written;
+    }
+
+    /**
+     * Compress the data into one single BGZF block.
+     *
+     * @param data   Data to compress
+     * @param offset Offset of the data
+     * @param length Length of the data. Up to {@link #MAX_BLOCK_SIZE}
+     * @param os     Output stream
+     * @return Size of the compressed block
+     * @throws IOException on error writing into the output stream
+     */
+    public int compressBlock(byte[] data, int offset, int length, OutputStream os) throws IOException {
+        if (length > MAX_BLOCK_SIZE) {
+            throw new IllegalArgumentException("Block size " + length + " exceeds the max block size " + MAX_BLOCK_SIZE);
+        }
+        int compressedLength = deflate(deflater, data, offset, length);
+        if (compressedLength < 0) {
+            // Data not compressible. Store uncompressed
+            compressedLength = deflate(noCompressionDeflater, data, offset, length);
+        }
+        int blockSize = HEADER_SIZE + compressedLength + FOOTER_SIZE;
+
+        // Header. Gzip member with the extra subfield "BC" containing the block size minus one
+        block[0] = 0x1f;
+        block[1] = (byte) 0x8b;
+        block[2] = 0x08;
+        block[3] = 0x04;
+        block[4] = 0;
+        block[5] = 0;
+        block[6] = 0;
+        block[7] = 0;
+        block[8] = 0;
+        block[9] = (byte) 0xff;
+        writeShort(10, 6);
+        block[12] = 0x42;
+        block[13] = 0x43;
+        writeShort(14, 2);
+        writeShort(16, blockSize - 1);
+
+        // Footer
+        crc32.reset();
+        crc32.update(data, offset, length);
+        writeInt(HEADER_SIZE + compressedLength, (int) crc32.getValue());
+        writeInt(HEADER_SIZE + compressedLength + 4, length);
+
+        os.write(block, 0, blockSize);
+        return blockSize;
+    }
+
+    public void end() {
+        deflater.end();
+        noCompressionDeflater.end();
+    }
+
+    private int deflate(Deflater deflater, byte[] data, int offset, int length) {
+        deflater.reset();
+        deflater.setInput(data, offset, length);
+        deflater.finish();
+        int maxLength = block.length - HEADER_SIZE - FOOTER_SIZE;
+        int compressedLength = deflater.deflate(block, HEADER_SIZE, maxLength);
+        if (!deflater.finished()) {
+            return -1;
+        }
+        return compressedLength;
+    }
+
+    private void writeShort(int position, int value) {
+        block[position] = (byte) value;
+        block[position + 1] = (byte) (value >>> 8);
+    }
+
+    private void writeInt(int position, int value) {
+        block[position] = (byte) value;
+        block[position + 1] = (byte) (value >>> 8);
+        block[position + 2] = (byte) (value >>> 16);
+        block[position + 3] = (byte) (value >>> 24);
+    }
+}
@@ -19,12 +19,14 @@ package org.opencb.opencga.storage.core.variant.io;
 import com.fasterxml.jackson.databind.MapperFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.opencb.biodata.formats.variant.vcf4.io.VariantVcfReader;
+import org.opencb.biodata.models.core.Region;
 import org.opencb.biodata.models.metadata.Individual;
 import org.opencb.biodata.models.variant.Variant;
 import org.opencb.biodata.models.variant.VariantFileMetadata;
 import org.opencb.biodata.models.variant.metadata.VariantMetadata;
 import org.opencb.biodata.models.variant.metadata.VariantStudyMetadata;
 import org.opencb.commons.ProgressLogger;
+import org.opencb.commons.datastore.core.ObjectMap;
 import org.opencb.commons.datastore.core.Query;
 import org.opencb.commons.datastore.core.QueryOptions;
 import org.opencb.commons.io.DataWriter;
@@ -34,9 +36,14 @@ import org.opencb.opencga.core.common.UriUtils;
 import org.opencb.opencga.storage.core.exceptions.StorageEngineException;
 import org.opencb.opencga.storage.core.io.managers.IOConnectorProvider;
 import org.opencb.opencga.storage.core.metadata.VariantMetadataFactory;
+import org.opencb.opencga.storage.core.metadata.VariantStorageMetadataManager;
 import org.opencb.opencga.storage.core.variant.VariantStorageEngine;
+import org.opencb.opencga.storage.core.variant.VariantStorageOptions;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryUtils;
 import org.opencb.opencga.storage.core.variant.io.VariantWriterFactory.VariantOutputFormat;
 import org.opencb.opencga.storage.core.variant.io.db.VariantDBReader;
+import org.opencb.opencga.storage.core.variant.query.VariantQueryParser;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -45,6 +52,9 @@ import java.io.*;
 import java.net.URI;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 
@@ -99,9 +109,14 @@ public class VariantExporter {
             ioConnectorProvider.checkWritable(outputFile);
         }
 
-        try (OutputStream os = VariantWriterFactory.getOutputStream(outputFile, outputFormat, ioConnectorProvider)) {
-            boolean logProgress = !VariantWriterFactory.isStandardOutput(outputFile);
-            exportData(os, outputFormat, variantsFile, query, queryOptions, logProgress);
+        List<VariantParallelVcfExporter.ExportRegion> regions = getParallelExportRegions(outputFormat, variantsFile, query, queryOptions);
+        if (regions != null) {
+            exportDataParallel(outputFile, outputFormat, regions, query, queryOptions);
+        } else {
+            try (OutputStream os = VariantWriterFactory.getOutputStream(outputFile, outputFormat, ioConnectorProvider)) {
+                boolean logProgress = !VariantWriterFactory.isStandardOutput(outputFile);
+                exportData(os, outputFormat, variantsFile, query, queryOptions, logProgress);
+            }
         }
         if (metadataFactory != null && !VariantWriterFactory.isStandardOutput(outputFile)) {
             VariantMetadata metadata = metadataFactory.makeVariantMetadata(query, queryOptions);
@@ -135,18 +150,7 @@ public class VariantExporter {
         // TaskMetadata<Variant, Variant>
         Task<Variant, Variant> progressTask;
         if (logProgress) {
-            final Query finalQuery = query;
-            final QueryOptions finalQueryOptions = queryOptions;
-            ProgressLogger progressLogger = new ProgressLogger("Export variants", () -> {
-                if (finalQueryOptions.getBoolean(QueryOptions.SKIP_COUNT) || variantsFile != null) {
-                    return 0L;
-                }
-                Long count = engine.count(finalQuery).first();
-                long limit = finalQueryOptions.getLong(QueryOptions.LIMIT, Long.MAX_VALUE);
-                long skip = finalQueryOptions.getLong(QueryOptions.SKIP, 0);
-                count = Math.min(limit, count - skip);
-                return count;
-            }, 200);
+            ProgressLogger progressLogger = newProgressLogger(variantsFile, query, queryOptions);
             progressTask = batch -> {
                 progressLogger.increment(batch.size(), () -> "up to position " + batch.get(batch.size() - 1).toString());
                 return batch;
@@ -172,6 +176,121 @@ public class VariantExporter {
 
     }
 
+    /**
+     * Get the regions for a parallel export, if enabled with {@link VariantStorageOptions#EXPORT_PARALLEL_THREADS}.
+     *
+     * Only VCF outputs are exported in parallel. Queries by gene, id or xref, or with limit or skip, are exported sequentially.
+     * Queries without region are split using the contigs from the study metadata, or from the headers of the files
+     * if the study has no contigs.
+     *
+     * @param outputFormat  Variant Output format.
+     * @param variantsFile  Optional variants file.
+     * @param query         Query with the variants to export
+     * @param queryOptions  Query options
+     * @return List of regions to export in parallel, or null if the export can not be executed in parallel
+     * @throws StorageEngineException  If there is any error reading the metadata
+     */
+    protected List<VariantParallelVcfExporter.ExportRegion> getParallelExportRegions(VariantOutputFormat outputFormat, URI variantsFile,
+                                                                                    Query query, QueryOptions queryOptions)
+            throws StorageEngineException {
+        ObjectMap options = getParallelExportOptions(queryOptions);
+        if (options.getInt(VariantStorageOptions.EXPORT_PARALLEL_THREADS.key()) <= 1
+                || variantsFile != null
+                || (outputFormat != VariantOutputFormat.VCF && outputFormat != VariantOutputFormat.VCF_GZ)
+                || options.containsKey(QueryOptions.LIMIT)
+                || options.containsKey(QueryOptions.SKIP)) {
+            return null;
+        }
+        if (query == null) {
+            query = new Query();
+        }
+        VariantQueryParser.VariantQueryXref xrefs = VariantQueryParser.parseXrefs(query);
+        if (!xrefs.getGenes().isEmpty()
+                || !xrefs.getIds().isEmpty()
+                || !xrefs.getVariants().isEmpty()
+                || !xrefs.getOtherXrefs().isEmpty()) {
+            return null;
+        }
+        VariantMetadata metadata = new VariantMetadataFactory(engine.getMetadataManager()).makeVariantMetadata(query, queryOptions);
+        if (metadata.getStudies().size() != 1) {
+            return null;
+        }
+        List<Region> regions = VariantQueryUtils.isValidParam(query, VariantQueryParam.REGION)
+                ? Region.parseRegions(query.getString(VariantQueryParam.REGION.key()))
+                : Collections.emptyList();
+        VariantStudyMetadata studyMetadata = metadata.getStudies().get(0);
+        Map<String, Integer> contigs = new LinkedHashMap<>();
+        VariantParallelVcfExporter.readContigs(studyMetadata.getAggregatedHeader(), contigs);
+        if (contigs.isEmpty() && regions.isEmpty()) {
+            VariantStorageMetadataManager metadataManager = engine.getMetadataManager();
+            int studyId = metadataManager.getStudyId(studyMetadata.getId());
+            Iterator<VariantFileMetadata> iterator = metadataManager.variantFileMetadataIterator(studyId, new QueryOptions());
+            while (iterator.hasNext()) {
+                VariantParallelVcfExporter.readContigs(iterator.next().getHeader(), contigs);
+            }
+        }
+        return VariantParallelVcfExporter.splitRegions(regions, contigs,
+                options.getInt(VariantStorageOptions.EXPORT_PARALLEL_REGION_SIZE.key()));
+    }
+
+    protected void exportDataParallel(URI outputFile, VariantOutputFormat outputFormat,
+                                      List<VariantParallelVcfExporter.ExportRegion> regions, Query query, QueryOptions queryOptions)
+            throws StorageEngineException, IOException {
+        if (query == null) {
+            query = new Query();
+        }
+        if (queryOptions == null) {
+            queryOptions = new QueryOptions();
+        }
+        ObjectMap options = getParallelExportOptions(queryOptions);
+        int numThreads = options.getInt(VariantStorageOptions.EXPORT_PARALLEL_THREADS.key());
+        boolean standardOutput = VariantWriterFactory.isStandardOutput(outputFile);
+        boolean compress = outputFormat == VariantOutputFormat.VCF_GZ;
+        boolean tabix = compress && !standardOutput && options.getBoolean(VariantStorageOptions.EXPORT_TABIX_INDEX.key());
+        logger.info("Export {} regions using {} threads", regions.size(), numThreads);
+
+        VariantMetadata metadata = new VariantMetadataFactory(engine.getMetadataManager()).makeVariantMetadata(query, queryOptions);
+        List<String> annotations = queryOptions.getAsStringList("annotations");
+        VariantParallelVcfExporter exporter = new VariantParallelVcfExporter(engine, metadata, annotations, numThreads, compress);
+        ProgressLogger progressLogger = standardOutput ? null : newProgressLogger(null, query, queryOptions);
+
+        // Raw output stream. The exporter compresses the output in BGZF
+        try (OutputStream os = new BufferedOutputStream(standardOutput
+                ? new VariantWriterFactory.UnclosableOutputStream(System.out)
+                : ioConnectorProvider.newOutputStreamRaw(outputFile), 1024 * 1024);
+             OutputStream indexOs = tabix
+                     ? ioConnectorProvider.newOutputStreamRaw(UriUtils.replacePath(outputFile, outputFile.getPath() + ".tbi"))
+                     : null) {
+            exporter.export(os, indexOs, query, queryOptions, regions, progressLogger);
+        }
+    }
+
+    private ObjectMap getParallelExportOptions(QueryOptions queryOptions) {
+        ObjectMap options = new ObjectMap();
+        options.put(VariantStorageOptions.EXPORT_PARALLEL_THREADS.key(), VariantStorageOptions.EXPORT_PARALLEL_THREADS.defaultValue());
+        options.put(VariantStorageOptions.EXPORT_PARALLEL_REGION_SIZE.key(),
+                VariantStorageOptions.EXPORT_PARALLEL_REGION_SIZE.defaultValue());
+        options.put(VariantStorageOptions.EXPORT_TABIX_INDEX.key(), VariantStorageOptions.EXPORT_TABIX_INDEX.defaultValue());
+        options.putAll(engine.getOptions());
+        if (queryOptions != null) {
+            options.putAll(queryOptions);
+        }
+        return options;
+    }
+
+    private ProgressLogger newProgressLogger(URI variantsFile, Query query, QueryOptions queryOptions) {
+        return new ProgressLogger("Export variants", () -> {
+            if (queryOptions.getBoolean(QueryOptions.SKIP_COUNT) || variantsFile != null) {
+                return 0L;
+            }
+            Long count = engine.count(query).first();
+            long limit = queryOptions.getLong(QueryOptions.LIMIT, Long.MAX_VALUE);
+            long skip = queryOptions.getLong(QueryOptions.SKIP, 0);
+            count = Math.min(limit, count - skip);
+            return count;
+        }, 200);
+    }
+
     protected void writeMetadata(VariantMetadata metadata, URI metadataFile) throws IOException {
         if (metadataFile.toString().endsWith(TFAM_FILE_EXTENSION)) {
             // Write .tfam file
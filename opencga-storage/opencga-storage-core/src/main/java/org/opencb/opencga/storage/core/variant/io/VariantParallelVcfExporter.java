@@ -0,0 +1,648 @@
+package org.opencb.opencga.storage.core.variant.io;
+
+import htsjdk.tribble.SimpleFeature;
+import htsjdk.tribble.index.Index;
+import htsjdk.tribble.index.tabix.TabixFormat;
+import htsjdk.tribble.index.tabix.TabixIndexCreator;
+import htsjdk.tribble.util.LittleEndianOutputStream;
+import org.apache.commons.lang3.StringUtils;
+import org.opencb.biodata.models.core.Region;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.biodata.models.variant.metadata.VariantFileHeader;
+import org.opencb.biodata.models.variant.metadata.VariantFileHeaderComplexLine;
+import org.opencb.biodata.models.variant.metadata.VariantMetadata;
+import org.opencb.commons.ProgressLogger;
+import org.opencb.commons.datastore.core.Query;
+import org.opencb.commons.datastore.core.QueryOptions;
+import org.opencb.opencga.storage.core.exceptions.StorageEngineException;
+import org.opencb.opencga.storage.core.variant.VariantStorageEngine;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryUtils;
+import org.opencb.opencga.storage.core.variant.adaptors.iterators.VariantDBIterator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Exports variants to VCF splitting the genome in regions, which are queried, formatted and compressed concurrently.
+ *
+ * Each region is formatted with a {@link VcfDataWriter}, so the output is the same as the sequential export, and compressed
+ * into independent BGZF blocks. Completed blocks are streamed to the output in the order of the regions, so only a few blocks
+ * of each running region are kept in memory. As the virtual offset of each record is known when writing, a tabix index can be
+ * generated on the fly.
+ *
+ * Contigs are exported in the order of the VCF header, so the output matches the sequential export as long as the storage
+ * engine returns the contigs in that same order. Variants from contigs missing in the header are exported at the end.
+ */
+public class VariantParallelVcfExporter {
+
+    private static final int BATCH_SIZE = 100;
+    // Max number of completed blocks of each region waiting to be written
+    private static final int MAX_PENDING_BLOCKS = 4;
+
+    private final VariantStorageEngine engine;
+    private final VariantMetadata metadata;
+    private final List<String> annotations;
+    private final int numThreads;
+    private final boolean compress;
+
+    private final Logger logger = LoggerFactory.getLogger(VariantParallelVcfExporter.class);
+
+    /**
+     * Region to export. Variants starting at or before the end of the previous region of the same contig are discarded,
+     * as they were exported with the previous region.
+     *
+     * The partition of "other contigs" has no region, and exports the variants from any contig not exported by
+     * any other partition.
+     */
+    public static final class ExportRegion {
+        private final Region region;
+        private final int previousEnd;
+        private final boolean contigOnly;
+        private final Set<String> otherContigs;
+
+        /**
+         * Create a new region to export.
+         *
+         * @param region      Region
+         * @param previousEnd End of the previous region of the same contig, or 0 if none
+         * @param contigOnly  Discard variants from any other contig. Variants are exported by the partition of their contig
+         *                    or by the partition of "other contigs"
+         */
+        public ExportRegion(Region region, int previousEnd, boolean contigOnly) {
+            this.region = Objects.requireNonNull(region);
+            this.previousEnd = previousEnd;
+            this.contigOnly = contigOnly;
+            this.otherContigs = null;
+        }
+
+        private ExportRegion(Set<String> contigs) {
+            this.region = null;
+            this.previousEnd = 0;
+            this.contigOnly = false;
+            this.otherContigs = contigs;
+        }
+
+        /**
+         * Partition with the variants from any contig but the given ones.
+         *
+         * @param contigs Contigs exported by other partitions
+         * @return ExportRegion without region
+         */
+        public static ExportRegion otherContigs(Set<String> contigs) {
+            return new ExportRegion(Collections.unmodifiableSet(new HashSet<>(contigs)));
+        }
+
+        public Region getRegion() {
+            return region;
+        }
+
+        public int getPreviousEnd() {
+            return previousEnd;
+        }
+
+        public boolean isContigOnly() {
+            return contigOnly;
+        }
+
+        public boolean isOtherContigs() {
+            return region == null;
+        }
+
+        /**
+         * Check if a variant returned by the query of this partition is exported with this partition.
+         *
+         * @param variant Variant
+         * @return if the variant is exported with this partition
+         */
+        public boolean accept(Variant variant) {
+            if (region == null) {
+                return !otherContigs.contains(variant.getChromosome());
+            } else if (contigOnly && !region.getChromosome().equals(variant.getChromosome())) {
+                return false;
+            } else {
+                return previousEnd <= 0 || variant.getStart() > previousEnd;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return region == null ? "other contigs" : region.toString();
+        }
+    }
+
+    /**
+     * Block of formatted and, optionally, compressed variants of one region.
+     * Contains the records whose line ends in this block, to be added to the tabix index.
+     */
+    private static final class Block {
+        private static final Block END = new Block(null, 0, null);
+
+        private final byte[] data;
+        private final int numLines;
+        private final List<Record> records;
+
+        Block(byte[] data, int numLines, List<Record> records) {
+            this.data = data;
+            this.numLines = numLines;
+            this.records = records;
+        }
+    }
+
+    /**
+     * Record to index. The position is given by the block of the region where the line starts, and the offset within the block.
+     */
+    private static final class Record {
+        private final int block;
+        private final int offset;
+        private final String contig;
+        private final int start;
+        private final int end;
+
+        Record(int block, int offset, String contig, int start, int end) {
+            this.block = block;
+            this.offset = offset;
+            this.contig = contig;
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    public VariantParallelVcfExporter(VariantStorageEngine engine, VariantMetadata metadata, List<String> annotations,
+                                      int numThreads, boolean compress) {
+        this.engine = engine;
+        this.metadata = metadata;
+        this.annotations = annotations;
+        this.numThreads = numThreads;
+        this.compress = compress;
+    }
+
+    /**
+     * Read the contigs from a VCF header.
+     *
+     * @param header  VCF header
+     * @param contigs Map to add the contigs, in order, and their lengths. Contigs without length are added with
+     *                {@link Integer#MAX_VALUE}, and updated if any other header has their length.
+     */
+    public static void readContigs(VariantFileHeader header, Map<String, Integer> contigs) {
+        if (header == null || header.getComplexLines() == null) {
+            return;
+        }
+        for (VariantFileHeaderComplexLine line : header.getComplexLines()) {
+            if (line.getKey().equalsIgnoreCase("contig")) {
+                String length = line.getGenericFields() == null ? null : line.getGenericFields().get("length");
+                int value = StringUtils.isNotEmpty(length) && StringUtils.isNumeric(length)
+                        ? Integer.parseInt(length)
+                        : Integer.MAX_VALUE;
+                contigs.merge(line.getId(), value, Math::min);
+            }
+        }
+    }
+
+    /**
+     * Split the regions to export in smaller regions.
+     *
+     * If no regions are given, the whole genome is exported, split by the given contigs. As the contigs from the
+     * metadata may not cover all the variants, one last partition exports the variants from any other contig.
+     *
+     * Overlapping regions are merged. Regions are sorted by contig, following the order of the given contigs, and then
+     * by start. Regions without end are split using the contig lengths.
+     *
+     * @param regions    Regions to export. Might be empty.
+     * @param contigs    Known contigs, in order, with their lengths. See {@link #readContigs}
+     * @param regionSize Max size of each region
+     * @return List of regions to export, in order. Null if the regions can not be determined.
+     */
+    public static List<ExportRegion> splitRegions(List<Region> regions, Map<String, Integer> contigs, int regionSize) {
+        List<ExportRegion> exportRegions = new ArrayList<>();
+        if (regions.isEmpty()) {
+            if (contigs.isEmpty()) {
+                return null;
+            }
+            for (Map.Entry<String, Integer> entry : contigs.entrySet()) {
+                split(new Region(entry.getKey(), 1, Integer.MAX_VALUE), entry.getValue(), 0, true, regionSize, exportRegions);
+            }
+            exportRegions.add(ExportRegion.otherContigs(contigs.keySet()));
+            return exportRegions;
+        }
+
+        // Group by contig. Known contigs first, in order
+        Map<String, List<Region>> regionsByContig = new LinkedHashMap<>();
+        for (String contig : contigs.keySet()) {
+            regionsByContig.put(contig, new ArrayList<>());
+        }
+        for (Region region : VariantQueryUtils.mergeRegions(regions)) {
+            regionsByContig.computeIfAbsent(region.getChromosome(), key -> new ArrayList<>()).add(region);
+        }
+        for (List<Region> contigRegions : regionsByContig.values()) {
+            int previousEnd = 0;
+            for (Region region : contigRegions) {
+                previousEnd = split(region, contigs.get(region.getChromosome()), previousEnd, false, regionSize, exportRegions);
+            }
+        }
+        return exportRegions;
+    }
+
+    /**
+     * Split a region in chunks of the given size.
+     *
+     * @return End of the last chunk
+     */
+    private static int split(Region region, Integer contigLength, int previousEnd, boolean contigOnly, int regionSize,
+                             List<ExportRegion> exportRegions) {
+        int start = Math.max(1, region.getStart());
+        int end = region.getEnd();
+        if (end == Integer.MAX_VALUE && contigLength != null) {
+            end = contigLength;
+        }
+        if (end == Integer.MAX_VALUE) {
+            // Unknown length. Can not be split
+            exportRegions.add(new ExportRegion(new Region(region.getChromosome(), start, end), previousEnd, contigOnly));
+            return end;
+        }
+        for (long chunkStart = start; chunkStart <= end; chunkStart += regionSize) {
+            int chunkEnd = (int) Math.min(end, chunkStart + regionSize - 1);
+            // Do not lose variants after the contig length
+            if (chunkEnd == end && region.getEnd() == Integer.MAX_VALUE) {
+                chunkEnd = Integer.MAX_VALUE;
+            }
+            exportRegions.add(new ExportRegion(new Region(region.getChromosome(), (int) chunkStart, chunkEnd), previousEnd, contigOnly));
+            previousEnd = chunkEnd;
+        }
+        return previousEnd;
+    }
+
+    /**
+     * Export the variants of the given regions.
+     *
+     * @param outputStream      Output stream. If compressed, the output is written in BGZF.
+     * @param indexOutputStream Optional tabix index output stream. Only for compressed outputs.
+     * @param query             Query. Regions are replaced with each of the export regions.
+     * @param options           Query options
+     * @param regions           Regions to export
+     * @param progressLogger    Optional progress logger
+     * @throws StorageEngineException if there is any error exporting the variants
+     * @throws IOException            if there is any IO error
+     */
+    public void export(OutputStream outputStream, @Nullable OutputStream indexOutputStream, Query query, QueryOptions options,
+                       List<ExportRegion> regions, @Nullable ProgressLogger progressLogger)
+            throws StorageEngineException, IOException {
+        if (indexOutputStream != null && !compress) {
+            throw new IllegalArgumentException("Unable to create a tabix index for an uncompressed output");
+        }
+        // Write the header with the same writer used for each region, so it can be skipped from the region output
+        ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+        VcfDataWriter<Variant> headerWriter = VcfDataWriter.newWriterForAvro(metadata, annotations, headerBytes);
+        headerWriter.pre();
+        headerWriter.close();
+        byte[] header = headerBytes.toByteArray();
+        QueryOptions regionOptions = new QueryOptions(options).append(QueryOptions.SORT, true);
+
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads, r -> {
+            Thread thread = new Thread(r, "vcf-export");
+            thread.setDaemon(true);
+            return thread;
+        });
+        TabixIndexCreator indexCreator = indexOutputStream == null ? null : new TabixIndexCreator(TabixFormat.VCF);
+        long fileOffset = 0;
+        long numVariants = 0;
+        try {
+            if (compress) {
+                BgzfBlockCompressor compressor = new BgzfBlockCompressor();
+                fileOffset += compressor.compress(header, 0, header.length, outputStream);
+                compressor.end();
+            } else {
+                outputStream.write(header);
+                fileOffset += header.length;
+            }
+
+            // Regions are executed in order, so the region being written is always running or finished.
+            // Limit the number of regions submitted ahead of the region being written.
+            Iterator<ExportRegion> regionsIterator = regions.iterator();
+            Deque<RegionExport> submitted = new ArrayDeque<>();
+            String lastContig = null;
+            int lastStart = 0;
+            while (true) {
+                while (submitted.size() < numThreads * 2 && regionsIterator.hasNext()) {
+                    RegionExport next = new RegionExport(regionsIterator.next(), query, regionOptions, header, indexCreator != null);
+                    executor.execute(next);
+                    submitted.add(next);
+                }
+                RegionExport regionExport = submitted.poll();
+                if (regionExport == null) {
+                    break;
+                }
+                List<Long> blockAddresses = new ArrayList<>();
+                for (Block block = regionExport.blocks.take(); block != Block.END; block = regionExport.blocks.take()) {
+                    blockAddresses.add(fileOffset);
+                    if (indexCreator != null) {
+                        for (Record record : block.records) {
+                            // Indels are written in the VCF from the previous base, so the output might not be strictly sorted.
+                            // The tabix index requires sorted features.
+                            int start = record.start;
+                            if (record.contig.equals(lastContig)) {
+                                start = Math.max(start, lastStart);
+                            }
+                            lastContig = record.contig;
+                            lastStart = start;
+                            long virtualOffset = (blockAddresses.get(record.block) << 16) | record.offset;
+                            indexCreator.addFeature(new SimpleFeature(record.contig, start, Math.max(start, record.end)), virtualOffset);
+                        }
+                    }
+                    outputStream.write(block.data);
+                    fileOffset += block.data.length;
+                    numVariants += block.numLines;
+                    if (progressLogger != null && block.numLines > 0) {
+                        progressLogger.increment(block.numLines, () -> "up to region " + regionExport);
+                    }
+                }
+                if (regionExport.failure != null) {
+                    throw new StorageEngineException("Error exporting variants from region " + regionExport, regionExport.failure);
+                }
+            }
+            if (compress) {
+                outputStream.write(BgzfBlockCompressor.EOF_BLOCK);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StorageEngineException("Interrupted exporting variants", e);
+        } finally {
+            // Stop any running region if the export failed
+            executor.shutdownNow();
+        }
+        if (indexCreator != null) {
+            writeIndex(indexCreator, fileOffset, indexOutputStream);
+        }
+        logger.info("Exported {} variants from {} regions", numVariants, regions.size());
+    }
+
+    private void writeIndex(TabixIndexCreator indexCreator, long fileOffset, OutputStream indexOutputStream) throws IOException {
+        // The index ends before the EOF block
+        Index index = indexCreator.finalizeIndex(fileOffset << 16);
+        ByteArrayOutputStream indexBytes = new ByteArrayOutputStream();
+        try (LittleEndianOutputStream los = new LittleEndianOutputStream(indexBytes)) {
+            index.write(los);
+        }
+        // Tabix indexes are compressed in BGZF
+        BgzfBlockCompressor compressor = new BgzfBlockCompressor();
+        byte[] bytes = indexBytes.toByteArray();
+        compressor.compress(bytes, 0, bytes.length, indexOutputStream);
+        indexOutputStream.write(BgzfBlockCompressor.EOF_BLOCK);
+        compressor.end();
+    }
+
+    /**
+     * Query and format the variants of one region. Completed blocks are added to a bounded queue, ended by {@link Block#END}.
+     */
+    private class RegionExport implements Runnable {
+        private final ExportRegion exportRegion;
+        private final Query query;
+        private final QueryOptions options;
+        private final byte[] header;
+        private final boolean index;
+        private final BlockingQueue<Block> blocks = new ArrayBlockingQueue<>(MAX_PENDING_BLOCKS);
+        private volatile Exception failure;
+
+        RegionExport(ExportRegion exportRegion, Query query, QueryOptions options, byte[] header, boolean index) {
+            this.exportRegion = exportRegion;
+            this.query = query;
+            this.options = options;
+            this.header = header;
+            this.index = index;
+        }
+
+        @Override
+        public void run() {
+            try {
+                export();
+            } catch (Exception e) {
+                // Includes interruptions and timeouts. The writer fails after reading the END block
+                failure = e;
+            } finally {
+                end();
+            }
+        }
+
+        /**
+         * Always add the {@link Block#END}, so the writer never waits forever for this region.
+         */
+        private void end() {
+            if (failure != null) {
+                // The pending blocks will not be written. Discard them to make room for the END block.
+                // This is the only producer of the queue, so the offer can not fail.
+                blocks.clear();
+                blocks.offer(Block.END);
+            } else {
+                try {
+                    blocks.put(Block.END);
+                } catch (InterruptedException e) {
+                    // Export aborted. The writer is not reading anymore
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        private void export() throws Exception {
+            Query regionQuery = new Query(query);
+            if (!exportRegion.isOtherContigs()) {
+                regionQuery.append(VariantQueryParam.REGION.key(), exportRegion.getRegion().toString());
+            }
+            BlockOutputStream os = new BlockOutputStream(blocks, header, index);
+            VcfDataWriter<Variant> writer = VcfDataWriter.newWriterForAvro(metadata, annotations, os);
+            try {
+                writer.open();
+                writer.pre();
+                try (VariantDBIterator iterator = engine.iterator(regionQuery, options)) {
+                    List<Variant> batch = new ArrayList<>(BATCH_SIZE);
+                    while (iterator.hasNext()) {
+                        Variant variant = iterator.next();
+                        if (!exportRegion.accept(variant)) {
+                            // Exported with another region
+                            continue;
+                        }
+                        batch.add(variant);
+                        if (batch.size() == BATCH_SIZE) {
+                            writer.write(batch);
+                            batch.clear();
+                        }
+                    }
+                    if (!batch.isEmpty()) {
+                        writer.write(batch);
+                    }
+                }
+                writer.post();
+                // Flush any buffered record before writing the last block
+                writer.close();
+                os.finish();
+            } finally {
+                os.close();
+            }
+        }
+
+        @Override
+        public String toString() {
+            return exportRegion.toString();
+        }
+    }
+
+    /**
+     * Output stream splitting the output of a region in blocks of up to {@link BgzfBlockCompressor#MAX_BLOCK_SIZE} bytes.
+     * The VCF header written by the {@link VcfDataWriter} is skipped. If indexing, the first columns of each line are
+     * parsed to get the contig, the start and the end of the record.
+     */
+    private final class BlockOutputStream extends OutputStream {
+        private final BlockingQueue<Block> blocks;
+        private final byte[] header;
+        private final boolean index;
+        private final BgzfBlockCompressor compressor;
+        private final byte[] block = new byte[BgzfBlockCompressor.MAX_BLOCK_SIZE];
+        private int headerOffset;
+        private int blockLength;
+        private int blockIndex;
+        private int numLines;
+        private List<Record> records = new ArrayList<>();
+
+        // Current line
+        private boolean lineStart = true;
+        private int lineBlock;
+        private int lineOffset;
+        private int column;
+        private final StringBuilder field = new StringBuilder();
+        private String contig;
+        private int start;
+        private int refLength;
+        private int end;
+
+        BlockOutputStream(BlockingQueue<Block> blocks, byte[] header, boolean index) {
+            this.blocks = blocks;
+            this.header = header;
+            this.index = index;
+            this.compressor = compress ? new BgzfBlockCompressor() : null;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] data, int offset, int length) throws IOException {
+            int limit = offset + length;
+            for (int i = offset; i < limit; i++) {
+                byte b = data[i];
+                if (headerOffset < header.length) {
+                    if (header[headerOffset++] != b) {
+                        throw new IllegalStateException("Unexpected VCF header");
+                    }
+                    continue;
+                }
+                if (lineStart) {
+                    lineStart = false;
+                    lineBlock = blockIndex;
+                    lineOffset = blockLength;
+                    column = 0;
+                    end = -1;
+                }
+                if (index) {
+                    parse(b);
+                }
+                block[blockLength++] = b;
+                if (b == '\n') {
+                    numLines++;
+                    lineStart = true;
+                }
+                if (blockLength == block.length) {
+                    flushBlock();
+                }
+            }
+        }
+
+        private void parse(byte b) {
+            if (b == '\t' || b == '\n') {
+                if (column == 0) {
+                    contig = field.toString();
+                } else if (column == 1) {
+                    start = Integer.parseInt(field.toString());
+                } else if (column == 3) {
+                    refLength = field.length();
+                } else if (column == 7) {
+                    end = parseInfoEnd(field);
+                }
+                field.setLength(0);
+                column++;
+                if (b == '\n') {
+                    records.add(new Record(lineBlock, lineOffset, contig, start, end < 0 ? start + refLength - 1 : end));
+                }
+            } else if (column == 0 || column == 1 || column == 3 || column == 7) {
+                field.append((char) b);
+            }
+        }
+
+        private int parseInfoEnd(CharSequence info) {
+            String str = info.toString();
+            int idx;
+            if (str.startsWith("END=")) {
+                idx = 0;
+            } else {
+                idx = str.indexOf(";END=");
+                if (idx < 0) {
+                    return -1;
+                }
+                idx++;
+            }
+            idx += "END=".length();
+            int endIdx = str.indexOf(';', idx);
+            return Integer.parseInt(endIdx < 0 ? str.substring(idx) : str.substring(idx, endIdx));
+        }
+
+        private void flushBlock() throws IOException {
+            if (blockLength == 0) {
+                return;
+            }
+            byte[] data;
+            if (compress) {
+                ByteArrayOutputStream compressed = new ByteArrayOutputStream(blockLength / 2);
+                compressor.compressBlock(block, 0, blockLength, compressed);
+                data = compressed.toByteArray();
+            } else {
+                data = Arrays.copyOf(block, blockLength);
+            }
+            try {
+                blocks.put(new Block(data, numLines, records));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted exporting variants");
+            }
+            blockLength = 0;
+            blockIndex++;
+            numLines = 0;
+            records = new ArrayList<>();
+        }
+
+        /**
+         * Write the last block.
+         *
+         * @throws IOException if interrupted
+         */
+        void finish() throws IOException {
+            flushBlock();
+        }
+
+        @Override
+        public void close() {
+            if (compressor != null) {
+                compressor.end();
+            }
+        }
+    }
+}
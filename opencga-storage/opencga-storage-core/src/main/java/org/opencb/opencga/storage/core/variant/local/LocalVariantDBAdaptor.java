@@ -0,0 +1,730 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.core.variant.local;
+
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Iterators;
+import htsjdk.variant.vcf.VCFConstants;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.tuple.Pair;
+import org.opencb.biodata.models.core.Region;
+import org.opencb.biodata.models.variant.StudyEntry;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.biodata.models.variant.avro.AdditionalAttribute;
+import org.opencb.biodata.models.variant.avro.FileEntry;
+import org.opencb.biodata.models.variant.avro.VariantAnnotation;
+import org.opencb.commons.datastore.core.DataResult;
+import org.opencb.commons.datastore.core.Query;
+import org.opencb.commons.datastore.core.QueryOptions;
+import org.opencb.opencga.core.response.VariantQueryResult;
+import org.opencb.opencga.storage.core.metadata.VariantStorageMetadataManager;
+import org.opencb.opencga.storage.core.metadata.models.StudyMetadata;
+import org.opencb.opencga.storage.core.variant.VariantStorageOptions;
+import org.opencb.opencga.storage.core.variant.adaptors.*;
+import org.opencb.opencga.storage.core.variant.adaptors.iterators.VariantDBIterator;
+import org.opencb.opencga.storage.core.variant.local.store.LocalVariantStore;
+import org.opencb.opencga.storage.core.variant.stats.VariantStatsWrapper;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam.*;
+import static org.opencb.opencga.storage.core.variant.adaptors.VariantQueryUtils.*;
+
+/**
+ * Variant DBAdaptor of the local variant storage engine.
+ *
+ * Every indexed file is stored in its own {@link LocalVariantStore}. Queries scan the stores of all the indexed files,
+ * merging the variants in order, and build the requested study entries from the matching variants of each file.
+ *
+ * Only the filters {@link VariantQueryParam#REGION}, {@link VariantQueryParam#ID} (variant ids), {@link VariantQueryParam#STUDY},
+ * {@link VariantQueryParam#FILE}, {@link VariantQueryParam#GENOTYPE}, {@link VariantQueryParam#TYPE},
+ * {@link VariantQueryParam#REFERENCE} and {@link VariantQueryParam#ALTERNATE} are supported.
+ * Annotations and statistics are not stored.
+ */
+public class LocalVariantDBAdaptor implements VariantDBAdaptor {
+
+    public static final Set<VariantQueryParam> SUPPORTED_QUERY_PARAMS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            REGION, ID, STUDY, FILE, GENOTYPE, TYPE, REFERENCE, ALTERNATE)));
+
+    /**
+     * Numerical chromosomes first, in numerical order, followed by the rest of chromosomes in lexicographical order.
+     */
+    public static final Comparator<String> CHROMOSOME_COMPARATOR = (c1, c2) -> {
+        boolean numeric1 = StringUtils.isNumeric(c1);
+        boolean numeric2 = StringUtils.isNumeric(c2);
+        if (numeric1 && numeric2) {
+            return Integer.compare(Integer.parseInt(c1), Integer.parseInt(c2));
+        } else if (numeric1) {
+            return -1;
+        } else if (numeric2) {
+            return 1;
+        } else {
+            return c1.compareTo(c2);
+        }
+    };
+
+    private static final String DEFAULT_GENOTYPE = "0/0";
+    private static final String MISSING_VALUE = ".";
+
+    private final Path directory;
+    private final Map<Path, LocalVariantStore> stores = new ConcurrentHashMap<>();
+    private VariantStorageMetadataManager metadataManager;
+
+    public LocalVariantDBAdaptor(Path directory, VariantStorageMetadataManager metadataManager) {
+        this.directory = directory;
+        this.metadataManager = metadataManager;
+    }
+
+    public Path getStudyDirectory(int studyId) {
+        return directory.resolve(String.valueOf(studyId));
+    }
+
+    public Path getFileDirectory(int studyId, int fileId) {
+        return getStudyDirectory(studyId).resolve(String.valueOf(fileId));
+    }
+
+    /**
+     * Format fields stored for every sample of a study.
+     *
+     * @param studyMetadata Study metadata
+     * @return GT, unless the genotypes are excluded, followed by the extra format fields
+     */
+    public static List<String> getFormats(StudyMetadata studyMetadata) {
+        List<String> extraFormatFields = studyMetadata.getAttributes()
+                .getAsStringList(VariantStorageOptions.EXTRA_FORMAT_FIELDS.key());
+        boolean excludeGenotypes = studyMetadata.getAttributes()
+                .getBoolean(VariantStorageOptions.EXCLUDE_GENOTYPES.key(), VariantStorageOptions.EXCLUDE_GENOTYPES.defaultValue());
+        List<String> formats = new ArrayList<>(extraFormatFields.size() + 1);
+        if (!excludeGenotypes) {
+            formats.add(VCFConstants.GENOTYPE_KEY);
+        }
+        formats.addAll(extraFormatFields);
+        return formats;
+    }
+
+    protected LocalVariantStore getStore(int studyId, int fileId) {
+        return stores.computeIfAbsent(getFileDirectory(studyId, fileId), path -> {
+            try {
+                return new LocalVariantStore(path);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * Close the opened stores of some files, before removing them.
+     *
+     * @param studyId Study
+     * @param fileIds Files to close
+     * @throws IOException on error closing the stores
+     */
+    public void closeStores(int studyId, Collection<Integer> fileIds) throws IOException {
+        for (Integer fileId : fileIds) {
+            LocalVariantStore store = stores.remove(getFileDirectory(studyId, fileId));
+            if (store != null) {
+                store.close();
+            }
+        }
+    }
+
+    @Override
+    public VariantQueryResult<Variant> get(Query query, QueryOptions options) {
+
+        List<Variant> variants = new ArrayList<>();
+        VariantDBIterator iterator = iterator(query, options);
+        iterator.forEachRemaining(variants::add);
+        long numTotalResults;
+
+        if (options == null) {
+            numTotalResults = variants.size();
+        } else {
+            if (options.getInt(QueryOptions.LIMIT, -1) > 0) {
+                if (options.getBoolean(QueryOptions.SKIP_COUNT, DEFAULT_SKIP_COUNT)) {
+                    numTotalResults = -1;
+                } else {
+                    numTotalResults = count(query).first();
+                }
+            } else {
+                // There are no limit. Do not count.
+                numTotalResults = variants.size();
+            }
+        }
+
+        VariantQueryResult<Variant> result = new VariantQueryResult<>(((int) iterator.getTimeFetching(TimeUnit.MILLISECONDS)),
+                variants.size(),
+                numTotalResults, null, variants, null, LocalVariantStorageEngine.STORAGE_ENGINE_ID);
+        return addSamplesMetadataIfRequested(result, query, options, getMetadataManager());
+    }
+
+    @Override
+    public List<VariantQueryResult<Variant>> get(List<Query> queries, QueryOptions options) {
+        List<VariantQueryResult<Variant>> results = new ArrayList<>(queries.size());
+        for (Query query : queries) {
+            results.add(get(query, options));
+        }
+        return results;
+    }
+
+    @Override
+    public VariantQueryResult<Variant> getPhased(String variant, String studyName, String sampleName, QueryOptions options,
+                                                 int windowsSize) {
+        throw new UnsupportedOperationException("Unimplemented");
+    }
+
+    @Override
+    public DataResult<VariantAnnotation> getAnnotation(String name, Query query, QueryOptions options) {
+        throw new UnsupportedOperationException("Unimplemented");
+    }
+
+    @Override
+    public DataResult<Long> count(Query query) {
+        long startTime = System.currentTimeMillis();
+        // Only the variants are needed. Do not build any study
+        QueryOptions options = new QueryOptions(QueryOptions.EXCLUDE, VariantField.STUDIES);
+        long count = Iterators.size(iterator(query, options));
+        return new DataResult<>(((int) (System.currentTimeMillis() - startTime)), Collections.emptyList(), 1,
+                Collections.singletonList(count), 1);
+    }
+
+    @Override
+    public DataResult distinct(Query query, String field) {
+        throw new UnsupportedOperationException("Unimplemented");
+    }
+
+    @Override
+    public VariantDBIterator iterator(Query query, QueryOptions options) {
+        if (query == null) {
+            query = new Query();
+        }
+        if (options == null) {
+            options = new QueryOptions();
+        }
+        Set<VariantQueryParam> unsupportedParams = validParams(query, true);
+        unsupportedParams.removeAll(SUPPORTED_QUERY_PARAMS);
+        if (!unsupportedParams.isEmpty()) {
+            throw VariantQueryException.unsupportedVariantQueryFilters(unsupportedParams,
+                    "Not supported by the storage engine '" + LocalVariantStorageEngine.STORAGE_ENGINE_ID + "'");
+        }
+
+        Iterator<Variant> iterator = new LocalVariantQuery(query, options).iterator();
+
+        int skip = options.getInt(QueryOptions.SKIP, 0);
+        if (skip > 0) {
+            Iterators.advance(iterator, skip);
+        }
+        int limit = options.getInt(QueryOptions.LIMIT, 0);
+        if (limit > 0) {
+            iterator = Iterators.limit(iterator, limit);
+        }
+        return VariantDBIterator.wrapper(iterator);
+    }
+
+    /**
+     * Stored file to be scanned by a query.
+     */
+    private static final class FileScan {
+        private final int studyId;
+        private final int fileId;
+        private final LocalVariantStore store;
+        private final Map<String, Set<String>> samples;
+
+        private FileScan(int studyId, int fileId, LocalVariantStore store, Set<String> samples) {
+            this.studyId = studyId;
+            this.fileId = fileId;
+            this.store = store;
+            this.samples = Collections.singletonMap(String.valueOf(studyId), samples);
+        }
+    }
+
+    /**
+     * Filter over the studies or files where the variant is present.
+     */
+    private static final class Term {
+        private final long key;
+        private final boolean negated;
+
+        private Term(long key, boolean negated) {
+            this.key = key;
+            this.negated = negated;
+        }
+
+        private static boolean matches(List<Term> terms, boolean and, Set<Long> present) {
+            if (terms.isEmpty()) {
+                return true;
+            } else if (and) {
+                return terms.stream().allMatch(term -> present.contains(term.key) != term.negated);
+            } else {
+                return terms.stream().anyMatch(term -> present.contains(term.key) != term.negated);
+            }
+        }
+    }
+
+    private static long fileKey(int studyId, int fileId) {
+        return (((long) studyId) << 32) | fileId;
+    }
+
+    /**
+     * Parsed query, ready to be executed.
+     */
+    private final class LocalVariantQuery {
+        private final List<Region> regions;
+        private final Set<String> variantIds;
+        private final List<Region> scanRegions;
+        private final Set<String> types;
+        private final Set<String> references;
+        private final Set<String> alternates;
+
+        private final List<Term> studyTerms = new ArrayList<>();
+        private boolean studiesAnd;
+        private final List<Term> fileTerms = new ArrayList<>();
+        private boolean filesAnd;
+        // Genotypes filter, by study and sample name
+        private final Map<Integer, Map<String, List<String>>> genotypes = new HashMap<>();
+        private boolean genotypesAnd;
+
+        private final VariantQueryFields fields;
+        private final Map<Integer, List<String>> includeFormats = new HashMap<>();
+        private final Map<Integer, List<String>> includeSamples = new HashMap<>();
+        private final Map<Integer, Map<Integer, String>> includeFiles = new HashMap<>();
+        private final List<FileScan> scans = new ArrayList<>();
+
+        LocalVariantQuery(Query query, QueryOptions options) {
+            fields = parseVariantQueryFields(query, options, metadataManager);
+            StudyMetadata defaultStudy = getDefaultStudy(query, options, metadataManager);
+
+            if (isValidParam(query, REGION)) {
+                regions = Region.parseRegions(query.getString(REGION.key()));
+            } else {
+                regions = Collections.emptyList();
+            }
+            List<Region> scanRegions = new ArrayList<>(regions);
+            if (isValidParam(query, ID)) {
+                variantIds = new HashSet<>();
+                for (String id : query.getAsStringList(ID.key())) {
+                    Variant variant = toVariant(id);
+                    if (variant == null) {
+                        throw VariantQueryException.unsupportedVariantQueryFilter(ID, LocalVariantStorageEngine.STORAGE_ENGINE_ID,
+                                "Only variant ids are supported. Found '" + id + "'");
+                    }
+                    variantIds.add(variant.toString());
+                    scanRegions.add(new Region(variant.getChromosome(), variant.getStart(), variant.getEnd()));
+                }
+            } else {
+                variantIds = null;
+            }
+            if (scanRegions.isEmpty()) {
+                this.scanRegions = null;
+            } else {
+                this.scanRegions = new ArrayList<>(mergeRegions(scanRegions));
+                this.scanRegions.sort(Comparator.comparing(Region::getChromosome, CHROMOSOME_COMPARATOR)
+                        .thenComparingInt(Region::getStart));
+            }
+
+            types = isValidParam(query, TYPE) ? new HashSet<>(query.getAsStringList(TYPE.key())) : null;
+            references = isValidParam(query, REFERENCE) ? new HashSet<>(query.getAsStringList(REFERENCE.key())) : null;
+            alternates = isValidParam(query, ALTERNATE) ? new HashSet<>(query.getAsStringList(ALTERNATE.key())) : null;
+
+            if (isValidParam(query, STUDY)) {
+                Pair<QueryOperation, List<String>> pair = splitValue(query.getString(STUDY.key()));
+                studiesAnd = pair.getKey() == QueryOperation.AND;
+                for (String study : pair.getValue()) {
+                    studyTerms.add(new Term(metadataManager.getStudyId(removeNegation(study)), isNegated(study)));
+                }
+            }
+
+            if (isValidParam(query, FILE)) {
+                Pair<QueryOperation, List<String>> pair = splitValue(query.getString(FILE.key()));
+                filesAnd = pair.getKey() == QueryOperation.AND;
+                for (String file : pair.getValue()) {
+                    Pair<Integer, Integer> fileIdPair = metadataManager.getFileIdPair(removeNegation(file), false, defaultStudy);
+                    if (fileIdPair == null || fileIdPair.getKey() == null || fileIdPair.getValue() == null) {
+                        throw VariantQueryException.fileNotFound(file, defaultStudy == null ? "" : defaultStudy.getName());
+                    }
+                    fileTerms.add(new Term(fileKey(fileIdPair.getKey(), fileIdPair.getValue()), isNegated(file)));
+                }
+            }
+
+            if (isValidParam(query, GENOTYPE)) {
+                Map<Object, List<String>> map = new LinkedHashMap<>();
+                genotypesAnd = parseGenotypeFilter(query.getString(GENOTYPE.key()), map) != QueryOperation.OR;
+                for (Map.Entry<Object, List<String>> entry : map.entrySet()) {
+                    Pair<Integer, Integer> sampleIdPair = metadataManager.getSampleIdPair(entry.getKey(), false, defaultStudy);
+                    if (sampleIdPair == null || sampleIdPair.getKey() == null || sampleIdPair.getValue() == null) {
+                        throw VariantQueryException.sampleNotFound(entry.getKey(), defaultStudy == null ? "" : defaultStudy.getName());
+                    }
+                    String sampleName = metadataManager.getSampleName(sampleIdPair.getKey(), sampleIdPair.getValue());
+                    genotypes.computeIfAbsent(sampleIdPair.getKey(), k -> new HashMap<>()).put(sampleName, entry.getValue());
+                }
+            }
+
+            List<String> queryFormats = getIncludeFormats(query);
+            for (Integer studyId : fields.getStudies()) {
+                List<String> formats = getFormats(fields.getStudyMetadatas().get(studyId));
+                if (queryFormats != null) {
+                    formats.retainAll(queryFormats);
+                }
+                includeFormats.put(studyId, formats);
+                List<String> samples = new ArrayList<>();
+                for (Integer sampleId : fields.getSamples().getOrDefault(studyId, Collections.emptyList())) {
+                    samples.add(metadataManager.getSampleName(studyId, sampleId));
+                }
+                includeSamples.put(studyId, samples);
+                Map<Integer, String> files = new HashMap<>();
+                for (Integer fileId : fields.getFiles().getOrDefault(studyId, Collections.emptyList())) {
+                    files.put(fileId, metadataManager.getFileName(studyId, fileId));
+                }
+                includeFiles.put(studyId, files);
+            }
+
+            for (Integer studyId : metadataManager.getStudyIds()) {
+                Set<String> studySamples = new HashSet<>(includeSamples.getOrDefault(studyId, Collections.emptyList()));
+                studySamples.addAll(genotypes.getOrDefault(studyId, Collections.emptyMap()).keySet());
+                for (Integer fileId : metadataManager.getIndexedFiles(studyId)) {
+                    // Only decode the samples from this file that are returned or filtered
+                    Set<String> samples = new HashSet<>();
+                    for (Integer sampleId : metadataManager.getFileMetadata(studyId, fileId).getSamples()) {
+                        String sampleName = metadataManager.getSampleName(studyId, sampleId);
+                        if (studySamples.contains(sampleName)) {
+                            samples.add(sampleName);
+                        }
+                    }
+                    scans.add(new FileScan(studyId, fileId, getStore(studyId, fileId), samples));
+                }
+            }
+        }
+
+        Iterator<Variant> iterator() {
+            List<Region> regionsToScan;
+            if (scanRegions == null) {
+                Set<String> chromosomes = new TreeSet<>(CHROMOSOME_COMPARATOR);
+                for (FileScan scan : scans) {
+                    chromosomes.addAll(scan.store.getChromosomes());
+                }
+                regionsToScan = new ArrayList<>(chromosomes.size());
+                for (String chromosome : chromosomes) {
+                    regionsToScan.add(new Region(chromosome, 0, Integer.MAX_VALUE));
+                }
+            } else {
+                regionsToScan = scanRegions;
+            }
+            Iterator<Region> regionIterator = regionsToScan.iterator();
+
+            return new AbstractIterator<Variant>() {
+                private Region region;
+                private Iterator<List<Pair<FileScan, Variant>>> groups = Collections.emptyIterator();
+                private int minStart;
+
+                @Override
+                protected Variant computeNext() {
+                    while (true) {
+                        while (!groups.hasNext()) {
+                            if (!regionIterator.hasNext()) {
+                                return endOfData();
+                            }
+                            Region next = regionIterator.next();
+                            // Do not return twice variants overlapping consecutive regions
+                            if (region != null && region.getChromosome().equals(next.getChromosome())) {
+                                minStart = region.getEnd() + 1;
+                            } else {
+                                minStart = Integer.MIN_VALUE;
+                            }
+                            region = next;
+                            groups = groupIterator(region);
+                        }
+                        List<Pair<FileScan, Variant>> group = groups.next();
+                        Variant variant = group.get(0).getValue();
+                        if (variant.getStart() >= minStart && matches(variant, group)) {
+                            return buildVariant(variant, group);
+                        }
+                    }
+                }
+            };
+        }
+
+        /**
+         * Merge the variants of all the scanned files from a region, grouping the same variant from different files.
+         */
+        private Iterator<List<Pair<FileScan, Variant>>> groupIterator(Region region) {
+            PriorityQueue<PeekingVariantIterator> queue = new PriorityQueue<>(Math.max(1, scans.size()));
+            for (FileScan scan : scans) {
+                Iterator<Variant> iterator = scan.store.iterator(region.getChromosome(), region.getStart(), region.getEnd(),
+                        scan.samples);
+                if (iterator.hasNext()) {
+                    queue.add(new PeekingVariantIterator(scan, iterator));
+                }
+            }
+            return new AbstractIterator<List<Pair<FileScan, Variant>>>() {
+                @Override
+                protected List<Pair<FileScan, Variant>> computeNext() {
+                    PeekingVariantIterator head = queue.poll();
+                    if (head == null) {
+                        return endOfData();
+                    }
+                    List<Pair<FileScan, Variant>> group = new ArrayList<>();
+                    Variant variant = head.next();
+                    group.add(Pair.of(head.scan, variant));
+                    if (head.hasNext()) {
+                        queue.add(head);
+                    }
+                    while (!queue.isEmpty() && LocalVariantStore.VARIANT_COMPARATOR.compare(queue.peek().peek(), variant) == 0) {
+                        PeekingVariantIterator other = queue.poll();
+                        group.add(Pair.of(other.scan, other.next()));
+                        if (other.hasNext()) {
+                            queue.add(other);
+                        }
+                    }
+                    return group;
+                }
+            };
+        }
+
+        private boolean matches(Variant variant, List<Pair<FileScan, Variant>> group) {
+            if (variantIds != null && !variantIds.contains(variant.toString())
+                    && regions.stream().noneMatch(r -> r.overlaps(variant.getChromosome(), variant.getStart(), variant.getEnd()))) {
+                return false;
+            }
+            if (types != null && !types.contains(variant.getType().name())) {
+                return false;
+            }
+            if (references != null && !references.contains(variant.getReference())) {
+                return false;
+            }
+            if (alternates != null && !alternates.contains(variant.getAlternate())) {
+                return false;
+            }
+            if (!studyTerms.isEmpty() || !fileTerms.isEmpty()) {
+                Set<Long> presentStudies = new HashSet<>();
+                Set<Long> presentFiles = new HashSet<>();
+                for (Pair<FileScan, Variant> pair : group) {
+                    presentStudies.add((long) pair.getKey().studyId);
+                    presentFiles.add(fileKey(pair.getKey().studyId, pair.getKey().fileId));
+                }
+                if (!Term.matches(studyTerms, studiesAnd, presentStudies) || !Term.matches(fileTerms, filesAnd, presentFiles)) {
+                    return false;
+                }
+            }
+            if (!genotypes.isEmpty()) {
+                boolean anyMatch = false;
+                boolean allMatch = true;
+                for (Map.Entry<Integer, Map<String, List<String>>> studyEntry : genotypes.entrySet()) {
+                    for (Map.Entry<String, List<String>> entry : studyEntry.getValue().entrySet()) {
+                        String gt = getGenotype(studyEntry.getKey(), entry.getKey(), group);
+                        boolean match = false;
+                        for (String filter : entry.getValue()) {
+                            if (isNegated(filter)) {
+                                match = true;
+                                if (removeNegation(filter).equals(gt)) {
+                                    match = false;
+                                    break;
+                                }
+                            } else if (filter.equals(gt)) {
+                                match = true;
+                                break;
+                            }
+                        }
+                        anyMatch |= match;
+                        allMatch &= match;
+                    }
+                }
+                if (genotypesAnd ? !allMatch : !anyMatch) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Read the genotype of a sample from the first file of the group containing the sample.
+         *
+         * @return Stored genotype, or the default genotype if the sample is not in any file of the group
+         */
+        private String getGenotype(int studyId, String sample, List<Pair<FileScan, Variant>> group) {
+            for (Pair<FileScan, Variant> pair : group) {
+                if (pair.getKey().studyId == studyId) {
+                    StudyEntry study = pair.getValue().getStudies().get(0);
+                    Integer position = study.getSamplesPosition().get(sample);
+                    if (position != null) {
+                        Integer gtPosition = study.getFormatPositions().get(VCFConstants.GENOTYPE_KEY);
+                        return gtPosition == null ? GenotypeClass.NA_GT_VALUE : study.getSamplesData().get(position).get(gtPosition);
+                    }
+                }
+            }
+            return DEFAULT_GENOTYPE;
+        }
+
+        private Variant buildVariant(Variant first, List<Pair<FileScan, Variant>> group) {
+            Variant variant = new Variant(first.getChromosome(), first.getStart(), first.getEnd(), first.getReference(),
+                    first.getAlternate());
+            variant.setNames(first.getNames());
+            for (Integer studyId : fields.getStudies()) {
+                List<Pair<FileScan, Variant>> studyGroup = new ArrayList<>(group.size());
+                for (Pair<FileScan, Variant> pair : group) {
+                    if (pair.getKey().studyId == studyId) {
+                        studyGroup.add(pair);
+                    }
+                }
+                if (studyGroup.isEmpty()) {
+                    // Variant not in this study
+                    continue;
+                }
+                StudyEntry firstStudy = studyGroup.get(0).getValue().getStudies().get(0);
+                List<String> formats = includeFormats.get(studyId);
+                StudyEntry studyEntry = new StudyEntry(fields.getStudyMetadatas().get(studyId).getName(),
+                        firstStudy.getSecondaryAlternates(), formats);
+
+                for (String sample : includeSamples.get(studyId)) {
+                    List<String> sampleData = new ArrayList<>(formats.size());
+                    StudyEntry storedStudy = null;
+                    List<String> storedData = null;
+                    for (Pair<FileScan, Variant> pair : studyGroup) {
+                        StudyEntry study = pair.getValue().getStudies().get(0);
+                        Integer position = study.getSamplesPosition().get(sample);
+                        if (position != null) {
+                            storedStudy = study;
+                            storedData = study.getSamplesData().get(position);
+                            break;
+                        }
+                    }
+                    for (String format : formats) {
+                        Integer position = storedStudy == null ? null : storedStudy.getFormatPositions().get(format);
+                        if (position != null && position < storedData.size()) {
+                            sampleData.add(storedData.get(position));
+                        } else if (storedStudy == null && format.equals(VCFConstants.GENOTYPE_KEY)) {
+                            sampleData.add(DEFAULT_GENOTYPE);
+                        } else {
+                            sampleData.add(MISSING_VALUE);
+                        }
+                    }
+                    studyEntry.addSampleData(sample, sampleData);
+                }
+
+                Map<Integer, String> files = includeFiles.get(studyId);
+                List<FileEntry> fileEntries = new ArrayList<>(studyGroup.size());
+                for (Pair<FileScan, Variant> pair : studyGroup) {
+                    String fileName = files.get(pair.getKey().fileId);
+                    if (fileName != null) {
+                        FileEntry fileEntry = pair.getValue().getStudies().get(0).getFiles().get(0);
+                        fileEntries.add(new FileEntry(fileName, fileEntry.getCall(), fileEntry.getAttributes()));
+                    }
+                }
+                studyEntry.setFiles(fileEntries);
+                variant.addStudyEntry(studyEntry);
+            }
+            return variant;
+        }
+    }
+
+    private static final class PeekingVariantIterator implements Comparable<PeekingVariantIterator> {
+        private final FileScan scan;
+        private final Iterator<Variant> iterator;
+        private Variant next;
+
+        private PeekingVariantIterator(FileScan scan, Iterator<Variant> iterator) {
+            this.scan = scan;
+            this.iterator = iterator;
+            next = iterator.next();
+        }
+
+        Variant peek() {
+            return next;
+        }
+
+        boolean hasNext() {
+            return next != null;
+        }
+
+        Variant next() {
+            Variant variant = next;
+            next = iterator.hasNext() ? iterator.next() : null;
+            return variant;
+        }
+
+        @Override
+        public int compareTo(PeekingVariantIterator o) {
+            return LocalVariantStore.VARIANT_COMPARATOR.compare(next, o.next);
+        }
+    }
+
+    @Override
+    public DataResult getFrequency(Query query, Region region, int regionIntervalSize) {
+        throw new UnsupportedOperationException("Unimplemented");
+    }
+
+    @Override
+    public DataResult rank(Query query, String field, int numResults, boolean asc) {
+        throw new UnsupportedOperationException("Unimplemented");
+    }
+
+    @Override
+    public DataResult groupBy(Query query, String field, QueryOptions options) {
+        throw new UnsupportedOperationException("Unimplemented");
+    }
+
+    @Override
+    public DataResult groupBy(Query query, List<String> fields, QueryOptions options) {
+        throw new UnsupportedOperationException("Unimplemented");
+    }
+
+    @Override
+    public DataResult updateStats(List<VariantStatsWrapper> variantStatsWrappers, String studyName, long timestamp,
+                                  QueryOptions queryOptions) {
+        throw new UnsupportedOperationException("Unable to store variant stats in " + LocalVariantStorageEngine.STORAGE_ENGINE_ID);
+    }
+
+    @Override
+    public DataResult updateStats(List<VariantStatsWrapper> variantStatsWrappers, StudyMetadata studyMetadata, long timestamp,
+                                  QueryOptions options) {
+        throw new UnsupportedOperationException("Unable to store variant stats in " + LocalVariantStorageEngine.STORAGE_ENGINE_ID);
+    }
+
+    @Override
+    public DataResult updateAnnotations(List<VariantAnnotation> variantAnnotations, long timestamp, QueryOptions queryOptions) {
+        throw new UnsupportedOperationException("Unable to store variant annotations in "
+                + LocalVariantStorageEngine.STORAGE_ENGINE_ID);
+    }
+
+    @Override
+    public DataResult updateCustomAnnotations(Query query, String name, AdditionalAttribute attribute, long timeStamp,
+                                              QueryOptions options) {
+        throw new UnsupportedOperationException("Unable to store variant annotations in "
+                + LocalVariantStorageEngine.STORAGE_ENGINE_ID);
+    }
+
+    @Override
+    public VariantStorageMetadataManager getMetadataManager() {
+        return metadataManager;
+    }
+
+    @Override
+    public void setVariantStorageMetadataManager(VariantStorageMetadataManager variantStorageMetadataManager) {
+        this.metadataManager = variantStorageMetadataManager;
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (LocalVariantStore store : stores.values()) {
+            store.close();
+        }
+        stores.clear();
+    }
+}
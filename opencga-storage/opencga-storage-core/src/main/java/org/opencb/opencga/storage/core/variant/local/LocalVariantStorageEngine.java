@@ -0,0 +1,245 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.core.variant.local;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.opencb.commons.datastore.core.ObjectMap;
+import org.opencb.opencga.core.common.UriUtils;
+import org.opencb.opencga.storage.core.config.StorageConfiguration;
+import org.opencb.opencga.storage.core.exceptions.StorageEngineException;
+import org.opencb.opencga.storage.core.io.managers.IOConnector;
+import org.opencb.opencga.storage.core.io.managers.LocalIOConnector;
+import org.opencb.opencga.storage.core.metadata.VariantStorageMetadataManager;
+import org.opencb.opencga.storage.core.metadata.models.StudyMetadata;
+import org.opencb.opencga.storage.core.metadata.models.TaskMetadata;
+import org.opencb.opencga.storage.core.variant.VariantStorageEngine;
+import org.opencb.opencga.storage.core.variant.local.metadata.LocalVariantStorageMetadataDBAdaptorFactory;
+import org.opencb.opencga.storage.core.variant.score.VariantScoreFormatDescriptor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.opencb.opencga.storage.core.variant.VariantStorageOptions.RESUME;
+
+/**
+ * Variant storage engine using the local file system, without any external database.
+ *
+ * Each indexed file is stored as a set of sorted, block compressed chunk files with a sparse region index,
+ * and the metadata as JSON files:
+ * <pre>
+ *   {storage.local.directory}/{dbName}/
+ *     metadata/
+ *     variants/{studyId}/{fileId}/
+ * </pre>
+ *
+ * Only the query filters listed at {@link LocalVariantDBAdaptor#SUPPORTED_QUERY_PARAMS} are supported.
+ * Annotations, statistics and variant scores can not be stored.
+ */
+public class LocalVariantStorageEngine extends VariantStorageEngine {
+
+    /*
+     * This field defaultValue must be the same that the one at storage-configuration.yml
+     */
+    public static final String STORAGE_ENGINE_ID = "local";
+
+    private final AtomicReference<LocalVariantDBAdaptor> dbAdaptor = new AtomicReference<>();
+    private VariantStorageMetadataManager metadataManager;
+    private Logger logger = LoggerFactory.getLogger(LocalVariantStorageEngine.class);
+
+    public LocalVariantStorageEngine() {
+        super();
+    }
+
+    public LocalVariantStorageEngine(StorageConfiguration configuration) {
+        super(configuration);
+    }
+
+    @Override
+    public String getStorageEngineId() {
+        return STORAGE_ENGINE_ID;
+    }
+
+    @Override
+    public void testConnection() throws StorageEngineException {
+        Path directory = getDirectory().getParent();
+        if (!Files.isDirectory(directory) || !Files.isWritable(directory)) {
+            logger.error("Directory '{}' not found or not writable", directory);
+            throw new StorageEngineException("Local storage directory test failed");
+        }
+    }
+
+    @Override
+    public LocalVariantStoragePipeline newStoragePipeline(boolean connected) throws StorageEngineException {
+        return new LocalVariantStoragePipeline(configuration, STORAGE_ENGINE_ID, getDBAdaptor(), ioConnectorProvider, getOptions());
+    }
+
+    @Override
+    public LocalVariantDBAdaptor getDBAdaptor() throws StorageEngineException {
+        // Lazy initialization of dbAdaptor
+        if (dbAdaptor.get() == null) {
+            synchronized (dbAdaptor) {
+                if (dbAdaptor.get() == null) {
+                    dbAdaptor.set(new LocalVariantDBAdaptor(getDirectory().resolve("variants"), getMetadataManager()));
+                }
+            }
+        }
+        return dbAdaptor.get();
+    }
+
+    @Override
+    public synchronized VariantStorageMetadataManager getMetadataManager() throws StorageEngineException {
+        if (metadataManager == null) {
+            metadataManager = new VariantStorageMetadataManager(
+                    new LocalVariantStorageMetadataDBAdaptorFactory(getDirectory().resolve("metadata")), getOptions());
+        }
+        return metadataManager;
+    }
+
+    @Override
+    public void removeFiles(String study, List<String> files) throws StorageEngineException {
+
+        TaskMetadata task = preRemoveFiles(study, files);
+        List<Integer> fileIds = task.getFileIds();
+
+        VariantStorageMetadataManager metadataManager = getMetadataManager();
+        int studyId = metadataManager.getStudyId(study);
+
+        Thread hook = metadataManager.buildShutdownHook(REMOVE_OPERATION_NAME, studyId, task.getId());
+        try {
+            Runtime.getRuntime().addShutdownHook(hook);
+            LocalVariantDBAdaptor dbAdaptor = getDBAdaptor();
+            dbAdaptor.closeStores(studyId, fileIds);
+            for (Integer fileId : fileIds) {
+                FileUtils.deleteDirectory(dbAdaptor.getFileDirectory(studyId, fileId).toFile());
+                metadataManager.removeVariantFileMetadata(studyId, fileId);
+            }
+            postRemoveFiles(study, fileIds, task.getId(), false);
+        } catch (IOException e) {
+            postRemoveFiles(study, fileIds, task.getId(), true);
+            throw new StorageEngineException("Error removing files " + files + " from study " + study, e);
+        } catch (Exception e) {
+            postRemoveFiles(study, fileIds, task.getId(), true);
+            throw e;
+        } finally {
+            Runtime.getRuntime().removeShutdownHook(hook);
+        }
+    }
+
+    @Override
+    public void removeStudy(String studyName) throws StorageEngineException {
+        VariantStorageMetadataManager metadataManager = getMetadataManager();
+        AtomicReference<TaskMetadata> taskMetadata = new AtomicReference<>();
+        StudyMetadata studyMetadata = metadataManager.updateStudyMetadata(studyName, sm -> {
+            boolean resume = getOptions().getBoolean(RESUME.key(), RESUME.defaultValue());
+            taskMetadata.set(metadataManager.addRunningTask(sm.getId(),
+                    REMOVE_OPERATION_NAME,
+                    Collections.emptyList(),
+                    resume,
+                    TaskMetadata.Type.REMOVE));
+            return sm;
+        });
+        int studyId = studyMetadata.getId();
+
+        int taskId = taskMetadata.get().getId();
+        Thread hook = metadataManager.buildShutdownHook(REMOVE_OPERATION_NAME, studyId, taskId);
+        try {
+            Runtime.getRuntime().addShutdownHook(hook);
+            LinkedHashSet<Integer> indexedFiles = metadataManager.getIndexedFiles(studyId);
+            LocalVariantDBAdaptor dbAdaptor = getDBAdaptor();
+            dbAdaptor.closeStores(studyId, indexedFiles);
+            FileUtils.deleteDirectory(dbAdaptor.getStudyDirectory(studyId).toFile());
+
+            for (Integer fileId : indexedFiles) {
+                metadataManager.removeVariantFileMetadata(studyId, fileId);
+            }
+
+            metadataManager.removeIndexedFiles(studyId, indexedFiles);
+
+            metadataManager.setStatus(studyId, taskId, TaskMetadata.Status.READY);
+        } catch (IOException e) {
+            metadataManager.setStatus(studyId, taskId, TaskMetadata.Status.ERROR);
+            throw new StorageEngineException("Error removing study " + studyName, e);
+        } catch (Exception e) {
+            metadataManager.setStatus(studyId, taskId, TaskMetadata.Status.ERROR);
+            throw e;
+        } finally {
+            Runtime.getRuntime().removeShutdownHook(hook);
+        }
+    }
+
+    @Override
+    public void loadVariantScore(URI scoreFile, String study, String scoreName, String cohort1, String cohort2,
+                                 VariantScoreFormatDescriptor descriptor, ObjectMap options) {
+        throw new UnsupportedOperationException("Unable to load VariantScore in " + getStorageEngineId());
+    }
+
+    @Override
+    public void deleteVariantScore(String study, String scoreName, ObjectMap options) throws StorageEngineException {
+        throw new UnsupportedOperationException("Unable to remove VariantScore in " + getStorageEngineId());
+    }
+
+    /**
+     * Directory of this database, from the {@link LocalVariantStorageOptions#DIRECTORY} option.
+     *
+     * @return Path to the database directory
+     * @throws StorageEngineException if the directory is missing or is not in the local file system
+     */
+    protected Path getDirectory() throws StorageEngineException {
+        String directory = getOptions().getString(LocalVariantStorageOptions.DIRECTORY.key(),
+                LocalVariantStorageOptions.DIRECTORY.defaultValue());
+        if (StringUtils.isEmpty(directory)) {
+            throw new StorageEngineException("Missing directory for the local variant storage engine. "
+                    + "Use " + LocalVariantStorageOptions.DIRECTORY.key());
+        }
+        try {
+            URI uri = UriUtils.createUri(directory);
+            IOConnector ioConnector = ioConnectorProvider.get(uri);
+            if (!(ioConnector instanceof LocalIOConnector)) {
+                throw new StorageEngineException("Unsupported directory " + uri + " for the local variant storage engine. "
+                        + "Only local file systems are supported");
+            }
+            return Paths.get(uri).resolve(dbName);
+        } catch (URISyntaxException | IOException e) {
+            throw new StorageEngineException("Unsupported directory " + directory + " for the local variant storage engine", e);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        super.close();
+        if (dbAdaptor.get() != null) {
+            dbAdaptor.get().close();
+            dbAdaptor.set(null);
+        }
+        if (metadataManager != null) {
+            metadataManager.close();
+            metadataManager = null;
+        }
+    }
+
+}
@@ -0,0 +1,29 @@
+package org.opencb.opencga.storage.core.variant.local;
+
+import org.opencb.opencga.storage.core.config.ConfigurationOption;
+import org.opencb.opencga.storage.core.variant.local.store.LocalVariantStoreWriter;
+
+public enum LocalVariantStorageOptions implements ConfigurationOption {
+    DIRECTORY("storage.local.directory", ""),                      // Root directory of the local storage. Required.
+    BLOCK_SIZE("storage.local.blockSize", LocalVariantStoreWriter.DEFAULT_BLOCK_SIZE),
+    MAX_CHUNK_SIZE("storage.local.maxChunkSize", LocalVariantStoreWriter.DEFAULT_MAX_CHUNK_SIZE);
+
+    private final String key;
+    private final Object value;
+
+    LocalVariantStorageOptions(String key, Object value) {
+        this.key = key;
+        this.value = value;
+    }
+
+    @Override
+    public String key() {
+        return key;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T defaultValue() {
+        return (T) value;
+    }
+}
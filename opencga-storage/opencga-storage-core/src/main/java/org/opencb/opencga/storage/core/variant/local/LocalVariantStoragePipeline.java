@@ -0,0 +1,226 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.core.variant.local;
+
+import org.apache.commons.io.FileUtils;
+import org.opencb.biodata.models.variant.StudyEntry;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.biodata.models.variant.VariantFileMetadata;
+import org.opencb.biodata.models.variant.metadata.VariantStudyMetadata;
+import org.opencb.biodata.tools.variant.VariantDeduplicationTask;
+import org.opencb.commons.datastore.core.ObjectMap;
+import org.opencb.commons.io.DataReader;
+import org.opencb.commons.run.ParallelTaskRunner;
+import org.opencb.commons.run.Task;
+import org.opencb.opencga.storage.core.config.StorageConfiguration;
+import org.opencb.opencga.storage.core.exceptions.StorageEngineException;
+import org.opencb.opencga.storage.core.io.managers.IOConnectorProvider;
+import org.opencb.opencga.storage.core.metadata.models.StudyMetadata;
+import org.opencb.opencga.storage.core.metadata.models.TaskMetadata;
+import org.opencb.opencga.storage.core.variant.VariantStoragePipeline;
+import org.opencb.opencga.storage.core.variant.local.store.LocalVariantStoreWriter;
+import org.opencb.opencga.storage.core.variant.transform.DiscardDuplicatedVariantsResolver;
+import org.opencb.opencga.storage.core.variant.transform.RemapVariantIdsTask;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+import static org.opencb.opencga.storage.core.variant.VariantStorageOptions.*;
+
+/**
+ * Loads each file into its own {@link org.opencb.opencga.storage.core.variant.local.store.LocalVariantStore}.
+ *
+ * The variants are written into a temporary directory, which replaces the directory of the file once the load finishes,
+ * so a failed or interrupted load never leaves a partial store behind.
+ */
+public class LocalVariantStoragePipeline extends VariantStoragePipeline {
+
+    private static final String LOAD_OPERATION_NAME = "load";
+
+    private final LocalVariantDBAdaptor dbAdaptor;
+    private final ObjectMap loadStats = new ObjectMap();
+    private final Logger logger = LoggerFactory.getLogger(LocalVariantStoragePipeline.class);
+
+    public LocalVariantStoragePipeline(StorageConfiguration configuration, String storageEngineId, LocalVariantDBAdaptor dbAdaptor,
+                                       IOConnectorProvider ioConnectorProvider, ObjectMap options) {
+        super(configuration, storageEngineId, dbAdaptor, ioConnectorProvider, options);
+        this.dbAdaptor = dbAdaptor;
+    }
+
+    @Override
+    protected void securePreLoad(StudyMetadata studyMetadata, VariantFileMetadata source) throws StorageEngineException {
+        super.securePreLoad(studyMetadata, source);
+
+        List<Integer> fileIds = Collections.singletonList(getFileId());
+        boolean resume = options.getBoolean(RESUME.key(), RESUME.defaultValue());
+        getMetadataManager().addRunningTask(getStudyId(), LOAD_OPERATION_NAME, fileIds, resume, TaskMetadata.Type.LOAD);
+    }
+
+    @Override
+    public URI load(URI inputUri) throws IOException, StorageEngineException {
+        int fileId = getFileId();
+        int studyId = getStudyId();
+        List<Integer> fileIds = Collections.singletonList(fileId);
+
+        VariantFileMetadata fileMetadata = readVariantFileMetadata(inputUri);
+        VariantStudyMetadata metadata = fileMetadata.toVariantStudyMetadata(String.valueOf(studyId));
+        int batchSize = options.getInt(LOAD_BATCH_SIZE.key(), LOAD_BATCH_SIZE.defaultValue());
+        int blockSize = options.getInt(LocalVariantStorageOptions.BLOCK_SIZE.key(), LocalVariantStorageOptions.BLOCK_SIZE.defaultValue());
+        long maxChunkSize = options.getLong(LocalVariantStorageOptions.MAX_CHUNK_SIZE.key(),
+                LocalVariantStorageOptions.MAX_CHUNK_SIZE.defaultValue());
+        boolean stdin = options.getBoolean(STDIN.key(), STDIN.defaultValue());
+
+        Path fileDirectory = dbAdaptor.getFileDirectory(studyId, fileId);
+        Path tmpDirectory = fileDirectory.resolveSibling("." + fileId + ".tmp");
+        if (Files.exists(tmpDirectory)) {
+            logger.info("Delete incomplete load from {}", tmpDirectory);
+            FileUtils.deleteDirectory(tmpDirectory.toFile());
+        }
+
+        logger.info("Loading variants...");
+        long start = System.currentTimeMillis();
+        try {
+            //Dedup task
+            VariantDeduplicationTask duplicatedVariantsDetector =
+                    new VariantDeduplicationTask(new DiscardDuplicatedVariantsResolver(fileId));
+
+            // File reader
+            DataReader<Variant> variantReader = variantReaderUtils.getVariantReader(inputUri, metadata, stdin)
+                    .then(duplicatedVariantsDetector)
+                    .then(new RemapVariantIdsTask(studyId, fileId));
+
+            // Writer
+            LocalVariantStoreWriter writer = new LocalVariantStoreWriter(tmpDirectory, blockSize, maxChunkSize);
+
+            // Runner. Keep the order of the input file, so the writer can produce sorted chunks
+            ParallelTaskRunner.Config config = ParallelTaskRunner.Config.builder()
+                    .setReadQueuePutTimeout(20 * 60)
+                    .setNumTasks(1)
+                    .setBatchSize(batchSize)
+                    .setSorted(true)
+                    .setAbortOnFail(true).build();
+            ParallelTaskRunner<Variant, Variant> ptr = new ParallelTaskRunner<>(variantReader,
+                    new FormatFieldsTask(LocalVariantDBAdaptor.getFormats(getStudyMetadata())), writer, config);
+
+            // Run
+            Thread hook = getMetadataManager().buildShutdownHook(LOAD_OPERATION_NAME, studyId, fileId);
+            try {
+                Runtime.getRuntime().addShutdownHook(hook);
+                ptr.run();
+
+                // Close any store opened before replacing the directory
+                dbAdaptor.closeStores(studyId, fileIds);
+                if (Files.exists(fileDirectory)) {
+                    FileUtils.deleteDirectory(fileDirectory.toFile());
+                }
+                Files.move(tmpDirectory, fileDirectory, StandardCopyOption.ATOMIC_MOVE);
+
+                fileMetadata.setId(String.valueOf(fileId));
+                dbAdaptor.getMetadataManager().updateVariantFileMetadata(String.valueOf(studyId), fileMetadata);
+                getMetadataManager().atomicSetStatus(studyId, TaskMetadata.Status.DONE, LOAD_OPERATION_NAME, fileIds);
+            } finally {
+                Runtime.getRuntime().removeShutdownHook(hook);
+            }
+
+            loadStats.append("numVariants", writer.getNumVariants());
+            loadStats.append("duplicatedVariants", duplicatedVariantsDetector.getDiscardedVariants());
+        } catch (ExecutionException | IOException e) {
+            try {
+                getMetadataManager().atomicSetStatus(studyId, TaskMetadata.Status.ERROR, LOAD_OPERATION_NAME, fileIds);
+            } catch (Exception e2) {
+                // Do not propagate this exception!
+                logger.error("Error reporting load error!", e2);
+            }
+
+            throw new StorageEngineException("Error loading file " + inputUri, e);
+        }
+        long end = System.currentTimeMillis();
+        logger.info("end - start = " + (end - start) / 1000.0 + "s");
+        logger.info("Variants loaded!");
+
+        return fileDirectory.toUri();
+    }
+
+    @Override
+    protected void securePostLoad(List<Integer> fileIds, StudyMetadata studyMetadata) throws StorageEngineException {
+        super.securePostLoad(fileIds, studyMetadata);
+        TaskMetadata.Status status = dbAdaptor.getMetadataManager()
+                .setStatus(studyMetadata.getId(), LOAD_OPERATION_NAME, fileIds, TaskMetadata.Status.READY);
+        if (status != TaskMetadata.Status.DONE) {
+            logger.warn("Unexpected status " + status);
+        }
+    }
+
+    @Override
+    public ObjectMap getLoadStats() {
+        return loadStats;
+    }
+
+    @Override
+    protected void checkLoadedVariants(int fileId, StudyMetadata studyMetadata) throws StorageEngineException {
+        Path fileDirectory = dbAdaptor.getFileDirectory(studyMetadata.getId(), fileId);
+        if (!Files.isDirectory(fileDirectory)) {
+            throw new StorageEngineException("Variants from file " + fileId + " not found at " + fileDirectory);
+        }
+    }
+
+    /**
+     * Keep only the format fields to be stored for the study. Missing fields are filled with ".".
+     */
+    private static class FormatFieldsTask implements Task<Variant, Variant> {
+        private final List<String> formats;
+
+        FormatFieldsTask(List<String> formats) {
+            this.formats = formats;
+        }
+
+        @Override
+        public List<Variant> apply(List<Variant> batch) {
+            for (Variant variant : batch) {
+                for (StudyEntry study : variant.getStudies()) {
+                    if (study.getFormat().equals(formats)) {
+                        continue;
+                    }
+                    int[] positions = new int[formats.size()];
+                    for (int i = 0; i < formats.size(); i++) {
+                        positions[i] = study.getFormatPositions().getOrDefault(formats.get(i), -1);
+                    }
+                    List<List<String>> samplesData = new ArrayList<>(study.getSamplesData().size());
+                    for (List<String> sampleData : study.getSamplesData()) {
+                        List<String> data = new ArrayList<>(positions.length);
+                        for (int position : positions) {
+                            data.add(position >= 0 && position < sampleData.size() ? sampleData.get(position) : ".");
+                        }
+                        samplesData.add(data);
+                    }
+                    study.setFormat(formats);
+                    study.setSamplesData(samplesData);
+                }
+            }
+            return batch;
+        }
+    }
+}
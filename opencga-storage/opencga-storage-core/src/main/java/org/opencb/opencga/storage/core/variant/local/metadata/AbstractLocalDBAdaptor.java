@@ -0,0 +1,243 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.core.variant.local.metadata;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Iterators;
+import org.apache.avro.generic.GenericRecord;
+import org.opencb.opencga.storage.core.exceptions.StorageEngineException;
+import org.opencb.opencga.storage.core.metadata.models.Locked;
+import org.opencb.opencga.storage.core.variant.io.json.mixin.GenericRecordAvroJsonMixin;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Base class of the metadata adaptors of the local variant storage engine.
+ *
+ * Every metadata element is stored as a JSON file, replaced atomically on each update. Elements are identified by
+ * their numerical id. The name to id indexes are stored as one small file per name, so concurrent updates of different
+ * elements never rewrite a shared file.
+ *
+ * <pre>
+ *   metadata/
+ *     project.json
+ *     counters/
+ *     locks/
+ *     studies_index/
+ *     studies/{studyId}/
+ *       study.json
+ *       study_configuration.json
+ *       files/ files_index/ variant_files/
+ *       samples/ samples_index/
+ *       cohorts/ cohorts_index/
+ *       tasks/
+ * </pre>
+ */
+public abstract class AbstractLocalDBAdaptor {
+
+    protected static Logger logger = LoggerFactory.getLogger(AbstractLocalDBAdaptor.class);
+
+    protected static final String JSON_EXTENSION = ".json";
+    private static final String INDEX_EXTENSION = ".id";
+
+    protected final Path directory;
+    protected final ObjectMapper objectMapper;
+    private final LocalLock lock;
+
+    public AbstractLocalDBAdaptor(Path directory) {
+        this.directory = Objects.requireNonNull(directory);
+        this.objectMapper = new ObjectMapper().addMixIn(GenericRecord.class, GenericRecordAvroJsonMixin.class);
+        objectMapper.configure(MapperFeature.REQUIRE_SETTERS_FOR_GETTERS, true);
+        objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        lock = new LocalLock();
+    }
+
+    protected Path getStudiesIndexDirectory() {
+        return directory.resolve("studies_index");
+    }
+
+    protected Path getStudyDirectory(int studyId) {
+        return directory.resolve("studies").resolve(String.valueOf(studyId));
+    }
+
+    protected Path getStudyDirectory(int studyId, String elements) {
+        return getStudyDirectory(studyId).resolve(elements);
+    }
+
+    protected static Path getJsonPath(Path elementsDirectory, int id) {
+        return elementsDirectory.resolve(id + JSON_EXTENSION);
+    }
+
+    protected <T> T readValue(Path path, Class<T> clazz) {
+        try {
+            return objectMapper.readValue(Files.readAllBytes(path), clazz);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error reading " + path, e);
+        }
+    }
+
+    protected void putValue(Path path, Object value) {
+        try {
+            writeBytes(path, objectMapper.writeValueAsBytes(value));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error writing " + path, e);
+        }
+    }
+
+    protected void writeBytes(Path path, byte[] bytes) throws IOException {
+        Files.createDirectories(path.getParent());
+        Path tmp = Files.createTempFile(path.getParent(), "." + path.getFileName(), ".tmp");
+        try {
+            Files.write(tmp, bytes);
+            Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    protected void deleteValue(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error deleting " + path, e);
+        }
+    }
+
+    /**
+     * Iterate over all the elements from a directory, sorted by id.
+     *
+     * @param elementsDirectory Directory with one JSON file per element
+     * @param clazz             Class of the elements
+     * @param reversed          Iterate in descending order
+     * @param <T>               Type of the elements
+     * @return                  Iterator
+     */
+    protected <T> Iterator<T> iterator(Path elementsDirectory, Class<T> clazz, boolean reversed) {
+        List<Integer> ids = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(elementsDirectory, "*" + JSON_EXTENSION)) {
+            for (Path path : stream) {
+                String fileName = path.getFileName().toString();
+                ids.add(Integer.valueOf(fileName.substring(0, fileName.length() - JSON_EXTENSION.length())));
+            }
+        } catch (NoSuchFileException e) {
+            return Collections.emptyIterator();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error listing " + elementsDirectory, e);
+        }
+        if (reversed) {
+            ids.sort(Comparator.reverseOrder());
+        } else {
+            Collections.sort(ids);
+        }
+        // Skip elements removed while iterating
+        return Iterators.filter(Iterators.transform(ids.iterator(), id -> readValue(getJsonPath(elementsDirectory, id), clazz)),
+                Objects::nonNull);
+    }
+
+    protected Integer readIndex(Path indexDirectory, String name) {
+        try {
+            return Integer.valueOf(new String(Files.readAllBytes(getIndexPath(indexDirectory, name)), StandardCharsets.UTF_8));
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error reading index of " + name, e);
+        }
+    }
+
+    protected Map<String, Integer> readIndex(Path indexDirectory) {
+        Map<String, Integer> index = new HashMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(indexDirectory, "*" + INDEX_EXTENSION)) {
+            for (Path path : stream) {
+                String fileName = path.getFileName().toString();
+                String name = URLDecoder.decode(fileName.substring(0, fileName.length() - INDEX_EXTENSION.length()),
+                        StandardCharsets.UTF_8.name());
+                Integer id = readIndex(indexDirectory, name);
+                if (id != null) {
+                    index.put(name, id);
+                }
+            }
+        } catch (NoSuchFileException e) {
+            return index;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error listing " + indexDirectory, e);
+        }
+        return index;
+    }
+
+    protected void putIndex(Path indexDirectory, String name, int id) {
+        if (Objects.equals(readIndex(indexDirectory, name), id)) {
+            //Nothing to update
+            return;
+        }
+        try {
+            writeBytes(getIndexPath(indexDirectory, name), String.valueOf(id).getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error writing index of " + name, e);
+        }
+    }
+
+    protected void deleteIndex(Path indexDirectory, String name) {
+        deleteValue(getIndexPath(indexDirectory, name));
+    }
+
+    private static Path getIndexPath(Path indexDirectory, String name) {
+        try {
+            return indexDirectory.resolve(URLEncoder.encode(name, StandardCharsets.UTF_8.name()) + INDEX_EXTENSION);
+        } catch (UnsupportedEncodingException e) {
+            // This should never happen
+            throw new IllegalStateException(e);
+        }
+    }
+
+    protected Locked lock(String lockName, long lockDuration, long timeout) throws StorageEngineException {
+        try {
+            return lock.lock(getLockPath(lockName), lockDuration, timeout);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StorageEngineException("Unable to lock " + lockName, e);
+        } catch (TimeoutException e) {
+            throw new StorageEngineException("Unable to lock " + lockName, e);
+        }
+    }
+
+    protected Locked lock(int studyId, String elements, int id, long lockDuration, long timeout) throws StorageEngineException {
+        return lock("study_" + studyId + "_" + elements + "_" + id, lockDuration, timeout);
+    }
+
+    protected void unLock(String lockName, long token) {
+        lock.unlock(getLockPath(lockName), token);
+    }
+
+    private Path getLockPath(String lockName) {
+        return directory.resolve("locks").resolve(lockName + ".lock");
+    }
+
+}
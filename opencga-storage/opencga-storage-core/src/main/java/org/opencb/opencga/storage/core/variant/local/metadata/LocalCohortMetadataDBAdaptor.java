@@ -0,0 +1,69 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.opencb.opencga.storage.core.variant.local.metadata;
+
+import org.opencb.opencga.storage.core.exceptions.StorageEngineException;
+import org.opencb.opencga.storage.core.metadata.adaptors.CohortMetadataDBAdaptor;
+import org.opencb.opencga.storage.core.metadata.models.CohortMetadata;
+import org.opencb.opencga.storage.core.metadata.models.Locked;
+
+import java.nio.file.Path;
+import java.util.Iterator;
+
+/**
+ * Cohort metadata of the local variant storage engine.
+ */
+public class LocalCohortMetadataDBAdaptor extends AbstractLocalDBAdaptor implements CohortMetadataDBAdaptor {
+
+    private static final String COHORTS = "cohorts";
+
+    public LocalCohortMetadataDBAdaptor(Path directory) {
+        super(directory);
+    }
+
+    @Override
+    public CohortMetadata getCohortMetadata(int studyId, int cohortId, Long timeStamp) {
+        return readValue(getJsonPath(getStudyDirectory(studyId, COHORTS), cohortId), CohortMetadata.class);
+    }
+
+    @Override
+    public void updateCohortMetadata(int studyId, CohortMetadata cohort, Long timeStamp) {
+        putIndex(getStudyDirectory(studyId, COHORTS + "_index"), cohort.getName(), cohort.getId());
+        putValue(getJsonPath(getStudyDirectory(studyId, COHORTS), cohort.getId()), cohort);
+    }
+
+    @Override
+    public Integer getCohortId(int studyId, String cohortName) {
+        return readIndex(getStudyDirectory(studyId, COHORTS + "_index"), cohortName);
+    }
+
+    @Override
+    public Iterator<CohortMetadata> cohortIterator(int studyId) {
+        return iterator(getStudyDirectory(studyId, COHORTS), CohortMetadata.class, false);
+    }
+
+    @Override
+    public void removeCohort(int studyId, int cohortId) {
+        CohortMetadata cohort = getCohortMetadata(studyId, cohortId, null);
+        deleteIndex(getStudyDirectory(studyId, COHORTS + "_index"), cohort.getName());
+        deleteValue(getJsonPath(getStudyDirectory(studyId, COHORTS), cohort.getId()));
+    }
+
+    @Override
+    public Locked lock(int studyId, int id, long lockDuration, long timeout) throws StorageEngineException {
+        return lock(studyId, COHORTS, id, lockDuration, timeout);
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.opencb.opencga.storage.core.variant.local.metadata;
+
+import com.google.common.collect.Iterators;
+import org.opencb.biodata.models.variant.VariantFileMetadata;
+import org.opencb.commons.datastore.core.DataResult;
+import org.opencb.commons.datastore.core.Query;
+import org.opencb.commons.datastore.core.QueryOptions;
+import org.opencb.opencga.storage.core.exceptions.StorageEngineException;
+import org.opencb.opencga.storage.core.metadata.adaptors.FileMetadataDBAdaptor;
+import org.opencb.opencga.storage.core.metadata.models.FileMetadata;
+import org.opencb.opencga.storage.core.metadata.models.Locked;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * File metadata of the local variant storage engine.
+ */
+public class LocalFileMetadataDBAdaptor extends AbstractLocalDBAdaptor implements FileMetadataDBAdaptor {
+
+    private static final String FILES = "files";
+    private static final String VARIANT_FILES = "variant_files";
+
+    public LocalFileMetadataDBAdaptor(Path directory) {
+        super(directory);
+    }
+
+    @Override
+    public FileMetadata getFileMetadata(int studyId, int fileId, Long timeStamp) {
+        return readValue(getJsonPath(getStudyDirectory(studyId, FILES), fileId), FileMetadata.class);
+    }
+
+    @Override
+    public Iterator<FileMetadata> fileIterator(int studyId) {
+        return iterator(getStudyDirectory(studyId, FILES), FileMetadata.class, false);
+    }
+
+    @Override
+    public void updateFileMetadata(int studyId, FileMetadata file, Long timeStamp) {
+        putIndex(getStudyDirectory(studyId, FILES + "_index"), file.getName(), file.getId());
+        putValue(getJsonPath(getStudyDirectory(studyId, FILES), file.getId()), file);
+    }
+
+    @Override
+    public Integer getFileId(int studyId, String fileName) {
+        return readIndex(getStudyDirectory(studyId, FILES + "_index"), fileName);
+    }
+
+    @Override
+    public LinkedHashSet<Integer> getIndexedFiles(int studyId) {
+        LinkedHashSet<Integer> indexedFiles = new LinkedHashSet<>();
+        fileIterator(studyId).forEachRemaining(file -> {
+            if (file.isIndexed()) {
+                indexedFiles.add(file.getId());
+            }
+        });
+        return indexedFiles;
+    }
+
+    @Override
+    public DataResult<Long> count(Query query) {
+        long count;
+        try {
+            count = Iterators.size(iterator(query, new QueryOptions()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new DataResult<>(0, Collections.emptyList(), 1, Collections.singletonList(count), 1);
+    }
+
+    @Override
+    public void updateVariantFileMetadata(String studyId, VariantFileMetadata metadata) throws StorageEngineException {
+        Objects.requireNonNull(metadata);
+        int fileId = Integer.valueOf(metadata.getId());
+        checkFileId(fileId);
+        Path path = getJsonPath(getStudyDirectory(Integer.valueOf(studyId), VARIANT_FILES), fileId);
+        try {
+            writeBytes(path, metadata.getImpl().toString().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new StorageEngineException("Unable to update VariantFileMetadata " + metadata, e);
+        }
+    }
+
+    @Override
+    public Iterator<VariantFileMetadata> iterator(Query query, QueryOptions options) throws IOException {
+        List<Integer> studyIds;
+        if (query.containsKey(VariantFileMetadataQueryParam.STUDY_ID.key())) {
+            studyIds = query.getAsIntegerList(VariantFileMetadataQueryParam.STUDY_ID.key());
+        } else {
+            studyIds = new ArrayList<>(readIndex(getStudiesIndexDirectory()).values());
+            Collections.sort(studyIds);
+        }
+        Set<Integer> fileIds = new HashSet<>(query.getAsIntegerList(VariantFileMetadataQueryParam.FILE_ID.key()));
+
+        List<VariantFileMetadata> list = new ArrayList<>();
+        for (Integer studyId : studyIds) {
+            Path variantFilesDirectory = getStudyDirectory(studyId, VARIANT_FILES);
+            if (fileIds.isEmpty()) {
+                iterator(variantFilesDirectory, VariantFileMetadata.class, false).forEachRemaining(list::add);
+            } else {
+                for (Integer fileId : fileIds) {
+                    VariantFileMetadata metadata = readValue(getJsonPath(variantFilesDirectory, fileId), VariantFileMetadata.class);
+                    if (metadata != null) {
+                        list.add(metadata);
+                    }
+                }
+            }
+        }
+        return list.iterator();
+    }
+
+    @Override
+    public void removeVariantFileMetadata(int study, int file) throws IOException {
+        Files.deleteIfExists(getJsonPath(getStudyDirectory(study, VARIANT_FILES), file));
+    }
+
+    @Override
+    public void close() throws IOException {
+    }
+
+    @Override
+    public Locked lock(int studyId, int id, long lockDuration, long timeout) throws StorageEngineException {
+        return lock(studyId, FILES, id, lockDuration, timeout);
+    }
+
+    public static void checkFileId(int fileId) {
+        if (fileId <= 0) {
+            throw new IllegalArgumentException("FileId must be greater than 0. Got " + fileId);
+        }
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.core.variant.local.metadata;
+
+import org.apache.commons.lang3.time.StopWatch;
+import org.opencb.opencga.storage.core.metadata.models.Locked;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeoutException;
+import java.util.function.LongPredicate;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * Concurrent lock using a file in the local file system.
+ *
+ * The lock file contains the expiration time of the current lock, like the lock field used by the MongoDB storage
+ * engine. An empty file, or an expired time, means unlocked.
+ * Every read-modify-write of a lock file is done holding an exclusive {@link FileLock}, so the lock is shared by
+ * all the processes using the same directory.
+ *
+ * The same read-modify-write is used to increment counters atomically.
+ */
+public class LocalLock {
+
+    private static final ExecutorService THREAD_POOL = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "local-lock-keep-alive");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Apply for the lock.
+     *
+     * @param lockFile      File to use as lock
+     * @param lockDuration  Duration in milliseconds of the token. After this time the token is expired.
+     * @param timeout       Max time in milliseconds to wait for the lock
+     *
+     * @return              Lock token
+     *
+     * @throws InterruptedException if any thread has interrupted the current thread.
+     * @throws TimeoutException if the operations takes more than the timeout value.
+     */
+    public Locked lock(Path lockFile, long lockDuration, long timeout) throws InterruptedException, TimeoutException {
+        StopWatch watch = StopWatch.createStarted();
+        long token;
+        boolean locked;
+        do {
+            long now = System.currentTimeMillis();
+            token = now + lockDuration;
+            locked = compareAndSet(lockFile, current -> current < now, token);
+            if (!locked) {
+                Thread.sleep(100);
+                //Check if the lock is still valid
+                if (watch.getTime() > timeout) {
+                    throw new TimeoutException("Unable to get the lock");
+                }
+            }
+        } while (!locked);
+
+        return new Locked(THREAD_POOL, ((int) (lockDuration / 4)), token) {
+            @Override
+            public void unlock0() {
+                LocalLock.this.unlock(lockFile, getToken());
+            }
+
+            @Override
+            public void refresh() {
+                setToken(LocalLock.this.refresh(lockFile, getToken(), lockDuration));
+            }
+        };
+    }
+
+    public long refresh(Path lockFile, long lockToken, long lockDuration) {
+        long token = System.currentTimeMillis() + lockDuration;
+        if (!compareAndSet(lockFile, current -> current == lockToken, token)) {
+            throw new IllegalStateException("Lock token " + lockToken + " not found!");
+        }
+        return token;
+    }
+
+    /**
+     * Releases the lock.
+     *
+     * @param lockFile      File used as lock
+     * @param lockToken     Lock token
+     * @throws IllegalStateException  if the lockToken does not match with the current lockToken
+     */
+    public void unlock(Path lockFile, long lockToken) {
+        if (!compareAndSet(lockFile, current -> current == lockToken, 0)) {
+            throw new IllegalStateException("Lock token " + lockToken + " not found!");
+        }
+    }
+
+    /**
+     * Atomically increments the counter stored in a file.
+     *
+     * @param counterFile   File with the counter
+     * @return              New value of the counter
+     */
+    public static long incrementAndGet(Path counterFile) {
+        return update(counterFile, current -> current + 1);
+    }
+
+    /**
+     * Atomically sets the value of the counter stored in a file.
+     *
+     * @param counterFile   File with the counter
+     * @param value         New value
+     */
+    public static void set(Path counterFile, long value) {
+        update(counterFile, current -> value);
+    }
+
+    /**
+     * Read the value stored in a lock or counter file.
+     *
+     * @param file  File to read
+     * @return      Stored value, or 0 if the file does not exist
+     */
+    public static long get(Path file) {
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        return update(file, current -> current);
+    }
+
+    private static boolean compareAndSet(Path file, LongPredicate expected, long value) {
+        boolean[] updated = {false};
+        update(file, current -> {
+            if (expected.test(current)) {
+                updated[0] = true;
+                return value;
+            } else {
+                return current;
+            }
+        });
+        return updated[0];
+    }
+
+    // FileLocks are held on behalf of the whole JVM, so the threads of this process are serialized with synchronized
+    private static synchronized long update(Path file, LongUnaryOperator function) {
+        try {
+            Files.createDirectories(file.getParent());
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+                 FileLock ignored = channel.lock()) {
+                ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+                long current = 0;
+                if (channel.size() >= Long.BYTES) {
+                    int read = 0;
+                    while (read < Long.BYTES) {
+                        int n = channel.read(buffer, read);
+                        if (n < 0) {
+                            throw new IOException("Unexpected end of file " + file);
+                        }
+                        read += n;
+                    }
+                    buffer.flip();
+                    current = buffer.getLong();
+                }
+                long value = function.applyAsLong(current);
+                if (value != current) {
+                    buffer.clear();
+                    buffer.putLong(value).flip();
+                    channel.truncate(0);
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer, buffer.position());
+                    }
+                    channel.force(false);
+                }
+                return value;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error updating " + file, e);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.core.variant.local.metadata;
+
+import org.opencb.commons.datastore.core.DataResult;
+import org.opencb.opencga.storage.core.exceptions.StorageEngineException;
+import org.opencb.opencga.storage.core.metadata.adaptors.ProjectMetadataAdaptor;
+import org.opencb.opencga.storage.core.metadata.models.Locked;
+import org.opencb.opencga.storage.core.metadata.models.ProjectMetadata;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Project metadata of the local variant storage engine.
+ *
+ * Counters are stored out of the project metadata, one file per counter, and incremented atomically.
+ */
+public class LocalProjectMetadataAdaptor extends AbstractLocalDBAdaptor implements ProjectMetadataAdaptor {
+
+    private static final String PROJECT_LOCK = "project";
+
+    public LocalProjectMetadataAdaptor(Path directory) {
+        super(directory);
+    }
+
+    @Override
+    public Locked lockProject(long lockDuration, long timeout)
+            throws InterruptedException, TimeoutException, StorageEngineException {
+        return lock(PROJECT_LOCK, lockDuration, timeout);
+    }
+
+    @Override
+    public void unLockProject(long lockId) throws StorageEngineException {
+        unLock(PROJECT_LOCK, lockId);
+    }
+
+    @Override
+    public DataResult<ProjectMetadata> getProjectMetadata() {
+        ProjectMetadata projectMetadata = readValue(getProjectPath(), ProjectMetadata.class);
+        if (projectMetadata == null) {
+            return new DataResult<>();
+        } else {
+            projectMetadata.setCounters(readCounters());
+            return new DataResult<>(0, Collections.emptyList(), 1, Collections.singletonList(projectMetadata), 1);
+        }
+    }
+
+    @Override
+    public DataResult updateProjectMetadata(ProjectMetadata projectMetadata, boolean updateCounters) {
+        putValue(getProjectPath(), projectMetadata);
+        if (updateCounters) {
+            for (Map.Entry<String, Integer> entry : projectMetadata.getCounters().entrySet()) {
+                LocalLock.set(getCountersDirectory().resolve(entry.getKey()), entry.getValue());
+            }
+        }
+        return new DataResult();
+    }
+
+    @Override
+    public int generateId(Integer studyId, String idType) throws StorageEngineException {
+        return (int) LocalLock.incrementAndGet(getCounterPath(studyId, idType));
+    }
+
+    @Override
+    public int getCounter(Integer studyId, String idType) throws StorageEngineException {
+        return (int) LocalLock.get(getCounterPath(studyId, idType));
+    }
+
+    private Map<String, Integer> readCounters() {
+        Map<String, Integer> counters = new HashMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(getCountersDirectory())) {
+            for (Path path : stream) {
+                if (!path.getFileName().toString().startsWith(".")) {
+                    counters.put(path.getFileName().toString(), (int) LocalLock.get(path));
+                }
+            }
+        } catch (NoSuchFileException e) {
+            return counters;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return counters;
+    }
+
+    private Path getProjectPath() {
+        return directory.resolve("project" + JSON_EXTENSION);
+    }
+
+    private Path getCountersDirectory() {
+        return directory.resolve("counters");
+    }
+
+    private Path getCounterPath(Integer studyId, String idType) {
+        return getCountersDirectory().resolve(idType + (studyId == null ? "" : ("_" + studyId)));
+    }
+}
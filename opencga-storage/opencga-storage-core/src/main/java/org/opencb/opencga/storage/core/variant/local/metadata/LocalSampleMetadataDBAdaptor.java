@@ -0,0 +1,62 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.opencb.opencga.storage.core.variant.local.metadata;
+
+import org.opencb.opencga.storage.core.exceptions.StorageEngineException;
+import org.opencb.opencga.storage.core.metadata.adaptors.SampleMetadataDBAdaptor;
+import org.opencb.opencga.storage.core.metadata.models.Locked;
+import org.opencb.opencga.storage.core.metadata.models.SampleMetadata;
+
+import java.nio.file.Path;
+import java.util.Iterator;
+
+/**
+ * Sample metadata of the local variant storage engine.
+ */
+public class LocalSampleMetadataDBAdaptor extends AbstractLocalDBAdaptor implements SampleMetadataDBAdaptor {
+
+    private static final String SAMPLES = "samples";
+
+    public LocalSampleMetadataDBAdaptor(Path directory) {
+        super(directory);
+    }
+
+    @Override
+    public SampleMetadata getSampleMetadata(int studyId, int sampleId, Long timeStamp) {
+        return readValue(getJsonPath(getStudyDirectory(studyId, SAMPLES), sampleId), SampleMetadata.class);
+    }
+
+    @Override
+    public void updateSampleMetadata(int studyId, SampleMetadata sample, Long timeStamp) {
+        putIndex(getStudyDirectory(studyId, SAMPLES + "_index"), sample.getName(), sample.getId());
+        putValue(getJsonPath(getStudyDirectory(studyId, SAMPLES), sample.getId()), sample);
+    }
+
+    @Override
+    public Iterator<SampleMetadata> sampleMetadataIterator(int studyId) {
+        return iterator(getStudyDirectory(studyId, SAMPLES), SampleMetadata.class, false);
+    }
+
+    @Override
+    public Integer getSampleId(int studyId, String sampleName) {
+        return readIndex(getStudyDirectory(studyId, SAMPLES + "_index"), sampleName);
+    }
+
+    @Override
+    public Locked lock(int studyId, int id, long lockDuration, long timeout) throws StorageEngineException {
+        return lock(studyId, SAMPLES, id, lockDuration, timeout);
+    }
+}
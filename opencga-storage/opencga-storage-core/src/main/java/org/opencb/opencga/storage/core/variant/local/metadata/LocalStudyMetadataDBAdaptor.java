@@ -0,0 +1,99 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.opencb.opencga.storage.core.variant.local.metadata;
+
+import org.apache.commons.lang3.StringUtils;
+import org.opencb.commons.datastore.core.DataResult;
+import org.opencb.commons.datastore.core.QueryOptions;
+import org.opencb.opencga.storage.core.exceptions.StorageEngineException;
+import org.opencb.opencga.storage.core.metadata.StudyConfiguration;
+import org.opencb.opencga.storage.core.metadata.adaptors.StudyMetadataDBAdaptor;
+import org.opencb.opencga.storage.core.metadata.models.Locked;
+import org.opencb.opencga.storage.core.metadata.models.StudyMetadata;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Study metadata of the local variant storage engine.
+ */
+public class LocalStudyMetadataDBAdaptor extends AbstractLocalDBAdaptor implements StudyMetadataDBAdaptor {
+
+    public LocalStudyMetadataDBAdaptor(Path directory) {
+        super(directory);
+    }
+
+    @Override
+    public Locked lock(int studyId, long lockDuration, long timeout, String lockName) throws StorageEngineException {
+        return lock("study_" + studyId + "_" + (StringUtils.isEmpty(lockName) ? "lock" : lockName), lockDuration, timeout);
+    }
+
+    @Override
+    public DataResult<StudyConfiguration> getStudyConfiguration(String studyName, Long time, QueryOptions options) {
+        Integer studyId = readIndex(getStudiesIndexDirectory(), studyName);
+        if (studyId == null) {
+            return new DataResult<>(0, Collections.emptyList(), 0, Collections.emptyList(), 0);
+        }
+        return getStudyConfiguration(studyId, time, options);
+    }
+
+    @Override
+    public DataResult<StudyConfiguration> getStudyConfiguration(int studyId, Long timeStamp, QueryOptions options) {
+        StudyConfiguration studyConfiguration = readValue(getStudyConfigurationPath(studyId), StudyConfiguration.class);
+        if (studyConfiguration == null) {
+            return new DataResult<>(0, Collections.emptyList(), 0, Collections.emptyList(), 0);
+        } else {
+            return new DataResult<>(0, Collections.emptyList(), 1, Collections.singletonList(studyConfiguration), 1);
+        }
+    }
+
+    @Override
+    public DataResult updateStudyConfiguration(StudyConfiguration studyConfiguration, QueryOptions options) {
+        long startTime = System.currentTimeMillis();
+        logger.info("Update StudyConfiguration {}", studyConfiguration.getName());
+        updateStudyMetadata(new StudyMetadata(studyConfiguration));
+
+        studyConfiguration.getHeaders().clear(); // REMOVE: stored as VariantFileMetadata
+        putValue(getStudyConfigurationPath(studyConfiguration.getId()), studyConfiguration);
+
+        return new DataResult().setTime(((int) (System.currentTimeMillis() - startTime)));
+    }
+
+    @Override
+    public StudyMetadata getStudyMetadata(int id, Long timeStamp) {
+        return readValue(getStudyDirectory(id).resolve("study" + JSON_EXTENSION), StudyMetadata.class);
+    }
+
+    @Override
+    public void updateStudyMetadata(StudyMetadata sm) {
+        if (StringUtils.isEmpty(sm.getName())) {
+            throw new IllegalStateException("Can't save an study with empty StudyName");
+        }
+        sm.setTimeStamp(System.currentTimeMillis());
+        putIndex(getStudiesIndexDirectory(), sm.getName(), sm.getId());
+        putValue(getStudyDirectory(sm.getId()).resolve("study" + JSON_EXTENSION), sm);
+    }
+
+    @Override
+    public Map<String, Integer> getStudies(QueryOptions options) {
+        return readIndex(getStudiesIndexDirectory());
+    }
+
+    private Path getStudyConfigurationPath(int studyId) {
+        return getStudyDirectory(studyId).resolve("study_configuration" + JSON_EXTENSION);
+    }
+}
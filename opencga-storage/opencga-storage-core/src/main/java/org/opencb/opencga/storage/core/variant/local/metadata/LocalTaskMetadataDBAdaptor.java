@@ -0,0 +1,56 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.opencb.opencga.storage.core.variant.local.metadata;
+
+import org.opencb.opencga.storage.core.exceptions.StorageEngineException;
+import org.opencb.opencga.storage.core.metadata.adaptors.TaskMetadataDBAdaptor;
+import org.opencb.opencga.storage.core.metadata.models.Locked;
+import org.opencb.opencga.storage.core.metadata.models.TaskMetadata;
+
+import java.nio.file.Path;
+import java.util.Iterator;
+
+/**
+ * Task metadata of the local variant storage engine.
+ */
+public class LocalTaskMetadataDBAdaptor extends AbstractLocalDBAdaptor implements TaskMetadataDBAdaptor {
+
+    private static final String TASKS = "tasks";
+
+    public LocalTaskMetadataDBAdaptor(Path directory) {
+        super(directory);
+    }
+
+    @Override
+    public TaskMetadata getTask(int studyId, int taskId, Long timeStamp) {
+        return readValue(getJsonPath(getStudyDirectory(studyId, TASKS), taskId), TaskMetadata.class);
+    }
+
+    @Override
+    public Iterator<TaskMetadata> taskIterator(int studyId, boolean reversed) {
+        return iterator(getStudyDirectory(studyId, TASKS), TaskMetadata.class, reversed);
+    }
+
+    @Override
+    public void updateTask(int studyId, TaskMetadata task, Long timeStamp) {
+        putValue(getJsonPath(getStudyDirectory(studyId, TASKS), task.getId()), task);
+    }
+
+    @Override
+    public Locked lock(int studyId, int id, long lockDuration, long timeout) throws StorageEngineException {
+        return lock(studyId, TASKS, id, lockDuration, timeout);
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.opencb.opencga.storage.core.variant.local.metadata;
+
+import org.opencb.opencga.storage.core.metadata.adaptors.VariantStorageMetadataDBAdaptorFactory;
+
+import java.nio.file.Path;
+
+/**
+ * Metadata adaptors of the local variant storage engine, all of them sharing the same directory.
+ */
+public class LocalVariantStorageMetadataDBAdaptorFactory implements VariantStorageMetadataDBAdaptorFactory {
+
+    private final Path directory;
+
+    public LocalVariantStorageMetadataDBAdaptorFactory(Path directory) {
+        this.directory = directory;
+    }
+
+    @Override
+    public LocalFileMetadataDBAdaptor buildFileMetadataDBAdaptor() {
+        return new LocalFileMetadataDBAdaptor(directory);
+    }
+
+    @Override
+    public LocalProjectMetadataAdaptor buildProjectMetadataDBAdaptor() {
+        return new LocalProjectMetadataAdaptor(directory);
+    }
+
+    @Override
+    public LocalStudyMetadataDBAdaptor buildStudyMetadataDBAdaptor() {
+        return new LocalStudyMetadataDBAdaptor(directory);
+    }
+
+    @Override
+    public LocalSampleMetadataDBAdaptor buildSampleMetadataDBAdaptor() {
+        return new LocalSampleMetadataDBAdaptor(directory);
+    }
+
+    @Override
+    public LocalCohortMetadataDBAdaptor buildCohortMetadataDBAdaptor() {
+        return new LocalCohortMetadataDBAdaptor(directory);
+    }
+
+    @Override
+    public LocalTaskMetadataDBAdaptor buildTaskDBAdaptor() {
+        return new LocalTaskMetadataDBAdaptor(directory);
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.core.variant.local.store;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Sparse index of a chunk file from the {@link LocalVariantStore}.
+ *
+ * Contains one entry per compressed block, with the genomic region covered by the block, and its location in the chunk file.
+ * Also contains the ordered list of samples of each study, as the serialized variants do not store the sample names.
+ */
+public class LocalVariantChunkIndex {
+
+    private static final int MAGIC = 0x56434958; // VCIX
+    private static final int VERSION = 1;
+
+    private final LinkedHashMap<String, List<String>> samples;
+    private final List<Block> blocks;
+
+    public LocalVariantChunkIndex() {
+        this(new LinkedHashMap<>(), new ArrayList<>());
+    }
+
+    LocalVariantChunkIndex(LinkedHashMap<String, List<String>> samples, List<Block> blocks) {
+        this.samples = samples;
+        this.blocks = blocks;
+    }
+
+    /**
+     * Compressed block of variants from the same chromosome, sorted by start.
+     */
+    public static class Block {
+        private final String chromosome;
+        private final int start;
+        private final int end;
+        private final long offset;
+        private final int length;
+        private final int numVariants;
+
+        public Block(String chromosome, int start, int end, long offset, int length, int numVariants) {
+            this.chromosome = chromosome;
+            this.start = start;
+            this.end = end;
+            this.offset = offset;
+            this.length = length;
+            this.numVariants = numVariants;
+        }
+
+        public String getChromosome() {
+            return chromosome;
+        }
+
+        /**
+         * Start of the first variant of the block.
+         *
+         * @return start
+         */
+        public int getStart() {
+            return start;
+        }
+
+        /**
+         * Max end of all the variants of the block.
+         *
+         * @return end
+         */
+        public int getEnd() {
+            return end;
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+
+        public int getLength() {
+            return length;
+        }
+
+        public int getNumVariants() {
+            return numVariants;
+        }
+
+        public boolean overlaps(String chromosome, int start, int end) {
+            return this.chromosome.equals(chromosome) && this.start <= end && this.end >= start;
+        }
+
+        @Override
+        public String toString() {
+            return chromosome + ':' + start + '-' + end + " [" + offset + ", " + length + "] (" + numVariants + " variants)";
+        }
+    }
+
+    public LinkedHashMap<String, List<String>> getSamples() {
+        return samples;
+    }
+
+    public List<Block> getBlocks() {
+        return blocks;
+    }
+
+    public void addBlock(Block block) {
+        blocks.add(block);
+    }
+
+    public void write(Path path) throws IOException {
+        try (DataOutputStream os = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            os.writeInt(MAGIC);
+            os.writeInt(VERSION);
+            os.writeInt(samples.size());
+            for (Map.Entry<String, List<String>> entry : samples.entrySet()) {
+                os.writeUTF(entry.getKey());
+                os.writeInt(entry.getValue().size());
+                for (String sample : entry.getValue()) {
+                    os.writeUTF(sample);
+                }
+            }
+            os.writeInt(blocks.size());
+            for (Block block : blocks) {
+                os.writeUTF(block.chromosome);
+                os.writeInt(block.start);
+                os.writeInt(block.end);
+                os.writeLong(block.offset);
+                os.writeInt(block.length);
+                os.writeInt(block.numVariants);
+            }
+        }
+    }
+
+    public static LocalVariantChunkIndex read(Path path) throws IOException {
+        try (DataInputStream is = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (is.readInt() != MAGIC) {
+                throw new IOException("File " + path + " is not a variant chunk index");
+            }
+            int version = is.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported variant chunk index version " + version + " at " + path);
+            }
+            int numStudies = is.readInt();
+            LinkedHashMap<String, List<String>> samples = new LinkedHashMap<>(numStudies);
+            for (int i = 0; i < numStudies; i++) {
+                String study = is.readUTF();
+                int numSamples = is.readInt();
+                List<String> studySamples = new ArrayList<>(numSamples);
+                for (int s = 0; s < numSamples; s++) {
+                    studySamples.add(is.readUTF());
+                }
+                samples.put(study, studySamples);
+            }
+            int numBlocks = is.readInt();
+            List<Block> blocks = new ArrayList<>(numBlocks);
+            for (int i = 0; i < numBlocks; i++) {
+                blocks.add(new Block(is.readUTF(), is.readInt(), is.readInt(), is.readLong(), is.readInt(), is.readInt()));
+            }
+            return new LocalVariantChunkIndex(samples, blocks);
+        }
+    }
+}
@@ -0,0 +1,411 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.core.variant.local.store;
+
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.specific.SpecificDatumReader;
+import org.apache.avro.util.ByteBufferInputStream;
+import org.opencb.biodata.models.core.Region;
+import org.opencb.biodata.models.variant.StudyEntry;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.biodata.models.variant.avro.VariantAvro;
+import org.opencb.opencga.storage.core.variant.adaptors.iterators.VariantDBIterator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xerial.snappy.Snappy;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Local, file based, variant store.
+ *
+ * Variants are stored in sorted, block-compressed chunk files, written by {@link LocalVariantStoreWriter}.
+ * Chunk files are memory mapped, and the sparse {@link LocalVariantChunkIndex} of each chunk is loaded in memory, so a
+ * region query only decompresses the blocks overlapping the region, directly from the mapped memory.
+ *
+ * Multiple chunk sets (e.g. from different writes) can be stored in the same directory. Variants from the same chromosome
+ * coming from different chunk sets are merged in order while iterating.
+ */
+public class LocalVariantStore implements AutoCloseable {
+
+    public static final String CHUNK_PREFIX = "variants_";
+    public static final String CHUNK_EXTENSION = ".chunk";
+    public static final String INDEX_EXTENSION = ".chunk.idx";
+
+    /**
+     * Order of the variants within a chromosome.
+     */
+    public static final Comparator<Variant> VARIANT_COMPARATOR = Comparator
+            .comparingInt(Variant::getStart)
+            .thenComparingInt(Variant::getEnd)
+            .thenComparing(Variant::getReference)
+            .thenComparing(Variant::getAlternate);
+
+    private static Logger logger = LoggerFactory.getLogger(LocalVariantStore.class);
+
+    private final Path directory;
+    private final List<Chunk> chunks = new ArrayList<>();
+    private final LinkedHashSet<String> chromosomes = new LinkedHashSet<>();
+
+    private static final class Chunk {
+        private final Path path;
+        private final LocalVariantChunkIndex index;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+
+        private Chunk(Path path, LocalVariantChunkIndex index, FileChannel channel, MappedByteBuffer buffer) {
+            this.path = path;
+            this.index = index;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+    }
+
+    public LocalVariantStore(Path directory) throws IOException {
+        this.directory = directory;
+        if (!Files.isDirectory(directory)) {
+            throw new IOException("Local variant store " + directory + " not found");
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + INDEX_EXTENSION)) {
+            List<Path> indexes = new ArrayList<>();
+            stream.forEach(indexes::add);
+            Collections.sort(indexes);
+            for (Path indexPath : indexes) {
+                String fileName = indexPath.getFileName().toString();
+                Path chunkPath = indexPath.resolveSibling(fileName.substring(0, fileName.length() - INDEX_EXTENSION.length())
+                        + CHUNK_EXTENSION);
+                LocalVariantChunkIndex index = LocalVariantChunkIndex.read(indexPath);
+                FileChannel channel = FileChannel.open(chunkPath, StandardOpenOption.READ);
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                chunks.add(new Chunk(chunkPath, index, channel, buffer));
+                for (LocalVariantChunkIndex.Block block : index.getBlocks()) {
+                    chromosomes.add(block.getChromosome());
+                }
+            }
+        }
+        logger.debug("Open local variant store {} with {} chunks", directory, chunks.size());
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Chromosomes in the store, in the same order they were written.
+     *
+     * @return Chromosomes
+     */
+    public Set<String> getChromosomes() {
+        return Collections.unmodifiableSet(chromosomes);
+    }
+
+    /**
+     * Samples of a study.
+     *
+     * @param study Study
+     * @return Ordered list of samples, or null if the study is not present
+     */
+    public List<String> getSamples(String study) {
+        for (Chunk chunk : chunks) {
+            List<String> samples = chunk.index.getSamples().get(study);
+            if (samples != null) {
+                return Collections.unmodifiableList(samples);
+            }
+        }
+        return null;
+    }
+
+    public long count() {
+        long count = 0;
+        for (Chunk chunk : chunks) {
+            for (LocalVariantChunkIndex.Block block : chunk.index.getBlocks()) {
+                count += block.getNumVariants();
+            }
+        }
+        return count;
+    }
+
+    public VariantDBIterator iterator() {
+        return iterator(null, null);
+    }
+
+    public VariantDBIterator iterator(Region region) {
+        return iterator(region, null);
+    }
+
+    /**
+     * Iterate over the variants overlapping a region.
+     *
+     * @param region  Region to query. All the variants if null.
+     * @param samples Samples to include for each study. All the samples if null.
+     * @return Sorted iterator
+     */
+    public VariantDBIterator iterator(Region region, Map<String, ? extends Collection<String>> samples) {
+        Iterator<String> chromosomeIterator;
+        if (region == null) {
+            chromosomeIterator = chromosomes.iterator();
+        } else {
+            chromosomeIterator = Collections.singletonList(region.getChromosome()).iterator();
+        }
+        int start = region == null ? Integer.MIN_VALUE : region.getStart();
+        int end = region == null ? Integer.MAX_VALUE : region.getEnd();
+
+        Iterator<Variant> iterator = new Iterator<Variant>() {
+            private Iterator<Variant> chromosomeVariants = Collections.emptyIterator();
+
+            @Override
+            public boolean hasNext() {
+                while (!chromosomeVariants.hasNext() && chromosomeIterator.hasNext()) {
+                    chromosomeVariants = iterator(chromosomeIterator.next(), start, end, samples);
+                }
+                return chromosomeVariants.hasNext();
+            }
+
+            @Override
+            public Variant next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return chromosomeVariants.next();
+            }
+        };
+        return VariantDBIterator.wrapper(iterator);
+    }
+
+    /**
+     * Iterate over the variants from one chromosome overlapping the interval [start, end].
+     *
+     * @param chromosome Chromosome
+     * @param start      Start of the interval
+     * @param end        End of the interval
+     * @param samples    Samples to include for each study. All the samples if null.
+     * @return Iterator sorted by {@link #VARIANT_COMPARATOR}
+     */
+    public Iterator<Variant> iterator(String chromosome, int start, int end, Map<String, ? extends Collection<String>> samples) {
+        List<BlockIterator> iterators = new ArrayList<>();
+        for (Chunk chunk : chunks) {
+            List<LocalVariantChunkIndex.Block> blocks = new ArrayList<>();
+            for (LocalVariantChunkIndex.Block block : chunk.index.getBlocks()) {
+                if (block.overlaps(chromosome, start, end)) {
+                    blocks.add(block);
+                }
+            }
+            if (!blocks.isEmpty()) {
+                iterators.add(new BlockIterator(chunk, blocks, start, end, samples));
+            }
+        }
+        if (iterators.size() == 1) {
+            return iterators.get(0);
+        }
+        // Merge sorted iterators from different chunk sets
+        PriorityQueue<PeekingIterator> queue = new PriorityQueue<>(Math.max(1, iterators.size()),
+                (a, b) -> VARIANT_COMPARATOR.compare(a.peek(), b.peek()));
+        for (BlockIterator blockIterator : iterators) {
+            if (blockIterator.hasNext()) {
+                queue.add(new PeekingIterator(blockIterator));
+            }
+        }
+        return new Iterator<Variant>() {
+            @Override
+            public boolean hasNext() {
+                return !queue.isEmpty();
+            }
+
+            @Override
+            public Variant next() {
+                PeekingIterator head = queue.poll();
+                if (head == null) {
+                    throw new NoSuchElementException();
+                }
+                Variant variant = head.next();
+                if (head.hasNext()) {
+                    queue.add(head);
+                }
+                return variant;
+            }
+        };
+    }
+
+    private static final class PeekingIterator {
+        private final Iterator<Variant> iterator;
+        private Variant next;
+
+        private PeekingIterator(Iterator<Variant> iterator) {
+            this.iterator = iterator;
+            next = iterator.next();
+        }
+
+        Variant peek() {
+            return next;
+        }
+
+        boolean hasNext() {
+            return next != null;
+        }
+
+        Variant next() {
+            Variant variant = next;
+            next = iterator.hasNext() ? iterator.next() : null;
+            return variant;
+        }
+    }
+
+    /**
+     * Decompress and decode the variants of a list of blocks from a chunk.
+     */
+    private static final class BlockIterator implements Iterator<Variant> {
+        private final Chunk chunk;
+        private final Iterator<LocalVariantChunkIndex.Block> blocks;
+        private final int start;
+        private final int end;
+        private final Map<String, int[]> samplesIdx;
+        private final Map<String, LinkedHashMap<String, Integer>> samplesPosition;
+        private final SpecificDatumReader<VariantAvro> datumReader = new SpecificDatumReader<>(VariantAvro.getClassSchema());
+        private ByteBuffer uncompressed = ByteBuffer.allocateDirect(LocalVariantStoreWriter.DEFAULT_BLOCK_SIZE * 2);
+        private BinaryDecoder decoder;
+        private int remainingInBlock;
+        private Variant next;
+
+        private BlockIterator(Chunk chunk, List<LocalVariantChunkIndex.Block> blocks, int start, int end,
+                              Map<String, ? extends Collection<String>> samples) {
+            this.chunk = chunk;
+            this.blocks = blocks.iterator();
+            this.start = start;
+            this.end = end;
+            samplesIdx = new HashMap<>();
+            samplesPosition = new HashMap<>();
+            for (Map.Entry<String, List<String>> entry : chunk.index.getSamples().entrySet()) {
+                List<String> studySamples = entry.getValue();
+                Collection<String> include = samples == null ? null : samples.get(entry.getKey());
+                LinkedHashMap<String, Integer> position = new LinkedHashMap<>();
+                if (include == null) {
+                    for (String sample : studySamples) {
+                        position.put(sample, position.size());
+                    }
+                } else {
+                    List<Integer> idx = new ArrayList<>(include.size());
+                    for (int i = 0; i < studySamples.size(); i++) {
+                        if (include.contains(studySamples.get(i))) {
+                            idx.add(i);
+                            position.put(studySamples.get(i), position.size());
+                        }
+                    }
+                    samplesIdx.put(entry.getKey(), idx.stream().mapToInt(Integer::intValue).toArray());
+                }
+                samplesPosition.put(entry.getKey(), position);
+            }
+            next = fetch();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Variant next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            Variant variant = next;
+            next = fetch();
+            return variant;
+        }
+
+        private Variant fetch() {
+            try {
+                while (true) {
+                    while (remainingInBlock == 0) {
+                        if (!blocks.hasNext()) {
+                            return null;
+                        }
+                        loadBlock(blocks.next());
+                    }
+                    remainingInBlock--;
+                    Variant variant = new Variant(datumReader.read(null, decoder));
+                    if (variant.getStart() > end) {
+                        // Sorted by start. No more variants in the region
+                        remainingInBlock = 0;
+                        while (blocks.hasNext()) {
+                            blocks.next();
+                        }
+                        return null;
+                    }
+                    if (variant.getEnd() >= start) {
+                        return project(variant);
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Error reading variants from " + chunk.path, e);
+            }
+        }
+
+        private void loadBlock(LocalVariantChunkIndex.Block block) throws IOException {
+            ByteBuffer compressed = chunk.buffer.duplicate();
+            compressed.position((int) block.getOffset());
+            compressed.limit((int) block.getOffset() + block.getLength());
+            compressed = compressed.slice();
+            int uncompressedLength = Snappy.uncompressedLength(compressed);
+            if (uncompressed.capacity() < uncompressedLength) {
+                uncompressed = ByteBuffer.allocateDirect(uncompressedLength);
+            }
+            uncompressed.clear();
+            Snappy.uncompress(compressed, uncompressed);
+            decoder = DecoderFactory.get().directBinaryDecoder(
+                    new ByteBufferInputStream(Collections.singletonList(uncompressed)), decoder);
+            remainingInBlock = block.getNumVariants();
+        }
+
+        private Variant project(Variant variant) {
+            for (StudyEntry study : variant.getStudies()) {
+                int[] idx = samplesIdx.get(study.getStudyId());
+                if (idx != null) {
+                    List<List<String>> samplesData = study.getSamplesData();
+                    List<List<String>> projected = new ArrayList<>(idx.length);
+                    for (int i : idx) {
+                        projected.add(samplesData.get(i));
+                    }
+                    study.setSamplesData(projected);
+                }
+                LinkedHashMap<String, Integer> position = samplesPosition.get(study.getStudyId());
+                if (position != null) {
+                    study.setSortedSamplesPosition(position);
+                }
+            }
+            return variant;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        // Mapped buffers are released when garbage collected
+        for (Chunk chunk : chunks) {
+            chunk.channel.close();
+        }
+        chunks.clear();
+    }
+}
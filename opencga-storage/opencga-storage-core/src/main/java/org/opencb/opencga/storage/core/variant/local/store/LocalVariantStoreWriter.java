@@ -0,0 +1,228 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.core.variant.local.store;
+
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.EncoderFactory;
+import org.apache.avro.specific.SpecificDatumWriter;
+import org.opencb.biodata.models.variant.StudyEntry;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.biodata.models.variant.avro.VariantAvro;
+import org.opencb.commons.io.DataWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xerial.snappy.Snappy;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Writes a sorted stream of variants into chunk files of a {@link LocalVariantStore}.
+ *
+ * Variants are serialized with Avro, grouped in blocks of up to {@code blockSize} bytes and compressed with Snappy.
+ * Blocks never contain variants from different chromosomes. Every chunk file has a sidecar {@link LocalVariantChunkIndex}
+ * with one entry per block. A new chunk file is started when the current one exceeds {@code maxChunkSize}, so
+ * every chunk file can be memory mapped.
+ *
+ * Every chunk file is sorted by start within each chromosome. The input is expected to be sorted, with each chromosome
+ * contiguous. Unsorted input is still accepted, starting a new chunk file at every out of order variant, which are
+ * merged by the {@link LocalVariantStore} while reading.
+ * All the variants must have the same samples for each study.
+ */
+public class LocalVariantStoreWriter implements DataWriter<Variant> {
+
+    public static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+    public static final long DEFAULT_MAX_CHUNK_SIZE = 1024L * 1024 * 1024;
+
+    private static Logger logger = LoggerFactory.getLogger(LocalVariantStoreWriter.class);
+
+    private final Path directory;
+    private final String prefix;
+    private final int blockSize;
+    private final long maxChunkSize;
+
+    private final SpecificDatumWriter<VariantAvro> datumWriter = new SpecificDatumWriter<>(VariantAvro.getClassSchema());
+    private final ByteArrayOutputStream blockBuffer;
+    private BinaryEncoder encoder;
+
+    private int chunkNumber;
+    private OutputStream chunkOutputStream;
+    private long chunkSize;
+    private LocalVariantChunkIndex chunkIndex;
+
+    private final LinkedHashMap<String, List<String>> samples = new LinkedHashMap<>();
+    private final Set<String> writtenChromosomes = new HashSet<>();
+    private String chromosome;
+    private int lastStart;
+    private int blockStart;
+    private int blockEnd;
+    private int blockVariants;
+    private long numVariants;
+    private int unsortedRuns;
+
+    public LocalVariantStoreWriter(Path directory) {
+        this(directory, DEFAULT_BLOCK_SIZE, DEFAULT_MAX_CHUNK_SIZE);
+    }
+
+    public LocalVariantStoreWriter(Path directory, int blockSize, long maxChunkSize) {
+        if (maxChunkSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Max chunk size can not exceed " + Integer.MAX_VALUE + " bytes");
+        }
+        this.directory = directory;
+        this.prefix = LocalVariantStore.CHUNK_PREFIX + System.currentTimeMillis()
+                + "_" + Integer.toHexString(System.identityHashCode(this));
+        this.blockSize = blockSize;
+        this.maxChunkSize = maxChunkSize;
+        blockBuffer = new ByteArrayOutputStream(blockSize + blockSize / 4);
+    }
+
+    @Override
+    public boolean open() {
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean write(List<Variant> batch) {
+        try {
+            for (Variant variant : batch) {
+                write(variant);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return true;
+    }
+
+    public void write(Variant variant) throws IOException {
+        if (!variant.getChromosome().equals(chromosome)) {
+            flushBlock();
+            if (writtenChromosomes.contains(variant.getChromosome())) {
+                startSortedRun();
+            }
+            writtenChromosomes.add(variant.getChromosome());
+            chromosome = variant.getChromosome();
+        } else if (variant.getStart() < lastStart) {
+            flushBlock();
+            startSortedRun();
+            writtenChromosomes.add(variant.getChromosome());
+        }
+        checkSamples(variant);
+
+        if (blockVariants == 0) {
+            blockStart = variant.getStart();
+            blockEnd = variant.getEnd();
+        }
+        lastStart = variant.getStart();
+        blockEnd = Math.max(blockEnd, variant.getEnd());
+        encoder = EncoderFactory.get().directBinaryEncoder(blockBuffer, encoder);
+        datumWriter.write(variant.getImpl(), encoder);
+        encoder.flush();
+        blockVariants++;
+        numVariants++;
+
+        if (blockBuffer.size() >= blockSize) {
+            flushBlock();
+        }
+    }
+
+    private void checkSamples(Variant variant) {
+        for (StudyEntry study : variant.getStudies()) {
+            List<String> studySamples = samples.get(study.getStudyId());
+            if (studySamples == null) {
+                samples.put(study.getStudyId(), new ArrayList<>(study.getOrderedSamplesName()));
+            } else if (study.getSamplesData().size() != studySamples.size()) {
+                throw new IllegalArgumentException("Variant " + variant + " has " + study.getSamplesData().size() + " samples "
+                        + "for study " + study.getStudyId() + ". Expected " + studySamples.size());
+            }
+        }
+    }
+
+    private void flushBlock() throws IOException {
+        if (blockVariants == 0) {
+            return;
+        }
+        if (chunkOutputStream == null) {
+            openChunk();
+        }
+        byte[] compressed = Snappy.compress(blockBuffer.toByteArray());
+        chunkOutputStream.write(compressed);
+        chunkIndex.addBlock(new LocalVariantChunkIndex.Block(chromosome, blockStart, blockEnd, chunkSize, compressed.length,
+                blockVariants));
+        chunkSize += compressed.length;
+        blockBuffer.reset();
+        blockVariants = 0;
+
+        if (chunkSize >= maxChunkSize - blockSize) {
+            closeChunk();
+        }
+    }
+
+    /**
+     * Start a new sorted sequence of variants in a new chunk file, after an out of order variant.
+     */
+    private void startSortedRun() throws IOException {
+        if (chunkOutputStream != null) {
+            closeChunk();
+        }
+        writtenChromosomes.clear();
+        if (unsortedRuns++ == 0) {
+            logger.warn("Input variants are not sorted. Starting a new chunk file at every out of order variant");
+        }
+    }
+
+    private void openChunk() throws IOException {
+        Path chunk = directory.resolve(prefix + "_" + chunkNumber + LocalVariantStore.CHUNK_EXTENSION);
+        logger.debug("Open chunk file {}", chunk);
+        chunkOutputStream = new BufferedOutputStream(Files.newOutputStream(chunk), 1024 * 1024);
+        chunkSize = 0;
+        chunkIndex = new LocalVariantChunkIndex();
+    }
+
+    private void closeChunk() throws IOException {
+        chunkOutputStream.close();
+        chunkIndex.getSamples().putAll(samples);
+        chunkIndex.write(directory.resolve(prefix + "_" + chunkNumber + LocalVariantStore.INDEX_EXTENSION));
+        chunkOutputStream = null;
+        chunkIndex = null;
+        chunkNumber++;
+    }
+
+    @Override
+    public boolean close() {
+        try {
+            flushBlock();
+            if (chunkOutputStream != null) {
+                closeChunk();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        logger.info("Written {} variants in {} chunk files", numVariants, chunkNumber);
+        return true;
+    }
+
+    public long getNumVariants() {
+        return numVariants;
+    }
+}
@@ -49,6 +49,18 @@ public abstract class AbstractTwoPhasedVariantQueryExecutor extends VariantQuery
      */
     protected abstract long primaryCount(Query query, QueryOptions options);
 
+    /**
+     * Estimate the cost of a two phased query.
+     * Variants returned by the primary source are read from the variants storage by random access.
+     *
+     * @param primaryScanCost    Cost of reading the primary source
+     * @param primarySelectivity Fraction of variants returned by the primary source
+     * @return                   Estimated cost
+     */
+    protected double estimateTwoPhasedCost(double primaryScanCost, double primarySelectivity) {
+        return primaryScanCost + RANDOM_ACCESS_COST * primarySelectivity;
+    }
+
     protected final void setNumTotalResults(VariantDBIteratorWithCounts variantsFromPrimary, VariantQueryResult<Variant> result,
                                             Query query, QueryOptions options) {
         setNumTotalResults(variantsFromPrimary, result, query, options,
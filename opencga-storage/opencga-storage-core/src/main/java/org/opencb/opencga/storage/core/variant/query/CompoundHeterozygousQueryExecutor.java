@@ -63,6 +63,12 @@ public class CompoundHeterozygousQueryExecutor extends AbstractTwoPhasedVariantQ
                 && isValidParam(query, VariantQueryUtils.SAMPLE_COMPOUND_HETEROZYGOUS);
     }
 
+    @Override
+    public boolean isRequired(Query query, QueryOptions options) {
+        // No other executor can resolve the compound heterozygous filter
+        return true;
+    }
+
     @Override
     public DataResult<Long> count(Query query) {
         throw new UnsupportedOperationException();
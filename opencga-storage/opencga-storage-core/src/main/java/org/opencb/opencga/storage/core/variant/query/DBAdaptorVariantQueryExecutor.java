@@ -48,4 +48,10 @@ public class DBAdaptorVariantQueryExecutor extends VariantQueryExecutor {
         // Always can use this executor
         return true;
     }
+
+    @Override
+    public double estimateCost(Query query, QueryOptions options) {
+        // Scan the regions from the location filters, and filter the rest of the params on the fly
+        return VariantQuerySelectivity.locationSelectivity(query);
+    }
 }
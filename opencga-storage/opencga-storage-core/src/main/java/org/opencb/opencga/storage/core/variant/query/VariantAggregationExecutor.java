@@ -9,9 +9,11 @@ import org.opencb.biodata.models.variant.avro.VariantType;
 import org.opencb.biodata.models.variant.metadata.VariantFileHeaderComplexLine;
 import org.opencb.commons.datastore.core.DataResult;
 import org.opencb.commons.datastore.core.FacetField;
+import org.opencb.commons.datastore.core.ObjectMap;
 import org.opencb.commons.datastore.core.Query;
 import org.opencb.commons.datastore.core.QueryOptions;
 import org.opencb.commons.datastore.solr.FacetQueryParser;
+import org.opencb.opencga.core.common.TimeUtils;
 import org.opencb.opencga.storage.core.exceptions.VariantSearchException;
 import org.opencb.opencga.storage.core.metadata.VariantStorageMetadataManager;
 import org.opencb.opencga.storage.core.metadata.models.StudyMetadata;
@@ -27,13 +29,23 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.*;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.*;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import static org.opencb.opencga.storage.core.variant.VariantStorageOptions.AGGREGATION_PARTITION_SIZE;
+import static org.opencb.opencga.storage.core.variant.VariantStorageOptions.AGGREGATION_THREADS;
 import static org.opencb.opencga.storage.core.variant.search.solr.SolrQueryParser.CHROM_DENSITY;
 
 /**
+ * Compute aggregations over the variants.
+ *
+ * Queries covered by the search engine are pushed down to its native faceted query. Otherwise, the
+ * requested regions are split in partitions that are aggregated in parallel into mergeable partial
+ * states, and then combined.
+ * See {@link org.opencb.opencga.storage.core.variant.VariantStorageOptions#AGGREGATION_PARTITION_SIZE}
+ * and {@link org.opencb.opencga.storage.core.variant.VariantStorageOptions#AGGREGATION_THREADS}.
+ *
  * Created on 10/04/19.
  *
  * @author Jacobo Coll &lt;jacobo167@gmail.com&gt;
@@ -44,6 +56,7 @@ public class VariantAggregationExecutor {
     private final String dbName;
     private final VariantIterable iterable;
     private final VariantStorageMetadataManager metadataManager;
+    private final ObjectMap options;
     private Logger logger = LoggerFactory.getLogger(VariantAggregationExecutor.class);
     public static final Pattern CHROM_DENSITY_PATTERN = Pattern.compile("^" + CHROM_DENSITY + "\\[([a-zA-Z0-9:\\-,*]+)](:(\\d+))?$");
     public static final String NESTED_FACET_SEPARATOR = ">>"; // FacetQueryParser.NESTED_FACET_SEPARATOR
@@ -52,10 +65,17 @@ public class VariantAggregationExecutor {
     public VariantAggregationExecutor(VariantSearchManager searchManager, String dbName,
                                       VariantIterable iterable,
                                       VariantStorageMetadataManager metadataManager) {
+        this(searchManager, dbName, iterable, metadataManager, new ObjectMap());
+    }
+
+    public VariantAggregationExecutor(VariantSearchManager searchManager, String dbName,
+                                      VariantIterable iterable,
+                                      VariantStorageMetadataManager metadataManager, ObjectMap options) {
         this.searchManager = searchManager;
         this.dbName = dbName;
         this.iterable = iterable;
         this.metadataManager = metadataManager;
+        this.options = options == null ? new ObjectMap() : options;
     }
 
     /**
@@ -158,39 +178,122 @@ public class VariantAggregationExecutor {
             throw new VariantQueryException("Unable to calculate aggregated stats query without a region or gene");
         }
 
-        List<FacetField.Bucket> regionBuckets = new ArrayList<>(regions.size());
-        long numMatches = 0;
-        for (Region region : regions) {
-            Query regionQuery = new Query(query).append(VariantQueryParam.REGION.key(), region);
-            VariantDBIterator iterator = iterable.iterator(
-                    regionQuery,
-                    new QueryOptions()
-                            .append(QueryOptions.INCLUDE, VariantField.ID)
-                            .append(QueryOptions.SORT, true));
+        int partitionSize = getPartitionSize(options, step);
+        int numThreads = options.getInt(AGGREGATION_THREADS.key(), this.options.getInt(AGGREGATION_THREADS.key(),
+                AGGREGATION_THREADS.defaultValue()));
 
-            ChromDensityAccumulator chromDensityAccumulator = new ChromDensityAccumulator(region, nestedFieldAccumulator, step);
+        // Split each region in partitions. Each partition is aggregated independently, and then merged.
+        List<ChromDensityAccumulator> accumulators = new ArrayList<>(regions.size());
+        List<List<Future<Histogram>>> partials = new ArrayList<>(regions.size());
+        ExecutorService executorService = numThreads > 1 ? Executors.newFixedThreadPool(numThreads) : null;
+        try {
+            for (Region region : regions) {
+                ChromDensityAccumulator chromDensityAccumulator = new ChromDensityAccumulator(region, step);
+                accumulators.add(chromDensityAccumulator);
+                List<Future<Histogram>> regionPartials = new ArrayList<>();
+                for (int start = region.getStart(); start <= region.getEnd(); start += partitionSize) {
+                    boolean first = start == region.getStart();
+                    // Avoid overflow
+                    int end = (int) Math.min(region.getEnd(), (long) start + partitionSize - 1);
+                    boolean last = end == region.getEnd();
+                    Region partition = new Region(region.getChromosome(), start, end);
+                    Callable<Histogram> task = () -> aggregatePartition(query, partition, first, last,
+                            chromDensityAccumulator, nestedFieldAccumulator);
+                    if (executorService == null) {
+                        regionPartials.add(CompletableFuture.completedFuture(task.call()));
+                    } else {
+                        regionPartials.add(executorService.submit(task));
+                    }
+                    if (last) {
+                        break;
+                    }
+                }
+                partials.add(regionPartials);
+            }
 
-            logger.info("Query : " + regionQuery.toJson());
+            List<FacetField.Bucket> regionBuckets = new ArrayList<>(regions.size());
+            long numMatches = 0;
+            for (int i = 0; i < regions.size(); i++) {
+                Histogram histogram = new Histogram(accumulators.get(i), nestedFieldAccumulator);
+                for (Future<Histogram> partial : partials.get(i)) {
+                    histogram.merge(partial.get());
+                }
+                numMatches += histogram.getNumVariants();
+                regionBuckets.add(new FacetField.Bucket(regions.get(i).getChromosome(), histogram.getNumVariants(),
+                        Collections.singletonList(histogram.toFacetField())));
+            }
+            logger.info("Aggregate {} regions in {} partitions using {} threads in {}", regions.size(),
+                    partials.stream().mapToInt(List::size).sum(), Math.max(1, numThreads), TimeUtils.durationToString(stopWatch));
+
+            FacetField field = new FacetField(
+                    CHROM_DENSITY,
+                    regionBuckets.size(),
+                    regionBuckets);
+            return new DataResult<>(((int) stopWatch.getTime(TimeUnit.MILLISECONDS)), Collections.emptyList(), 1,
+                    Collections.singletonList(field), numMatches);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw VariantQueryException.internalException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw VariantQueryException.internalException(e);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw VariantQueryException.internalException(e);
+        } finally {
+            if (executorService != null) {
+                executorService.shutdownNow();
+            }
+        }
+    }
 
-            FacetField regionField = chromDensityAccumulator.createField();
+    /**
+     * Get the size of the partitions. Partitions are aligned with the buckets.
+     *
+     * @param options Query options
+     * @param step    Size of each bucket
+     * @return        Partition size, multiple of the step
+     */
+    private int getPartitionSize(QueryOptions options, int step) {
+        long partitionSize = options.getLong(AGGREGATION_PARTITION_SIZE.key(), this.options.getLong(AGGREGATION_PARTITION_SIZE.key(),
+                AGGREGATION_PARTITION_SIZE.defaultValue()));
+        partitionSize = Math.max(step, (partitionSize + step - 1) / step * step);
+        return (int) Math.min(partitionSize, Integer.MAX_VALUE);
+    }
 
-            int count = 0;
+    /**
+     * Aggregate the variants from one partition of a region.
+     *
+     * Variants overlapping the limits of the partition are returned by more than one partition. Each variant is
+     * only accumulated in the partition that contains its start, or in the first or last partition if out of the region.
+     *
+     * @param query     Query
+     * @param partition Partition
+     * @param first     Is the first partition of the region
+     * @param last      Is the last partition of the region
+     * @param field     Field accumulator
+     * @param nested    Nested field accumulator, if any
+     * @return          Partial aggregation
+     * @throws Exception if there is an error reading the variants
+     */
+    private Histogram aggregatePartition(Query query, Region partition, boolean first, boolean last,
+                                         FieldVariantAccumulator field, FieldVariantAccumulator nested) throws Exception {
+        Query partitionQuery = new Query(query).append(VariantQueryParam.REGION.key(), partition);
+        Histogram histogram = new Histogram(field, nested);
+        logger.debug("Query : " + partitionQuery.toJson());
+        // Only the variant id is needed. Results do not need to be sorted.
+        try (VariantDBIterator iterator = iterable.iterator(partitionQuery, new QueryOptions(QueryOptions.INCLUDE, VariantField.ID))) {
             while (iterator.hasNext()) {
-                count++;
-                chromDensityAccumulator.accumulate(regionField, iterator.next());
+                Variant variant = iterator.next();
+                if ((first || variant.getStart() >= partition.getStart()) && (last || variant.getStart() <= partition.getEnd())) {
+                    histogram.accumulate(variant);
+                }
             }
-            numMatches += count;
-
-            chromDensityAccumulator.cleanEmptyBuckets(regionField);
-            regionBuckets.add(new FacetField.Bucket(region.getChromosome(), count, Collections.singletonList(regionField)));
         }
-
-        FacetField field = new FacetField(
-                CHROM_DENSITY,
-                regionBuckets.size(),
-                regionBuckets);
-        return new DataResult<>(((int) stopWatch.getTime(TimeUnit.MILLISECONDS)), Collections.emptyList(), 1,
-                Collections.singletonList(field), numMatches);
+        return histogram;
     }
 
     private interface FieldVariantAccumulator {
@@ -201,40 +304,125 @@ public class VariantAggregationExecutor {
         String getName();
 
         /**
-         * Prepare (if required) the list of buckets for this field.
-         * @return predefined list of buckets.
+         * Create the field from the counts of each bucket.
+         * @param count   Total count
+         * @param buckets List of non empty buckets
+         * @return        Facet field
          */
-        default FacetField createField() {
-            return new FacetField(getName(), 0, prepareBuckets());
+        default FacetField createField(long count, List<FacetField.Bucket> buckets) {
+            return new FacetField(getName(), count, buckets);
         }
 
         /**
-         * Prepare (if required) the list of buckets for this field.
-         * @return predefined list of buckets.
+         * Get the number of buckets of this field.
+         * @return number of buckets
          */
-        List<FacetField.Bucket> prepareBuckets();
+        int getNumBuckets();
 
-        default void cleanEmptyBuckets(FacetField field) {
-            field.getBuckets().removeIf(bucket -> bucket.getCount() == 0);
-        }
+        /**
+         * Get the value of a bucket.
+         * @param bucket Bucket index
+         * @return       Value
+         */
+        String getBucketValue(int bucket);
 
         /**
-         * Accumulate variant in the given field.
-         * @param field   Field
+         * Get the bucket of the variant.
          * @param variant Variant
+         * @return        Bucket index, or -1 if the variant does not belong to any bucket
          */
-        void accumulate(FacetField field, Variant variant);
+        int getBucket(Variant variant);
+    }
+
+    /**
+     * Mergeable partial aggregation. Counts variants per bucket of a field, and per bucket of an optional nested field.
+     */
+    private static final class Histogram {
+        private final FieldVariantAccumulator field;
+        private final FieldVariantAccumulator nested;
+        private final long[] counts;
+        private final long[][] nestedCounts;
+        private long numVariants;
+
+        private Histogram(FieldVariantAccumulator field, FieldVariantAccumulator nested) {
+            this.field = field;
+            this.nested = nested;
+            counts = new long[field.getNumBuckets()];
+            nestedCounts = nested == null ? null : new long[field.getNumBuckets()][];
+        }
+
+        void accumulate(Variant variant) {
+            numVariants++;
+            int bucket = field.getBucket(variant);
+            if (bucket < 0) {
+                return;
+            }
+            counts[bucket]++;
+            if (nested != null) {
+                int nestedBucket = nested.getBucket(variant);
+                if (nestedBucket >= 0) {
+                    if (nestedCounts[bucket] == null) {
+                        nestedCounts[bucket] = new long[nested.getNumBuckets()];
+                    }
+                    nestedCounts[bucket][nestedBucket]++;
+                }
+            }
+        }
+
+        Histogram merge(Histogram other) {
+            numVariants += other.numVariants;
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] += other.counts[i];
+                if (nested != null && other.nestedCounts[i] != null) {
+                    if (nestedCounts[i] == null) {
+                        nestedCounts[i] = other.nestedCounts[i].clone();
+                    } else {
+                        for (int j = 0; j < nestedCounts[i].length; j++) {
+                            nestedCounts[i][j] += other.nestedCounts[i][j];
+                        }
+                    }
+                }
+            }
+            return this;
+        }
+
+        long getNumVariants() {
+            return numVariants;
+        }
+
+        FacetField toFacetField() {
+            long count = 0;
+            List<FacetField.Bucket> buckets = new ArrayList<>();
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] == 0) {
+                    continue;
+                }
+                count += counts[i];
+                FacetField.Bucket bucket = new FacetField.Bucket(field.getBucketValue(i), counts[i], null);
+                if (nested != null) {
+                    List<FacetField.Bucket> nestedBuckets = new ArrayList<>();
+                    if (nestedCounts[i] != null) {
+                        for (int j = 0; j < nestedCounts[i].length; j++) {
+                            if (nestedCounts[i][j] != 0) {
+                                nestedBuckets.add(new FacetField.Bucket(nested.getBucketValue(j), nestedCounts[i][j], null));
+                            }
+                        }
+                    }
+                    bucket.setFacetFields(Collections.singletonList(nested.createField(counts[i], nestedBuckets)));
+                }
+                buckets.add(bucket);
+            }
+            return field.createField(count, buckets);
+        }
     }
 
     private final class ChromDensityAccumulator implements FieldVariantAccumulator {
         private final Region region;
-        private final FieldVariantAccumulator nestedFieldAccumulator;
         private final int step;
         private final int numSteps;
 
-        private ChromDensityAccumulator(Region region, FieldVariantAccumulator nestedFieldAccumulator, int step) {
+        private ChromDensityAccumulator(Region region, int step) {
             this.region = region;
-            this.nestedFieldAccumulator = nestedFieldAccumulator;
             this.step = step;
 
             if (region.getEnd() == Integer.MAX_VALUE) {
@@ -270,47 +458,30 @@ public class VariantAggregationExecutor {
         }
 
         @Override
-        public FacetField createField() {
-            return new FacetField(VariantField.START.fieldName(), 0,
-                    prepareBuckets())
+        public FacetField createField(long count, List<FacetField.Bucket> buckets) {
+            return new FacetField(VariantField.START.fieldName(), count, buckets)
                     .setStart(region.getStart())
                     .setEnd(region.getEnd())
                     .setStep(step);
         }
 
         @Override
-        public List<FacetField.Bucket> prepareBuckets() {
-            List<FacetField.Bucket> valueBuckets = new ArrayList<>(numSteps);
-            for (int i = 0; i < numSteps; i++) {
-                FacetField.Bucket bucket = new FacetField.Bucket(String.valueOf(i * step + region.getStart()), 0, null);
-                if (nestedFieldAccumulator != null) {
-                    bucket.setFacetFields(Collections.singletonList(nestedFieldAccumulator.createField()));
-                }
-                valueBuckets.add(bucket);
-            }
-            return valueBuckets;
+        public int getNumBuckets() {
+            return numSteps;
         }
 
         @Override
-        public void accumulate(FacetField field, Variant variant) {
-            int idx = (variant.getStart() - region.getStart()) / step;
-            if (idx < numSteps) {
-                field.addCount(1);
-                FacetField.Bucket bucket = field.getBuckets().get(idx);
-                bucket.addCount(1);
-                if (nestedFieldAccumulator != null) {
-                    nestedFieldAccumulator.accumulate(bucket.getFacetFields().get(0), variant);
-                }
-            }
+        public String getBucketValue(int bucket) {
+            return String.valueOf(bucket * step + region.getStart());
         }
+
         @Override
-        public void cleanEmptyBuckets(FacetField field) {
-            field.getBuckets().removeIf(bucket -> bucket.getCount() == 0);
-            if (nestedFieldAccumulator != null) {
-                for (FacetField.Bucket bucket : field.getBuckets()) {
-                    nestedFieldAccumulator.cleanEmptyBuckets(bucket.getFacetFields().get(0));
-                }
+        public int getBucket(Variant variant) {
+            int idx = (variant.getStart() - region.getStart()) / step;
+            if (idx < 0 || idx >= numSteps) {
+                return -1;
             }
+            return idx;
         }
     }
 
@@ -326,18 +497,18 @@ public class VariantAggregationExecutor {
         }
 
         @Override
-        public List<FacetField.Bucket> prepareBuckets() {
-            List<FacetField.Bucket> buckets = new ArrayList<>(VariantType.values().length);
-            for (VariantType variantType : VariantType.values()) {
-                buckets.add(new FacetField.Bucket(variantType.name(), 0, null));
-            }
-            return buckets;
+        public int getNumBuckets() {
+            return VariantType.values().length;
+        }
+
+        @Override
+        public String getBucketValue(int bucket) {
+            return VariantType.values()[bucket].name();
         }
 
         @Override
-        public void accumulate(FacetField field, Variant variant) {
-            field.addCount(1);
-            field.getBuckets().get(variant.getType().ordinal()).addCount(1);
+        public int getBucket(Variant variant) {
+            return variant.getType().ordinal();
         }
     }
 
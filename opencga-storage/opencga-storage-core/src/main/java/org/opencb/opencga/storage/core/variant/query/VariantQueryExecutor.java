@@ -14,6 +14,7 @@ import org.opencb.opencga.storage.core.variant.adaptors.iterators.VariantDBItera
 
 import static org.opencb.opencga.storage.core.variant.VariantStorageOptions.QUERY_DEFAULT_TIMEOUT;
 import static org.opencb.opencga.storage.core.variant.VariantStorageOptions.QUERY_MAX_TIMEOUT;
+import static org.opencb.opencga.storage.core.variant.VariantStorageOptions.QUERY_MULTI_ITERATOR_PREFETCH;
 
 /**
  * Created on 01/04/19.
@@ -22,6 +23,8 @@ import static org.opencb.opencga.storage.core.variant.VariantStorageOptions.QUER
  */
 public abstract class VariantQueryExecutor implements VariantIterable {
 
+    public static final double RANDOM_ACCESS_COST = 20;
+
     protected final VariantStorageMetadataManager metadataManager;
     protected final String storageEngineId;
     private final ObjectMap options;
@@ -66,6 +69,24 @@ public abstract class VariantQueryExecutor implements VariantIterable {
         queryOptions.put(QueryOptions.TIMEOUT, timeout);
     }
 
+    public void setDefaultPrefetch(QueryOptions options) {
+        setDefaultPrefetch(options, getOptions());
+    }
+
+    /**
+     * Set the number of batch queries to execute in parallel by the {@link
+     * org.opencb.opencga.storage.core.variant.adaptors.iterators.MultiVariantDBIterator}, if not defined in the QueryOptions.
+     *
+     * @param queryOptions Query options
+     * @param config       Storage engine configuration
+     */
+    public static void setDefaultPrefetch(QueryOptions queryOptions, ObjectMap config) {
+        if (!queryOptions.containsKey(QUERY_MULTI_ITERATOR_PREFETCH.key())) {
+            queryOptions.put(QUERY_MULTI_ITERATOR_PREFETCH.key(),
+                    config.getInt(QUERY_MULTI_ITERATOR_PREFETCH.key(), QUERY_MULTI_ITERATOR_PREFETCH.defaultValue()));
+        }
+    }
+
     /**
      * Determine if this VariantQueryExecutor can run the given query.
      * @param query    Query to execute
@@ -75,6 +96,36 @@ public abstract class VariantQueryExecutor implements VariantIterable {
      */
     public abstract boolean canUseThisExecutor(Query query, QueryOptions options) throws StorageEngineException;
 
+    /**
+     * Determine if the query must be resolved with this VariantQueryExecutor, regardless of its cost.
+     * e.g. the query contains a filter that no other executor supports.
+     * Only called if {@link #canUseThisExecutor} returns true.
+     *
+     * @param query    Query to execute
+     * @param options  Options for the query
+     * @return         True if this variant query executor is required for the query
+     * @throws StorageEngineException if there is an error
+     */
+    public boolean isRequired(Query query, QueryOptions options) throws StorageEngineException {
+        return false;
+    }
+
+    /**
+     * Estimate the cost of running the query with this executor. Only called if {@link #canUseThisExecutor} returns true.
+     *
+     * The cost unit is a full sequential scan of the variants storage. Reading one variant by random access
+     * costs {@link #RANDOM_ACCESS_COST} times more than reading it sequentially.
+     *
+     * @param query    Query to execute
+     * @param options  Options for the query
+     * @return         Estimated cost
+     * @throws StorageEngineException if there is an error
+     */
+    public double estimateCost(Query query, QueryOptions options) throws StorageEngineException {
+        // Full scan, filtering every variant
+        return 1;
+    }
+
     public abstract DataResult<Long> count(Query query);
 
     public VariantQueryResult<Long> approximateCount(Query query, QueryOptions options) {
@@ -0,0 +1,249 @@
+package org.opencb.opencga.storage.core.variant.query;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decision taken by the {@link VariantQueryPlanner} to run a query. Describes all the {@link VariantQueryExecutor}s
+ * evaluated, with their estimated cost and historical latency, and which one was selected.
+ */
+public class VariantQueryPlan {
+
+    public enum Strategy {
+        /** First valid executor, following the order of preference from the storage engine. */
+        RULES,
+        /** Required executor, or valid executor with the lowest estimated cost. */
+        COST
+    }
+
+    public enum Basis {
+        /** Only valid executor, or required executor. */
+        REQUIRED,
+        /** Order of preference. */
+        ORDER,
+        /** Static cost estimation. */
+        COST,
+        /** Historical latency. */
+        LATENCY,
+        /** Refresh the historical latency of an executor not selected recently. */
+        EXPLORATION
+    }
+
+    private String shape;
+    private Strategy strategy;
+    private Basis basis;
+    private String executor;
+    private List<Candidate> candidates = new ArrayList<>();
+    @JsonIgnore
+    private VariantQueryExecutor queryExecutor;
+    @JsonIgnore
+    private Candidate selected;
+
+    public static class Candidate {
+        private String executor;
+        private boolean valid;
+        private boolean required;
+        private Double cost;
+        private Double estimatedLatency;
+        private Double observedLatency;
+        private long observations;
+        private long age;
+        private String message;
+        private boolean selected;
+
+        public String getExecutor() {
+            return executor;
+        }
+
+        public Candidate setExecutor(String executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        public boolean isValid() {
+            return valid;
+        }
+
+        public Candidate setValid(boolean valid) {
+            this.valid = valid;
+            return this;
+        }
+
+        public boolean isRequired() {
+            return required;
+        }
+
+        public Candidate setRequired(boolean required) {
+            this.required = required;
+            return this;
+        }
+
+        public Double getCost() {
+            return cost;
+        }
+
+        public Candidate setCost(Double cost) {
+            this.cost = cost;
+            return this;
+        }
+
+        public Double getEstimatedLatency() {
+            return estimatedLatency;
+        }
+
+        public Candidate setEstimatedLatency(Double estimatedLatency) {
+            this.estimatedLatency = estimatedLatency;
+            return this;
+        }
+
+        public Double getObservedLatency() {
+            return observedLatency;
+        }
+
+        public Candidate setObservedLatency(Double observedLatency) {
+            this.observedLatency = observedLatency;
+            return this;
+        }
+
+        public long getObservations() {
+            return observations;
+        }
+
+        public Candidate setObservations(long observations) {
+            this.observations = observations;
+            return this;
+        }
+
+        /**
+         * Number of queries with the same shape executed since the last observation of this executor.
+         *
+         * @return age of the observed latency
+         */
+        public long getAge() {
+            return age;
+        }
+
+        public Candidate setAge(long age) {
+            this.age = age;
+            return this;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        public Candidate setMessage(String message) {
+            this.message = message;
+            return this;
+        }
+
+        public boolean isSelected() {
+            return selected;
+        }
+
+        public Candidate setSelected(boolean selected) {
+            this.selected = selected;
+            return this;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(selected ? "* " : "  ").append(executor);
+            if (!valid) {
+                sb.append(" : not valid");
+            } else {
+                sb.append(" : ");
+                if (required) {
+                    sb.append("required, ");
+                }
+                if (cost != null) {
+                    sb.append("cost=").append(String.format("%.3g", cost));
+                }
+                if (estimatedLatency != null) {
+                    sb.append(", estimatedLatency=").append(String.format("%.0f", estimatedLatency)).append("ms");
+                }
+                if (observations > 0) {
+                    sb.append(", observedLatency=").append(String.format("%.0f", observedLatency)).append("ms")
+                            .append(" (").append(observations).append(" queries, last one ").append(age).append(" queries ago)");
+                }
+            }
+            if (message != null) {
+                sb.append(" : ").append(message);
+            }
+            return sb.toString();
+        }
+    }
+
+    public String getShape() {
+        return shape;
+    }
+
+    public VariantQueryPlan setShape(String shape) {
+        this.shape = shape;
+        return this;
+    }
+
+    public Strategy getStrategy() {
+        return strategy;
+    }
+
+    public VariantQueryPlan setStrategy(Strategy strategy) {
+        this.strategy = strategy;
+        return this;
+    }
+
+    public Basis getBasis() {
+        return basis;
+    }
+
+    public VariantQueryPlan setBasis(Basis basis) {
+        this.basis = basis;
+        return this;
+    }
+
+    public String getExecutor() {
+        return executor;
+    }
+
+    public List<Candidate> getCandidates() {
+        return candidates;
+    }
+
+    public VariantQueryPlan setCandidates(List<Candidate> candidates) {
+        this.candidates = candidates;
+        return this;
+    }
+
+    public VariantQueryExecutor getQueryExecutor() {
+        return queryExecutor;
+    }
+
+    public Candidate getSelected() {
+        return selected;
+    }
+
+    public VariantQueryPlan setSelected(VariantQueryExecutor queryExecutor, Candidate candidate) {
+        this.queryExecutor = queryExecutor;
+        this.executor = candidate.getExecutor();
+        if (selected != null) {
+            selected.setSelected(false);
+        }
+        this.selected = candidate.setSelected(true);
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("VariantQueryPlan{strategy=").append(strategy)
+                .append(", basis=").append(basis)
+                .append(", executor=").append(executor)
+                .append(", shape=").append(shape).append('}');
+        for (Candidate candidate : candidates) {
+            sb.append('\n').append(candidate);
+        }
+        return sb.toString();
+    }
+}
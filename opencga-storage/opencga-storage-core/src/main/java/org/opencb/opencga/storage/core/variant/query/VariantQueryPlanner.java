@@ -0,0 +1,272 @@
+package org.opencb.opencga.storage.core.variant.query;
+
+import org.opencb.commons.datastore.core.ObjectMap;
+import org.opencb.commons.datastore.core.Query;
+import org.opencb.commons.datastore.core.QueryOptions;
+import org.opencb.opencga.storage.core.exceptions.StorageEngineException;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryException;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static org.opencb.opencga.storage.core.variant.VariantStorageOptions.QUERY_PLANNER_COST_BASED;
+import static org.opencb.opencga.storage.core.variant.VariantStorageOptions.QUERY_PLANNER_MAX_OBSERVATION_AGE;
+import static org.opencb.opencga.storage.core.variant.VariantStorageOptions.QUERY_PLANNER_MIN_OBSERVATIONS;
+
+/**
+ * Selects the {@link VariantQueryExecutor} to run a query.
+ *
+ * By default, uses the first valid executor, following the order of preference given by the storage engine.
+ * If {@link org.opencb.opencga.storage.core.variant.VariantStorageOptions#QUERY_PLANNER_COST_BASED} is enabled,
+ * uses the required executor if any, or the one with the lowest estimated cost otherwise.
+ *
+ * The static cost estimation from each executor is corrected with the latency observed in previous queries:
+ * <ul>
+ *     <li>Latency of the executor for queries with the same shape (i.e. the same set of filters)</li>
+ *     <li>Latency per unit of cost of the executor, for any query</li>
+ * </ul>
+ *
+ * Only the selected executor gets new observations. If the latency of any candidate was not observed in the last
+ * {@link org.opencb.opencga.storage.core.variant.VariantStorageOptions#QUERY_PLANNER_MAX_OBSERVATION_AGE} queries with
+ * the same shape, the query is executed with that executor to refresh its latency.
+ */
+public class VariantQueryPlanner {
+
+    private static final double MIN_COST = 1e-6;
+    private static final double MIN_LATENCY = 1;
+    private static final double ALPHA = 0.2;
+
+    private final Map<String, MovingAverage> shapeLatency = new ConcurrentHashMap<>();
+    private final Map<String, MovingAverage> executorLatencyPerCost = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> shapeQueries = new ConcurrentHashMap<>();
+    private final Logger logger = LoggerFactory.getLogger(VariantQueryPlanner.class);
+
+    /**
+     * Select the executor to run the query.
+     *
+     * @param executors List of executors, in order of preference
+     * @param query     Query to execute
+     * @param options   Options for the query
+     * @param config    Storage engine options
+     * @param explain   Evaluate all the executors, even if not needed to take the decision
+     * @return          Query plan
+     * @throws StorageEngineException if there is an error
+     */
+    public VariantQueryPlan plan(List<VariantQueryExecutor> executors, Query query, QueryOptions options, ObjectMap config,
+                                 boolean explain)
+            throws StorageEngineException {
+        boolean costBased = options.getBoolean(QUERY_PLANNER_COST_BASED.key(),
+                config.getBoolean(QUERY_PLANNER_COST_BASED.key(), QUERY_PLANNER_COST_BASED.defaultValue()));
+        int minObservations = config.getInt(QUERY_PLANNER_MIN_OBSERVATIONS.key(), QUERY_PLANNER_MIN_OBSERVATIONS.defaultValue());
+        int maxObservationAge = config.getInt(QUERY_PLANNER_MAX_OBSERVATION_AGE.key(), QUERY_PLANNER_MAX_OBSERVATION_AGE.defaultValue());
+        String shape = shape(query, options);
+        VariantQueryPlan plan = new VariantQueryPlan()
+                .setShape(shape)
+                .setStrategy(costBased ? VariantQueryPlan.Strategy.COST : VariantQueryPlan.Strategy.RULES);
+
+        VariantQueryExecutor best = null;
+        VariantQueryPlan.Candidate bestCandidate = null;
+        boolean settled = false;
+        boolean allLatencies = true;
+        int numValid = 0;
+        for (VariantQueryExecutor executor : executors) {
+            if (settled && !explain) {
+                break;
+            }
+            VariantQueryPlan.Candidate candidate = new VariantQueryPlan.Candidate().setExecutor(executor.getClass().getSimpleName());
+            plan.getCandidates().add(candidate);
+            try {
+                if (!executor.canUseThisExecutor(query, options)) {
+                    continue;
+                }
+                candidate.setValid(true);
+                candidate.setRequired(executor.isRequired(query, options));
+                if (settled && !costBased) {
+                    // Only for explain
+                    candidate.setCost(executor.estimateCost(query, options));
+                    estimateLatency(candidate, shape, minObservations);
+                    continue;
+                }
+                if (costBased || explain) {
+                    candidate.setCost(executor.estimateCost(query, options));
+                    estimateLatency(candidate, shape, minObservations);
+                }
+            } catch (VariantQueryException | StorageEngineException e) {
+                if (!settled) {
+                    throw e;
+                }
+                // Only for explain. This exception would not be thrown when running the query
+                candidate.setValid(false).setMessage(e.getMessage());
+                continue;
+            }
+            if (settled) {
+                continue;
+            }
+            numValid++;
+            if (!costBased || candidate.isRequired()) {
+                best = executor;
+                bestCandidate = candidate;
+                settled = true;
+            } else {
+                allLatencies &= candidate.getEstimatedLatency() != null;
+                if (bestCandidate == null || candidate.getCost() < bestCandidate.getCost()) {
+                    best = executor;
+                    bestCandidate = candidate;
+                }
+            }
+        }
+        if (best == null) {
+            // This should never happen, as the DBAdaptorVariantQueryExecutor can always run the query
+            throw new IllegalStateException("No VariantQueryExecutor found to run the query!");
+        }
+
+        if (!costBased) {
+            plan.setBasis(VariantQueryPlan.Basis.ORDER);
+        } else if (bestCandidate.isRequired() || numValid == 1) {
+            plan.setBasis(VariantQueryPlan.Basis.REQUIRED);
+        } else if (allLatencies) {
+            // All the candidates have historical information.
+            // Refresh the stalest latency if too old. Otherwise, compare estimated latencies.
+            int stalest = -1;
+            for (int i = 0; i < plan.getCandidates().size(); i++) {
+                VariantQueryPlan.Candidate candidate = plan.getCandidates().get(i);
+                if (candidate.isValid() && candidate.getAge() > maxObservationAge
+                        && (stalest < 0 || candidate.getAge() > plan.getCandidates().get(stalest).getAge())) {
+                    stalest = i;
+                }
+            }
+            if (stalest >= 0) {
+                plan.setBasis(VariantQueryPlan.Basis.EXPLORATION);
+                best = executors.get(stalest);
+                bestCandidate = plan.getCandidates().get(stalest);
+            } else {
+                plan.setBasis(VariantQueryPlan.Basis.LATENCY);
+                for (int i = 0; i < plan.getCandidates().size(); i++) {
+                    VariantQueryPlan.Candidate candidate = plan.getCandidates().get(i);
+                    if (candidate.isValid() && candidate.getEstimatedLatency() < bestCandidate.getEstimatedLatency()) {
+                        best = executors.get(i);
+                        bestCandidate = candidate;
+                    }
+                }
+            }
+        } else {
+            plan.setBasis(VariantQueryPlan.Basis.COST);
+        }
+        plan.setSelected(best, bestCandidate);
+
+        if (explain) {
+            logger.info("{}", plan);
+        } else if (costBased) {
+            logger.debug("{}", plan);
+        }
+        return plan;
+    }
+
+    /**
+     * Register the latency of a query executed following the given plan.
+     *
+     * @param plan    Executed plan
+     * @param latency Latency in milliseconds
+     */
+    public void record(VariantQueryPlan plan, long latency) {
+        VariantQueryPlan.Candidate selected = plan.getSelected();
+        double value = Math.max(MIN_LATENCY, latency);
+        long shapeQuery = shapeQueries.computeIfAbsent(plan.getShape(), k -> new AtomicLong()).incrementAndGet();
+        shapeLatency.computeIfAbsent(selected.getExecutor() + ":" + plan.getShape(), k -> new MovingAverage()).add(value, shapeQuery);
+        if (selected.getCost() != null) {
+            // Geometric average of the latency per unit of cost
+            executorLatencyPerCost.computeIfAbsent(selected.getExecutor(), k -> new MovingAverage())
+                    .add(Math.log(value / Math.max(MIN_COST, selected.getCost())));
+        }
+    }
+
+    /**
+     * Discard all the historical information.
+     */
+    public void clear() {
+        shapeLatency.clear();
+        executorLatencyPerCost.clear();
+        shapeQueries.clear();
+    }
+
+    /**
+     * Describe the shape of the query. Queries with the same filters, regardless of the values, have the same shape.
+     *
+     * @param query   Query
+     * @param options Options for the query
+     * @return        Shape of the query
+     */
+    public static String shape(Query query, QueryOptions options) {
+        String shape = VariantQueryUtils.validParams(query, true)
+                .stream()
+                .map(VariantQueryParam::key)
+                .sorted()
+                .collect(Collectors.joining(","));
+        if (options.getBoolean(QueryOptions.COUNT, false)) {
+            shape = "count(" + shape + ")";
+        }
+        return shape;
+    }
+
+    private void estimateLatency(VariantQueryPlan.Candidate candidate, String shape, int minObservations) {
+        MovingAverage latency = shapeLatency.get(candidate.getExecutor() + ":" + shape);
+        MovingAverage latencyPerCost = executorLatencyPerCost.get(candidate.getExecutor());
+        AtomicLong queries = shapeQueries.get(shape);
+        long numQueries = queries == null ? 0 : queries.get();
+        if (latency != null) {
+            candidate.setObservedLatency(latency.getValue());
+            candidate.setObservations(latency.getCount());
+            candidate.setAge(numQueries - latency.getLastObservation());
+        } else {
+            // Never observed with this shape
+            candidate.setAge(numQueries);
+        }
+        if (latency != null && latency.getCount() >= minObservations) {
+            candidate.setEstimatedLatency(latency.getValue());
+        } else if (latencyPerCost != null && latencyPerCost.getCount() >= minObservations) {
+            candidate.setEstimatedLatency(Math.exp(latencyPerCost.getValue()) * Math.max(MIN_COST, candidate.getCost()));
+        }
+    }
+
+    /**
+     * Exponentially weighted moving average.
+     */
+    private static class MovingAverage {
+        private double value;
+        private long count;
+        private long lastObservation;
+
+        void add(double newValue) {
+            add(newValue, 0);
+        }
+
+        synchronized void add(double newValue, long observation) {
+            count++;
+            lastObservation = observation;
+            if (count == 1) {
+                value = newValue;
+            } else {
+                value += ALPHA * (newValue - value);
+            }
+        }
+
+        synchronized double getValue() {
+            return value;
+        }
+
+        synchronized long getCount() {
+            return count;
+        }
+
+        synchronized long getLastObservation() {
+            return lastObservation;
+        }
+    }
+}
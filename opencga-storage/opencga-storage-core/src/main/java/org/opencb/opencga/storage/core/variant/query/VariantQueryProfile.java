@@ -0,0 +1,255 @@
+package org.opencb.opencga.storage.core.variant.query;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import org.opencb.opencga.storage.core.variant.adaptors.iterators.VariantDBIterator;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Profile of a variant query. Contains the query executor, the rewritten query, the wall time of each stage,
+ * and the rows scanned, rows returned and bytes transferred from each backend.
+ *
+ * The profile is bound to the thread running the query. Nested calls to {@link #start()} from the same thread
+ * share the same profile, which is finished with the outermost call to {@link #stop()}.
+ * Components that use other threads should capture the profile with {@link #current()} before starting them.
+ */
+public class VariantQueryProfile {
+
+    public static final long UNKNOWN = -1;
+
+    private static final ThreadLocal<VariantQueryProfile> CURRENT = new ThreadLocal<>();
+
+    private String executor;
+    private Map<String, Object> query;
+    private long timeMillis;
+    private final Map<String, Stage> stages = new LinkedHashMap<>();
+    private final Map<String, Backend> backends = new LinkedHashMap<>();
+
+    @JsonIgnore
+    private final long start = System.nanoTime();
+    @JsonIgnore
+    private int depth = 0;
+
+    @FunctionalInterface
+    public interface ProfiledFunction<R, E extends Exception> {
+        R call() throws E;
+    }
+
+    public static class Stage {
+        private final String name;
+        private long timeNanos;
+        private int calls;
+
+        Stage(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getTimeMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(timeNanos);
+        }
+
+        public int getCalls() {
+            return calls;
+        }
+    }
+
+    public static class Backend {
+        private final String name;
+        private long rowsScanned = UNKNOWN;
+        private long rowsReturned;
+        private long bytes = UNKNOWN;
+        private long timeFetchingNanos;
+        private long timeConvertingNanos;
+
+        Backend(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getRowsScanned() {
+            return rowsScanned;
+        }
+
+        public long getRowsReturned() {
+            return rowsReturned;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public long getTimeFetchingMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(timeFetchingNanos);
+        }
+
+        public long getTimeConvertingMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(timeConvertingNanos);
+        }
+    }
+
+    /**
+     * Start profiling the queries executed by the current thread.
+     * If there is already a profile for this thread, returns it.
+     *
+     * @return Profile
+     */
+    public static VariantQueryProfile start() {
+        VariantQueryProfile profile = CURRENT.get();
+        if (profile == null) {
+            profile = new VariantQueryProfile();
+            CURRENT.set(profile);
+        }
+        profile.depth++;
+        return profile;
+    }
+
+    /**
+     * Get the profile of the current thread.
+     *
+     * @return Profile of the current thread, or null if not profiling.
+     */
+    public static VariantQueryProfile current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Execute a stage of the query. If the current thread is being profiled, measures its wall time.
+     *
+     * @param stage    Stage name
+     * @param function Stage to execute
+     * @param <R>      Return type
+     * @param <E>      Exception type
+     * @return         Result of the stage
+     * @throws E       Any exception from the stage
+     */
+    public static <R, E extends Exception> R stage(String stage, ProfiledFunction<R, E> function) throws E {
+        VariantQueryProfile profile = current();
+        if (profile == null) {
+            return function.call();
+        }
+        long start = System.nanoTime();
+        try {
+            return function.call();
+        } finally {
+            profile.addStage(stage, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Stop profiling. Only the outermost call finishes the profile.
+     *
+     * @return this
+     */
+    public VariantQueryProfile stop() {
+        depth--;
+        if (depth <= 0 && CURRENT.get() == this) {
+            timeMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            CURRENT.remove();
+        }
+        return this;
+    }
+
+    public synchronized VariantQueryProfile addStage(String name, long timeNanos) {
+        Stage stage = stages.computeIfAbsent(name, Stage::new);
+        stage.timeNanos += timeNanos;
+        stage.calls++;
+        return this;
+    }
+
+    /**
+     * Register the activity of a backend. Values from the same backend are accumulated.
+     *
+     * @param name                Backend name
+     * @param rowsScanned         Rows scanned, or {@link #UNKNOWN}
+     * @param rowsReturned        Rows returned
+     * @param bytes               Bytes transferred, or {@link #UNKNOWN}
+     * @param timeFetchingNanos   Time fetching from the backend
+     * @param timeConvertingNanos Time converting the results
+     * @return this
+     */
+    public synchronized VariantQueryProfile addBackend(String name, long rowsScanned, long rowsReturned, long bytes,
+                                                       long timeFetchingNanos, long timeConvertingNanos) {
+        Backend backend = backends.computeIfAbsent(name, Backend::new);
+        if (rowsScanned != UNKNOWN) {
+            backend.rowsScanned = Math.max(0, backend.rowsScanned) + rowsScanned;
+        }
+        if (bytes != UNKNOWN) {
+            backend.bytes = Math.max(0, backend.bytes) + bytes;
+        }
+        backend.rowsReturned += rowsReturned;
+        backend.timeFetchingNanos += timeFetchingNanos;
+        backend.timeConvertingNanos += timeConvertingNanos;
+        return this;
+    }
+
+    /**
+     * Register the variants returned by an iterator over a backend.
+     *
+     * @param name     Backend name
+     * @param iterator Exhausted or closed iterator
+     * @return this
+     */
+    public VariantQueryProfile addBackend(String name, VariantDBIterator iterator) {
+        return addBackend(name, UNKNOWN, iterator.getCount(), UNKNOWN, iterator.getTimeFetching(), iterator.getTimeConverting());
+    }
+
+    public String getExecutor() {
+        return executor;
+    }
+
+    public VariantQueryProfile setExecutor(String executor) {
+        this.executor = executor;
+        return this;
+    }
+
+    public Map<String, Object> getQuery() {
+        return query;
+    }
+
+    public VariantQueryProfile setQuery(Map<String, Object> query) {
+        this.query = query == null ? null : new LinkedHashMap<>(query);
+        return this;
+    }
+
+    public long getTimeMillis() {
+        return timeMillis;
+    }
+
+    public synchronized List<Stage> getStages() {
+        return new ArrayList<>(stages.values());
+    }
+
+    public synchronized List<Backend> getBackends() {
+        return new ArrayList<>(backends.values());
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder sb = new StringBuilder("VariantQueryProfile{executor=").append(executor)
+                .append(", timeMillis=").append(timeMillis)
+                .append(", query=").append(query).append('}');
+        for (Stage stage : stages.values()) {
+            sb.append("\n  stage ").append(stage.getName()).append(" : ").append(stage.getTimeMillis()).append("ms");
+            if (stage.getCalls() > 1) {
+                sb.append(" (").append(stage.getCalls()).append(" calls)");
+            }
+        }
+        for (Backend backend : backends.values()) {
+            sb.append("\n  backend ").append(backend.getName())
+                    .append(" : scanned=").append(backend.getRowsScanned())
+                    .append(", returned=").append(backend.getRowsReturned())
+                    .append(", bytes=").append(backend.getBytes())
+                    .append(", fetch=").append(backend.getTimeFetchingMillis()).append("ms")
+                    .append(", convert=").append(backend.getTimeConvertingMillis()).append("ms");
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,199 @@
+package org.opencb.opencga.storage.core.variant.query;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.google.common.primitives.Longs;
+import org.apache.commons.lang3.time.StopWatch;
+import org.opencb.biodata.models.feature.Genotype;
+import org.opencb.biodata.models.variant.StudyEntry;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.biodata.models.variant.avro.VariantAnnotation;
+import org.opencb.biodata.models.variant.stats.VariantStats;
+import org.opencb.commons.datastore.core.DataResult;
+import org.opencb.commons.datastore.core.Query;
+import org.opencb.commons.datastore.core.QueryOptions;
+import org.opencb.opencga.core.response.VariantQueryResult;
+import org.opencb.opencga.storage.core.cache.CacheManager;
+import org.opencb.opencga.storage.core.config.CacheConfiguration;
+import org.opencb.opencga.storage.core.exceptions.StorageEngineException;
+import org.opencb.opencga.storage.core.metadata.VariantStorageMetadataManager;
+import org.opencb.opencga.storage.core.variant.io.json.mixin.GenotypeJsonMixin;
+import org.opencb.opencga.storage.core.variant.io.json.mixin.VariantAnnotationMixin;
+import org.opencb.opencga.storage.core.variant.io.json.mixin.VariantSourceEntryJsonMixin;
+import org.opencb.opencga.storage.core.variant.io.json.mixin.VariantStatsJsonMixin;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Cache of variant query results, on top of the {@link CacheManager}.
+ *
+ * Queries are expected to be already pre-processed, so equivalent queries produce the same key.
+ * Keys include the {@link VariantStorageMetadataManager#getDataVersion() data version}, so entries cached before
+ * any data update, from any process, are never returned. The data version is reused for a short time
+ * ({@link CacheConfiguration#getDataVersionTtl()}) to avoid reading the metadata store on every cache hit.
+ * Local updates call {@link #invalidate()}, which frees the local entries of the database and forces reading the
+ * data version again. Updates from other processes are visible once the data version expires.
+ * The data version is only maintained if {@link org.opencb.opencga.storage.core.variant.VariantStorageOptions#METADATA_DATA_VERSION}
+ * is active, which is the case whenever the cache is active.
+ *
+ * Use {@link CacheManager#CACHE}=false in the QueryOptions to skip the cache.
+ */
+public class VariantQueryResultCache {
+
+    public static final String TYPE = "var";
+    private static final String COUNT_TYPE = TYPE + "_count";
+
+    private final CacheManager cacheManager;
+    private final String namespace;
+    private final VariantStorageMetadataManager metadataManager;
+    private final ObjectMapper objectMapper;
+    private final ObjectReader resultReader;
+    private final long dataVersionTtlNanos;
+
+    // Last data version read from the metadata store, and when it expires. Guarded by "this"
+    private int dataVersion;
+    private long dataVersionExpiration;
+    private boolean dataVersionValid;
+
+    private static Logger logger = LoggerFactory.getLogger(VariantQueryResultCache.class);
+
+    public VariantQueryResultCache(CacheManager cacheManager, String namespace, VariantStorageMetadataManager metadataManager) {
+        this(cacheManager, namespace, metadataManager, CacheConfiguration.DEFAULT_DATA_VERSION_TTL);
+    }
+
+    /**
+     * Create a new cache.
+     *
+     * @param cacheManager      Cache manager
+     * @param namespace         Namespace of the database
+     * @param metadataManager   Metadata manager, to read the data version
+     * @param dataVersionTtl    Time in milliseconds to reuse the data version. Use 0 to read it on every request
+     */
+    public VariantQueryResultCache(CacheManager cacheManager, String namespace, VariantStorageMetadataManager metadataManager,
+                                   long dataVersionTtl) {
+        this.cacheManager = cacheManager;
+        this.dataVersionTtlNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, dataVersionTtl));
+        this.namespace = namespace;
+        this.metadataManager = metadataManager;
+        objectMapper = new ObjectMapper();
+        objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        objectMapper.addMixIn(StudyEntry.class, VariantSourceEntryJsonMixin.class);
+        objectMapper.addMixIn(Genotype.class, GenotypeJsonMixin.class);
+        objectMapper.addMixIn(VariantStats.class, VariantStatsJsonMixin.class);
+        objectMapper.addMixIn(VariantAnnotation.class, VariantAnnotationMixin.class);
+        resultReader = objectMapper.readerFor(new TypeReference<VariantQueryResult<Variant>>() { });
+    }
+
+    public boolean isActive() {
+        return cacheManager.isActive() && cacheManager.isTypeAllowed(TYPE);
+    }
+
+    public VariantQueryResult<Variant> get(Query query, QueryOptions options, Supplier<VariantQueryResult<Variant>> supplier) {
+        if (!useCache(options)) {
+            return supplier.get();
+        }
+        StopWatch stopWatch = StopWatch.createStarted();
+        String key = createKey(TYPE, query, options);
+        if (key == null) {
+            return supplier.get();
+        }
+        byte[] bytes = cacheManager.get(key);
+        if (bytes != null) {
+            try {
+                VariantQueryResult<Variant> result = resultReader.readValue(bytes);
+                result.setTime((int) stopWatch.getTime(TimeUnit.MILLISECONDS));
+                return result;
+            } catch (IOException | RuntimeException e) {
+                logger.warn("Unable to read cached result. Ignore cache", e);
+            }
+        }
+
+        VariantQueryResult<Variant> result = supplier.get();
+        if (cacheManager.isCacheable(stopWatch.getTime(TimeUnit.MILLISECONDS), result.getNumResults())) {
+            try {
+                cacheManager.set(key, objectMapper.writeValueAsBytes(result));
+            } catch (IOException | RuntimeException e) {
+                logger.warn("Unable to cache result", e);
+            }
+        }
+        return result;
+    }
+
+    public DataResult<Long> count(Query query, Supplier<DataResult<Long>> supplier) {
+        if (!useCache(null)) {
+            return supplier.get();
+        }
+        StopWatch stopWatch = StopWatch.createStarted();
+        String key = createKey(COUNT_TYPE, query, null);
+        if (key == null) {
+            return supplier.get();
+        }
+        byte[] bytes = cacheManager.get(key);
+        if (bytes != null) {
+            long count = Longs.fromByteArray(bytes);
+            int time = (int) stopWatch.getTime(TimeUnit.MILLISECONDS);
+            return new DataResult<>(time, Collections.emptyList(), 1, Collections.singletonList(count), 1);
+        }
+
+        DataResult<Long> result = supplier.get();
+        if (result.first() != null && cacheManager.isCacheable(stopWatch.getTime(TimeUnit.MILLISECONDS), 1)) {
+            cacheManager.set(key, Longs.toByteArray(result.first()));
+        }
+        return result;
+    }
+
+    /**
+     * Remove the local cached results from this namespace, and read the data version again on the next request.
+     * Remote cached results become unreachable once the data version is increased.
+     */
+    public void invalidate() {
+        synchronized (this) {
+            dataVersionValid = false;
+        }
+        cacheManager.invalidate(namespace);
+    }
+
+    public void close() {
+        cacheManager.close();
+    }
+
+    /**
+     * Create the key for the current data version.
+     *
+     * @param type      Type of result
+     * @param query     Query
+     * @param options   QueryOptions
+     * @return          the key, or null if the data version is not available
+     */
+    private String createKey(String type, Query query, QueryOptions options) {
+        int dataVersion;
+        try {
+            dataVersion = getDataVersion();
+        } catch (StorageEngineException | RuntimeException e) {
+            logger.warn("Unable to read data version. Ignore cache", e);
+            return null;
+        }
+        return cacheManager.createKey(namespace, type + "_v" + dataVersion, query, options);
+    }
+
+    private synchronized int getDataVersion() throws StorageEngineException {
+        long now = System.nanoTime();
+        if (!dataVersionValid || now - dataVersionExpiration >= 0) {
+            dataVersion = metadataManager.getDataVersion();
+            dataVersionExpiration = now + dataVersionTtlNanos;
+            dataVersionValid = true;
+        }
+        return dataVersion;
+    }
+
+    private boolean useCache(QueryOptions options) {
+        return isActive() && (options == null || options.getBoolean(CacheManager.CACHE, true));
+    }
+}
@@ -0,0 +1,172 @@
+package org.opencb.opencga.storage.core.variant.query;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.opencb.biodata.models.core.Region;
+import org.opencb.commons.datastore.core.Query;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryUtils;
+
+import java.util.*;
+
+import static org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam.*;
+import static org.opencb.opencga.storage.core.variant.adaptors.VariantQueryUtils.*;
+
+/**
+ * Estimates the selectivity of the filters of a variant query, this is, the fraction of variants from the
+ * whole genome that would pass the filter.
+ *
+ * Selectivities are static estimates for a typical germline study, and filters are assumed to be independent.
+ * Used by the {@link VariantQueryPlanner} to compare the cost of the different {@link VariantQueryExecutor}s.
+ */
+public final class VariantQuerySelectivity {
+
+    public static final double GENOME_LENGTH = AbstractTwoPhasedVariantQueryExecutor.CHR1_LENGTH
+            * (double) AbstractTwoPhasedVariantQueryExecutor.MAGIC_NUMBER;
+    public static final double DEFAULT_SELECTIVITY = 0.5;
+    /** Filters resolved by the primary key or the secondary indexes of the variants storage. */
+    public static final Set<VariantQueryParam> LOCATION_PARAMS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            REGION, ID, GENE, ANNOT_XREF)));
+
+    private static final Map<VariantQueryParam, Double> SELECTIVITY;
+
+    static {
+        Map<VariantQueryParam, Double> map = new EnumMap<>(VariantQueryParam.class);
+        map.put(ID, 1e-8);
+        map.put(GENE, 5e-5);
+        map.put(ANNOT_XREF, 1e-5);
+        map.put(TYPE, 0.2);
+        map.put(SAMPLE, 0.1);
+        map.put(GENOTYPE, 0.1);
+        map.put(FILE, 0.2);
+        map.put(FILTER, 0.7);
+        map.put(QUAL, 0.7);
+        map.put(COHORT, 0.9);
+        map.put(STATS_MAF, 0.2);
+        map.put(STATS_ALT, 0.2);
+        map.put(STATS_REF, 0.8);
+        map.put(STATS_MGF, 0.2);
+        map.put(ANNOTATION_EXISTS, 0.9);
+        map.put(ANNOT_BIOTYPE, 0.4);
+        map.put(ANNOT_CONSEQUENCE_TYPE, 0.02);
+        map.put(ANNOT_POLYPHEN, 0.01);
+        map.put(ANNOT_SIFT, 0.01);
+        map.put(ANNOT_PROTEIN_SUBSTITUTION, 0.01);
+        map.put(ANNOT_CONSERVATION, 0.1);
+        map.put(ANNOT_FUNCTIONAL_SCORE, 0.1);
+        map.put(ANNOT_POPULATION_ALTERNATE_FREQUENCY, 0.1);
+        map.put(ANNOT_POPULATION_MINOR_ALLELE_FREQUENCY, 0.1);
+        map.put(ANNOT_POPULATION_REFERENCE_FREQUENCY, 0.1);
+        map.put(ANNOT_TRANSCRIPT_FLAG, 0.1);
+        map.put(ANNOT_CLINICAL_SIGNIFICANCE, 1e-4);
+        map.put(ANNOT_CLINVAR, 1e-4);
+        map.put(ANNOT_COSMIC, 1e-3);
+        map.put(ANNOT_TRAIT, 1e-4);
+        map.put(ANNOT_GENE_TRAIT_ID, 1e-3);
+        map.put(ANNOT_GENE_TRAIT_NAME, 1e-3);
+        map.put(ANNOT_HPO, 1e-3);
+        map.put(ANNOT_GO, 1e-2);
+        map.put(ANNOT_EXPRESSION, 1e-2);
+        map.put(ANNOT_PROTEIN_KEYWORD, 1e-2);
+        map.put(ANNOT_DRUG, 1e-3);
+        SELECTIVITY = Collections.unmodifiableMap(map);
+    }
+
+    private VariantQuerySelectivity() {
+    }
+
+    /**
+     * Estimate the combined selectivity of all the filters from the query.
+     *
+     * @param query Query
+     * @return      Fraction of variants expected to pass all the filters
+     */
+    public static double selectivity(Query query) {
+        return selectivity(query, validParams(query, true));
+    }
+
+    /**
+     * Estimate the combined selectivity of the given filters from the query. Filters not present in the query are ignored.
+     *
+     * @param query  Query
+     * @param params Filters to consider
+     * @return       Fraction of variants expected to pass the filters
+     */
+    public static double selectivity(Query query, Collection<VariantQueryParam> params) {
+        double selectivity = 1;
+        boolean location = false;
+        for (VariantQueryParam param : params) {
+            if (MODIFIER_QUERY_PARAMS.contains(param) || STUDY.equals(param) || !isValidParam(query, param)) {
+                continue;
+            }
+            if (LOCATION_PARAMS.contains(param)) {
+                // Location filters are combined with OR
+                location = true;
+            } else {
+                selectivity *= selectivity(query, param);
+            }
+        }
+        if (location) {
+            selectivity *= locationSelectivity(query);
+        }
+        return selectivity;
+    }
+
+    /**
+     * Estimate the selectivity of the location filters (region, gene, id and xref), combined with OR.
+     *
+     * @param query Query
+     * @return      Fraction of the genome covered by the location filters
+     */
+    public static double locationSelectivity(Query query) {
+        double selectivity = 0;
+        boolean any = false;
+        for (VariantQueryParam param : LOCATION_PARAMS) {
+            if (isValidParam(query, param)) {
+                any = true;
+                selectivity += selectivity(query, param);
+            }
+        }
+        return any ? Math.min(1, selectivity) : 1;
+    }
+
+    /**
+     * Estimate the selectivity of one single filter.
+     *
+     * @param query Query
+     * @param param Filter
+     * @return      Fraction of variants expected to pass the filter
+     */
+    public static double selectivity(Query query, VariantQueryParam param) {
+        if (!isValidParam(query, param)) {
+            return 1;
+        }
+        String value = query.getString(param.key());
+        if (REGION.equals(param)) {
+            long length = 0;
+            for (Region region : Region.parseRegions(value)) {
+                long end = Math.min(region.getEnd(), AbstractTwoPhasedVariantQueryExecutor.CHR1_LENGTH);
+                length += Math.max(1, end - region.getStart() + 1);
+            }
+            return Math.min(1, length / GENOME_LENGTH);
+        }
+        double selectivity = SELECTIVITY.getOrDefault(param, DEFAULT_SELECTIVITY);
+        VariantQueryUtils.QueryOperation operation;
+        int numValues;
+        if (GENOTYPE.equals(param)) {
+            Map<Object, List<String>> map = new HashMap<>();
+            operation = parseGenotypeFilter(value, map);
+            numValues = map.size();
+        } else {
+            Pair<VariantQueryUtils.QueryOperation, List<String>> pair = splitValue(value);
+            operation = pair.getKey();
+            numValues = (int) pair.getValue().stream().filter(v -> !isNegated(v)).count();
+        }
+        if (numValues <= 1) {
+            return numValues == 0 ? 1 - selectivity : selectivity;
+        } else if (VariantQueryUtils.QueryOperation.AND.equals(operation)) {
+            return Math.pow(selectivity, numValues);
+        } else {
+            return Math.min(1, selectivity * numValues);
+        }
+    }
+}
@@ -36,6 +36,12 @@ public class SamplesSearchIndexVariantQueryExecutor extends AbstractSearchIndexV
         return samplesCollection != null && searchActiveAndAlive(samplesCollection);
     }
 
+    @Override
+    public boolean isRequired(Query query, QueryOptions options) {
+        // Specific collections are built on purpose for these samples
+        return true;
+    }
+
     @Override
     public DataResult<Long> count(Query query) {
         try {
@@ -1,6 +1,5 @@
 package org.opencb.opencga.storage.core.variant.search;
 
-import com.google.common.collect.Iterators;
 import org.apache.commons.lang3.time.StopWatch;
 import org.opencb.biodata.models.variant.Variant;
 import org.opencb.commons.datastore.core.DataResult;
@@ -13,8 +12,10 @@ import org.opencb.opencga.storage.core.exceptions.StorageEngineException;
 import org.opencb.opencga.storage.core.exceptions.VariantSearchException;
 import org.opencb.opencga.storage.core.variant.VariantStorageEngine;
 import org.opencb.opencga.storage.core.variant.adaptors.*;
+import org.opencb.opencga.storage.core.variant.query.VariantQueryProfile;
+import org.opencb.opencga.storage.core.variant.query.VariantQuerySelectivity;
+import org.opencb.opencga.storage.core.variant.search.solr.VariantIdSolrIterator;
 import org.opencb.opencga.storage.core.variant.search.solr.VariantSearchManager;
-import org.opencb.opencga.storage.core.variant.search.solr.VariantSearchSolrIterator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -42,6 +43,9 @@ import static org.opencb.opencga.storage.core.variant.search.solr.VariantSearchM
  */
 public class SearchIndexVariantQueryExecutor extends AbstractSearchIndexVariantQueryExecutor {
 
+    // Cost of a request to the search engine, and of reading each matching document
+    private static final double SEARCH_REQUEST_COST = 1e-4;
+    private static final double SEARCH_DOCUMENT_COST = 2;
     private Logger logger = LoggerFactory.getLogger(SearchIndexVariantQueryExecutor.class);
 
     public SearchIndexVariantQueryExecutor(VariantDBAdaptor dbAdaptor, VariantSearchManager searchManager,
@@ -55,6 +59,24 @@ public class SearchIndexVariantQueryExecutor extends AbstractSearchIndexVariantQ
         return doQuerySearchManager(query, options) || doIntersectWithSearch(query, options);
     }
 
+    @Override
+    public boolean isRequired(Query query, QueryOptions options) {
+        return VariantStorageEngine.UseSearchIndex.from(options).equals(VariantStorageEngine.UseSearchIndex.YES)
+                || VariantQueryUtils.isValidParam(query, VariantQueryParam.ANNOT_TRAIT);
+    }
+
+    @Override
+    public double estimateCost(Query query, QueryOptions options) {
+        double selectivity = VariantQuerySelectivity.selectivity(query, coveredParams(query));
+        double searchCost = SEARCH_REQUEST_COST + SEARCH_DOCUMENT_COST * selectivity;
+        if (doQuerySearchManager(query, options)) {
+            return searchCost;
+        } else {
+            // Fetch each variant from the search engine from the variants storage, and filter the uncovered params
+            return searchCost + RANDOM_ACCESS_COST * selectivity;
+        }
+    }
+
     @Override
     public DataResult<Long> count(Query query) {
         try {
@@ -78,7 +100,14 @@ public class SearchIndexVariantQueryExecutor extends AbstractSearchIndexVariantQ
                 if (iterator) {
                     return searchManager.iterator(dbName, query, options);
                 } else {
-                    return searchManager.query(dbName, query, options);
+                    long start = System.nanoTime();
+                    VariantQueryResult<Variant> result = searchManager.query(dbName, query, options);
+                    VariantQueryProfile profile = VariantQueryProfile.current();
+                    if (profile != null) {
+                        profile.addBackend(SEARCH_ENGINE_ID, result.getNumMatches(), result.getNumResults(), VariantQueryProfile.UNKNOWN,
+                                System.nanoTime() - start, 0);
+                    }
+                    return result;
                 }
             } catch (IOException | VariantSearchException e) {
                 throw new VariantQueryException("Error querying Solr", e);
@@ -136,6 +165,7 @@ public class SearchIndexVariantQueryExecutor extends AbstractSearchIndexVariantQ
             }
 
             logger.debug("Intersect query " + engineQuery.toJson() + " options " + options.toJson());
+            setDefaultPrefetch(options);
             if (iterator) {
                 return dbAdaptor.iterator(variantsIterator, engineQuery, options);
             } else {
@@ -267,11 +297,21 @@ public class SearchIndexVariantQueryExecutor extends AbstractSearchIndexVariantQ
     }
 
     protected Iterator<String> variantIdIteratorFromSearch(Query query, int limit, int skip, AtomicLong numTotalResults) {
+        VariantQueryProfile profile = VariantQueryProfile.current();
+        if (profile != null && numTotalResults == null) {
+            // Get the number of matching documents for the profile
+            numTotalResults = new AtomicLong(VariantQueryProfile.UNKNOWN);
+        }
+        long start = System.nanoTime();
         Iterator<String> variantsIterator;
+        long returned;
         QueryOptions queryOptions = new QueryOptions()
                 .append(QueryOptions.LIMIT, limit)
                 .append(QueryOptions.SKIP, skip)
-                .append(QueryOptions.INCLUDE, VariantField.ID.fieldName());
+                .append(QueryOptions.INCLUDE, VariantField.ID.fieldName())
+                // Same order as the iterators, so pages are consistent regardless of the limit
+                .append(QueryOptions.SORT, "id")
+                .append(QueryOptions.ORDER, QueryOptions.ASCENDING);
         try {
             // Do not iterate for small queries
             if (limit < 10000) {
@@ -279,20 +319,34 @@ public class SearchIndexVariantQueryExecutor extends AbstractSearchIndexVariantQ
                 if (numTotalResults != null) {
                     numTotalResults.set(nativeResult.getNumMatches());
                 }
+                returned = nativeResult.getNumResults();
                 variantsIterator = nativeResult.getResults()
                         .stream()
                         .map(VariantSearchModel::getId)
                         .iterator();
             } else {
-                VariantSearchSolrIterator nativeIterator = searchManager.nativeIterator(dbName, query, queryOptions);
+                boolean export = getOptions().getBoolean(INTERSECT_EXPORT_ACTIVE.key(), INTERSECT_EXPORT_ACTIVE.defaultValue());
+                // Only ids are needed. Stream them without building VariantSearchModel objects
+                variantsIterator = searchManager.variantIdIterator(dbName, query, queryOptions, export);
                 if (numTotalResults != null) {
-                    numTotalResults.set(nativeIterator.getNumFound());
+                    if (variantsIterator instanceof VariantIdSolrIterator) {
+                        numTotalResults.set(((VariantIdSolrIterator) variantsIterator).getNumFound());
+                    } else {
+                        numTotalResults.set(searchManager.count(dbName, query));
+                    }
                 }
-                variantsIterator = Iterators.transform(nativeIterator, VariantSearchModel::getId);
+                // Ids are streamed lazily. Report the number of ids requested
+                returned = numTotalResults == null
+                        ? VariantQueryProfile.UNKNOWN
+                        : Math.max(0, Math.min(limit, numTotalResults.get() - skip));
             }
         } catch (VariantSearchException | IOException e) {
             throw new VariantQueryException("Error querying " + VariantSearchManager.SEARCH_ENGINE_ID, e);
         }
+        if (profile != null) {
+            profile.addBackend(SEARCH_ENGINE_ID, numTotalResults.get(), Math.max(0, returned), VariantQueryProfile.UNKNOWN,
+                    System.nanoTime() - start, 0);
+        }
         return variantsIterator;
     }
 
@@ -0,0 +1,143 @@
+package org.opencb.opencga.storage.core.variant.search.solr;
+
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.client.solrj.impl.CloudSolrClient;
+import org.apache.solr.client.solrj.impl.HttpSolrClient;
+import org.apache.solr.client.solrj.io.SolrClientCache;
+import org.apache.solr.client.solrj.io.Tuple;
+import org.apache.solr.client.solrj.io.stream.CloudSolrStream;
+import org.apache.solr.client.solrj.io.stream.SolrStream;
+import org.apache.solr.client.solrj.io.stream.StreamContext;
+import org.apache.solr.client.solrj.io.stream.TupleStream;
+import org.apache.solr.common.params.CommonParams;
+import org.apache.solr.common.params.ModifiableSolrParams;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryException;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Stream the ids of the variants matching a Solr query using the "/export" handler.
+ *
+ * The export handler streams the whole result set sorted by "id" reading from docValues, with no pagination at all.
+ * Ids are read one by one from the stream, so this iterator runs in constant memory regardless of the number of results.
+ * The stream is closed as soon as the limit is reached.
+ *
+ * Only {@link CloudSolrClient} and {@link HttpSolrClient} are supported, see {@link #isSupported}.
+ */
+public class VariantIdSolrExportIterator implements Iterator<String>, AutoCloseable {
+
+    public static final String EXPORT_HANDLER = "/export";
+
+    private final TupleStream stream;
+    private final SolrClientCache solrClientCache;
+    private Tuple next;
+    private long remaining;
+    private boolean closed;
+
+    public VariantIdSolrExportIterator(SolrClient solrClient, String collection, SolrQuery solrQuery) {
+        if (!isSupported(solrClient)) {
+            throw new IllegalArgumentException("Solr client " + solrClient.getClass() + " not supported for " + EXPORT_HANDLER);
+        }
+        ModifiableSolrParams params = new ModifiableSolrParams();
+        params.set(CommonParams.Q, solrQuery.getQuery() == null ? "*:*" : solrQuery.getQuery());
+        if (solrQuery.getFilterQueries() != null) {
+            params.set(CommonParams.FQ, solrQuery.getFilterQueries());
+        }
+        params.set(CommonParams.FL, "id");
+        params.set(CommonParams.SORT, "id asc");
+        params.set(CommonParams.QT, EXPORT_HANDLER);
+
+        remaining = (solrQuery.getRows() == null || solrQuery.getRows() < 0) ? Long.MAX_VALUE : solrQuery.getRows();
+        int skip = solrQuery.getStart() == null || solrQuery.getStart() < 0 ? 0 : solrQuery.getStart();
+
+        solrClientCache = new SolrClientCache();
+        StreamContext context = new StreamContext();
+        context.setSolrClientCache(solrClientCache);
+        try {
+            if (solrClient instanceof CloudSolrClient) {
+                stream = new CloudSolrStream(((CloudSolrClient) solrClient).getZkHost(), collection, params);
+            } else {
+                String baseUrl = ((HttpSolrClient) solrClient).getBaseURL();
+                stream = new SolrStream(baseUrl.endsWith("/") ? baseUrl + collection : baseUrl + "/" + collection, params);
+            }
+            stream.setStreamContext(context);
+            stream.open();
+        } catch (IOException e) {
+            close();
+            throw new VariantQueryException("Error opening " + EXPORT_HANDLER + " stream", e);
+        }
+
+        // The export handler does not support start. Skip the ids in the client side
+        for (int i = 0; i < skip && fetch(); i++) {
+            next = null;
+        }
+    }
+
+    public static boolean isSupported(SolrClient solrClient) {
+        return solrClient instanceof CloudSolrClient || solrClient instanceof HttpSolrClient;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (remaining <= 0) {
+            // Limit reached. Stop the export stream, as Solr would keep streaming the whole result set
+            close();
+            return false;
+        }
+        return fetch();
+    }
+
+    @Override
+    public String next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        remaining--;
+        String id = next.getString("id");
+        next = null;
+        if (remaining <= 0) {
+            close();
+        }
+        return id;
+    }
+
+    private boolean fetch() {
+        if (next != null) {
+            return true;
+        }
+        if (closed) {
+            return false;
+        }
+        try {
+            Tuple tuple = stream.read();
+            if (tuple.EOF) {
+                close();
+                return false;
+            }
+            next = tuple;
+            return true;
+        } catch (IOException e) {
+            close();
+            throw new VariantQueryException("Error reading from " + EXPORT_HANDLER + " stream", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            try {
+                if (stream != null) {
+                    stream.close();
+                }
+            } catch (IOException e) {
+                throw new VariantQueryException("Error closing " + EXPORT_HANDLER + " stream", e);
+            } finally {
+                solrClientCache.close();
+            }
+        }
+    }
+}
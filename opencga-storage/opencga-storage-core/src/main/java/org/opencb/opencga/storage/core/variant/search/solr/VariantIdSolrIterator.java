@@ -0,0 +1,119 @@
+package org.opencb.opencga.storage.core.variant.search.solr;
+
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.response.QueryResponse;
+import org.apache.solr.common.SolrDocumentList;
+import org.apache.solr.common.params.CursorMarkParams;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryException;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterate over the ids of the variants matching a Solr query, using cursorMark pagination.
+ *
+ * Only the "id" field is requested and read directly from the response documents, without binding
+ * {@link org.opencb.opencga.storage.core.variant.search.VariantSearchModel} objects, so large pages can be used.
+ * Only one page is kept in memory.
+ */
+public class VariantIdSolrIterator implements Iterator<String>, AutoCloseable {
+
+    public static final int DEFAULT_BATCH_SIZE = 10000;
+
+    private final SolrClient solrClient;
+    private final String collection;
+    private final SolrQuery solrQuery;
+    private final int batchSize;
+    private String cursorMark = CursorMarkParams.CURSOR_MARK_START;
+    private SolrDocumentList page;
+    private int pagePosition;
+    private long numFound = -1;
+    private long remaining;
+    private boolean lastPage;
+
+    public VariantIdSolrIterator(SolrClient solrClient, String collection, SolrQuery solrQuery) {
+        this(solrClient, collection, solrQuery, DEFAULT_BATCH_SIZE);
+    }
+
+    public VariantIdSolrIterator(SolrClient solrClient, String collection, SolrQuery solrQuery, int batchSize) {
+        this.solrClient = solrClient;
+        this.collection = collection;
+        this.solrQuery = solrQuery;
+        this.batchSize = batchSize;
+
+        // cursorMark requires a sort by the uniqueKey
+        solrQuery.setFields("id");
+        solrQuery.setSort(SolrQuery.SortClause.asc("id"));
+
+        remaining = (solrQuery.getRows() == null || solrQuery.getRows() < 0) ? Long.MAX_VALUE : solrQuery.getRows();
+        int skip = solrQuery.getStart() == null || solrQuery.getStart() < 0 ? 0 : solrQuery.getStart();
+        // cursorMark does not support start. Skip the ids in the client side
+        solrQuery.setStart(null);
+        for (int i = 0; i < skip && fetch(); i++) {
+            pagePosition++;
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        return remaining > 0 && fetch();
+    }
+
+    @Override
+    public String next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        remaining--;
+        return (String) page.get(pagePosition++).getFieldValue("id");
+    }
+
+    /**
+     * Number of variants matching the query, ignoring skip and limit.
+     *
+     * @return number of variants found
+     */
+    public long getNumFound() {
+        if (numFound < 0) {
+            fetch();
+        }
+        return Math.max(0, numFound);
+    }
+
+    /**
+     * Ensure there is an element available in the current page, fetching the next page if needed.
+     *
+     * @return false if there are no more results
+     */
+    private boolean fetch() {
+        if (page != null && pagePosition < page.size()) {
+            return true;
+        }
+        if (lastPage) {
+            return false;
+        }
+        try {
+            solrQuery.setRows(batchSize);
+            solrQuery.set(CursorMarkParams.CURSOR_MARK_PARAM, cursorMark);
+            QueryResponse response = solrClient.query(collection, solrQuery);
+            page = response.getResults();
+            pagePosition = 0;
+            numFound = page.getNumFound();
+            String nextCursorMark = response.getNextCursorMark();
+            lastPage = page.size() < batchSize || cursorMark.equals(nextCursorMark);
+            cursorMark = nextCursorMark;
+            return !page.isEmpty();
+        } catch (SolrServerException | IOException e) {
+            throw new VariantQueryException("Error searching more variants", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        page = null;
+        lastPage = true;
+    }
+}
@@ -0,0 +1,37 @@
+package org.opencb.opencga.storage.core.variant.search.solr;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+/**
+ * Position of a secondary index load that is known to be committed in the search engine.
+ *
+ * The first {@link #numVariants} variants returned by the input iterator were committed, being {@link #lastVariant}
+ * the last of them. A load over the same input can be resumed from this point.
+ */
+public class VariantSearchLoadCheckpoint {
+
+    private final long numVariants;
+    private final String lastVariant;
+
+    public VariantSearchLoadCheckpoint(long numVariants, String lastVariant) {
+        this.numVariants = numVariants;
+        this.lastVariant = lastVariant;
+    }
+
+    public long getNumVariants() {
+        return numVariants;
+    }
+
+    public String getLastVariant() {
+        return lastVariant;
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.JSON_STYLE)
+                .append("numVariants", numVariants)
+                .append("lastVariant", lastVariant)
+                .toString();
+    }
+}
@@ -0,0 +1,395 @@
+package org.opencb.opencga.storage.core.variant.search.solr;
+
+import org.apache.http.NoHttpResponseException;
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.response.UpdateResponse;
+import org.apache.solr.common.SolrException;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.commons.io.DataWriter;
+import org.opencb.opencga.storage.core.variant.search.VariantSearchModel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Writes batches of converted variants into a Solr collection using multiple concurrent update streams.
+ *
+ * The number of in-flight update requests adapts to the load of the Solr cluster. It is halved every time that Solr pushes back
+ * (HTTP 429/503/504, timeouts or connection errors), and slowly recovered after successful requests. Rejected requests are
+ * retried with an exponential backoff.
+ *
+ * Documents are committed every few batches. After each commit, the number of input variants committed contiguously from the
+ * beginning of the input is notified as a {@link VariantSearchLoadCheckpoint}, and the committed batches are notified to the
+ * {@link VariantSearchLoadListener}.
+ */
+public class VariantSearchLoadWriter implements DataWriter<VariantSearchLoadWriter.Batch> {
+
+    private static final long MIN_BACKOFF_MILLIS = 100;
+    private static final long MAX_BACKOFF_MILLIS = 30000;
+
+    private final SolrClient solrClient;
+    private final String collection;
+    private final VariantSearchLoadListener loadListener;
+    private final int maxStreams;
+    private final int maxRetries;
+    private final int checkpointInterval;
+    private final Consumer<VariantSearchLoadCheckpoint> checkpointListener;
+    private final AtomicReference<Exception> failure = new AtomicReference<>();
+    private final AtomicLong numLoadedVariants = new AtomicLong();
+    private ExecutorService executor;
+
+    // Adaptive concurrency limit. Guarded by streamsLock
+    private final Object streamsLock = new Object();
+    private int limit;
+    private int inFlight;
+    private int successes;
+
+    // Contiguous completed batches. Guarded by checkpointLock
+    private final Object checkpointLock = new Object();
+    private final TreeMap<Long, Batch> completedBatches = new TreeMap<>();
+    private long nextSequence;
+    private long committedVariants;
+    private String lastVariant;
+    private int batchesSinceCheckpoint;
+    // Batches added but not committed yet. Only the variants are kept, to notify the load listener after the commit
+    private final List<Batch> uncommittedBatches = new ArrayList<>();
+
+    private final Logger logger = LoggerFactory.getLogger(VariantSearchLoadWriter.class);
+
+    /**
+     * Batch of variants to load.
+     * Batches are numbered by the reader, so the writer can track which part of the input is completely loaded.
+     */
+    public static class Batch {
+        private final long sequence;
+        private final List<Variant> variants;
+        private final int numReadVariants;
+        private final String lastReadVariant;
+        private List<VariantSearchModel> models;
+
+        public Batch(long sequence, List<Variant> variants) {
+            this.sequence = sequence;
+            this.variants = variants;
+            this.numReadVariants = variants.size();
+            this.lastReadVariant = variants.isEmpty() ? null : variants.get(variants.size() - 1).toString();
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+
+        /**
+         * Variants to load. The load listener may discard some of them before being converted.
+         *
+         * @return list of variants
+         */
+        public List<Variant> getVariants() {
+            return variants;
+        }
+
+        public int getNumReadVariants() {
+            return numReadVariants;
+        }
+
+        public String getLastReadVariant() {
+            return lastReadVariant;
+        }
+
+        public List<VariantSearchModel> getModels() {
+            return models;
+        }
+
+        public Batch setModels(List<VariantSearchModel> models) {
+            this.models = models;
+            return this;
+        }
+    }
+
+    @FunctionalInterface
+    private interface SolrRequest<T> {
+        T execute() throws SolrServerException, IOException;
+    }
+
+    /**
+     * Create a new writer. The checkpoint this load resumes from is used as the starting point of the new checkpoints.
+     *
+     * @param solrClient          Solr client
+     * @param collection          Collection to load
+     * @param loadListener        Load listener, notified after each batch is committed
+     * @param maxStreams          Max number of concurrent update requests
+     * @param maxRetries          Max number of retries for each rejected request
+     * @param checkpointInterval  Number of batches between commits
+     * @param checkpoint          Checkpoint this load resumes from. May be null
+     * @param checkpointListener  Listener for new checkpoints. May be null
+     */
+    public VariantSearchLoadWriter(SolrClient solrClient, String collection, VariantSearchLoadListener loadListener,
+                                   int maxStreams, int maxRetries, int checkpointInterval,
+                                   VariantSearchLoadCheckpoint checkpoint, Consumer<VariantSearchLoadCheckpoint> checkpointListener) {
+        this.solrClient = solrClient;
+        this.collection = collection;
+        this.loadListener = loadListener;
+        this.maxStreams = Math.max(1, maxStreams);
+        this.maxRetries = maxRetries;
+        this.checkpointInterval = Math.max(1, checkpointInterval);
+        this.checkpointListener = checkpointListener;
+        this.limit = this.maxStreams;
+        if (checkpoint != null) {
+            committedVariants = checkpoint.getNumVariants();
+            lastVariant = checkpoint.getLastVariant();
+        }
+    }
+
+    @Override
+    public boolean open() {
+        executor = Executors.newFixedThreadPool(maxStreams, r -> {
+            Thread thread = new Thread(r, "solr-load-" + collection);
+            thread.setDaemon(true);
+            return thread;
+        });
+        return true;
+    }
+
+    @Override
+    public boolean write(List<Batch> batches) {
+        try {
+            for (Batch batch : batches) {
+                acquireStream();
+                if (failure.get() != null) {
+                    releaseStream();
+                    checkFailure();
+                }
+                executor.submit(() -> {
+                    try {
+                        load(batch);
+                    } catch (Exception e) {
+                        failure.compareAndSet(null, e);
+                    } finally {
+                        releaseStream();
+                    }
+                });
+            }
+            checkpoint(false);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (IOException | SolrServerException e) {
+            throw new RuntimeException(e);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean post() {
+        executor.shutdown();
+        try {
+            while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                logger.info("Waiting for {} update requests to finish", getInFlight());
+            }
+            checkFailure();
+            checkpoint(true);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (IOException | SolrServerException e) {
+            throw new RuntimeException(e);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean close() {
+        if (executor != null && !executor.isTerminated()) {
+            executor.shutdownNow();
+        }
+        return true;
+    }
+
+    public long getNumLoadedVariants() {
+        return numLoadedVariants.get();
+    }
+
+    private void load(Batch batch) throws Exception {
+        List<VariantSearchModel> models = batch.getModels();
+        if (models != null && !models.isEmpty()) {
+            UpdateResponse response = execute(() -> solrClient.addBeans(collection, models));
+            if (response.getStatus() != 0) {
+                throw new IOException("Error loading variants in Solr. Unexpected status " + response.getStatus());
+            }
+        }
+
+        synchronized (checkpointLock) {
+            // Only keep the needed information. Release the documents
+            batch.setModels(null);
+            uncommittedBatches.add(batch);
+            completedBatches.put(batch.getSequence(), batch);
+            while (!completedBatches.isEmpty() && completedBatches.firstKey() == nextSequence) {
+                Batch completed = completedBatches.pollFirstEntry().getValue();
+                committedVariants += completed.getNumReadVariants();
+                if (completed.getLastReadVariant() != null) {
+                    lastVariant = completed.getLastReadVariant();
+                }
+                nextSequence++;
+                batchesSinceCheckpoint++;
+            }
+        }
+    }
+
+    /**
+     * Commit and notify the checkpoint and the committed batches. Every document added before the commit is durable,
+     * so the checkpoint and the list of batches to notify are taken before committing.
+     *
+     * @param force Commit even if the checkpoint interval was not reached
+     */
+    private void checkpoint(boolean force) throws IOException, SolrServerException {
+        VariantSearchLoadCheckpoint checkpoint;
+        List<Batch> committedBatches;
+        synchronized (checkpointLock) {
+            if (!force && batchesSinceCheckpoint < checkpointInterval) {
+                return;
+            }
+            batchesSinceCheckpoint = 0;
+            checkpoint = new VariantSearchLoadCheckpoint(committedVariants, lastVariant);
+            committedBatches = new ArrayList<>(uncommittedBatches);
+            uncommittedBatches.clear();
+        }
+        execute(() -> solrClient.commit(collection));
+        logger.debug("Commit {}", checkpoint);
+        for (Batch batch : committedBatches) {
+            loadListener.postLoad(batch.getVariants());
+            numLoadedVariants.addAndGet(batch.getVariants().size());
+        }
+        if (checkpointListener != null && checkpoint.getNumVariants() > 0) {
+            checkpointListener.accept(checkpoint);
+        }
+    }
+
+    private <T> T execute(SolrRequest<T> request) throws IOException, SolrServerException {
+        int attempt = 0;
+        while (true) {
+            try {
+                T t = request.execute();
+                onSuccess();
+                return t;
+            } catch (SolrServerException | IOException | SolrException e) {
+                attempt++;
+                if (attempt > maxRetries || !isPushBack(e)) {
+                    throw e;
+                }
+                long backoff = onPushBack(attempt);
+                logger.warn("Solr update rejected: '{}'. Retry {}/{} in {}ms", e.getMessage(), attempt, maxRetries, backoff);
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException(interrupted);
+                }
+            }
+        }
+    }
+
+    /**
+     * Check if the error is a transient rejection from the server, which should be retried with a smaller number of streams.
+     * Only HTTP 429, 503 and 504 responses, timeouts and connection errors are considered push back.
+     * Any other error, like a schema mismatch or a bad request, is permanent.
+     *
+     * @param e Error from the Solr request
+     * @return  if the request should be retried
+     */
+    static boolean isPushBack(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SolrException) {
+                int code = ((SolrException) cause).code();
+                return code == 429 || code == SolrException.ErrorCode.SERVICE_UNAVAILABLE.code || code == 504;
+            } else if (cause instanceof InterruptedIOException
+                    || cause instanceof SocketException
+                    || cause instanceof NoHttpResponseException) {
+                // Timeouts, connection refused or reset, or connection dropped without response
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void acquireStream() throws InterruptedException {
+        synchronized (streamsLock) {
+            while (inFlight >= limit && failure.get() == null) {
+                streamsLock.wait();
+            }
+            inFlight++;
+        }
+    }
+
+    private void releaseStream() {
+        synchronized (streamsLock) {
+            inFlight--;
+            streamsLock.notifyAll();
+        }
+    }
+
+    private int getInFlight() {
+        synchronized (streamsLock) {
+            return inFlight;
+        }
+    }
+
+    private void onSuccess() {
+        synchronized (streamsLock) {
+            // Additive increase. Increase the limit after a full round of successful requests
+            if (limit < maxStreams && ++successes >= limit) {
+                limit++;
+                successes = 0;
+                streamsLock.notifyAll();
+            }
+        }
+    }
+
+    private long onPushBack(int attempt) {
+        synchronized (streamsLock) {
+            // Multiplicative decrease
+            int newLimit = Math.max(1, limit / 2);
+            if (newLimit != limit) {
+                logger.info("Reduce concurrent Solr update requests from {} to {}", limit, newLimit);
+                limit = newLimit;
+            }
+            successes = 0;
+        }
+        long backoff = Math.min(MAX_BACKOFF_MILLIS, MIN_BACKOFF_MILLIS << Math.min(attempt, 16));
+        // Add jitter, so the streams don't retry all at the same time
+        return backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+    }
+
+    private void checkFailure() {
+        Exception e = failure.get();
+        if (e != null) {
+            if (e instanceof RuntimeException) {
+                throw (RuntimeException) e;
+            } else {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "VariantSearchLoadWriter{"
+                + "collection='" + collection + '\''
+                + ", maxStreams=" + maxStreams
+                + ", maxRetries=" + maxRetries
+                + ", checkpointInterval=" + checkpointInterval
+                + '}';
+    }
+}
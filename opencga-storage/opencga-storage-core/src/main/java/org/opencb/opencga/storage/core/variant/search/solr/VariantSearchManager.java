@@ -38,6 +38,7 @@ import org.opencb.commons.datastore.solr.FacetQueryParser;
 import org.opencb.commons.datastore.solr.SolrCollection;
 import org.opencb.commons.datastore.solr.SolrManager;
 import org.opencb.commons.run.ParallelTaskRunner;
+import org.opencb.commons.run.Task;
 import org.opencb.commons.utils.CollectionUtils;
 import org.opencb.commons.utils.ListUtils;
 import org.opencb.opencga.core.common.TimeUtils;
@@ -47,6 +48,7 @@ import org.opencb.opencga.storage.core.config.StorageConfiguration;
 import org.opencb.opencga.storage.core.exceptions.StorageEngineException;
 import org.opencb.opencga.storage.core.exceptions.VariantSearchException;
 import org.opencb.opencga.storage.core.metadata.VariantStorageMetadataManager;
+import org.opencb.opencga.storage.core.variant.VariantStorageOptions;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantField;
 import org.opencb.opencga.storage.core.variant.adaptors.iterators.VariantDBIterator;
 import org.opencb.opencga.storage.core.variant.io.VariantReaderUtils;
@@ -62,6 +64,7 @@ import java.net.URI;
 import java.util.*;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 
 /**
@@ -74,6 +77,7 @@ public class VariantSearchManager {
     private CellBaseClient cellBaseClient;
     private SolrQueryParser solrQueryParser;
     private StorageConfiguration storageConfiguration;
+    private VariantStorageMetadataManager metadataManager;
     private VariantSearchToVariantConverter variantSearchToVariantConverter;
     private int insertBatchSize;
 
@@ -83,6 +87,7 @@ public class VariantSearchManager {
     public static final String SEARCH_ENGINE_ID = "solr";
     public static final String USE_SEARCH_INDEX = "useSearchIndex";
     public static final int DEFAULT_INSERT_BATCH_SIZE = 10000;
+    public static final String SEARCH_LOAD_CHECKPOINT = "search.load.checkpoint";
 
     @Deprecated
     public VariantSearchManager(String host, String collection) {
@@ -91,6 +96,7 @@ public class VariantSearchManager {
 
     public VariantSearchManager(VariantStorageMetadataManager variantStorageMetadataManager, StorageConfiguration storageConfiguration) {
         this.storageConfiguration = storageConfiguration;
+        this.metadataManager = variantStorageMetadataManager;
 
         this.solrQueryParser = new SolrQueryParser(variantStorageMetadataManager);
         this.cellBaseClient = new CellBaseClient(storageConfiguration.getCellbase().toClientConfiguration());
@@ -232,37 +238,73 @@ public class VariantSearchManager {
      */
     public VariantSearchLoadResult load(String collection, VariantDBIterator variantDBIterator, ProgressLogger progressLogger,
                                         VariantSearchLoadListener loadListener) throws VariantSearchException {
+        return load(collection, variantDBIterator, progressLogger, loadListener, new ObjectMap());
+    }
+
+    /**
+     * Load a Solr core/collection from a variant DB iterator.
+     *
+     * Reading from the iterator, converting into Solr documents and writing into Solr run in separated stages connected by
+     * bounded queues. Documents are sent to Solr using multiple concurrent update streams, see {@link VariantSearchLoadWriter}.
+     *
+     * Loads can be resumed with {@link VariantStorageOptions#RESUME} from the last checkpoint, as long as the iterator
+     * returns the same variants in the same order.
+     *
+     * @param collection        Collection name
+     * @param variantDBIterator Iterator to retrieve the variants to load
+     * @param progressLogger    Progress logger
+     * @param loadListener      Load listener
+     * @param options           Load options. See SEARCH_LOAD_* at {@link VariantStorageOptions}
+     * @return VariantSearchLoadResult
+     * @throws VariantSearchException VariantSearchException
+     */
+    public VariantSearchLoadResult load(String collection, VariantDBIterator variantDBIterator, ProgressLogger progressLogger,
+                                        VariantSearchLoadListener loadListener, ObjectMap options) throws VariantSearchException {
         if (variantDBIterator == null) {
             throw new VariantSearchException("Missing variant DB iterator when loading Solr variant collection");
         }
 
+        int convertThreads = options.getInt(VariantStorageOptions.SEARCH_LOAD_CONVERT_THREADS.key(),
+                VariantStorageOptions.SEARCH_LOAD_CONVERT_THREADS.defaultValue());
+        int streams = options.getInt(VariantStorageOptions.SEARCH_LOAD_STREAMS.key(),
+                VariantStorageOptions.SEARCH_LOAD_STREAMS.defaultValue());
+        int capacity = options.getInt(VariantStorageOptions.SEARCH_LOAD_QUEUE_CAPACITY.key(),
+                VariantStorageOptions.SEARCH_LOAD_QUEUE_CAPACITY.defaultValue());
+        int maxRetries = options.getInt(VariantStorageOptions.SEARCH_LOAD_MAX_RETRIES.key(),
+                VariantStorageOptions.SEARCH_LOAD_MAX_RETRIES.defaultValue());
+        int checkpointInterval = options.getInt(VariantStorageOptions.SEARCH_LOAD_CHECKPOINT_INTERVAL.key(),
+                VariantStorageOptions.SEARCH_LOAD_CHECKPOINT_INTERVAL.defaultValue());
+        boolean resume = options.getBoolean(VariantStorageOptions.RESUME.key(), VariantStorageOptions.RESUME.defaultValue());
+
+        VariantSearchLoadCheckpoint checkpoint = resume ? getLoadCheckpoint(collection) : null;
+        if (checkpoint != null) {
+            logger.info("Resume Variant Search load from {}", checkpoint);
+            skip(variantDBIterator, checkpoint);
+        }
+
         AtomicInteger count = new AtomicInteger();
-        AtomicInteger numLoadedVariants = new AtomicInteger();
+        AtomicLong sequence = new AtomicLong();
+
+        VariantSearchLoadWriter writer = new VariantSearchLoadWriter(solrManager.getSolrClient(), collection, loadListener,
+                streams, maxRetries, checkpointInterval, checkpoint, c -> saveLoadCheckpoint(collection, c));
 
-        ParallelTaskRunner<Variant, Variant> ptr = new ParallelTaskRunner<>((n) -> {
-            List<Variant> batch = new ArrayList<>(n);
-            while (batch.size() < n && variantDBIterator.hasNext()) {
-                batch.add(variantDBIterator.next());
+        ParallelTaskRunner<VariantSearchLoadWriter.Batch, VariantSearchLoadWriter.Batch> ptr = new ParallelTaskRunner<>(n -> {
+            // Each read produces one numbered batch of insertBatchSize variants
+            List<Variant> variants = new ArrayList<>(insertBatchSize);
+            while (variants.size() < insertBatchSize && variantDBIterator.hasNext()) {
+                variants.add(variantDBIterator.next());
             }
-            count.addAndGet(batch.size());
-            return batch;
-        }, batch -> {
-            progressLogger.increment(batch.size(), () -> "up to position " + batch.get(batch.size() - 1).toString());
-            return batch;
-        }, batch -> {
-            try {
-                loadListener.preLoad(batch);
-                numLoadedVariants.addAndGet(batch.size());
-                insert(collection, batch);
-                loadListener.postLoad(batch);
-            } catch (SolrServerException | IOException e) {
-                throw new RuntimeException(e);
+            if (variants.isEmpty()) {
+                return Collections.emptyList();
             }
-            return true;
-        }, ParallelTaskRunner.Config.builder()
-                .setBatchSize(insertBatchSize)
-                .setCapacity(2)
-                .setNumTasks(1)
+            count.addAndGet(variants.size());
+            return Collections.singletonList(new VariantSearchLoadWriter.Batch(sequence.getAndIncrement(), variants));
+        }, () -> newConvertTask(loadListener, progressLogger), writer, ParallelTaskRunner.Config.builder()
+                .setBatchSize(1)
+                .setCapacity(capacity)
+                .setNumTasks(convertThreads)
+                .setSorted(false)
+                .setAbortOnFail(true)
                 .build());
 
         StopWatch stopWatch = StopWatch.createStarted();
@@ -273,9 +315,77 @@ public class VariantSearchManager {
         }
 
         loadListener.close();
+        saveLoadCheckpoint(collection, null);
+
+        logger.info("Variant Search loading done. " + writer.getNumLoadedVariants() + " variants indexed in "
+                + TimeUtils.durationToString(stopWatch));
+        return new VariantSearchLoadResult(count.get(), writer.getNumLoadedVariants(), 0);
+    }
+
+    private Task<VariantSearchLoadWriter.Batch, VariantSearchLoadWriter.Batch> newConvertTask(VariantSearchLoadListener loadListener,
+                                                                                            ProgressLogger progressLogger) {
+        // VariantSearchToVariantConverter is not thread safe. Use one per task
+        VariantSearchToVariantConverter converter = new VariantSearchToVariantConverter();
+        return batches -> {
+            for (VariantSearchLoadWriter.Batch batch : batches) {
+                List<Variant> variants = batch.getVariants();
+                progressLogger.increment(variants.size(), () -> "up to position " + variants.get(variants.size() - 1).toString());
+                synchronized (loadListener) {
+                    loadListener.preLoad(variants);
+                }
+                batch.setModels(converter.convertListToStorageType(variants));
+            }
+            return batches;
+        };
+    }
 
-        logger.info("Variant Search loading done. " + numLoadedVariants + " variants indexed in " + TimeUtils.durationToString(stopWatch));
-        return new VariantSearchLoadResult(count.get(), numLoadedVariants.get(), 0);
+    private void skip(VariantDBIterator variantDBIterator, VariantSearchLoadCheckpoint checkpoint) throws VariantSearchException {
+        Variant variant = null;
+        for (long i = 0; i < checkpoint.getNumVariants() && variantDBIterator.hasNext(); i++) {
+            variant = variantDBIterator.next();
+        }
+        if (variant == null || !variant.toString().equals(checkpoint.getLastVariant())) {
+            throw new VariantSearchException("Unable to resume Variant Search load from " + checkpoint
+                    + ". Input variants do not match. Found " + variant);
+        }
+    }
+
+    private VariantSearchLoadCheckpoint getLoadCheckpoint(String collection) {
+        if (metadataManager == null) {
+            return null;
+        }
+        ObjectMap attributes = metadataManager.getProjectMetadata().getAttributes();
+        String key = SEARCH_LOAD_CHECKPOINT + "." + collection;
+        if (attributes.getLong(key + ".numVariants") > 0) {
+            return new VariantSearchLoadCheckpoint(attributes.getLong(key + ".numVariants"), attributes.getString(key + ".lastVariant"));
+        } else {
+            return null;
+        }
+    }
+
+    private void saveLoadCheckpoint(String collection, VariantSearchLoadCheckpoint checkpoint) {
+        if (metadataManager == null) {
+            return;
+        }
+        String key = SEARCH_LOAD_CHECKPOINT + "." + collection;
+        if (checkpoint == null && !metadataManager.getProjectMetadata().getAttributes().containsKey(key + ".numVariants")) {
+            return;
+        }
+        try {
+            metadataManager.updateProjectMetadata(projectMetadata -> {
+                if (checkpoint == null) {
+                    projectMetadata.getAttributes().remove(key + ".numVariants");
+                    projectMetadata.getAttributes().remove(key + ".lastVariant");
+                } else {
+                    projectMetadata.getAttributes().put(key + ".numVariants", checkpoint.getNumVariants());
+                    projectMetadata.getAttributes().put(key + ".lastVariant", checkpoint.getLastVariant());
+                }
+                return projectMetadata;
+            });
+        } catch (StorageEngineException e) {
+            // Do not fail the load. Worst case, the load will be resumed from an older checkpoint
+            logger.warn("Unable to save Variant Search load checkpoint " + checkpoint, e);
+        }
     }
 
 
@@ -408,6 +518,34 @@ public class VariantSearchManager {
         }
     }
 
+    /**
+     * Return an iterator over the ids of the variants from a Solr core/collection matching the given query.
+     *
+     * If possible, ids are streamed with the "/export" handler, see {@link VariantIdSolrExportIterator}.
+     * Otherwise, use cursorMark pagination, see {@link VariantIdSolrIterator}.
+     *
+     * @param collection   Collection name
+     * @param query        Query
+     * @param queryOptions Query options. Only limit and skip are used.
+     * @param export       Use the "/export" handler, if supported by the Solr client.
+     * @return Iterator of variant ids. The iterator is {@link AutoCloseable}
+     * @throws VariantSearchException VariantSearchException
+     */
+    public Iterator<String> variantIdIterator(String collection, Query query, QueryOptions queryOptions, boolean export)
+            throws VariantSearchException {
+        QueryOptions idQueryOptions = new QueryOptions(queryOptions)
+                .append(QueryOptions.INCLUDE, VariantField.ID.fieldName());
+        idQueryOptions.remove(QueryOptions.EXCLUDE);
+        SolrQuery solrQuery = solrQueryParser.parse(query, idQueryOptions);
+        SolrClient solrClient = solrManager.getSolrClient();
+        if (export && VariantIdSolrExportIterator.isSupported(solrClient)) {
+            logger.debug("Stream variant ids from {} using {}", collection, VariantIdSolrExportIterator.EXPORT_HANDLER);
+            return new VariantIdSolrExportIterator(solrClient, collection, solrQuery);
+        } else {
+            return new VariantIdSolrIterator(solrClient, collection, solrQuery);
+        }
+    }
+
     /**
      *
      * @param collection Collection name
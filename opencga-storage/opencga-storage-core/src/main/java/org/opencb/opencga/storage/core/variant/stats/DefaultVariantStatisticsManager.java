@@ -47,6 +47,7 @@ import org.opencb.opencga.storage.core.metadata.models.StudyMetadata;
 import org.opencb.opencga.storage.core.variant.VariantStorageOptions;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantDBAdaptor;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantField;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam;
 import org.opencb.opencga.storage.core.variant.io.db.VariantDBReader;
 import org.opencb.opencga.storage.core.variant.io.db.VariantStatsDBWriter;
 import org.opencb.opencga.storage.core.variant.io.json.mixin.GenericRecordAvroJsonMixin;
@@ -199,15 +200,39 @@ public class DefaultVariantStatisticsManager extends VariantStatisticsManager {
         }
 
         VariantStorageMetadataManager metadataManager = dbAdaptor.getMetadataManager();
-        preCalculateStats(metadataManager, studyMetadata, cohorts, overwrite, updateStats, options);
+        Map<String, Set<Integer>> incrementalCohorts =
+                preCalculateStats(metadataManager, studyMetadata, cohorts, overwrite, updateStats, options);
         overwrite = checkOverwrite(metadataManager, studyMetadata, cohorts, overwrite);
 
+        // For incremental cohorts, calculate the stats only for the new samples, and merge with the stored stats
+        Map<String, Set<String>> cohortsToCalculate = new LinkedHashMap<>(cohorts);
+        Map<String, Integer> incrementalStoredSamples = new HashMap<>();
+        Set<Integer> newSampleIds = new HashSet<>();
+        for (Map.Entry<String, Set<Integer>> entry : incrementalCohorts.entrySet()) {
+            CohortMetadata cohort = metadataManager.getCohortMetadata(studyMetadata.getId(), entry.getKey());
+            Set<String> newSamples = new LinkedHashSet<>();
+            for (Integer sampleId : cohort.getSamples()) {
+                if (!entry.getValue().contains(sampleId)) {
+                    newSamples.add(metadataManager.getSampleName(studyMetadata.getId(), sampleId));
+                    newSampleIds.add(sampleId);
+                }
+            }
+            logger.info("Update stats of cohort \"{}\" incrementally, adding {} new samples to {} samples from the stored stats",
+                    entry.getKey(), newSamples.size(), entry.getValue().size());
+            cohortsToCalculate.put(entry.getKey(), newSamples);
+            incrementalStoredSamples.put(entry.getKey(), entry.getValue().size());
+        }
+
         VariantSourceStats variantSourceStats = new VariantSourceStats(null/*FILE_ID*/, Integer.toString(studyMetadata.getId()));
 
 
         // reader, tasks and writer
         Query readerQuery = VariantStatisticsManager.buildInputQuery(variantDBAdaptor.getMetadataManager(),
                 studyMetadata, cohorts.keySet(), overwrite, updateStats, options);
+        if (!incrementalCohorts.isEmpty() && incrementalCohorts.size() == cohorts.size() && !newSampleIds.isEmpty()) {
+            // Only the new samples are needed
+            readerQuery.put(VariantQueryParam.INCLUDE_SAMPLE.key(), newSampleIds);
+        }
         logger.info("ReaderQuery: " + readerQuery.toJson());
         QueryOptions readerOptions = new QueryOptions(QueryOptions.SORT, true)
                 .append(QueryOptions.EXCLUDE, VariantField.ANNOTATION);
@@ -216,8 +241,12 @@ public class DefaultVariantStatisticsManager extends VariantStatisticsManager {
         List<Task<Variant, String>> tasks = new ArrayList<>(numTasks);
         ProgressLogger progressLogger = buildCreateStatsProgressLogger(dbAdaptor, readerQuery, readerOptions);
         for (int i = 0; i < numTasks; i++) {
-            tasks.add(new VariantStatsWrapperTask(overwrite, cohorts, studyMetadata, variantSourceStats, tagmap, progressLogger,
-                    aggregation));
+            VariantStatsWrapperTask task = new VariantStatsWrapperTask(overwrite, cohortsToCalculate, studyMetadata, variantSourceStats,
+                    tagmap, progressLogger, aggregation);
+            if (!incrementalStoredSamples.isEmpty()) {
+                task.variantStatisticsCalculator.setIncrementalCohorts(incrementalStoredSamples, getUnknownGenotype(options));
+            }
+            tasks.add(task);
         }
         StringDataWriter writer = buildVariantStatsStringDataWriter(output);
 
@@ -0,0 +1,150 @@
+package org.opencb.opencga.storage.core.variant.stats;
+
+import org.opencb.biodata.models.feature.Genotype;
+import org.opencb.biodata.models.variant.StudyEntry;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.biodata.models.variant.stats.VariantStats;
+import org.opencb.biodata.tools.variant.stats.VariantStatsCalculator;
+
+import java.util.*;
+
+/**
+ * Calculates the stats of multiple cohorts for a variant in one pass over the samples.
+ *
+ * The genotypes are dictionary encoded while reading the samples data. Each distinct genotype is parsed into a
+ * {@link Genotype} only once per variant, and shared by all the cohorts. Each sample has a bitset with the cohorts it
+ * belongs to, and the genotypes are counted for all cohorts at once in a primitive counters array. Only the final
+ * genotype count map is created per cohort.
+ * The final stats (allele and genotype frequencies, MAF, MGF, missing alleles and genotypes) are derived from the
+ * genotype counts by {@link VariantStatsCalculator#calculate(Variant, Map)}, as for any other storage engine.
+ */
+public class VariantCohortStatsCalculator {
+
+    private static final String GT = "GT";
+
+    private final List<String> cohortNames;
+    private final List<Set<String>> cohortSamples;
+    private final int numWords;
+
+    // Cohort bitsets for the last samples position seen. Most of the variants of a study share the same instance.
+    private Map<String, Integer> samplesPosition;
+    private long[] sampleCohorts;
+
+    public VariantCohortStatsCalculator(Map<String, Set<String>> cohorts) {
+        cohortNames = new ArrayList<>(cohorts.keySet());
+        cohortSamples = new ArrayList<>(cohorts.values());
+        numWords = Math.max(1, (cohortNames.size() + Long.SIZE - 1) / Long.SIZE);
+    }
+
+    public List<String> getCohortNames() {
+        return Collections.unmodifiableList(cohortNames);
+    }
+
+    /**
+     * Calculate the stats for all the cohorts.
+     *
+     * @param variant Variant
+     * @param study   StudyEntry from the variant
+     * @return Stats for each cohort, in the same order as given in the constructor.
+     */
+    public Map<String, VariantStats> calculate(Variant variant, StudyEntry study) {
+        Map<String, VariantStats> stats = new LinkedHashMap<>(cohortNames.size() * 2);
+        Integer gtIdx = study.getFormatPositions().get(GT);
+        if (gtIdx == null) {
+            for (int c = 0; c < cohortNames.size(); c++) {
+                stats.put(cohortNames.get(c), VariantStatsCalculator.calculate(variant, study, cohortSamples.get(c)));
+            }
+            return stats;
+        }
+
+        long[] sampleCohorts = getSampleCohorts(study);
+        List<List<String>> samplesData = study.getSamplesData();
+        int numSamples = Math.min(samplesData.size(), sampleCohorts.length / numWords);
+
+        // Dictionary encode the genotypes. Most variants have only a handful of distinct genotypes.
+        Map<String, Integer> codes = new HashMap<>();
+        List<String> dictionary = new ArrayList<>();
+        int[] sampleCodes = new int[numSamples];
+        for (int sampleIdx = 0; sampleIdx < numSamples; sampleIdx++) {
+            List<String> sampleData = samplesData.get(sampleIdx);
+            String gt = gtIdx < sampleData.size() ? sampleData.get(gtIdx) : null;
+            Integer code = codes.get(gt);
+            if (code == null) {
+                code = dictionary.size();
+                codes.put(gt, code);
+                dictionary.add(gt);
+            }
+            sampleCodes[sampleIdx] = code;
+        }
+
+        int dictionarySize = dictionary.size();
+        int[] counts = new int[cohortNames.size() * dictionarySize];
+        for (int sampleIdx = 0; sampleIdx < numSamples; sampleIdx++) {
+            int code = sampleCodes[sampleIdx];
+            int offset = sampleIdx * numWords;
+            for (int word = 0; word < numWords; word++) {
+                long mask = sampleCohorts[offset + word];
+                while (mask != 0) {
+                    int cohortIdx = (word << 6) + Long.numberOfTrailingZeros(mask);
+                    counts[cohortIdx * dictionarySize + code]++;
+                    mask &= mask - 1;
+                }
+            }
+        }
+
+        // Parse each distinct genotype only once. The Genotype instances are shared by the counts of all the cohorts.
+        Genotype[] genotypes = new Genotype[dictionarySize];
+        for (int code = 0; code < dictionarySize; code++) {
+            String gt = dictionary.get(code);
+            if (gt != null) {
+                genotypes[code] = new Genotype(gt);
+            }
+        }
+
+        for (int cohortIdx = 0; cohortIdx < cohortNames.size(); cohortIdx++) {
+            Set<String> samples = cohortSamples.get(cohortIdx);
+            if (samples == null || samples.isEmpty()) {
+                // Let the default calculator decide how to deal with empty cohorts
+                stats.put(cohortNames.get(cohortIdx), VariantStatsCalculator.calculate(variant, study, samples));
+                continue;
+            }
+            // One map per cohort, as the VariantStatsCalculator may keep a reference to it
+            Map<Genotype, Integer> gtCount = new HashMap<>(dictionarySize * 2);
+            int offset = cohortIdx * dictionarySize;
+            for (int code = 0; code < dictionarySize; code++) {
+                if (counts[offset + code] > 0 && genotypes[code] != null) {
+                    gtCount.merge(genotypes[code], counts[offset + code], Integer::sum);
+                }
+            }
+            stats.put(cohortNames.get(cohortIdx), VariantStatsCalculator.calculate(variant, gtCount));
+        }
+        return stats;
+    }
+
+    private long[] getSampleCohorts(StudyEntry study) {
+        Map<String, Integer> samplesPosition = study.getSamplesPosition();
+        if (this.samplesPosition != samplesPosition
+                && (this.samplesPosition == null || !this.samplesPosition.equals(samplesPosition))) {
+            int numSamples = 0;
+            for (Integer position : samplesPosition.values()) {
+                numSamples = Math.max(numSamples, position + 1);
+            }
+            long[] sampleCohorts = new long[numSamples * numWords];
+            for (int cohortIdx = 0; cohortIdx < cohortSamples.size(); cohortIdx++) {
+                Set<String> samples = cohortSamples.get(cohortIdx);
+                if (samples == null) {
+                    continue;
+                }
+                for (String sample : samples) {
+                    Integer position = samplesPosition.get(sample);
+                    if (position != null) {
+                        sampleCohorts[position * numWords + (cohortIdx >> 6)] |= 1L << cohortIdx;
+                    }
+                }
+            }
+            this.sampleCohorts = sampleCohorts;
+        }
+        this.samplesPosition = samplesPosition;
+        return sampleCohorts;
+    }
+}
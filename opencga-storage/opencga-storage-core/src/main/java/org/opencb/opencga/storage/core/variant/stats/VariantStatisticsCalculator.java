@@ -16,6 +16,7 @@
 
 package org.opencb.opencga.storage.core.variant.stats;
 
+import org.opencb.biodata.models.feature.Genotype;
 import org.opencb.biodata.models.variant.StudyEntry;
 import org.opencb.biodata.models.variant.Variant;
 import org.opencb.biodata.models.variant.metadata.Aggregation;
@@ -34,6 +35,10 @@ public class VariantStatisticsCalculator {
     private boolean overwrite;
     private VariantAggregatedStatsCalculator aggregatedCalculator;
     private Aggregation aggregation;
+    private Map<String, Set<String>> cohorts;
+    private VariantCohortStatsCalculator cohortStatsCalculator;
+    private Map<String, Integer> incrementalCohorts = Collections.emptyMap();
+    private Genotype unknownGenotype;
 
     public VariantStatisticsCalculator() {
         this(false);
@@ -80,6 +85,21 @@ public class VariantStatisticsCalculator {
         }
     }
 
+    /**
+     * Update the stats of some cohorts adding only the contribution of the new samples to the stats already stored in the variants.
+     * For these cohorts, the samples given to {@link #calculateBatch} must be only the new samples.
+     *
+     * @param incrementalCohorts Cohorts to update incrementally, and number of samples included in the stored stats.
+     * @param unknownGenotype    Genotype of the already included samples in variants without stored stats.
+     *                           i.e. variants that only exist in the new samples.
+     * @return this
+     */
+    public VariantStatisticsCalculator setIncrementalCohorts(Map<String, Integer> incrementalCohorts, String unknownGenotype) {
+        this.incrementalCohorts = incrementalCohorts == null ? Collections.emptyMap() : incrementalCohorts;
+        this.unknownGenotype = new Genotype(unknownGenotype);
+        return this;
+    }
+
     /**
      * Creates another map with the intersection of the parameters.
      *
@@ -125,17 +145,24 @@ public class VariantStatisticsCalculator {
                 skippedFiles++;
                 continue;
             }
+            Map<String, VariantStats> storedStats = study.getStats();
             // Clear any stats from the input
             study.setStats(new HashMap<>());
 
             if (!AggregationUtils.isAggregated(aggregation) && samples != null) {
-                for (Map.Entry<String, Set<String>> cohort : samples.entrySet()) {
-                    if (overwrite || study.getStats(cohort.getKey()) == null) {
-
-                        VariantStats variantStats = VariantStatsCalculator.calculate(variant, study, cohort.getValue());
-                        study.setStats(cohort.getKey(), variantStats);
-
+                if (cohortStatsCalculator == null || cohorts != samples) {
+                    cohorts = samples;
+                    cohortStatsCalculator = new VariantCohortStatsCalculator(samples);
+                }
+                // All cohorts are calculated in one pass. Stats were cleared, so there is nothing to preserve.
+                for (Map.Entry<String, VariantStats> entry : cohortStatsCalculator.calculate(variant, study).entrySet()) {
+                    VariantStats variantStats = entry.getValue();
+                    Integer storedSamples = incrementalCohorts.get(entry.getKey());
+                    if (storedSamples != null) {
+                        VariantStats stored = storedStats == null ? null : storedStats.get(entry.getKey());
+                        variantStats = mergeStats(variant, stored, storedSamples, variantStats);
                     }
+                    study.setStats(entry.getKey(), variantStats);
                 }
             } else if (aggregatedCalculator != null) { // another way to say that the study is aggregated (!Aggregation
                 // .NONE.equals(aggregation))
@@ -153,6 +180,20 @@ public class VariantStatisticsCalculator {
         return variantStatsWrappers;
     }
 
+    private VariantStats mergeStats(Variant variant, VariantStats stored, int storedSamples, VariantStats newSamplesStats) {
+        Map<Genotype, Integer> gtCount = new HashMap<>();
+        if (stored == null) {
+            // Variant not present in the samples from the stored stats
+            gtCount.put(unknownGenotype, storedSamples);
+        } else {
+            gtCount.putAll(stored.getGenotypeCount());
+        }
+        for (Map.Entry<Genotype, Integer> entry : newSamplesStats.getGenotypeCount().entrySet()) {
+            gtCount.merge(entry.getKey(), entry.getValue(), Integer::sum);
+        }
+        return VariantStatsCalculator.calculate(variant, gtCount);
+    }
+
     @Deprecated
     public static Map<String, String> removeAttributePrefix(Map<String, String> attributes)
             throws IllegalArgumentException {
@@ -69,7 +69,7 @@ public abstract class VariantStatisticsManager {
             throws IOException, StorageEngineException;
 
 
-    public void preCalculateStats(
+    public Map<String, Set<Integer>> preCalculateStats(
             VariantStorageMetadataManager metadataManager, StudyMetadata studyMetadata, List<String> cohorts,
             boolean overwrite, boolean updateStats, ObjectMap options) throws StorageEngineException {
 
@@ -82,23 +82,39 @@ public abstract class VariantStatisticsManager {
             }
             cohortsWithSamples.put(cohortMetadata.getName(), samples);
         }
-        preCalculateStats(metadataManager, studyMetadata, cohortsWithSamples, overwrite, updateStats, options);
+        return preCalculateStats(metadataManager, studyMetadata, cohortsWithSamples, overwrite, updateStats, options);
     }
 
-    public void preCalculateStats(
+    /**
+     * Register the cohorts and mark their stats as RUNNING.
+     *
+     * @param metadataManager   VariantStorageMetadataManager
+     * @param studyMetadata     Study
+     * @param cohorts           Cohorts to calculate, with their samples
+     * @param overwrite         Overwrite the stored stats
+     * @param updateStats       Calculate only the missing stats
+     * @param options           Options
+     * @return  Cohorts that can be updated incrementally. See {@link #getIncrementalCohorts}
+     * @throws StorageEngineException if the cohorts can not be registered
+     */
+    public Map<String, Set<Integer>> preCalculateStats(
             VariantStorageMetadataManager metadataManager, StudyMetadata studyMetadata, Map<String, Set<String>> cohorts,
             boolean overwrite, boolean updateStats, ObjectMap options) throws StorageEngineException {
 
         Collection<Integer> cohortIds = metadataManager.registerCohorts(studyMetadata.getName(), cohorts).values();
         checkCohorts(metadataManager, studyMetadata, cohorts, overwrite, updateStats, getAggregation(studyMetadata, options));
+        // Read after registering the cohorts, as the stats samples are discarded if any sample was removed
+        Map<String, Set<Integer>> incrementalCohorts = getIncrementalCohorts(metadataManager, studyMetadata, cohorts.keySet(), options);
 
         metadataManager.updateStudyMetadata(studyMetadata.getName(), sm -> {
             for (Integer cohortId : cohortIds) {
+                // Stored stats may be partially updated from now on. Can not be used for incremental updates.
                 metadataManager.updateCohortMetadata(studyMetadata.getId(), cohortId,
-                        cohort -> cohort.setStatsStatus(TaskMetadata.Status.RUNNING));
+                        cohort -> cohort.setStatsStatus(TaskMetadata.Status.RUNNING).setStatsSamples(null));
             }
             return sm;
         });
+        return incrementalCohorts;
     }
 
     public void postCalculateStats(
@@ -109,7 +125,78 @@ public abstract class VariantStatisticsManager {
         for (String cohortName : cohorts) {
             Integer cohortId = metadataManager.getCohortId(studyMetadata.getId(), cohortName);
             metadataManager.updateCohortMetadata(studyMetadata.getId(), cohortId,
-                    cohort -> cohort.setStatsStatus(status));
+                    cohort -> cohort.setStatsStatus(status).setStatsSamples(error ? null : new ArrayList<>(cohort.getSamples())));
+        }
+    }
+
+    /**
+     * Get the cohorts that can be updated incrementally, adding only the contribution of the new samples to the stored stats.
+     * <p>
+     * A cohort can be updated incrementally if {@link VariantStorageOptions#STATS_INCREMENTAL} is enabled, the study is not
+     * aggregated, and the stats were invalidated only because some samples were added to the cohort.
+     * If any sample was removed, if there are no new samples, or if the stats were invalidated for any other reason
+     * (e.g. removed files, failed calculations), the stats need to be calculated from scratch.
+     * Incremental updates are not compatible with {@link VariantStorageOptions#STATS_UPDATE}, as the variants with
+     * stored stats would not be read.
+     * <p>
+     * Must be called after registering the cohorts, and before discarding the stats samples.
+     * See {@link #preCalculateStats}.
+     *
+     * @param metadataManager   VariantStorageMetadataManager
+     * @param studyMetadata     Study
+     * @param cohorts           Cohorts to calculate
+     * @param options           Options
+     * @return  Map from cohort name to the samples already included in the stored stats.
+     */
+    public static Map<String, Set<Integer>> getIncrementalCohorts(
+            VariantStorageMetadataManager metadataManager, StudyMetadata studyMetadata, Collection<String> cohorts, ObjectMap options) {
+        if (!options.getBoolean(VariantStorageOptions.STATS_INCREMENTAL.key(), VariantStorageOptions.STATS_INCREMENTAL.defaultValue())
+                || options.getBoolean(VariantStorageOptions.STATS_OVERWRITE.key(), false)
+                || options.getBoolean(VariantStorageOptions.STATS_UPDATE.key(), false)
+                || isAggregated(studyMetadata, options)) {
+            return Collections.emptyMap();
+        }
+        Map<String, Set<Integer>> incrementalCohorts = new HashMap<>();
+        for (String cohortName : cohorts) {
+            Integer cohortId = metadataManager.getCohortId(studyMetadata.getId(), cohortName);
+            if (cohortId == null) {
+                continue;
+            }
+            CohortMetadata cohort = metadataManager.getCohortMetadata(studyMetadata.getId(), cohortId);
+            if (!cohort.isInvalid() || cohort.getStatsSamples() == null || cohort.getStatsSamples().isEmpty()) {
+                continue;
+            }
+            Set<Integer> statsSamples = new HashSet<>(cohort.getStatsSamples());
+            if (!cohort.getSamples().containsAll(statsSamples)) {
+                logger.info("Samples removed from cohort \"{}\". Stats need to be calculated from scratch", cohortName);
+            } else if (statsSamples.containsAll(cohort.getSamples())) {
+                logger.info("No new samples in cohort \"{}\". Stats need to be calculated from scratch", cohortName);
+            } else {
+                incrementalCohorts.put(cohortName, statsSamples);
+            }
+        }
+        return incrementalCohorts;
+    }
+
+    /**
+     * Mark the stats of the given cohorts as invalid, and discard the samples included in the stored stats, so the
+     * next calculation is not incremental.
+     *
+     * @param metadataManager   VariantStorageMetadataManager
+     * @param study             Study
+     * @param cohorts           Cohorts to invalidate
+     * @throws StorageEngineException if the cohorts can not be updated
+     */
+    public static void invalidateStats(VariantStorageMetadataManager metadataManager, String study, Collection<String> cohorts)
+            throws StorageEngineException {
+        int studyId = metadataManager.getStudyId(study);
+        for (String cohortName : cohorts) {
+            Integer cohortId = metadataManager.getCohortId(studyId, cohortName);
+            if (cohortId == null) {
+                continue;
+            }
+            metadataManager.updateCohortMetadata(studyId, cohortId,
+                    cohort -> cohort.setStatsStatus(TaskMetadata.Status.ERROR).setStatsSamples(null));
         }
     }
 
@@ -133,7 +220,7 @@ public abstract class VariantStatisticsManager {
                         throw new StorageEngineException("Cohort \"" + cohortName + "\" stats already calculated");
                     }
                 }
-                cohort.setStatsStatus(TaskMetadata.Status.RUNNING);
+                cohort.setStatsStatus(TaskMetadata.Status.RUNNING).setStatsSamples(null);
                 return cohort;
             });
         }
@@ -0,0 +1,78 @@
+package org.opencb.opencga.storage.core.cache;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.opencb.commons.datastore.core.Query;
+import org.opencb.commons.datastore.core.QueryOptions;
+import org.opencb.opencga.storage.core.config.CacheConfiguration;
+
+import static org.junit.Assert.*;
+
+public class CacheManagerTest {
+
+    private CacheManager cacheManager;
+
+    @Before
+    public void setUp() throws Exception {
+        cacheManager = new CacheManager(new CacheConfiguration()
+                .setActive(true)
+                .setLocalMaxSize(1024)
+                .setSlowThreshold(0));
+    }
+
+    @Test
+    public void testInactive() {
+        CacheManager inactive = new CacheManager(new CacheConfiguration().setActive(false));
+        assertFalse(inactive.isActive());
+        inactive.set("key", new byte[]{1});
+        assertNull(inactive.get("key"));
+    }
+
+    @Test
+    public void testCreateKey() {
+        String key1 = cacheManager.createKey("db", "var",
+                new Query("gene", "BRCA2").append("ct", "missense_variant"), new QueryOptions(QueryOptions.LIMIT, 10));
+        String key2 = cacheManager.createKey("db", "var",
+                new Query("ct", "missense_variant").append("gene", "BRCA2"),
+                new QueryOptions(QueryOptions.LIMIT, 10).append(QueryOptions.TIMEOUT, 1000).append(CacheManager.CACHE, true));
+        String key3 = cacheManager.createKey("db", "var",
+                new Query("gene", "BRCA2").append("ct", "missense_variant"), new QueryOptions(QueryOptions.LIMIT, 20));
+
+        assertEquals(key1, key2);
+        assertNotEquals(key1, key3);
+        assertTrue(key1.startsWith(cacheManager.getKeyPrefix("db")));
+    }
+
+    @Test
+    public void testGetSet() {
+        byte[] value = {1, 2, 3};
+        cacheManager.set(cacheManager.getKeyPrefix("db") + "k1", value);
+        cacheManager.set(cacheManager.getKeyPrefix("db2") + "k1", value);
+
+        assertArrayEquals(value, cacheManager.get(cacheManager.getKeyPrefix("db") + "k1"));
+        assertNull(cacheManager.get(cacheManager.getKeyPrefix("db") + "k2"));
+
+        cacheManager.invalidate("db");
+        assertNull(cacheManager.get(cacheManager.getKeyPrefix("db") + "k1"));
+        assertArrayEquals(value, cacheManager.get(cacheManager.getKeyPrefix("db2") + "k1"));
+    }
+
+    @Test
+    public void testMaxSize() {
+        for (int i = 0; i < 100; i++) {
+            cacheManager.set("k" + i, new byte[100]);
+        }
+        assertTrue(cacheManager.getLocalStats().evictionCount() > 0);
+    }
+
+    @Test
+    public void testIsCacheable() {
+        cacheManager = new CacheManager(new CacheConfiguration()
+                .setActive(true)
+                .setSlowThreshold(50)
+                .setMaxResultSize(10));
+        assertFalse(cacheManager.isCacheable(10, 5));
+        assertFalse(cacheManager.isCacheable(100, 50));
+        assertTrue(cacheManager.isCacheable(100, 5));
+    }
+}
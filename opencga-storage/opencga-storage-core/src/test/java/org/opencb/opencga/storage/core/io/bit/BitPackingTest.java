@@ -0,0 +1,167 @@
+package org.opencb.opencga.storage.core.io.bit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BitPackingTest {
+
+    private Random random;
+
+    @Before
+    public void setUp() throws Exception {
+        random = new Random(1);
+    }
+
+    @Test
+    public void testPackCompatibleWithBitOutputStream() {
+        for (int bitWidth = 1; bitWidth <= 31; bitWidth++) {
+            for (int length : new int[]{0, 1, 7, 8, 9, 100, 1001}) {
+                int[] values = randomValues(length, bitWidth);
+
+                BitOutputStream os = new BitOutputStream();
+                for (int value : values) {
+                    os.write(value, bitWidth);
+                }
+                byte[] expected = os.toByteArray();
+
+                byte[] packed = new byte[BitPacking.packedSize(length, bitWidth)];
+                assertEquals(packed.length, BitPacking.pack(values, 0, length, bitWidth, packed, 0));
+                assertArrayEquals("bitWidth " + bitWidth + ", length " + length, expected, packed);
+
+                int[] unpacked = new int[length];
+                assertEquals(packed.length, BitPacking.unpack(packed, 0, unpacked, 0, length, bitWidth));
+                assertArrayEquals(values, unpacked);
+
+                if (bitWidth <= Byte.SIZE) {
+                    BitInputStream is = new BitInputStream(packed);
+                    for (int value : values) {
+                        assertEquals(value, is.readByte(bitWidth) & 0xFF);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testPackOffsetsAndWidth32() {
+        int[] values = randomValues(100, 32);
+        byte[] packed = new byte[BitPacking.packedSize(50, 32) + 3];
+        BitPacking.pack(values, 10, 50, 32, packed, 3);
+        int[] unpacked = new int[60];
+        BitPacking.unpack(packed, 3, unpacked, 10, 50, 32);
+        assertArrayEquals(Arrays.copyOfRange(values, 10, 60), Arrays.copyOfRange(unpacked, 10, 60));
+    }
+
+    @Test
+    public void testBitWriterReader() {
+        BitWriter writer = new BitWriter(1);
+        BitOutputStream os = new BitOutputStream();
+        int[] values = randomValues(37, 6);
+        for (int i = 0; i < 3; i++) {
+            writer.write(0b101, 3);
+            os.write(0b101, 3);
+            // Unaligned bulk write
+            writer.write(values, 0, values.length, 6);
+            for (int value : values) {
+                os.write(value, 6);
+            }
+            writer.write(0x7FFFFFFF, 31);
+            os.write(0x7FFFFFFF, 31);
+        }
+        byte[] bytes = writer.toByteArray();
+        assertArrayEquals(os.toByteArray(), bytes);
+
+        BitReader reader = new BitReader();
+        for (int n = 0; n < 2; n++) {
+            // Reuse the reader
+            reader.reset(bytes);
+            int[] read = new int[values.length];
+            for (int i = 0; i < 3; i++) {
+                assertEquals(0b101, reader.read(3));
+                assertArrayEquals(values, reader.read(read, 0, values.length, 6));
+                assertEquals(0x7FFFFFFF, reader.read(31));
+            }
+            assertEquals(bytes.length * Byte.SIZE - 3 * (3 + 37 * 6 + 31), reader.remainingBits());
+        }
+
+        // Aligned bulk write
+        writer.reset();
+        writer.write(values, 0, values.length, 6);
+        writer.write(0b1, 1);
+        writer.writeVarInt(300);
+        reader.reset(writer.toByteArray());
+        assertArrayEquals(values, reader.read(new int[values.length], 0, values.length, 6));
+        assertEquals(1, reader.read(1));
+        assertEquals(300, reader.readVarInt());
+        assertEquals(0, reader.remainingBits());
+    }
+
+    @Test
+    public void testVarInt() {
+        BitWriter writer = new BitWriter();
+        int[] values = {0, 1, 127, 128, 16383, 16384, Integer.MAX_VALUE, -1, Integer.MIN_VALUE};
+        for (int value : values) {
+            writer.writeVarInt(value);
+            writer.writeZigZagVarInt(value);
+        }
+        BitReader reader = new BitReader(writer.toByteArray());
+        for (int value : values) {
+            assertEquals(value, reader.readVarInt());
+            assertEquals(value, reader.readZigZagVarInt());
+        }
+        assertEquals(0, reader.remainingBits());
+    }
+
+    @Test
+    public void testCodecs() {
+        int[] positions = new int[1000];
+        int position = 1000000;
+        for (int i = 0; i < positions.length; i++) {
+            position += random.nextInt(100);
+            positions[i] = position;
+        }
+        int[][] inputs = {
+                positions,
+                new int[0],
+                {5},
+                {Integer.MIN_VALUE, Integer.MAX_VALUE, 0, -1},
+                randomValues(100, 32),
+        };
+        for (IntArrayCodec codec : Arrays.asList(new FrameOfReferenceCodec(), new DeltaVarIntCodec())) {
+            BitWriter writer = new BitWriter();
+            for (int[] input : inputs) {
+                codec.encode(input, 0, input.length, writer);
+            }
+            BitReader reader = new BitReader(writer.toByteArray());
+            for (int[] input : inputs) {
+                assertArrayEquals(codec.getClass().getSimpleName(), input, codec.decode(reader));
+            }
+            assertEquals(0, reader.remainingBits());
+
+            reader.reset(writer.toByteArray());
+            int[] dest = new int[positions.length + 1];
+            assertEquals(positions.length, codec.decode(reader, dest, 1));
+            assertArrayEquals(positions, Arrays.copyOfRange(dest, 1, dest.length));
+        }
+
+        // Sorted positions should take less than 2 bytes per value
+        BitWriter writer = new BitWriter();
+        new DeltaVarIntCodec().encode(positions, 0, positions.length, writer);
+        assertTrue(writer.length() < positions.length * 2);
+    }
+
+    private int[] randomValues(int length, int bitWidth) {
+        int[] values = new int[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = (int) (random.nextInt() & ((1L << bitWidth) - 1));
+        }
+        return values;
+    }
+}
@@ -0,0 +1,73 @@
+package org.opencb.opencga.storage.core.io.plain;
+
+import org.junit.Test;
+import org.opencb.opencga.storage.core.variant.io.BgzfBlockCompressor;
+
+import java.io.*;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
+
+import static org.junit.Assert.*;
+
+public class BgzfParallelInputStreamTest {
+
+    @Test
+    public void testRead() throws IOException {
+        byte[] data = new byte[BgzfBlockCompressor.MAX_BLOCK_SIZE * 20 + 100];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) ("ACGT\t\n".charAt((i * 7) % 6));
+        }
+        byte[] compressed = bgzip(data);
+        assertTrue(BgzfParallelInputStream.isBgzf(new BufferedInputStream(new ByteArrayInputStream(compressed))));
+
+        for (int threads : new int[]{1, 3, 8}) {
+            try (InputStream is = new BgzfParallelInputStream(new ByteArrayInputStream(compressed), threads)) {
+                assertArrayEquals("Threads " + threads, data, readAll(is));
+            }
+        }
+    }
+
+    @Test
+    public void testIsBgzf() throws IOException {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        try (OutputStream gzip = new GZIPOutputStream(os)) {
+            gzip.write("#header\n".getBytes());
+        }
+        InputStream is = new BufferedInputStream(new ByteArrayInputStream(os.toByteArray()));
+        assertFalse(BgzfParallelInputStream.isBgzf(is));
+        // Nothing consumed
+        assertEquals(0x1f, is.read());
+
+        assertFalse(BgzfParallelInputStream.isBgzf(new BufferedInputStream(new ByteArrayInputStream(new byte[]{0x1f}))));
+    }
+
+    @Test(expected = ZipException.class)
+    public void testCorruptedBlock() throws IOException {
+        byte[] compressed = bgzip("line1\nline2\n".getBytes());
+        // Change the CRC of the first block
+        int blockSize = ((compressed[16] & 0xFF) | ((compressed[17] & 0xFF) << 8)) + 1;
+        compressed[blockSize - 8]++;
+        try (InputStream is = new BgzfParallelInputStream(new ByteArrayInputStream(compressed), 2)) {
+            readAll(is);
+        }
+    }
+
+    private byte[] bgzip(byte[] data) throws IOException {
+        BgzfBlockCompressor compressor = new BgzfBlockCompressor();
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        compressor.compress(data, 0, data.length, os);
+        os.write(BgzfBlockCompressor.EOF_BLOCK);
+        compressor.end();
+        return os.toByteArray();
+    }
+
+    private byte[] readAll(InputStream is) throws IOException {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        byte[] buffer = new byte[10000];
+        int read;
+        while ((read = is.read(buffer)) > 0) {
+            os.write(buffer, 0, read);
+        }
+        return os.toByteArray();
+    }
+}
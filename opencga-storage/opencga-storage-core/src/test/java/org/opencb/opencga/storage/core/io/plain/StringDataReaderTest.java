@@ -0,0 +1,113 @@
+package org.opencb.opencga.storage.core.io.plain;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.opencb.commons.io.DataReader;
+import org.opencb.opencga.storage.core.variant.io.BgzfBlockCompressor;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class StringDataReaderTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testLineBlocks() throws Exception {
+        String content = "#header\nline1\r\nline2\rline3\n\nline4 with a long content\r\n\r\nlast line";
+        List<String> expected = readLines(new StringDataReader(new ByteArrayInputStream(content.getBytes())));
+        assertEquals(8, expected.size());
+
+        for (int blockSize = 1; blockSize < content.length() + 2; blockSize++) {
+            StringDataReader reader = new StringDataReader(new ByteArrayInputStream(content.getBytes()));
+            assertEquals("Block size " + blockSize, expected, readLineBlocks(reader.toLineBlockReader(blockSize)));
+        }
+    }
+
+    @Test
+    public void testLineBlocksGzip() throws Exception {
+        Path path = Paths.get(getClass()
+                .getResource("/10k.chr22.phase3_shapeit2_mvncall_integrated_v5.20130502.genotypes.vcf.gz").toURI());
+        List<String> expected = readLines(new StringDataReader(path));
+
+        for (int blockSize : new int[]{100, 10000, 1024 * 1024}) {
+            List<String> lines = readLineBlocks(new StringDataReader(path).toLineBlockReader(blockSize));
+            assertEquals(expected.size(), lines.size());
+            assertEquals(expected, lines);
+        }
+    }
+
+    @Test
+    public void testLineBlocksBgzf() throws Exception {
+        Path path = Paths.get(getClass()
+                .getResource("/10k.chr22.phase3_shapeit2_mvncall_integrated_v5.20130502.genotypes.vcf.gz").toURI());
+        List<String> expected = readLines(new StringDataReader(path));
+        Path bgzfPath = bgzip(path, temporaryFolder.newFolder().toPath().resolve(path.getFileName()));
+
+        for (int inflateThreads : new int[]{0, 1, 4}) {
+            for (int blockSize : new int[]{100, 1024 * 1024}) {
+                List<String> lines = readLineBlocks(new StringDataReader(bgzfPath).toLineBlockReader(blockSize, inflateThreads));
+                assertEquals(expected, lines);
+            }
+        }
+    }
+
+    /**
+     * Compress a gzip file as BGZF.
+     */
+    public static Path bgzip(Path gzipFile, Path bgzfFile) throws Exception {
+        BgzfBlockCompressor compressor = new BgzfBlockCompressor();
+        try (InputStream is = new StringDataReader(gzipFile).openInputStream();
+             OutputStream os = Files.newOutputStream(bgzfFile)) {
+            byte[] buffer = new byte[BgzfBlockCompressor.MAX_BLOCK_SIZE];
+            int length = 0;
+            int read;
+            while ((read = is.read(buffer, length, buffer.length - length)) > 0) {
+                length += read;
+                if (length == buffer.length) {
+                    compressor.compressBlock(buffer, 0, length, os);
+                    length = 0;
+                }
+            }
+            compressor.compressBlock(buffer, 0, length, os);
+            os.write(BgzfBlockCompressor.EOF_BLOCK);
+        } finally {
+            compressor.end();
+        }
+        return bgzfFile;
+    }
+
+    private List<String> readLines(StringDataReader reader) {
+        reader.open();
+        List<String> lines = new ArrayList<>();
+        List<String> batch;
+        while (!(batch = reader.read(10)).isEmpty()) {
+            lines.addAll(batch);
+        }
+        reader.close();
+        return lines;
+    }
+
+    private List<String> readLineBlocks(DataReader<ByteBuffer> reader) {
+        LineSplitterTask splitter = new LineSplitterTask();
+        reader.open();
+        List<String> lines = new ArrayList<>();
+        List<ByteBuffer> batch;
+        while (!(batch = reader.read(10)).isEmpty()) {
+            lines.addAll(splitter.apply(batch));
+        }
+        reader.close();
+        return lines;
+    }
+}
@@ -0,0 +1,84 @@
+package org.opencb.opencga.storage.core.metadata;
+
+import org.junit.Test;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryException;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class MetadataCacheTest {
+
+    @Test
+    public void testGet() {
+        AtomicInteger calls = new AtomicInteger();
+        MetadataCache<Integer, String> cache = new MetadataCache<>((studyId, id) -> {
+            calls.incrementAndGet();
+            return studyId + ":" + id;
+        });
+
+        assertEquals("1:10", cache.get(1, 10));
+        assertEquals("1:10", cache.get(1, 10));
+        assertEquals("2:10", cache.get(2, 10));
+        assertEquals(2, calls.get());
+        assertEquals(1, cache.stats().hitCount());
+        assertEquals(2, cache.stats().missCount());
+    }
+
+    @Test
+    public void testNullValuesNotCached() {
+        AtomicInteger calls = new AtomicInteger();
+        MetadataCache<String, Integer> cache = new MetadataCache<>((studyId, id) -> {
+            calls.incrementAndGet();
+            return null;
+        });
+
+        assertNull(cache.get(1, "unknown"));
+        assertNull(cache.get(1, "unknown"));
+        assertEquals(2, calls.get());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testInvalidValue() {
+        AtomicInteger calls = new AtomicInteger();
+        MetadataCache<Integer, Boolean> cache = new MetadataCache<>((studyId, id) -> calls.incrementAndGet() > 1);
+
+        assertFalse(cache.get(1, 1, false));
+        assertTrue(cache.get(1, 1, false));
+        assertTrue(cache.get(1, 1, false));
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    public void testInvalidate() {
+        AtomicInteger calls = new AtomicInteger();
+        MetadataCache<Integer, Integer> cache = new MetadataCache<>((studyId, id) -> calls.incrementAndGet());
+
+        assertEquals(1, cache.get(1, 1).intValue());
+        cache.invalidate(1, 1);
+        assertEquals(2, cache.get(1, 1).intValue());
+        cache.invalidate(1);
+        assertEquals(3, cache.get(1, 1).intValue());
+    }
+
+    @Test
+    public void testEviction() {
+        MetadataCache<Integer, Integer> cache = new MetadataCache<>((studyId, id) -> id, 10);
+
+        for (int i = 0; i < 1000; i++) {
+            cache.get(1, i);
+        }
+        assertTrue(cache.size() <= 10);
+        assertTrue(cache.stats().evictionCount() >= 990);
+    }
+
+    @Test(expected = VariantQueryException.class)
+    public void testPropagateException() {
+        MetadataCache<Integer, String> cache = new MetadataCache<>((studyId, id) -> {
+            throw VariantQueryException.sampleNotFound(id, "study");
+        });
+        cache.get(1, 1);
+    }
+
+}
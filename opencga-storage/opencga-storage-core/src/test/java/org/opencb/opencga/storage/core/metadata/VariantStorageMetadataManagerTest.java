@@ -0,0 +1,109 @@
+package org.opencb.opencga.storage.core.metadata;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.opencb.commons.datastore.core.ObjectMap;
+import org.opencb.opencga.storage.core.metadata.models.ProjectMetadata;
+import org.opencb.opencga.storage.core.metadata.models.StudyMetadata;
+import org.opencb.opencga.storage.core.variant.VariantStorageOptions;
+import org.opencb.opencga.storage.core.variant.dummy.DummyVariantStorageMetadataDBAdaptorFactory;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class VariantStorageMetadataManagerTest {
+
+    private static final ObjectMap OPTIONS = new ObjectMap(VariantStorageOptions.METADATA_DATA_VERSION.key(), true);
+    private VariantStorageMetadataManager metadataManager;
+
+    @Before
+    public void setUp() throws Exception {
+        DummyVariantStorageMetadataDBAdaptorFactory.clear();
+        metadataManager = new VariantStorageMetadataManager(new DummyVariantStorageMetadataDBAdaptorFactory(), OPTIONS);
+    }
+
+    @Test
+    public void testDataVersion() throws Exception {
+        StudyMetadata study = metadataManager.createStudy("study");
+        metadataManager.registerSamples(study.getId(), Arrays.asList("s1", "s2"));
+        // Another instance, as if it was running in a different process
+        VariantStorageMetadataManager otherMetadataManager =
+                new VariantStorageMetadataManager(new DummyVariantStorageMetadataDBAdaptorFactory(), OPTIONS);
+        AtomicInteger notifications = new AtomicInteger();
+        metadataManager.addDataUpdateListener(studyId -> notifications.incrementAndGet());
+
+        int version = metadataManager.getDataVersion();
+        assertEquals(version, otherMetadataManager.getDataVersion());
+
+        otherMetadataManager.addRunningTask(study.getId(), "load", Collections.emptyList());
+        int newVersion = metadataManager.getDataVersion();
+        assertTrue(newVersion > version);
+        // Listeners are only notified by the updates executed through the same instance
+        assertEquals(0, notifications.get());
+
+        metadataManager.registerCohort("study", "c1", Arrays.asList("s1", "s2"));
+        assertTrue(otherMetadataManager.getDataVersion() > newVersion);
+        assertTrue(notifications.get() > 0);
+    }
+
+    @Test
+    public void testDataVersionProjectMetadata() throws Exception {
+        metadataManager.createStudy("study");
+        int version = metadataManager.getDataVersion();
+
+        // Attributes do not modify the variants data
+        metadataManager.updateProjectMetadata(pm -> {
+            pm.getAttributes().put("checkpoint", 10);
+            return pm;
+        });
+        assertEquals(version, metadataManager.getDataVersion());
+
+        metadataManager.updateProjectMetadata(pm -> {
+            pm.getAnnotation().setCurrent(new ProjectMetadata.VariantAnnotationMetadata(1, "CURRENT", new Date(),
+                    new ProjectMetadata.VariantAnnotatorProgram("cellbase", "v4", null), Collections.emptyList()));
+            return pm;
+        });
+        assertTrue(metadataManager.getDataVersion() > version);
+    }
+
+    @Test
+    public void testDataVersionInactive() throws Exception {
+        VariantStorageMetadataManager metadataManager =
+                new VariantStorageMetadataManager(new DummyVariantStorageMetadataDBAdaptorFactory());
+        assertFalse(metadataManager.isDataVersionActive());
+        AtomicInteger notifications = new AtomicInteger();
+        metadataManager.addDataUpdateListener(studyId -> notifications.incrementAndGet());
+
+        StudyMetadata study = metadataManager.createStudy("study");
+        metadataManager.registerSamples(study.getId(), Arrays.asList("s1", "s2"));
+        metadataManager.addRunningTask(study.getId(), "load", Collections.emptyList());
+        metadataManager.registerCohort("study", "c1", Arrays.asList("s1", "s2"));
+
+        assertEquals(0, metadataManager.getDataVersion());
+        assertEquals(0, notifications.get());
+    }
+
+    @Test
+    public void testUpdateProjectMetadataConcurrentCounters() throws Exception {
+        StudyMetadata study = metadataManager.createStudy("study");
+        VariantStorageMetadataManager otherMetadataManager =
+                new VariantStorageMetadataManager(new DummyVariantStorageMetadataDBAdaptorFactory(), OPTIONS);
+
+        metadataManager.updateProjectMetadata(pm -> {
+            // Data updated from another process while this copy of the project metadata is modified
+            otherMetadataManager.addRunningTask(study.getId(), "load", Collections.emptyList());
+            pm.getCounters().put("myCounter", 10);
+            return pm;
+        });
+        int version = otherMetadataManager.getDataVersion();
+        assertTrue(version > 0);
+        assertEquals(version, metadataManager.getDataVersion());
+        assertEquals(10, metadataManager.getProjectMetadata().getCounters().get("myCounter").intValue());
+    }
+}
@@ -49,6 +49,7 @@ import org.opencb.opencga.storage.core.variant.io.VariantWriterFactory;
 import org.opencb.opencga.storage.core.variant.io.json.mixin.GenericRecordAvroJsonMixin;
 import org.opencb.opencga.storage.core.variant.io.json.mixin.VariantStatsJsonMixin;
 import org.opencb.opencga.storage.core.variant.search.solr.VariantSearchManager;
+import org.opencb.opencga.storage.core.variant.stats.VariantStatisticsManager;
 import org.opencb.opencga.storage.core.variant.stats.VariantStatsWrapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -827,4 +828,92 @@ public abstract class VariantStorageEngineTest extends VariantStorageBaseTest {
                 .forEachRemaining(vs -> assertNotEquals("2", vs.getId()));
     }
 
+    @Test
+    public void removeFileAndCalculateIncrementalStatsTest() throws Exception {
+        VariantStorageMetadataManager metadataManager = variantStorageEngine.getMetadataManager();
+        StudyMetadata studyMetadata = metadataManager.createStudy("Study1");
+        int studyId = studyMetadata.getId();
+
+        ObjectMap options = new ObjectMap()
+                .append(VariantStorageOptions.STATS_CALCULATE.key(), false)
+                .append(VariantStorageOptions.ANNOTATE.key(), false);
+        runDefaultETL(getResourceUri("1000g_batches/1-500.filtered.10k.chr22.phase3_shapeit2_mvncall_integrated_v5.20130502.genotypes.vcf.gz"),
+                variantStorageEngine, studyMetadata, options);
+        runDefaultETL(getResourceUri("1000g_batches/501-1000.filtered.10k.chr22.phase3_shapeit2_mvncall_integrated_v5.20130502.genotypes.vcf.gz"),
+                variantStorageEngine, studyMetadata, options);
+
+        List<String> file1Samples = new ArrayList<>();
+        metadataManager.getFileMetadata(studyId, 1).getSamples().forEach(s -> file1Samples.add(metadataManager.getSampleName(studyId, s)));
+        List<String> file2Samples = new ArrayList<>();
+        metadataManager.getFileMetadata(studyId, 2).getSamples().forEach(s -> file2Samples.add(metadataManager.getSampleName(studyId, s)));
+
+        QueryOptions statsOptions = new QueryOptions(VariantStorageOptions.STATS_INCREMENTAL.key(), true);
+        List<String> cohort = new ArrayList<>(file1Samples.subList(0, 5));
+        cohort.addAll(file2Samples.subList(0, 5));
+        variantStorageEngine.calculateStats(studyMetadata.getName(), Collections.singletonMap("c1", cohort), statsOptions);
+        assertEquals(10, metadataManager.getCohortMetadata(studyId, "c1").getStatsSamples().size());
+
+        variantStorageEngine.removeFile(studyMetadata.getName(), 2);
+
+        CohortMetadata c1 = metadataManager.getCohortMetadata(studyId, "c1");
+        assertTrue(c1.isInvalid());
+        assertNull(c1.getStatsSamples());
+
+        // Adding samples to the cohort must not reuse the stats that include the removed file
+        cohort.add(file1Samples.get(5));
+        Map<String, List<String>> cohorts = new HashMap<>();
+        cohorts.put("c1", cohort);
+        cohorts.put("c2", cohort);
+        variantStorageEngine.calculateStats(studyMetadata.getName(), cohorts, statsOptions);
+        assertEquals(11, metadataManager.getCohortMetadata(studyId, "c1").getStatsSamples().size());
+
+        int numVariants = 0;
+        for (VariantDBIterator iterator = variantStorageEngine.iterator(new Query(), new QueryOptions()); iterator.hasNext(); ) {
+            Variant variant = iterator.next();
+            StudyEntry study = variant.getStudy(studyMetadata.getName());
+            VariantStats c1Stats = study.getStats().get("c1");
+            VariantStats c2Stats = study.getStats().get("c2");
+            assertNotNull(c1Stats);
+            assertEquals(variant.toString(), c2Stats.getGenotypeCount(), c1Stats.getGenotypeCount());
+            assertEquals(variant.toString(), c2Stats.getAlleleCount(), c1Stats.getAlleleCount());
+            numVariants++;
+        }
+        assertTrue(numVariants > 0);
+    }
+
+    @Test
+    public void incrementalStatsCohortsTest() throws Exception {
+        VariantStorageMetadataManager metadataManager = variantStorageEngine.getMetadataManager();
+        StudyMetadata studyMetadata = metadataManager.createStudy("Study1");
+        int studyId = studyMetadata.getId();
+
+        ObjectMap options = new ObjectMap()
+                .append(VariantStorageOptions.STATS_CALCULATE.key(), false)
+                .append(VariantStorageOptions.ANNOTATE.key(), false);
+        runDefaultETL(smallInputUri, variantStorageEngine, studyMetadata, options);
+
+        List<String> samples = new ArrayList<>();
+        metadataManager.getFileMetadata(studyId, 1).getSamples().forEach(s -> samples.add(metadataManager.getSampleName(studyId, s)));
+
+        QueryOptions statsOptions = new QueryOptions(VariantStorageOptions.STATS_INCREMENTAL.key(), true);
+        variantStorageEngine.calculateStats(studyMetadata.getName(), Collections.singletonMap("c1", samples.subList(0, 2)), statsOptions);
+
+        // Samples added. Can be updated incrementally
+        metadataManager.registerCohort(studyMetadata.getName(), "c1", samples.subList(0, 3));
+        assertEquals(Collections.singleton("c1"), VariantStatisticsManager.getIncrementalCohorts(metadataManager,
+                studyMetadata, Collections.singleton("c1"), statsOptions).keySet());
+
+        // The variants with stored stats are not read when updating stats
+        assertEquals(Collections.emptyMap(), VariantStatisticsManager.getIncrementalCohorts(metadataManager,
+                studyMetadata, Collections.singleton("c1"), new QueryOptions(statsOptions)
+                        .append(VariantStorageOptions.STATS_UPDATE.key(), true)));
+
+        // Samples replaced. The removed samples are discarded from the stored stats
+        VariantStatisticsManager statisticsManager = variantStorageEngine.newVariantStatisticsManager();
+        Map<String, Set<Integer>> incrementalCohorts = statisticsManager.preCalculateStats(metadataManager, studyMetadata,
+                Collections.singletonMap("c1", new HashSet<>(samples.subList(1, 3))), false, false, statsOptions);
+        assertEquals(Collections.emptyMap(), incrementalCohorts);
+        assertNull(metadataManager.getCohortMetadata(studyId, "c1").getStatsSamples());
+    }
+
 }
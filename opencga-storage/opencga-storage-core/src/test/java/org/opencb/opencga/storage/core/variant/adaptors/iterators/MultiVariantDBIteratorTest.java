@@ -0,0 +1,146 @@
+package org.opencb.opencga.storage.core.variant.adaptors.iterators;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.commons.datastore.core.Query;
+import org.opencb.commons.datastore.core.QueryOptions;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+import static org.opencb.opencga.storage.core.variant.VariantStorageOptions.QUERY_MULTI_ITERATOR_PREFETCH;
+import static org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam.ID;
+
+public class MultiVariantDBIteratorTest {
+
+    private List<String> variants;
+    private List<String> expected;
+    private AtomicInteger numQueries;
+
+    @Before
+    public void setUp() throws Exception {
+        variants = new ArrayList<>();
+        expected = new ArrayList<>();
+        for (int i = 1; i <= 2000; i++) {
+            String variant = new Variant("1:" + i + ":A:T").toString();
+            variants.add(variant);
+            // Only one of every three variants matches the secondary query
+            if (i % 3 == 0) {
+                expected.add(variant);
+            }
+        }
+        numQueries = new AtomicInteger();
+    }
+
+    @Test
+    public void testSequential() throws Exception {
+        assertEquals(expected, read(new QueryOptions()));
+    }
+
+    @Test
+    public void testPrefetch() throws Exception {
+        assertEquals(expected, read(new QueryOptions(QUERY_MULTI_ITERATOR_PREFETCH.key(), 4)));
+    }
+
+    @Test
+    public void testPrefetchLimitSkip() throws Exception {
+        QueryOptions options = new QueryOptions(QUERY_MULTI_ITERATOR_PREFETCH.key(), 4)
+                .append(QueryOptions.LIMIT, 50)
+                .append(QueryOptions.SKIP, 10);
+        assertEquals(expected.subList(10, 60), read(options));
+    }
+
+    @Test
+    public void testPrefetchNumVariantsFromPrimary() throws Exception {
+        QueryOptions options = new QueryOptions(QUERY_MULTI_ITERATOR_PREFETCH.key(), 4).append(QueryOptions.LIMIT, 10);
+        try (MultiVariantDBIterator iterator = newIterator(options)) {
+            while (iterator.hasNext()) {
+                iterator.next();
+            }
+            // 10 results, one out of three variants match.
+            assertEquals(30, iterator.getNumVariantsFromPrimary());
+        }
+    }
+
+    @Test
+    public void testPrefetchReleaseThreadsWithoutClose() throws Exception {
+        QueryOptions options = new QueryOptions(QUERY_MULTI_ITERATOR_PREFETCH.key(), 4);
+        MultiVariantDBIterator iterator = newIterator(options);
+        List<Variant> result = iterator.toDataResult().getResults();
+        assertEquals(expected.size(), result.size());
+        assertPrefetchThreadsReleased();
+    }
+
+    @Test
+    public void testPrefetchStopAtLimitWithoutClose() throws Exception {
+        QueryOptions options = new QueryOptions(QUERY_MULTI_ITERATOR_PREFETCH.key(), 4).append(QueryOptions.LIMIT, 10);
+        MultiVariantDBIterator iterator = newIterator(options);
+        assertEquals(10, iterator.toDataResult().getNumResults());
+        int queries = numQueries.get();
+        assertPrefetchThreadsReleased();
+        Thread.sleep(100);
+        assertEquals(queries, numQueries.get());
+    }
+
+    @Test
+    public void testPrefetchError() throws Exception {
+        QueryOptions options = new QueryOptions(QUERY_MULTI_ITERATOR_PREFETCH.key(), 4);
+        try (MultiVariantDBIterator iterator = new MultiVariantDBIterator(variants.iterator(), 100, new Query(), options,
+                (query, queryOptions) -> {
+                    throw VariantQueryException.internalException(new Exception("Error"));
+                })) {
+            iterator.hasNext();
+            fail("Expected exception");
+        } catch (VariantQueryException e) {
+            assertEquals("Error", e.getCause().getMessage());
+        }
+    }
+
+    private void assertPrefetchThreadsReleased() throws InterruptedException {
+        long threads = 0;
+        for (int i = 0; i < 50; i++) {
+            threads = Thread.getAllStackTraces().keySet().stream()
+                    .filter(thread -> thread.getName().startsWith("multi-variant-iterator-"))
+                    .count();
+            if (threads == 0) {
+                break;
+            }
+            Thread.sleep(20);
+        }
+        assertEquals(0, threads);
+    }
+
+    private List<String> read(QueryOptions options) throws Exception {
+        try (MultiVariantDBIterator iterator = newIterator(options)) {
+            List<Variant> result = new ArrayList<>();
+            iterator.forEachRemaining(result::add);
+            assertEquals(result.size(), iterator.getCount());
+            return result.stream().map(Variant::toString).collect(Collectors.toList());
+        }
+    }
+
+    private MultiVariantDBIterator newIterator(QueryOptions options) {
+        return new MultiVariantDBIterator(variants.iterator(), 100, new Query(), options, (query, queryOptions) -> {
+            // Simulate slow queries, with different latencies, to shuffle the completion order
+            int queryNum = numQueries.incrementAndGet();
+            try {
+                Thread.sleep(queryNum % 2 == 0 ? 1 : 20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            List<Variant> result = new ArrayList<>();
+            for (String id : query.getAsStringList(ID.key())) {
+                Variant variant = new Variant(id);
+                if (variant.getStart() % 3 == 0) {
+                    result.add(variant);
+                }
+            }
+            return VariantDBIterator.wrapper(result.iterator());
+        });
+    }
+}
@@ -0,0 +1,108 @@
+package org.opencb.opencga.storage.core.variant.adaptors.iterators;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.opencb.biodata.models.variant.Variant;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+
+public class MultiVariantKeyIteratorTest {
+
+    private List<Variant> allVariants;
+    private Random random;
+
+    @Before
+    public void setUp() throws Exception {
+        allVariants = new ArrayList<>();
+        // Include chromosomes larger than the encoded chromosome key, and with common prefixes
+        for (String chromosome : Arrays.asList("1", "10", "2", "GL000192.1", "GL000192.2", "X", "chrUn_KI270302v1", "chrUn_KI270303v1")) {
+            for (int start = 1; start < 200; start++) {
+                allVariants.add(new Variant(chromosome, start, "A", "T"));
+                if (start % 10 == 0) {
+                    // Multiple variants in the same position
+                    allVariants.add(new Variant(chromosome, start, "A", "C"));
+                    allVariants.add(new Variant(chromosome, start, start + 5, "AAAAAA", "A"));
+                }
+            }
+        }
+        allVariants.sort(MultiVariantKeyIterator.VARIANT_COMPARATOR);
+        random = new Random(1);
+    }
+
+    @Test
+    public void testUnion() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            List<List<Variant>> inputs = randomInputs(1 + random.nextInt(10));
+            Set<String> expected = new LinkedHashSet<>();
+            for (Variant variant : allVariants) {
+                for (List<Variant> input : inputs) {
+                    if (input.contains(variant)) {
+                        expected.add(variant.toString());
+                    }
+                }
+            }
+
+            List<String> actual = toList(new UnionMultiVariantKeyIterator(toIterators(inputs)));
+            assertEquals(new ArrayList<>(expected), actual);
+        }
+    }
+
+    @Test
+    public void testIntersect() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            List<List<Variant>> inputs = randomInputs(1 + random.nextInt(10));
+            List<List<Variant>> negatedInputs = randomInputs(random.nextInt(3));
+            List<String> expected = allVariants.stream()
+                    .filter(variant -> inputs.stream().allMatch(input -> input.contains(variant)))
+                    .filter(variant -> negatedInputs.stream().noneMatch(input -> input.contains(variant)))
+                    .map(Variant::toString)
+                    .collect(Collectors.toList());
+
+            List<String> actual = toList(new IntersectMultiVariantKeyIterator(toIterators(inputs), toIterators(negatedInputs)));
+            assertEquals(expected, actual);
+        }
+    }
+
+    @Test
+    public void testIntersectUnequalSizes() throws Exception {
+        List<Variant> small = new ArrayList<>();
+        for (int i = 0; i < allVariants.size(); i += 97) {
+            small.add(allVariants.get(i));
+        }
+        List<List<Variant>> inputs = Arrays.asList(allVariants, small, allVariants);
+
+        List<String> actual = toList(new IntersectMultiVariantKeyIterator(toIterators(inputs)));
+        assertEquals(small.stream().map(Variant::toString).collect(Collectors.toList()), actual);
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+        List<List<Variant>> inputs = Arrays.asList(allVariants, Collections.emptyList());
+        assertEquals(Collections.emptyList(), toList(new IntersectMultiVariantKeyIterator(toIterators(inputs))));
+        assertEquals(Collections.emptyList(), toList(new UnionMultiVariantKeyIterator(
+                toIterators(Arrays.asList(Collections.emptyList(), Collections.emptyList())))));
+    }
+
+    private List<List<Variant>> randomInputs(int numInputs) {
+        List<List<Variant>> inputs = new ArrayList<>(numInputs);
+        for (int i = 0; i < numInputs; i++) {
+            // Inputs with very different densities
+            double density = random.nextDouble();
+            inputs.add(allVariants.stream().filter(v -> random.nextDouble() < density).collect(Collectors.toList()));
+        }
+        return inputs;
+    }
+
+    private List<VariantDBIterator> toIterators(List<List<Variant>> inputs) {
+        return inputs.stream().map(input -> VariantDBIterator.wrapper(input.iterator())).collect(Collectors.toList());
+    }
+
+    private List<String> toList(VariantDBIterator iterator) {
+        List<String> list = new ArrayList<>();
+        iterator.forEachRemaining(variant -> list.add(variant.toString()));
+        return list;
+    }
+}
@@ -0,0 +1,78 @@
+package org.opencb.opencga.storage.core.variant.adaptors.sample;
+
+import org.junit.Test;
+import org.opencb.biodata.models.feature.Genotype;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class SampleDataColumnsTest {
+
+    @Test
+    public void testBuilder() {
+        SampleDataColumns columns = build(Arrays.asList("GT", "FT"),
+                Arrays.asList("0/1", "PASS"),
+                Arrays.asList("1/1", "LowGQ"),
+                Arrays.asList("0/0"));
+
+        assertEquals(3, columns.getNumSamples());
+        assertTrue(columns.hasGenotypes());
+        assertEquals("0/1", columns.get(0, "GT"));
+        assertEquals("LowGQ", columns.get(1, "FT"));
+        assertNull(columns.get(2, "FT"));
+        assertNull(columns.get(0, "DP"));
+    }
+
+    @Test
+    public void testLargeGenotypeDictionary() {
+        SampleDataColumns.Builder builder = SampleDataColumns.builder(Collections.singletonList("GT"), 300);
+        for (int i = 0; i < 300; i++) {
+            builder.set(i, 0, "0/" + i);
+        }
+        SampleDataColumns columns = builder.build();
+
+        assertFalse(columns.hasGenotypes());
+        for (int i = 0; i < 300; i++) {
+            assertEquals("0/" + i, columns.get(i, "GT"));
+        }
+        Map<Genotype, Integer> gtCount = columns.countGenotypes(new int[]{0, 1, 299});
+        assertEquals(3, gtCount.size());
+        assertEquals(1, gtCount.get(new Genotype("0/299")).intValue());
+    }
+
+    @Test
+    public void testCountGenotypes() {
+        SampleDataColumns columns = build(Collections.singletonList("GT"),
+                Arrays.asList("0/1"),
+                Arrays.asList("0/1"),
+                Arrays.asList("1/1"),
+                Arrays.asList(),
+                Arrays.asList("0/0"));
+
+        Map<Genotype, Integer> gtCount = columns.countGenotypes(new int[]{0, 1, 2, 3});
+        assertEquals(2, gtCount.size());
+        assertEquals(2, gtCount.get(new Genotype("0/1")).intValue());
+        assertEquals(1, gtCount.get(new Genotype("1/1")).intValue());
+
+        // Genotypes are parsed only once
+        Map<Genotype, Integer> otherGtCount = columns.countGenotypes(new int[]{0, 4});
+        assertEquals(2, otherGtCount.size());
+        Genotype het = gtCount.keySet().stream().filter(gt -> gt.toString().equals("0/1")).findFirst().get();
+        assertTrue(otherGtCount.keySet().stream().anyMatch(gt -> gt == het));
+    }
+
+    @SafeVarargs
+    private static SampleDataColumns build(List<String> format, List<String>... samplesData) {
+        SampleDataColumns.Builder builder = SampleDataColumns.builder(format, samplesData.length);
+        for (int sampleIdx = 0; sampleIdx < samplesData.length; sampleIdx++) {
+            for (int fieldIdx = 0; fieldIdx < samplesData[sampleIdx].size(); fieldIdx++) {
+                builder.set(sampleIdx, fieldIdx, samplesData[sampleIdx].get(fieldIdx));
+            }
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,165 @@
+package org.opencb.opencga.storage.core.variant.annotation;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.biodata.models.variant.avro.ConsequenceType;
+import org.opencb.biodata.models.variant.avro.VariantAnnotation;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class VariantAnnotationCacheTest {
+
+    private static final long MAX_SIZE = 10L * 1024 * 1024;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    private Path dir;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = temporaryFolder.newFolder("cache").toPath();
+    }
+
+    @Test
+    public void testPutGet() throws Exception {
+        try (VariantAnnotationCache cache = new VariantAnnotationCache(dir, "v1", MAX_SIZE)) {
+            cache.put(Arrays.asList(annotation("1:100:A:C"), annotation("1:200:G:T")));
+            assertEquals(2, cache.size());
+
+            Map<String, VariantAnnotation> map = cache.get(Arrays.asList(
+                    VariantAnnotationCache.key(new Variant("1:100:A:C")),
+                    VariantAnnotationCache.key(new Variant("1:300:A:C")),
+                    null));
+            assertEquals(1, map.size());
+            VariantAnnotation annotation = map.get(VariantAnnotationCache.key(new Variant("1:100:A:C")));
+            assertEquals("1:100:A:C", annotation.getId());
+            assertEquals(1, annotation.getConsequenceTypes().size());
+            assertEquals(1, cache.getHits());
+            assertEquals(2, cache.getMisses());
+        }
+    }
+
+    @Test
+    public void testKeyStructuralVariant() {
+        assertNull(VariantAnnotationCache.key(new Variant("1:100:A:<DEL>")));
+        assertNotNull(VariantAnnotationCache.key(new Variant("1:100:A:-")));
+    }
+
+    @Test
+    public void testReopen() throws Exception {
+        try (VariantAnnotationCache cache = new VariantAnnotationCache(dir, "v1", MAX_SIZE)) {
+            cache.put(Arrays.asList(annotation("1:100:A:C"), annotation("1:200:G:T")));
+        }
+        try (VariantAnnotationCache cache = new VariantAnnotationCache(dir, "v1", MAX_SIZE)) {
+            assertEquals(2, cache.size());
+            Map<String, VariantAnnotation> map = cache.get(Collections.singletonList(
+                    VariantAnnotationCache.key(new Variant("1:200:G:T"))));
+            assertEquals("1:200:G:T", map.values().iterator().next().getId());
+        }
+    }
+
+    @Test
+    public void testInvalidate() throws Exception {
+        try (VariantAnnotationCache cache = new VariantAnnotationCache(dir, "v1", MAX_SIZE)) {
+            cache.put(Arrays.asList(annotation("1:100:A:C"), annotation("1:200:G:T")));
+        }
+        try (VariantAnnotationCache cache = new VariantAnnotationCache(dir, "v2", MAX_SIZE)) {
+            assertEquals(0, cache.size());
+            assertTrue(cache.get(Collections.singletonList(VariantAnnotationCache.key(new Variant("1:100:A:C")))).isEmpty());
+        }
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+        int numVariants = 60000;
+        long maxSize = 2 * 1024 * 1024;
+        try (VariantAnnotationCache cache = new VariantAnnotationCache(dir, "v1", maxSize)) {
+            List<VariantAnnotation> batch = new ArrayList<>();
+            for (int i = 1; i <= numVariants; i++) {
+                batch.add(annotation("1:" + i + ":A:C"));
+                if (batch.size() == 1000) {
+                    cache.put(batch);
+                    batch.clear();
+                }
+            }
+            assertTrue(cache.size() > 0);
+            assertTrue(cache.size() < numVariants);
+            assertTrue(cache.get(Collections.singletonList(VariantAnnotationCache.key(new Variant("1:1:A:C")))).isEmpty());
+            assertEquals(1, cache.get(Collections.singletonList(
+                    VariantAnnotationCache.key(new Variant("1:" + numVariants + ":A:C")))).size());
+        }
+    }
+
+    @Test
+    public void testConcurrentPutGet() throws Exception {
+        int numThreads = 4;
+        int numVariants = 2000;
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        try (VariantAnnotationCache cache = new VariantAnnotationCache(dir, "v1", MAX_SIZE)) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < numThreads; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < numVariants; i++) {
+                        String variant = (thread + 1) + ":" + (i + 1) + ":A:C";
+                        cache.put(Collections.singletonList(annotation(variant)));
+                        Map<String, VariantAnnotation> map = cache.get(Collections.singletonList(
+                                VariantAnnotationCache.key(new Variant(variant))));
+                        assertEquals(variant, map.values().iterator().next().getId());
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(1, TimeUnit.MINUTES);
+            }
+            assertEquals(numThreads * numVariants, cache.size());
+            assertEquals(numThreads * numVariants, cache.getHits());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testLocked() throws Exception {
+        try (VariantAnnotationCache cache = new VariantAnnotationCache(dir, "v1", MAX_SIZE)) {
+            thrown.expect(IOException.class);
+            thrown.expectMessage("in use");
+            new VariantAnnotationCache(dir, "v1", MAX_SIZE);
+        }
+    }
+
+    private static VariantAnnotation annotation(String variantStr) {
+        Variant variant = new Variant(variantStr);
+        VariantAnnotation a = new VariantAnnotation();
+        a.setChromosome(variant.getChromosome());
+        a.setStart(variant.getStart());
+        a.setEnd(variant.getEnd());
+        a.setReference(variant.getReference());
+        a.setAlternate(variant.getAlternate());
+        a.setId(variantStr);
+        ConsequenceType ct = new ConsequenceType();
+        ct.setGeneName("GENE");
+        ct.setExonOverlap(Collections.emptyList());
+        ct.setTranscriptAnnotationFlags(Collections.emptyList());
+        ct.setSequenceOntologyTerms(Collections.emptyList());
+        a.setConsequenceTypes(Collections.singletonList(ct));
+        return a;
+    }
+}
@@ -14,12 +14,19 @@ import org.opencb.opencga.storage.core.metadata.models.ProjectMetadata;
 import org.opencb.opencga.storage.core.variant.VariantStorageOptions;
 import org.opencb.opencga.storage.core.variant.annotation.VariantAnnotatorException;
 
+import javax.ws.rs.BadRequestException;
+import javax.ws.rs.ProcessingException;
+import java.io.IOException;
+import java.net.ConnectException;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * Created by jacobo on 27/11/17.
@@ -108,6 +115,124 @@ public class VariantAnnotatorTest {
         testAnnotator.annotate(Arrays.asList(new Variant("10:999:A:C"), new Variant("10:1000:A:C"), new Variant("10:1001:A:C")));
     }
 
+    @Test
+    public void testConcurrentRequests() throws VariantAnnotatorException {
+        ObjectMap options = new ObjectMap(VariantStorageOptions.ANNOTATOR.key(), VariantAnnotatorFactory.AnnotationEngine.OTHER.toString())
+                .append(VariantStorageOptions.ANNOTATOR_CLASS.key(), MockCellBaseRestVariantAnnotator.class.getName())
+                .append(VariantStorageOptions.ANNOTATOR_CELLBASE_REQUEST_SIZE.key(), 10);
+        MockCellBaseRestVariantAnnotator annotator = (MockCellBaseRestVariantAnnotator) VariantAnnotatorFactory
+                .buildVariantAnnotator(storageConfiguration, projectMetadata, options);
+
+        List<Variant> variants = new ArrayList<>();
+        for (int i = 1; i <= 500; i++) {
+            variants.add(new Variant("10:" + i + ":A:C"));
+        }
+        List<VariantAnnotation> annotations = annotator.annotate(variants);
+        assertEquals(variants.size(), annotations.size());
+        for (int i = 0; i < variants.size(); i++) {
+            assertEquals(variants.get(i).getStart(), annotations.get(i).getStart());
+        }
+        assertTrue(annotator.maxInFlight.get() > 1);
+        // Low latency. The request size should grow
+        assertTrue(annotator.getRequestSize() > 10);
+    }
+
+    @Test
+    public void testRetryAndSplitRequests() throws VariantAnnotatorException {
+        ObjectMap options = new ObjectMap(VariantStorageOptions.ANNOTATOR.key(), VariantAnnotatorFactory.AnnotationEngine.OTHER.toString())
+                .append(VariantStorageOptions.ANNOTATOR_CLASS.key(), MockCellBaseRestVariantAnnotator.class.getName())
+                .append(VariantStorageOptions.ANNOTATOR_CELLBASE_REQUEST_SIZE.key(), 50)
+                .append(VariantStorageOptions.ANNOTATOR_CELLBASE_MAX_RETRIES.key(), 1);
+        MockCellBaseRestVariantAnnotator annotator = (MockCellBaseRestVariantAnnotator) VariantAnnotatorFactory
+                .buildVariantAnnotator(storageConfiguration, projectMetadata, options);
+        // Requests containing this variant fail, unless requested alone
+        annotator.failingVariant = "10:25:A:C";
+
+        List<Variant> variants = new ArrayList<>();
+        for (int i = 1; i <= 50; i++) {
+            variants.add(new Variant("10:" + i + ":A:C"));
+        }
+        List<VariantAnnotation> annotations = annotator.annotate(variants);
+        assertEquals(variants.size(), annotations.size());
+        for (int i = 0; i < variants.size(); i++) {
+            assertEquals(variants.get(i).getStart(), annotations.get(i).getStart());
+        }
+    }
+
+    @Test
+    public void testFailFastOnConnectionError() throws VariantAnnotatorException {
+        ObjectMap options = new ObjectMap(VariantStorageOptions.ANNOTATOR.key(), VariantAnnotatorFactory.AnnotationEngine.OTHER.toString())
+                .append(VariantStorageOptions.ANNOTATOR_CLASS.key(), MockCellBaseRestVariantAnnotator.class.getName())
+                .append(VariantStorageOptions.ANNOTATOR_CELLBASE_REQUEST_SIZE.key(), 50)
+                .append(VariantStorageOptions.ANNOTATOR_CELLBASE_MAX_RETRIES.key(), 1);
+        MockCellBaseRestVariantAnnotator annotator = (MockCellBaseRestVariantAnnotator) VariantAnnotatorFactory
+                .buildVariantAnnotator(storageConfiguration, projectMetadata, options);
+        annotator.connectionError = true;
+
+        List<Variant> variants = new ArrayList<>();
+        for (int i = 1; i <= 50; i++) {
+            variants.add(new Variant("10:" + i + ":A:C"));
+        }
+        try {
+            annotator.annotate(variants);
+            fail("Expected VariantAnnotatorException");
+        } catch (VariantAnnotatorException e) {
+            assertTrue(e.getCause() instanceof ProcessingException);
+        } finally {
+            annotator.close();
+        }
+        // Retried, but not split
+        assertEquals(2, annotator.requests.get());
+    }
+
+    public static class MockCellBaseRestVariantAnnotator extends CellBaseRestVariantAnnotator {
+
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger maxInFlight = new AtomicInteger();
+        private volatile String failingVariant;
+        private volatile boolean connectionError;
+        private final AtomicInteger requests = new AtomicInteger();
+
+        public MockCellBaseRestVariantAnnotator(StorageConfiguration storageConfiguration, ProjectMetadata projectMetadata, ObjectMap options) throws VariantAnnotatorException {
+            super(storageConfiguration, projectMetadata, options);
+        }
+
+        @Override
+        protected List<QueryResult<VariantAnnotation>> fetchAnnotations(List<Variant> variants) throws IOException {
+            requests.incrementAndGet();
+            int current = inFlight.incrementAndGet();
+            maxInFlight.accumulateAndGet(current, Math::max);
+            try {
+                Thread.sleep(5);
+                List<QueryResult<VariantAnnotation>> queryResults = new ArrayList<>(variants.size());
+                for (Variant variant : variants) {
+                    if (variants.size() > 1 && variant.toString().equals(failingVariant)) {
+                        throw new BadRequestException("Mock error");
+                    }
+                    if (connectionError) {
+                        throw new ProcessingException(new ConnectException("Connection refused"));
+                    }
+                    VariantAnnotation annotation = new VariantAnnotation();
+                    annotation.setChromosome(variant.getChromosome());
+                    annotation.setStart(variant.getStart());
+                    annotation.setEnd(variant.getEnd());
+                    annotation.setReference(variant.getReference());
+                    annotation.setAlternate(variant.getAlternate());
+                    QueryResult<VariantAnnotation> queryResult = new QueryResult<>();
+                    queryResult.setId(variant.toString());
+                    queryResult.setResult(Collections.singletonList(annotation));
+                    queryResult.setNumResults(1);
+                    queryResults.add(queryResult);
+                }
+                return queryResults;
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        }
+    }
+
     public static class TestCellBaseRestVariantAnnotator extends CellBaseRestVariantAnnotator {
 
         private final Set<String> skipvariants;
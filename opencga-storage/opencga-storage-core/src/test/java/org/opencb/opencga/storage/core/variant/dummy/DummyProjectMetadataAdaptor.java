@@ -53,13 +53,16 @@ public class DummyProjectMetadataAdaptor implements ProjectMetadataAdaptor {
         if (projectMetadata == null) {
             projectMetadata = new ProjectMetadata("hsapiens", "grch37", 1);
         }
-        result.setResults(Collections.singletonList(projectMetadata.copy()));
+        result.setResults(Collections.singletonList(projectMetadata.copy().setCounters(new HashMap<>(counters))));
         return result;
     }
 
     @Override
     public synchronized DataResult updateProjectMetadata(ProjectMetadata projectMetadata, boolean updateCounters) {
         DummyProjectMetadataAdaptor.projectMetadata = projectMetadata;
+        if (updateCounters) {
+            counters.putAll(projectMetadata.getCounters());
+        }
         return new DataResult();
     }
 
@@ -69,6 +72,11 @@ public class DummyProjectMetadataAdaptor implements ProjectMetadataAdaptor {
                 (key, value) -> value == null ? 1 : value + 1);
     }
 
+    @Override
+    public synchronized int getCounter(Integer studyId, String idType) {
+        return counters.getOrDefault(idType + (studyId == null ? "" : ("_" + studyId)), 0);
+    }
+
     private static final AtomicInteger NUM_PRINTS = new AtomicInteger();
 
     public static void writeAndClear(Path path) {
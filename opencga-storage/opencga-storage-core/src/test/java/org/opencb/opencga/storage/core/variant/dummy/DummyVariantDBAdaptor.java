@@ -34,6 +34,7 @@ import org.opencb.opencga.storage.core.metadata.models.CohortMetadata;
 import org.opencb.opencga.storage.core.metadata.models.StudyMetadata;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantDBAdaptor;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryUtils;
 import org.opencb.opencga.storage.core.variant.adaptors.iterators.VariantDBIterator;
 import org.opencb.opencga.storage.core.variant.stats.VariantStatsWrapper;
 import org.slf4j.Logger;
@@ -112,6 +113,9 @@ public class DummyVariantDBAdaptor implements VariantDBAdaptor {
 
         List<Variant> variants = new ArrayList<>(TEMPLATES.size());
         HashSet<String> variantIds = new HashSet<>(query.getAsStringList(VariantQueryParam.ID.key()));
+        List<Region> regions = VariantQueryUtils.isValidParam(query, VariantQueryParam.REGION)
+                ? Region.parseRegions(query.getString(VariantQueryParam.REGION.key()))
+                : Collections.emptyList();
         for (String template : TEMPLATES) {
             if (!variantIds.isEmpty() && !variantIds.contains(template)) {
                 // Skip this variant
@@ -119,6 +123,11 @@ public class DummyVariantDBAdaptor implements VariantDBAdaptor {
             }
 
             Variant variant = new Variant(template);
+            if (!regions.isEmpty() && regions.stream().noneMatch(region -> region.getChromosome().equals(variant.getChromosome())
+                    && region.getStart() <= variant.getEnd() && region.getEnd() >= variant.getStart())) {
+                // Skip this variant
+                continue;
+            }
 
 
             Map<Integer, List<Integer>> returnedSamples = getReturnedSamples(query, options);
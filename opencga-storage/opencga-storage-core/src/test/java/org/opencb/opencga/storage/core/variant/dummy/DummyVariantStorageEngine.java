@@ -112,7 +112,7 @@ public class DummyVariantStorageEngine extends VariantStorageEngine {
 
     @Override
     public VariantStorageMetadataManager getMetadataManager() throws StorageEngineException {
-        return new VariantStorageMetadataManager(new DummyVariantStorageMetadataDBAdaptorFactory());
+        return new VariantStorageMetadataManager(new DummyVariantStorageMetadataDBAdaptorFactory(), getOptions());
     }
 
     @Override
@@ -0,0 +1,81 @@
+package org.opencb.opencga.storage.core.variant.io;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class BgzfBlockCompressorTest {
+
+    @Test
+    public void testCompress() throws IOException {
+        byte[] data = new byte[BgzfBlockCompressor.MAX_BLOCK_SIZE * 3 + 100];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) ("ACGT\t".charAt(i % 5));
+        }
+        checkCompress(data);
+    }
+
+    @Test
+    public void testCompressRandomData() throws IOException {
+        // Not compressible. Blocks are stored uncompressed
+        byte[] data = new byte[BgzfBlockCompressor.MAX_BLOCK_SIZE * 2];
+        new Random(1).nextBytes(data);
+        checkCompress(data);
+    }
+
+    @Test
+    public void testConcatenateBlocks() throws IOException {
+        BgzfBlockCompressor compressor = new BgzfBlockCompressor();
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        compressor.compress("chunk1\n".getBytes(), 0, 7, os);
+        compressor.compress("chunk2\n".getBytes(), 0, 7, os);
+        os.write(BgzfBlockCompressor.EOF_BLOCK);
+        compressor.end();
+
+        assertArrayEquals("chunk1\nchunk2\n".getBytes(), decompress(os.toByteArray()));
+    }
+
+    private void checkCompress(byte[] data) throws IOException {
+        BgzfBlockCompressor compressor = new BgzfBlockCompressor();
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        long written = compressor.compress(data, 0, data.length, os);
+        os.write(BgzfBlockCompressor.EOF_BLOCK);
+        compressor.end();
+
+        byte[] compressed = os.toByteArray();
+        assertEquals(written + BgzfBlockCompressor.EOF_BLOCK.length, compressed.length);
+
+        // Check the BSIZE field of each block
+        int offset = 0;
+        int numBlocks = 0;
+        while (offset < compressed.length) {
+            int blockSize = ((compressed[offset + 16] & 0xFF) | ((compressed[offset + 17] & 0xFF) << 8)) + 1;
+            offset += blockSize;
+            numBlocks++;
+        }
+        assertEquals(compressed.length, offset);
+        assertEquals((data.length + BgzfBlockCompressor.MAX_BLOCK_SIZE - 1) / BgzfBlockCompressor.MAX_BLOCK_SIZE + 1, numBlocks);
+
+        assertArrayEquals(data, decompress(compressed));
+    }
+
+    private byte[] decompress(byte[] compressed) throws IOException {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        try (InputStream is = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = is.read(buffer)) > 0) {
+                os.write(buffer, 0, read);
+            }
+        }
+        return os.toByteArray();
+    }
+}
@@ -19,11 +19,14 @@ package org.opencb.opencga.storage.core.variant.io;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.opencb.biodata.models.core.Region;
 import org.opencb.biodata.models.variant.Variant;
+import org.opencb.biodata.models.variant.metadata.VariantFileHeaderComplexLine;
 import org.opencb.commons.datastore.core.Query;
 import org.opencb.commons.datastore.core.QueryOptions;
 import org.opencb.opencga.storage.core.variant.VariantStorageBaseTest;
 import org.opencb.opencga.storage.core.variant.VariantStorageOptions;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam;
 import org.opencb.opencga.storage.core.variant.dummy.DummyVariantStorageMetadataDBAdaptorFactory;
 import org.opencb.opencga.storage.core.variant.dummy.DummyVariantStorageTest;
 import org.opencb.opencga.storage.core.variant.io.VariantWriterFactory.VariantOutputFormat;
@@ -32,11 +35,11 @@ import org.opencb.opencga.storage.core.variant.io.json.VariantJsonReader;
 import java.io.*;
 import java.net.URI;
 import java.nio.file.Paths;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.util.*;
+import java.util.stream.Collectors;
 import java.util.zip.GZIPInputStream;
 
+import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.CoreMatchers.hasItem;
 import static org.junit.Assert.*;
 
@@ -121,6 +124,139 @@ public class VariantExporterTest extends VariantStorageBaseTest implements Dummy
         assertEquals(expectedVariants.size(), numVariants);
     }
 
+    @Test
+    public void exportParallelVcfTest() throws Exception {
+        Query query = new Query(VariantQueryParam.REGION.key(), "1");
+        URI output = newOutputUri().resolve("variant.vcf.gz");
+        variantStorageEngine.exportData(output, VariantOutputFormat.VCF_GZ, null, query, new QueryOptions());
+
+        URI parallelOutput = newOutputUri().resolve("variant.parallel.vcf.gz");
+        variantStorageEngine.exportData(parallelOutput, VariantOutputFormat.VCF_GZ, null, query, new QueryOptions()
+                .append(VariantStorageOptions.EXPORT_PARALLEL_THREADS.key(), 4)
+                .append(VariantStorageOptions.EXPORT_TABIX_INDEX.key(), true));
+
+        assertTrue(Paths.get(parallelOutput.getPath() + ".tbi").toFile().exists());
+        List<String> expected = readLines(output);
+        List<String> actual = readLines(parallelOutput);
+        assertNotEquals(0, actual.size());
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void exportParallelVcfSameBytesTest() throws Exception {
+        Query query = new Query(VariantQueryParam.REGION.key(), "1");
+        QueryOptions parallelOptions = new QueryOptions()
+                .append(VariantStorageOptions.EXPORT_PARALLEL_THREADS.key(), 4)
+                .append(VariantStorageOptions.EXPORT_PARALLEL_REGION_SIZE.key(), 10000000);
+        for (VariantOutputFormat format : Arrays.asList(VariantOutputFormat.VCF, VariantOutputFormat.VCF_GZ)) {
+            boolean gzip = format == VariantOutputFormat.VCF_GZ;
+            String extension = gzip ? ".vcf.gz" : ".vcf";
+            URI output = newOutputUri().resolve("variant" + extension);
+            variantStorageEngine.exportData(output, format, null, query, new QueryOptions());
+
+            URI parallelOutput = newOutputUri().resolve("variant.parallel" + extension);
+            variantStorageEngine.exportData(parallelOutput, format, null, query, parallelOptions);
+
+            byte[] expected = readBytes(output, gzip);
+            byte[] actual = readBytes(parallelOutput, gzip);
+            assertNotEquals(0, actual.length);
+            assertArrayEquals(expected, actual);
+        }
+    }
+
+    @Test
+    public void exportParallelVcfWithoutRegionTest() throws Exception {
+        // Contigs from the metadata. MT is missing, so it is exported by the partition of other contigs
+        Map<String, Integer> contigs = new LinkedHashMap<>();
+        for (int chr = 1; chr <= 22; chr++) {
+            contigs.put(String.valueOf(chr), 2000);
+        }
+        contigs.put("X", 2000);
+        contigs.put("Y", 2000);
+        variantStorageEngine.getMetadataManager().updateStudyMetadata(STUDY_NAME, studyMetadata -> {
+            List<VariantFileHeaderComplexLine> lines = new ArrayList<>(studyMetadata.getVariantHeader().getComplexLines());
+            lines.removeIf(line -> line.getKey().equalsIgnoreCase("contig"));
+            contigs.forEach((contig, length) -> lines.add(new VariantFileHeaderComplexLine("contig", contig, null, null, null,
+                    Collections.singletonMap("length", String.valueOf(length)))));
+            studyMetadata.getVariantHeader().setComplexLines(lines);
+            return studyMetadata;
+        });
+
+        List<VariantParallelVcfExporter.ExportRegion> regions = VariantParallelVcfExporter.splitRegions(Collections.emptyList(),
+                contigs, 999);
+        assertEquals(contigs.size() * 3 + 1, regions.size());
+        assertEquals("1:1-999", regions.get(0).toString());
+        assertEquals("1:1000-1998", regions.get(1).toString());
+        assertEquals(999, regions.get(1).getPreviousEnd());
+        assertTrue(regions.get(regions.size() - 1).isOtherContigs());
+        assertNull(VariantParallelVcfExporter.splitRegions(Collections.emptyList(), Collections.emptyMap(), 999));
+
+        QueryOptions parallelOptions = new QueryOptions()
+                .append(VariantStorageOptions.EXPORT_PARALLEL_THREADS.key(), 4)
+                .append(VariantStorageOptions.EXPORT_PARALLEL_REGION_SIZE.key(), 999);
+        for (VariantOutputFormat format : Arrays.asList(VariantOutputFormat.VCF, VariantOutputFormat.VCF_GZ)) {
+            boolean gzip = format == VariantOutputFormat.VCF_GZ;
+            String extension = gzip ? ".vcf.gz" : ".vcf";
+            URI output = newOutputUri().resolve("variant" + extension);
+            variantStorageEngine.exportData(output, format, null, new Query(), new QueryOptions());
+
+            URI parallelOutput = newOutputUri().resolve("variant.parallel" + extension);
+            variantStorageEngine.exportData(parallelOutput, format, null, new Query(), parallelOptions);
+
+            byte[] expected = readBytes(output, gzip);
+            byte[] actual = readBytes(parallelOutput, gzip);
+            assertThat(new String(actual), containsString("\nMT\t1000\t"));
+            assertArrayEquals(expected, actual);
+        }
+    }
+
+    @Test
+    public void exportParallelVcfOverlappingRegionsTest() throws Exception {
+        Map<String, Integer> contigs = new LinkedHashMap<>();
+        contigs.put("1", 1000);
+        contigs.put("2", 1000);
+        List<VariantParallelVcfExporter.ExportRegion> regions = VariantParallelVcfExporter.splitRegions(
+                Region.parseRegions("2:1-50,1:400-500,1:100-200,1:150-300"), contigs, 1000);
+        assertEquals(Arrays.asList("1:100-300", "1:400-500", "2:1-50"),
+                regions.stream().map(Object::toString).collect(Collectors.toList()));
+        assertEquals(300, regions.get(1).getPreviousEnd());
+
+        Query query = new Query(VariantQueryParam.REGION.key(), "2:900-1100,1:900-1100,1:1000-1200");
+        URI output = newOutputUri().resolve("variant.vcf");
+        variantStorageEngine.exportData(output, VariantOutputFormat.VCF, null, query, new QueryOptions());
+        URI parallelOutput = newOutputUri().resolve("variant.parallel.vcf");
+        variantStorageEngine.exportData(parallelOutput, VariantOutputFormat.VCF, null, query, new QueryOptions()
+                .append(VariantStorageOptions.EXPORT_PARALLEL_THREADS.key(), 4)
+                .append(VariantStorageOptions.EXPORT_PARALLEL_REGION_SIZE.key(), 100));
+
+        assertArrayEquals(readBytes(output, false), readBytes(parallelOutput, false));
+    }
+
+    private byte[] readBytes(URI output, boolean gzip) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (InputStream is = gzip
+                ? new GZIPInputStream(new FileInputStream(output.getPath()))
+                : new FileInputStream(output.getPath())) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = is.read(buffer)) > 0) {
+                bytes.write(buffer, 0, read);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private List<String> readLines(URI output) throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(new GZIPInputStream(new FileInputStream(output.getPath()))))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+
     @Test
     public void exportTpedTest() throws Exception {
         URI output = newOutputUri().resolve("variant" + VariantExporter.TPED_FILE_EXTENSION);
@@ -0,0 +1,101 @@
+package org.opencb.opencga.storage.core.variant.local;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.opencb.biodata.models.core.Region;
+import org.opencb.biodata.models.variant.StudyEntry;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.commons.datastore.core.ObjectMap;
+import org.opencb.commons.datastore.core.Query;
+import org.opencb.commons.datastore.core.QueryOptions;
+import org.opencb.opencga.storage.core.StoragePipelineResult;
+import org.opencb.opencga.storage.core.metadata.models.StudyMetadata;
+import org.opencb.opencga.storage.core.variant.VariantStorageBaseTest;
+import org.opencb.opencga.storage.core.variant.VariantStorageOptions;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryException;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class LocalVariantStorageEngineTest extends VariantStorageBaseTest implements LocalVariantStorageTest {
+
+    private StudyMetadata studyMetadata;
+    private long numVariants;
+
+    @Before
+    public void setUp() throws Exception {
+        studyMetadata = newStudyMetadata();
+        StoragePipelineResult result = runDefaultETL(smallInputUri, variantStorageEngine, studyMetadata, new ObjectMap()
+                .append(VariantStorageOptions.ANNOTATE.key(), false)
+                .append(VariantStorageOptions.STATS_CALCULATE.key(), false));
+        numVariants = result.getLoadStats().getLong("numVariants");
+        assertTrue(numVariants > 0);
+    }
+
+    @Test
+    public void testCount() throws Exception {
+        assertEquals(numVariants, variantStorageEngine.count(new Query()).first().longValue());
+        List<Variant> variants = variantStorageEngine.get(new Query(), new QueryOptions()).getResults();
+        assertEquals(numVariants, variants.size());
+    }
+
+    @Test
+    public void testRegion() throws Exception {
+        Region region = new Region("1", 1000000, 5000000);
+        List<Variant> variants = variantStorageEngine.get(new Query(VariantQueryParam.REGION.key(), region.toString()),
+                new QueryOptions()).getResults();
+        assertFalse(variants.isEmpty());
+        long expected = variantStorageEngine.get(new Query(), new QueryOptions()).getResults().stream()
+                .filter(v -> region.overlaps(v.getChromosome(), v.getStart(), v.getEnd()))
+                .count();
+        assertEquals(expected, variants.size());
+        for (Variant variant : variants) {
+            assertTrue(region.overlaps(variant.getChromosome(), variant.getStart(), variant.getEnd()));
+        }
+
+        Variant first = variants.get(0);
+        List<Variant> byId = variantStorageEngine.get(new Query(VariantQueryParam.ID.key(), first.toString()),
+                new QueryOptions()).getResults();
+        assertEquals(1, byId.size());
+        assertEquals(first.toString(), byId.get(0).toString());
+    }
+
+    @Test
+    public void testIncludeSample() throws Exception {
+        List<Variant> variants = variantStorageEngine.get(new Query(VariantQueryParam.INCLUDE_SAMPLE.key(), "NA19660"),
+                new QueryOptions()).getResults();
+        assertEquals(numVariants, variants.size());
+        for (Variant variant : variants) {
+            StudyEntry study = variant.getStudies().get(0);
+            assertEquals(Collections.singletonList("NA19660"), study.getOrderedSamplesName());
+            assertNotNull(study.getSampleData("NA19660", "GT"));
+        }
+    }
+
+    @Test
+    public void testGenotype() throws Exception {
+        List<Variant> variants = variantStorageEngine.get(new Query(VariantQueryParam.GENOTYPE.key(), "NA19600:1|1,1/1")
+                .append(VariantQueryParam.INCLUDE_SAMPLE.key(), "NA19600"), new QueryOptions()).getResults();
+        assertFalse(variants.isEmpty());
+        for (Variant variant : variants) {
+            String gt = variant.getStudies().get(0).getSampleData("NA19600", "GT");
+            assertEquals("1/1", gt.replace('|', '/'));
+        }
+    }
+
+    @Test(expected = VariantQueryException.class)
+    public void testUnsupportedFilter() throws Exception {
+        variantStorageEngine.get(new Query(VariantQueryParam.ANNOT_CONSEQUENCE_TYPE.key(), "missense_variant"), new QueryOptions());
+    }
+
+    @Test
+    public void testRemoveFile() throws Exception {
+        variantStorageEngine.removeFiles(studyMetadata.getName(), Collections.singletonList("variant-test-file.vcf.gz"));
+        assertEquals(0, variantStorageEngine.count(new Query()).first().longValue());
+        assertTrue(metadataManager.getIndexedFiles(studyMetadata.getId()).isEmpty());
+    }
+
+}
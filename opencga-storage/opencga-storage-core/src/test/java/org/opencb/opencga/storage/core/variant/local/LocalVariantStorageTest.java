@@ -0,0 +1,37 @@
+package org.opencb.opencga.storage.core.variant.local;
+
+import org.apache.commons.io.FileUtils;
+import org.opencb.opencga.storage.core.config.StorageConfiguration;
+import org.opencb.opencga.storage.core.variant.VariantStorageBaseTest;
+import org.opencb.opencga.storage.core.variant.VariantStorageTest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+
+public interface LocalVariantStorageTest extends VariantStorageTest {
+
+    @Override
+    default LocalVariantStorageEngine getVariantStorageEngine() throws Exception {
+        try (InputStream is = LocalVariantStorageEngine.class.getClassLoader().getResourceAsStream("storage-configuration.yml")) {
+            StorageConfiguration storageConfiguration = StorageConfiguration.load(is);
+            storageConfiguration.getVariant().setDefaultEngine(LocalVariantStorageEngine.STORAGE_ENGINE_ID);
+            storageConfiguration.getVariantEngine(LocalVariantStorageEngine.STORAGE_ENGINE_ID).getOptions()
+                    .put(LocalVariantStorageOptions.DIRECTORY.key(), getLocalDirectory().toString());
+            LocalVariantStorageEngine storageEngine = new LocalVariantStorageEngine();
+            storageEngine.setConfiguration(storageConfiguration, LocalVariantStorageEngine.STORAGE_ENGINE_ID,
+                    VariantStorageBaseTest.DB_NAME);
+            return storageEngine;
+        }
+    }
+
+    default Path getLocalDirectory() throws IOException {
+        return VariantStorageBaseTest.getTmpRootDir().resolve("local_storage").toAbsolutePath();
+    }
+
+    @Override
+    default void clearDB(String dbName) throws Exception {
+        FileUtils.deleteDirectory(getLocalDirectory().resolve(dbName).toFile());
+    }
+
+}
@@ -0,0 +1,163 @@
+package org.opencb.opencga.storage.core.variant.local.store;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.opencb.biodata.models.core.Region;
+import org.opencb.biodata.models.variant.StudyEntry;
+import org.opencb.biodata.models.variant.Variant;
+
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LocalVariantStoreTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private static final List<String> SAMPLES = Arrays.asList("S1", "S2", "S3", "S4");
+    private static final List<String> GENOTYPES = Arrays.asList("0/0", "0/1", "1/1", "./.");
+
+    private Path directory;
+    private Random random;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = temporaryFolder.newFolder("store").toPath();
+        random = new Random(1);
+    }
+
+    @Test
+    public void testWriteAndQuery() throws Exception {
+        List<Variant> expected = new ArrayList<>();
+        // Two writes with small blocks and chunks, so the store has multiple chunk files to merge
+        for (int write = 0; write < 2; write++) {
+            List<Variant> variants = new ArrayList<>();
+            for (String chromosome : Arrays.asList("1", "2", "X")) {
+                int start = 1000 + write;
+                for (int i = 0; i < 500; i++) {
+                    start += random.nextInt(50) * 2;
+                    variants.add(newVariant(chromosome, start, i % 10 == 0 ? 200 : 0));
+                }
+            }
+            LocalVariantStoreWriter writer = new LocalVariantStoreWriter(directory, 1024, 16 * 1024);
+            writer.open();
+            writer.write(variants);
+            writer.close();
+            assertEquals(variants.size(), writer.getNumVariants());
+            expected.addAll(variants);
+        }
+
+        try (LocalVariantStore store = new LocalVariantStore(directory)) {
+            assertEquals(expected.size(), store.count());
+            assertEquals(new LinkedHashSet<>(Arrays.asList("1", "2", "X")), store.getChromosomes());
+            assertEquals(SAMPLES, store.getSamples("s1"));
+
+            List<Variant> all = new ArrayList<>();
+            store.iterator().forEachRemaining(all::add);
+            assertEquals(expected.size(), all.size());
+            assertSorted(all);
+
+            for (Region region : Arrays.asList(new Region("1", 5000, 8000), new Region("2", 1, 2000), new Region("X", 20000, 30000),
+                    new Region("1", 12000, 12000), new Region("3", 1, 1000000))) {
+                List<Variant> actual = new ArrayList<>();
+                store.iterator(region).forEachRemaining(actual::add);
+                List<String> expectedIds = expected.stream()
+                        .filter(v -> v.getChromosome().equals(region.getChromosome())
+                                && v.getStart() <= region.getEnd() && v.getEnd() >= region.getStart())
+                        .map(Variant::toString)
+                        .sorted()
+                        .collect(Collectors.toList());
+                List<String> actualIds = actual.stream().map(Variant::toString).sorted().collect(Collectors.toList());
+                assertEquals(region.toString(), expectedIds, actualIds);
+                assertSorted(actual);
+            }
+        }
+    }
+
+    @Test
+    public void testIncludeSamples() throws Exception {
+        List<Variant> variants = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            variants.add(newVariant("1", 100 + i * 10, 0));
+        }
+        LocalVariantStoreWriter writer = new LocalVariantStoreWriter(directory);
+        writer.open();
+        writer.write(variants);
+        writer.close();
+
+        try (LocalVariantStore store = new LocalVariantStore(directory)) {
+            Map<String, List<String>> include = Collections.singletonMap("s1", Arrays.asList("S4", "S2"));
+            Iterator<Variant> iterator = store.iterator(new Region("1", 1, 100000), include);
+            for (Variant expected : variants) {
+                Variant actual = iterator.next();
+                assertEquals(expected.toString(), actual.toString());
+                StudyEntry expectedStudy = expected.getStudy("s1");
+                StudyEntry study = actual.getStudy("s1");
+                // Samples are returned in the stored order
+                assertEquals(Arrays.asList("S2", "S4"), study.getOrderedSamplesName());
+                assertEquals(expectedStudy.getSampleData("S2", "GT"), study.getSampleData("S2", "GT"));
+                assertEquals(expectedStudy.getSampleData("S4", "GT"), study.getSampleData("S4", "GT"));
+            }
+            assertTrue(!iterator.hasNext());
+        }
+    }
+
+    @Test
+    public void testUnsorted() throws Exception {
+        List<Variant> variants = new ArrayList<>();
+        for (String chromosome : Arrays.asList("2", "1", "2")) {
+            for (int i = 0; i < 50; i++) {
+                variants.add(newVariant(chromosome, 100 + random.nextInt(10000), 0));
+            }
+        }
+        LocalVariantStoreWriter writer = new LocalVariantStoreWriter(directory, 1024, 16 * 1024);
+        writer.open();
+        writer.write(variants);
+        writer.close();
+        assertEquals(variants.size(), writer.getNumVariants());
+
+        // Each sorted run is written into its own chunk, and merged when reading
+        try (LocalVariantStore store = new LocalVariantStore(directory)) {
+            assertEquals(variants.size(), store.count());
+            for (String chromosome : Arrays.asList("1", "2")) {
+                List<Variant> actual = new ArrayList<>();
+                store.iterator(new Region(chromosome)).forEachRemaining(actual::add);
+                assertEquals(variants.stream().filter(v -> v.getChromosome().equals(chromosome)).count(), actual.size());
+                assertSorted(actual);
+            }
+        }
+    }
+
+    private Variant newVariant(String chromosome, int start, int deletionLength) {
+        Variant variant;
+        if (deletionLength > 0) {
+            char[] reference = new char[deletionLength + 1];
+            Arrays.fill(reference, 'A');
+            variant = new Variant(chromosome + ':' + start + ':' + new String(reference) + ":A");
+        } else {
+            variant = new Variant(chromosome + ':' + start + ":A:C");
+        }
+        StudyEntry study = new StudyEntry("s1", Collections.emptyList(), Collections.singletonList("GT"));
+        for (String sample : SAMPLES) {
+            study.addSampleData(sample, Collections.singletonList(GENOTYPES.get(random.nextInt(GENOTYPES.size()))));
+        }
+        variant.addStudyEntry(study);
+        return variant;
+    }
+
+    private void assertSorted(List<Variant> variants) {
+        for (int i = 1; i < variants.size(); i++) {
+            Variant prev = variants.get(i - 1);
+            Variant variant = variants.get(i);
+            if (prev.getChromosome().equals(variant.getChromosome())) {
+                assertTrue(prev + " > " + variant, prev.getStart() <= variant.getStart());
+            }
+        }
+    }
+}
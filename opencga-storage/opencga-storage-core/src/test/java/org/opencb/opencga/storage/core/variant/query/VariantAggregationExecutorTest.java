@@ -0,0 +1,92 @@
+package org.opencb.opencga.storage.core.variant.query;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.opencb.biodata.models.core.Region;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.commons.datastore.core.DataResult;
+import org.opencb.commons.datastore.core.FacetField;
+import org.opencb.commons.datastore.core.ObjectMap;
+import org.opencb.commons.datastore.core.Query;
+import org.opencb.commons.datastore.core.QueryOptions;
+import org.opencb.opencga.core.common.JacksonUtils;
+import org.opencb.opencga.storage.core.variant.VariantStorageOptions;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantIterable;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam;
+import org.opencb.opencga.storage.core.variant.adaptors.iterators.VariantDBIterator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+
+public class VariantAggregationExecutorTest {
+
+    private List<Variant> variants;
+    private AtomicInteger queries;
+    private VariantIterable iterable;
+
+    @Before
+    public void setUp() throws Exception {
+        variants = new ArrayList<>();
+        for (int i = 1000; i < 5000; i += 7) {
+            variants.add(new Variant("1:" + i + ":A:T"));
+        }
+        // Deletion overlapping two partitions
+        variants.add(new Variant("1:1995:ACGTACGTACGT:A"));
+        // Variants out of the region
+        variants.add(new Variant("2:1500:A:T"));
+        variants.add(new Variant("1:6000:A:T"));
+
+        queries = new AtomicInteger();
+        iterable = (query, options) -> {
+            queries.incrementAndGet();
+            Region region = (Region) query.get(VariantQueryParam.REGION.key());
+            List<Variant> result = variants.stream()
+                    .filter(v -> v.getChromosome().equals(region.getChromosome())
+                            && v.getStart() <= region.getEnd()
+                            && v.getEnd() >= region.getStart())
+                    .collect(Collectors.toList());
+            return VariantDBIterator.wrapper(result.iterator());
+        };
+    }
+
+    @Test
+    public void testPartitions() throws Exception {
+        DataResult<FacetField> expected = aggregate("chromDensity[1:1000-4999]:500>>type", 100000, 1);
+        assertEquals(1, queries.getAndSet(0));
+
+        for (int threads : new int[]{1, 4}) {
+            DataResult<FacetField> actual = aggregate("chromDensity[1:1000-4999]:500>>type", 1000, threads);
+            assertEquals(4, queries.getAndSet(0));
+            assertEquals(expected.getNumMatches(), actual.getNumMatches());
+            assertEquals(JacksonUtils.getDefaultObjectMapper().writeValueAsString(expected.first()),
+                    JacksonUtils.getDefaultObjectMapper().writeValueAsString(actual.first()));
+        }
+
+        // All the variants from chr1 in the region, including the deletion, without duplicates
+        long expectedCount = variants.stream().filter(v -> v.getChromosome().equals("1") && v.getStart() < 5000).count();
+        assertEquals(expectedCount, expected.getNumMatches());
+    }
+
+    @Test
+    public void testBuckets() throws Exception {
+        DataResult<FacetField> result = aggregate("chromDensity[1:1000-4999]:1000>>type", 1000, 2);
+        FacetField regionField = result.first().getBuckets().get(0).getFacetFields().get(0);
+        assertEquals(4, regionField.getBuckets().size());
+        assertEquals("1000", regionField.getBuckets().get(0).getValue());
+        // 143 SNVs from [1000, 1999], plus the deletion
+        assertEquals(144, regionField.getBuckets().get(0).getCount());
+        assertEquals(2, regionField.getBuckets().get(0).getFacetFields().get(0).getBuckets().size());
+        assertEquals(result.getNumMatches(), regionField.getCount());
+    }
+
+    private DataResult<FacetField> aggregate(String facet, int partitionSize, int threads) {
+        VariantAggregationExecutor executor = new VariantAggregationExecutor(null, "db", iterable, null, new ObjectMap()
+                .append(VariantStorageOptions.AGGREGATION_PARTITION_SIZE.key(), partitionSize)
+                .append(VariantStorageOptions.AGGREGATION_THREADS.key(), threads));
+        return executor.chromDensityAggregation(new Query(), new QueryOptions(QueryOptions.FACET, facet));
+    }
+}
@@ -0,0 +1,253 @@
+package org.opencb.opencga.storage.core.variant.query;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.opencb.commons.datastore.core.DataResult;
+import org.opencb.commons.datastore.core.ObjectMap;
+import org.opencb.commons.datastore.core.Query;
+import org.opencb.commons.datastore.core.QueryOptions;
+import org.opencb.opencga.storage.core.variant.VariantStorageOptions;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class VariantQueryPlannerTest {
+
+    private VariantQueryPlanner planner;
+    private ObjectMap config;
+    private StubExecutor index;
+    private StubExecutor search;
+    private StubExecutor db;
+    private List<VariantQueryExecutor> executors;
+
+    @Before
+    public void setUp() throws Exception {
+        planner = new VariantQueryPlanner();
+        config = new ObjectMap(VariantStorageOptions.QUERY_PLANNER_COST_BASED.key(), true)
+                .append(VariantStorageOptions.QUERY_PLANNER_MIN_OBSERVATIONS.key(), 2);
+        index = new IndexExecutor(0.5);
+        search = new SearchExecutor(0.1);
+        db = new DBExecutor(1);
+        executors = Arrays.asList(index, search, db);
+    }
+
+    @Test
+    public void testRules() throws Exception {
+        config.put(VariantStorageOptions.QUERY_PLANNER_COST_BASED.key(), false);
+        VariantQueryPlan plan = planner.plan(executors, new Query(), new QueryOptions(), config, false);
+
+        assertSame(index, plan.getQueryExecutor());
+        assertEquals(VariantQueryPlan.Strategy.RULES, plan.getStrategy());
+        assertEquals(VariantQueryPlan.Basis.ORDER, plan.getBasis());
+        // Do not evaluate the rest of executors
+        assertEquals(1, plan.getCandidates().size());
+        assertEquals(0, search.evaluated);
+    }
+
+    @Test
+    public void testRulesExplain() throws Exception {
+        config.put(VariantStorageOptions.QUERY_PLANNER_COST_BASED.key(), false);
+        VariantQueryPlan plan = planner.plan(executors, new Query(), new QueryOptions(), config, true);
+
+        assertSame(index, plan.getQueryExecutor());
+        assertEquals(3, plan.getCandidates().size());
+        assertTrue(plan.getCandidates().get(0).isSelected());
+        assertFalse(plan.getCandidates().get(1).isSelected());
+        assertEquals(0.1, plan.getCandidates().get(1).getCost(), 0.0001);
+    }
+
+    @Test
+    public void testCost() throws Exception {
+        VariantQueryPlan plan = planner.plan(executors, new Query(), new QueryOptions(), config, false);
+
+        assertSame(search, plan.getQueryExecutor());
+        assertEquals(VariantQueryPlan.Strategy.COST, plan.getStrategy());
+        assertEquals(VariantQueryPlan.Basis.COST, plan.getBasis());
+    }
+
+    @Test
+    public void testCostFromQueryOptions() throws Exception {
+        config.put(VariantStorageOptions.QUERY_PLANNER_COST_BASED.key(), false);
+        VariantQueryPlan plan = planner.plan(executors, new Query(), new QueryOptions(
+                VariantStorageOptions.QUERY_PLANNER_COST_BASED.key(), true), config, false);
+
+        assertSame(search, plan.getQueryExecutor());
+    }
+
+    @Test
+    public void testRequired() throws Exception {
+        StubExecutor required = new StubExecutor(true, 10);
+        executors = Arrays.asList(required, index, search, db);
+        VariantQueryPlan plan = planner.plan(executors, new Query(), new QueryOptions(), config, false);
+
+        assertSame(required, plan.getQueryExecutor());
+        assertEquals(VariantQueryPlan.Basis.REQUIRED, plan.getBasis());
+        assertEquals(0, index.evaluated);
+    }
+
+    @Test
+    public void testNotValid() throws Exception {
+        search.valid = false;
+        VariantQueryPlan plan = planner.plan(executors, new Query(), new QueryOptions(), config, false);
+
+        assertSame(index, plan.getQueryExecutor());
+        assertFalse(plan.getCandidates().get(1).isValid());
+    }
+
+    @Test
+    public void testLatency() throws Exception {
+        Query query = new Query(VariantQueryParam.GENE.key(), "BRCA2");
+        QueryOptions options = new QueryOptions();
+
+        // Search is slower than estimated
+        for (int i = 0; i < 2; i++) {
+            config.put(VariantStorageOptions.QUERY_PLANNER_COST_BASED.key(), false);
+            planner.record(planner.plan(Arrays.asList(search), query, options, config, true), 1000);
+            planner.record(planner.plan(Arrays.asList(index), query, options, config, true), 100);
+            planner.record(planner.plan(Arrays.asList(db), query, options, config, true), 500);
+        }
+        config.put(VariantStorageOptions.QUERY_PLANNER_COST_BASED.key(), true);
+        VariantQueryPlan plan = planner.plan(executors, query, options, config, true);
+
+        assertEquals(VariantQueryPlan.Basis.LATENCY, plan.getBasis());
+        assertSame(index, plan.getQueryExecutor());
+        assertEquals(1000, plan.getCandidates().get(1).getEstimatedLatency(), 0.001);
+        assertEquals(2, plan.getCandidates().get(1).getObservations());
+
+        // Different shape. Use the latency per unit of cost from each executor
+        plan = planner.plan(executors, new Query(VariantQueryParam.REGION.key(), "1"), options, config, true);
+        assertEquals(VariantQueryPlan.Basis.LATENCY, plan.getBasis());
+        assertEquals(0, plan.getCandidates().get(1).getObservations());
+        assertSame(index, plan.getQueryExecutor());
+
+        planner.clear();
+        plan = planner.plan(executors, query, options, config, true);
+        assertEquals(VariantQueryPlan.Basis.COST, plan.getBasis());
+        assertSame(search, plan.getQueryExecutor());
+    }
+
+    @Test
+    public void testExploration() throws Exception {
+        config.put(VariantStorageOptions.QUERY_PLANNER_MAX_OBSERVATION_AGE.key(), 3);
+        Query query = new Query(VariantQueryParam.GENE.key(), "BRCA2");
+        QueryOptions options = new QueryOptions();
+
+        for (int i = 0; i < 2; i++) {
+            config.put(VariantStorageOptions.QUERY_PLANNER_COST_BASED.key(), false);
+            planner.record(planner.plan(Arrays.asList(search), query, options, config, true), 1000);
+            planner.record(planner.plan(Arrays.asList(index), query, options, config, true), 100);
+            planner.record(planner.plan(Arrays.asList(db), query, options, config, true), 500);
+        }
+        config.put(VariantStorageOptions.QUERY_PLANNER_COST_BASED.key(), true);
+        for (int i = 0; i < 2; i++) {
+            VariantQueryPlan plan = planner.plan(executors, query, options, config, false);
+            assertEquals(VariantQueryPlan.Basis.LATENCY, plan.getBasis());
+            assertSame(index, plan.getQueryExecutor());
+            planner.record(plan, 100);
+        }
+
+        // Search was not selected in the last 4 queries. Refresh its latency
+        VariantQueryPlan plan = planner.plan(executors, query, options, config, false);
+        assertEquals(VariantQueryPlan.Basis.EXPLORATION, plan.getBasis());
+        assertSame(search, plan.getQueryExecutor());
+        assertEquals(4, plan.getCandidates().get(1).getAge());
+        planner.record(plan, 50);
+
+        plan = planner.plan(executors, query, options, config, false);
+        assertEquals(VariantQueryPlan.Basis.LATENCY, plan.getBasis());
+        assertSame(index, plan.getQueryExecutor());
+        assertEquals(0, plan.getCandidates().get(1).getAge());
+        assertEquals(810, plan.getCandidates().get(1).getEstimatedLatency(), 0.001);
+    }
+
+    @Test
+    public void testShape() {
+        assertEquals(VariantQueryPlanner.shape(new Query(VariantQueryParam.GENE.key(), "BRCA2").append(VariantQueryParam.REGION.key(), "1"),
+                new QueryOptions()),
+                VariantQueryPlanner.shape(new Query(VariantQueryParam.REGION.key(), "2").append(VariantQueryParam.GENE.key(), "BRCA1"),
+                        new QueryOptions()));
+        assertNotEquals(VariantQueryPlanner.shape(new Query(VariantQueryParam.GENE.key(), "BRCA2"), new QueryOptions()),
+                VariantQueryPlanner.shape(new Query(VariantQueryParam.GENE.key(), "BRCA2"), new QueryOptions(QueryOptions.COUNT, true)));
+    }
+
+    @Test
+    public void testSelectivity() {
+        assertEquals(1, VariantQuerySelectivity.selectivity(new Query()), 0);
+        double chr1 = VariantQuerySelectivity.selectivity(new Query(VariantQueryParam.REGION.key(), "1"));
+        assertEquals(1 / AbstractTwoPhasedVariantQueryExecutor.MAGIC_NUMBER, chr1, 0.001);
+        double region = VariantQuerySelectivity.selectivity(new Query(VariantQueryParam.REGION.key(), "1:1000-2000"));
+        double regionAndGene = VariantQuerySelectivity.selectivity(new Query(VariantQueryParam.REGION.key(), "1:1000-2000")
+                .append(VariantQueryParam.GENE.key(), "BRCA2"));
+        assertTrue(region < chr1);
+        // Location filters are combined with OR
+        assertTrue(regionAndGene > region);
+
+        double oneSample = VariantQuerySelectivity.selectivity(new Query(VariantQueryParam.SAMPLE.key(), "S1"));
+        double andSamples = VariantQuerySelectivity.selectivity(new Query(VariantQueryParam.SAMPLE.key(), "S1;S2"));
+        double orSamples = VariantQuerySelectivity.selectivity(new Query(VariantQueryParam.SAMPLE.key(), "S1,S2"));
+        assertTrue(andSamples < oneSample);
+        assertTrue(orSamples > oneSample);
+        assertEquals(oneSample * oneSample, andSamples, 0.00001);
+    }
+
+    private static class StubExecutor extends VariantQueryExecutor {
+        private boolean valid;
+        private final boolean required;
+        private final double cost;
+        private int evaluated;
+
+        StubExecutor(boolean required, double cost) {
+            super(null, "stub", new ObjectMap());
+            this.valid = true;
+            this.required = required;
+            this.cost = cost;
+        }
+
+        @Override
+        public boolean canUseThisExecutor(Query query, QueryOptions options) {
+            evaluated++;
+            return valid;
+        }
+
+        @Override
+        public boolean isRequired(Query query, QueryOptions options) {
+            return required;
+        }
+
+        @Override
+        public double estimateCost(Query query, QueryOptions options) {
+            return cost;
+        }
+
+        @Override
+        public DataResult<Long> count(Query query) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        protected Object getOrIterator(Query query, QueryOptions options, boolean iterator) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static class IndexExecutor extends StubExecutor {
+        IndexExecutor(double cost) {
+            super(false, cost);
+        }
+    }
+
+    private static class SearchExecutor extends StubExecutor {
+        SearchExecutor(double cost) {
+            super(false, cost);
+        }
+    }
+
+    private static class DBExecutor extends StubExecutor {
+        DBExecutor(double cost) {
+            super(false, cost);
+        }
+    }
+}
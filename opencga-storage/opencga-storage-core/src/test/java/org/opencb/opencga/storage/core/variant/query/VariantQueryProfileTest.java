@@ -0,0 +1,97 @@
+package org.opencb.opencga.storage.core.variant.query;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class VariantQueryProfileTest {
+
+    @After
+    public void tearDown() throws Exception {
+        while (VariantQueryProfile.current() != null) {
+            VariantQueryProfile.current().stop();
+        }
+    }
+
+    @Test
+    public void testNotProfiling() throws Exception {
+        assertNull(VariantQueryProfile.current());
+        assertEquals("value", VariantQueryProfile.stage("stage", () -> "value"));
+        assertNull(VariantQueryProfile.current());
+    }
+
+    @Test
+    public void testNested() throws Exception {
+        VariantQueryProfile profile = VariantQueryProfile.start();
+        assertSame(profile, VariantQueryProfile.current());
+
+        VariantQueryProfile nested = VariantQueryProfile.start();
+        assertSame(profile, nested);
+        nested.stop();
+        // Still profiling. Only the outermost stop finishes the profile
+        assertSame(profile, VariantQueryProfile.current());
+
+        profile.stop();
+        assertNull(VariantQueryProfile.current());
+        // A new profile is created after finishing
+        VariantQueryProfile other = VariantQueryProfile.start();
+        assertNotSame(profile, other);
+        other.stop();
+    }
+
+    @Test
+    public void testStages() throws Exception {
+        VariantQueryProfile profile = VariantQueryProfile.start();
+        VariantQueryProfile.stage("plan", () -> null);
+        VariantQueryProfile.stage("execute", () -> null);
+        VariantQueryProfile.stage("execute", () -> null);
+        profile.addStage("plan", TimeUnit.MILLISECONDS.toNanos(20));
+        profile.stop();
+
+        assertEquals(2, profile.getStages().size());
+        assertEquals("plan", profile.getStages().get(0).getName());
+        assertEquals(2, profile.getStages().get(0).getCalls());
+        assertTrue(profile.getStages().get(0).getTimeMillis() >= 20);
+        assertEquals("execute", profile.getStages().get(1).getName());
+        assertEquals(2, profile.getStages().get(1).getCalls());
+    }
+
+    @Test
+    public void testStageException() throws Exception {
+        VariantQueryProfile profile = VariantQueryProfile.start();
+        try {
+            VariantQueryProfile.stage("execute", () -> {
+                throw new IllegalStateException();
+            });
+            fail();
+        } catch (IllegalStateException ignore) {
+            // Expected
+        }
+        profile.stop();
+        assertEquals(1, profile.getStages().size());
+    }
+
+    @Test
+    public void testBackends() throws Exception {
+        VariantQueryProfile profile = VariantQueryProfile.start();
+        profile.addBackend("solr", 100, 10, VariantQueryProfile.UNKNOWN, 0, 0);
+        profile.addBackend("hbase", VariantQueryProfile.UNKNOWN, 10, VariantQueryProfile.UNKNOWN, 0, 0);
+        profile.addBackend("hbase", 50, 5, 1000, 0, 0);
+        profile.addBackend("hbase", 50, 5, VariantQueryProfile.UNKNOWN, 0, 0);
+        profile.stop();
+
+        assertEquals(2, profile.getBackends().size());
+        VariantQueryProfile.Backend solr = profile.getBackends().get(0);
+        assertEquals(100, solr.getRowsScanned());
+        assertEquals(10, solr.getRowsReturned());
+        assertEquals(VariantQueryProfile.UNKNOWN, solr.getBytes());
+
+        VariantQueryProfile.Backend hbase = profile.getBackends().get(1);
+        assertEquals(100, hbase.getRowsScanned());
+        assertEquals(20, hbase.getRowsReturned());
+        assertEquals(1000, hbase.getBytes());
+    }
+}
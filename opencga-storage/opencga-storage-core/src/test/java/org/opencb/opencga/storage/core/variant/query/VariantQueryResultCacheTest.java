@@ -0,0 +1,139 @@
+package org.opencb.opencga.storage.core.variant.query;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.opencb.biodata.models.variant.StudyEntry;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.commons.datastore.core.DataResult;
+import org.opencb.commons.datastore.core.ObjectMap;
+import org.opencb.commons.datastore.core.Query;
+import org.opencb.commons.datastore.core.QueryOptions;
+import org.opencb.opencga.core.response.VariantQueryResult;
+import org.opencb.opencga.storage.core.cache.CacheManager;
+import org.opencb.opencga.storage.core.config.CacheConfiguration;
+import org.opencb.opencga.storage.core.metadata.VariantStorageMetadataManager;
+import org.opencb.opencga.storage.core.metadata.models.StudyMetadata;
+import org.opencb.opencga.storage.core.variant.VariantStorageOptions;
+import org.opencb.opencga.storage.core.variant.dummy.DummyVariantStorageMetadataDBAdaptorFactory;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class VariantQueryResultCacheTest {
+
+    private static final ObjectMap OPTIONS = new ObjectMap(VariantStorageOptions.METADATA_DATA_VERSION.key(), true);
+    private VariantStorageMetadataManager metadataManager;
+    private StudyMetadata study;
+    private CacheManager cacheManager;
+    private final Query query = new Query("gene", "BRCA2");
+    private final QueryOptions options = new QueryOptions(QueryOptions.LIMIT, 10);
+
+    @Before
+    public void setUp() throws Exception {
+        DummyVariantStorageMetadataDBAdaptorFactory.clear();
+        metadataManager = Mockito.spy(new VariantStorageMetadataManager(new DummyVariantStorageMetadataDBAdaptorFactory(), OPTIONS));
+        study = metadataManager.createStudy("study");
+        cacheManager = new CacheManager(new CacheConfiguration()
+                .setActive(true)
+                .setSlowThreshold(0));
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        VariantQueryResultCache cache = new VariantQueryResultCache(cacheManager, "db", metadataManager, 0);
+        AtomicInteger calls = new AtomicInteger();
+
+        VariantQueryResult<Variant> expected = cache.get(query, options, () -> {
+            calls.incrementAndGet();
+            return newResult();
+        });
+        VariantQueryResult<Variant> actual = cache.get(query, options, () -> {
+            calls.incrementAndGet();
+            return newResult();
+        });
+
+        assertEquals(1, calls.get());
+        assertNotSame(expected, actual);
+        assertEquals(expected.getNumMatches(), actual.getNumMatches());
+        assertEquals(expected.getNumResults(), actual.getNumResults());
+        assertEquals(expected.getSamples(), actual.getSamples());
+        assertEquals(expected.getResults().size(), actual.getResults().size());
+        for (int i = 0; i < expected.getResults().size(); i++) {
+            Variant expectedVariant = expected.getResults().get(i);
+            Variant actualVariant = actual.getResults().get(i);
+            assertEquals(expectedVariant.toString(), actualVariant.toString());
+            assertEquals(expectedVariant.getStudies().get(0).getSamplesData(), actualVariant.getStudies().get(0).getSamplesData());
+        }
+    }
+
+    @Test
+    public void testDataVersionMiss() throws Exception {
+        VariantQueryResultCache cache = new VariantQueryResultCache(cacheManager, "db", metadataManager, 0);
+        AtomicInteger calls = new AtomicInteger();
+
+        cache.get(query, options, () -> {
+            calls.incrementAndGet();
+            return newResult();
+        });
+        assertEquals(42L, cache.count(query, () -> countResult(42L)).first().longValue());
+
+        // Update the data from another process
+        VariantStorageMetadataManager otherMetadataManager =
+                new VariantStorageMetadataManager(new DummyVariantStorageMetadataDBAdaptorFactory(), OPTIONS);
+        otherMetadataManager.addRunningTask(study.getId(), "load", Collections.emptyList());
+
+        cache.get(query, options, () -> {
+            calls.incrementAndGet();
+            return newResult();
+        });
+        assertEquals(2, calls.get());
+        assertEquals(43L, cache.count(query, () -> countResult(43L)).first().longValue());
+    }
+
+    @Test
+    public void testDataVersionTtl() throws Exception {
+        VariantQueryResultCache cache = new VariantQueryResultCache(cacheManager, "db", metadataManager, 60000);
+        AtomicInteger calls = new AtomicInteger();
+
+        for (int i = 0; i < 5; i++) {
+            cache.get(query, options, () -> {
+                calls.incrementAndGet();
+                return newResult();
+            });
+        }
+        assertEquals(1, calls.get());
+        // The data version is read only once while it does not expire
+        Mockito.verify(metadataManager, Mockito.times(1)).getDataVersion();
+
+        // Local updates invalidate the cache and the data version
+        cache.invalidate();
+        cache.get(query, options, () -> {
+            calls.incrementAndGet();
+            return newResult();
+        });
+        assertEquals(2, calls.get());
+        Mockito.verify(metadataManager, Mockito.times(2)).getDataVersion();
+    }
+
+    private static DataResult<Long> countResult(long count) {
+        return new DataResult<>(0, Collections.emptyList(), 1, Collections.singletonList(count), 1);
+    }
+
+    private static VariantQueryResult<Variant> newResult() {
+        List<Variant> variants = new ArrayList<>();
+        for (String id : Arrays.asList("1:100:A:T", "1:200:C:G")) {
+            Variant variant = new Variant(id);
+            StudyEntry studyEntry = new StudyEntry("study");
+            studyEntry.setFormat(Arrays.asList("GT", "DP"));
+            studyEntry.setSamplesPosition(new LinkedHashMap<>(Collections.singletonMap("S1", 0)));
+            studyEntry.setSamplesData(Collections.singletonList(Arrays.asList("0/1", "10")));
+            variant.addStudyEntry(studyEntry);
+            variants.add(variant);
+        }
+        return new VariantQueryResult<>(5, variants.size(), 1234, Collections.emptyList(), variants,
+                Collections.singletonMap("study", Collections.singletonList("S1")), "test");
+    }
+}
@@ -4,6 +4,7 @@ import htsjdk.variant.vcf.VCFHeader;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.collections.MapUtils;
 import org.apache.commons.lang.StringUtils;
+import org.apache.solr.client.solrj.SolrQuery;
 import org.junit.Rule;
 import org.junit.Test;
 import org.opencb.biodata.models.variant.Variant;
@@ -22,6 +23,7 @@ import org.opencb.opencga.storage.core.metadata.models.StudyMetadata;
 import org.opencb.opencga.storage.core.variant.VariantStorageBaseTest;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam;
 import org.opencb.opencga.storage.core.variant.dummy.DummyVariantStorageTest;
+import org.opencb.opencga.storage.core.variant.search.solr.VariantIdSolrIterator;
 import org.opencb.opencga.storage.core.variant.search.solr.VariantSearchManager;
 import org.opencb.opencga.storage.core.variant.solr.VariantSolrExternalResource;
 
@@ -30,6 +32,7 @@ import java.nio.file.Paths;
 import java.util.*;
 import java.util.stream.Collectors;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.fail;
 
 public class VariantSearchTest extends VariantStorageBaseTest implements DummyVariantStorageTest {
@@ -37,6 +40,47 @@ public class VariantSearchTest extends VariantStorageBaseTest implements DummyVa
     @Rule
     public VariantSolrExternalResource solr = new VariantSolrExternalResource();
 
+    @Test
+    public void testVariantIdIterator() throws Exception {
+        int limit = 300;
+
+        solr.configure(variantStorageEngine);
+        VariantSearchManager variantSearchManager = variantStorageEngine.getVariantSearchManager();
+        StudyMetadata studyMetadata = metadataManager.createStudy("s1");
+        List<Variant> annotatedVariants = annotatedVariants(getVariants(limit), studyMetadata.getName());
+
+        String collection = solr.coreName;
+        variantSearchManager.createCore(collection, VariantSearchManager.CONF_SET);
+        variantSearchManager.insert(collection, annotatedVariants);
+
+        List<String> expected = annotatedVariants.stream().map(Variant::toString).sorted().collect(Collectors.toList());
+        for (boolean export : Arrays.asList(false, true)) {
+            List<String> ids = new ArrayList<>();
+            variantSearchManager.variantIdIterator(collection, new Query(), new QueryOptions(), export).forEachRemaining(ids::add);
+            assertEquals(expected, ids);
+
+            ids.clear();
+            variantSearchManager.variantIdIterator(collection, new Query(),
+                    new QueryOptions(QueryOptions.SKIP, 10).append(QueryOptions.LIMIT, 100), export).forEachRemaining(ids::add);
+            assertEquals(expected.subList(10, 110), ids);
+        }
+
+        // Small queries use a native query, sorted like the iterators
+        List<String> nativeIds = variantSearchManager.nativeQuery(collection, new Query(), new QueryOptions(QueryOptions.SKIP, 10)
+                .append(QueryOptions.LIMIT, 100)
+                .append(QueryOptions.SORT, "id")
+                .append(QueryOptions.ORDER, QueryOptions.ASCENDING))
+                .getResults().stream().map(VariantSearchModel::getId).collect(Collectors.toList());
+        assertEquals(expected.subList(10, 110), nativeIds);
+
+        VariantIdSolrIterator iterator = new VariantIdSolrIterator(variantStorageEngine.getVariantSearchManager().getSolrClient(),
+                collection, new SolrQuery("*:*"), 7);
+        assertEquals(limit, iterator.getNumFound());
+        List<String> ids = new ArrayList<>();
+        iterator.forEachRemaining(ids::add);
+        assertEquals(expected, ids);
+    }
+
     @Test
     public void testTranscriptInfo() throws Exception {
         int limit = 500;
@@ -0,0 +1,200 @@
+package org.opencb.opencga.storage.core.variant.search.solr;
+
+import org.apache.http.NoHttpResponseException;
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.impl.HttpSolrClient;
+import org.apache.solr.client.solrj.response.UpdateResponse;
+import org.apache.solr.common.SolrException;
+import org.junit.Before;
+import org.junit.Test;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.opencga.storage.core.variant.search.VariantSearchModel;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class VariantSearchLoadWriterTest {
+
+    private static final String COLLECTION = "collection";
+    private SolrClient solrClient;
+    private List<VariantSearchLoadCheckpoint> checkpoints;
+
+    @Before
+    public void setUp() throws Exception {
+        solrClient = mock(SolrClient.class);
+        when(solrClient.addBeans(eq(COLLECTION), anyCollection())).thenReturn(mock(UpdateResponse.class));
+        when(solrClient.commit(COLLECTION)).thenReturn(mock(UpdateResponse.class));
+        checkpoints = Collections.synchronizedList(new ArrayList<>());
+    }
+
+    @Test
+    public void testLoad() throws Exception {
+        VariantSearchLoadWriter writer = newWriter(4, 2, null);
+        List<VariantSearchLoadWriter.Batch> batches = batches(0, 10, 100);
+        // Batches may arrive unsorted
+        Collections.reverse(batches);
+        run(writer, batches);
+
+        assertEquals(1000, writer.getNumLoadedVariants());
+        verify(solrClient, times(10)).addBeans(eq(COLLECTION), anyCollection());
+        verify(solrClient, atLeastOnce()).commit(COLLECTION);
+        VariantSearchLoadCheckpoint last = checkpoints.get(checkpoints.size() - 1);
+        assertEquals(1000, last.getNumVariants());
+        assertEquals(variant(999).toString(), last.getLastVariant());
+    }
+
+    @Test
+    public void testResume() throws Exception {
+        VariantSearchLoadWriter writer = newWriter(2, 10, new VariantSearchLoadCheckpoint(500, variant(499).toString()));
+        run(writer, batches(500, 5, 100));
+
+        assertEquals(500, writer.getNumLoadedVariants());
+        VariantSearchLoadCheckpoint last = checkpoints.get(checkpoints.size() - 1);
+        assertEquals(1000, last.getNumVariants());
+        assertEquals(variant(999).toString(), last.getLastVariant());
+    }
+
+    @Test
+    public void testRetryOnPushBack() throws Exception {
+        when(solrClient.addBeans(eq(COLLECTION), anyCollection()))
+                .thenThrow(new SolrException(SolrException.ErrorCode.SERVICE_UNAVAILABLE, "Overloaded"))
+                .thenReturn(mock(UpdateResponse.class));
+        VariantSearchLoadWriter writer = newWriter(1, 10, null);
+        run(writer, batches(0, 3, 10));
+
+        assertEquals(30, writer.getNumLoadedVariants());
+        verify(solrClient, times(4)).addBeans(eq(COLLECTION), anyCollection());
+    }
+
+    @Test
+    public void testFailOnError() throws Exception {
+        when(solrClient.addBeans(eq(COLLECTION), anyCollection()))
+                .thenThrow(new SolrException(SolrException.ErrorCode.BAD_REQUEST, "Wrong document"));
+        VariantSearchLoadWriter writer = newWriter(2, 10, null);
+        try {
+            run(writer, batches(0, 3, 10));
+            fail("Expected exception");
+        } catch (RuntimeException e) {
+            assertTrue(e instanceof SolrException || e.getCause() instanceof SolrException);
+        }
+        assertTrue(checkpoints.isEmpty());
+    }
+
+    @Test
+    public void testFailOnWrappedError() throws Exception {
+        when(solrClient.addBeans(eq(COLLECTION), anyCollection()))
+                .thenThrow(new SolrServerException("Schema mismatch", new IOException("unknown field 'foo'")));
+        VariantSearchLoadWriter writer = newWriter(1, 10, null);
+        try {
+            run(writer, batches(0, 3, 10));
+            fail("Expected exception");
+        } catch (RuntimeException e) {
+            // Not retried
+        }
+        verify(solrClient, times(1)).addBeans(eq(COLLECTION), anyCollection());
+        assertTrue(checkpoints.isEmpty());
+    }
+
+    @Test
+    public void testIsPushBack() {
+        assertTrue(VariantSearchLoadWriter.isPushBack(new SolrException(SolrException.ErrorCode.SERVICE_UNAVAILABLE, "")));
+        assertTrue(VariantSearchLoadWriter.isPushBack(new HttpSolrClient.RemoteSolrException("localhost", 429, "Too many requests", null)));
+        assertTrue(VariantSearchLoadWriter.isPushBack(new SolrServerException(new SocketTimeoutException("Read timed out"))));
+        assertTrue(VariantSearchLoadWriter.isPushBack(new SolrServerException(new ConnectException("Connection refused"))));
+        assertTrue(VariantSearchLoadWriter.isPushBack(new NoHttpResponseException("No response")));
+
+        assertFalse(VariantSearchLoadWriter.isPushBack(new SolrException(SolrException.ErrorCode.BAD_REQUEST, "")));
+        assertFalse(VariantSearchLoadWriter.isPushBack(new SolrException(SolrException.ErrorCode.SERVER_ERROR, "")));
+        assertFalse(VariantSearchLoadWriter.isPushBack(new SolrServerException("Error", new IOException("Unknown"))));
+        assertFalse(VariantSearchLoadWriter.isPushBack(new IOException("Unknown")));
+    }
+
+    @Test
+    public void testNotifyListenerAfterCommit() throws Exception {
+        List<Variant> notified = Collections.synchronizedList(new ArrayList<>());
+        List<Integer> notifiedOnCommit = new ArrayList<>();
+        when(solrClient.commit(COLLECTION)).then(invocation -> {
+            notifiedOnCommit.add(notified.size());
+            return mock(UpdateResponse.class);
+        });
+        VariantSearchLoadListener listener = new VariantSearchLoadListener(null) {
+            @Override
+            protected void processAlreadySynchronizedVariants(List<Variant> alreadySynchronizedVariants) {
+            }
+
+            @Override
+            public void postLoad(List<Variant> variantList) {
+                notified.addAll(variantList);
+            }
+        };
+        VariantSearchLoadWriter writer = new VariantSearchLoadWriter(solrClient, COLLECTION, listener, 1, 3, 2, null, checkpoints::add);
+        run(writer, batches(0, 5, 10));
+
+        // Batches are notified only once committed
+        assertEquals(checkpoints.size(), notifiedOnCommit.size());
+        assertEquals(0, notifiedOnCommit.get(0).intValue());
+        for (int i = 1; i < notifiedOnCommit.size(); i++) {
+            assertEquals(checkpoints.get(i - 1).getNumVariants(), notifiedOnCommit.get(i).intValue());
+        }
+        assertEquals(50, notified.size());
+        assertEquals(50, writer.getNumLoadedVariants());
+    }
+
+    @Test
+    public void testNotNotifyListenerOnCommitError() throws Exception {
+        when(solrClient.commit(COLLECTION)).thenThrow(new SolrException(SolrException.ErrorCode.BAD_REQUEST, "Error"));
+        VariantSearchLoadWriter writer = newWriter(1, 2, null);
+        try {
+            run(writer, batches(0, 5, 10));
+            fail("Expected exception");
+        } catch (RuntimeException e) {
+            assertTrue(e instanceof SolrException || e.getCause() instanceof SolrException);
+        }
+        assertEquals(0, writer.getNumLoadedVariants());
+        assertTrue(checkpoints.isEmpty());
+    }
+
+    private VariantSearchLoadWriter newWriter(int streams, int checkpointInterval, VariantSearchLoadCheckpoint checkpoint) {
+        return new VariantSearchLoadWriter(solrClient, COLLECTION, VariantSearchLoadListener.empty(), streams, 3, checkpointInterval,
+                checkpoint, checkpoints::add);
+    }
+
+    private static void run(VariantSearchLoadWriter writer, List<VariantSearchLoadWriter.Batch> batches) {
+        writer.open();
+        writer.pre();
+        try {
+            for (VariantSearchLoadWriter.Batch batch : batches) {
+                writer.write(Collections.singletonList(batch));
+            }
+            writer.post();
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static List<VariantSearchLoadWriter.Batch> batches(int start, int numBatches, int batchSize) {
+        List<VariantSearchLoadWriter.Batch> batches = new ArrayList<>(numBatches);
+        for (int i = 0; i < numBatches; i++) {
+            List<Variant> variants = new ArrayList<>(batchSize);
+            List<VariantSearchModel> models = new ArrayList<>(batchSize);
+            for (int v = 0; v < batchSize; v++) {
+                variants.add(variant(start + i * batchSize + v));
+                models.add(new VariantSearchModel());
+            }
+            batches.add(new VariantSearchLoadWriter.Batch(i, variants).setModels(models));
+        }
+        return batches;
+    }
+
+    private static Variant variant(int i) {
+        return new Variant("1", 1000 + i, "A", "C");
+    }
+}
@@ -0,0 +1,57 @@
+package org.opencb.opencga.storage.core.variant.stats;
+
+import org.junit.Test;
+import org.opencb.biodata.models.variant.StudyEntry;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.biodata.models.variant.stats.VariantStats;
+import org.opencb.biodata.tools.variant.stats.VariantStatsCalculator;
+
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+
+public class VariantCohortStatsCalculatorTest {
+
+    private static final List<String> GENOTYPES = Arrays.asList("0/0", "0/1", "1/1", "0|1", "1|0", "./.", ".", "0");
+
+    @Test
+    public void testCalculate() {
+        Random random = new Random(1);
+        List<String> samples = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            samples.add("S" + i);
+        }
+
+        // More than 64 cohorts, to use more than one word per sample
+        Map<String, Set<String>> cohorts = new LinkedHashMap<>();
+        cohorts.put(StudyEntry.DEFAULT_COHORT, new HashSet<>(samples));
+        for (int c = 0; c < 70; c++) {
+            Set<String> cohort = new HashSet<>();
+            for (String sample : samples) {
+                if (random.nextInt(4) == 0) {
+                    cohort.add(sample);
+                }
+            }
+            // Samples not in the study are ignored
+            cohort.add("NOT_IN_STUDY");
+            cohorts.put("C" + c, cohort);
+        }
+
+        VariantCohortStatsCalculator calculator = new VariantCohortStatsCalculator(cohorts);
+        for (int i = 0; i < 20; i++) {
+            Variant variant = new Variant("1:" + (i + 100) + ":A:C");
+            StudyEntry study = new StudyEntry("s1", Collections.emptyList(), Arrays.asList("GT", "DP"));
+            for (String sample : samples) {
+                study.addSampleData(sample, Arrays.asList(GENOTYPES.get(random.nextInt(GENOTYPES.size())), "10"));
+            }
+            variant.addStudyEntry(study);
+
+            Map<String, VariantStats> stats = calculator.calculate(variant, study);
+            assertEquals(new ArrayList<>(cohorts.keySet()), new ArrayList<>(stats.keySet()));
+            for (Map.Entry<String, Set<String>> cohort : cohorts.entrySet()) {
+                VariantStats expected = VariantStatsCalculator.calculate(variant, study, cohort.getValue());
+                assertEquals(variant + " " + cohort.getKey(), expected.getImpl(), stats.get(cohort.getKey()).getImpl());
+            }
+        }
+    }
+}
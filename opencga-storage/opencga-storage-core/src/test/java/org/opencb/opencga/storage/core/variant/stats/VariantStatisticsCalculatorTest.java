@@ -0,0 +1,69 @@
+package org.opencb.opencga.storage.core.variant.stats;
+
+import org.junit.Test;
+import org.opencb.biodata.models.variant.StudyEntry;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.biodata.models.variant.metadata.Aggregation;
+import org.opencb.biodata.models.variant.stats.VariantStats;
+
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+
+public class VariantStatisticsCalculatorTest {
+
+    private static final String STUDY = "s1";
+
+    @Test
+    public void testIncrementalStats() {
+        List<String> oldSamples = Arrays.asList("S1", "S2", "S3");
+        List<String> newSamples = Arrays.asList("S4", "S5");
+        List<String> allSamples = new ArrayList<>(oldSamples);
+        allSamples.addAll(newSamples);
+
+        Map<String, Set<String>> oldCohorts = Collections.singletonMap("C1", new HashSet<>(oldSamples));
+        Map<String, Set<String>> newCohorts = Collections.singletonMap("C1", new HashSet<>(newSamples));
+        Map<String, Set<String>> allCohorts = Collections.singletonMap("C1", new HashSet<>(allSamples));
+
+        // Variant present in the old and the new samples
+        List<String> genotypes = Arrays.asList("0/1", "1/1", "./.", "0/1", "0/0");
+        Map<String, VariantStats> oldStats = calculate(variant(allSamples, genotypes), oldCohorts, newCalculator());
+        Map<String, VariantStats> expected = calculate(variant(allSamples, genotypes), allCohorts, newCalculator());
+
+        Variant variant = variant(newSamples, genotypes.subList(3, 5));
+        variant.getStudy(STUDY).setStats(oldStats);
+        Map<String, VariantStats> actual = calculate(variant, newCohorts, newCalculator()
+                .setIncrementalCohorts(Collections.singletonMap("C1", oldSamples.size()), "0/0"));
+        assertEquals(expected.get("C1").getImpl(), actual.get("C1").getImpl());
+
+        // Variant only present in the new samples. The old samples have the unknown genotype
+        genotypes = Arrays.asList("0/0", "0/0", "0/0", "0/1", "1/1");
+        expected = calculate(variant(allSamples, genotypes), allCohorts, newCalculator());
+        actual = calculate(variant(newSamples, genotypes.subList(3, 5)), newCohorts, newCalculator()
+                .setIncrementalCohorts(Collections.singletonMap("C1", oldSamples.size()), "0/0"));
+        assertEquals(expected.get("C1").getImpl(), actual.get("C1").getImpl());
+    }
+
+    private Map<String, VariantStats> calculate(Variant variant, Map<String, Set<String>> cohorts,
+                                                VariantStatisticsCalculator calculator) {
+        List<VariantStatsWrapper> wrappers = calculator.calculateBatch(Collections.singletonList(variant), STUDY, cohorts);
+        assertEquals(1, wrappers.size());
+        return wrappers.get(0).getCohortStats();
+    }
+
+    private VariantStatisticsCalculator newCalculator() {
+        VariantStatisticsCalculator calculator = new VariantStatisticsCalculator(true);
+        calculator.setAggregationType(Aggregation.NONE, null);
+        return calculator;
+    }
+
+    private Variant variant(List<String> samples, List<String> genotypes) {
+        Variant variant = new Variant("1:100:A:C");
+        StudyEntry study = new StudyEntry(STUDY, Collections.emptyList(), Collections.singletonList("GT"));
+        for (int i = 0; i < samples.size(); i++) {
+            study.addSampleData(samples.get(i), Collections.singletonList(genotypes.get(i)));
+        }
+        variant.addStudyEntry(study);
+        return variant;
+    }
+}
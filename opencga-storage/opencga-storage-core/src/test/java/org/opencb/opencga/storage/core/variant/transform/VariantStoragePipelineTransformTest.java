@@ -26,13 +26,18 @@ import org.opencb.commons.io.avro.AvroDataReader;
 import org.opencb.commons.utils.FileUtils;
 import org.opencb.opencga.storage.core.StoragePipelineResult;
 import org.opencb.opencga.storage.core.exceptions.StoragePipelineException;
+import org.opencb.opencga.storage.core.io.plain.StringDataReaderTest;
 import org.opencb.opencga.storage.core.variant.VariantStorageBaseTest;
 import org.opencb.opencga.storage.core.variant.VariantStorageEngine;
 import org.opencb.opencga.storage.core.variant.VariantStorageOptions;
+import org.opencb.opencga.storage.core.variant.io.VariantReaderUtils;
 
 import java.io.*;
 import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -82,6 +87,45 @@ public abstract class VariantStoragePipelineTransformTest extends VariantStorage
 
     }
 
+    @Test
+    public void transformInBlocks() throws Exception {
+        // Same file compressed as BGZF, to be decompressed in parallel
+        Path bgzfInput = Paths.get(newOutputUri()).resolve(Paths.get(smallInputUri).getFileName());
+        StringDataReaderTest.bgzip(Paths.get(smallInputUri), bgzfInput);
+
+        byte[][] expected = transformToJson(smallInputUri, 0, 0);
+        for (URI input : Arrays.asList(smallInputUri, bgzfInput.toUri())) {
+            for (int blockSize : new int[]{1000, 1024 * 1024}) {
+                byte[][] actual = transformToJson(input, blockSize, 2);
+                String message = input + " blockSize " + blockSize;
+                assertArrayEquals(message, expected[0], actual[0]);
+                if (input.equals(smallInputUri)) {
+                    // The metadata contains the path of the input file
+                    assertArrayEquals(message, expected[1], actual[1]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Transform a file into uncompressed json.
+     *
+     * @return Content of the variants file and the metadata file
+     */
+    private byte[][] transformToJson(URI input, int blockSize, int inflateThreads) throws Exception {
+        ObjectMap params = new ObjectMap()
+                .append(VariantStorageOptions.TRANSFORM_FORMAT.key(), "json")
+                .append(VariantStorageOptions.TRANSFORM_COMPRESSION.key(), "")
+                .append(VariantStorageOptions.TRANSFORM_ISOLATE.key(), true)
+                .append(VariantStorageOptions.TRANSFORM_THREADS.key(), 4)
+                .append(VariantStorageOptions.TRANSFORM_BLOCK_SIZE.key(), blockSize)
+                .append(VariantStorageOptions.TRANSFORM_INFLATE_THREADS.key(), inflateThreads);
+        StoragePipelineResult result = runETL(getVariantStorageEngine(), input, newOutputUri(), params, true, true, false);
+        Path variantsFile = Paths.get(result.getTransformResult());
+        Path metaFile = Paths.get(VariantReaderUtils.getMetaFromTransformedFile(result.getTransformResult()));
+        return new byte[][]{Files.readAllBytes(variantsFile), Files.readAllBytes(metaFile)};
+    }
+
     /**
      * Corrupted file index. This test must fail
      */
@@ -0,0 +1,81 @@
+package org.opencb.opencga.storage.hadoop.utils;
+
+import org.apache.hadoop.hbase.client.AbstractClientScanner;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.client.metrics.ScanMetrics;
+import org.opencb.opencga.storage.core.variant.adaptors.iterators.VariantDBIterator;
+import org.opencb.opencga.storage.core.variant.query.VariantQueryProfile;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collect the {@link ScanMetrics} from the scanners used by an iterator, and register them
+ * in the {@link VariantQueryProfile} of the thread that created the iterator, if any.
+ */
+public class HBaseScanProfiler {
+
+    private static final String ROWS_SCANNED = "ROWS_SCANNED";
+    private static final String BYTES_IN_RESULTS = "BYTES_IN_RESULTS";
+
+    private final String backend;
+    private final VariantQueryProfile profile;
+    private final List<ResultScanner> scanners = new ArrayList<>();
+    private boolean registered = false;
+
+    public HBaseScanProfiler(String backend) {
+        this.backend = backend;
+        this.profile = VariantQueryProfile.current();
+    }
+
+    /**
+     * Enable the scan metrics if the current thread is being profiled.
+     *
+     * @param scan Scan
+     * @return     The same scan
+     */
+    public static Scan enableScanMetrics(Scan scan) {
+        if (VariantQueryProfile.current() != null) {
+            scan.setScanMetricsEnabled(true);
+        }
+        return scan;
+    }
+
+    public boolean isActive() {
+        return profile != null;
+    }
+
+    public synchronized ResultScanner add(ResultScanner scanner) {
+        if (profile != null) {
+            scanners.add(scanner);
+        }
+        return scanner;
+    }
+
+    /**
+     * Register the metrics of all the scanners and the counters of the iterator. Only the first call takes effect.
+     *
+     * @param iterator Iterator over the scanners
+     */
+    public synchronized void register(VariantDBIterator iterator) {
+        if (profile == null || registered) {
+            return;
+        }
+        registered = true;
+        long rowsScanned = VariantQueryProfile.UNKNOWN;
+        long bytes = VariantQueryProfile.UNKNOWN;
+        for (ResultScanner scanner : scanners) {
+            if (scanner instanceof AbstractClientScanner) {
+                ScanMetrics scanMetrics = ((AbstractClientScanner) scanner).getScanMetrics();
+                if (scanMetrics != null) {
+                    Map<String, Long> metrics = scanMetrics.getMetricsMap();
+                    rowsScanned = Math.max(0, rowsScanned) + metrics.getOrDefault(ROWS_SCANNED, 0L);
+                    bytes = Math.max(0, bytes) + metrics.getOrDefault(BYTES_IN_RESULTS, 0L);
+                }
+            }
+        }
+        profile.addBackend(backend, rowsScanned, iterator.getCount(), bytes, iterator.getTimeFetching(), iterator.getTimeConverting());
+    }
+}
@@ -18,6 +18,7 @@ package org.opencb.opencga.storage.hadoop.variant;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.time.StopWatch;
 import org.apache.hadoop.conf.Configurable;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.CommonConfigurationKeysPublic;
@@ -28,6 +29,7 @@ import org.apache.hadoop.hbase.util.Bytes;
 import org.opencb.biodata.models.variant.Variant;
 import org.opencb.biodata.models.variant.avro.VariantType;
 import org.opencb.commons.datastore.core.DataResult;
+import org.opencb.commons.datastore.core.FacetField;
 import org.opencb.commons.datastore.core.ObjectMap;
 import org.opencb.commons.datastore.core.Query;
 import org.opencb.commons.datastore.core.QueryOptions;
@@ -84,7 +86,9 @@ import org.opencb.opencga.storage.hadoop.variant.index.SampleIndexCompoundHetero
 import org.opencb.opencga.storage.hadoop.variant.index.SampleIndexVariantQueryExecutor;
 import org.opencb.opencga.storage.hadoop.variant.index.annotation.mr.SampleIndexAnnotationLoaderDriver;
 import org.opencb.opencga.storage.hadoop.variant.index.family.FamilyIndexDriver;
+import org.opencb.opencga.storage.hadoop.variant.index.query.SampleIndexQuery;
 import org.opencb.opencga.storage.hadoop.variant.index.sample.SampleIndexConsolidationDrive;
+import org.opencb.opencga.storage.hadoop.variant.index.sample.SampleIndexCount;
 import org.opencb.opencga.storage.hadoop.variant.index.sample.SampleIndexDBAdaptor;
 import org.opencb.opencga.storage.hadoop.variant.index.sample.SampleIndexDriver;
 import org.opencb.opencga.storage.hadoop.variant.index.sample.SampleIndexSchema;
@@ -864,7 +868,7 @@ public class HadoopVariantStorageEngine extends VariantStorageEngine implements
             dbAdaptor.set(null);
         }
         if (sampleIndexDBAdaptor.get() != null) {
-//            sampleIndexDBAdaptor.get().close();
+            sampleIndexDBAdaptor.get().close();
             sampleIndexDBAdaptor.set(null);
         }
         if (tableNameGenerator != null) {
@@ -936,6 +940,27 @@ public class HadoopVariantStorageEngine extends VariantStorageEngine implements
         return new HBaseVariantSampleDataManager(getDBAdaptor()).getSampleData(variant, study, options);
     }
 
+    @Override
+    public DataResult<FacetField> sampleIndexCount(Query inputQuery) throws StorageEngineException {
+        StopWatch stopWatch = StopWatch.createStarted();
+        Query query = preProcessQuery(inputQuery, null);
+        SampleIndexDBAdaptor sampleIndexDBAdaptor = getSampleIndexDBAdaptor();
+        SampleIndexQuery sampleIndexQuery = sampleIndexDBAdaptor.getSampleIndexQueryParser().parse(query);
+        if (sampleIndexQuery.getSamplesMap().size() != 1 || !sampleIndexQuery.getMendelianErrorSet().isEmpty()) {
+            throw VariantQueryException.malformedParam(VariantQueryParam.SAMPLE, inputQuery.getString(VariantQueryParam.SAMPLE.key()),
+                    "Expected exactly one sample, without mendelian error filter, to count from the sample index");
+        }
+        // Filters not covered by the sample index would be ignored
+        Set<VariantQueryParam> params = VariantQueryUtils.validParams(query, true);
+        params.remove(VariantQueryParam.STUDY);
+        if (!params.isEmpty()) {
+            throw VariantQueryException.unsupportedVariantQueryFilters(params, "Not covered by the sample index");
+        }
+        SampleIndexCount count = sampleIndexDBAdaptor.countByGroups(sampleIndexQuery);
+        return new DataResult<>((int) stopWatch.getTime(TimeUnit.MILLISECONDS), Collections.emptyList(), 3,
+                count.toFacetFields(), count.getCount());
+    }
+
     @Override
     protected List<VariantQueryExecutor> initVariantQueryExecutors() throws StorageEngineException {
         List<VariantQueryExecutor> executors = new ArrayList<>(6);
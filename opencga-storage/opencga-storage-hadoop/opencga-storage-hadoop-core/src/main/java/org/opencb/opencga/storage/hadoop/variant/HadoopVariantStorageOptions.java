@@ -79,6 +79,10 @@ public enum HadoopVariantStorageOptions implements ConfigurationOption {
     /////////////////////////
     SAMPLE_INDEX_TABLE_COMPRESSION("storage.hadoop.sampleIndex.table.compression", Compression.Algorithm.SNAPPY.getName()),
     SAMPLE_INDEX_TABLE_PRESPLIT_SIZE("storage.hadoop.sampleIndex.table.preSplit.samplesPerSplit", 15),
+    SAMPLE_INDEX_SCAN_THREADS("storage.hadoop.sampleIndex.scan.threads", 8),   // Max concurrent scans. Sequential scans if less than 2
+    SAMPLE_INDEX_SCAN_PREFETCH("storage.hadoop.sampleIndex.scan.prefetch", 2), // Regions opened in advance by each sample iterator
+    // Filter the sample index in the RegionServers. Requires the opencga-storage-hadoop-core jar in the RegionServers classpath
+    SAMPLE_INDEX_SCAN_SERVER_SIDE_FILTER("storage.hadoop.sampleIndex.scan.serverSideFilter", false),
 
     /////////////////////////
     // Annotation index table  configuration
@@ -11,6 +11,7 @@ import org.opencb.opencga.core.response.VariantQueryResult;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantDBAdaptor;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryUtils;
 import org.opencb.opencga.storage.core.variant.query.VariantQueryExecutor;
+import org.opencb.opencga.storage.core.variant.query.VariantQuerySelectivity;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -32,6 +33,8 @@ import static org.opencb.opencga.storage.hadoop.variant.adaptors.VariantHBaseQue
 public class HBaseColumnIntersectVariantQueryExecutor extends VariantQueryExecutor {
     public static final String HBASE_COLUMN_INTERSECT = "hbase_column_intersect";
     private static final boolean ACTIVE_BY_DEFAULT = false;
+    // Cost of scanning the sample and file columns, relative to a full scan of the variants table
+    private static final double COLUMN_SCAN_COST = 0.5;
     private final VariantDBAdaptor dbAdaptor;
 
     private Logger logger = LoggerFactory.getLogger(HBaseColumnIntersectVariantQueryExecutor.class);
@@ -75,6 +78,12 @@ public class HBaseColumnIntersectVariantQueryExecutor extends VariantQueryExecut
         return false;
     }
 
+    @Override
+    public double estimateCost(Query query, QueryOptions options) {
+        double scanCost = COLUMN_SCAN_COST * VariantQuerySelectivity.locationSelectivity(query);
+        return scanCost + RANDOM_ACCESS_COST * VariantQuerySelectivity.selectivity(query, Arrays.asList(SAMPLE, GENOTYPE, FILE));
+    }
+
     @Override
     public DataResult<Long> count(Query query) {
         throw new UnsupportedOperationException("Count not implemented in " + getClass());
@@ -147,6 +156,7 @@ public class HBaseColumnIntersectVariantQueryExecutor extends VariantQueryExecut
         Iterator<String> variants = Iterators.transform(dbAdaptor.iterator(scanQuery, scanOptions), Variant::toString);
 
         int batchSize = options.getInt("multiIteratorBatchSize", 100);
+        setDefaultPrefetch(options);
         if (iterator) {
             return dbAdaptor.iterator(variants, query, options, batchSize);
         } else {
@@ -25,6 +25,7 @@ import org.opencb.opencga.storage.core.metadata.VariantStorageMetadataManager;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryFields;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryUtils;
 import org.opencb.opencga.storage.core.variant.adaptors.iterators.VariantDBIterator;
+import org.opencb.opencga.storage.hadoop.utils.HBaseScanProfiler;
 import org.opencb.opencga.storage.hadoop.variant.converters.HBaseToVariantConverter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -55,6 +56,7 @@ public class VariantHBaseScanIterator extends VariantDBIterator {
     private int count = 0;
     private ExecutorService threadPool;
     private AtomicLong timeConverting = new AtomicLong();
+    private final HBaseScanProfiler profiler = new HBaseScanProfiler("hbase");
 //    private static final ExecutorService THREAD_POOL = Executors.newCachedThreadPool(new BasicThreadFactory.Builder()
 //            .namingPattern("variant-hbase-scan-convert-%s")
 //            .build());
@@ -96,7 +98,7 @@ public class VariantHBaseScanIterator extends VariantDBIterator {
             if (currentResultScanner != null) {
                 currentResultScanner.close();
             }
-            currentResultScanner = resultScanners.next();
+            currentResultScanner = profiler.add(resultScanners.next());
             resultIterator = currentResultScanner.iterator();
             if (fetch(resultIterator::hasNext)) {
                 break;
@@ -145,6 +147,7 @@ public class VariantHBaseScanIterator extends VariantDBIterator {
         if (currentResultScanner != null) {
             currentResultScanner.close();
         }
+        profiler.register(this);
     }
 
     @Override
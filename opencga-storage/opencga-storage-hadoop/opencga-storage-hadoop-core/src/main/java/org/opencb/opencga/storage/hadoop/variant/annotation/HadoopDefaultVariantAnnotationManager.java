@@ -205,46 +205,47 @@ public class HadoopDefaultVariantAnnotationManager extends DefaultVariantAnnotat
 
     protected void updateSampleIndexAnnotation(ObjectMap params) throws IOException, StorageEngineException {
         VariantStorageMetadataManager metadataManager = dbAdaptor.getMetadataManager();
-        SampleIndexAnnotationLoader indexAnnotationLoader = new SampleIndexAnnotationLoader(
+        try (SampleIndexAnnotationLoader indexAnnotationLoader = new SampleIndexAnnotationLoader(
                 dbAdaptor.getGenomeHelper(),
                 dbAdaptor.getHBaseManager(),
                 dbAdaptor.getTableNameGenerator(),
-                metadataManager, mrExecutor);
+                metadataManager, mrExecutor)) {
 
-        List<Integer> studies = VariantQueryUtils.getIncludeStudies(query, null, metadataManager);
+            List<Integer> studies = VariantQueryUtils.getIncludeStudies(query, null, metadataManager);
 
-        List<String> samples = params.getAsStringList("sampleIndexAnnotation");
+            List<String> samples = params.getAsStringList("sampleIndexAnnotation");
 
-        if (samples.size() == 1 && (samples.get(0).equals(VariantQueryUtils.NONE) || samples.get(0).equals("skip"))) {
-            // Nothing to do!
-            return;
-        } else if (samples.isEmpty() || samples.size() == 1 && samples.get(0).equals(VariantQueryUtils.ALL)) {
-            // Run on all pending samples
-            for (Integer studyId : studies) {
-                List<Integer> indexedSamples = metadataManager.getIndexedSamples(studyId);
-                if (!indexedSamples.isEmpty()) {
-                    indexAnnotationLoader.updateSampleAnnotation(studyId, indexedSamples, params);
-                }
-            }
-        } else if (samples.size() == 1 && samples.get(0).equals("force_all")) {
-            // Run on all indexed samples
-            for (Integer studyId : studies) {
-                List<Integer> indexedSamples = metadataManager.getIndexedSamples(studyId);
-                if (!indexedSamples.isEmpty()) {
-                    indexAnnotationLoader.updateSampleAnnotation(studyId, indexedSamples, params);
+            if (samples.size() == 1 && (samples.get(0).equals(VariantQueryUtils.NONE) || samples.get(0).equals("skip"))) {
+                // Nothing to do!
+                return;
+            } else if (samples.isEmpty() || samples.size() == 1 && samples.get(0).equals(VariantQueryUtils.ALL)) {
+                // Run on all pending samples
+                for (Integer studyId : studies) {
+                    List<Integer> indexedSamples = metadataManager.getIndexedSamples(studyId);
+                    if (!indexedSamples.isEmpty()) {
+                        indexAnnotationLoader.updateSampleAnnotation(studyId, indexedSamples, params);
+                    }
                 }
-            }
-        } else {
-            for (Integer studyId : studies) {
-                List<Integer> sampleIds = new ArrayList<>(samples.size());
-                for (String sample : samples) {
-                    Integer sampleId = metadataManager.getSampleId(studyId, sample);
-                    if (sampleId != null) {
-                        sampleIds.add(sampleId);
+            } else if (samples.size() == 1 && samples.get(0).equals("force_all")) {
+                // Run on all indexed samples
+                for (Integer studyId : studies) {
+                    List<Integer> indexedSamples = metadataManager.getIndexedSamples(studyId);
+                    if (!indexedSamples.isEmpty()) {
+                        indexAnnotationLoader.updateSampleAnnotation(studyId, indexedSamples, params);
                     }
                 }
-                if (!sampleIds.isEmpty()) {
-                    indexAnnotationLoader.updateSampleAnnotation(studyId, sampleIds, params);
+            } else {
+                for (Integer studyId : studies) {
+                    List<Integer> sampleIds = new ArrayList<>(samples.size());
+                    for (String sample : samples) {
+                        Integer sampleId = metadataManager.getSampleId(studyId, sample);
+                        if (sampleId != null) {
+                            sampleIds.add(sampleId);
+                        }
+                    }
+                    if (!sampleIds.isEmpty()) {
+                        indexAnnotationLoader.updateSampleAnnotation(studyId, sampleIds, params);
+                    }
                 }
             }
         }
@@ -129,6 +129,7 @@ public class AnalysisAnnotateMapper extends AbstractHBaseVariantMapper<NullWrita
         } catch (VariantAnnotatorException e) {
             throw new RuntimeException(e);
         } finally {
+            this.variantAnnotator.close();
             this.cleanup(context);
         }
     }
@@ -17,6 +17,7 @@ import org.opencb.opencga.storage.core.variant.adaptors.iterators.MultiVariantDB
 import org.opencb.opencga.storage.core.variant.adaptors.iterators.VariantDBIterator;
 import org.opencb.opencga.storage.core.variant.adaptors.iterators.VariantDBIteratorWithCounts;
 import org.opencb.opencga.storage.core.variant.query.AbstractTwoPhasedVariantQueryExecutor;
+import org.opencb.opencga.storage.core.variant.query.VariantQuerySelectivity;
 import org.opencb.opencga.storage.hadoop.variant.adaptors.VariantHadoopDBAdaptor;
 import org.opencb.opencga.storage.hadoop.variant.index.query.SampleIndexQuery;
 import org.opencb.opencga.storage.hadoop.variant.index.sample.SampleIndexDBAdaptor;
@@ -24,13 +25,13 @@ import org.opencb.opencga.storage.hadoop.variant.index.sample.SampleIndexQueryPa
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Set;
+import java.util.*;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 
-import static org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam.REGION;
+import static org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam.*;
 import static org.opencb.opencga.storage.core.variant.adaptors.VariantQueryUtils.addSamplesMetadataIfRequested;
 
 /**
@@ -43,6 +44,11 @@ public class SampleIndexVariantQueryExecutor extends AbstractTwoPhasedVariantQue
     public static final String SAMPLE_INDEX_INTERSECT = "sample_index_intersect";
     public static final String SAMPLE_INDEX_TABLE_SOURCE = "sample_index_table";
     public static final int DEFAULT_SAMPLING_SIZE = 200;
+    // Cost of scanning the sample index of one sample, relative to a full scan of the variants table
+    private static final double SAMPLE_INDEX_SCAN_COST = 0.01;
+    private static final List<VariantQueryParam> SAMPLE_INDEX_PARAMS = Arrays.asList(
+            REGION, GENE, SAMPLE, GENOTYPE, FILE, FILTER, QUAL, TYPE,
+            ANNOT_CONSEQUENCE_TYPE, ANNOT_BIOTYPE, ANNOT_POPULATION_ALTERNATE_FREQUENCY, ANNOT_CLINICAL_SIGNIFICANCE);
     private final SampleIndexDBAdaptor sampleIndexDBAdaptor;
     private final VariantHadoopDBAdaptor dbAdaptor;
     private Logger logger = LoggerFactory.getLogger(SampleIndexVariantQueryExecutor.class);
@@ -71,6 +77,21 @@ public class SampleIndexVariantQueryExecutor extends AbstractTwoPhasedVariantQue
         return false;
     }
 
+    @Override
+    public double estimateCost(Query query, QueryOptions options) {
+        int numSamples = 0;
+        if (VariantQueryUtils.isValidParam(query, SAMPLE)) {
+            numSamples += VariantQueryUtils.splitValue(query.getString(SAMPLE.key())).getValue().size();
+        }
+        if (VariantQueryUtils.isValidParam(query, GENOTYPE)) {
+            Map<Object, List<String>> gtMap = new HashMap<>();
+            VariantQueryUtils.parseGenotypeFilter(query.getString(GENOTYPE.key()), gtMap);
+            numSamples += gtMap.size();
+        }
+        double scanCost = SAMPLE_INDEX_SCAN_COST * Math.max(1, numSamples) * VariantQuerySelectivity.locationSelectivity(query);
+        return estimateTwoPhasedCost(scanCost, VariantQuerySelectivity.selectivity(query, SAMPLE_INDEX_PARAMS));
+    }
+
     @Override
     public DataResult<Long> count(Query query) {
         throw new UnsupportedOperationException("Count not implemented in " + getClass());
@@ -113,6 +134,11 @@ public class SampleIndexVariantQueryExecutor extends AbstractTwoPhasedVariantQue
         } else {
             VariantQueryResult<Variant> result =
                     addSamplesMetadataIfRequested(variantIterator.toDataResult(), query, options, getMetadataManager());
+            try {
+                variantIterator.close();
+            } catch (Exception e) {
+                throw VariantQueryException.internalException(e);
+            }
 //                if (!options.getBoolean(QueryOptions.SKIP_COUNT, true) || options.getBoolean(APPROXIMATE_COUNT.key(), false)) {
 //
 //                }
@@ -144,6 +170,7 @@ public class SampleIndexVariantQueryExecutor extends AbstractTwoPhasedVariantQue
                 sampleIndexDBAdaptor.iterator(sampleIndexQuery, limitLessOptions));
 
         int batchSize = inputOptions.getInt("multiIteratorBatchSize", 200);
+        setDefaultPrefetch(inputOptions);
         if (iterator) {
             // SampleIndex iterator will be closed when closing the variants iterator
             return dbAdaptor.iterator(variants, query, inputOptions, batchSize);
@@ -194,6 +221,8 @@ public class SampleIndexVariantQueryExecutor extends AbstractTwoPhasedVariantQue
             result.setSource(getStorageEngineId() + " + " + SAMPLE_INDEX_TABLE_SOURCE);
 
             try {
+                // Stop the prefetched queries, if any
+                variantDBIterator.close();
                 variants.close();
             } catch (Exception e) {
                 throw VariantQueryException.internalException(e);
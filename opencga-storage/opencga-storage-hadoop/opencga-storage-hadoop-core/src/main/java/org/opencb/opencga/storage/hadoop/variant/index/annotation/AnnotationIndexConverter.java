@@ -113,8 +113,12 @@ public class AnnotationIndexConverter {
         }
     }
 
+    // Consequence type and biotype masks of the default configuration
+    private static final SampleIndexConfiguration DEFAULT_CONFIGURATION = SampleIndexConfiguration.defaultConfiguration();
+
+    private final SampleIndexConfiguration configuration;
     private final Map<String, Integer> populations;
-    private final double[] popFreqRanges;
+    private final double[][] popFreqRanges;
 
     @Deprecated
     public AnnotationIndexConverter() {
@@ -122,14 +126,16 @@ public class AnnotationIndexConverter {
     }
 
     public AnnotationIndexConverter(SampleIndexConfiguration configuration) {
+        this.configuration = configuration;
         this.populations = new HashMap<>(configuration.getPopulationRanges().size());
+        popFreqRanges = new double[configuration.getPopulationRanges().size()][];
         int i = 0;
         for (SampleIndexConfiguration.PopulationFrequencyRange population : configuration.getPopulationRanges()) {
+            popFreqRanges[i] = population.getThresholds();
             if (this.populations.put(population.getStudyAndPopulation(), i++) != null) {
                 throw new IllegalArgumentException("Duplicated population '" + population.getStudyAndPopulation() + "' in " + populations);
             }
         }
-        popFreqRanges = SampleIndexConfiguration.PopulationFrequencyRange.DEFAULT_THRESHOLDS;
     }
 
     public static Pair<Variant, AnnotationIndexEntry> getAnnotationIndexEntryPair(Result result) {
@@ -183,7 +189,7 @@ public class AnnotationIndexConverter {
                 if (BIOTYPE_SET.contains(ct.getBiotype())) {
                     b |= PROTEIN_CODING_MASK;
                 }
-                byte maskFromBiotype = getMaskFromBiotype(ct.getBiotype());
+                byte maskFromBiotype = configuration.getBiotypeMask(ct.getBiotype());
                 btIndex |= maskFromBiotype;
 
                 boolean proteinCoding = PROTEIN_CODING.equals(ct.getBiotype());
@@ -193,7 +199,7 @@ public class AnnotationIndexConverter {
                         intergenic = true;
                     }
 
-                    short maskFromSoName = getMaskFromSoName(soName);
+                    short maskFromSoName = configuration.getConsequenceTypeMask(soName);
                     if (maskFromSoName != 0) {
                         if (maskFromBiotype != 0) {
                             ctBtcombinations[maskPosition(maskFromSoName)][maskPosition(maskFromBiotype)] = true;
@@ -249,29 +255,12 @@ public class AnnotationIndexConverter {
             clinical = true;
             for (EvidenceEntry evidenceEntry : variantAnnotation.getTraitAssociation()) {
                 if (evidenceEntry.getSomaticInformation() != null) {
-                        clinicalIndex |= CLINICAL_SOMATIC_MASK;
+                    clinicalIndex |= configuration.getClinicalMask(SampleIndexConfiguration.CLINICAL_SOMATIC);
                 }
                 if (evidenceEntry.getVariantClassification() != null
                         && evidenceEntry.getVariantClassification().getClinicalSignificance() != null) {
-                    switch (evidenceEntry.getVariantClassification().getClinicalSignificance()) {
-                        case likely_benign:
-                            clinicalIndex |= CLINICAL_LIKELY_BENIGN_MASK;
-                            break;
-                        case VUS:
-                            clinicalIndex |= CLINICAL_VUS_MASK;
-                            break;
-                        case likely_pathogenic:
-                            clinicalIndex |= CLINICAL_LIKELY_PATHOGENIC_MASK;
-                            break;
-                        case pathogenic:
-                            clinicalIndex |= CLINICAL_PATHOGENIC_MASK;
-                            break;
-                        case uncertain_significance:
-                        case benign:
-                        default:
-                            // Nothing
-                            break;
-                    }
+                    clinicalIndex |= configuration.getClinicalMask(
+                            evidenceEntry.getVariantClassification().getClinicalSignificance().name());
                 }
             }
         }
@@ -322,7 +311,7 @@ public class AnnotationIndexConverter {
     protected void addPopFreqIndex(byte[] popFreqIndex, PopulationFrequency populationFrequency) {
         Integer idx = populations.get(populationFrequency.getStudy() + ":" + populationFrequency.getPopulation());
         if (idx != null) {
-            byte popFreqInterval = IndexUtils.getRangeCode(populationFrequency.getAltAlleleFreq(), popFreqRanges);
+            byte popFreqInterval = IndexUtils.getRangeCode(populationFrequency.getAltAlleleFreq(), popFreqRanges[idx]);
 //            int byteIdx = (idx * POP_FREQ_SIZE) / Byte.SIZE;
 //            int bitIdx = (idx * POP_FREQ_SIZE) % Byte.SIZE;
 //            popFreqIndex[byteIdx] |= popFreqInterval << bitIdx;
@@ -349,140 +338,48 @@ public class AnnotationIndexConverter {
         return put;
     }
 
+    /**
+     * Check if the mask contains any imprecise consequence type of the default configuration.
+     *
+     * @param ctMask Consequence type mask
+     * @return If the mask is imprecise
+     * @see SampleIndexConfiguration#isImpreciseConsequenceTypeMask
+     */
     public static boolean isImpreciseCtMask(short ctMask) {
-        return IndexUtils.testIndexAny(ctMask, ((short) (CT_MIRNA_TFBS_MASK | CT_UTR_MASK)));
+        return DEFAULT_CONFIGURATION.isImpreciseConsequenceTypeMask(ctMask);
     }
 
+    /**
+     * Mask of the given SO term in the default configuration.
+     *
+     * @param soName SO term
+     * @return Consequence type mask
+     * @see SampleIndexConfiguration#getConsequenceTypeMask
+     */
     public static short getMaskFromSoName(String soName) {
-        if (soName == null) {
-            return 0;
-        }
-
-        switch (soName) {
-            // Coding
-            case MISSENSE_VARIANT:
-                return CT_MISSENSE_VARIANT_MASK;
-            case FRAMESHIFT_VARIANT:
-                return CT_FRAMESHIFT_VARIANT_MASK;
-            case INFRAME_DELETION:
-                return CT_INFRAME_DELETION_MASK;
-            case INFRAME_INSERTION:
-                return CT_INFRAME_INSERTION_MASK;
-            case START_LOST:
-                return CT_START_LOST_MASK;
-            case STOP_GAINED:
-                return CT_STOP_GAINED_MASK;
-            case STOP_LOST:
-                return CT_STOP_LOST_MASK;
-            case INITIATOR_CODON_VARIANT:
-                return CT_INITIATOR_CODON_VARIANT_MASK;
-            case SPLICE_REGION_VARIANT:
-                return CT_SPLICE_REGION_VARIANT_MASK;
-            case INCOMPLETE_TERMINAL_CODON_VARIANT:
-                return CT_INCOMPLETE_TERMINAL_CODON_VARIANT_MASK;
-
-            // Splice
-            case SPLICE_ACCEPTOR_VARIANT:
-                return CT_SPLICE_ACCEPTOR_VARIANT_MASK;
-            case SPLICE_DONOR_VARIANT:
-                return CT_SPLICE_DONOR_VARIANT_MASK;
-
-            case TRANSCRIPT_ABLATION:
-                return CT_TRANSCRIPT_ABLATION_MASK;
-            case TRANSCRIPT_AMPLIFICATION:
-                return CT_TRANSCRIPT_AMPLIFICATION_MASK;
-
-            // Regulatory
-//            case "regulatory_region_ablation":
-//            case "regulatory_region_amplification":
-//            case REGULATORY_REGION_VARIANT:
-//                return CT_REGULATORY_MASK;
-
-            case TF_BINDING_SITE_VARIANT:
-//            case "TFBS_ablation":
-//            case "TFBS_amplification":
-            case MATURE_MIRNA_VARIANT:
-                return CT_MIRNA_TFBS_MASK;
-
-            // NonCoding
-            case THREE_PRIME_UTR_VARIANT:
-            case FIVE_PRIME_UTR_VARIANT:
-                return CT_UTR_MASK;
-
-//            // Intergenic
-//            case UPSTREAM_GENE_VARIANT:
-//            case TWOKB_UPSTREAM_VARIANT:
-//            case "5KB_upstream_variant":
-//
-//            case DOWNSTREAM_GENE_VARIANT:
-//            case TWOKB_DOWNSTREAM_VARIANT:
-//            case "5KB_downstream_variant":
-//                return CT_UPSTREAM_DOWNSTREAM_MASK;
-
-            //case INTERGENIC_VARIANT:
-            //case CODING_SEQUENCE_VARIANT:
-            //case FEATURE_TRUNCATION:
-            //case INFRAME_VARIANT:
-            //case MISSENSE_VARIANT:
-            //case NMD_TRANSCRIPT_VARIANT:
-            //case STOP_RETAINED_VARIANT:
-            //case TERMINATOR_CODON_VARIANT:
-            //case "feature_elongation":
-            //case "protein_altering_variant":
-            //case SYNONYMOUS_VARIANT:
-            //case INTRON_VARIANT:
-            //case NON_CODING_TRANSCRIPT_EXON_VARIANT:
-            //case NON_CODING_TRANSCRIPT_VARIANT:
-            default:
-                return 0;
-        }
+        return DEFAULT_CONFIGURATION.getConsequenceTypeMask(soName);
     }
 
+    /**
+     * Check if the mask contains any imprecise biotype of the default configuration.
+     *
+     * @param btMask Biotype mask
+     * @return If the mask is imprecise
+     * @see SampleIndexConfiguration#isImpreciseBiotypeMask
+     */
     public static boolean isImpreciseBtMask(byte btMask) {
-        return IndexUtils.testIndexAny(btMask, ((byte) (BT_LNCRNA_MASK | BT_OTHER_NON_PSEUDOGENE)));
+        return DEFAULT_CONFIGURATION.isImpreciseBiotypeMask(btMask);
     }
 
+    /**
+     * Mask of the given biotype in the default configuration.
+     *
+     * @param biotype Biotype
+     * @return Biotype mask
+     * @see SampleIndexConfiguration#getBiotypeMask
+     */
     public static byte getMaskFromBiotype(String biotype) {
-        if (biotype == null) {
-            return 0;
-        }
-
-        switch (biotype) {
-            case NONSENSE_MEDIATED_DECAY:
-                return BT_NONSENSE_MEDIATED_DECAY_MASK;
-
-            // See http://www.ensembl.info/2019/05/20/whats-coming-in-ensembl-97-ensembl-genomes-44/
-            case LNCRNA:
-            case NON_CODING:
-            case LINCRNA:
-            case "macro_lncRNA":
-            case ANTISENSE:
-            case SENSE_INTRONIC:
-            case SENSE_OVERLAPPING:
-            case THREEPRIME_OVERLAPPING_NCRNA:
-            case "bidirectional_promoter_lncRNA":
-                return BT_LNCRNA_MASK;
-
-
-            case MIRNA:
-                return BT_MIRNA_MASK;
-            case RETAINED_INTRON:
-                return BT_RETAINED_INTRON_MASK;
-            case SNRNA:
-                return BT_SNRNA_MASK;
-            case SNORNA:
-                return BT_SNORNA_MASK;
-            case NON_STOP_DECAY:
-                return BT_OTHER_NON_PSEUDOGENE;
-            case PROTEIN_CODING:
-                return BT_PROTEIN_CODING_MASK;
-            default:
-                if (biotype.contains("pseudogene")) {
-                    return 0;
-                } else {
-                    return BT_OTHER_NON_PSEUDOGENE;
-                }
-        }
+        return DEFAULT_CONFIGURATION.getBiotypeMask(biotype);
     }
 
 }
@@ -18,6 +18,7 @@ import org.opencb.opencga.storage.hadoop.variant.HadoopVariantStorageOptions;
 import org.opencb.opencga.storage.hadoop.variant.adaptors.VariantHBaseQueryParser;
 import org.opencb.opencga.storage.hadoop.variant.adaptors.phoenix.VariantPhoenixHelper;
 import org.opencb.opencga.storage.hadoop.variant.converters.annotation.HBaseToVariantAnnotationConverter;
+import org.opencb.opencga.storage.hadoop.variant.index.sample.SampleIndexConfiguration;
 import org.opencb.opencga.storage.hadoop.variant.mr.VariantMapReduceUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -30,15 +31,19 @@ import java.io.IOException;
  * export HADOOP_CLASSPATH=$(hbase classpath | tr ":" "\n" | grep "/conf" | tr "\n" ":")
  * hadoop jar opencga-storage-hadoop-core-X.Y.Z-dev-jar-with-dependencies.jar
  *      org.opencb.opencga.storage.hadoop.variant.index.annotation.AnnotationIndexDriver
- *      $VARIANTS_TABLE_NAME [--region $REGION]
+ *      $VARIANTS_TABLE_NAME [--region $REGION] [--study $STUDY]
  *      ....
  * </code>
+ * If a study is given, the index is built with the {@link SampleIndexConfiguration} of that study. Use it to migrate
+ * the annotation index after changing the configuration.
+ *
  * @author Jacobo Coll &lt;jacobo167@gmail.com&gt;
  */
 public class AnnotationIndexDriver extends AbstractVariantsTableDriver {
     private static final Logger LOGGER = LoggerFactory.getLogger(AnnotationIndexDriver.class);
     private Region region;
     private String annotationIndexTable;
+    private SampleIndexConfiguration configuration;
 
     @Override
     protected void parseAndValidateParameters() throws IOException {
@@ -53,6 +58,13 @@ public class AnnotationIndexDriver extends AbstractVariantsTableDriver {
         }
 
         annotationIndexTable = getTableNameGenerator().getAnnotationIndexTableName();
+
+        if (getStudyId() >= 0) {
+            configuration = SampleIndexConfiguration.fromStudyMetadata(getMetadataManager().getStudyMetadata(getStudyId()));
+        } else {
+            configuration = SampleIndexConfiguration.defaultConfiguration();
+        }
+        LOGGER.info("Sample index configuration version " + configuration.getVersion());
     }
 
     @Override
@@ -68,6 +80,8 @@ public class AnnotationIndexDriver extends AbstractVariantsTableDriver {
 
         scan.addColumn(GenomeHelper.COLUMN_FAMILY_BYTES, VariantPhoenixHelper.VariantColumn.FULL_ANNOTATION.bytes());
 
+        AnnotationIndexMapper.setSampleIndexConfiguration(job, configuration);
+
         VariantMapReduceUtil.initTableMapperJob(job, variantTable, scan, getMapperClass());
         VariantMapReduceUtil.setOutputHBaseTable(job, annotationIndexTable);
 
@@ -92,13 +106,23 @@ public class AnnotationIndexDriver extends AbstractVariantsTableDriver {
     }
 
     public static class AnnotationIndexMapper extends TableMapper<ImmutableBytesWritable, Put> {
+        private static final String SAMPLE_INDEX_CONFIGURATION = "AnnotationIndexMapper.sampleIndexConfiguration";
         private HBaseToVariantAnnotationConverter annotationConverter;
         private AnnotationIndexConverter annotationIndexConverter;
 
+        public static void setSampleIndexConfiguration(Job job, SampleIndexConfiguration configuration) throws IOException {
+            job.getConfiguration().set(SAMPLE_INDEX_CONFIGURATION, configuration.toJson());
+        }
+
         @Override
         protected void setup(Context context) throws IOException, InterruptedException {
             annotationConverter = new HBaseToVariantAnnotationConverter();
-            annotationIndexConverter = new AnnotationIndexConverter();
+            String configurationJson = context.getConfiguration().get(SAMPLE_INDEX_CONFIGURATION);
+            if (configurationJson == null) {
+                annotationIndexConverter = new AnnotationIndexConverter();
+            } else {
+                annotationIndexConverter = new AnnotationIndexConverter(SampleIndexConfiguration.fromJson(configurationJson));
+            }
         }
 
         @Override
@@ -4,9 +4,11 @@ import org.apache.hadoop.hbase.client.Put;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.opencb.opencga.storage.hadoop.variant.index.IndexUtils;
 import org.opencb.opencga.storage.core.io.bit.BitOutputStream;
+import org.opencb.opencga.storage.hadoop.variant.index.sample.SampleIndexConfiguration;
 import org.opencb.opencga.storage.hadoop.variant.index.sample.SampleIndexSchema;
 
 import java.io.ByteArrayOutputStream;
+import java.util.List;
 
 public class AnnotationIndexPutBuilder {
 
@@ -16,6 +18,7 @@ public class AnnotationIndexPutBuilder {
     private final BitOutputStream ctBt;
     private final BitOutputStream popFreq;
     private final ByteArrayOutputStream clinical;
+    private final int[] popFreqBits;
     private int numVariants;
 
     public AnnotationIndexPutBuilder() {
@@ -23,6 +26,20 @@ public class AnnotationIndexPutBuilder {
     }
 
     public AnnotationIndexPutBuilder(int size) {
+        // Without configuration, write every population frequency value with the default size
+        this((int[]) null, size);
+    }
+
+    public AnnotationIndexPutBuilder(SampleIndexConfiguration configuration) {
+        this(configuration, 50);
+    }
+
+    public AnnotationIndexPutBuilder(SampleIndexConfiguration configuration, int size) {
+        this(getPopFreqBits(configuration), size);
+    }
+
+    private AnnotationIndexPutBuilder(int[] popFreqBits, int size) {
+        this.popFreqBits = popFreqBits;
         this.annotation = new ByteArrayOutputStream(size);
         this.biotype = new ByteArrayOutputStream(size / 4);
         this.ct = new ByteArrayOutputStream(size / 2);
@@ -32,6 +49,15 @@ public class AnnotationIndexPutBuilder {
         numVariants = 0;
     }
 
+    private static int[] getPopFreqBits(SampleIndexConfiguration configuration) {
+        List<SampleIndexConfiguration.PopulationFrequencyRange> populationRanges = configuration.getPopulationRanges();
+        int[] popFreqBits = new int[populationRanges.size()];
+        for (int i = 0; i < popFreqBits.length; i++) {
+            popFreqBits[i] = populationRanges.get(i).getBits();
+        }
+        return popFreqBits;
+    }
+
     public AnnotationIndexPutBuilder add(AnnotationIndexEntry indexEntry) {
         numVariants++;
         annotation.write(indexEntry.getSummaryIndex());
@@ -40,8 +66,16 @@ public class AnnotationIndexPutBuilder {
             ct.write(Bytes.toBytes(indexEntry.getCtIndex()), 0, Short.BYTES);
             biotype.write(indexEntry.getBtIndex());
         }
-        for (byte popFreqIndex : indexEntry.getPopFreqIndex()) {
-            popFreq.write(popFreqIndex, AnnotationIndexConverter.POP_FREQ_SIZE);
+        byte[] popFreqIndex = indexEntry.getPopFreqIndex();
+        if (popFreqBits == null) {
+            for (byte popFreqValue : popFreqIndex) {
+                popFreq.write(popFreqValue, AnnotationIndexConverter.POP_FREQ_SIZE);
+            }
+        } else {
+            // Write one value per population in the configuration, so the bit stream is always aligned
+            for (int i = 0; i < popFreqBits.length; i++) {
+                popFreq.write(popFreqIndex != null && i < popFreqIndex.length ? popFreqIndex[i] : 0, popFreqBits[i]);
+            }
         }
         AnnotationIndexEntry.CtBtCombination ctBtCombination = indexEntry.getCtBtCombination();
         byte[] ctBtMatrix = ctBtCombination.getCtBtMatrix();
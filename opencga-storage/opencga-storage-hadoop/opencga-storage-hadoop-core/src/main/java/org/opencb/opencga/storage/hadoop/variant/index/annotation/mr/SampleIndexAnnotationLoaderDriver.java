@@ -17,6 +17,7 @@ import org.opencb.opencga.storage.hadoop.variant.adaptors.VariantHBaseQueryParse
 import org.opencb.opencga.storage.hadoop.variant.adaptors.phoenix.VariantPhoenixHelper;
 import org.opencb.opencga.storage.hadoop.variant.converters.HBaseToVariantConverter;
 import org.opencb.opencga.storage.hadoop.variant.index.sample.SampleIndexAnnotationLoader;
+import org.opencb.opencga.storage.hadoop.variant.index.sample.SampleIndexConfiguration;
 import org.opencb.opencga.storage.hadoop.variant.index.sample.SampleIndexSchema;
 import org.opencb.opencga.storage.hadoop.variant.mr.VariantAlignedInputFormat;
 import org.opencb.opencga.storage.hadoop.variant.mr.VariantMapReduceUtil;
@@ -41,6 +42,7 @@ public class SampleIndexAnnotationLoaderDriver extends AbstractVariantsTableDriv
     private boolean hasGenotype;
     private String region;
     private String outputTable;
+    private SampleIndexConfiguration configuration;
 
     @Override
     protected Class<SampleIndexAnnotationLoaderMapper> getMapperClass() {
@@ -95,6 +97,9 @@ public class SampleIndexAnnotationLoaderDriver extends AbstractVariantsTableDriv
             LOGGER.info("Study without genotypes. Study fixed format: " + HBaseToVariantConverter.getFixedFormat(attributes));
         }
 
+        configuration = SampleIndexConfiguration.fromStudyMetadata(metadataManager.getStudyMetadata(getStudyId()));
+        LOGGER.info("Sample index configuration version " + configuration.getVersion());
+
         region = getParam(VariantQueryParam.REGION.key(), "");
     }
 
@@ -113,6 +118,7 @@ public class SampleIndexAnnotationLoaderDriver extends AbstractVariantsTableDriv
         scan.addColumn(GenomeHelper.COLUMN_FAMILY_BYTES, VariantPhoenixHelper.VariantColumn.FULL_ANNOTATION.bytes());
 
         SampleIndexAnnotationLoaderMapper.setHasGenotype(job, hasGenotype);
+        SampleIndexAnnotationLoaderMapper.setSampleIndexConfiguration(job, configuration);
 
         VariantMapReduceUtil.configureMapReduceScan(scan, getConf());
 
@@ -137,7 +143,7 @@ public class SampleIndexAnnotationLoaderDriver extends AbstractVariantsTableDriv
     protected void postExecution(boolean succeed) throws IOException, StorageEngineException {
         super.postExecution(succeed);
         if (succeed && StringUtils.isEmpty(region)) {
-            SampleIndexAnnotationLoader.postAnnotationLoad(getStudyId(), sampleIds, getMetadataManager());
+            SampleIndexAnnotationLoader.postAnnotationLoad(getStudyId(), sampleIds, configuration, getMetadataManager());
         }
     }
 
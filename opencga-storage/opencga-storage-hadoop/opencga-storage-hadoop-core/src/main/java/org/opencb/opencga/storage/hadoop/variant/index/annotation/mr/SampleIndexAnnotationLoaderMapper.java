@@ -15,6 +15,7 @@ import org.opencb.opencga.storage.hadoop.variant.converters.annotation.HBaseToVa
 import org.opencb.opencga.storage.hadoop.variant.index.annotation.AnnotationIndexPutBuilder;
 import org.opencb.opencga.storage.hadoop.variant.index.annotation.AnnotationIndexConverter;
 import org.opencb.opencga.storage.hadoop.variant.index.annotation.AnnotationIndexEntry;
+import org.opencb.opencga.storage.hadoop.variant.index.sample.SampleIndexConfiguration;
 import org.opencb.opencga.storage.hadoop.variant.index.sample.SampleIndexSchema;
 import org.opencb.opencga.storage.hadoop.variant.mr.VariantsTableMapReduceHelper;
 
@@ -30,23 +31,35 @@ import java.util.Map;
 public class SampleIndexAnnotationLoaderMapper extends VariantTableSampleIndexOrderMapper<ImmutableBytesWritable, Put> {
 
     private static final String HAS_GENOTYPE = "SampleIndexAnnotationLoaderMapper.hasGenotype";
+    private static final String SAMPLE_INDEX_CONFIGURATION = "SampleIndexAnnotationLoaderMapper.sampleIndexConfiguration";
     private byte[] family;
     private GenomeHelper helper;
     private Map<Integer, Map<String, AnnotationIndexPutBuilder>> annotationIndices = new HashMap<>();
 
     private boolean hasGenotype;
     private AnnotationIndexConverter converter;
+    private SampleIndexConfiguration configuration;
 
     public static void setHasGenotype(Job job, boolean hasGenotype) {
         job.getConfiguration().setBoolean(HAS_GENOTYPE, hasGenotype);
     }
 
+    public static void setSampleIndexConfiguration(Job job, SampleIndexConfiguration configuration) throws IOException {
+        job.getConfiguration().set(SAMPLE_INDEX_CONFIGURATION, configuration.toJson());
+    }
+
     @Override
     protected void setup(Context context) throws IOException, InterruptedException {
         helper = new GenomeHelper(context.getConfiguration());
         family = GenomeHelper.COLUMN_FAMILY_BYTES;
         hasGenotype = context.getConfiguration().getBoolean(HAS_GENOTYPE, true);
-        converter = new AnnotationIndexConverter();
+        String configurationJson = context.getConfiguration().get(SAMPLE_INDEX_CONFIGURATION);
+        if (configurationJson == null) {
+            configuration = SampleIndexConfiguration.defaultConfiguration();
+        } else {
+            configuration = SampleIndexConfiguration.fromJson(configurationJson);
+        }
+        converter = new AnnotationIndexConverter(configuration);
     }
 
     @Override
@@ -84,7 +97,7 @@ public class SampleIndexAnnotationLoaderMapper extends VariantTableSampleIndexOr
                 if (validGt) {
                     annotationIndices
                             .computeIfAbsent(sampleId, k -> new HashMap<>())
-                            .computeIfAbsent(gt, k -> new AnnotationIndexPutBuilder()).add(indexEntry);
+                            .computeIfAbsent(gt, k -> new AnnotationIndexPutBuilder(configuration)).add(indexEntry);
 
                 }
 
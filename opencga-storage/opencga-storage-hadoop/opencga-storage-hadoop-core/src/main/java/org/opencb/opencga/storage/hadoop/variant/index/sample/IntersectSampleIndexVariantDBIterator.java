@@ -0,0 +1,168 @@
+package org.opencb.opencga.storage.hadoop.variant.index.sample;
+
+import org.apache.hadoop.hbase.client.Table;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.opencga.storage.core.variant.adaptors.iterators.VariantDBIterator;
+import org.opencb.opencga.storage.hadoop.utils.HBaseScanProfiler;
+import org.opencb.opencga.storage.hadoop.variant.index.query.SingleSampleIndexQuery;
+
+import java.util.*;
+
+import static org.opencb.opencga.storage.hadoop.variant.index.sample.SampleIndexSchema.INTRA_CHROMOSOME_VARIANT_COMPARATOR;
+
+/**
+ * Intersect the sample index of multiple samples at entry level.
+ *
+ * The entries of all the samples are aligned by chromosome and batch. For each batch, the positions of all the samples
+ * are intersected before decoding any variant, so only the variants at positions present in all the samples are decoded.
+ * Then, the decoded variants are intersected to remove variants with different alleles at the same position.
+ */
+public class IntersectSampleIndexVariantDBIterator extends VariantDBIterator {
+
+    private final List<SampleIndexEntryScanIterator> samples;
+    private final SampleIndexEntry[] entries;
+    private final SampleIndexEntryFilter[] filters;
+    private final int[] regionIndexes;
+    private final HBaseScanProfiler profiler = new HBaseScanProfiler("sampleIndex");
+    private Iterator<Variant> batch = Collections.emptyIterator();
+    private boolean exhausted = false;
+    protected int count = 0;
+
+    public IntersectSampleIndexVariantDBIterator(Table table, List<SingleSampleIndexQuery> queries, SampleIndexDBAdaptor dbAdaptor) {
+        samples = new ArrayList<>(queries.size());
+        for (SingleSampleIndexQuery query : queries) {
+            SampleIndexEntryScanIterator sample = new SampleIndexEntryScanIterator(table, query, dbAdaptor, profiler);
+            addCloseable(sample);
+            samples.add(sample);
+        }
+        entries = new SampleIndexEntry[samples.size()];
+        filters = new SampleIndexEntryFilter[samples.size()];
+        regionIndexes = new int[samples.size()];
+    }
+
+    @Override
+    public int getCount() {
+        return count;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return fetch(() -> {
+            while (!batch.hasNext()) {
+                if (exhausted || !nextBatch()) {
+                    exhausted = true;
+                    return false;
+                }
+            }
+            return true;
+        });
+    }
+
+    @Override
+    public Variant next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Variant variant = fetch(batch::next);
+        count++;
+        return variant;
+    }
+
+    @Override
+    public void close() throws Exception {
+        super.close();
+        profiler.register(this);
+    }
+
+    /**
+     * Move all the samples to the next batch present in all of them, and intersect it.
+     *
+     * @return false if any sample has no more entries
+     */
+    private boolean nextBatch() {
+        for (int i = 0; i < samples.size(); i++) {
+            if (!advance(i)) {
+                return false;
+            }
+        }
+        boolean aligned;
+        do {
+            aligned = true;
+            int target = 0;
+            for (int i = 1; i < samples.size(); i++) {
+                if (compare(i, target) > 0) {
+                    target = i;
+                }
+            }
+            for (int i = 0; i < samples.size(); i++) {
+                while (compare(i, target) < 0) {
+                    if (!advance(i)) {
+                        return false;
+                    }
+                }
+                if (compare(i, target) != 0) {
+                    aligned = false;
+                }
+            }
+        } while (!aligned);
+
+        batch = intersect();
+        return true;
+    }
+
+    private Iterator<Variant> intersect() {
+        // Intersect the positions of all the samples. Null if unknown.
+        int[] positions = null;
+        for (SampleIndexEntry entry : entries) {
+            int[] samplePositions = SampleIndexEntryPositions.of(entry);
+            if (samplePositions != null) {
+                positions = positions == null ? samplePositions : SampleIndexEntryPositions.intersect(positions, samplePositions);
+                if (positions.length == 0) {
+                    // Nothing in common. Skip this batch without decoding any variant
+                    return Collections.emptyIterator();
+                }
+            }
+        }
+
+        // Decode only the variants at the common positions
+        Set<Variant> variants = null;
+        for (int i = 0; i < entries.length; i++) {
+            Collection<Variant> sampleVariants = filters[i].filter(entries[i], positions);
+            if (variants == null) {
+                variants = new TreeSet<>(INTRA_CHROMOSOME_VARIANT_COMPARATOR);
+                variants.addAll(sampleVariants);
+            } else {
+                Set<Variant> other = new TreeSet<>(INTRA_CHROMOSOME_VARIANT_COMPARATOR);
+                other.addAll(sampleVariants);
+                variants.retainAll(other);
+            }
+            if (variants.isEmpty()) {
+                break;
+            }
+        }
+        return variants.iterator();
+    }
+
+    private boolean advance(int i) {
+        SampleIndexEntryScanIterator sample = samples.get(i);
+        if (!sample.hasNext()) {
+            return false;
+        }
+        entries[i] = sample.next();
+        filters[i] = sample.getFilter();
+        regionIndexes[i] = sample.getRegionIndex();
+        return true;
+    }
+
+    private int compare(int i, int j) {
+        int c = Integer.compare(regionIndexes[i], regionIndexes[j]);
+        if (c == 0) {
+            // Same order as in the row key
+            c = entries[i].getChromosome().compareTo(entries[j].getChromosome());
+            if (c == 0) {
+                c = Integer.compare(entries[i].getBatchStart(), entries[j].getBatchStart());
+            }
+        }
+        return c;
+    }
+}
@@ -32,7 +32,7 @@ import java.util.concurrent.ExecutionException;
 /**
  * Created by jacobo on 04/01/19.
  */
-public class SampleIndexAnnotationLoader {
+public class SampleIndexAnnotationLoader implements AutoCloseable {
 
     public static final String SAMPLE_INDEX_STATUS = "sampleIndex";
     private final HBaseManager hBaseManager;
@@ -55,6 +55,11 @@ public class SampleIndexAnnotationLoader {
         family = GenomeHelper.COLUMN_FAMILY_BYTES;
     }
 
+    @Override
+    public void close() {
+        sampleDBAdaptor.close();
+    }
+
     public void updateSampleAnnotation(int studyId, List<Integer> samples, ObjectMap options) throws IOException, StorageEngineException {
         samples = new ArrayList<>(samples);
         samples.removeIf(sampleId -> {
@@ -71,6 +76,37 @@ public class SampleIndexAnnotationLoader {
         updateSampleAnnotationBatchMapreduce(studyId, samples, options);
     }
 
+    /**
+     * Change the sample index configuration of a study, and rebuild the annotation index of all the annotated samples.
+     *
+     * The new configuration is stored with an increased version. Until each sample is rebuilt, queries will not use
+     * its annotation index. Does nothing if the configuration does not change the index layout.
+     *
+     * @param studyId       Study id
+     * @param configuration New sample index configuration
+     * @param options       Options for the MapReduce job
+     * @return              The stored configuration
+     * @throws IOException  on IOException
+     * @throws StorageEngineException on StorageEngineException
+     */
+    public SampleIndexConfiguration updateSampleIndexConfiguration(int studyId, SampleIndexConfiguration configuration, ObjectMap options)
+            throws IOException, StorageEngineException {
+        SampleIndexConfiguration current = SampleIndexConfiguration.fromStudyMetadata(metadataManager.getStudyMetadata(studyId));
+        if (current.sameLayout(configuration)) {
+            logger.info("Sample index configuration not modified");
+            return current;
+        }
+        configuration.setVersion(current.getVersion() + 1);
+        metadataManager.updateStudyMetadata(studyId, configuration::toStudyMetadata);
+        logger.info("Sample index configuration updated to version " + configuration.getVersion());
+
+        List<Integer> indexedSamples = metadataManager.getIndexedSamples(studyId);
+        if (!indexedSamples.isEmpty()) {
+            updateSampleAnnotation(studyId, indexedSamples, options);
+        }
+        return configuration;
+    }
+
     private void updateSampleAnnotationBatchMapreduce(int studyId, List<Integer> samples, ObjectMap options)
             throws IOException, StorageEngineException {
         mrExecutor.run(SampleIndexAnnotationLoaderDriver.class, SampleIndexAnnotationLoaderDriver.buildArgs(
@@ -81,6 +117,7 @@ public class SampleIndexAnnotationLoader {
 
     private void updateSampleAnnotationBatchMultiThread(int studyId, List<Integer> samples) throws IOException, StorageEngineException {
         logger.info("Update sample index annotation of " + samples.size() + " samples");
+        SampleIndexConfiguration configuration = sampleDBAdaptor.getConfiguration(studyId);
 
         String sampleIndexTableName = tableNameGenerator.getSampleIndexTableName(studyId);
 
@@ -145,7 +182,7 @@ public class SampleIndexAnnotationLoader {
 
                     for (Integer sampleId : samples) {
                         Map<String, List<Variant>> map = sampleDBAdaptor.queryByGt(studyId, sampleId, chromosome, start);
-                        Put put = annotate(chromosome, start, sampleId, map, annotationMasks);
+                        Put put = annotate(chromosome, start, sampleId, map, annotationMasks, configuration);
                         if (!put.isEmpty()) {
                             puts.add(put);
                         }
@@ -164,11 +201,12 @@ public class SampleIndexAnnotationLoader {
             throw new StorageEngineException("Error", e);
         }
 
-        postAnnotationLoad(studyId, samples);
+        postAnnotationLoad(studyId, samples, configuration);
     }
 
     public void updateSampleAnnotationMultiSampleIterator(int studyId, List<Integer> samples) throws IOException, StorageEngineException {
         String sampleIndexTableName = tableNameGenerator.getSampleIndexTableName(studyId);
+        SampleIndexConfiguration configuration = sampleDBAdaptor.getConfiguration(studyId);
         Map<Integer, Iterator<Map<String, List<Variant>>>> sampleIterators = new HashMap<>(samples.size());
 
         for (Integer sample : samples) {
@@ -199,7 +237,7 @@ public class SampleIndexAnnotationLoader {
                         annotationEntries = annotationIndexDBAdaptor.get(chromosome, start, end);
                     }
 
-                    Put put = annotate(chromosome, start, sampleId, next, annotationEntries);
+                    Put put = annotate(chromosome, start, sampleId, next, annotationEntries, configuration);
                     mutator.mutate(put);
                 }
             }
@@ -210,11 +248,11 @@ public class SampleIndexAnnotationLoader {
 
         mutator.close();
 
-        postAnnotationLoad(studyId, samples);
+        postAnnotationLoad(studyId, samples, configuration);
     }
 
-    private Put annotate(String chromosome, int start, Integer sampleId,
-                        Map<String, List<Variant>> sampleIndex, List<Pair<Variant, AnnotationIndexEntry>> annotationMasks) {
+    private Put annotate(String chromosome, int start, Integer sampleId, Map<String, List<Variant>> sampleIndex,
+                         List<Pair<Variant, AnnotationIndexEntry>> annotationMasks, SampleIndexConfiguration configuration) {
         byte[] rk = SampleIndexSchema.toRowKey(sampleId, chromosome, start);
         Put put = new Put(rk);
 
@@ -226,7 +264,7 @@ public class SampleIndexAnnotationLoader {
             }
 
             ListIterator<Pair<Variant, AnnotationIndexEntry>> iterator = annotationMasks.listIterator();
-            AnnotationIndexPutBuilder builder = new AnnotationIndexPutBuilder(variantsToAnnotate.size());
+            AnnotationIndexPutBuilder builder = new AnnotationIndexPutBuilder(configuration, variantsToAnnotate.size());
             int missingVariants = 0;
             // Assume both lists are ordered, and "variantsToAnnotate" is fully contained in "annotationMasks"
             for (Variant variantToAnnotate : variantsToAnnotate) {
@@ -245,8 +283,7 @@ public class SampleIndexAnnotationLoader {
                             restarted = true;
                         } else {
                             logger.error("Missing variant to annotate " + variantToAnnotate);
-                            builder.add(AnnotationIndexEntry.empty(
-                                    SampleIndexConfiguration.PopulationFrequencyRange.DEFAULT_THRESHOLDS.length));
+                            builder.add(AnnotationIndexEntry.empty(configuration.getPopulationRanges().size()));
                             missingVariants++;
                             break;
                         }
@@ -265,16 +302,18 @@ public class SampleIndexAnnotationLoader {
         return put;
     }
 
-    private void postAnnotationLoad(int studyId, List<Integer> samples) throws StorageEngineException {
-        postAnnotationLoad(studyId, samples, metadataManager);
+    private void postAnnotationLoad(int studyId, List<Integer> samples, SampleIndexConfiguration configuration)
+            throws StorageEngineException {
+        postAnnotationLoad(studyId, samples, configuration, metadataManager);
     }
 
-    public static void postAnnotationLoad(int studyId, List<Integer> samples, VariantStorageMetadataManager metadataManager)
+    public static void postAnnotationLoad(int studyId, List<Integer> samples, SampleIndexConfiguration configuration,
+                                          VariantStorageMetadataManager metadataManager)
             throws StorageEngineException {
         for (Integer sampleId : samples) {
             metadataManager.updateSampleMetadata(studyId, sampleId, sampleMetadata -> {
                 sampleMetadata.setStatus(SAMPLE_INDEX_STATUS, TaskMetadata.Status.READY);
-                return sampleMetadata;
+                return SampleIndexConfiguration.setAnnotationVersion(sampleMetadata, configuration.getVersion());
             });
         }
     }
@@ -1,18 +1,153 @@
 package org.opencb.opencga.storage.hadoop.variant.index.sample;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Objects;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.opencb.biodata.models.variant.avro.ClinicalSignificance;
+import org.opencb.opencga.storage.core.metadata.models.SampleMetadata;
+import org.opencb.opencga.storage.core.metadata.models.StudyMetadata;
 
+import java.io.IOException;
+import java.util.*;
+
+import static org.opencb.cellbase.core.variant.annotation.VariantAnnotationUtils.*;
+
+/**
+ * Layout of the annotation index of the SampleIndex.
+ *
+ * Each study stores its own configuration in the {@link StudyMetadata} attributes. Studies without a stored configuration
+ * use the {@link #defaultConfiguration()}. Every change of the configuration increments the version, and the annotation
+ * index of each sample records the version used to build it, so samples built with an older layout are not filtered
+ * with the annotation index until they are rebuilt.
+ *
+ * Configurable parts of the layout:
+ * <ul>
+ *     <li>Population frequencies. Any number of populations, each one with its own thresholds.</li>
+ *     <li>Consequence types. Up to {@link #MAX_CONSEQUENCE_TYPE_BINS} bins, each one with a group of SO terms.</li>
+ *     <li>Biotypes. Up to {@link #MAX_BIOTYPE_BINS} bins, each one with a group of biotypes, and an optional bin for
+ *     any other biotype that is not a pseudogene.</li>
+ *     <li>Clinical. Up to {@link #MAX_CLINICAL_BINS} bins, each one with a group of clinical significance values,
+ *     or {@link #CLINICAL_SOMATIC} for variants with somatic information.</li>
+ * </ul>
+ * The number of consequence type, biotype and clinical bins is limited by the fixed width of their columns.
+ * The summary index is not configurable.
+ */
 public class SampleIndexConfiguration {
 
     public static final double[] QUAL_THRESHOLDS = new double[]{10, 20, 30};
     public static final double[] DP_THRESHOLDS = new double[]{5, 15, 30};
 
+    public static final String STUDY_METADATA_ATTRIBUTE = "sampleIndexConfiguration";
+    public static final String SAMPLE_ANNOTATION_VERSION_ATTRIBUTE = "sampleIndexAnnotationVersion";
+    public static final int DEFAULT_VERSION = 1;
+    public static final int MAX_CONSEQUENCE_TYPE_BINS = Short.SIZE;
+    public static final int MAX_BIOTYPE_BINS = Byte.SIZE;
+    public static final int MAX_CLINICAL_BINS = Byte.SIZE;
+    public static final String CLINICAL_SOMATIC = "somatic";
+    private static final int DEFAULT_OTHER_BIOTYPE = 6;
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private int version;
     private List<PopulationFrequencyRange> populationRanges;
+    private List<List<String>> consequenceTypes;
+    private List<List<String>> biotypes;
+    private Integer otherBiotype;
+    private List<List<String>> clinicalSignificances;
+
+    // Derived from the bins
+    private final Map<String, Integer> consequenceTypeBins = new HashMap<>();
+    private final Map<String, Integer> biotypeBins = new HashMap<>();
+    private final Map<String, Integer> clinicalBins = new HashMap<>();
+    private short impreciseConsequenceTypeMask;
+    private byte impreciseBiotypeMask;
+    private byte impreciseClinicalMask;
 
     public SampleIndexConfiguration() {
+        version = DEFAULT_VERSION;
         populationRanges = new ArrayList<>();
+        // Configurations stored before the bins were configurable used the default bins
+        setConsequenceTypes(defaultConsequenceTypes());
+        setBiotypes(defaultBiotypes());
+        setOtherBiotype(DEFAULT_OTHER_BIOTYPE);
+        setClinicalSignificances(defaultClinicalSignificances());
+    }
+
+    /**
+     * Read the configuration of a study.
+     *
+     * @param studyMetadata StudyMetadata
+     * @return The stored configuration, or the default configuration if none
+     */
+    public static SampleIndexConfiguration fromStudyMetadata(StudyMetadata studyMetadata) {
+        Object value = studyMetadata.getAttributes().get(STUDY_METADATA_ATTRIBUTE);
+        if (value == null) {
+            return defaultConfiguration();
+        } else {
+            return OBJECT_MAPPER.convertValue(value, SampleIndexConfiguration.class);
+        }
+    }
+
+    /**
+     * Read the version of the configuration stored in a study, without parsing the configuration.
+     *
+     * @param studyMetadata StudyMetadata
+     * @return The stored version, or null if the study has no stored configuration
+     */
+    public static Integer getStoredVersion(StudyMetadata studyMetadata) {
+        Object value = studyMetadata.getAttributes().get(STUDY_METADATA_ATTRIBUTE);
+        if (value == null) {
+            return null;
+        } else if (value instanceof Map && ((Map) value).get("version") instanceof Number) {
+            return ((Number) ((Map) value).get("version")).intValue();
+        } else {
+            return OBJECT_MAPPER.convertValue(value, SampleIndexConfiguration.class).getVersion();
+        }
+    }
+
+    /**
+     * Store this configuration in the study.
+     *
+     * @param studyMetadata StudyMetadata
+     * @return The same StudyMetadata
+     */
+    public StudyMetadata toStudyMetadata(StudyMetadata studyMetadata) {
+        studyMetadata.getAttributes().put(STUDY_METADATA_ATTRIBUTE, OBJECT_MAPPER.convertValue(this, Map.class));
+        return studyMetadata;
+    }
+
+    public String toJson() throws IOException {
+        return OBJECT_MAPPER.writeValueAsString(this);
+    }
+
+    public static SampleIndexConfiguration fromJson(String json) throws IOException {
+        return OBJECT_MAPPER.readValue(json, SampleIndexConfiguration.class);
+    }
+
+    /**
+     * Get the configuration version used to build the annotation index of a sample.
+     *
+     * @param sampleMetadata SampleMetadata
+     * @return Configuration version
+     */
+    public static int getAnnotationVersion(SampleMetadata sampleMetadata) {
+        return sampleMetadata.getAttributes().getInt(SAMPLE_ANNOTATION_VERSION_ATTRIBUTE, DEFAULT_VERSION);
+    }
+
+    public static SampleMetadata setAnnotationVersion(SampleMetadata sampleMetadata, int version) {
+        sampleMetadata.getAttributes().put(SAMPLE_ANNOTATION_VERSION_ATTRIBUTE, version);
+        return sampleMetadata;
+    }
+
+    /**
+     * Check if the annotation index of a sample was built with this configuration.
+     *
+     * @param sampleMetadata SampleMetadata
+     * @return if the annotation index of the sample can be read with this configuration
+     */
+    public boolean isAnnotationUpToDate(SampleMetadata sampleMetadata) {
+        return getAnnotationVersion(sampleMetadata) == version;
     }
 
     public static SampleIndexConfiguration defaultConfiguration() {
@@ -21,6 +156,145 @@ public class SampleIndexConfiguration {
                 .addPopulationRange(new PopulationFrequencyRange("GNOMAD_GENOMES", "ALL"));
     }
 
+    static List<List<String>> defaultConsequenceTypes() {
+        return Arrays.asList(
+                Collections.singletonList(MISSENSE_VARIANT),
+                Collections.singletonList(FRAMESHIFT_VARIANT),
+                Collections.singletonList(INFRAME_DELETION),
+                Collections.singletonList(INFRAME_INSERTION),
+                Collections.singletonList(START_LOST),
+                Collections.singletonList(STOP_GAINED),
+                Collections.singletonList(STOP_LOST),
+                Collections.singletonList(SPLICE_ACCEPTOR_VARIANT),
+                Collections.singletonList(SPLICE_DONOR_VARIANT),
+                Collections.singletonList(TRANSCRIPT_ABLATION),
+                Collections.singletonList(TRANSCRIPT_AMPLIFICATION),
+                Collections.singletonList(INITIATOR_CODON_VARIANT),
+                Collections.singletonList(SPLICE_REGION_VARIANT),
+                Collections.singletonList(INCOMPLETE_TERMINAL_CODON_VARIANT),
+                Arrays.asList(THREE_PRIME_UTR_VARIANT, FIVE_PRIME_UTR_VARIANT),
+                Arrays.asList(TF_BINDING_SITE_VARIANT, MATURE_MIRNA_VARIANT));
+    }
+
+    private static List<List<String>> defaultBiotypes() {
+        return Arrays.asList(
+                Collections.singletonList(NONSENSE_MEDIATED_DECAY),
+                // See http://www.ensembl.info/2019/05/20/whats-coming-in-ensembl-97-ensembl-genomes-44/
+                Arrays.asList("lncRNA", NON_CODING, LINCRNA, "macro_lncRNA", ANTISENSE, SENSE_INTRONIC, SENSE_OVERLAPPING,
+                        THREEPRIME_OVERLAPPING_NCRNA, "bidirectional_promoter_lncRNA"),
+                Collections.singletonList(MIRNA),
+                Collections.singletonList(RETAINED_INTRON),
+                Collections.singletonList(SNRNA),
+                Collections.singletonList(SNORNA),
+                // Also any other biotype. See DEFAULT_OTHER_BIOTYPE
+                Collections.singletonList(NON_STOP_DECAY),
+                Collections.singletonList(PROTEIN_CODING));
+    }
+
+    static List<List<String>> defaultClinicalSignificances() {
+        return Arrays.asList(
+                Collections.singletonList(CLINICAL_SOMATIC),
+                Collections.singletonList(ClinicalSignificance.likely_benign.name()),
+                Collections.singletonList(ClinicalSignificance.VUS.name()),
+                Collections.singletonList(ClinicalSignificance.likely_pathogenic.name()),
+                Collections.singletonList(ClinicalSignificance.pathogenic.name()));
+    }
+
+    /**
+     * Mask of the consequence type bin containing the given SO term.
+     *
+     * @param soName SO term
+     * @return Mask with one bit, or 0 if the SO term is not indexed
+     */
+    public short getConsequenceTypeMask(String soName) {
+        Integer bin = soName == null ? null : consequenceTypeBins.get(soName);
+        return bin == null ? 0 : (short) (1 << bin);
+    }
+
+    /**
+     * Check if the mask contains any consequence type bin with more than one SO term.
+     * Filters using these bins may return false positives.
+     *
+     * @param ctMask Consequence type mask
+     * @return If the mask is imprecise
+     */
+    public boolean isImpreciseConsequenceTypeMask(short ctMask) {
+        return (ctMask & impreciseConsequenceTypeMask) != 0;
+    }
+
+    /**
+     * Mask of the biotype bin containing the given biotype.
+     *
+     * @param biotype Biotype
+     * @return Mask with one bit, or 0 if the biotype is not indexed
+     */
+    public byte getBiotypeMask(String biotype) {
+        if (biotype == null) {
+            return 0;
+        }
+        Integer bin = biotypeBins.get(biotype);
+        if (bin == null && otherBiotype != null && !biotype.contains("pseudogene")) {
+            bin = otherBiotype;
+        }
+        return bin == null ? 0 : (byte) (1 << bin);
+    }
+
+    /**
+     * Check if the mask contains any biotype bin with more than one biotype, or the bin for other biotypes.
+     * Filters using these bins may return false positives.
+     *
+     * @param btMask Biotype mask
+     * @return If the mask is imprecise
+     */
+    public boolean isImpreciseBiotypeMask(byte btMask) {
+        return (btMask & impreciseBiotypeMask) != 0;
+    }
+
+    /**
+     * Mask of the clinical bin containing the given clinical significance, or {@link #CLINICAL_SOMATIC}.
+     *
+     * @param clinical Clinical significance
+     * @return Mask with one bit, or 0 if the value is not indexed
+     */
+    public byte getClinicalMask(String clinical) {
+        Integer bin = clinical == null ? null : clinicalBins.get(clinical);
+        return bin == null ? 0 : (byte) (1 << bin);
+    }
+
+    /**
+     * Check if the mask contains any clinical bin with more than one value.
+     * Filters using these bins may return false positives.
+     *
+     * @param clinicalMask Clinical mask
+     * @return If the mask is imprecise
+     */
+    public boolean isImpreciseClinicalMask(byte clinicalMask) {
+        return (clinicalMask & impreciseClinicalMask) != 0;
+    }
+
+    /**
+     * Total number of bits used by the population frequency index of each variant.
+     *
+     * @return Sum of the bits of all the population ranges
+     */
+    @JsonIgnore
+    public int getPopulationFrequencyBits() {
+        int bits = 0;
+        for (PopulationFrequencyRange populationRange : populationRanges) {
+            bits += populationRange.getBits();
+        }
+        return bits;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public SampleIndexConfiguration setVersion(int version) {
+        this.version = version;
+        return this;
+    }
+
     public List<PopulationFrequencyRange> getPopulationRanges() {
         return populationRanges;
     }
@@ -30,6 +304,125 @@ public class SampleIndexConfiguration {
         return this;
     }
 
+    public List<List<String>> getConsequenceTypes() {
+        return consequenceTypes;
+    }
+
+    /**
+     * Set the consequence type bins. Each bin is a group of SO terms indexed with the same bit.
+     *
+     * @param consequenceTypes Consequence type bins
+     * @return this
+     */
+    public SampleIndexConfiguration setConsequenceTypes(List<List<String>> consequenceTypes) {
+        impreciseConsequenceTypeMask = (short) toBins("consequence type", consequenceTypes, MAX_CONSEQUENCE_TYPE_BINS,
+                consequenceTypeBins);
+        this.consequenceTypes = consequenceTypes;
+        return this;
+    }
+
+    public List<List<String>> getBiotypes() {
+        return biotypes;
+    }
+
+    /**
+     * Set the biotype bins. Each bin is a group of biotypes indexed with the same bit.
+     *
+     * @param biotypes Biotype bins
+     * @return this
+     */
+    public SampleIndexConfiguration setBiotypes(List<List<String>> biotypes) {
+        toBins("biotype", biotypes, MAX_BIOTYPE_BINS, biotypeBins);
+        this.biotypes = biotypes;
+        if (otherBiotype != null && otherBiotype >= biotypes.size()) {
+            otherBiotype = null;
+        }
+        updateImpreciseBiotypeMask();
+        return this;
+    }
+
+    /**
+     * Bin for any biotype not contained in any other bin, except pseudogenes. Null if not indexed.
+     *
+     * @return Position of the bin, or null
+     */
+    public Integer getOtherBiotype() {
+        return otherBiotype;
+    }
+
+    public SampleIndexConfiguration setOtherBiotype(Integer otherBiotype) {
+        if (otherBiotype != null && (otherBiotype < 0 || otherBiotype >= biotypes.size())) {
+            throw new IllegalArgumentException("Unknown biotype bin " + otherBiotype + ". Only " + biotypes.size() + " biotype bins");
+        }
+        this.otherBiotype = otherBiotype;
+        updateImpreciseBiotypeMask();
+        return this;
+    }
+
+    public List<List<String>> getClinicalSignificances() {
+        return clinicalSignificances;
+    }
+
+    /**
+     * Set the clinical bins. Each bin is a group of clinical significance values indexed with the same bit.
+     * Use {@link #CLINICAL_SOMATIC} to index the variants with somatic information.
+     *
+     * @param clinicalSignificances Clinical bins
+     * @return this
+     */
+    public SampleIndexConfiguration setClinicalSignificances(List<List<String>> clinicalSignificances) {
+        impreciseClinicalMask = (byte) toBins("clinical", clinicalSignificances, MAX_CLINICAL_BINS, clinicalBins);
+        this.clinicalSignificances = clinicalSignificances;
+        return this;
+    }
+
+    private void updateImpreciseBiotypeMask() {
+        impreciseBiotypeMask = 0;
+        for (int i = 0; i < biotypes.size(); i++) {
+            if (biotypes.get(i).size() > 1 || Objects.equals(otherBiotype, i)) {
+                impreciseBiotypeMask |= 1 << i;
+            }
+        }
+    }
+
+    /**
+     * Index the position of the bin of each value.
+     *
+     * @param name    Name of the bins
+     * @param bins    Bins
+     * @param maxBins Max number of bins
+     * @param binsMap Map from value to bin. Cleared before adding the new values
+     * @return Mask of the bins with more than one value
+     */
+    private static int toBins(String name, List<List<String>> bins, int maxBins, Map<String, Integer> binsMap) {
+        if (bins == null) {
+            throw new IllegalArgumentException("Missing " + name + " bins");
+        }
+        if (bins.size() > maxBins) {
+            throw new IllegalArgumentException("Too many " + name + " bins. Found " + bins.size() + ", max " + maxBins);
+        }
+        Map<String, Integer> newBins = new HashMap<>();
+        int impreciseMask = 0;
+        for (int i = 0; i < bins.size(); i++) {
+            List<String> bin = bins.get(i);
+            if (bin == null || bin.isEmpty()) {
+                throw new IllegalArgumentException("Empty " + name + " bin " + i);
+            }
+            for (String value : bin) {
+                Integer previous = newBins.put(value, i);
+                if (previous != null) {
+                    throw new IllegalArgumentException("Duplicated " + name + " '" + value + "' in bins " + previous + " and " + i);
+                }
+            }
+            if (bin.size() > 1) {
+                impreciseMask |= 1 << i;
+            }
+        }
+        binsMap.clear();
+        binsMap.putAll(newBins);
+        return impreciseMask;
+    }
+
     public SampleIndexConfiguration addPopulationRange(PopulationFrequencyRange populationRange) {
         if (populationRanges == null) {
             populationRanges = new ArrayList<>();
@@ -42,26 +435,59 @@ public class SampleIndexConfiguration {
         return this;
     }
 
+    /**
+     * Check if the other configuration produces the same index. The version is not compared.
+     *
+     * @param other Other configuration
+     * @return if both configurations produce the same index
+     */
+    public boolean sameLayout(SampleIndexConfiguration other) {
+        if (!consequenceTypes.equals(other.consequenceTypes)
+                || !biotypes.equals(other.biotypes)
+                || !Objects.equals(otherBiotype, other.otherBiotype)
+                || !clinicalSignificances.equals(other.clinicalSignificances)) {
+            return false;
+        }
+        if (populationRanges.size() != other.populationRanges.size()) {
+            return false;
+        }
+        for (int i = 0; i < populationRanges.size(); i++) {
+            if (!populationRanges.get(i).sameLayout(other.populationRanges.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     public static class PopulationFrequencyRange {
         public static final double[] DEFAULT_THRESHOLDS = new double[]{0.001, 0.005, 0.01};
         private String study;
         private String population;
-//        private float[] thresholds; // TODO: Make this configurable
+        private double[] thresholds;
+
+        public PopulationFrequencyRange() {
+            this.thresholds = DEFAULT_THRESHOLDS;
+        }
 
         public PopulationFrequencyRange(String studyPopulation) {
-            this.study = studyPopulation.split(":")[0];
-            this.population = studyPopulation.split(":")[1];
+            this(studyPopulation.split(":")[0], studyPopulation.split(":")[1]);
         }
 
         public PopulationFrequencyRange(String study, String population) {
+            this(study, population, DEFAULT_THRESHOLDS);
+        }
+
+        public PopulationFrequencyRange(String study, String population, double[] thresholds) {
             this.study = study;
             this.population = population;
+            setThresholds(thresholds);
         }
 
         public String getStudy() {
             return study;
         }
 
+        @JsonIgnore
         public String getStudyAndPopulation() {
             return study + ":" + population;
         }
@@ -81,7 +507,32 @@ public class SampleIndexConfiguration {
         }
 
         public double[] getThresholds() {
-            return DEFAULT_THRESHOLDS;
+            return thresholds;
+        }
+
+        public PopulationFrequencyRange setThresholds(double[] thresholds) {
+            if (thresholds == null || thresholds.length == 0) {
+                throw new IllegalArgumentException("Missing thresholds for population frequency range '" + study + ":" + population + "'");
+            }
+            for (int i = 1; i < thresholds.length; i++) {
+                if (thresholds[i - 1] >= thresholds[i]) {
+                    throw new IllegalArgumentException("Thresholds for population frequency range '" + study + ":" + population + "'"
+                            + " must be sorted in ascending order: " + Arrays.toString(thresholds));
+                }
+            }
+            this.thresholds = thresholds;
+            return this;
+        }
+
+        /**
+         * Number of bits used in the index by this population. Each value is codified with the index of its interval
+         * between thresholds, from 0 to {@code thresholds.length}.
+         *
+         * @return number of bits
+         */
+        @JsonIgnore
+        public int getBits() {
+            return Integer.SIZE - Integer.numberOfLeadingZeros(thresholds.length);
         }
 
         @Override
@@ -96,6 +547,16 @@ public class SampleIndexConfiguration {
             return Objects.equals(study, that.study) && Objects.equals(population, that.population);
         }
 
+        /**
+         * Check if the other range is the same population, with the same thresholds.
+         *
+         * @param other Other population range
+         * @return if both ranges produce the same index
+         */
+        public boolean sameLayout(PopulationFrequencyRange other) {
+            return equals(other) && Arrays.equals(thresholds, other.thresholds);
+        }
+
         @Override
         public int hashCode() {
             return Objects.hash(study, population);
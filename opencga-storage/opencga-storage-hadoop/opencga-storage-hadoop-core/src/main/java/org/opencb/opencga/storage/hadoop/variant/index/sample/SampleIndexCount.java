@@ -0,0 +1,206 @@
+package org.opencb.opencga.storage.hadoop.variant.index.sample;
+
+import org.opencb.commons.datastore.core.FacetField;
+import org.opencb.opencga.storage.hadoop.variant.index.annotation.AnnotationIndexEntry;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.opencb.cellbase.core.variant.annotation.VariantAnnotationUtils.*;
+
+/**
+ * Count of variants from the SampleIndex, with small histograms by chromosome, genotype and consequence type.
+ *
+ * Built directly from the encoded index, without decoding any variant. Consequence types are grouped as in the
+ * consequence type index, so some groups contain more than one term (e.g. "utr_variant"). Groups from a non default
+ * {@link SampleIndexConfiguration} are named after their terms, separated by commas.
+ *
+ * Counts can be serialized with {@link #toBytes()}, to be built in the RegionServers by the
+ * {@link SampleIndexEntryServerFilter} and merged in the client.
+ */
+public class SampleIndexCount {
+
+    public static final String INTERGENIC = "intergenic";
+    public static final String UNKNOWN = "unknown";
+
+    public static final String CHROMOSOME_FIELD = "chromosome";
+    public static final String GENOTYPE_FIELD = "genotype";
+    public static final String CONSEQUENCE_TYPE_FIELD = "consequenceType";
+
+    /**
+     * Name of each bit of the default consequence type index. See AnnotationIndexConverter.CT_*_MASK.
+     */
+    private static final String[] CT_NAMES = new String[]{
+            MISSENSE_VARIANT,
+            FRAMESHIFT_VARIANT,
+            INFRAME_DELETION,
+            INFRAME_INSERTION,
+            START_LOST,
+            STOP_GAINED,
+            STOP_LOST,
+            SPLICE_ACCEPTOR_VARIANT,
+            SPLICE_DONOR_VARIANT,
+            TRANSCRIPT_ABLATION,
+            TRANSCRIPT_AMPLIFICATION,
+            INITIATOR_CODON_VARIANT,
+            SPLICE_REGION_VARIANT,
+            INCOMPLETE_TERMINAL_CODON_VARIANT,
+            "utr_variant",
+            "mirna_tfbs_variant",
+    };
+
+    private final String[] ctNames;
+    private long count;
+    private final Map<String, Long> byChromosome = new TreeMap<>();
+    private final Map<String, Long> byGenotype = new TreeMap<>();
+    private final Map<String, Long> byConsequenceType = new TreeMap<>();
+
+    public SampleIndexCount() {
+        this(SampleIndexConfiguration.defaultConfiguration());
+    }
+
+    public SampleIndexCount(SampleIndexConfiguration configuration) {
+        if (configuration.getConsequenceTypes().equals(SampleIndexConfiguration.defaultConsequenceTypes())) {
+            ctNames = CT_NAMES;
+        } else {
+            ctNames = configuration.getConsequenceTypes().stream().map(bin -> String.join(",", bin)).toArray(String[]::new);
+        }
+        count = 0;
+    }
+
+    /**
+     * Add one variant.
+     *
+     * @param chromosome    Chromosome of the variant
+     * @param gt            Genotype of the variant
+     * @param annotation    Annotation index of the variant. Null if missing
+     */
+    public void add(String chromosome, String gt, AnnotationIndexEntry annotation) {
+        count++;
+        byChromosome.merge(chromosome, 1L, Long::sum);
+        byGenotype.merge(gt, 1L, Long::sum);
+        if (annotation == null || !annotation.hasSummaryIndex()) {
+            byConsequenceType.merge(UNKNOWN, 1L, Long::sum);
+        } else if (annotation.isIntergenic()) {
+            byConsequenceType.merge(INTERGENIC, 1L, Long::sum);
+        } else if (!annotation.hasCtIndex()) {
+            byConsequenceType.merge(UNKNOWN, 1L, Long::sum);
+        } else {
+            int ctIndex = Short.toUnsignedInt(annotation.getCtIndex());
+            for (int i = 0; i < ctNames.length; i++) {
+                if ((ctIndex & (1 << i)) != 0) {
+                    byConsequenceType.merge(ctNames[i], 1L, Long::sum);
+                }
+            }
+        }
+    }
+
+    /**
+     * Add all the counts from other SampleIndexCount.
+     *
+     * @param other Other SampleIndexCount
+     * @return this
+     */
+    public SampleIndexCount merge(SampleIndexCount other) {
+        count += other.count;
+        other.byChromosome.forEach((key, value) -> byChromosome.merge(key, value, Long::sum));
+        other.byGenotype.forEach((key, value) -> byGenotype.merge(key, value, Long::sum));
+        other.byConsequenceType.forEach((key, value) -> byConsequenceType.merge(key, value, Long::sum));
+        return this;
+    }
+
+    /**
+     * Serialize the counts. The consequence type names are not serialized, so the deserialized object can only be merged.
+     *
+     * @return Serialized counts
+     * @throws IOException on serialization error
+     */
+    public byte[] toBytes() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeLong(count);
+        writeMap(out, byChromosome);
+        writeMap(out, byGenotype);
+        writeMap(out, byConsequenceType);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    public static SampleIndexCount fromBytes(byte[] bytes) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        SampleIndexCount counts = new SampleIndexCount();
+        counts.count = in.readLong();
+        readMap(in, counts.byChromosome);
+        readMap(in, counts.byGenotype);
+        readMap(in, counts.byConsequenceType);
+        return counts;
+    }
+
+    private static void writeMap(DataOutputStream out, Map<String, Long> map) throws IOException {
+        out.writeInt(map.size());
+        for (Map.Entry<String, Long> entry : map.entrySet()) {
+            out.writeUTF(entry.getKey());
+            out.writeLong(entry.getValue());
+        }
+    }
+
+    private static void readMap(DataInputStream in, Map<String, Long> map) throws IOException {
+        int size = in.readInt();
+        for (int i = 0; i < size; i++) {
+            map.put(in.readUTF(), in.readLong());
+        }
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public Map<String, Long> getByChromosome() {
+        return byChromosome;
+    }
+
+    public Map<String, Long> getByGenotype() {
+        return byGenotype;
+    }
+
+    /**
+     * Variants by consequence type group. A variant may be counted in more than one consequence type.
+     *
+     * @return Counts by consequence type
+     */
+    public Map<String, Long> getByConsequenceType() {
+        return byConsequenceType;
+    }
+
+    /**
+     * Convert the histograms into facets, one for each group, as returned by the variant aggregation queries.
+     *
+     * @return FacetFields by chromosome, genotype and consequence type
+     */
+    public List<FacetField> toFacetFields() {
+        return Arrays.asList(
+                toFacetField(CHROMOSOME_FIELD, byChromosome),
+                toFacetField(GENOTYPE_FIELD, byGenotype),
+                toFacetField(CONSEQUENCE_TYPE_FIELD, byConsequenceType));
+    }
+
+    private FacetField toFacetField(String name, Map<String, Long> counts) {
+        List<FacetField.Bucket> buckets = new ArrayList<>(counts.size());
+        counts.forEach((key, value) -> buckets.add(new FacetField.Bucket(key, value, null)));
+        return new FacetField(name, count, buckets);
+    }
+
+    @Override
+    public String toString() {
+        return "SampleIndexCount{"
+                + "count=" + count
+                + ", byChromosome=" + byChromosome
+                + ", byGenotype=" + byGenotype
+                + ", byConsequenceType=" + byConsequenceType
+                + '}';
+    }
+}
@@ -2,10 +2,12 @@ package org.opencb.opencga.storage.hadoop.variant.index.sample;
 
 import com.google.common.collect.Iterators;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.tuple.Pair;
 import org.apache.hadoop.hbase.client.Get;
 import org.apache.hadoop.hbase.client.Result;
 import org.apache.hadoop.hbase.client.ResultScanner;
 import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.client.Table;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.hadoop.hbase.util.CollectionUtils;
 import org.opencb.biodata.models.core.Region;
@@ -13,6 +15,7 @@ import org.opencb.biodata.models.variant.Variant;
 import org.opencb.commons.datastore.core.Query;
 import org.opencb.commons.datastore.core.QueryOptions;
 import org.opencb.opencga.storage.core.metadata.VariantStorageMetadataManager;
+import org.opencb.opencga.storage.core.metadata.models.StudyMetadata;
 import org.opencb.opencga.storage.core.variant.VariantStorageOptions;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantIterable;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryException;
@@ -33,8 +36,12 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
+import static org.opencb.opencga.storage.hadoop.variant.HadoopVariantStorageOptions.SAMPLE_INDEX_SCAN_PREFETCH;
+import static org.opencb.opencga.storage.hadoop.variant.HadoopVariantStorageOptions.SAMPLE_INDEX_SCAN_SERVER_SIDE_FILTER;
+import static org.opencb.opencga.storage.hadoop.variant.HadoopVariantStorageOptions.SAMPLE_INDEX_SCAN_THREADS;
 import static org.opencb.opencga.storage.hadoop.variant.adaptors.phoenix.VariantSqlQueryParser.DEFAULT_LOADED_GENOTYPES;
 import static org.opencb.opencga.storage.hadoop.variant.index.IndexUtils.EMPTY_MASK;
 
@@ -43,7 +50,7 @@ import static org.opencb.opencga.storage.hadoop.variant.index.IndexUtils.EMPTY_M
  *
  * @author Jacobo Coll &lt;jacobo167@gmail.com&gt;
  */
-public class SampleIndexDBAdaptor implements VariantIterable {
+public class SampleIndexDBAdaptor implements VariantIterable, AutoCloseable {
 
     private final HBaseManager hBaseManager;
     private final HBaseVariantTableNameGenerator tableNameGenerator;
@@ -52,6 +59,10 @@ public class SampleIndexDBAdaptor implements VariantIterable {
     private static Logger logger = LoggerFactory.getLogger(SampleIndexDBAdaptor.class);
     private SampleIndexQueryParser parser;
     private final SampleIndexConfiguration configuration;
+    // Parsed configuration of each study, with the version stored in the StudyMetadata when it was parsed
+    private final Map<Integer, Pair<Integer, SampleIndexConfiguration>> studyConfigurations = new ConcurrentHashMap<>();
+    private final SampleIndexScanScheduler scanScheduler;
+    private final boolean serverSideFilter;
 
     public SampleIndexDBAdaptor(GenomeHelper helper, HBaseManager hBaseManager, HBaseVariantTableNameGenerator tableNameGenerator,
                                 VariantStorageMetadataManager metadataManager) {
@@ -59,9 +70,14 @@ public class SampleIndexDBAdaptor implements VariantIterable {
         this.tableNameGenerator = tableNameGenerator;
         this.metadataManager = metadataManager;
         family = GenomeHelper.COLUMN_FAMILY_BYTES;
-        // TODO: Read configuration from metadata manager
+        // Default configuration. Studies may override it. See getConfiguration(int)
         configuration = SampleIndexConfiguration.defaultConfiguration();
-        parser = new SampleIndexQueryParser(metadataManager, configuration);
+        parser = new SampleIndexQueryParser(metadataManager, configuration, this::getConfiguration);
+        scanScheduler = new SampleIndexScanScheduler(
+                hBaseManager.getConf().getInt(SAMPLE_INDEX_SCAN_THREADS.key(), SAMPLE_INDEX_SCAN_THREADS.defaultValue()),
+                hBaseManager.getConf().getInt(SAMPLE_INDEX_SCAN_PREFETCH.key(), SAMPLE_INDEX_SCAN_PREFETCH.defaultValue()));
+        serverSideFilter = hBaseManager.getConf().getBoolean(SAMPLE_INDEX_SCAN_SERVER_SIDE_FILTER.key(),
+                SAMPLE_INDEX_SCAN_SERVER_SIDE_FILTER.defaultValue());
     }
 
     @Override
@@ -95,6 +111,13 @@ public class SampleIndexDBAdaptor implements VariantIterable {
             }
         }
 
+        if (operation.equals(QueryOperation.AND)) {
+            VariantDBIterator iterator = entryIntersectIterator(query);
+            if (iterator != null) {
+                return applyLimitSkip(iterator, options);
+            }
+        }
+
         List<VariantDBIterator> iterators = new ArrayList<>(samples.size());
         List<VariantDBIterator> negatedIterators = new ArrayList<>(samples.size());
 
@@ -129,6 +152,61 @@ public class SampleIndexDBAdaptor implements VariantIterable {
         return applyLimitSkip(iterator, options);
     }
 
+    /**
+     * Intersect the sample indexes combining the entries of each batch before decoding the variants.
+     * Only the variants at positions present in all the samples are decoded.
+     *
+     * @param query SampleIndexQuery
+     * @return VariantDBIterator, or null if the query can not be intersected at entry level
+     */
+    private VariantDBIterator entryIntersectIterator(SampleIndexQuery query) {
+        List<SingleSampleIndexQuery> queries = new ArrayList<>();
+        List<SingleSampleIndexQuery> negatedQueries = new ArrayList<>();
+        for (Map.Entry<String, List<String>> entry : query.getSamplesMap().entrySet()) {
+            String sample = entry.getKey();
+            List<String> gts = entry.getValue();
+            if (query.isNegated(sample)) {
+                if (!gts.isEmpty()) {
+                    negatedQueries.add(query.forSample(sample, gts));
+                }
+            } else {
+                if (gts.isEmpty()) {
+                    return null;
+                }
+                SingleSampleIndexQuery sampleQuery = query.forSample(sample, gts);
+                if (sampleQuery.getMendelianError()) {
+                    // Mendelian error entries are not indexed by position
+                    return null;
+                }
+                queries.add(sampleQuery);
+            }
+        }
+        if (queries.size() < 2) {
+            return null;
+        }
+
+        String tableName = tableNameGenerator.getSampleIndexTableName(toStudyId(query.getStudy()));
+        VariantDBIterator iterator;
+        try {
+            iterator = hBaseManager.act(tableName, table -> {
+                return new IntersectSampleIndexVariantDBIterator(table, queries, this);
+            });
+        } catch (IOException e) {
+            throw VariantQueryException.internalException(e);
+        }
+        logger.info("Entry level intersection of " + queries.size() + " sample indexes plus " + negatedQueries.size()
+                + " negated indexes");
+        if (negatedQueries.isEmpty()) {
+            return iterator;
+        } else {
+            List<VariantDBIterator> negatedIterators = new ArrayList<>(negatedQueries.size());
+            for (SingleSampleIndexQuery negatedQuery : negatedQueries) {
+                negatedIterators.add(internalIterator(negatedQuery));
+            }
+            return new IntersectMultiVariantKeyIterator(Collections.singletonList(iterator), negatedIterators);
+        }
+    }
+
     protected VariantDBIterator applyLimitSkip(VariantDBIterator iterator, QueryOptions options) {
         int limit = options.getInt(QueryOptions.LIMIT, -1);
         int skip = options.getInt(QueryOptions.SKIP, -1);
@@ -167,7 +245,7 @@ public class SampleIndexDBAdaptor implements VariantIterable {
 
         return hBaseManager.act(tableName, table -> {
             Get get = new Get(SampleIndexSchema.toRowKey(sample, chromosome, position));
-            HBaseToSampleIndexConverter converter = new HBaseToSampleIndexConverter(configuration);
+            HBaseToSampleIndexConverter converter = new HBaseToSampleIndexConverter(getConfiguration(study));
             try {
                 Result result = table.get(get);
                 if (result != null) {
@@ -188,7 +266,7 @@ public class SampleIndexDBAdaptor implements VariantIterable {
 
             Scan scan = new Scan();
             scan.setRowPrefixFilter(SampleIndexSchema.toRowKey(sample));
-            HBaseToSampleIndexConverter converter = new HBaseToSampleIndexConverter(configuration);
+            HBaseToSampleIndexConverter converter = new HBaseToSampleIndexConverter(getConfiguration(study));
             try {
                 ResultScanner scanner = table.getScanner(scan);
                 Iterator<Result> resultIterator = scanner.iterator();
@@ -206,7 +284,7 @@ public class SampleIndexDBAdaptor implements VariantIterable {
 
             Scan scan = new Scan();
             scan.setRowPrefixFilter(SampleIndexSchema.toRowKey(sample));
-            HBaseToSampleIndexConverter converter = new HBaseToSampleIndexConverter(configuration);
+            HBaseToSampleIndexConverter converter = new HBaseToSampleIndexConverter(getConfiguration(study));
             try {
                 ResultScanner scanner = table.getScanner(scan);
                 Iterator<Result> resultIterator = scanner.iterator();
@@ -234,7 +312,33 @@ public class SampleIndexDBAdaptor implements VariantIterable {
         }
     }
 
+    /**
+     * Count the variants of one sample, grouped by chromosome, genotype and consequence type.
+     *
+     * Genotype, file and annotation filters are evaluated on the encoded index, and the groups are read from the annotation
+     * index, so the variants are not decoded unless the query filters by variant type or by a region not aligned to
+     * the SampleIndex batches.
+     * If the server side filter is enabled, the variants are filtered and counted in the RegionServers, and only the counts
+     * of each row are returned. Otherwise, the index is filtered and counted in the client.
+     *
+     * @param query Single sample query, without mendelian error filter
+     * @return      Counts by groups
+     */
+    public SampleIndexCount countByGroups(SampleIndexQuery query) {
+        if (query.getSamplesMap().size() != 1 || !query.getMendelianErrorSet().isEmpty()) {
+            throw new IllegalArgumentException("Count by groups is only supported for single sample queries without mendelian errors");
+        }
+        String sample = query.getSamplesMap().keySet().iterator().next();
+        SampleIndexCount counts = new SampleIndexCount(getCachedConfiguration(query.getStudy()));
+        count(query.forSample(sample), counts);
+        return counts;
+    }
+
     private long count(SingleSampleIndexQuery query) {
+        return count(query, null);
+    }
+
+    private long count(SingleSampleIndexQuery query, SampleIndexCount counts) {
         List<Region> regionsList;
         if (CollectionUtils.isEmpty(query.getRegions())) {
             // If no regions are defined, get a list of one null element to initialize the stream.
@@ -243,7 +347,9 @@ public class SampleIndexDBAdaptor implements VariantIterable {
             regionsList = VariantQueryUtils.mergeRegions(query.getRegions());
         }
 
-        String tableName = tableNameGenerator.getSampleIndexTableName(toStudyId(query.getStudy()));
+        int studyId = toStudyId(query.getStudy());
+        String tableName = tableNameGenerator.getSampleIndexTableName(studyId);
+        SampleIndexConfiguration studyConfiguration = getCachedConfiguration(query.getStudy());
 
         try {
             return hBaseManager.act(tableName, table -> {
@@ -252,12 +358,12 @@ public class SampleIndexDBAdaptor implements VariantIterable {
                     // Split region in countable regions
                     List<Region> subRegions = region == null ? Collections.singletonList((Region) null) : splitRegion(region);
                     for (Region subRegion : subRegions) {
-                        HBaseToSampleIndexConverter converter = new HBaseToSampleIndexConverter(configuration);
+                        HBaseToSampleIndexConverter converter = new HBaseToSampleIndexConverter(studyConfiguration);
                         boolean noRegionFilter = subRegion == null || startsAtBatch(subRegion) && endsAtBatch(subRegion);
                         // Don't need to parse the variant to filter
                         boolean simpleCount = CollectionUtils.isEmpty(query.getVariantTypes()) && noRegionFilter;
                         try {
-                            if (query.emptyOrRegionFilter() && simpleCount) {
+                            if (counts == null && query.emptyOrRegionFilter() && simpleCount) {
                                 // Directly sum counters
                                 Scan scan = parseCount(query, subRegion);
                                 ResultScanner scanner = table.getScanner(scan);
@@ -266,6 +372,9 @@ public class SampleIndexDBAdaptor implements VariantIterable {
                                     count += converter.convertToCount(result);
                                     result = scanner.next();
                                 }
+                            } else if (serverSideFilter && !query.getMendelianError()) {
+                                // Filter and count in the RegionServers. Only the counts of each row are returned
+                                count += serverSideCount(table, query, subRegion, simpleCount, studyConfiguration, counts);
                             } else {
                                 SampleIndexEntryFilter filter = buildSampleIndexEntryFilter(query, subRegion);
                                 Scan scan;
@@ -276,11 +385,18 @@ public class SampleIndexDBAdaptor implements VariantIterable {
                                     // Need to parse the variant to finish filtering. Create a normal scan query.
                                     scan = parse(query, subRegion);
                                 }
+                                if (counts != null) {
+                                    addGroupColumns(query, scan);
+                                }
                                 ResultScanner scanner = table.getScanner(scan);
                                 Result result = scanner.next();
                                 while (result != null) {
                                     SampleIndexEntry sampleIndexEntry = converter.convert(result);
-                                    count += filter.filterAndCount(sampleIndexEntry);
+                                    if (counts == null) {
+                                        count += filter.filterAndCount(sampleIndexEntry);
+                                    } else {
+                                        count += filter.filterAndCount(sampleIndexEntry, counts);
+                                    }
                                     result = scanner.next();
                                 }
                             }
@@ -296,6 +412,37 @@ public class SampleIndexDBAdaptor implements VariantIterable {
         }
     }
 
+    private long serverSideCount(Table table, SingleSampleIndexQuery query, Region region, boolean simpleCount,
+                                 SampleIndexConfiguration studyConfiguration, SampleIndexCount counts) throws IOException {
+        // Don't need the genotype column unless the variants have to be parsed to filter
+        Scan scan = parse(query, region, false, simpleCount);
+        SampleIndexEntryServerFilter.Mode mode;
+        if (counts == null) {
+            mode = SampleIndexEntryServerFilter.Mode.COUNT;
+        } else {
+            mode = SampleIndexEntryServerFilter.Mode.COUNT_BY_GROUPS;
+            addGroupColumns(query, scan);
+        }
+        SampleIndexEntryServerFilter filter = new SampleIndexEntryServerFilter(query, region, studyConfiguration, mode);
+        logger.debug("Filter = {}", filter);
+        scan.setFilter(filter);
+
+        long count = 0;
+        try (ResultScanner scanner = table.getScanner(scan)) {
+            for (Result result : scanner) {
+                byte[] value = result.getValue(family, SampleIndexEntryServerFilter.COUNT_COLUMN);
+                if (counts == null) {
+                    count += Bytes.toInt(value);
+                } else {
+                    SampleIndexCount rowCounts = SampleIndexCount.fromBytes(value);
+                    counts.merge(rowCounts);
+                    count += rowCounts.getCount();
+                }
+            }
+        }
+        return count;
+    }
+
     public SampleIndexQueryParser getSampleIndexQueryParser() {
         return parser;
     }
@@ -304,6 +451,66 @@ public class SampleIndexDBAdaptor implements VariantIterable {
         return configuration;
     }
 
+    /**
+     * Get the sample index configuration of a study. Uses the default configuration if the study does not define any.
+     * Reads the StudyMetadata, and only parses the configuration again if its version changed.
+     *
+     * @param studyId   Study id
+     * @return          SampleIndexConfiguration of the study
+     */
+    public SampleIndexConfiguration getConfiguration(int studyId) {
+        return getConfiguration(metadataManager.getStudyMetadata(studyId));
+    }
+
+    /**
+     * Get the sample index configuration stored in the given StudyMetadata, and refresh the cached configuration of the study.
+     *
+     * @param studyMetadata StudyMetadata
+     * @return              SampleIndexConfiguration of the study
+     */
+    public SampleIndexConfiguration getConfiguration(StudyMetadata studyMetadata) {
+        Integer storedVersion = SampleIndexConfiguration.getStoredVersion(studyMetadata);
+        Pair<Integer, SampleIndexConfiguration> cached = studyConfigurations.get(studyMetadata.getId());
+        if (cached != null && Objects.equals(cached.getKey(), storedVersion)) {
+            return cached.getValue();
+        }
+        SampleIndexConfiguration studyConfiguration = SampleIndexConfiguration.fromStudyMetadata(studyMetadata);
+        studyConfigurations.put(studyMetadata.getId(), Pair.of(storedVersion, studyConfiguration));
+        return studyConfiguration;
+    }
+
+    /**
+     * Get the sample index configuration of a study used by the last parsed query, without reading the StudyMetadata.
+     * Used to build each scan. The cached configuration is refreshed every time a query is parsed.
+     *
+     * @param study     Study
+     * @return          SampleIndexConfiguration of the study
+     */
+    public SampleIndexConfiguration getCachedConfiguration(String study) {
+        int studyId = toStudyId(study);
+        Pair<Integer, SampleIndexConfiguration> cached = studyConfigurations.get(studyId);
+        if (cached == null) {
+            return getConfiguration(studyId);
+        }
+        return cached.getValue();
+    }
+
+    public SampleIndexConfiguration getConfiguration(String study) {
+        return getConfiguration(toStudyId(study));
+    }
+
+    public SampleIndexScanScheduler getScanScheduler() {
+        return scanScheduler;
+    }
+
+    /**
+     * Release the threads used to scan the sample index.
+     */
+    @Override
+    public void close() {
+        scanScheduler.shutdown();
+    }
+
     protected int toStudyId(String study) {
         int studyId;
         if (StringUtils.isEmpty(study)) {
@@ -377,7 +584,29 @@ public class SampleIndexDBAdaptor implements VariantIterable {
     }
 
     public Scan parse(SingleSampleIndexQuery query, Region region) {
-        return parse(query, region, false, false);
+        Scan scan = parse(query, region, false, false);
+        if (serverSideFilter && useServerSideFilter(query, region)) {
+            SampleIndexEntryServerFilter filter = new SampleIndexEntryServerFilter(query, region, getCachedConfiguration(query.getStudy()));
+            logger.debug("Filter = {}", filter);
+            scan.setFilter(filter);
+        }
+        return scan;
+    }
+
+    /**
+     * Check if the query can be filtered in the RegionServer with a {@link SampleIndexEntryServerFilter}.
+     * Mendelian error queries are not supported, and queries without any filter would only return the same entries.
+     *
+     * @param query  SingleSampleIndexQuery
+     * @param region Region of the scan
+     * @return       if the server side filter should be used
+     */
+    protected static boolean useServerSideFilter(SingleSampleIndexQuery query, Region region) {
+        if (query.getMendelianError()) {
+            return false;
+        }
+        boolean emptyRegionFilter = region == null || startsAtBatch(region) && endsAtBatch(region);
+        return !(query.emptyOrRegionFilter() && emptyRegionFilter);
     }
 
     public Scan parseCount(SingleSampleIndexQuery query, Region region) {
@@ -388,6 +617,20 @@ public class SampleIndexDBAdaptor implements VariantIterable {
         return parse(query, region, false, true);
     }
 
+    /**
+     * Add the columns required to group the variants by consequence type.
+     * If the scan does not select any column, all columns are returned and nothing is added.
+     *
+     * @param query SingleSampleIndexQuery
+     * @param scan  Scan to modify
+     */
+    private void addGroupColumns(SingleSampleIndexQuery query, Scan scan) {
+        for (String gt : query.getGenotypes()) {
+            scan.addColumn(family, SampleIndexSchema.toAnnotationIndexColumn(gt));
+            scan.addColumn(family, SampleIndexSchema.toAnnotationConsequenceTypeIndexColumn(gt));
+        }
+    }
+
     private Scan parse(SingleSampleIndexQuery query, Region region, boolean onlyCount, boolean skipGtColumn) {
 
         Scan scan = new Scan();
@@ -33,6 +33,7 @@ public class SampleIndexEntryFilter {
     private Region regionFilter;
 
     private final List<Integer> annotationIndexPositions;
+    private final SampleIndexVariantBiConverter converter = new SampleIndexVariantBiConverter();
 
     private static final boolean[] DE_NOVO_MENDELIAN_ERROR_CODES = new boolean[]{
                    /* | Code  |   Dad  | Mother | Kid  |  deNovo | */
@@ -74,7 +75,23 @@ public class SampleIndexEntryFilter {
         if (query.getMendelianError()) {
             return filterMendelian(sampleIndexEntry.mendelianIterator());
         } else {
-            return filter(sampleIndexEntry, false);
+            return filter(sampleIndexEntry, false, null);
+        }
+    }
+
+    /**
+     * Filter the entry, decoding only the variants found at the given positions.
+     * Variants at any other position are skipped without being decoded.
+     *
+     * @param sampleIndexEntry SampleIndexEntry
+     * @param positions        Sorted positions relative to the batch start. If null, do not filter by position.
+     * @return                 Filtered variants
+     */
+    public Collection<Variant> filter(SampleIndexEntry sampleIndexEntry, int[] positions) {
+        if (query.getMendelianError()) {
+            return filterMendelian(sampleIndexEntry.mendelianIterator());
+        } else {
+            return filter(sampleIndexEntry, false, positions);
         }
     }
 
@@ -82,8 +99,41 @@ public class SampleIndexEntryFilter {
         if (query.getMendelianError()) {
             return filterMendelian(sampleIndexEntry.mendelianIterator()).size();
         } else {
-            return filter(sampleIndexEntry, true).size();
+            return filter(sampleIndexEntry, true, null).size();
+        }
+    }
+
+    /**
+     * Filter the entry and add the matching variants to the given counts, using the annotation index of each variant.
+     * Variants are not decoded unless required to filter by region or by variant type.
+     *
+     * @param sampleIndexEntry SampleIndexEntry
+     * @param counts           Counts to update
+     * @return                 Number of variants that passed the filter
+     */
+    public int filterAndCount(SampleIndexEntry sampleIndexEntry, SampleIndexCount counts) {
+        if (query.getMendelianError()) {
+            throw new IllegalArgumentException("Unable to count by groups a mendelian error query");
+        }
+        return filter(sampleIndexEntry, true, null, counts).size();
+    }
+
+    /**
+     * Filter the entry, keeping the variants of each genotype apart.
+     * Used to rebuild a compacted entry with only the matching variants. See {@link SampleIndexEntryServerFilter}.
+     *
+     * @param sampleIndexEntry SampleIndexEntry
+     * @return                 Filtered variants for each genotype of the entry, sorted
+     */
+    public Map<String, List<Variant>> filterByGenotype(SampleIndexEntry sampleIndexEntry) {
+        if (query.getMendelianError()) {
+            throw new IllegalArgumentException("Unable to filter by genotype a mendelian error query");
         }
+        Map<String, List<Variant>> variantsByGt = new LinkedHashMap<>();
+        for (SampleIndexGtEntry gtEntry : sampleIndexEntry.getGts().values()) {
+            variantsByGt.put(gtEntry.getGt(), filter(sampleIndexEntry, gtEntry, false, null, null));
+        }
+        return variantsByGt;
     }
 
     private Set<Variant> filterMendelian(MendelianErrorSampleIndexEntryIterator iterator) {
@@ -109,26 +159,20 @@ public class SampleIndexEntryFilter {
         return DE_NOVO_MENDELIAN_ERROR_CODES[mendelianErrorCode];
     }
 
-    private Collection<Variant> filter(SampleIndexEntry entry, boolean count) {
+    private Collection<Variant> filter(SampleIndexEntry entry, boolean count, int[] positions) {
+        return filter(entry, count, positions, null);
+    }
+
+    private Collection<Variant> filter(SampleIndexEntry entry, boolean count, int[] positions, SampleIndexCount counts) {
         Map<String, SampleIndexGtEntry> gts = entry.getGts();
         List<List<Variant>> variantsByGt = new ArrayList<>(gts.size());
         int numVariants = 0;
         // Use countIterator only if don't need to filter by region or by type
         boolean countIterator = count && regionFilter == null && CollectionUtils.isEmpty(query.getVariantTypes());
         for (SampleIndexGtEntry gtEntry : gts.values()) {
-
-            MutableInt expectedResultsFromAnnotation = new MutableInt(getExpectedResultsFromAnnotation(gtEntry));
-
-            SampleIndexEntryIterator variantIterator = gtEntry.iterator(countIterator);
-            ArrayList<Variant> variants = new ArrayList<>(variantIterator.getApproxSize());
+            List<Variant> variants = filter(entry, gtEntry, countIterator, positions, counts);
             variantsByGt.add(variants);
-            while (expectedResultsFromAnnotation.intValue() > 0 && variantIterator.hasNext()) {
-                Variant variant = filter(variantIterator, expectedResultsFromAnnotation);
-                if (variant != null) {
-                    variants.add(variant);
-                    numVariants++;
-                }
-            }
+            numVariants += variants.size();
         }
 
         if (variantsByGt.size() == 1) {
@@ -150,6 +194,31 @@ public class SampleIndexEntryFilter {
         return variants;
     }
 
+    private List<Variant> filter(SampleIndexEntry entry, SampleIndexGtEntry gtEntry, boolean countIterator, int[] positions,
+                                 SampleIndexCount counts) {
+        MutableInt expectedResultsFromAnnotation = new MutableInt(getExpectedResultsFromAnnotation(gtEntry));
+
+        SampleIndexEntryIterator variantIterator = gtEntry.iterator(countIterator);
+        int[] gtPositions = positions == null ? null : converter.toRelativePositions(entry, gtEntry.getGt());
+        ArrayList<Variant> variants = new ArrayList<>(variantIterator.getApproxSize());
+        while (expectedResultsFromAnnotation.intValue() > 0 && variantIterator.hasNext()) {
+            if (gtPositions != null && !SampleIndexEntryPositions.contains(positions, gtPositions[variantIterator.nextIndex()])) {
+                variantIterator.skip();
+                continue;
+            }
+            // Read the annotation before moving the iterator. The filter will reuse the same entry
+            AnnotationIndexEntry annotationIndexEntry = counts == null ? null : variantIterator.nextAnnotationIndexEntry();
+            Variant variant = filter(variantIterator, expectedResultsFromAnnotation);
+            if (variant != null) {
+                variants.add(variant);
+                if (counts != null) {
+                    counts.add(entry.getChromosome(), gtEntry.getGt(), annotationIndexEntry);
+                }
+            }
+        }
+        return variants;
+    }
+
     private int getExpectedResultsFromAnnotation(SampleIndexGtEntry gtEntry) {
         int expectedResultsFromAnnotation = Integer.MAX_VALUE;
         if (gtEntry.getAnnotationCounts() != null) {
@@ -273,10 +342,13 @@ public class SampleIndexEntryFilter {
             // unable to filter by this field
             return true;
         }
+        // Empty masks mean no filter. The index could still be present if it was read for other purposes (e.g. counts by groups)
         if (!annotationIndexEntry.hasBtIndex()
+                || query.getAnnotationIndexQuery().getBiotypeMask() == EMPTY_MASK
                 || testIndexAny(annotationIndexEntry.getBtIndex(), query.getAnnotationIndexQuery().getBiotypeMask())) {
 
             if (!annotationIndexEntry.hasCtIndex()
+                    || query.getAnnotationIndexQuery().getConsequenceTypeMask() == EMPTY_MASK
                     || testIndexAny(annotationIndexEntry.getCtIndex(), query.getAnnotationIndexQuery().getConsequenceTypeMask())) {
 
                 if (annotationIndexEntry.getCtBtCombination().getCtBtMatrix() == null
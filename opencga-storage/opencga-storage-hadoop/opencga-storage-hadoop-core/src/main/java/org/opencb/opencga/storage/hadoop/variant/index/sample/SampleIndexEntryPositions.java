@@ -0,0 +1,93 @@
+package org.opencb.opencga.storage.hadoop.variant.index.sample;
+
+import java.util.Arrays;
+
+/**
+ * Sets of positions from a {@link SampleIndexEntry}, represented as sorted arrays of distinct positions relative to the batch start.
+ *
+ * Used to combine the entries of multiple samples from the same batch before decoding any variant.
+ */
+public final class SampleIndexEntryPositions {
+
+    private static final int[] EMPTY = new int[0];
+
+    private SampleIndexEntryPositions() {
+    }
+
+    /**
+     * Get the positions of all the variants from all the genotypes of the entry.
+     *
+     * @param entry SampleIndexEntry
+     * @return      Sorted positions, or null if the positions can not be read without decoding the variants
+     */
+    public static int[] of(SampleIndexEntry entry) {
+        SampleIndexVariantBiConverter converter = new SampleIndexVariantBiConverter();
+        int[] positions = EMPTY;
+        for (String gt : entry.getGts().keySet()) {
+            int[] gtPositions = converter.toRelativePositions(entry, gt);
+            if (gtPositions == null) {
+                return null;
+            }
+            positions = union(positions, gtPositions);
+        }
+        return positions;
+    }
+
+    /**
+     * Union of two sorted arrays. Duplicated values are removed.
+     *
+     * @param a Sorted positions
+     * @param b Sorted positions
+     * @return  Sorted and distinct positions from any of the arrays
+     */
+    public static int[] union(int[] a, int[] b) {
+        int[] result = new int[a.length + b.length];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.length || j < b.length) {
+            int value;
+            if (j == b.length || i < a.length && a[i] <= b[j]) {
+                value = a[i++];
+            } else {
+                value = b[j++];
+            }
+            if (size == 0 || result[size - 1] != value) {
+                result[size++] = value;
+            }
+        }
+        return size == result.length ? result : Arrays.copyOf(result, size);
+    }
+
+    /**
+     * Intersection of two sorted arrays. Duplicated values are removed.
+     *
+     * @param a Sorted positions
+     * @param b Sorted positions
+     * @return  Sorted and distinct positions present in both arrays
+     */
+    public static int[] intersect(int[] a, int[] b) {
+        int[] result = new int[Math.min(a.length, b.length)];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                if (size == 0 || result[size - 1] != a[i]) {
+                    result[size++] = a[i];
+                }
+                i++;
+                j++;
+            }
+        }
+        return size == result.length ? result : Arrays.copyOf(result, size);
+    }
+
+    public static boolean contains(int[] positions, int position) {
+        return Arrays.binarySearch(positions, position) >= 0;
+    }
+}
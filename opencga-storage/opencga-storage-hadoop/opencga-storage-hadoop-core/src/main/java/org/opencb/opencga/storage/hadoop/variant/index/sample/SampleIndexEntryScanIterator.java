@@ -0,0 +1,94 @@
+package org.opencb.opencga.storage.hadoop.variant.index.sample;
+
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.util.CollectionUtils;
+import org.opencb.biodata.models.core.Region;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryUtils;
+import org.opencb.opencga.storage.hadoop.utils.HBaseScanProfiler;
+import org.opencb.opencga.storage.hadoop.variant.index.query.SingleSampleIndexQuery;
+
+import java.util.*;
+
+/**
+ * Iterate over the entries of the sample index of one sample, scanning one region at a time.
+ *
+ * Entries are returned in the same order as the regions, and within a region, in the order of the row keys.
+ * The entries are not filtered. Use {@link #getFilter()} to filter the last returned entry.
+ */
+public class SampleIndexEntryScanIterator implements Iterator<SampleIndexEntry>, AutoCloseable {
+
+    private final SingleSampleIndexQuery query;
+    private final SampleIndexDBAdaptor dbAdaptor;
+    private final List<Region> regions;
+    private final SampleIndexScanScheduler.RegionScanIterator regionScans;
+    private final HBaseToSampleIndexConverter converter;
+    private Iterator<Result> results = Collections.emptyIterator();
+    private int regionIndex = -1;
+    private SampleIndexEntryFilter filter;
+
+    public SampleIndexEntryScanIterator(Table table, SingleSampleIndexQuery query, SampleIndexDBAdaptor dbAdaptor,
+                                        HBaseScanProfiler profiler) {
+        this.query = query;
+        this.dbAdaptor = dbAdaptor;
+        if (CollectionUtils.isEmpty(query.getRegions())) {
+            // If no regions are defined, get a list of one null element to initialize the stream.
+            regions = Collections.singletonList(null);
+        } else {
+            regions = VariantQueryUtils.mergeRegions(query.getRegions());
+        }
+
+        // One scan per region
+        List<Scan> scans = new ArrayList<>(regions.size());
+        for (Region region : regions) {
+            Scan scan = dbAdaptor.parse(query, region);
+            if (profiler.isActive()) {
+                scan.setScanMetricsEnabled(true);
+            }
+            scans.add(scan);
+        }
+        regionScans = dbAdaptor.getScanScheduler().scan(table, scans, profiler);
+        converter = new HBaseToSampleIndexConverter(dbAdaptor.getCachedConfiguration(query.getStudy()));
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (!results.hasNext()) {
+            if (!regionScans.hasNext()) {
+                return false;
+            }
+            results = regionScans.next();
+            regionIndex++;
+            filter = dbAdaptor.buildSampleIndexEntryFilter(query, regions.get(regionIndex));
+        }
+        return true;
+    }
+
+    @Override
+    public SampleIndexEntry next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return converter.convert(results.next());
+    }
+
+    /**
+     * @return the filter for the region of the last returned entry
+     */
+    public SampleIndexEntryFilter getFilter() {
+        return filter;
+    }
+
+    /**
+     * @return the index of the region of the last returned entry
+     */
+    public int getRegionIndex() {
+        return regionIndex;
+    }
+
+    @Override
+    public void close() {
+        regionScans.close();
+    }
+}
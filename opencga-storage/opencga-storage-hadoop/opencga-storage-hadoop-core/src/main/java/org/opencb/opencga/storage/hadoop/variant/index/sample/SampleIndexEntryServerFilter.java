@@ -0,0 +1,357 @@
+package org.opencb.opencga.storage.hadoop.variant.index.sample;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.exceptions.DeserializationException;
+import org.apache.hadoop.hbase.filter.FilterBase;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.opencb.biodata.models.core.Region;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.biodata.models.variant.avro.VariantType;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryUtils.QueryOperation;
+import org.opencb.opencga.storage.hadoop.variant.index.query.RangeQuery;
+import org.opencb.opencga.storage.hadoop.variant.index.query.SampleAnnotationIndexQuery;
+import org.opencb.opencga.storage.hadoop.variant.index.query.SampleAnnotationIndexQuery.PopulationFrequencyQuery;
+import org.opencb.opencga.storage.hadoop.variant.index.query.SampleFileIndexQuery;
+import org.opencb.opencga.storage.hadoop.variant.index.query.SampleIndexQuery;
+import org.opencb.opencga.storage.hadoop.variant.index.query.SingleSampleIndexQuery;
+
+import java.io.*;
+import java.util.*;
+
+import static org.opencb.opencga.storage.hadoop.variant.index.sample.SampleIndexSchema.*;
+
+/**
+ * HBase filter to apply the {@link SampleIndexEntryFilter} in the RegionServer.
+ *
+ * Each row is decoded and filtered in the server, and replaced by a compacted row with only the genotype columns
+ * and the genotype count columns of the matching variants. Rows without any matching variant are not returned.
+ * The compacted rows can be read and filtered again with the same {@link SampleIndexEntryFilter} in the client.
+ *
+ * In {@link Mode#COUNT} and {@link Mode#COUNT_BY_GROUPS} modes, the variants are counted in the server, and each row
+ * is replaced by a single {@link #COUNT_COLUMN} cell with the number of matching variants, or the serialized
+ * {@link SampleIndexCount}, so only the counts are sent to the client.
+ *
+ * The opencga-storage-hadoop-core jar must be in the classpath of the RegionServers to use this filter.
+ * Mendelian error queries are not supported.
+ */
+public class SampleIndexEntryServerFilter extends FilterBase {
+
+    public static final byte[] COUNT_COLUMN = Bytes.toBytes(META_PREFIX + "COUNT");
+
+    public enum Mode {
+        /**
+         * Return the compacted rows with the matching variants.
+         */
+        FILTER,
+        /**
+         * Return the number of matching variants of each row, as an int.
+         */
+        COUNT,
+        /**
+         * Return the serialized {@link SampleIndexCount} of each row.
+         */
+        COUNT_BY_GROUPS
+    }
+
+    private final SingleSampleIndexQuery query;
+    private final Region region;
+    private final SampleIndexConfiguration configuration;
+    private final Mode mode;
+
+    private SampleIndexEntryFilter filter;
+    private HBaseToSampleIndexConverter converter;
+    private SampleIndexVariantBiConverter variantConverter;
+    private boolean filterRow = false;
+
+    public SampleIndexEntryServerFilter(SingleSampleIndexQuery query, Region region, SampleIndexConfiguration configuration) {
+        this(query, region, configuration, Mode.FILTER);
+    }
+
+    public SampleIndexEntryServerFilter(SingleSampleIndexQuery query, Region region, SampleIndexConfiguration configuration,
+                                        Mode mode) {
+        if (query.getMendelianError()) {
+            throw new IllegalArgumentException("Unable to filter in the server a mendelian error query");
+        }
+        this.query = query;
+        this.region = region;
+        this.configuration = configuration;
+        this.mode = mode;
+    }
+
+    @Override
+    public ReturnCode filterKeyValue(Cell cell) {
+        return ReturnCode.INCLUDE;
+    }
+
+    @Override
+    public boolean hasFilterRow() {
+        return true;
+    }
+
+    @Override
+    public void filterRowCells(List<Cell> cells) throws IOException {
+        if (cells.isEmpty()) {
+            return;
+        }
+        if (filter == null) {
+            filter = new SampleIndexEntryFilter(query, region);
+            converter = new HBaseToSampleIndexConverter(configuration);
+            variantConverter = new SampleIndexVariantBiConverter();
+        }
+        SampleIndexEntry entry = converter.convert(Result.create(cells));
+        if (mode != Mode.FILTER) {
+            countRowCells(cells, entry);
+            return;
+        }
+        Map<String, List<Variant>> variantsByGt = filter.filterByGenotype(entry);
+
+        List<Cell> compacted = new ArrayList<>(variantsByGt.size() * 2);
+        for (Cell cell : cells) {
+            if (HBaseToSampleIndexConverter.columnStartsWith(cell, META_PREFIX_BYTES)) {
+                continue;
+            }
+            String gt = Bytes.toString(cell.getQualifierArray(), cell.getQualifierOffset(), cell.getQualifierLength());
+            List<Variant> variants = variantsByGt.get(gt);
+            if (variants == null || variants.isEmpty()) {
+                continue;
+            }
+            byte[] row = CellUtil.cloneRow(cell);
+            byte[] family = CellUtil.cloneFamily(cell);
+            compacted.add(new KeyValue(row, family, toGenotypeColumn(gt), cell.getTimestamp(),
+                    variantConverter.toBytes(variants)));
+            compacted.add(new KeyValue(row, family, toGenotypeCountColumn(gt), cell.getTimestamp(),
+                    Bytes.toBytes(variants.size())));
+        }
+        compacted.sort(KeyValue.COMPARATOR);
+
+        cells.clear();
+        cells.addAll(compacted);
+        filterRow = cells.isEmpty();
+    }
+
+    private void countRowCells(List<Cell> cells, SampleIndexEntry entry) throws IOException {
+        Cell first = cells.get(0);
+        int count;
+        byte[] value;
+        if (mode == Mode.COUNT_BY_GROUPS) {
+            SampleIndexCount counts = new SampleIndexCount(configuration);
+            count = filter.filterAndCount(entry, counts);
+            value = counts.toBytes();
+        } else {
+            count = filter.filterAndCount(entry);
+            value = Bytes.toBytes(count);
+        }
+        KeyValue countCell = new KeyValue(CellUtil.cloneRow(first), CellUtil.cloneFamily(first), COUNT_COLUMN,
+                first.getTimestamp(), value);
+        cells.clear();
+        if (count > 0) {
+            cells.add(countCell);
+        }
+        filterRow = cells.isEmpty();
+    }
+
+    @Override
+    public boolean filterRow() {
+        return filterRow;
+    }
+
+    @Override
+    public void reset() {
+        filterRow = false;
+    }
+
+    @Override
+    public byte[] toByteArray() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        out.writeUTF(query.getStudy());
+        out.writeUTF(query.getSample());
+        writeStrings(out, query.getGenotypes());
+        out.writeBoolean(region != null);
+        if (region != null) {
+            out.writeUTF(region.getChromosome());
+            out.writeInt(region.getStart());
+            out.writeInt(region.getEnd());
+        }
+        List<String> variantTypes = null;
+        if (query.getVariantTypes() != null) {
+            variantTypes = new ArrayList<>(query.getVariantTypes().size());
+            for (VariantType variantType : query.getVariantTypes()) {
+                variantTypes.add(variantType.name());
+            }
+        }
+        writeStrings(out, variantTypes);
+
+        SampleAnnotationIndexQuery annotationQuery = query.getAnnotationIndexQuery();
+        out.writeByte(annotationQuery.getAnnotationIndexMask());
+        out.writeByte(annotationQuery.getAnnotationIndex());
+        out.writeShort(annotationQuery.getConsequenceTypeMask());
+        out.writeByte(annotationQuery.getBiotypeMask());
+        out.writeByte(annotationQuery.getClinicalMask());
+        QueryOperation popFreqOperator = annotationQuery.getPopulationFrequencyQueryOperator();
+        out.writeUTF(popFreqOperator == null ? "" : popFreqOperator.name());
+        out.writeBoolean(annotationQuery.isPopulationFrequencyQueryPartial());
+        out.writeInt(annotationQuery.getPopulationFrequencyQueries().size());
+        for (PopulationFrequencyQuery popFreqQuery : annotationQuery.getPopulationFrequencyQueries()) {
+            out.writeInt(popFreqQuery.getPosition());
+            out.writeUTF(popFreqQuery.getStudy());
+            out.writeUTF(popFreqQuery.getPopulation());
+            out.writeDouble(popFreqQuery.getMinValueInclusive());
+            out.writeDouble(popFreqQuery.getMaxValueExclusive());
+            out.writeByte(popFreqQuery.getMinCodeInclusive());
+            out.writeByte(popFreqQuery.getMaxCodeExclusive());
+            out.writeBoolean(popFreqQuery.isExactQuery());
+        }
+
+        out.writeByte(query.getFileIndexMask());
+        writeBooleans(out, query.getSampleFileIndexQuery().getValidFileIndex());
+        writeBooleans(out, query.hasFatherFilter() ? query.getFatherFilter() : null);
+        writeBooleans(out, query.hasMotherFilter() ? query.getMotherFilter() : null);
+        out.writeBoolean(query.isOnlyDeNovo());
+
+        out.writeUTF(configuration.toJson());
+        out.writeUTF(mode.name());
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    public static SampleIndexEntryServerFilter parseFrom(byte[] pbBytes) throws DeserializationException {
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(pbBytes));
+
+            String study = in.readUTF();
+            String sample = in.readUTF();
+            List<String> gts = readStrings(in);
+            Region region = null;
+            if (in.readBoolean()) {
+                region = new Region(in.readUTF(), in.readInt(), in.readInt());
+            }
+            Set<VariantType> variantTypes = null;
+            List<String> variantTypesStr = readStrings(in);
+            if (variantTypesStr != null) {
+                variantTypes = new HashSet<>(variantTypesStr.size());
+                for (String variantType : variantTypesStr) {
+                    variantTypes.add(VariantType.valueOf(variantType));
+                }
+            }
+
+            byte[] annotationIndexMask = new byte[]{in.readByte(), in.readByte()};
+            short consequenceTypeMask = in.readShort();
+            byte biotypeMask = in.readByte();
+            byte clinicalMask = in.readByte();
+            String popFreqOperatorStr = in.readUTF();
+            QueryOperation popFreqOperator = popFreqOperatorStr.isEmpty() ? null : QueryOperation.valueOf(popFreqOperatorStr);
+            boolean popFreqPartial = in.readBoolean();
+            int numPopFreqQueries = in.readInt();
+            List<PopulationFrequencyQuery> popFreqQueries = new ArrayList<>(numPopFreqQueries);
+            for (int i = 0; i < numPopFreqQueries; i++) {
+                int position = in.readInt();
+                String popFreqStudy = in.readUTF();
+                String population = in.readUTF();
+                RangeQuery rangeQuery = new RangeQuery(in.readDouble(), in.readDouble(), in.readByte(), in.readByte(), in.readBoolean());
+                popFreqQueries.add(new PopulationFrequencyQuery(rangeQuery, position, popFreqStudy, population));
+            }
+            SampleAnnotationIndexQuery annotationQuery = new SampleAnnotationIndexQuery(annotationIndexMask, consequenceTypeMask,
+                    biotypeMask, clinicalMask, popFreqOperator, popFreqQueries, popFreqPartial);
+
+            byte fileIndexMask = in.readByte();
+            boolean[] validFileIndex = readBooleans(in);
+            boolean[] fatherFilter = readBooleans(in);
+            boolean[] motherFilter = readBooleans(in);
+            boolean onlyDeNovo = in.readBoolean();
+
+            SampleIndexConfiguration configuration = SampleIndexConfiguration.fromJson(in.readUTF());
+            Mode mode = Mode.valueOf(in.readUTF());
+
+            SampleIndexQuery query = new SampleIndexQuery(
+                    region == null ? null : Collections.singletonList(region),
+                    variantTypes,
+                    study,
+                    Collections.singletonMap(sample, gts),
+                    Collections.emptySet(),
+                    fatherFilter == null ? Collections.emptyMap() : Collections.singletonMap(sample, fatherFilter),
+                    motherFilter == null ? Collections.emptyMap() : Collections.singletonMap(sample, motherFilter),
+                    Collections.singletonMap(sample, new SampleFileIndexQuery(sample, fileIndexMask, null, null, validFileIndex)),
+                    annotationQuery,
+                    Collections.emptySet(),
+                    onlyDeNovo,
+                    null);
+            return new SampleIndexEntryServerFilter(query.forSample(sample), region, configuration, mode);
+        } catch (IOException | RuntimeException e) {
+            throw new DeserializationException(e);
+        }
+    }
+
+    public SingleSampleIndexQuery getQuery() {
+        return query;
+    }
+
+    public Region getRegion() {
+        return region;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    private static void writeStrings(DataOutputStream out, List<String> values) throws IOException {
+        if (values == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(values.size());
+            for (String value : values) {
+                out.writeUTF(value);
+            }
+        }
+    }
+
+    private static List<String> readStrings(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        if (size < 0) {
+            return null;
+        }
+        List<String> values = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            values.add(in.readUTF());
+        }
+        return values;
+    }
+
+    private static void writeBooleans(DataOutputStream out, boolean[] values) throws IOException {
+        if (values == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(values.length);
+            for (boolean value : values) {
+                out.writeBoolean(value);
+            }
+        }
+    }
+
+    private static boolean[] readBooleans(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        if (size < 0) {
+            return null;
+        }
+        boolean[] values = new boolean[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = in.readBoolean();
+        }
+        return values;
+    }
+
+    @Override
+    public String toString() {
+        return "SampleIndexEntryServerFilter{"
+                + "study='" + query.getStudy() + '\''
+                + ", sample='" + query.getSample() + '\''
+                + ", gts=" + query.getGenotypes()
+                + ", region=" + region
+                + ", mode=" + mode
+                + '}';
+    }
+}
@@ -47,14 +47,28 @@ public class SampleIndexQueryParser {
     private static Logger logger = LoggerFactory.getLogger(SampleIndexQueryParser.class);
     private final SampleIndexConfiguration configuration;
     private final VariantStorageMetadataManager metadataManager;
+    private final Function<StudyMetadata, SampleIndexConfiguration> studyConfigurationReader;
 
     public SampleIndexQueryParser(VariantStorageMetadataManager metadataManager) {
         this(metadataManager, SampleIndexConfiguration.defaultConfiguration());
     }
 
     public SampleIndexQueryParser(VariantStorageMetadataManager metadataManager, SampleIndexConfiguration configuration) {
+        this(metadataManager, configuration, SampleIndexConfiguration::fromStudyMetadata);
+    }
+
+    /**
+     * Create a SampleIndexQueryParser.
+     *
+     * @param metadataManager           Metadata manager
+     * @param configuration             Configuration used for studies without a stored configuration
+     * @param studyConfigurationReader  Read the configuration stored in a study. Allows to cache the parsed configurations
+     */
+    public SampleIndexQueryParser(VariantStorageMetadataManager metadataManager, SampleIndexConfiguration configuration,
+                                  Function<StudyMetadata, SampleIndexConfiguration> studyConfigurationReader) {
         this.configuration = configuration;
         this.metadataManager = metadataManager;
+        this.studyConfigurationReader = studyConfigurationReader;
     }
 
     /**
@@ -366,22 +380,33 @@ public class SampleIndexQueryParser {
             fileIndexMap.put(sample1, fileIndexQuery);
         }
 
+        SampleIndexConfiguration studyConfiguration = defaultStudy.getAttributes().containsKey(
+                SampleIndexConfiguration.STUDY_METADATA_ATTRIBUTE)
+                ? studyConfigurationReader.apply(defaultStudy)
+                : configuration;
         boolean allSamplesAnnotated = true;
-        if (negatedGenotypesSamples.isEmpty()) {
-            for (String sample : samplesMap.keySet()) {
-                Integer sampleId = metadataManager.getSampleId(studyId, sample);
-                SampleMetadata sampleMetadata = metadataManager.getSampleMetadata(studyId, sampleId);
-                if (!sampleMetadata.getStatus(SampleIndexAnnotationLoader.SAMPLE_INDEX_STATUS).equals(TaskMetadata.Status.READY)) {
-                    allSamplesAnnotated = false;
-                    break;
-                }
+        boolean allSamplesUpToDate = true;
+        for (String sample : samplesMap.keySet()) {
+            Integer sampleId = metadataManager.getSampleId(studyId, sample);
+            SampleMetadata sampleMetadata = metadataManager.getSampleMetadata(studyId, sampleId);
+            if (!sampleMetadata.getStatus(SampleIndexAnnotationLoader.SAMPLE_INDEX_STATUS).equals(TaskMetadata.Status.READY)) {
+                allSamplesAnnotated = false;
+            } else if (!studyConfiguration.isAnnotationUpToDate(sampleMetadata)) {
+                // Annotation index built with an older configuration. Can not be read with the current one
+                allSamplesUpToDate = false;
             }
-        } else {
+        }
+        if (!negatedGenotypesSamples.isEmpty()) {
             allSamplesAnnotated = false;
         }
 
-        boolean completeIndex = allSamplesAnnotated && !partialIndex;
-        SampleAnnotationIndexQuery annotationIndexQuery = parseAnnotationIndexQuery(query, completeIndex);
+        SampleAnnotationIndexQuery annotationIndexQuery;
+        if (allSamplesUpToDate) {
+            boolean completeIndex = allSamplesAnnotated && !partialIndex;
+            annotationIndexQuery = parseAnnotationIndexQuery(query, completeIndex, studyConfiguration);
+        } else {
+            annotationIndexQuery = new SampleAnnotationIndexQuery();
+        }
         Set<VariantType> variantTypes = null;
         if (isValidParam(query, TYPE)) {
             List<String> typesStr = query.getAsStringList(VariantQueryParam.TYPE.key());
@@ -672,6 +697,19 @@ public class SampleIndexQueryParser {
      * @return SampleAnnotationIndexQuery
      */
     protected SampleAnnotationIndexQuery parseAnnotationIndexQuery(Query query, boolean completeIndex) {
+        return parseAnnotationIndexQuery(query, completeIndex, configuration);
+    }
+
+    /**
+     * Builds the SampleAnnotationIndexQuery given a VariantQuery, using the given sample index configuration.
+     *
+     * @param query Input VariantQuery. If the index is complete, covered filters could be removed from here.
+     * @param completeIndex Indicates if the index is complete for the samples in the query.
+     * @param configuration Sample index configuration used to build the annotation index.
+     * @return SampleAnnotationIndexQuery
+     */
+    protected SampleAnnotationIndexQuery parseAnnotationIndexQuery(Query query, boolean completeIndex,
+                                                                   SampleIndexConfiguration configuration) {
         byte annotationIndex = 0;
         byte biotypeMask = 0;
         short consequenceTypeMask = 0;
@@ -754,7 +792,7 @@ public class SampleIndexQueryParser {
             if (useCtIndexFilter) {
                 ctCovered = completeIndex;
                 for (String soName : soNames) {
-                    short mask = getMaskFromSoName(soName);
+                    short mask = configuration.getConsequenceTypeMask(soName);
                     if (mask == IndexUtils.EMPTY_MASK) {
                         // If any element is not in the index, do not use this filter
                         consequenceTypeMask = IndexUtils.EMPTY_MASK;
@@ -763,7 +801,7 @@ public class SampleIndexQueryParser {
                     }
                     consequenceTypeMask |= mask;
                     // Some CT filter values are not precise, so the query is not covered.
-                    ctCovered &= !isImpreciseCtMask(mask);
+                    ctCovered &= !configuration.isImpreciseConsequenceTypeMask(mask);
                 }
                 // ConsequenceType filter is covered by index
                 if (ctCovered) {
@@ -795,7 +833,7 @@ public class SampleIndexQueryParser {
             if (useBtIndexFilter) {
                 btCovered = completeIndex;
                 for (String biotype : biotypes) {
-                    byte mask = getMaskFromBiotype(biotype);
+                    byte mask = configuration.getBiotypeMask(biotype);
                     if (mask == IndexUtils.EMPTY_MASK) {
                         // If any element is not in the index, do not use this filter
                         biotypeMask = IndexUtils.EMPTY_MASK;
@@ -804,7 +842,7 @@ public class SampleIndexQueryParser {
                     }
                     biotypeMask |= mask;
                     // Some CT filter values are not precise, so the query is not covered.
-                    btCovered &= !isImpreciseBtMask(mask);
+                    btCovered &= !configuration.isImpreciseBiotypeMask(mask);
                 }
                 // Biotype filter is covered by index
                 if (btCovered) {
@@ -831,28 +869,20 @@ public class SampleIndexQueryParser {
         if (isValidParam(query, ANNOT_CLINICAL_SIGNIFICANCE)) {
             annotationIndex |= CLINICAL_MASK;
             boolean clinicalCovered = true;
+            boolean clinicalPrecise = true;
             for (String clinical : query.getAsStringList(ANNOT_CLINICAL_SIGNIFICANCE.key())) {
-                switch (ClinicalSignificance.valueOf(clinical)) {
-                    case likely_benign:
-                        clinicalMask |= CLINICAL_LIKELY_BENIGN_MASK;
-                        break;
-                    case VUS:
-                        clinicalMask |= CLINICAL_VUS_MASK;
-                        break;
-                    case likely_pathogenic:
-                        clinicalMask |= CLINICAL_LIKELY_PATHOGENIC_MASK;
-                        break;
-                    case pathogenic:
-                        clinicalMask |= CLINICAL_PATHOGENIC_MASK;
-                        break;
-                    case uncertain_significance:
-                    case benign:
-                    default:
-                        clinicalCovered = false;
-                        break;
+                // Fail on unknown values
+                ClinicalSignificance.valueOf(clinical);
+                byte mask = configuration.getClinicalMask(clinical);
+                if (mask == IndexUtils.EMPTY_MASK) {
+                    clinicalCovered = false;
+                    break;
                 }
+                clinicalMask |= mask;
+                // Some clinical filter values are not precise, so the query is not covered.
+                clinicalPrecise &= !configuration.isImpreciseClinicalMask(mask);
             }
-            if (completeIndex && clinicalCovered) {
+            if (completeIndex && clinicalCovered && clinicalPrecise) {
                 query.remove(ANNOT_CLINICAL_SIGNIFICANCE.key());
             }
             if (!clinicalCovered) {
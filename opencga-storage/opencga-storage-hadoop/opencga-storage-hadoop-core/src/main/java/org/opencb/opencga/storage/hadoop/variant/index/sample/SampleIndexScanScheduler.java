@@ -0,0 +1,236 @@
+package org.opencb.opencga.storage.hadoop.variant.index.sample;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.client.Table;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryException;
+import org.opencb.opencga.storage.hadoop.utils.HBaseScanProfiler;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Schedule the scans over the sample index table.
+ *
+ * Scans from all the iterators share a bounded thread pool. Each iterator opens the scanners of the next regions
+ * in advance, and fetches the next batch of rows of each region while the current batch is being decoded.
+ * Regions and rows are returned in the same order as the given scans, so the results can be merged in order.
+ */
+public class SampleIndexScanScheduler {
+
+    private static final Result[] EMPTY = new Result[0];
+    private static final int DEFAULT_BATCH_SIZE = 100;
+
+    private final ExecutorService executor;
+    private final int prefetch;
+
+    /**
+     * Create a scan scheduler.
+     *
+     * @param threads  Max number of concurrent scan requests. If less than 2, scans are executed sequentially in the caller thread.
+     * @param prefetch Number of regions opened in advance by each iterator
+     */
+    public SampleIndexScanScheduler(int threads, int prefetch) {
+        if (threads > 1) {
+            ThreadPoolExecutor threadPool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                    new BasicThreadFactory.Builder()
+                            .namingPattern("sample-index-scan-%s")
+                            .daemon(true)
+                            .build());
+            threadPool.allowCoreThreadTimeOut(true);
+            this.executor = threadPool;
+            this.prefetch = Math.max(1, prefetch);
+        } else {
+            this.executor = null;
+            this.prefetch = 1;
+        }
+    }
+
+    public boolean isParallel() {
+        return executor != null;
+    }
+
+    /**
+     * Scan a list of regions. Each element of the returned iterator iterates over the rows of one region.
+     *
+     * @param table    Sample index table
+     * @param scans    Scans to execute, one per region
+     * @param profiler Profiler to register the scanners
+     * @return Iterator over the rows of each region
+     */
+    public RegionScanIterator scan(Table table, List<Scan> scans, HBaseScanProfiler profiler) {
+        return new RegionScanIterator(table, scans, profiler);
+    }
+
+    /**
+     * Stop all the running scans and release the threads.
+     */
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    public final class RegionScanIterator implements Iterator<Iterator<Result>>, AutoCloseable {
+        private final Table table;
+        private final HBaseScanProfiler profiler;
+        private final List<RegionScan> regions;
+        private int next = 0;
+        private int started = 0;
+
+        private RegionScanIterator(Table table, List<Scan> scans, HBaseScanProfiler profiler) {
+            this.table = table;
+            this.profiler = profiler;
+            regions = new ArrayList<>(scans.size());
+            for (Scan scan : scans) {
+                regions.add(new RegionScan(scan));
+            }
+            startRegions();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < regions.size();
+        }
+
+        @Override
+        public Iterator<Result> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            RegionScan region = regions.get(next++);
+            startRegions();
+            return region;
+        }
+
+        private void startRegions() {
+            while (started < regions.size() && started < next + prefetch) {
+                regions.get(started++).fetchNext();
+            }
+        }
+
+        @Override
+        public void close() {
+            for (int i = 0; i < started; i++) {
+                regions.get(i).close();
+            }
+        }
+
+        private final class RegionScan implements Iterator<Result> {
+            private final Scan scan;
+            private final int batchSize;
+            private ResultScanner scanner;
+            private Future<Result[]> nextBatch;
+            private Result[] batch = EMPTY;
+            private int batchPosition = 0;
+            private boolean exhausted = false;
+            private boolean closed = false;
+            private boolean scanning = false;
+
+            private RegionScan(Scan scan) {
+                this.scan = scan;
+                batchSize = scan.getCaching() > 0 ? scan.getCaching() : DEFAULT_BATCH_SIZE;
+            }
+
+            /**
+             * Fetch the next batch of rows. The scanner is opened with the first batch.
+             * Only one batch is requested at a time, and the scanner is only closed while not in use,
+             * so the scanner is never used concurrently.
+             */
+            private void fetchNext() {
+                Callable<Result[]> task = () -> {
+                    synchronized (this) {
+                        if (closed) {
+                            return EMPTY;
+                        }
+                        if (scanner == null) {
+                            scanner = profiler.add(table.getScanner(scan));
+                        }
+                        scanning = true;
+                    }
+                    try {
+                        return scanner.next(batchSize);
+                    } finally {
+                        synchronized (this) {
+                            scanning = false;
+                            if (closed) {
+                                // Closed while scanning
+                                scanner.close();
+                            }
+                        }
+                    }
+                };
+                if (executor == null) {
+                    try {
+                        nextBatch = CompletableFuture.completedFuture(task.call());
+                    } catch (Exception e) {
+                        throw VariantQueryException.internalException(e);
+                    }
+                } else {
+                    nextBatch = executor.submit(task);
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                while (batchPosition >= batch.length) {
+                    if (exhausted) {
+                        return false;
+                    }
+                    batch = getNextBatch();
+                    batchPosition = 0;
+                    if (batch.length < batchSize) {
+                        // Last batch from this region
+                        exhausted = true;
+                        close();
+                    } else {
+                        fetchNext();
+                    }
+                }
+                return true;
+            }
+
+            @Override
+            public Result next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return batch[batchPosition++];
+            }
+
+            private Result[] getNextBatch() {
+                try {
+                    Result[] results = nextBatch.get();
+                    return results == null ? EMPTY : results;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw VariantQueryException.internalException(e);
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof IOException) {
+                        throw VariantQueryException.internalException((IOException) e.getCause());
+                    } else if (e.getCause() instanceof RuntimeException) {
+                        throw (RuntimeException) e.getCause();
+                    }
+                    throw VariantQueryException.internalException(e);
+                }
+            }
+
+            private synchronized void close() {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                if (nextBatch != null && !nextBatch.isDone()) {
+                    nextBatch.cancel(false);
+                }
+                // If scanning, the scanner is closed by the scan task
+                if (scanner != null && !scanning) {
+                    scanner.close();
+                }
+            }
+        }
+    }
+}
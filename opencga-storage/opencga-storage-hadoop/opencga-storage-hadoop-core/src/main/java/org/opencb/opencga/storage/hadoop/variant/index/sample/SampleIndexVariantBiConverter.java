@@ -8,7 +8,6 @@ import org.apache.phoenix.schema.types.PVarchar;
 import org.opencb.biodata.models.variant.Variant;
 import org.opencb.opencga.storage.core.io.bit.BitInputStream;
 import org.opencb.opencga.storage.hadoop.variant.adaptors.phoenix.VariantPhoenixKeyFactory;
-import org.opencb.opencga.storage.hadoop.variant.index.annotation.AnnotationIndexConverter;
 import org.opencb.opencga.storage.hadoop.variant.index.annotation.AnnotationIndexEntry;
 
 import java.io.ByteArrayOutputStream;
@@ -177,6 +176,44 @@ public class SampleIndexVariantBiConverter {
         return new CountSampleIndexGtEntryIterator(entry.getGtEntry(gt), entry.getConfiguration());
     }
 
+    /**
+     * Read the start position of the variants of one genotype, relative to the batch start, without decoding the variants.
+     * The i-th position belongs to the variant with index i.
+     *
+     * @param entry SampleIndexEntry
+     * @param gt    Genotype
+     * @return      Relative positions, or null if the variants are codified as strings
+     */
+    public int[] toRelativePositions(SampleIndexEntry entry, String gt) {
+        SampleIndexEntry.SampleIndexGtEntry gtEntry = entry.getGts().get(gt);
+        if (gtEntry == null || gtEntry.getVariantsLength() <= 0) {
+            return new int[0];
+        }
+        byte[] bytes = gtEntry.getVariants();
+        int offset = gtEntry.getVariantsOffset();
+        int length = gtEntry.getVariantsLength();
+        if (StringSampleIndexGtEntryIterator.isStringCodified(entry.getChromosome(), bytes, offset, length)) {
+            return null;
+        }
+        int[] positions = new int[Math.max(gtEntry.getCount(), 16)];
+        int size = 0;
+        int currentOffset = offset;
+        while (length - (currentOffset - offset) >= INT24_LENGTH) {
+            if (size == positions.length) {
+                positions = Arrays.copyOf(positions, size * 2);
+            }
+            positions[size++] = read24bitInteger(bytes, currentOffset) & 0x0F_FF_FF;
+            if (hasEncodedAlleles(bytes, currentOffset)) {
+                currentOffset += INT24_LENGTH;
+            } else {
+                int referenceLength = readNextSeparator(bytes, currentOffset + INT24_LENGTH);
+                int alternateLength = readNextSeparator(bytes, currentOffset + INT24_LENGTH + referenceLength + SEPARATOR_LENGTH);
+                currentOffset += INT24_LENGTH + referenceLength + SEPARATOR_LENGTH + alternateLength + SEPARATOR_LENGTH;
+            }
+        }
+        return size == positions.length ? positions : Arrays.copyOf(positions, size);
+    }
+
     private abstract static class SampleIndexGtEntryIterator implements SampleIndexEntryIterator {
         protected SampleIndexEntry.SampleIndexGtEntry gtEntry;
         private SampleIndexConfiguration configuration;
@@ -278,8 +315,13 @@ public class SampleIndexVariantBiConverter {
             }
 
             byte[] popFreqIndex;
-            if (popFreq != null) {
-                popFreqIndex = popFreq.readBytes(configuration.getPopulationRanges().size(), AnnotationIndexConverter.POP_FREQ_SIZE);
+            if (popFreq != null && popFreq.remainingBits() >= configuration.getPopulationFrequencyBits()) {
+                // Index written with a different configuration version could be shorter. Do not read it.
+                List<SampleIndexConfiguration.PopulationFrequencyRange> populationRanges = configuration.getPopulationRanges();
+                popFreqIndex = new byte[populationRanges.size()];
+                for (int i = 0; i < popFreqIndex.length; i++) {
+                    popFreqIndex[i] = popFreq.readByte(populationRanges.get(i).getBits());
+                }
             } else {
                 popFreqIndex = null;
             }
@@ -140,6 +140,7 @@ public class SampleIndexTableRecordReader extends TableRecordReader {
         } catch (Exception e) {
             logger.error("Error closing SampleIndexIterator", e);
         }
+        sampleIndexDBAdaptor.close();
     }
 
     /**
@@ -186,6 +186,26 @@ public class AnnotationIndexConverterTest {
                 converter.convert(annot(pf("STUDY", "POP_1", 0.5), pf("STUDY", "POP_4", 0.001), pf("STUDY", "POP_5", 0.5))).getPopFreqIndex());
     }
 
+    @Test
+    public void testConfigurableBins() {
+        SampleIndexConfiguration configuration = new SampleIndexConfiguration()
+                .setConsequenceTypes(Arrays.asList(
+                        Collections.singletonList("synonymous_variant"),
+                        Arrays.asList("intron_variant", "missense_variant")))
+                .setBiotypes(Arrays.asList(
+                        Collections.singletonList("protein_coding"),
+                        Collections.singletonList("miRNA")))
+                .setOtherBiotype(null);
+        AnnotationIndexConverter converter = new AnnotationIndexConverter(configuration);
+
+        AnnotationIndexEntry entry = converter.convert(annot(ct("missense_variant", "protein_coding"), ct("synonymous_variant", "lncRNA")));
+        assertEquals((short) 0b11, entry.getCtIndex());
+        assertEquals((byte) 0b01, entry.getBtIndex());
+        // The summary is not configurable
+        assertEquals(LOF_EXTENDED_MASK | MISSENSE_VARIANT_MASK | LOFE_PROTEIN_CODING_MASK | PROTEIN_CODING_MASK | POP_FREQ_ANY_001_MASK,
+                entry.getSummaryIndex());
+    }
+
     public static VariantAnnotation annot() {
         VariantAnnotation variantAnnotation = new VariantAnnotation();
         variantAnnotation.setConsequenceTypes(Arrays.asList(ct("intergenic_variant")));
@@ -4,6 +4,8 @@ import org.apache.hadoop.hbase.CellUtil;
 import org.apache.hadoop.hbase.client.Put;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.junit.Test;
+import org.opencb.opencga.storage.core.io.bit.BitInputStream;
+import org.opencb.opencga.storage.hadoop.variant.index.sample.SampleIndexConfiguration;
 
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -125,4 +127,39 @@ public class AnnotationIndexPutBuilderTest {
 
     }
 
+    @Test
+    public void testVariableWidthPopFreq() {
+        SampleIndexConfiguration configuration = new SampleIndexConfiguration()
+                .addPopulationRange(new SampleIndexConfiguration.PopulationFrequencyRange("s1", "ALL", new double[]{0.01}))
+                .addPopulationRange(new SampleIndexConfiguration.PopulationFrequencyRange("s2", "ALL",
+                        new double[]{0.0001, 0.0005, 0.001, 0.005, 0.01, 0.05, 0.1}));
+        AnnotationIndexPutBuilder builder = new AnnotationIndexPutBuilder(configuration);
+        for (int varIdx = 0; varIdx < 100; varIdx++) {
+            builder.add(new AnnotationIndexEntry(
+                    (byte) 0,
+                    false,
+                    (short) 0,
+                    (byte) 0,
+                    new byte[0],
+                    new byte[]{
+                            (byte) (varIdx % 2),
+                            (byte) (varIdx % 8)},
+                    false, (byte) 0));
+        }
+
+        Put put = new Put(new byte[]{0});
+        builder.buildAndReset(put, "0/1", FAMILY);
+
+        byte[] pf = put.getFamilyCellMap().get(FAMILY).stream()
+                .collect(Collectors.toMap(cell -> Bytes.toString(CellUtil.cloneQualifier(cell)), CellUtil::cloneValue)).get("_PF_0/1");
+
+        // 1 + 3 bits per variant
+        assertEquals(100 * 4 / Byte.SIZE, pf.length);
+        BitInputStream is = new BitInputStream(pf);
+        for (int varIdx = 0; varIdx < 100; varIdx++) {
+            assertEquals((byte) (varIdx % 2), is.readByte(1));
+            assertEquals((byte) (varIdx % 8), is.readByte(3));
+        }
+    }
+
 }
\ No newline at end of file
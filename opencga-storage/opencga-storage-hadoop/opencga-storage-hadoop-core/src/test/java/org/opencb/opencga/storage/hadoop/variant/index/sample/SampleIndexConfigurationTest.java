@@ -0,0 +1,152 @@
+package org.opencb.opencga.storage.hadoop.variant.index.sample;
+
+import org.junit.Test;
+import org.opencb.opencga.storage.core.metadata.models.SampleMetadata;
+import org.opencb.opencga.storage.core.metadata.models.StudyMetadata;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+import static org.opencb.opencga.storage.hadoop.variant.index.annotation.AnnotationIndexConverter.*;
+
+public class SampleIndexConfigurationTest {
+
+    @Test
+    public void testDefaultConfiguration() {
+        StudyMetadata studyMetadata = new StudyMetadata(1, "study");
+        SampleIndexConfiguration configuration = SampleIndexConfiguration.fromStudyMetadata(studyMetadata);
+
+        assertEquals(SampleIndexConfiguration.DEFAULT_VERSION, configuration.getVersion());
+        assertTrue(configuration.sameLayout(SampleIndexConfiguration.defaultConfiguration()));
+        assertEquals(4, configuration.getPopulationFrequencyBits());
+    }
+
+    @Test
+    public void testStudyMetadataRoundTrip() throws Exception {
+        SampleIndexConfiguration configuration = new SampleIndexConfiguration()
+                .addPopulationRange(new SampleIndexConfiguration.PopulationFrequencyRange("s1", "ALL", new double[]{0.01}))
+                .addPopulationRange(new SampleIndexConfiguration.PopulationFrequencyRange("s2", "ALL",
+                        new double[]{0.0001, 0.0005, 0.001, 0.005, 0.01, 0.05, 0.1}))
+                .setVersion(3);
+
+        StudyMetadata studyMetadata = configuration.toStudyMetadata(new StudyMetadata(1, "study"));
+        SampleIndexConfiguration read = SampleIndexConfiguration.fromStudyMetadata(studyMetadata);
+
+        assertEquals(3, read.getVersion());
+        assertTrue(read.sameLayout(configuration));
+        assertFalse(read.sameLayout(SampleIndexConfiguration.defaultConfiguration()));
+        assertEquals(1, read.getPopulationRanges().get(0).getBits());
+        assertEquals(3, read.getPopulationRanges().get(1).getBits());
+        assertEquals(4, read.getPopulationFrequencyBits());
+
+        assertTrue(SampleIndexConfiguration.fromJson(configuration.toJson()).sameLayout(configuration));
+    }
+
+    @Test
+    public void testAnnotationVersion() {
+        SampleIndexConfiguration configuration = SampleIndexConfiguration.defaultConfiguration().setVersion(2);
+        SampleMetadata sampleMetadata = new SampleMetadata(1, 1, "sample");
+
+        assertEquals(SampleIndexConfiguration.DEFAULT_VERSION, SampleIndexConfiguration.getAnnotationVersion(sampleMetadata));
+        assertFalse(configuration.isAnnotationUpToDate(sampleMetadata));
+
+        SampleIndexConfiguration.setAnnotationVersion(sampleMetadata, 2);
+        assertTrue(configuration.isAnnotationUpToDate(sampleMetadata));
+    }
+
+    @Test
+    public void testDefaultBins() {
+        SampleIndexConfiguration configuration = SampleIndexConfiguration.defaultConfiguration();
+
+        assertEquals(CT_MISSENSE_VARIANT_MASK, configuration.getConsequenceTypeMask("missense_variant"));
+        assertEquals(CT_UTR_MASK, configuration.getConsequenceTypeMask("5_prime_UTR_variant"));
+        assertEquals(0, configuration.getConsequenceTypeMask("intron_variant"));
+        assertFalse(configuration.isImpreciseConsequenceTypeMask(CT_STOP_LOST_MASK));
+        assertTrue(configuration.isImpreciseConsequenceTypeMask(CT_MIRNA_TFBS_MASK));
+
+        assertEquals(BT_PROTEIN_CODING_MASK, configuration.getBiotypeMask("protein_coding"));
+        assertEquals(BT_LNCRNA_MASK, configuration.getBiotypeMask("antisense"));
+        assertEquals(BT_OTHER_NON_PSEUDOGENE, configuration.getBiotypeMask("IG_C_gene"));
+        assertEquals(0, configuration.getBiotypeMask("processed_pseudogene"));
+        assertFalse(configuration.isImpreciseBiotypeMask(BT_MIRNA_MASK));
+        assertTrue(configuration.isImpreciseBiotypeMask(BT_OTHER_NON_PSEUDOGENE));
+
+        // Configurations stored before the bins were configurable use the default bins
+        SampleIndexConfiguration read = SampleIndexConfiguration.fromJson("{\"version\":2,\"populationRanges\":[]}");
+        assertEquals(configuration.getConsequenceTypes(), read.getConsequenceTypes());
+        assertEquals(configuration.getBiotypes(), read.getBiotypes());
+        assertEquals(configuration.getOtherBiotype(), read.getOtherBiotype());
+    }
+
+    @Test
+    public void testCustomBins() throws Exception {
+        SampleIndexConfiguration configuration = SampleIndexConfiguration.defaultConfiguration()
+                .setConsequenceTypes(Arrays.asList(
+                        Collections.singletonList("missense_variant"),
+                        Arrays.asList("intron_variant", "synonymous_variant")))
+                .setBiotypes(Collections.singletonList(Collections.singletonList("protein_coding")))
+                .setOtherBiotype(null);
+
+        SampleIndexConfiguration read = SampleIndexConfiguration.fromJson(configuration.toJson());
+        assertTrue(read.sameLayout(configuration));
+        assertFalse(read.sameLayout(SampleIndexConfiguration.defaultConfiguration()));
+
+        assertEquals(1, read.getConsequenceTypeMask("missense_variant"));
+        assertEquals(2, read.getConsequenceTypeMask("synonymous_variant"));
+        assertEquals(0, read.getConsequenceTypeMask("stop_lost"));
+        assertFalse(read.isImpreciseConsequenceTypeMask((short) 1));
+        assertTrue(read.isImpreciseConsequenceTypeMask((short) 2));
+
+        assertEquals(1, read.getBiotypeMask("protein_coding"));
+        assertEquals(0, read.getBiotypeMask("miRNA"));
+        assertFalse(read.isImpreciseBiotypeMask((byte) 1));
+    }
+
+    @Test
+    public void testClinicalBins() throws Exception {
+        SampleIndexConfiguration configuration = SampleIndexConfiguration.defaultConfiguration();
+        assertEquals(CLINICAL_SOMATIC_MASK, configuration.getClinicalMask(SampleIndexConfiguration.CLINICAL_SOMATIC));
+        assertEquals(CLINICAL_PATHOGENIC_MASK, configuration.getClinicalMask("pathogenic"));
+        assertEquals(0, configuration.getClinicalMask("benign"));
+
+        configuration.setClinicalSignificances(Arrays.asList(
+                Collections.singletonList("pathogenic"),
+                Arrays.asList("benign", "likely_benign")));
+        SampleIndexConfiguration read = SampleIndexConfiguration.fromJson(configuration.toJson());
+        assertTrue(read.sameLayout(configuration));
+        assertFalse(read.sameLayout(SampleIndexConfiguration.defaultConfiguration()));
+        assertEquals(1, read.getClinicalMask("pathogenic"));
+        assertEquals(2, read.getClinicalMask("benign"));
+        assertEquals(0, read.getClinicalMask(SampleIndexConfiguration.CLINICAL_SOMATIC));
+        assertFalse(read.isImpreciseClinicalMask((byte) 1));
+        assertTrue(read.isImpreciseClinicalMask((byte) 2));
+    }
+
+    @Test
+    public void testStoredVersion() {
+        StudyMetadata studyMetadata = new StudyMetadata(1, "study");
+        assertNull(SampleIndexConfiguration.getStoredVersion(studyMetadata));
+
+        SampleIndexConfiguration.defaultConfiguration().setVersion(4).toStudyMetadata(studyMetadata);
+        assertEquals(4, SampleIndexConfiguration.getStoredVersion(studyMetadata).intValue());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDuplicatedBinValue() {
+        new SampleIndexConfiguration().setConsequenceTypes(Arrays.asList(
+                Collections.singletonList("missense_variant"),
+                Arrays.asList("intron_variant", "missense_variant")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTooManyBiotypeBins() {
+        new SampleIndexConfiguration().setBiotypes(Collections.nCopies(SampleIndexConfiguration.MAX_BIOTYPE_BINS + 1,
+                Collections.singletonList("protein_coding")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnsortedThresholds() {
+        new SampleIndexConfiguration.PopulationFrequencyRange("s1", "ALL", new double[]{0.1, 0.01});
+    }
+}
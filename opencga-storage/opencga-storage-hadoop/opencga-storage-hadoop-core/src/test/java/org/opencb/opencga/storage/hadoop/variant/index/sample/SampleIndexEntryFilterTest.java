@@ -76,6 +76,25 @@ public class SampleIndexEntryFilterTest {
         Assert.assertEquals(4, new SampleIndexEntryFilter(query).filterAndCount(e));
     }
 
+    @Test
+    public void testFilterByPositions() {
+        SingleSampleIndexQuery query = getSingleSampleIndexQuery(VariantQueryUtils.QueryOperation.OR, true,
+                buildPopulationFrequencyQuery("s2", 0, 1));
+        List<String> result;
+
+        result = new SampleIndexEntryFilter(query).filter(getSampleIndexEntry1(), new int[]{20, 40, 45})
+                .stream().map(Variant::toString).collect(Collectors.toList());
+        Assert.assertEquals(Arrays.asList("1:20:A:T", "1:40:A:T"), result);
+
+        result = new SampleIndexEntryFilter(query).filter(getSampleIndexEntry1(), new int[0])
+                .stream().map(Variant::toString).collect(Collectors.toList());
+        Assert.assertEquals(Collections.emptyList(), result);
+
+        result = new SampleIndexEntryFilter(query).filter(getSampleIndexEntry1(), null)
+                .stream().map(Variant::toString).collect(Collectors.toList());
+        Assert.assertEquals(Arrays.asList("1:10:A:T", "1:20:A:T", "1:30:A:T", "1:40:A:T", "1:50:A:T"), result);
+    }
+
     @Test
     public void testPopFreqQueryAND() {
         SingleSampleIndexQuery query;
@@ -134,6 +153,31 @@ public class SampleIndexEntryFilterTest {
         Assert.assertEquals(Arrays.asList("1:10:A:T", "1:20:A:T"), result);
     }
 
+    @Test
+    public void testFilterAndCountByGroups() {
+        SampleIndexCount counts = new SampleIndexCount();
+        SingleSampleIndexQuery query = getSingleSampleIndexQuery(new Query());
+        Assert.assertEquals(2, new SampleIndexEntryFilter(query).filterAndCount(getSampleIndexEntry2(), counts));
+        Assert.assertEquals(2, counts.getCount());
+        Assert.assertEquals(Collections.singletonMap("1", 2L), counts.getByChromosome());
+        Assert.assertEquals(Collections.singletonMap("0/1", 2L), counts.getByGenotype());
+        Assert.assertEquals(Long.valueOf(2), counts.getByConsequenceType().get("missense_variant"));
+        Assert.assertEquals(Long.valueOf(2), counts.getByConsequenceType().get("stop_gained"));
+        Assert.assertNull(counts.getByConsequenceType().get("frameshift_variant"));
+
+        query = getSingleSampleIndexQuery(new Query()
+                .append(VariantQueryParam.ANNOT_BIOTYPE.key(), "nonsense_mediated_decay")
+                .append(VariantQueryParam.ANNOT_CONSEQUENCE_TYPE.key(), "stop_lost"));
+        SampleIndexCount filteredCounts = new SampleIndexCount();
+        Assert.assertEquals(1, new SampleIndexEntryFilter(query).filterAndCount(getSampleIndexEntry2(), filteredCounts));
+        Assert.assertEquals(1, filteredCounts.getCount());
+        Assert.assertEquals(Long.valueOf(1), filteredCounts.getByConsequenceType().get("stop_lost"));
+
+        counts.merge(filteredCounts);
+        Assert.assertEquals(3, counts.getCount());
+        Assert.assertEquals(Long.valueOf(3), counts.getByChromosome().get("1"));
+    }
+
     private SampleIndexEntry getSampleIndexEntry1() {
         byte[] pf = new AnnotationIndexPutBuilder()                                                      // s1 s2 s3 s4 s5
                 .add(new AnnotationIndexEntry((byte) 0, false, (short) 0, (byte) 0, new byte[0], new byte[]{ 0, 0, 0, 0, 3 }, false, (byte) 0))  // 1:10:A:T
@@ -189,7 +233,7 @@ public class SampleIndexEntryFilterTest {
                 .setCtBtIndex(map.get("_CB_0/1"))
                 .setConsequenceTypeIndex(map.get("_CT_0/1"))
                 .setBiotypeIndex(map.get("_BT_0/1"))
-                .setCount(5)
+                .setCount(2)
                 .setVariants(toBytes(
                         "1:10:A:T",
                         "1:20:A:T"
@@ -0,0 +1,50 @@
+package org.opencb.opencga.storage.hadoop.variant.index.sample;
+
+import org.junit.Test;
+import org.opencb.biodata.models.variant.Variant;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class SampleIndexEntryPositionsTest {
+
+    @Test
+    public void testUnion() {
+        assertArrayEquals(new int[]{1, 2, 3, 5, 8}, SampleIndexEntryPositions.union(new int[]{1, 3, 3, 8}, new int[]{2, 3, 5}));
+        assertArrayEquals(new int[]{1, 2}, SampleIndexEntryPositions.union(new int[]{1, 2}, new int[0]));
+        assertArrayEquals(new int[0], SampleIndexEntryPositions.union(new int[0], new int[0]));
+    }
+
+    @Test
+    public void testIntersect() {
+        assertArrayEquals(new int[]{3, 8}, SampleIndexEntryPositions.intersect(new int[]{1, 3, 3, 8}, new int[]{2, 3, 3, 5, 8}));
+        assertArrayEquals(new int[0], SampleIndexEntryPositions.intersect(new int[]{1, 2}, new int[]{3, 4}));
+        assertArrayEquals(new int[0], SampleIndexEntryPositions.intersect(new int[]{1, 2}, new int[0]));
+    }
+
+    @Test
+    public void testOf() {
+        int batchStart = 3 * SampleIndexSchema.BATCH_SIZE;
+        SampleIndexVariantBiConverter converter = new SampleIndexVariantBiConverter();
+        SampleIndexEntry entry = new SampleIndexEntry(0, "1", batchStart, SampleIndexConfiguration.defaultConfiguration());
+        entry.getGtEntry("0/1").setVariants(converter.toBytes(Arrays.asList(
+                new Variant("1:" + (batchStart + 10) + ":A:T"),
+                new Variant("1:" + (batchStart + 10) + ":A:C"),
+                new Variant("1:" + (batchStart + 25) + ":AAC:A"),
+                new Variant("1:" + (batchStart + 999999) + ":A:T"))));
+        entry.getGtEntry("1/1").setVariants(converter.toBytes(Arrays.asList(
+                new Variant("1:" + (batchStart + 15) + ":ACGTACGTACGT:A"),
+                new Variant("1:" + (batchStart + 25) + ":A:T"))));
+
+        assertArrayEquals(new int[]{10, 10, 25, 999999}, converter.toRelativePositions(entry, "0/1"));
+        assertArrayEquals(new int[]{15, 25}, converter.toRelativePositions(entry, "1/1"));
+        assertArrayEquals(new int[0], converter.toRelativePositions(entry, "0/2"));
+        assertArrayEquals(new int[]{10, 15, 25, 999999}, SampleIndexEntryPositions.of(entry));
+
+        // Positions from string codified variants are unknown
+        entry.getGtEntry("0/1").setVariants(converter.toBytesSimpleString(Arrays.asList(new Variant("1:" + (batchStart + 10) + ":A:T"))));
+        assertNull(converter.toRelativePositions(entry, "0/1"));
+        assertNull(SampleIndexEntryPositions.of(entry));
+    }
+}
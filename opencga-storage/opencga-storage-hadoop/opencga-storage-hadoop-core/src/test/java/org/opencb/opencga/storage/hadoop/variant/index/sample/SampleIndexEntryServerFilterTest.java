@@ -0,0 +1,193 @@
+package org.opencb.opencga.storage.hadoop.variant.index.sample;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Before;
+import org.junit.Test;
+import org.opencb.biodata.models.core.Region;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryUtils;
+import org.opencb.opencga.storage.hadoop.variant.GenomeHelper;
+import org.opencb.opencga.storage.hadoop.variant.index.annotation.AnnotationIndexEntry;
+import org.opencb.opencga.storage.hadoop.variant.index.annotation.AnnotationIndexPutBuilder;
+import org.opencb.opencga.storage.hadoop.variant.index.query.SampleAnnotationIndexQuery;
+import org.opencb.opencga.storage.hadoop.variant.index.query.SampleAnnotationIndexQuery.PopulationFrequencyQuery;
+import org.opencb.opencga.storage.hadoop.variant.index.query.SampleIndexQuery;
+import org.opencb.opencga.storage.hadoop.variant.index.query.SingleSampleIndexQuery;
+import org.opencb.opencga.storage.hadoop.variant.index.sample.SampleIndexConfiguration.PopulationFrequencyRange;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class SampleIndexEntryServerFilterTest {
+
+    private static final byte[] FAMILY = GenomeHelper.COLUMN_FAMILY_BYTES;
+    private SampleIndexConfiguration configuration;
+
+    @Before
+    public void setUp() throws Exception {
+        configuration = new SampleIndexConfiguration()
+                .addPopulationRange(new PopulationFrequencyRange("s1", "ALL"))
+                .addPopulationRange(new PopulationFrequencyRange("s2", "ALL"));
+    }
+
+    @Test
+    public void testSerialization() throws Exception {
+        SingleSampleIndexQuery query = getQuery(new PopulationFrequencyQuery(1, "s2", "ALL", 0.001, 0.005, (byte) 1, (byte) 2));
+        Region region = new Region("1", 15, 45);
+
+        SampleIndexEntryServerFilter filter = SampleIndexEntryServerFilter.parseFrom(
+                new SampleIndexEntryServerFilter(query, region, configuration).toByteArray());
+
+        SingleSampleIndexQuery actual = filter.getQuery();
+        assertEquals(region, filter.getRegion());
+        assertEquals("study", actual.getStudy());
+        assertEquals("S1", actual.getSample());
+        assertEquals(Arrays.asList("0/1", "1/1"), actual.getGenotypes());
+        assertEquals(VariantQueryUtils.QueryOperation.OR, actual.getAnnotationIndexQuery().getPopulationFrequencyQueryOperator());
+        assertFalse(actual.getAnnotationIndexQuery().isPopulationFrequencyQueryPartial());
+        assertEquals(query.getAnnotationIndexQuery().getPopulationFrequencyQueries(),
+                actual.getAnnotationIndexQuery().getPopulationFrequencyQueries());
+        PopulationFrequencyQuery popFreqQuery = actual.getAnnotationIndexQuery().getPopulationFrequencyQueries().get(0);
+        assertEquals(1, popFreqQuery.getPosition());
+        assertEquals("s2:ALL", popFreqQuery.getStudyPopulation());
+        assertFalse(actual.hasFatherFilter());
+        assertFalse(actual.hasMotherFilter());
+        assertFalse(actual.getMendelianError());
+        assertArrayEquals(query.getSampleFileIndexQuery().getValidFileIndex(), actual.getSampleFileIndexQuery().getValidFileIndex());
+    }
+
+    @Test
+    public void testFilterRowCells() throws Exception {
+        SingleSampleIndexQuery query = getQuery(new PopulationFrequencyQuery(1, "s2", "ALL", -1, -1, (byte) 0, (byte) 1));
+        SampleIndexEntryServerFilter filter = SampleIndexEntryServerFilter.parseFrom(
+                new SampleIndexEntryServerFilter(query, null, configuration).toByteArray());
+
+        List<Cell> cells = getCells();
+        filter.reset();
+        filter.filterRowCells(cells);
+        assertFalse(filter.filterRow());
+
+        Map<String, byte[]> columns = cells.stream()
+                .collect(Collectors.toMap(cell -> Bytes.toString(CellUtil.cloneQualifier(cell)), CellUtil::cloneValue));
+        assertEquals(new HashSet<>(Arrays.asList("0/1", "_C_0/1")), columns.keySet());
+        assertEquals(2, Bytes.toInt(columns.get("_C_0/1")));
+
+        // Compacted entries can be filtered again in the client
+        SampleIndexEntry entry = new HBaseToSampleIndexConverter(configuration).convert(Result.create(cells));
+        List<String> variants = new SampleIndexEntryFilter(query).filter(entry)
+                .stream().map(Variant::toString).collect(Collectors.toList());
+        assertEquals(Arrays.asList("1:10:A:T", "1:50:A:T"), variants);
+    }
+
+    @Test
+    public void testFilterRowCellsByRegion() throws Exception {
+        SingleSampleIndexQuery query = getQuery(new PopulationFrequencyQuery(1, "s2", "ALL", -1, -1, (byte) 0, (byte) 1));
+        SampleIndexEntryServerFilter filter = new SampleIndexEntryServerFilter(query, new Region("1", 20, 40), configuration);
+
+        List<Cell> cells = getCells();
+        filter.reset();
+        filter.filterRowCells(cells);
+        assertTrue(cells.isEmpty());
+        assertTrue(filter.filterRow());
+
+        filter.reset();
+        assertFalse(filter.filterRow());
+    }
+
+    @Test
+    public void testCountRowCells() throws Exception {
+        SingleSampleIndexQuery query = getQuery(new PopulationFrequencyQuery(1, "s2", "ALL", -1, -1, (byte) 0, (byte) 1));
+        SampleIndexEntryServerFilter filter = SampleIndexEntryServerFilter.parseFrom(new SampleIndexEntryServerFilter(query, null,
+                configuration, SampleIndexEntryServerFilter.Mode.COUNT).toByteArray());
+        assertEquals(SampleIndexEntryServerFilter.Mode.COUNT, filter.getMode());
+
+        List<Cell> cells = getCells();
+        filter.reset();
+        filter.filterRowCells(cells);
+        assertFalse(filter.filterRow());
+        assertEquals(1, cells.size());
+        assertArrayEquals(SampleIndexEntryServerFilter.COUNT_COLUMN, CellUtil.cloneQualifier(cells.get(0)));
+        assertEquals(2, Bytes.toInt(CellUtil.cloneValue(cells.get(0))));
+    }
+
+    @Test
+    public void testCountByGroupsRowCells() throws Exception {
+        SingleSampleIndexQuery query = getQuery(new PopulationFrequencyQuery(1, "s2", "ALL", -1, -1, (byte) 0, (byte) 1));
+        SampleIndexEntryServerFilter filter = SampleIndexEntryServerFilter.parseFrom(new SampleIndexEntryServerFilter(query, null,
+                configuration, SampleIndexEntryServerFilter.Mode.COUNT_BY_GROUPS).toByteArray());
+
+        List<Cell> cells = getCells();
+        SampleIndexCount expected = new SampleIndexCount(configuration);
+        SampleIndexEntry entry = new HBaseToSampleIndexConverter(configuration).convert(Result.create(cells));
+        new SampleIndexEntryFilter(query).filterAndCount(entry, expected);
+
+        filter.reset();
+        filter.filterRowCells(cells);
+        assertFalse(filter.filterRow());
+        assertEquals(1, cells.size());
+        SampleIndexCount actual = SampleIndexCount.fromBytes(CellUtil.cloneValue(cells.get(0)));
+        assertEquals(2, actual.getCount());
+        assertEquals(expected.toString(), actual.toString());
+    }
+
+    @Test
+    public void testCountRowCellsByRegion() throws Exception {
+        SingleSampleIndexQuery query = getQuery(new PopulationFrequencyQuery(1, "s2", "ALL", -1, -1, (byte) 0, (byte) 1));
+        SampleIndexEntryServerFilter filter = new SampleIndexEntryServerFilter(query, new Region("1", 20, 40), configuration,
+                SampleIndexEntryServerFilter.Mode.COUNT);
+
+        List<Cell> cells = getCells();
+        filter.reset();
+        filter.filterRowCells(cells);
+        assertTrue(cells.isEmpty());
+        assertTrue(filter.filterRow());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMendelianQuery() {
+        SingleSampleIndexQuery query = new SampleIndexQuery(
+                Collections.emptyList(), null, "study", Collections.singletonMap("S1", Arrays.asList("0/1", "1/1")), null,
+                Collections.emptyMap(), Collections.emptyMap(), Collections.emptyMap(), new SampleAnnotationIndexQuery(),
+                Collections.singleton("S1"), false, VariantQueryUtils.QueryOperation.AND)
+                .forSample("S1");
+        new SampleIndexEntryServerFilter(query, null, configuration);
+    }
+
+    private List<Cell> getCells() {
+        byte[] row = SampleIndexSchema.toRowKey(0, "1", 0);
+        Map<String, byte[]> map = new AnnotationIndexPutBuilder()                                     // s1 s2
+                .add(new AnnotationIndexEntry((byte) 0, false, (short) 0, (byte) 0, new byte[0], new byte[]{0, 0}, false, (byte) 0))
+                .add(new AnnotationIndexEntry((byte) 0, false, (short) 0, (byte) 0, new byte[0], new byte[]{0, 1}, false, (byte) 0))
+                .add(new AnnotationIndexEntry((byte) 0, false, (short) 0, (byte) 0, new byte[0], new byte[]{0, 2}, false, (byte) 0))
+                .add(new AnnotationIndexEntry((byte) 0, false, (short) 0, (byte) 0, new byte[0], new byte[]{0, 3}, false, (byte) 0))
+                .add(new AnnotationIndexEntry((byte) 0, false, (short) 0, (byte) 0, new byte[0], new byte[]{0, 0}, false, (byte) 0))
+                .buildAndReset(new Put(row), "0/1", FAMILY)
+                .getFamilyCellMap().get(FAMILY)
+                .stream()
+                .collect(Collectors.toMap(cell -> Bytes.toString(CellUtil.cloneQualifier(cell)), CellUtil::cloneValue));
+
+        List<Cell> cells = new ArrayList<>();
+        cells.add(new KeyValue(row, FAMILY, SampleIndexSchema.toGenotypeColumn("0/1"),
+                Bytes.toBytes("1:10:A:T,1:20:A:T,1:30:A:T,1:40:A:T,1:50:A:T")));
+        cells.add(new KeyValue(row, FAMILY, SampleIndexSchema.toGenotypeCountColumn("0/1"), Bytes.toBytes(5)));
+        cells.add(new KeyValue(row, FAMILY, SampleIndexSchema.toAnnotationPopFreqIndexColumn("0/1"), map.get("_PF_0/1")));
+        return cells;
+    }
+
+    private SingleSampleIndexQuery getQuery(PopulationFrequencyQuery... popFreqQueries) {
+        SampleAnnotationIndexQuery annotationIndexQuery = new SampleAnnotationIndexQuery(new byte[2], (short) 0, (byte) 0, (byte) 0,
+                VariantQueryUtils.QueryOperation.OR, Arrays.asList(popFreqQueries), false);
+        return new SampleIndexQuery(
+                Collections.emptyList(), null, "study", Collections.singletonMap("S1", Arrays.asList("0/1", "1/1")), null,
+                Collections.emptyMap(), Collections.emptyMap(), Collections.emptyMap(), annotationIndexQuery,
+                Collections.emptySet(), false, VariantQueryUtils.QueryOperation.AND)
+                .forSample("S1");
+    }
+}
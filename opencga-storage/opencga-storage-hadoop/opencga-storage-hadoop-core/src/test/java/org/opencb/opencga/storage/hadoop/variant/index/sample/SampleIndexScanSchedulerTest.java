@@ -0,0 +1,115 @@
+package org.opencb.opencga.storage.hadoop.variant.index.sample;
+
+import com.google.common.collect.Iterators;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.client.Table;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.opencb.opencga.storage.hadoop.utils.HBaseScanProfiler;
+
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SampleIndexScanSchedulerTest {
+
+    private Table table;
+    private List<Scan> scans;
+    private List<Result> expected;
+    private Map<Scan, List<Result>> rows;
+    private List<ResultScanner> scanners;
+    private SampleIndexScanScheduler scheduler;
+
+    @Before
+    public void setUp() throws Exception {
+        rows = new IdentityHashMap<>();
+        scans = new ArrayList<>();
+        expected = new ArrayList<>();
+        scanners = Collections.synchronizedList(new ArrayList<>());
+        int[] numRows = new int[]{5, 0, 3, 6, 1, 10};
+        for (int n : numRows) {
+            Scan scan = new Scan().setCaching(3);
+            List<Result> results = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                results.add(Mockito.mock(Result.class));
+            }
+            scans.add(scan);
+            rows.put(scan, results);
+            expected.addAll(results);
+        }
+
+        table = Mockito.mock(Table.class);
+        Mockito.when(table.getScanner(Mockito.any(Scan.class))).thenAnswer(invocation -> {
+            Iterator<Result> iterator = rows.get((Scan) invocation.getArguments()[0]).iterator();
+            ResultScanner scanner = Mockito.mock(ResultScanner.class);
+            Mockito.when(scanner.next(Mockito.anyInt())).thenAnswer(nextInvocation -> {
+                int batchSize = (Integer) nextInvocation.getArguments()[0];
+                List<Result> batch = new ArrayList<>(batchSize);
+                Iterators.addAll(batch, Iterators.limit(iterator, batchSize));
+                return batch.toArray(new Result[0]);
+            });
+            scanners.add(scanner);
+            return scanner;
+        });
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+    }
+
+    @Test
+    public void testSequential() throws Exception {
+        scheduler = new SampleIndexScanScheduler(1, 4);
+        checkScan();
+    }
+
+    @Test
+    public void testParallel() throws Exception {
+        scheduler = new SampleIndexScanScheduler(4, 2);
+        checkScan();
+    }
+
+    @Test
+    public void testCloseBeforeConsuming() throws Exception {
+        scheduler = new SampleIndexScanScheduler(4, 2);
+        SampleIndexScanScheduler.RegionScanIterator iterator = scheduler.scan(table, scans, new HBaseScanProfiler("sampleIndex"));
+        Iterator<Result> first = iterator.next();
+        first.next();
+        iterator.close();
+
+        // Only the prefetched regions can be opened
+        assertTrue(scanners.size() <= 3);
+        for (ResultScanner scanner : scanners) {
+            Mockito.verify(scanner).close();
+        }
+    }
+
+    private void checkScan() throws Exception {
+        List<Result> actual = new ArrayList<>();
+        try (SampleIndexScanScheduler.RegionScanIterator iterator = scheduler.scan(table, scans, new HBaseScanProfiler("sampleIndex"))) {
+            int regions = 0;
+            while (iterator.hasNext()) {
+                Iterators.addAll(actual, iterator.next());
+                regions++;
+            }
+            assertEquals(scans.size(), regions);
+        }
+        // Same order
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i), actual.get(i));
+        }
+        assertEquals(scans.size(), scanners.size());
+        for (ResultScanner scanner : scanners) {
+            Mockito.verify(scanner).close();
+        }
+    }
+}
@@ -2,6 +2,7 @@ package org.opencb.opencga.storage.hadoop.variant.index.sample;
 
 import com.google.common.collect.Lists;
 import org.apache.commons.lang3.time.StopWatch;
+import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.TableName;
 import org.apache.hadoop.hbase.client.Connection;
 import org.apache.hadoop.hbase.client.Result;
@@ -18,6 +19,8 @@ import org.opencb.biodata.models.core.Region;
 import org.opencb.biodata.models.variant.Variant;
 import org.opencb.biodata.models.variant.avro.VariantType;
 import org.opencb.cellbase.core.variant.annotation.VariantAnnotationUtils;
+import org.opencb.commons.datastore.core.DataResult;
+import org.opencb.commons.datastore.core.FacetField;
 import org.opencb.commons.datastore.core.ObjectMap;
 import org.opencb.commons.datastore.core.Query;
 import org.opencb.commons.datastore.core.QueryOptions;
@@ -28,11 +31,14 @@ import org.opencb.opencga.storage.core.metadata.models.StudyMetadata;
 import org.opencb.opencga.storage.core.variant.VariantStorageBaseTest;
 import org.opencb.opencga.storage.core.variant.VariantStorageOptions;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantField;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryException;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryUtils;
 import org.opencb.opencga.storage.core.variant.annotation.annotators.CellBaseRestVariantAnnotator;
+import org.opencb.opencga.storage.hadoop.utils.HBaseManager;
 import org.opencb.opencga.storage.hadoop.variant.GenomeHelper;
 import org.opencb.opencga.storage.hadoop.variant.HadoopVariantStorageEngine;
+import org.opencb.opencga.storage.hadoop.variant.HadoopVariantStorageOptions;
 import org.opencb.opencga.storage.hadoop.variant.HadoopVariantStorageTest;
 import org.opencb.opencga.storage.hadoop.variant.VariantHbaseTestUtils;
 import org.opencb.opencga.storage.hadoop.variant.adaptors.VariantHadoopDBAdaptor;
@@ -357,5 +363,89 @@ public class SampleIndexTest extends VariantStorageBaseTest implements HadoopVar
         }
     }
 
+    @Test
+    public void testConfigurationCache() throws Exception {
+        SampleIndexDBAdaptor sampleIndexDBAdaptor = ((HadoopVariantStorageEngine) variantStorageEngine).getSampleIndexDBAdaptor();
+        int studyId = studyMetadata.getId();
+        SampleIndexConfiguration configuration = sampleIndexDBAdaptor.getConfiguration(studyId);
+        assertSame(configuration, sampleIndexDBAdaptor.getConfiguration(studyId));
+        assertSame(configuration, sampleIndexDBAdaptor.getCachedConfiguration(STUDY_NAME));
+
+        StudyMetadata sm = variantStorageEngine.getMetadataManager().getStudyMetadata(studyId);
+        SampleIndexConfiguration newConfiguration = SampleIndexConfiguration.defaultConfiguration()
+                .setVersion(configuration.getVersion() + 1);
+        newConfiguration.toStudyMetadata(sm);
+        SampleIndexConfiguration read = sampleIndexDBAdaptor.getConfiguration(sm);
+        assertNotSame(configuration, read);
+        assertEquals(newConfiguration.getVersion(), read.getVersion());
+        assertSame(read, sampleIndexDBAdaptor.getCachedConfiguration(STUDY_NAME));
+
+        // The modified metadata was never stored, so reading it again refreshes the cached configuration
+        assertEquals(configuration.getVersion(), sampleIndexDBAdaptor.getConfiguration(studyId).getVersion());
+    }
+
+    @Test
+    public void testSampleIndexCount() throws StorageEngineException {
+        Query query = new Query(VariantQueryParam.STUDY.key(), STUDY_NAME)
+                .append(VariantQueryParam.SAMPLE.key(), "NA19600")
+                .append(VariantQueryParam.REGION.key(), "1:1000-16400000");
+        DataResult<FacetField> result = variantStorageEngine.sampleIndexCount(new Query(query));
+
+        long expectedCount = dbAdaptor.count(variantStorageEngine.preProcessQuery(new Query(query), new QueryOptions())).first();
+        assertEquals(expectedCount, result.getNumMatches());
+        assertEquals(3, result.getNumResults());
+        for (FacetField facetField : result.getResults()) {
+            if (facetField.getName().equals(SampleIndexCount.CONSEQUENCE_TYPE_FIELD)) {
+                // A variant may be counted in more than one consequence type
+                continue;
+            }
+            assertEquals(facetField.getName(), expectedCount,
+                    facetField.getBuckets().stream().mapToLong(FacetField.Bucket::getCount).sum());
+        }
+    }
+
+    @Test(expected = VariantQueryException.class)
+    public void testSampleIndexCountNotCoveredFilter() throws StorageEngineException {
+        variantStorageEngine.sampleIndexCount(new Query(VariantQueryParam.STUDY.key(), STUDY_NAME)
+                .append(VariantQueryParam.SAMPLE.key(), "NA19600")
+                .append(VariantQueryParam.ID.key(), "rs1234"));
+    }
 
-}
\ No newline at end of file
+    @Test
+    public void testServerSideFilter() throws Exception {
+        Configuration conf = new Configuration(dbAdaptor.getHBaseManager().getConf());
+        conf.setBoolean(HadoopVariantStorageOptions.SAMPLE_INDEX_SCAN_SERVER_SIDE_FILTER.key(), true);
+        SampleIndexDBAdaptor serverSideDBAdaptor = new SampleIndexDBAdaptor(dbAdaptor.getGenomeHelper(),
+                new HBaseManager(conf, dbAdaptor.getHBaseManager().getConnection()),
+                dbAdaptor.getTableNameGenerator(), dbAdaptor.getMetadataManager());
+        SampleIndexDBAdaptor clientSideDBAdaptor = ((HadoopVariantStorageEngine) variantStorageEngine).getSampleIndexDBAdaptor();
+
+        List<Query> queries = Arrays.asList(
+                new Query(ANNOT_CONSEQUENCE_TYPE.key(), "missense_variant"),
+                new Query(ANNOT_CONSEQUENCE_TYPE.key(), "missense_variant,stop_gained").append(ANNOT_BIOTYPE.key(), "protein_coding"),
+                new Query(ANNOT_POPULATION_ALTERNATE_FREQUENCY.key(), "1kG_phase3:ALL<0.001"),
+                new Query(ANNOT_CLINICAL_SIGNIFICANCE.key(), "pathogenic,likely_benign"),
+                new Query(QUAL.key(), ">=30").append(FILTER.key(), "PASS"),
+                new Query(TYPE.key(), VariantType.INDEL),
+                new Query(REGION.key(), "1:1000-16400000").append(ANNOT_CONSEQUENCE_TYPE.key(), "missense_variant"),
+                new Query(SAMPLE.key(), "NA19600,NA19661").append(ANNOT_CONSEQUENCE_TYPE.key(), "missense_variant"));
+
+        for (Query annotationQuery : queries) {
+            Query query = new Query(STUDY.key(), STUDY_NAME).append(SAMPLE.key(), "NA19600");
+            query.putAll(annotationQuery);
+            SampleIndexQuery indexQuery = clientSideDBAdaptor.getSampleIndexQueryParser().parse(new Query(query));
+
+            List<String> expected = clientSideDBAdaptor.iterator(indexQuery).toDataResult().getResults()
+                    .stream().map(Variant::toString).collect(Collectors.toList());
+            List<String> actual = serverSideDBAdaptor.iterator(indexQuery).toDataResult().getResults()
+                    .stream().map(Variant::toString).collect(Collectors.toList());
+            assertEquals(annotationQuery.toJson(), expected, actual);
+
+            if (indexQuery.getSamplesMap().size() == 1) {
+                assertEquals(annotationQuery.toJson(), clientSideDBAdaptor.count(indexQuery), serverSideDBAdaptor.count(indexQuery));
+                assertEquals(annotationQuery.toJson(), clientSideDBAdaptor.countByGroups(indexQuery).toString(),
+                        serverSideDBAdaptor.countByGroups(indexQuery).toString());
+            }
+        }
+    }
+}
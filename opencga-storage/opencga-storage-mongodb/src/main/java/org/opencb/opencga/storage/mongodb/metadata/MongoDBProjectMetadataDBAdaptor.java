@@ -66,8 +66,12 @@ public class MongoDBProjectMetadataDBAdaptor implements ProjectMetadataAdaptor {
         // Update field by field, instead of replacing the whole object to preserve existing fields like "_lock"
         List<Bson> updates = new ArrayList<>(mongo.size());
         mongo.forEach((s, o) -> {
-            // Do not update counters
-            if (updateCounters || !s.equals(COUNTERS_FIELD)) {
+            if (s.equals(COUNTERS_FIELD)) {
+                // Update counter by counter, to preserve the counters increased concurrently
+                if (updateCounters && o instanceof Document) {
+                    ((Document) o).forEach((counter, value) -> updates.add(Updates.set(COUNTERS_FIELD + '.' + counter, value)));
+                }
+            } else {
                 updates.add(new Document("$set", new Document(s, o)));
             }
         });
@@ -81,6 +85,15 @@ public class MongoDBProjectMetadataDBAdaptor implements ProjectMetadataAdaptor {
         return generateId(idType, true);
     }
 
+    @Override
+    public int getCounter(Integer studyId, String idType) {
+        // Ignore study configuration. Same ID counter for all studies in the same database
+        Document document = collection.find(QUERY, new Document(COUNTERS_FIELD + '.' + idType, true), new QueryOptions()).first();
+        Document counters = document == null ? null : document.get(COUNTERS_FIELD, Document.class);
+        Integer value = counters == null ? null : counters.getInteger(idType);
+        return value == null ? 0 : value;
+    }
+
     private int generateId(String idType, boolean retry) throws StorageEngineException {
         String field = COUNTERS_FIELD + '.' + idType;
         Document projection = new Document(field, true);
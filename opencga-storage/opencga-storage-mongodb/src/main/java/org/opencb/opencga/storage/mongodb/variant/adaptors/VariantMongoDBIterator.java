@@ -26,6 +26,7 @@ import org.opencb.commons.datastore.core.QueryOptions;
 import org.opencb.commons.datastore.mongodb.MongoDBCollection;
 import org.opencb.commons.datastore.mongodb.MongoPersistentCursor;
 import org.opencb.opencga.storage.core.variant.adaptors.iterators.VariantDBIterator;
+import org.opencb.opencga.storage.core.variant.query.VariantQueryProfile;
 import org.opencb.opencga.storage.mongodb.variant.converters.DocumentToVariantConverter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -38,6 +39,9 @@ public class VariantMongoDBIterator extends VariantDBIterator {
     private MongoCursor<Document> dbCursor;
     private DocumentToVariantConverter documentToVariantConverter;
     private int count;
+    // Captured on creation, as the iterator might be consumed from a different thread
+    private final VariantQueryProfile profile = VariantQueryProfile.current();
+    private boolean closed = false;
     private Logger logger = LoggerFactory.getLogger(VariantMongoDBIterator.class);
 
     //Package protected
@@ -97,5 +101,9 @@ public class VariantMongoDBIterator extends VariantDBIterator {
     public void close() throws Exception {
         super.close();
         dbCursor.close();
+        if (profile != null && !closed) {
+            profile.addBackend("mongodb", this);
+        }
+        closed = true;
     }
 }
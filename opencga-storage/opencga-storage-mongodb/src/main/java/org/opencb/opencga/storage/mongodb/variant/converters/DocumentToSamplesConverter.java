@@ -30,6 +30,7 @@ import org.opencb.opencga.storage.core.metadata.models.StudyMetadata;
 import org.opencb.opencga.storage.core.variant.VariantStorageOptions;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryFields;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryUtils;
+import org.opencb.opencga.storage.core.variant.adaptors.sample.SampleDataColumns;
 import org.opencb.opencga.storage.core.variant.query.VariantQueryParser;
 import org.opencb.opencga.storage.mongodb.variant.MongoDBVariantStorageOptions;
 import org.opencb.opencga.storage.mongodb.variant.protobuf.VariantMongoDBProto;
@@ -407,6 +408,52 @@ public class DocumentToSamplesConverter extends AbstractDocumentConverter {
         return samplesData;
     }
 
+    /**
+     * Read the genotypes of a study document into a dictionary encoded {@link SampleDataColumns}, without creating
+     * one list of values per sample.
+     *
+     * Genotypes are read as stored, without replacing "-1" alleles, as the former stats calculation did.
+     * Samples present in more than one genotype list take the first list, iterating them from a {@link HashMap}.
+     *
+     * @param object          Study document
+     * @param samplesPosition Position of each sample id in the result. Other samples are ignored.
+     * @param defaultGenotype Genotype of the samples not present in any genotype list. If null, leave them absent.
+     * @param unknownGenotype Genotype to use for the legacy unknown genotype "?/?"
+     * @return SampleDataColumns with only the GT field
+     */
+    public static SampleDataColumns convertToGenotypeColumns(Document object, Map<Integer, Integer> samplesPosition,
+                                                             String defaultGenotype, String unknownGenotype) {
+        int numSamples = 0;
+        for (Integer position : samplesPosition.values()) {
+            numSamples = Math.max(numSamples, position + 1);
+        }
+        SampleDataColumns.Builder builder = SampleDataColumns.builder(Collections.singletonList(SampleDataColumns.GT), numSamples);
+        if (defaultGenotype != null) {
+            for (Integer position : samplesPosition.values()) {
+                builder.set(position, 0, defaultGenotype);
+            }
+        }
+        Document mongoGenotypes = object.get(DocumentToStudyVariantEntryConverter.GENOTYPES_FIELD, Document.class);
+        if (mongoGenotypes != null) {
+            Map<String, List<?>> genotypeLists = new HashMap<>(mongoGenotypes.size());
+            for (Map.Entry<String, Object> entry : mongoGenotypes.entrySet()) {
+                genotypeLists.put(entry.getKey(), (List<?>) entry.getValue());
+            }
+            boolean[] found = new boolean[numSamples];
+            for (Map.Entry<String, List<?>> entry : genotypeLists.entrySet()) {
+                String genotype = UNKNOWN_GENOTYPE.equals(entry.getKey()) ? unknownGenotype : entry.getKey();
+                for (Object sampleId : entry.getValue()) {
+                    Integer position = samplesPosition.get(((Number) sampleId).intValue());
+                    if (position != null && !found[position]) {
+                        found[position] = true;
+                        builder.set(position, 0, genotype);
+                    }
+                }
+            }
+        }
+        return builder.build();
+    }
+
     public List<String> getExtraFormatFields(int studyId, Set<Integer> filesWithSamplesData, Map<Integer, Document> files) {
         final List<String> extraFields;
         if (expectedExtraFields != null) {
@@ -9,8 +9,10 @@ import org.opencb.commons.run.Task;
 import org.opencb.opencga.storage.core.metadata.models.CohortMetadata;
 import org.opencb.opencga.storage.core.metadata.models.StudyMetadata;
 import org.opencb.opencga.storage.core.variant.adaptors.GenotypeClass;
+import org.opencb.opencga.storage.core.variant.adaptors.sample.SampleDataColumns;
 import org.opencb.opencga.storage.core.variant.stats.VariantStatsWrapper;
 import org.opencb.opencga.storage.mongodb.variant.converters.AbstractDocumentConverter;
+import org.opencb.opencga.storage.mongodb.variant.converters.DocumentToSamplesConverter;
 import org.opencb.opencga.storage.mongodb.variant.converters.DocumentToStudyVariantEntryConverter;
 import org.opencb.opencga.storage.mongodb.variant.converters.DocumentToVariantConverter;
 
@@ -32,6 +34,9 @@ public class MongoDBVariantStatsCalculator extends AbstractDocumentConverter imp
     private String unknownGenotype;
     private String defaultGenotype;
     private final DocumentToVariantConverter variantConverter;
+    // Position of each sample from any cohort in the genotype columns
+    private final Map<Integer, Integer> samplesPosition;
+    private final Map<Integer, int[]> cohortSamplesPosition;
 
     public MongoDBVariantStatsCalculator(StudyMetadata studyMetadata, Collection<CohortMetadata> cohorts, String unknownGenotype) {
         this.studyMetadata = studyMetadata;
@@ -46,6 +51,17 @@ public class MongoDBVariantStatsCalculator extends AbstractDocumentConverter imp
             defaultGenotype = this.unknownGenotype;
         }
 
+        samplesPosition = new HashMap<>();
+        cohortSamplesPosition = new HashMap<>(this.cohorts.size());
+        for (CohortMetadata cohort : this.cohorts.values()) {
+            int[] positions = new int[cohort.getSamples().size()];
+            int i = 0;
+            for (Integer sampleId : cohort.getSamples()) {
+                positions[i++] = samplesPosition.computeIfAbsent(sampleId, k -> samplesPosition.size());
+            }
+            cohortSamplesPosition.put(cohort.getId(), positions);
+        }
+
         variantConverter = new DocumentToVariantConverter();
     }
 
@@ -77,49 +93,21 @@ public class MongoDBVariantStatsCalculator extends AbstractDocumentConverter imp
     public VariantStatsWrapper calculateStats(Variant variant, Document study) {
         VariantStatsWrapper statsWrapper = new VariantStatsWrapper(variant, new HashMap<>(cohorts.size()));
 
-        Document gt = study.get(DocumentToStudyVariantEntryConverter.GENOTYPES_FIELD, Document.class);
-
-        // Make a Set from the lists of genotypes for fast indexOf
-        Map<String, Set<Integer>> gtsMap = new HashMap<>(gt.size());
-        for (Map.Entry<String, Object> entry : gt.entrySet()) {
-            gtsMap.put(entry.getKey(), new HashSet<>((Collection) entry.getValue()));
-        }
+        // Read the genotypes directly in columnar format. Each distinct genotype is parsed once per variant.
+        SampleDataColumns columns = DocumentToSamplesConverter.convertToGenotypeColumns(study, samplesPosition,
+                defaultGenotype, unknownGenotype);
 
         for (CohortMetadata cohort : cohorts.values()) {
-            Map<String, Integer> gtStrCount = new HashMap<>();
-
-            int unknownGenotypes = cohort.getSamples().size();
-            for (Integer sampleId : cohort.getSamples()) {
-                for (Map.Entry<String, Set<Integer>> entry : gtsMap.entrySet()) {
-                    String gtStr = entry.getKey();
-                    // If any ?/? is present in the DB, must be read as "unknownGenotype", usually "./."
-                    if (GenotypeClass.UNKNOWN_GENOTYPE.equals(gtStr)) {
-                        gtStr = unknownGenotype;
-                    }
-                    if ((entry.getValue()).contains(sampleId)) {
-                        addGt(gtStrCount, gtStr, 1);
-                        unknownGenotypes--;
-                        break;
-                    }
-                }
+            Map<Genotype, Integer> gtCountMap = columns.countGenotypes(cohortSamplesPosition.get(cohort.getId()));
+            if (defaultGenotype != null) {
+                // The default genotype is always present in the stats, even if no sample has it
+                gtCountMap.putIfAbsent(new Genotype(defaultGenotype), 0);
             }
 
-            // All the samples not present in any gt list must count as "defaultGenotype", usually "0/0"
-            addGt(gtStrCount, defaultGenotype, unknownGenotypes);
-
-            Map<Genotype, Integer> gtCountMap = new HashMap<>(gtStrCount.size());
-            gtStrCount.forEach((str, count) -> gtCountMap.compute(new Genotype(str),
-                    (key, value) -> value == null ? count : value + count));
-
             VariantStats stats = VariantStatsCalculator.calculate(variant, gtCountMap);
             statsWrapper.getCohortStats().put(cohort.getName(), stats);
         }
 
         return statsWrapper;
     }
-
-
-    private void addGt(Map<String, Integer> gtStrCount, String gt, int num) {
-        gtStrCount.merge(gt, num, Integer::sum);
-    }
 }
@@ -16,9 +16,17 @@
 
 package org.opencb.opencga.storage.mongodb.variant.converters;
 
+import org.bson.Document;
 import org.junit.Test;
+import org.opencb.biodata.models.feature.Genotype;
+import org.opencb.opencga.storage.core.variant.adaptors.sample.SampleDataColumns;
 import org.opencb.opencga.storage.mongodb.variant.converters.DocumentToSamplesConverter;
 
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 import static org.junit.Assert.*;
 
 /**
@@ -68,6 +76,76 @@ public class DocumentToSamplesConverterTest {
 
     }
 
+    @Test
+    public void testConvertToGenotypeColumns() throws Exception {
+        Document study = new Document(DocumentToStudyVariantEntryConverter.GENOTYPES_FIELD, new Document()
+                .append("0/1", Arrays.asList(1, 3))
+                .append("1/1", Arrays.asList(4, 10))
+                .append("-1/-1", Arrays.asList(5))
+                .append("?/?", Arrays.asList(6)));
+        Map<Integer, Integer> samplesPosition = new HashMap<>();
+        for (int sampleId = 1; sampleId <= 7; sampleId++) {
+            samplesPosition.put(sampleId, sampleId - 1);
+        }
+
+        SampleDataColumns columns = DocumentToSamplesConverter.convertToGenotypeColumns(study, samplesPosition, "0/0", "./.");
+
+        assertEquals(7, columns.getNumSamples());
+        assertTrue(columns.hasGenotypes());
+        // Genotypes are read as stored
+        assertEquals(Arrays.asList("0/1", "0/0", "0/1", "1/1", "-1/-1", "./.", "0/0"),
+                Arrays.asList(columns.get(0, "GT"), columns.get(1, "GT"), columns.get(2, "GT"), columns.get(3, "GT"),
+                        columns.get(4, "GT"), columns.get(5, "GT"), columns.get(6, "GT")));
+
+        Map<Genotype, Integer> gtCount = columns.countGenotypes(new int[]{0, 1, 2, 5, 6});
+        assertEquals(2, gtCount.get(new Genotype("0/1")).intValue());
+        assertEquals(2, gtCount.get(new Genotype("0/0")).intValue());
+        assertEquals(1, gtCount.get(new Genotype("./.")).intValue());
+        assertNull(gtCount.get(new Genotype("1/1")));
+    }
+
+    @Test
+    public void testConvertToGenotypeColumnsSampleInMultipleGenotypes() throws Exception {
+        Document genotypes = new Document()
+                .append("0/1", Arrays.asList(1, 2))
+                .append("1/1", Arrays.asList(2))
+                .append("?/?", Arrays.asList(1));
+        Document study = new Document(DocumentToStudyVariantEntryConverter.GENOTYPES_FIELD, genotypes);
+        Map<Integer, Integer> samplesPosition = new HashMap<>();
+        samplesPosition.put(1, 0);
+        samplesPosition.put(2, 1);
+
+        SampleDataColumns columns = DocumentToSamplesConverter.convertToGenotypeColumns(study, samplesPosition, "0/0", "./.");
+
+        // Each sample takes the first genotype list containing it, iterating them from a HashMap
+        Map<String, Object> genotypesMap = new HashMap<>(genotypes.size());
+        genotypes.forEach(genotypesMap::put);
+        for (Map.Entry<Integer, Integer> entry : samplesPosition.entrySet()) {
+            String expected = null;
+            for (Map.Entry<String, Object> gt : genotypesMap.entrySet()) {
+                if (((List<?>) gt.getValue()).contains(entry.getKey())) {
+                    expected = gt.getKey().equals("?/?") ? "./." : gt.getKey();
+                    break;
+                }
+            }
+            assertEquals(expected, columns.get(entry.getValue(), "GT"));
+        }
+    }
+
+    @Test
+    public void testConvertToGenotypeColumnsNoDefault() throws Exception {
+        Document study = new Document(DocumentToStudyVariantEntryConverter.GENOTYPES_FIELD, new Document("0/1", Arrays.asList(2)));
+        Map<Integer, Integer> samplesPosition = new HashMap<>();
+        samplesPosition.put(1, 0);
+        samplesPosition.put(2, 1);
+
+        SampleDataColumns columns = DocumentToSamplesConverter.convertToGenotypeColumns(study, samplesPosition, null, "./.");
+
+        assertNull(columns.get(0, "GT"));
+        assertEquals("0/1", columns.get(1, "GT"));
+        assertEquals(1, columns.countGenotypes(new int[]{0, 1}).size());
+    }
+
     public void testInteger(String dataModelType) {
         assertEquals(dataModelType, DocumentToSamplesConverter.INTEGER_COMPLEX_TYPE_CONVERTER.convertToDataModelType(DocumentToSamplesConverter.INTEGER_COMPLEX_TYPE_CONVERTER.convertToStorageType(dataModelType)));
     }
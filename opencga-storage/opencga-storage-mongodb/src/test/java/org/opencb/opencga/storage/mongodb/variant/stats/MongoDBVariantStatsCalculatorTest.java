@@ -0,0 +1,106 @@
+package org.opencb.opencga.storage.mongodb.variant.stats;
+
+import org.bson.Document;
+import org.junit.Before;
+import org.junit.Test;
+import org.opencb.biodata.models.feature.Genotype;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.biodata.models.variant.stats.VariantStats;
+import org.opencb.biodata.tools.variant.stats.VariantStatsCalculator;
+import org.opencb.opencga.storage.core.metadata.models.CohortMetadata;
+import org.opencb.opencga.storage.core.metadata.models.StudyMetadata;
+import org.opencb.opencga.storage.core.variant.adaptors.GenotypeClass;
+import org.opencb.opencga.storage.core.variant.stats.VariantStatsWrapper;
+import org.opencb.opencga.storage.mongodb.variant.converters.DocumentToStudyVariantEntryConverter;
+
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.opencb.opencga.storage.mongodb.variant.MongoDBVariantStorageOptions.DEFAULT_GENOTYPE;
+
+public class MongoDBVariantStatsCalculatorTest {
+
+    private static final String UNKNOWN_GENOTYPE = "./.";
+    private StudyMetadata studyMetadata;
+    private List<CohortMetadata> cohorts;
+    private final Variant variant = new Variant("1:100:A:T");
+
+    @Before
+    public void setUp() throws Exception {
+        studyMetadata = new StudyMetadata(1, "study");
+        studyMetadata.getAttributes().put(DEFAULT_GENOTYPE.key(), "0/0");
+        cohorts = Arrays.asList(
+                new CohortMetadata(1, 1, "ALL", Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8, 9)),
+                new CohortMetadata(1, 2, "c2", Arrays.asList(3, 5, 6, 10)));
+    }
+
+    @Test
+    public void testCalculateStats() throws Exception {
+        Document study = new Document(DocumentToStudyVariantEntryConverter.GENOTYPES_FIELD, new Document()
+                .append("0/1", Arrays.asList(1, 3, 5))
+                .append("1/1", Arrays.asList(4))
+                .append("-1/-1", Arrays.asList(6))
+                .append("?/?", Arrays.asList(7)));
+
+        checkStats(study);
+    }
+
+    @Test
+    public void testCalculateStatsSampleInMultipleGenotypes() throws Exception {
+        // Samples 3 and 5 are in more than one genotype list
+        Document study = new Document(DocumentToStudyVariantEntryConverter.GENOTYPES_FIELD, new Document()
+                .append("0/1", Arrays.asList(1, 3, 5))
+                .append("1/1", Arrays.asList(3, 4))
+                .append("-1/-1", Arrays.asList(6))
+                .append("?/?", Arrays.asList(7, 5))
+                .append("0/2", Arrays.asList(5, 10)));
+
+        checkStats(study);
+    }
+
+    private void checkStats(Document study) {
+        MongoDBVariantStatsCalculator calculator = new MongoDBVariantStatsCalculator(studyMetadata, cohorts, UNKNOWN_GENOTYPE);
+        VariantStatsWrapper statsWrapper = calculator.calculateStats(variant, study);
+
+        assertEquals(cohorts.size(), statsWrapper.getCohortStats().size());
+        for (CohortMetadata cohort : cohorts) {
+            VariantStats expected = legacyStats(study, cohort, "0/0");
+            VariantStats actual = statsWrapper.getCohortStats().get(cohort.getName());
+            assertEquals(cohort.getName(), expected.getGenotypeCount(), actual.getGenotypeCount());
+            assertEquals(cohort.getName(), expected, actual);
+        }
+    }
+
+    /**
+     * Stats calculated by reading the genotype lists for each sample.
+     */
+    private VariantStats legacyStats(Document study, CohortMetadata cohort, String defaultGenotype) {
+        Document gt = study.get(DocumentToStudyVariantEntryConverter.GENOTYPES_FIELD, Document.class);
+
+        Map<String, Set<Integer>> gtsMap = new HashMap<>(gt.size());
+        for (Map.Entry<String, Object> entry : gt.entrySet()) {
+            gtsMap.put(entry.getKey(), new HashSet<>((Collection<Integer>) entry.getValue()));
+        }
+
+        Map<String, Integer> gtStrCount = new HashMap<>();
+        int unknownGenotypes = cohort.getSamples().size();
+        for (Integer sampleId : cohort.getSamples()) {
+            for (Map.Entry<String, Set<Integer>> entry : gtsMap.entrySet()) {
+                String gtStr = entry.getKey();
+                if (GenotypeClass.UNKNOWN_GENOTYPE.equals(gtStr)) {
+                    gtStr = UNKNOWN_GENOTYPE;
+                }
+                if (entry.getValue().contains(sampleId)) {
+                    gtStrCount.merge(gtStr, 1, Integer::sum);
+                    unknownGenotypes--;
+                    break;
+                }
+            }
+        }
+        gtStrCount.merge(defaultGenotype, unknownGenotypes, Integer::sum);
+
+        Map<Genotype, Integer> gtCountMap = new HashMap<>(gtStrCount.size());
+        gtStrCount.forEach((str, count) -> gtCountMap.merge(new Genotype(str), count, Integer::sum));
+        return VariantStatsCalculator.calculate(variant, gtCountMap);
+    }
+}